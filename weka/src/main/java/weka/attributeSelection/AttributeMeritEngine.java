@@ -0,0 +1,275 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ *    AttributeMeritEngine.java
+ *    Copyright (C) 2026 University of Waikato, Hamilton, New Zealand
+ *
+ */
+
+package weka.attributeSelection;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import weka.core.Instance;
+import weka.core.Instances;
+import weka.core.SparseInstance;
+
+/**
+ * Helper for single-attribute evaluators that computes the merits of all
+ * attributes up front. The attribute/class contingency tables of all
+ * attributes are computed with one sweep over the rows, and the merits of the
+ * individual attributes are then computed in parallel. The work is sharded
+ * across threads by blocks of attributes, so each table is filled by exactly
+ * one thread and the results do not depend on the number of threads used.
+ * <p/>
+ * Only nominal attributes are counted. Callers discretize numeric attributes
+ * beforehand with a filter, which makes its own passes over the data (and
+ * sorts each numeric attribute); that work is not part of the single sweep.
+ *
+ * @author The WEKA Team (wekalist@list.waikato.ac.nz)
+ * @version $Revision$
+ */
+public class AttributeMeritEngine {
+
+  /**
+   * Interface to something that computes the merit of a single attribute.
+   * Implementations are called concurrently for different attributes.
+   */
+  public static interface MeritFunction {
+
+    /**
+     * Compute the merit of an attribute
+     *
+     * @param attribute the index of the attribute
+     * @return the merit of the attribute
+     * @throws Exception if the merit can't be computed
+     */
+    double merit(int attribute) throws Exception;
+  }
+
+  /**
+   * Computes the attribute/class contingency tables for all nominal attributes
+   * in the data. The table of attribute k is of size [numValues + 1][numClasses
+   * + 1], where the last row holds the counts for a missing attribute value and
+   * the last column the counts for a missing class value. Only the non-zero
+   * values of sparse instances are visited; the counts for value 0 are
+   * obtained by subtracting them from the class totals. The entry for the class
+   * attribute (and for any non-nominal attribute) is null.
+   *
+   * @param data the data (must have a nominal class)
+   * @param useWeights true if instance weights are to be counted, false if
+   *          each instance is to be counted as 1
+   * @param numThreads the number of threads to use
+   * @return the contingency tables, indexed by attribute
+   * @throws Exception if a problem occurs
+   */
+  public static double[][][] computeContingencyTables(final Instances data,
+    final boolean useWeights, int numThreads) throws Exception {
+
+    final int classIndex = data.classIndex();
+    final int numClasses = data.classAttribute().numValues();
+    final int numAttributes = data.numAttributes();
+
+    // class totals, used as the initial counts for value 0
+    double[] classTotals = new double[numClasses + 1];
+    for (int i = 0; i < data.numInstances(); i++) {
+      Instance inst = data.instance(i);
+      double w = useWeights ? inst.weight() : 1.0;
+      if (inst.classIsMissing()) {
+        classTotals[numClasses] += w;
+      } else {
+        classTotals[(int) inst.classValue()] += w;
+      }
+    }
+
+    final double[][][] counts = new double[numAttributes][][];
+    for (int k = 0; k < numAttributes; k++) {
+      if (k != classIndex && data.attribute(k).isNominal()) {
+        counts[k] = new double[data.attribute(k).numValues() + 1][];
+        for (int j = 0; j < counts[k].length; j++) {
+          counts[k][j] = new double[numClasses + 1];
+        }
+        System.arraycopy(classTotals, 0, counts[k][0], 0, classTotals.length);
+      }
+    }
+
+    numThreads = Math.max(1, Math.min(numThreads, numAttributes));
+    List<Callable<Void>> tasks = new ArrayList<Callable<Void>>();
+    for (int t = 0; t < numThreads; t++) {
+      final int start = (int) ((long) numAttributes * t / numThreads);
+      final int end = (int) ((long) numAttributes * (t + 1) / numThreads);
+      tasks.add(new Callable<Void>() {
+        @Override
+        public Void call() throws Exception {
+          countBlock(data, counts, start, end, useWeights);
+          return null;
+        }
+      });
+    }
+    runTasks(tasks, numThreads);
+
+    return counts;
+  }
+
+  /**
+   * Fills the contingency tables of a contiguous block of attributes with one
+   * sweep over the rows.
+   *
+   * @param data the data
+   * @param counts the contingency tables (value 0 initialized to the class
+   *          totals)
+   * @param start the first attribute of the block
+   * @param end one past the last attribute of the block
+   * @param useWeights true if instance weights are to be counted
+   */
+  protected static void countBlock(Instances data, double[][][] counts,
+    int start, int end, boolean useWeights) {
+
+    int numClasses = data.classAttribute().numValues();
+    for (int k = 0; k < data.numInstances(); k++) {
+      Instance inst = data.instance(k);
+      double w = useWeights ? inst.weight() : 1.0;
+      int classValue =
+        inst.classIsMissing() ? numClasses : (int) inst.classValue();
+
+      int i = start;
+      if (inst instanceof SparseInstance) {
+        i = ((SparseInstance) inst).locateIndex(start);
+        if (i < 0 || inst.index(i) < start) {
+          i++;
+        }
+      }
+      for (; i < inst.numValues(); i++) {
+        int att = inst.index(i);
+        if (att >= end) {
+          break;
+        }
+        double[][] table = counts[att];
+        if (table == null) {
+          continue;
+        }
+        int row;
+        if (inst.isMissingSparse(i)) {
+          row = table.length - 1;
+        } else {
+          row = (int) inst.valueSparse(i);
+          if (row == 0) {
+            continue;
+          }
+        }
+        table[row][classValue] += w;
+        table[0][classValue] -= w;
+      }
+    }
+  }
+
+  /**
+   * Computes the merits of all attributes other than the class in parallel.
+   *
+   * @param data the data (only the header is used)
+   * @param function the function that computes the merit of an attribute
+   * @param numThreads the number of threads to use
+   * @return the merits, indexed by attribute (0 for the class)
+   * @throws Exception if a merit can't be computed
+   */
+  public static double[] computeMerits(Instances data,
+    final MeritFunction function, int numThreads) throws Exception {
+
+    final int classIndex = data.classIndex();
+    final int numAttributes = data.numAttributes();
+    final double[] merits = new double[numAttributes];
+
+    // interleave the attributes, as merits can be more expensive to compute
+    // for some attribute types than for others
+    final int stride = Math.max(1, Math.min(numThreads, numAttributes));
+    List<Callable<Void>> tasks = new ArrayList<Callable<Void>>();
+    for (int t = 0; t < stride; t++) {
+      final int first = t;
+      tasks.add(new Callable<Void>() {
+        @Override
+        public Void call() throws Exception {
+          for (int i = first; i < numAttributes; i += stride) {
+            if (i != classIndex) {
+              merits[i] = function.merit(i);
+            }
+          }
+          return null;
+        }
+      });
+    }
+    runTasks(tasks, stride);
+
+    return merits;
+  }
+
+  /**
+   * Runs the tasks, using a thread pool if there is more than one.
+   *
+   * @param tasks the tasks to run
+   * @param numThreads the number of threads to use
+   * @throws Exception the first exception thrown by a task
+   */
+  protected static void runTasks(List<Callable<Void>> tasks, int numThreads)
+    throws Exception {
+
+    if (tasks.size() == 1 || numThreads <= 1) {
+      for (Callable<Void> task : tasks) {
+        task.call();
+      }
+      return;
+    }
+
+    ExecutorService pool =
+      Executors.newFixedThreadPool(Math.min(numThreads, tasks.size()));
+    try {
+      runTasks(tasks, pool);
+    } finally {
+      pool.shutdownNow();
+    }
+  }
+
+  /**
+   * Runs the tasks in the given thread pool and waits for all of them.
+   *
+   * @param tasks the tasks to run
+   * @param pool the thread pool to use
+   * @throws Exception the first exception thrown by a task
+   */
+  protected static void runTasks(List<Callable<Void>> tasks,
+    ExecutorService pool) throws Exception {
+
+    List<Future<Void>> results = new ArrayList<Future<Void>>();
+    for (Callable<Void> task : tasks) {
+      results.add(pool.submit(task));
+    }
+    for (Future<Void> f : results) {
+      try {
+        f.get();
+      } catch (ExecutionException ex) {
+        if (ex.getCause() instanceof Exception) {
+          throw (Exception) ex.getCause();
+        }
+        throw ex;
+      }
+    }
+  }
+}
@@ -26,7 +26,12 @@ import java.util.ArrayList;
 import java.util.BitSet;
 import java.util.Enumeration;
 import java.util.Hashtable;
+import java.util.List;
 import java.util.Vector;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import weka.core.Instances;
 import weka.core.Option;
@@ -36,6 +41,7 @@ import weka.core.RevisionHandler;
 import weka.core.RevisionUtils;
 import weka.core.SelectedTag;
 import weka.core.Tag;
+import weka.core.ThreadSafe;
 import weka.core.Utils;
 
 /**
@@ -79,6 +85,11 @@ import weka.core.Utils;
  *  attributes in the data set. (default = 1)
  * </pre>
  * 
+ * <pre>
+ * -num-slots &lt;int&gt;
+ *  The number of execution slots, for example, the number of cores in the CPU. (default 1)
+ * </pre>
+ * 
  <!-- options-end -->
  * 
  * @author Mark Hall (mhall@cs.waikato.ac.nz) Martin Guetlein (cashing merit of
@@ -301,6 +312,12 @@ public class BestFirst extends ASSearch implements OptionHandler,
   /** holds the maximum size of the lookup cache for evaluated subsets */
   protected int m_cacheSize;
 
+  /** the number of threads to use for evaluating the children of a node */
+  protected int m_poolSize = 1;
+
+  /** Thread pool */
+  protected transient ExecutorService m_pool = null;
+
   /**
    * Returns a string describing this search method
    * 
@@ -334,7 +351,7 @@ public class BestFirst extends ASSearch implements OptionHandler,
    **/
   @Override
   public Enumeration<Option> listOptions() {
-    Vector<Option> newVector = new Vector<Option>(4);
+    Vector<Option> newVector = new Vector<Option>(5);
 
     newVector.addElement(new Option("\tSpecify a starting set of attributes."
       + "\n\tEg. 1,3,5-7.", "P", 1, "-P <start set>"));
@@ -346,6 +363,8 @@ public class BestFirst extends ASSearch implements OptionHandler,
       "\tSize of lookup cache for evaluated subsets."
         + "\n\tExpressed as a multiple of the number of"
         + "\n\tattributes in the data set. (default = 1)", "S", 1, "-S <num>"));
+    newVector.addElement(new Option("\t" + numExecutionSlotsTipText()
+      + " (default 1)", "num-slots", 1, "-num-slots <int>"));
 
     return newVector.elements();
   }
@@ -382,6 +401,11 @@ public class BestFirst extends ASSearch implements OptionHandler,
    *  attributes in the data set. (default = 1)
    * </pre>
    * 
+   * <pre>
+   * -num-slots &lt;int&gt;
+   *  The number of execution slots, for example, the number of cores in the CPU. (default 1)
+   * </pre>
+   * 
    <!-- options-end -->
    * 
    * @param options the list of options as an array of strings
@@ -418,6 +442,11 @@ public class BestFirst extends ASSearch implements OptionHandler,
       setLookupCacheSize(Integer.parseInt(optionString));
     }
 
+    optionString = Utils.getOption("num-slots", options);
+    if (optionString.length() > 0) {
+      setNumExecutionSlots(Integer.parseInt(optionString));
+    }
+
     m_debug = Utils.getFlag('Z', options);
   }
 
@@ -456,6 +485,35 @@ public class BestFirst extends ASSearch implements OptionHandler,
       + "(default = 1).";
   }
 
+  /**
+   * Returns the tip text for this property
+   * 
+   * @return tip text for this property suitable for displaying in the
+   *         explorer/experimenter gui
+   */
+  public String numExecutionSlotsTipText() {
+    return "The number of execution slots, for example, the number of cores "
+      + "in the CPU.";
+  }
+
+  /**
+   * Gets the number of threads.
+   * 
+   * @return the number of threads
+   */
+  public int getNumExecutionSlots() {
+    return m_poolSize;
+  }
+
+  /**
+   * Sets the number of threads.
+   * 
+   * @param nT the number of threads
+   */
+  public void setNumExecutionSlots(int nT) {
+    m_poolSize = nT;
+  }
+
   /**
    * Returns the tip text for this property
    * 
@@ -576,6 +634,10 @@ public class BestFirst extends ASSearch implements OptionHandler,
     options.add("" + m_searchDirection);
     options.add("-N");
     options.add("" + m_maxStale);
+    if (getNumExecutionSlots() != 1) {
+      options.add("-num-slots");
+      options.add("" + getNumExecutionSlots());
+    }
 
     return options.toArray(new String[0]);
   }
@@ -690,6 +752,44 @@ public class BestFirst extends ASSearch implements OptionHandler,
 
     SubsetEvaluator ASEvaluator = (SubsetEvaluator) ASEval;
     m_numAttribs = data.numAttributes();
+
+    // evaluate the children of a node in parallel? Each thread gets its own
+    // copy of the evaluator unless the evaluator is thread safe
+    SubsetEvaluator[] evaluators = null;
+    if (m_poolSize > 1) {
+      evaluators = new SubsetEvaluator[m_poolSize];
+      ASEvaluation[] copies =
+        (ASEval instanceof ThreadSafe) ? null : ASEvaluation.makeCopies(
+          ASEval, m_poolSize);
+      for (int k = 0; k < m_poolSize; k++) {
+        evaluators[k] =
+          (copies == null) ? ASEvaluator : (SubsetEvaluator) copies[k];
+      }
+      m_pool = Executors.newFixedThreadPool(m_poolSize);
+    }
+    try {
+      return bestFirstSearch(ASEvaluator, evaluators, data);
+    } finally {
+      if (m_pool != null) {
+        m_pool.shutdownNow();
+        m_pool = null;
+      }
+    }
+  }
+
+  /**
+   * Performs the best first search.
+   * 
+   * @param ASEvaluator the evaluator to guide the search
+   * @param evaluators the evaluators for the threads evaluating the children
+   *          of a node in parallel (null if children are evaluated
+   *          sequentially)
+   * @param data the training instances.
+   * @return an array (not necessarily ordered) of selected attribute indexes
+   * @throws Exception if the search can't be completed
+   */
+  protected int[] bestFirstSearch(SubsetEvaluator ASEvaluator,
+    SubsetEvaluator[] evaluators, Instances data) throws Exception {
     int i, j;
     int best_size = 0;
     int size = 0;
@@ -785,6 +885,12 @@ public class BestFirst extends ASSearch implements OptionHandler,
       }
 
       do {
+        // merits of the children of this node that have not been seen before
+        Double[] childMerits = null;
+        if (evaluators != null) {
+          childMerits = evaluateChildren(evaluators, temp_group, sd, lookup);
+        }
+
         for (i = 0; i < m_numAttribs; i++) {
           if (sd == SELECTION_FORWARD) {
             z = ((i != m_classIndex) && (!temp_group.get(i)));
@@ -810,7 +916,11 @@ public class BestFirst extends ASSearch implements OptionHandler,
             hashC = tt.toString();
 
             if (lookup.containsKey(hashC) == false) {
-              merit = ASEvaluator.evaluateSubset(temp_group);
+              if (childMerits != null && childMerits[i] != null) {
+                merit = childMerits[i].doubleValue();
+              } else {
+                merit = ASEvaluator.evaluateSubset(temp_group);
+              }
               m_totalEvals++;
 
               // insert this one in the hashtable
@@ -888,6 +998,63 @@ public class BestFirst extends ASSearch implements OptionHandler,
     return attributeList(best_group);
   }
 
+  /**
+   * Evaluates the children of a node that are not in the lookup cache in
+   * parallel.
+   * 
+   * @param evaluators the evaluators to use, one per thread
+   * @param group the attribute subset of the node
+   * @param direction the direction of the search (forward or backward)
+   * @param lookup the lookup cache of evaluated subsets
+   * @return the merits of the children, indexed by the attribute added or
+   *         removed (null for children that have not been evaluated)
+   * @throws Exception if a subset can't be evaluated
+   */
+  protected Double[] evaluateChildren(SubsetEvaluator[] evaluators,
+    BitSet group, int direction, Hashtable<String, Double> lookup)
+    throws Exception {
+
+    final List<Integer> children = new ArrayList<Integer>();
+    final List<BitSet> subsets = new ArrayList<BitSet>();
+    for (int i = 0; i < m_numAttribs; i++) {
+      if (i == m_classIndex || group.get(i) == (direction == SELECTION_FORWARD)) {
+        continue;
+      }
+      BitSet child = (BitSet) group.clone();
+      if (direction == SELECTION_FORWARD) {
+        child.set(i);
+      } else {
+        child.clear(i);
+      }
+      if (!lookup.containsKey(child.toString())) {
+        children.add(i);
+        subsets.add(child);
+      }
+    }
+
+    final Double[] merits = new Double[m_numAttribs];
+    List<Future<Void>> results = new ArrayList<Future<Void>>();
+    for (int t = 0; t < evaluators.length && t < subsets.size(); t++) {
+      final int first = t;
+      final int stride = evaluators.length;
+      final SubsetEvaluator evaluator = evaluators[t];
+      results.add(m_pool.submit(new Callable<Void>() {
+        @Override
+        public Void call() throws Exception {
+          for (int j = first; j < subsets.size(); j += stride) {
+            merits[children.get(j)] = evaluator.evaluateSubset(subsets.get(j));
+          }
+          return null;
+        }
+      }));
+    }
+    for (Future<Void> f : results) {
+      f.get();
+    }
+
+    return merits;
+  }
+
   /**
    * Reset options to default values
    */
@@ -899,6 +1066,7 @@ public class BestFirst extends ASSearch implements OptionHandler,
     m_classIndex = -1;
     m_totalEvals = 0;
     m_cacheSize = 1;
+    m_poolSize = 1;
     m_debug = false;
   }
 
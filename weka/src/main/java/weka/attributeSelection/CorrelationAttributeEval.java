@@ -21,12 +21,11 @@
 
 package weka.attributeSelection;
 
-import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Enumeration;
-import java.util.List;
 import java.util.Vector;
 
+import weka.core.Attribute;
 import weka.core.Capabilities;
 import weka.core.Capabilities.Capability;
 import weka.core.Instance;
@@ -58,6 +57,11 @@ import weka.filters.unsupervised.attribute.ReplaceMissingValues;
  *  Output detailed info for nominal attributes
  * </pre>
  * 
+ * <pre>
+ * -num-slots &lt;int&gt;
+ *  The number of execution slots, for example, the number of cores in the CPU. (default 1)
+ * </pre>
+ * 
  * <!-- options-end -->
  * 
  * @author Mark Hall (mhall{[at]}pentaho{[dot]}com)
@@ -78,6 +82,9 @@ public class CorrelationAttributeEval extends ASEvaluation implements
   /** Holds the detailed output info */
   protected StringBuffer m_detailedOutputBuff;
 
+  /** The number of threads used to compute the correlations */
+  protected int m_numExecutionSlots = 1;
+
   /**
    * Returns a string describing this attribute evaluator
    * 
@@ -129,6 +136,8 @@ public class CorrelationAttributeEval extends ASEvaluation implements
 
     newVector.addElement(new Option(
       "\tOutput detailed info for nominal attributes", "D", 0, "-D"));
+    newVector.addElement(new Option("\t" + numExecutionSlotsTipText()
+      + " (default 1)", "num-slots", 1, "-num-slots <int>"));
 
     return newVector.elements();
   }
@@ -145,6 +154,11 @@ public class CorrelationAttributeEval extends ASEvaluation implements
    *  Output detailed info for nominal attributes
    * </pre>
    * 
+   * <pre>
+   * -num-slots &lt;int&gt;
+   *  The number of execution slots, for example, the number of cores in the CPU. (default 1)
+   * </pre>
+   * 
    * <!-- options-end -->
    * 
    * @param options the list of options as an array of strings
@@ -154,6 +168,12 @@ public class CorrelationAttributeEval extends ASEvaluation implements
   public void setOptions(String[] options) throws Exception {
 
     setOutputDetailedInfo(Utils.getFlag('D', options));
+    String slots = Utils.getOption("num-slots", options);
+    if (slots.length() != 0) {
+      setNumExecutionSlots(Integer.parseInt(slots));
+    } else {
+      setNumExecutionSlots(1);
+    }
   }
 
   /**
@@ -163,13 +183,15 @@ public class CorrelationAttributeEval extends ASEvaluation implements
    */
   @Override
   public String[] getOptions() {
-    String[] options = new String[1];
+    String[] options = new String[3];
 
     if (getOutputDetailedInfo()) {
       options[0] = "-D";
     } else {
       options[0] = "";
     }
+    options[1] = "-num-slots";
+    options[2] = "" + getNumExecutionSlots();
 
     return options;
   }
@@ -204,6 +226,35 @@ public class CorrelationAttributeEval extends ASEvaluation implements
     return m_detailedOutput;
   }
 
+  /**
+   * Returns the tip text for this property
+   * 
+   * @return tip text for this property suitable for displaying in the
+   *         explorer/experimenter gui
+   */
+  public String numExecutionSlotsTipText() {
+    return "The number of execution slots, for example, the number of cores "
+      + "in the CPU.";
+  }
+
+  /**
+   * Set the number of threads to use for computing the correlations.
+   * 
+   * @param n the number of threads
+   */
+  public void setNumExecutionSlots(int n) {
+    m_numExecutionSlots = n;
+  }
+
+  /**
+   * Get the number of threads to use for computing the correlations.
+   * 
+   * @return the number of threads
+   */
+  public int getNumExecutionSlots() {
+    return m_numExecutionSlots;
+  }
+
   /**
    * Evaluates an individual attribute by measuring the correlation (Pearson's)
    * between it and the class. Nominal attributes are considered on a value by
@@ -260,13 +311,7 @@ public class CorrelationAttributeEval extends ASEvaluation implements
 
     int numClasses = data.classAttribute().numValues();
     int classIndex = data.classIndex();
-    int numInstances = data.numInstances();
-    m_correlations = new double[data.numAttributes()];
-    /*
-     * boolean hasNominals = false; boolean hasNumerics = false;
-     */
-    List<Integer> numericIndexes = new ArrayList<Integer>();
-    List<Integer> nominalIndexes = new ArrayList<Integer>();
+    m_detailedOutputBuff = null;
     if (m_detailedOutput) {
       m_detailedOutputBuff = new StringBuffer();
     }
@@ -275,21 +320,20 @@ public class CorrelationAttributeEval extends ASEvaluation implements
     // add another dimension just before the last [2] (0 for 0/1 binary vector
     // and
     // 1 for corresponding instance weights for the 1's)
-    double[][][] nomAtts = new double[data.numAttributes()][][];
+    final double[][][] nomAtts = new double[data.numAttributes()][][];
+    boolean hasNominals = false;
     for (int i = 0; i < data.numAttributes(); i++) {
       if (data.attribute(i).isNominal() && i != classIndex) {
         nomAtts[i] = new double[data.attribute(i).numValues()][data
           .numInstances()];
         Arrays.fill(nomAtts[i][0], 1.0); // set zero index for this att to all
                                          // 1's
-        nominalIndexes.add(i);
-      } else if (data.attribute(i).isNumeric() && i != classIndex) {
-        numericIndexes.add(i);
+        hasNominals = true;
       }
     }
 
     // do the nominal attributes
-    if (nominalIndexes.size() > 0) {
+    if (hasNominals) {
       for (int i = 0; i < data.numInstances(); i++) {
         Instance current = data.instance(i);
         for (int j = 0; j < current.numValues(); j++) {
@@ -304,162 +348,207 @@ public class CorrelationAttributeEval extends ASEvaluation implements
       }
     }
 
+    final double[][] binarizedClasses;
+    final double[] classValCounts;
+    final double sumClass;
     if (data.classAttribute().isNumeric()) {
-      double[] classVals = data.attributeToDoubleArray(classIndex);
-
-      // do the numeric attributes
-      for (Integer i : numericIndexes) {
-        double[] numAttVals = data.attributeToDoubleArray(i);
-        m_correlations[i] = Utils.correlation(numAttVals, classVals,
-          numAttVals.length);
-
-        if (m_correlations[i] == 1.0) {
-          // check for zero variance (useless numeric attribute)
-          if (Utils.variance(numAttVals) == 0) {
-            m_correlations[i] = 0;
-          }
-        }
-      }
-
-      // do the nominal attributes
-      if (nominalIndexes.size() > 0) {
-
-        // now compute the correlations for the binarized nominal attributes
-        for (Integer i : nominalIndexes) {
-          double sum = 0;
-          double corr = 0;
-          double sumCorr = 0;
-          double sumForValue = 0;
-
-          if (m_detailedOutput) {
-            m_detailedOutputBuff.append("\n\n")
-              .append(data.attribute(i).name());
-          }
-
-          for (int j = 0; j < data.attribute(i).numValues(); j++) {
-            sumForValue = Utils.sum(nomAtts[i][j]);
-            corr = Utils
-              .correlation(nomAtts[i][j], classVals, classVals.length);
-
-            // useless attribute - all instances have the same value
-            if (sumForValue == numInstances || sumForValue == 0) {
-              corr = 0;
-            }
-            if (corr < 0.0) {
-              corr = -corr;
-            }
-            sumCorr += sumForValue * corr;
-            sum += sumForValue;
-
-            if (m_detailedOutput) {
-              m_detailedOutputBuff.append("\n\t")
-                .append(data.attribute(i).value(j)).append(": ");
-              m_detailedOutputBuff.append(Utils.doubleToString(corr, 6));
-            }
-          }
-          m_correlations[i] = (sum > 0) ? sumCorr / sum : 0;
-        }
-      }
+      binarizedClasses = new double[][] { data.attributeToDoubleArray(classIndex) };
+      classValCounts = null;
+      sumClass = 0;
     } else {
       // class is nominal
       // TODO extra dimension for storing instance weights too
-      double[][] binarizedClasses = new double[data.classAttribute()
-        .numValues()][data.numInstances()];
+      binarizedClasses = new double[numClasses][data.numInstances()];
 
       // this is equal to the number of instances for all inst weights = 1
-      double[] classValCounts = new double[data.classAttribute().numValues()];
+      classValCounts = new double[numClasses];
 
       for (int i = 0; i < data.numInstances(); i++) {
         Instance current = data.instance(i);
         binarizedClasses[(int) current.classValue()][i] = 1;
       }
-      for (int i = 0; i < data.classAttribute().numValues(); i++) {
+      for (int i = 0; i < numClasses; i++) {
         classValCounts[i] = Utils.sum(binarizedClasses[i]);
       }
 
-      double sumClass = Utils.sum(classValCounts);
-
-      // do numeric attributes first
-      if (numericIndexes.size() > 0) {
-        for (Integer i : numericIndexes) {
-          double[] numAttVals = data.attributeToDoubleArray(i);
-          double corr = 0;
-          double sumCorr = 0;
-
-          for (int j = 0; j < data.classAttribute().numValues(); j++) {
-            corr = Utils.correlation(numAttVals, binarizedClasses[j],
-              numAttVals.length);
-            if (corr < 0.0) {
-              corr = -corr;
-            }
+      sumClass = Utils.sum(classValCounts);
+    }
 
-            if (corr == 1.0) {
-              // check for zero variance (useless numeric attribute)
-              if (Utils.variance(numAttVals) == 0) {
-                corr = 0;
+    // compute the correlations for the attributes in parallel
+    final Instances header = data;
+    final StringBuffer[] details = new StringBuffer[data.numAttributes()];
+    m_correlations =
+      AttributeMeritEngine.computeMerits(data,
+        new AttributeMeritEngine.MeritFunction() {
+          @Override
+          public double merit(int attribute) {
+            if (header.attribute(attribute).isNumeric()) {
+              return numericCorrelation(header.attributeToDoubleArray(attribute),
+                binarizedClasses, classValCounts, sumClass);
+            } else if (nomAtts[attribute] != null) {
+              if (m_detailedOutput) {
+                details[attribute] = new StringBuffer();
               }
+              return nominalCorrelation(header.attribute(attribute),
+                nomAtts[attribute], binarizedClasses, classValCounts,
+                sumClass, header.numInstances(), details[attribute]);
             }
-
-            sumCorr += classValCounts[j] * corr;
+            return 0;
           }
-          m_correlations[i] = sumCorr / sumClass;
+        }, m_numExecutionSlots);
+
+    if (m_detailedOutputBuff != null) {
+      for (StringBuffer detail : details) {
+        if (detail != null) {
+          m_detailedOutputBuff.append(detail);
         }
       }
+    }
 
-      if (nominalIndexes.size() > 0) {
-        for (Integer i : nominalIndexes) {
-          if (m_detailedOutput) {
-            m_detailedOutputBuff.append("\n\n")
-              .append(data.attribute(i).name());
-          }
+    if (m_detailedOutputBuff != null && m_detailedOutputBuff.length() > 0) {
+      m_detailedOutputBuff.append("\n");
+    }
+  }
 
-          double sumForAtt = 0;
-          double corrForAtt = 0;
-          for (int j = 0; j < data.attribute(i).numValues(); j++) {
-            double sumForValue = Utils.sum(nomAtts[i][j]);
-            double corr = 0;
-            double sumCorr = 0;
-            double avgCorrForValue = 0;
+  /**
+   * Computes the correlation between a numeric attribute and the class.
+   * 
+   * @param numAttVals the values of the attribute
+   * @param classVals the values of the class if it is numeric, otherwise one
+   *          indicator vector per class value
+   * @param classValCounts the number of instances per class value (null if the
+   *          class is numeric)
+   * @param sumClass the total of the class value counts
+   * @return the correlation
+   */
+  protected static double numericCorrelation(double[] numAttVals,
+    double[][] classVals, double[] classValCounts, double sumClass) {
 
-            sumForAtt += sumForValue;
-            for (int k = 0; k < numClasses; k++) {
+    if (classValCounts == null) {
+      double corr = Utils.correlation(numAttVals, classVals[0],
+        numAttVals.length);
 
-              // corr between value j and class k
-              corr = Utils.correlation(nomAtts[i][j], binarizedClasses[k],
-                binarizedClasses[k].length);
+      if (corr == 1.0) {
+        // check for zero variance (useless numeric attribute)
+        if (Utils.variance(numAttVals) == 0) {
+          corr = 0;
+        }
+      }
+      return corr;
+    }
 
-              // useless attribute - all instances have the same value
-              if (sumForValue == numInstances || sumForValue == 0) {
-                corr = 0;
-              }
-              if (corr < 0.0) {
-                corr = -corr;
-              }
-              sumCorr += classValCounts[k] * corr;
-            }
-            avgCorrForValue = sumCorr / sumClass;
-            corrForAtt += sumForValue * avgCorrForValue;
-
-            if (m_detailedOutput) {
-              m_detailedOutputBuff.append("\n\t")
-                .append(data.attribute(i).value(j)).append(": ");
-              m_detailedOutputBuff.append(Utils.doubleToString(avgCorrForValue,
-                6));
-            }
-          }
+    double corr = 0;
+    double sumCorr = 0;
+
+    for (int j = 0; j < classVals.length; j++) {
+      corr = Utils.correlation(numAttVals, classVals[j], numAttVals.length);
+      if (corr < 0.0) {
+        corr = -corr;
+      }
 
-          // the weighted average corr for att i as
-          // a whole (wighted by value frequencies)
-          m_correlations[i] = (sumForAtt > 0) ? corrForAtt / sumForAtt : 0;
+      if (corr == 1.0) {
+        // check for zero variance (useless numeric attribute)
+        if (Utils.variance(numAttVals) == 0) {
+          corr = 0;
         }
       }
+
+      sumCorr += classValCounts[j] * corr;
     }
+    return sumCorr / sumClass;
+  }
 
-    if (m_detailedOutputBuff != null && m_detailedOutputBuff.length() > 0) {
-      m_detailedOutputBuff.append("\n");
+  /**
+   * Computes the correlation between a nominal attribute and the class as the
+   * weighted average of the correlations of the indicators for its values.
+   * 
+   * @param att the attribute
+   * @param indicators the indicator vector for each value of the attribute
+   * @param classVals the values of the class if it is numeric, otherwise one
+   *          indicator vector per class value
+   * @param classValCounts the number of instances per class value (null if the
+   *          class is numeric)
+   * @param sumClass the total of the class value counts
+   * @param numInstances the number of instances
+   * @param detail buffer to append the per-value correlations to (may be null)
+   * @return the correlation
+   */
+  protected static double nominalCorrelation(Attribute att,
+    double[][] indicators, double[][] classVals, double[] classValCounts,
+    double sumClass, int numInstances, StringBuffer detail) {
+
+    if (detail != null) {
+      detail.append("\n\n").append(att.name());
+    }
+
+    if (classValCounts == null) {
+      double sum = 0;
+      double corr = 0;
+      double sumCorr = 0;
+      double sumForValue = 0;
+
+      for (int j = 0; j < att.numValues(); j++) {
+        sumForValue = Utils.sum(indicators[j]);
+        corr = Utils.correlation(indicators[j], classVals[0],
+          classVals[0].length);
+
+        // useless attribute - all instances have the same value
+        if (sumForValue == numInstances || sumForValue == 0) {
+          corr = 0;
+        }
+        if (corr < 0.0) {
+          corr = -corr;
+        }
+        sumCorr += sumForValue * corr;
+        sum += sumForValue;
+
+        if (detail != null) {
+          detail.append("\n\t").append(att.value(j)).append(": ");
+          detail.append(Utils.doubleToString(corr, 6));
+        }
+      }
+      return (sum > 0) ? sumCorr / sum : 0;
     }
+
+    double sumForAtt = 0;
+    double corrForAtt = 0;
+    for (int j = 0; j < att.numValues(); j++) {
+      double sumForValue = Utils.sum(indicators[j]);
+      double corr = 0;
+      double sumCorr = 0;
+      double avgCorrForValue = 0;
+
+      sumForAtt += sumForValue;
+      for (int k = 0; k < classVals.length; k++) {
+
+        // corr between value j and class k
+        corr = Utils.correlation(indicators[j], classVals[k],
+          classVals[k].length);
+
+        // useless attribute - all instances have the same value
+        if (sumForValue == numInstances || sumForValue == 0) {
+          corr = 0;
+        }
+        if (corr < 0.0) {
+          corr = -corr;
+        }
+        sumCorr += classValCounts[k] * corr;
+      }
+      avgCorrForValue = sumCorr / sumClass;
+      corrForAtt += sumForValue * avgCorrForValue;
+
+      if (detail != null) {
+        detail.append("\n\t").append(att.value(j)).append(": ");
+        detail.append(Utils.doubleToString(avgCorrForValue, 6));
+      }
+    }
+
+    // the weighted average corr for att i as
+    // a whole (wighted by value frequencies)
+    return (sumForAtt > 0) ? corrForAtt / sumForAtt : 0;
   }
 
+
   /**
    * Returns the revision string.
    * 
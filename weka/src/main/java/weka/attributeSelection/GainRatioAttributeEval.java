@@ -27,7 +27,6 @@ import java.util.Vector;
 import weka.core.Capabilities;
 import weka.core.Capabilities.Capability;
 import weka.core.ContingencyTables;
-import weka.core.Instance;
 import weka.core.Instances;
 import weka.core.Option;
 import weka.core.OptionHandler;
@@ -54,6 +53,11 @@ import weka.filters.supervised.attribute.Discretize;
  *  treat missing values as a seperate value.
  * </pre>
  * 
+ * <pre>
+ * -num-slots &lt;int&gt;
+ *  The number of execution slots, for example, the number of cores in the CPU. (default 1)
+ * </pre>
+ * 
  * <!-- options-end -->
  * 
  * @author Mark Hall (mhall@cs.waikato.ac.nz)
@@ -69,14 +73,14 @@ public class GainRatioAttributeEval extends ASEvaluation implements
   /** The training instances */
   private Instances m_trainInstances;
 
-  /** The class index */
-  private int m_classIndex;
-
   /** The number of instances */
   private int m_numInstances;
 
-  /** The number of classes */
-  private int m_numClasses;
+  /** The merit of each attribute */
+  private double[] m_merits;
+
+  /** The number of threads used to compute the merits */
+  private int m_numExecutionSlots = 1;
 
   /** Merge missing values */
   private boolean m_missing_merge;
@@ -108,9 +112,11 @@ public class GainRatioAttributeEval extends ASEvaluation implements
    **/
   @Override
   public Enumeration<Option> listOptions() {
-    Vector<Option> newVector = new Vector<Option>(1);
+    Vector<Option> newVector = new Vector<Option>(2);
     newVector.addElement(new Option("\ttreat missing values as a seperate "
       + "value.", "M", 0, "-M"));
+    newVector.addElement(new Option("\t" + numExecutionSlotsTipText()
+      + " (default 1)", "num-slots", 1, "-num-slots <int>"));
     return newVector.elements();
   }
 
@@ -126,6 +132,11 @@ public class GainRatioAttributeEval extends ASEvaluation implements
    *  treat missing values as a seperate value.
    * </pre>
    * 
+   * <pre>
+   * -num-slots &lt;int&gt;
+   *  The number of execution slots, for example, the number of cores in the CPU. (default 1)
+   * </pre>
+   * 
    * <!-- options-end -->
    * 
    * @param options the list of options as an array of strings
@@ -135,6 +146,10 @@ public class GainRatioAttributeEval extends ASEvaluation implements
   public void setOptions(String[] options) throws Exception {
     resetOptions();
     setMissingMerge(!(Utils.getFlag('M', options)));
+    String slots = Utils.getOption("num-slots", options);
+    if (slots.length() != 0) {
+      setNumExecutionSlots(Integer.parseInt(slots));
+    }
   }
 
   /**
@@ -149,6 +164,35 @@ public class GainRatioAttributeEval extends ASEvaluation implements
       + "missing is treated as a separate value.";
   }
 
+  /**
+   * Returns the tip text for this property
+   * 
+   * @return tip text for this property suitable for displaying in the
+   *         explorer/experimenter gui
+   */
+  public String numExecutionSlotsTipText() {
+    return "The number of execution slots, for example, the number of cores "
+      + "in the CPU.";
+  }
+
+  /**
+   * Set the number of threads to use for computing the gain ratios.
+   * 
+   * @param n the number of threads
+   */
+  public void setNumExecutionSlots(int n) {
+    m_numExecutionSlots = n;
+  }
+
+  /**
+   * Get the number of threads to use for computing the gain ratios.
+   * 
+   * @return the number of threads
+   */
+  public int getNumExecutionSlots() {
+    return m_numExecutionSlots;
+  }
+
   /**
    * distribute the counts for missing values across observed values
    * 
@@ -174,12 +218,17 @@ public class GainRatioAttributeEval extends ASEvaluation implements
    */
   @Override
   public String[] getOptions() {
-    String[] options = new String[1];
+    String[] options = new String[3];
+    int current = 0;
 
     if (!getMissingMerge()) {
-      options[0] = "-M";
-    } else {
-      options[0] = "";
+      options[current++] = "-M";
+    }
+    options[current++] = "-num-slots";
+    options[current++] = "" + getNumExecutionSlots();
+
+    while (current < options.length) {
+      options[current++] = "";
     }
 
     return options;
@@ -223,13 +272,25 @@ public class GainRatioAttributeEval extends ASEvaluation implements
     getCapabilities().testWithFail(data);
 
     m_trainInstances = data;
-    m_classIndex = m_trainInstances.classIndex();
     m_numInstances = m_trainInstances.numInstances();
     Discretize disTransform = new Discretize();
     disTransform.setUseBetterEncoding(true);
     disTransform.setInputFormat(m_trainInstances);
     m_trainInstances = Filter.useFilter(m_trainInstances, disTransform);
-    m_numClasses = m_trainInstances.attribute(m_classIndex).numValues();
+
+    // fill the contingency tables of all attributes in one pass
+    final double[][][] counts =
+      AttributeMeritEngine.computeContingencyTables(m_trainInstances, true,
+        m_numExecutionSlots);
+    m_merits =
+      AttributeMeritEngine.computeMerits(m_trainInstances,
+        new AttributeMeritEngine.MeritFunction() {
+          @Override
+          public double merit(int attribute) {
+            return evaluateContingencyTable(counts[attribute]);
+          }
+        }, m_numExecutionSlots);
+    m_trainInstances = new Instances(m_trainInstances, 0);
   }
 
   /**
@@ -237,7 +298,9 @@ public class GainRatioAttributeEval extends ASEvaluation implements
    */
   protected void resetOptions() {
     m_trainInstances = null;
+    m_merits = null;
     m_missing_merge = true;
+    m_numExecutionSlots = 1;
   }
 
   /**
@@ -250,47 +313,28 @@ public class GainRatioAttributeEval extends ASEvaluation implements
    */
   @Override
   public double evaluateAttribute(int attribute) throws Exception {
-    int i, j, ii, jj;
+
+    return m_merits[attribute];
+  }
+
+  /**
+   * Computes the gain ratio from an attribute/class contingency table,
+   * distributing the counts for missing values first if required.
+   * 
+   * @param counts the contingency table, with the counts for missing values in
+   *          the last row and column (gets modified)
+   * @return the gain ratio
+   */
+  protected double evaluateContingencyTable(double[][] counts) {
+    int i, j;
     int ni, nj;
     double sum = 0.0;
-    ni = m_trainInstances.attribute(attribute).numValues() + 1;
-    nj = m_numClasses + 1;
+    ni = counts.length;
+    nj = counts[0].length;
     double[] sumi, sumj;
-    Instance inst;
     double temp = 0.0;
     sumi = new double[ni];
     sumj = new double[nj];
-    double[][] counts = new double[ni][nj];
-    sumi = new double[ni];
-    sumj = new double[nj];
-
-    for (i = 0; i < ni; i++) {
-      sumi[i] = 0.0;
-
-      for (j = 0; j < nj; j++) {
-        sumj[j] = 0.0;
-        counts[i][j] = 0.0;
-      }
-    }
-
-    // Fill the contingency table
-    for (i = 0; i < m_numInstances; i++) {
-      inst = m_trainInstances.instance(i);
-
-      if (inst.isMissing(attribute)) {
-        ii = ni - 1;
-      } else {
-        ii = (int) inst.value(attribute);
-      }
-
-      if (inst.isMissing(m_classIndex)) {
-        jj = nj - 1;
-      } else {
-        jj = (int) inst.value(m_classIndex);
-      }
-
-      counts[ii][jj] += inst.weight();
-    }
 
     // get the row totals
     for (i = 0; i < ni; i++) {
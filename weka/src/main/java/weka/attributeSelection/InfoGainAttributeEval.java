@@ -27,7 +27,6 @@ import java.util.Vector;
 import weka.core.Capabilities;
 import weka.core.Capabilities.Capability;
 import weka.core.ContingencyTables;
-import weka.core.Instance;
 import weka.core.Instances;
 import weka.core.Option;
 import weka.core.OptionHandler;
@@ -61,6 +60,11 @@ import weka.filters.unsupervised.attribute.NumericToBinary;
  *  of properly discretizing them.
  * </pre>
  * 
+ * <pre>
+ * -num-slots &lt;int&gt;
+ *  The number of execution slots, for example, the number of cores in the CPU. (default 1)
+ * </pre>
+ * 
  * <!-- options-end -->
  * 
  * @author Mark Hall (mhall@cs.waikato.ac.nz)
@@ -83,6 +87,9 @@ public class InfoGainAttributeEval extends ASEvaluation implements
   /** The info gain for each attribute */
   private double[] m_InfoGains;
 
+  /** The number of threads used to compute the info gains */
+  private int m_numExecutionSlots = 1;
+
   /**
    * Returns a string describing this attribute evaluator
    * 
@@ -109,12 +116,14 @@ public class InfoGainAttributeEval extends ASEvaluation implements
    **/
   @Override
   public Enumeration<Option> listOptions() {
-    Vector<Option> newVector = new Vector<Option>(2);
+    Vector<Option> newVector = new Vector<Option>(3);
     newVector.addElement(new Option("\ttreat missing values as a seperate "
       + "value.", "M", 0, "-M"));
     newVector.addElement(new Option(
       "\tjust binarize numeric attributes instead \n"
         + "\tof properly discretizing them.", "B", 0, "-B"));
+    newVector.addElement(new Option("\t" + numExecutionSlotsTipText()
+      + " (default 1)", "num-slots", 1, "-num-slots <int>"));
     return newVector.elements();
   }
 
@@ -136,6 +145,11 @@ public class InfoGainAttributeEval extends ASEvaluation implements
    *  of properly discretizing them.
    * </pre>
    * 
+   * <pre>
+   * -num-slots &lt;int&gt;
+   *  The number of execution slots, for example, the number of cores in the CPU. (default 1)
+   * </pre>
+   * 
    * <!-- options-end -->
    * 
    * @param options the list of options as an array of strings
@@ -147,6 +161,10 @@ public class InfoGainAttributeEval extends ASEvaluation implements
     resetOptions();
     setMissingMerge(!(Utils.getFlag('M', options)));
     setBinarizeNumericAttributes(Utils.getFlag('B', options));
+    String slots = Utils.getOption("num-slots", options);
+    if (slots.length() != 0) {
+      setNumExecutionSlots(Integer.parseInt(slots));
+    }
   }
 
   /**
@@ -156,7 +174,7 @@ public class InfoGainAttributeEval extends ASEvaluation implements
    */
   @Override
   public String[] getOptions() {
-    String[] options = new String[2];
+    String[] options = new String[4];
     int current = 0;
 
     if (!getMissingMerge()) {
@@ -165,6 +183,8 @@ public class InfoGainAttributeEval extends ASEvaluation implements
     if (getBinarizeNumericAttributes()) {
       options[current++] = "-B";
     }
+    options[current++] = "-num-slots";
+    options[current++] = "" + getNumExecutionSlots();
 
     while (current < options.length) {
       options[current++] = "";
@@ -201,6 +221,35 @@ public class InfoGainAttributeEval extends ASEvaluation implements
     return m_Binarize;
   }
 
+  /**
+   * Returns the tip text for this property
+   * 
+   * @return tip text for this property suitable for displaying in the
+   *         explorer/experimenter gui
+   */
+  public String numExecutionSlotsTipText() {
+    return "The number of execution slots, for example, the number of cores "
+      + "in the CPU.";
+  }
+
+  /**
+   * Set the number of threads to use for computing the info gains.
+   * 
+   * @param n the number of threads
+   */
+  public void setNumExecutionSlots(int n) {
+    m_numExecutionSlots = n;
+  }
+
+  /**
+   * Get the number of threads to use for computing the info gains.
+   * 
+   * @return the number of threads
+   */
+  public int getNumExecutionSlots() {
+    return m_numExecutionSlots;
+  }
+
   /**
    * Returns the tip text for this property
    * 
@@ -268,9 +317,6 @@ public class InfoGainAttributeEval extends ASEvaluation implements
     // can evaluator handle data?
     getCapabilities().testWithFail(data);
 
-    int classIndex = data.classIndex();
-    int numInstances = data.numInstances();
-
     if (!m_Binarize) {
       Discretize disTransform = new Discretize();
       disTransform.setUseBetterEncoding(true);
@@ -281,130 +327,92 @@ public class InfoGainAttributeEval extends ASEvaluation implements
       binTransform.setInputFormat(data);
       data = Filter.useFilter(data, binTransform);
     }
-    int numClasses = data.attribute(classIndex).numValues();
-
-    // Reserve space and initialize counters
-    double[][][] counts = new double[data.numAttributes()][][];
-    for (int k = 0; k < data.numAttributes(); k++) {
-      if (k != classIndex) {
-        int numValues = data.attribute(k).numValues();
-        counts[k] = new double[numValues + 1][numClasses + 1];
-      }
-    }
-
-    // Initialize counters
-    double[] temp = new double[numClasses + 1];
-    for (int k = 0; k < numInstances; k++) {
-      Instance inst = data.instance(k);
-      if (inst.classIsMissing()) {
-        temp[numClasses] += inst.weight();
-      } else {
-        temp[(int) inst.classValue()] += inst.weight();
-      }
-    }
-    for (int k = 0; k < counts.length; k++) {
-      if (k != classIndex) {
-        for (int i = 0; i < temp.length; i++) {
-          counts[k][0][i] = temp[i];
-        }
-      }
-    }
 
     // Get counts
-    for (int k = 0; k < numInstances; k++) {
-      Instance inst = data.instance(k);
-      for (int i = 0; i < inst.numValues(); i++) {
-        if (inst.index(i) != classIndex) {
-          if (inst.isMissingSparse(i) || inst.classIsMissing()) {
-            if (!inst.isMissingSparse(i)) {
-              counts[inst.index(i)][(int) inst.valueSparse(i)][numClasses] += inst
-                .weight();
-              counts[inst.index(i)][0][numClasses] -= inst.weight();
-            } else if (!inst.classIsMissing()) {
-              counts[inst.index(i)][data.attribute(inst.index(i)).numValues()][(int) inst
-                .classValue()] += inst.weight();
-              counts[inst.index(i)][0][(int) inst.classValue()] -= inst
-                .weight();
-            } else {
-              counts[inst.index(i)][data.attribute(inst.index(i)).numValues()][numClasses] += inst
-                .weight();
-              counts[inst.index(i)][0][numClasses] -= inst.weight();
-            }
-          } else {
-            counts[inst.index(i)][(int) inst.valueSparse(i)][(int) inst
-              .classValue()] += inst.weight();
-            counts[inst.index(i)][0][(int) inst.classValue()] -= inst.weight();
-          }
-        }
-      }
-    }
+    final double[][][] counts =
+      AttributeMeritEngine.computeContingencyTables(data, true,
+        m_numExecutionSlots);
 
-    // distribute missing counts if required
-    if (m_missing_merge) {
-
-      for (int k = 0; k < data.numAttributes(); k++) {
-        if (k != classIndex) {
-          int numValues = data.attribute(k).numValues();
-
-          // Compute marginals
-          double[] rowSums = new double[numValues];
-          double[] columnSums = new double[numClasses];
-          double sum = 0;
-          for (int i = 0; i < numValues; i++) {
-            for (int j = 0; j < numClasses; j++) {
-              rowSums[i] += counts[k][i][j];
-              columnSums[j] += counts[k][i][j];
+    // Compute info gains
+    m_InfoGains =
+      AttributeMeritEngine.computeMerits(data,
+        new AttributeMeritEngine.MeritFunction() {
+          @Override
+          public double merit(int attribute) {
+            double[][] table = counts[attribute];
+
+            // distribute missing counts if required
+            if (m_missing_merge) {
+              table = distributeMissing(table);
             }
-            sum += rowSums[i];
+            return ContingencyTables.entropyOverColumns(table)
+              - ContingencyTables.entropyConditionedOnRows(table);
           }
+        }, m_numExecutionSlots);
+  }
 
-          if (Utils.gr(sum, 0)) {
-            double[][] additions = new double[numValues][numClasses];
+  /**
+   * Distributes the counts for missing values across the observed values in
+   * proportion to their frequency.
+   * 
+   * @param counts the contingency table, with the counts for missing values in
+   *          the last row and column
+   * @return the contingency table without missing values (or the original
+   *         table if there are no observed values)
+   */
+  protected static double[][] distributeMissing(double[][] counts) {
+    int numValues = counts.length - 1;
+    int numClasses = counts[0].length - 1;
+
+    // Compute marginals
+    double[] rowSums = new double[numValues];
+    double[] columnSums = new double[numClasses];
+    double sum = 0;
+    for (int i = 0; i < numValues; i++) {
+      for (int j = 0; j < numClasses; j++) {
+        rowSums[i] += counts[i][j];
+        columnSums[j] += counts[i][j];
+      }
+      sum += rowSums[i];
+    }
 
-            // Compute what needs to be added to each row
-            for (int i = 0; i < numValues; i++) {
-              for (int j = 0; j < numClasses; j++) {
-                additions[i][j] = (rowSums[i] / sum) * counts[k][numValues][j];
-              }
-            }
+    if (Utils.gr(sum, 0)) {
+      double[][] additions = new double[numValues][numClasses];
 
-            // Compute what needs to be added to each column
-            for (int i = 0; i < numClasses; i++) {
-              for (int j = 0; j < numValues; j++) {
-                additions[j][i] += (columnSums[i] / sum)
-                  * counts[k][j][numClasses];
-              }
-            }
+      // Compute what needs to be added to each row
+      for (int i = 0; i < numValues; i++) {
+        for (int j = 0; j < numClasses; j++) {
+          additions[i][j] = (rowSums[i] / sum) * counts[numValues][j];
+        }
+      }
 
-            // Compute what needs to be added to each cell
-            for (int i = 0; i < numClasses; i++) {
-              for (int j = 0; j < numValues; j++) {
-                additions[j][i] += (counts[k][j][i] / sum)
-                  * counts[k][numValues][numClasses];
-              }
-            }
+      // Compute what needs to be added to each column
+      for (int i = 0; i < numClasses; i++) {
+        for (int j = 0; j < numValues; j++) {
+          additions[j][i] += (columnSums[i] / sum)
+            * counts[j][numClasses];
+        }
+      }
 
-            // Make new contingency table
-            double[][] newTable = new double[numValues][numClasses];
-            for (int i = 0; i < numValues; i++) {
-              for (int j = 0; j < numClasses; j++) {
-                newTable[i][j] = counts[k][i][j] + additions[i][j];
-              }
-            }
-            counts[k] = newTable;
-          }
+      // Compute what needs to be added to each cell
+      for (int i = 0; i < numClasses; i++) {
+        for (int j = 0; j < numValues; j++) {
+          additions[j][i] += (counts[j][i] / sum)
+            * counts[numValues][numClasses];
         }
       }
-    }
 
-    // Compute info gains
-    m_InfoGains = new double[data.numAttributes()];
-    for (int i = 0; i < data.numAttributes(); i++) {
-      if (i != classIndex) {
-        m_InfoGains[i] = (ContingencyTables.entropyOverColumns(counts[i]) - ContingencyTables
-          .entropyConditionedOnRows(counts[i]));
+      // Make new contingency table
+      double[][] newTable = new double[numValues][numClasses];
+      for (int i = 0; i < numValues; i++) {
+        for (int j = 0; j < numClasses; j++) {
+          newTable[i][j] = counts[i][j] + additions[i][j];
+        }
       }
+      return newTable;
     }
+
+    return counts;
   }
 
   /**
@@ -414,6 +422,7 @@ public class InfoGainAttributeEval extends ASEvaluation implements
     m_InfoGains = null;
     m_missing_merge = true;
     m_Binarize = false;
+    m_numExecutionSlots = 1;
   }
 
   /**
@@ -71,6 +71,12 @@ import weka.filters.unsupervised.attribute.Remove;
  *  (passed on to OneR, default = 6)
  * </pre>
  * 
+ * <pre>
+ * -num-slots &lt;int&gt;
+ *  Number of attributes to evaluate in parallel.
+ *  (default = 1)
+ * </pre>
+ * 
  * <!-- options-end -->
  * 
  * @author Mark Hall (mhall@cs.waikato.ac.nz)
@@ -97,6 +103,12 @@ public class OneRAttributeEval extends ASEvaluation implements
   /** Passed on to OneR */
   private int m_minBucketSize;
 
+  /** Number of attributes to evaluate in parallel */
+  private int m_numExecutionSlots;
+
+  /** The merit of each attribute, if evaluated in parallel */
+  private double[] m_merits;
+
   /**
    * Returns a string describing this attribute evaluator
    * 
@@ -215,6 +227,34 @@ public class OneRAttributeEval extends ASEvaluation implements
     return m_minBucketSize;
   }
 
+  /**
+   * Returns a string for this option suitable for display in the gui as a tip
+   * text
+   * 
+   * @return a string describing this option
+   */
+  public String numExecutionSlotsTipText() {
+    return "The number of attributes to evaluate in parallel.";
+  }
+
+  /**
+   * Set the number of attributes to evaluate in parallel
+   * 
+   * @param n the number of attributes to evaluate in parallel
+   */
+  public void setNumExecutionSlots(int n) {
+    m_numExecutionSlots = n;
+  }
+
+  /**
+   * Get the number of attributes to evaluate in parallel
+   * 
+   * @return the number of attributes to evaluate in parallel
+   */
+  public int getNumExecutionSlots() {
+    return m_numExecutionSlots;
+  }
+
   /**
    * Returns true if the training data is to be used for evaluation
    * 
@@ -232,7 +272,7 @@ public class OneRAttributeEval extends ASEvaluation implements
   @Override
   public Enumeration<Option> listOptions() {
 
-    Vector<Option> newVector = new Vector<Option>(4);
+    Vector<Option> newVector = new Vector<Option>(5);
 
     newVector.addElement(new Option(
       "\tRandom number seed for cross validation\n" + "\t(default = 1)", "S",
@@ -249,6 +289,10 @@ public class OneRAttributeEval extends ASEvaluation implements
       + "\t(passed on to " + "OneR, default = 6)", "B", 1,
       "-B <minimum bucket size>"));
 
+    newVector.addElement(new Option(
+      "\tNumber of attributes to evaluate in parallel.\n" + "\t(default = 1)",
+      "num-slots", 1, "-num-slots <int>"));
+
     return newVector.elements();
   }
 
@@ -282,6 +326,12 @@ public class OneRAttributeEval extends ASEvaluation implements
    *  (passed on to OneR, default = 6)
    * </pre>
    * 
+   * <pre>
+   * -num-slots &lt;int&gt;
+   *  Number of attributes to evaluate in parallel.
+   *  (default = 1)
+   * </pre>
+   * 
    * <!-- options-end -->
    * 
    * @param options the list of options as an array of strings
@@ -305,6 +355,11 @@ public class OneRAttributeEval extends ASEvaluation implements
       setMinimumBucketSize(Integer.parseInt(temp));
     }
 
+    temp = Utils.getOption("num-slots", options);
+    if (temp.length() != 0) {
+      setNumExecutionSlots(Integer.parseInt(temp));
+    }
+
     setEvalUsingTrainingData(Utils.getFlag('D', options));
     Utils.checkForRemainingOptions(options);
   }
@@ -329,6 +384,8 @@ public class OneRAttributeEval extends ASEvaluation implements
     options.add("" + getFolds());
     options.add("-B");
     options.add("" + getMinimumBucketSize());
+    options.add("-num-slots");
+    options.add("" + getNumExecutionSlots());
 
     return options.toArray(new String[0]);
   }
@@ -378,6 +435,18 @@ public class OneRAttributeEval extends ASEvaluation implements
     getCapabilities().testWithFail(data);
 
     m_trainInstances = data;
+    m_merits = null;
+
+    if (m_numExecutionSlots > 1) {
+      m_merits =
+        AttributeMeritEngine.computeMerits(data,
+          new AttributeMeritEngine.MeritFunction() {
+            @Override
+            public double merit(int attribute) throws Exception {
+              return computeMerit(attribute);
+            }
+          }, m_numExecutionSlots);
+    }
   }
 
   /**
@@ -389,6 +458,8 @@ public class OneRAttributeEval extends ASEvaluation implements
     m_folds = 10;
     m_evalUsingTrainingData = false;
     m_minBucketSize = 6; // default used by OneR
+    m_numExecutionSlots = 1;
+    m_merits = null;
   }
 
   /**
@@ -400,6 +471,22 @@ public class OneRAttributeEval extends ASEvaluation implements
    */
   @Override
   public double evaluateAttribute(int attribute) throws Exception {
+    if (m_merits != null) {
+      return m_merits[attribute];
+    }
+
+    return computeMerit(attribute);
+  }
+
+  /**
+   * Computes the merit of an attribute by building OneR on it (and the class)
+   * alone.
+   * 
+   * @param attribute the index of the attribute to be evaluated
+   * @return the accuracy (in percent) of OneR using the attribute
+   * @throws Exception if the attribute could not be evaluated
+   */
+  protected double computeMerit(int attribute) throws Exception {
     int[] featArray = new int[2]; // feat + class
     double errorRate;
     Evaluation o_Evaluation;
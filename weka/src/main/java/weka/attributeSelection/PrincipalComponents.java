@@ -29,6 +29,7 @@ import no.uib.cipr.matrix.*;
 
 import weka.core.*;
 import weka.core.Capabilities.Capability;
+import weka.core.matrix.CovarianceAccumulator;
 import weka.filters.Filter;
 import weka.filters.unsupervised.attribute.*;
 
@@ -72,6 +73,12 @@ import weka.filters.unsupervised.attribute.*;
  *  transformed attribute names. (-1 = include all)
  * </pre>
  * 
+ * <pre>
+ * -num-slots &lt;num&gt;
+ *  Number of threads to use for computing the
+ *  correlation/covariance matrix. (default = 1)
+ * </pre>
+ * 
  * <!-- options-end -->
  * 
  * @author Mark Hall (mhall@cs.waikato.ac.nz)
@@ -159,6 +166,9 @@ public class PrincipalComponents extends UnsupervisedAttributeEvaluator
   /** maximum number of attributes in the transformed attribute name */
   private int m_maxAttrsInName = 5;
 
+  /** the number of threads to use for computing the matrix */
+  private int m_numExecutionSlots = 1;
+
   /**
    * holds the transposed eigenvectors for converting back to the original space
    */
@@ -188,7 +198,7 @@ public class PrincipalComponents extends UnsupervisedAttributeEvaluator
    **/
   @Override
   public Enumeration<Option> listOptions() {
-    Vector<Option> newVector = new Vector<Option>(4);
+    Vector<Option> newVector = new Vector<Option>(5);
 
     newVector.addElement(new Option("\tCenter (rather than standardize) the"
       + "\n\tdata and compute PCA using the covariance (rather"
@@ -204,6 +214,11 @@ public class PrincipalComponents extends UnsupervisedAttributeEvaluator
     newVector.addElement(new Option(
       "\tMaximum number of attributes to include in "
         + "\n\ttransformed attribute names. (-1 = include all)", "A", 1, "-A"));
+
+    newVector.addElement(new Option(
+      "\tNumber of threads to use for computing the"
+        + "\n\tcorrelation/covariance matrix. (default = 1)", "num-slots", 1,
+      "-num-slots <num>"));
     return newVector.elements();
   }
 
@@ -240,6 +255,12 @@ public class PrincipalComponents extends UnsupervisedAttributeEvaluator
    *  transformed attribute names. (-1 = include all)
    * </pre>
    *
+   * <pre>
+   * -num-slots &lt;num&gt;
+   *  Number of threads to use for computing the
+   *  correlation/covariance matrix. (default = 1)
+   * </pre>
+   *
    * <!-- options-end -->
    *
    * @param options the list of options as an array of strings
@@ -260,6 +281,10 @@ public class PrincipalComponents extends UnsupervisedAttributeEvaluator
     if (optionString.length() != 0) {
       setMaximumAttributeNames(Integer.parseInt(optionString));
     }
+    optionString = Utils.getOption("num-slots", options);
+    if (optionString.length() != 0) {
+      setNumExecutionSlots(Integer.parseInt(optionString));
+    }
 
     setTransformBackToOriginal(Utils.getFlag('O', options));
     setCenterData(Utils.getFlag('C', options));
@@ -272,6 +297,7 @@ public class PrincipalComponents extends UnsupervisedAttributeEvaluator
     m_coverVariance = 0.95;
     m_sumOfEigenValues = 0.0;
     m_transBackToOriginal = false;
+    m_numExecutionSlots = 1;
   }
 
   /**
@@ -366,6 +392,35 @@ public class PrincipalComponents extends UnsupervisedAttributeEvaluator
     return m_maxAttrsInName;
   }
 
+  /**
+   * Returns the tip text for this property
+   *
+   * @return tip text for this property suitable for displaying in the
+   *         explorer/experimenter gui
+   */
+  public String numExecutionSlotsTipText() {
+    return "The number of threads to use for computing the "
+      + "correlation/covariance matrix.";
+  }
+
+  /**
+   * Sets the number of threads to use for computing the matrix.
+   *
+   * @param n the number of threads
+   */
+  public void setNumExecutionSlots(int n) {
+    m_numExecutionSlots = n;
+  }
+
+  /**
+   * Gets the number of threads to use for computing the matrix.
+   *
+   * @return the number of threads
+   */
+  public int getNumExecutionSlots() {
+    return m_numExecutionSlots;
+  }
+
   /**
    * Returns the tip text for this property
    *
@@ -421,6 +476,11 @@ public class PrincipalComponents extends UnsupervisedAttributeEvaluator
       options.add("-O");
     }
 
+    if (getNumExecutionSlots() != 1) {
+      options.add("-num-slots");
+      options.add("" + getNumExecutionSlots());
+    }
+
     return options.toArray(new String[0]);
   }
 
@@ -716,18 +776,16 @@ public class PrincipalComponents extends UnsupervisedAttributeEvaluator
       m_trainInstances = Filter.useFilter(m_trainInstances, m_standardizeFilter);
     }
 
-    // now compute the covariance matrix
+    // now compute the covariance matrix in a single pass over the data. The
+    // data has been centered already, so the products about the origin are
+    // used
+    CovarianceAccumulator acc = CovarianceAccumulator.compute(m_trainInstances,
+      null, m_numExecutionSlots);
+    double denom = m_trainInstances.numInstances() - 1;
     m_correlation = new UpperSymmDenseMatrix(m_numAttribs);
     for (int i = 0; i < m_numAttribs; i++) {
       for (int j = i; j < m_numAttribs; j++) {
-
-        double cov = 0;
-        for (Instance inst : m_trainInstances) {
-          cov += inst.value(i) * inst.value(j);
-        }
-
-        cov /= m_trainInstances.numInstances() - 1;
-        m_correlation.set(i, j, cov);
+        m_correlation.set(i, j, acc.getCrossProduct(i, j) / denom);
       }
     }
   }
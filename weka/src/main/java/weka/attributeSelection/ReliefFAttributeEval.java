@@ -21,23 +21,37 @@
 
 package weka.attributeSelection;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Enumeration;
+import java.util.List;
 import java.util.Random;
 import java.util.Vector;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 import weka.core.Attribute;
 import weka.core.Capabilities;
 import weka.core.Capabilities.Capability;
+import weka.core.DenseInstance;
+import weka.core.DistanceFunction;
 import weka.core.Instance;
 import weka.core.Instances;
 import weka.core.Option;
 import weka.core.OptionHandler;
 import weka.core.RevisionUtils;
+import weka.core.SerializedObject;
 import weka.core.TechnicalInformation;
 import weka.core.TechnicalInformation.Field;
 import weka.core.TechnicalInformation.Type;
 import weka.core.TechnicalInformationHandler;
 import weka.core.Utils;
+import weka.core.neighboursearch.BallTree;
+import weka.core.neighboursearch.CoverTree;
+import weka.core.neighboursearch.KDTree;
+import weka.core.neighboursearch.LinearNNSearch;
+import weka.core.neighboursearch.NearestNeighbourSearch;
 
 /**
  * <!-- globalinfo-start --> ReliefFAttributeEval :<br/>
@@ -137,6 +151,20 @@ import weka.core.Utils;
  *  (Default = 2)
  * </pre>
  * 
+ * <pre>
+ * -S &lt;nearest neighbour search&gt;
+ *  The nearest neighbour search algorithm to use.
+ *  LinearNNSearch uses an exhaustive scan.
+ *  (Default = weka.core.neighboursearch.LinearNNSearch)
+ * </pre>
+ * 
+ * <pre>
+ * -num-slots &lt;int&gt;
+ *  Number of threads to use for processing
+ *  the sampled instances.
+ *  (Default = 1)
+ * </pre>
+ * 
  * <!-- options-end -->
  * 
  * @author Mark Hall (mhall@cs.waikato.ac.nz)
@@ -166,24 +194,6 @@ public class ReliefFAttributeEval extends ASEvaluation implements
   /** The number of classes if class is nominal */
   private int m_numClasses;
 
-  /**
-   * Used to hold the probability of a different class val given nearest
-   * instances (numeric class)
-   */
-  private double m_ndc;
-
-  /**
-   * Used to hold the prob of different value of an attribute given nearest
-   * instances (numeric class case)
-   */
-  private double[] m_nda;
-
-  /**
-   * Used to hold the prob of a different class val and different att val given
-   * nearest instances (numeric class case)
-   */
-  private double[] m_ndcda;
-
   /** Holds the weights that relief assigns to attributes */
   private double[] m_weights;
 
@@ -199,24 +209,12 @@ public class ReliefFAttributeEval extends ASEvaluation implements
   /** The number of nearest hits/misses */
   private int m_Knn;
 
-  /** k nearest scores + instance indexes for n classes */
-  private double[][][] m_karray;
-
   /** Upper bound for numeric attributes */
   private double[] m_maxArray;
 
   /** Lower bound for numeric attributes */
   private double[] m_minArray;
 
-  /** Keep track of the farthest instance for each class */
-  private double[] m_worst;
-
-  /** Index in the m_karray of the farthest instance for each class */
-  private int[] m_index;
-
-  /** Number of nearest neighbours stored of each class */
-  private int[] m_stored;
-
   /** Random number seed used for sampling instances */
   private int m_seed;
 
@@ -233,6 +231,24 @@ public class ReliefFAttributeEval extends ASEvaluation implements
   /** Weight by distance rather than equal weights */
   private boolean m_weightByDistance;
 
+  /**
+   * The nearest neighbour search algorithm to use. LinearNNSearch selects the
+   * built-in exhaustive scan
+   */
+  private NearestNeighbourSearch m_NNSearch = new LinearNNSearch();
+
+  /** The training instances of each class (nearest neighbour search only) */
+  private Instances[] m_classSubsets;
+
+  /** The nearest neighbour search of each class, shared by all threads */
+  private NearestNeighbourSearch[] m_searches;
+
+  /** Whether several threads may query the searches at the same time */
+  private boolean m_concurrentSearch;
+
+  /** The number of threads to use for processing the sampled instances */
+  private int m_numExecutionSlots = 1;
+
   /**
    * Constructor
    */
@@ -309,7 +325,7 @@ public class ReliefFAttributeEval extends ASEvaluation implements
    **/
   @Override
   public Enumeration<Option> listOptions() {
-    Vector<Option> newVector = new Vector<Option>(4);
+    Vector<Option> newVector = new Vector<Option>(7);
     newVector.addElement(new Option("\tSpecify the number of instances to\n"
       + "\tsample when estimating attributes.\n"
       + "\tIf not specified, then all instances\n" + "\twill be used.", "M", 1,
@@ -328,6 +344,15 @@ public class ReliefFAttributeEval extends ASEvaluation implements
       + "\tSensible value=1/5 to 1/10 of the\n"
       + "\tnumber of nearest neighbours.\n" + "\t(Default = 2)", "A", 1,
       "-A <num>"));
+    newVector.addElement(new Option(
+      "\tThe nearest neighbour search algorithm to use.\n"
+        + "\tLinearNNSearch uses an exhaustive scan.\n"
+        + "\t(Default = weka.core.neighboursearch.LinearNNSearch)", "S", 1,
+      "-S <nearest neighbour search>"));
+    newVector.addElement(new Option(
+      "\tNumber of threads to use for processing\n"
+        + "\tthe sampled instances.\n" + "\t(Default = 1)", "num-slots", 1,
+      "-num-slots <int>"));
     return newVector.elements();
   }
 
@@ -375,6 +400,20 @@ public class ReliefFAttributeEval extends ASEvaluation implements
    *  (Default = 2)
    * </pre>
    * 
+   * <pre>
+   * -S &lt;nearest neighbour search&gt;
+   *  The nearest neighbour search algorithm to use.
+   *  LinearNNSearch uses an exhaustive scan.
+   *  (Default = weka.core.neighboursearch.LinearNNSearch)
+   * </pre>
+   * 
+   * <pre>
+   * -num-slots &lt;int&gt;
+   *  Number of threads to use for processing
+   *  the sampled instances.
+   *  (Default = 1)
+   * </pre>
+   * 
    * <!-- options-end -->
    * 
    * @param options the list of options as an array of strings
@@ -409,6 +448,26 @@ public class ReliefFAttributeEval extends ASEvaluation implements
       setWeightByDistance(true); // turn on weighting by distance
       setSigma(Integer.parseInt(optionString));
     }
+
+    optionString = Utils.getOption('S', options);
+
+    if (optionString.length() != 0) {
+      String[] nnSearchClassSpec = Utils.splitOptions(optionString);
+      if (nnSearchClassSpec.length == 0) {
+        throw new Exception("Invalid NearestNeighbourSearch algorithm "
+          + "specification string.");
+      }
+      String className = nnSearchClassSpec[0];
+      nnSearchClassSpec[0] = "";
+      setNearestNeighbourSearchAlgorithm((NearestNeighbourSearch) Utils
+        .forName(NearestNeighbourSearch.class, className, nnSearchClassSpec));
+    }
+
+    optionString = Utils.getOption("num-slots", options);
+
+    if (optionString.length() != 0) {
+      setNumExecutionSlots(Integer.parseInt(optionString));
+    }
   }
 
   /**
@@ -560,6 +619,67 @@ public class ReliefFAttributeEval extends ASEvaluation implements
     return m_weightByDistance;
   }
 
+  /**
+   * Returns the tip text for this property
+   * 
+   * @return tip text for this property suitable for displaying in the
+   *         explorer/experimenter gui
+   */
+  public String nearestNeighbourSearchAlgorithmTipText() {
+    return "The nearest neighbour search algorithm to use. LinearNNSearch "
+      + "(the default) uses an exact exhaustive scan with ReliefF's own "
+      + "distance. Other algorithms (e.g. KDTree or BallTree) search one "
+      + "structure per class value using their own distance function, so the "
+      + "neighbours they find approximate those of ReliefF's distance.";
+  }
+
+  /**
+   * Set the nearest neighbour search algorithm to use.
+   * 
+   * @param search the nearest neighbour search algorithm
+   */
+  public void setNearestNeighbourSearchAlgorithm(NearestNeighbourSearch search) {
+    m_NNSearch = search;
+  }
+
+  /**
+   * Get the nearest neighbour search algorithm to use.
+   * 
+   * @return the nearest neighbour search algorithm
+   */
+  public NearestNeighbourSearch getNearestNeighbourSearchAlgorithm() {
+    return m_NNSearch;
+  }
+
+  /**
+   * Returns the tip text for this property
+   * 
+   * @return tip text for this property suitable for displaying in the
+   *         explorer/experimenter gui
+   */
+  public String numExecutionSlotsTipText() {
+    return "The number of threads to use for processing the sampled "
+      + "instances.";
+  }
+
+  /**
+   * Set the number of threads to use for processing the sampled instances.
+   * 
+   * @param n the number of threads
+   */
+  public void setNumExecutionSlots(int n) {
+    m_numExecutionSlots = n;
+  }
+
+  /**
+   * Get the number of threads to use for processing the sampled instances.
+   * 
+   * @return the number of threads
+   */
+  public int getNumExecutionSlots() {
+    return m_numExecutionSlots;
+  }
+
   /**
    * Gets the current settings of ReliefFAttributeEval.
    * 
@@ -586,6 +706,12 @@ public class ReliefFAttributeEval extends ASEvaluation implements
       options.add("" + getSigma());
     }
 
+    options.add("-S");
+    options.add((m_NNSearch.getClass().getName() + " " + Utils
+      .joinOptions(m_NNSearch.getOptions())).trim());
+    options.add("-num-slots");
+    options.add("" + getNumExecutionSlots());
+
     return options.toArray(new String[0]);
   }
 
@@ -679,10 +805,7 @@ public class ReliefFAttributeEval extends ASEvaluation implements
     if (!m_numericClass) {
       m_numClasses = m_trainInstances.attribute(m_classIndex).numValues();
     } else {
-      m_ndc = 0;
       m_numClasses = 1;
-      m_nda = new double[m_numAttribs];
-      m_ndcda = new double[m_numAttribs];
     }
 
     if (m_weightByDistance) // set up the rank based weights
@@ -697,9 +820,6 @@ public class ReliefFAttributeEval extends ASEvaluation implements
 
     // the final attribute weights
     m_weights = new double[m_numAttribs];
-    // num classes (1 for numeric class) knn neighbours,
-    // and 0 = distance, 1 = instance index
-    m_karray = new double[m_numClasses][m_Knn][2];
 
     if (!m_numericClass) {
       m_classProbs = new double[m_numClasses];
@@ -715,9 +835,6 @@ public class ReliefFAttributeEval extends ASEvaluation implements
       }
     }
 
-    m_worst = new double[m_numClasses];
-    m_index = new int[m_numClasses];
-    m_stored = new int[m_numClasses];
     m_minArray = new double[m_numAttribs];
     m_maxArray = new double[m_numAttribs];
 
@@ -735,7 +852,8 @@ public class ReliefFAttributeEval extends ASEvaluation implements
       totalInstances = m_sampleM;
     }
 
-    // process each instance, updating attribute weights
+    // the instances to process
+    final int[] sample = new int[totalInstances];
     for (int i = 0; i < totalInstances; i++) {
       if (totalInstances == m_numInstances) {
         z = i;
@@ -746,25 +864,83 @@ public class ReliefFAttributeEval extends ASEvaluation implements
       if (z < 0) {
         z *= -1;
       }
+      sample[i] = z;
+    }
 
-      if (!(m_trainInstances.instance(z).isMissing(m_classIndex))) {
-        // first clear the knn and worst index stuff for the classes
-        for (int j = 0; j < m_numClasses; j++) {
-          m_index[j] = m_stored[j] = 0;
-
-          for (int k = 0; k < m_Knn; k++) {
-            m_karray[j][k][0] = m_karray[j][k][1] = 0;
-          }
+    // split the training instances by class and build the nearest neighbour
+    // search of each class. The searches are built once and shared by all
+    // threads
+    m_classSubsets = null;
+    m_searches = null;
+    if (!(m_NNSearch instanceof LinearNNSearch)) {
+      // the distance of each search is normalized with the ranges of all
+      // the data, not just with those of its class
+      Instance[] rangeInstances = new Instance[2];
+      for (int j = 0; j < 2; j++) {
+        double[] vals = new double[m_numAttribs];
+        for (int i = 0; i < m_numAttribs; i++) {
+          double[] range = (j == 0) ? m_minArray : m_maxArray;
+          vals[i] = (m_trainInstances.attribute(i).isNumeric()
+            && !Double.isNaN(range[i])) ? range[i] : Utils.missingValue();
         }
-
-        findKHitMiss(z);
-
+        rangeInstances[j] = new DenseInstance(1.0, vals);
+        rangeInstances[j].setDataset(m_trainInstances);
+      }
+      m_classSubsets = new Instances[m_numClasses];
+      for (int i = 0; i < m_numClasses; i++) {
+        m_classSubsets[i] = new Instances(m_trainInstances, 0);
+      }
+      for (int i = 0; i < m_numInstances; i++) {
+        Instance inst = m_trainInstances.instance(i);
         if (m_numericClass) {
-          updateWeightsNumericClass(z);
-        } else {
-          updateWeightsDiscreteClass(z);
+          m_classSubsets[0].add(inst);
+        } else if (!inst.classIsMissing()) {
+          m_classSubsets[(int) inst.classValue()].add(inst);
+        }
+      }
+      m_searches = new NearestNeighbourSearch[m_numClasses];
+      for (int i = 0; i < m_numClasses; i++) {
+        if (m_classSubsets[i].numInstances() == 0) {
+          continue;
         }
+        m_searches[i] =
+          (NearestNeighbourSearch) new SerializedObject(m_NNSearch)
+            .getObject();
+        m_searches[i].setInstances(m_classSubsets[i]);
+        for (Instance range : rangeInstances) {
+          m_searches[i].addInstanceInfo(range);
+        }
+      }
+      m_concurrentSearch = allowsConcurrentQueries(m_NNSearch);
+    }
+
+    // process each instance, updating attribute weights. The nearest
+    // neighbours are found by several threads, but the weight updates are
+    // applied in sample order, so the weights don't depend on the number of
+    // threads
+    ReliefWorker accumulator = new ReliefWorker();
+    int numWorkers =
+      Math.max(1, Math.min(m_numExecutionSlots, totalInstances));
+    try {
+      if (numWorkers == 1) {
+        for (int i = 0; i < totalInstances; i++) {
+          if (accumulator.findNeighbours(sample[i])) {
+            accumulator.updateWeights(sample[i]);
+          }
+        }
+      } else {
+        processInParallel(sample, accumulator, numWorkers);
       }
+    } finally {
+      m_classSubsets = null;
+      m_searches = null;
+    }
+
+    double ndc = accumulator.m_ndc;
+    double[] nda = accumulator.m_nda;
+    double[] ndcda = accumulator.m_ndcda;
+    for (int i = 0; i < m_numAttribs; i++) {
+      m_weights[i] += accumulator.m_weightSums[i];
     }
 
     // now scale weights by 1/m_numInstances (nominal class) or
@@ -773,8 +949,8 @@ public class ReliefFAttributeEval extends ASEvaluation implements
     for (int i = 0; i < m_numAttribs; i++) {
       if (i != m_classIndex) {
         if (m_numericClass) {
-          m_weights[i] = m_ndcda[i] / m_ndc
-            - ((m_nda[i] - m_ndcda[i]) / (totalInstances - m_ndc));
+          m_weights[i] = ndcda[i] / ndc
+            - ((nda[i] - ndcda[i]) / (totalInstances - ndc));
         } else {
           m_weights[i] *= (1.0 / totalInstances);
         }
@@ -784,6 +960,79 @@ public class ReliefFAttributeEval extends ASEvaluation implements
     }
   }
 
+
+  /**
+   * Finds the nearest neighbours of the sampled instances with several
+   * threads and updates the weights with them. The sample is processed in
+   * blocks: the threads find the neighbours of a block, which are then used
+   * to update the weights in sample order before the next block is started.
+   * 
+   * @param sample the indexes of the sampled instances
+   * @param accumulator the worker that accumulates the weight updates
+   * @param numWorkers the number of threads to use
+   * @throws Exception if the nearest neighbours can't be found
+   */
+  protected void processInParallel(final int[] sample,
+    ReliefWorker accumulator, int numWorkers) throws Exception {
+
+    final Neighbours[] found =
+      new Neighbours[Math.min(256 * numWorkers, sample.length)];
+    ReliefWorker[] finders = new ReliefWorker[numWorkers];
+    for (int t = 0; t < numWorkers; t++) {
+      finders[t] = new ReliefWorker();
+    }
+
+    ExecutorService pool = Executors.newFixedThreadPool(numWorkers);
+    try {
+      for (int start = 0; start < sample.length; start += found.length) {
+        final int offset = start;
+        int length = Math.min(found.length, sample.length - start);
+        List<Callable<Void>> tasks = new ArrayList<Callable<Void>>();
+        for (int t = 0; t < numWorkers; t++) {
+          final ReliefWorker finder = finders[t];
+          final int from = (int) ((long) length * t / numWorkers);
+          final int to = (int) ((long) length * (t + 1) / numWorkers);
+          tasks.add(new Callable<Void>() {
+            @Override
+            public Void call() throws Exception {
+              for (int i = from; i < to; i++) {
+                found[i] =
+                  finder.findNeighbours(sample[offset + i]) ? finder
+                    .getNeighbours() : null;
+              }
+              return null;
+            }
+          });
+        }
+        AttributeMeritEngine.runTasks(tasks, pool);
+
+        for (int i = 0; i < length; i++) {
+          if (found[i] != null) {
+            accumulator.setNeighbours(found[i]);
+            accumulator.updateWeights(sample[offset + i]);
+          }
+        }
+      }
+    } finally {
+      pool.shutdownNow();
+    }
+  }
+
+  /**
+   * Returns true if several threads can query the given search at the same
+   * time. The tree searches keep no state during a query apart from the
+   * distances of the last query, which are recomputed by the caller, and
+   * their performance statistics, which are only collected on request.
+   * 
+   * @param search the nearest neighbour search
+   * @return true if concurrent queries are safe
+   */
+  protected static boolean allowsConcurrentQueries(
+    NearestNeighbourSearch search) {
+    return ((search instanceof KDTree) || (search instanceof BallTree)
+      || (search instanceof CoverTree)) && !search.getMeasurePerformance();
+  }
+
   /**
    * Evaluates an individual attribute using ReliefF's instance based approach.
    * The actual work is done by buildEvaluator which evaluates all features.
@@ -806,6 +1055,8 @@ public class ReliefFAttributeEval extends ASEvaluation implements
     m_sigma = 2;
     m_weightByDistance = false;
     m_seed = 1;
+    m_NNSearch = new LinearNNSearch();
+    m_numExecutionSlots = 1;
   }
 
   /**
@@ -949,359 +1200,541 @@ public class ReliefFAttributeEval extends ASEvaluation implements
   }
 
   /**
-   * update attribute weights given an instance when the class is numeric
-   * 
-   * @param instNum the index of the instance to use when updating weights
+   * The nearest hits and misses found for a sampled instance.
    */
-  private void updateWeightsNumericClass(int instNum) {
-    int i, j;
-    double temp, temp2;
-    int[] tempSorted = null;
-    double[] tempDist = null;
-    double distNorm = 1.0;
-    int firstI, secondI;
+  protected static class Neighbours {
 
-    Instance inst = m_trainInstances.instance(instNum);
+    /** Number of nearest neighbours stored of each class */
+    protected int[] m_stored;
 
-    // sort nearest neighbours and set up normalization variable
-    if (m_weightByDistance) {
-      tempDist = new double[m_stored[0]];
+    /** The distances of the nearest neighbours of each class */
+    protected double[][] m_distances;
 
-      for (j = 0, distNorm = 0; j < m_stored[0]; j++) {
-        // copy the distances
-        tempDist[j] = m_karray[0][j][0];
-        // sum normalizer
-        distNorm += m_weightsByRank[j];
-      }
+    /** The nearest neighbours of each class */
+    protected Instance[][] m_instances;
+  }
 
-      tempSorted = Utils.sort(tempDist);
+  /**
+   * Finds the nearest hits and misses of sampled instances and accumulates the
+   * resulting updates of the attribute weights. Each thread uses its own
+   * worker.
+   */
+  protected class ReliefWorker {
+
+    /** k nearest scores + instance indexes for n classes */
+    protected double[][][] m_karray;
+
+    /** k nearest instances for n classes */
+    protected Instance[][] m_neighbours;
+
+    /** Keep track of the farthest instance for each class */
+    protected double[] m_worst;
+
+    /** Index in the m_karray of the farthest instance for each class */
+    protected int[] m_index;
+
+    /** Number of nearest neighbours stored of each class */
+    protected int[] m_stored;
+
+    /** The weight updates accumulated by this worker (discrete class) */
+    protected double[] m_weightSums;
+
+    /**
+     * Used to hold the probability of a different class val given nearest
+     * instances (numeric class)
+     */
+    protected double m_ndc;
+
+    /**
+     * Used to hold the prob of different value of an attribute given nearest
+     * instances (numeric class case)
+     */
+    protected double[] m_nda;
+
+    /**
+     * Used to hold the prob of a different class val and different att val
+     * given nearest instances (numeric class case)
+     */
+    protected double[] m_ndcda;
+
+    /**
+     * Constructor.
+     */
+    protected ReliefWorker() {
+      // num classes (1 for numeric class) knn neighbours,
+      // and 0 = distance, 1 = instance index
+      m_karray = new double[m_numClasses][m_Knn][2];
+      m_neighbours = new Instance[m_numClasses][m_Knn];
+      m_worst = new double[m_numClasses];
+      m_index = new int[m_numClasses];
+      m_stored = new int[m_numClasses];
+      m_weightSums = new double[m_numAttribs];
+      m_nda = new double[m_numAttribs];
+      m_ndcda = new double[m_numAttribs];
     }
 
-    for (i = 0; i < m_stored[0]; i++) {
-      // P diff prediction (class) given nearest instances
-      if (m_weightByDistance) {
-        temp = difference(
-          m_classIndex,
-          inst.value(m_classIndex),
-          m_trainInstances.instance((int) m_karray[0][tempSorted[i]][1]).value(
-            m_classIndex));
-        temp *= (m_weightsByRank[i] / distNorm);
-      } else {
-        temp = difference(m_classIndex, inst.value(m_classIndex),
-          m_trainInstances.instance((int) m_karray[0][i][1])
-            .value(m_classIndex));
-        temp *= (1.0 / m_stored[0]); // equal influence
+    /**
+     * Finds the nearest hits and misses of a sampled instance.
+     * 
+     * @param z the index of the sampled instance
+     * @return false if the instance has a missing class value and is to be
+     *         skipped
+     * @throws Exception if the nearest neighbours can't be found
+     */
+    protected boolean findNeighbours(int z) throws Exception {
+      if (m_trainInstances.instance(z).isMissing(m_classIndex)) {
+        return false;
       }
 
-      m_ndc += temp;
+      // first clear the knn and worst index stuff for the classes
+      for (int j = 0; j < m_numClasses; j++) {
+        m_index[j] = m_stored[j] = 0;
 
-      Instance cmp;
-      cmp = (m_weightByDistance) ? m_trainInstances
-        .instance((int) m_karray[0][tempSorted[i]][1]) : m_trainInstances
-        .instance((int) m_karray[0][i][1]);
-
-      double temp_diffP_diffA_givNearest = difference(m_classIndex,
-        inst.value(m_classIndex), cmp.value(m_classIndex));
-      // now the attributes
-      for (int p1 = 0, p2 = 0; p1 < inst.numValues() || p2 < cmp.numValues();) {
-        if (p1 >= inst.numValues()) {
-          firstI = m_trainInstances.numAttributes();
-        } else {
-          firstI = inst.index(p1);
+        for (int k = 0; k < m_Knn; k++) {
+          m_karray[j][k][0] = m_karray[j][k][1] = 0;
         }
-        if (p2 >= cmp.numValues()) {
-          secondI = m_trainInstances.numAttributes();
-        } else {
-          secondI = cmp.index(p2);
+      }
+
+      if (m_searches != null) {
+        findKHitMissBySearch(z);
+      } else {
+        findKHitMiss(z);
+      }
+      return true;
+    }
+
+    /**
+     * Updates the attribute weights with the nearest hits and misses of a
+     * sampled instance.
+     * 
+     * @param z the index of the sampled instance
+     */
+    protected void updateWeights(int z) {
+      if (m_numericClass) {
+        updateWeightsNumericClass(z);
+      } else {
+        updateWeightsDiscreteClass(z);
+      }
+    }
+
+    /**
+     * Returns a copy of the nearest hits and misses found last.
+     * 
+     * @return the neighbours
+     */
+    protected Neighbours getNeighbours() {
+      Neighbours result = new Neighbours();
+      result.m_stored = m_stored.clone();
+      result.m_distances = new double[m_numClasses][];
+      result.m_instances = new Instance[m_numClasses][];
+      for (int j = 0; j < m_numClasses; j++) {
+        result.m_distances[j] = new double[m_stored[j]];
+        for (int k = 0; k < m_stored[j]; k++) {
+          result.m_distances[j][k] = m_karray[j][k][0];
         }
-        if (firstI == m_trainInstances.classIndex()) {
-          p1++;
-          continue;
+        result.m_instances[j] = Arrays.copyOf(m_neighbours[j], m_stored[j]);
+      }
+      return result;
+    }
+
+    /**
+     * Sets the nearest hits and misses to use for the next weight update.
+     * 
+     * @param neighbours the neighbours, found by any worker
+     */
+    protected void setNeighbours(Neighbours neighbours) {
+      for (int j = 0; j < m_numClasses; j++) {
+        m_stored[j] = neighbours.m_stored[j];
+        for (int k = 0; k < m_stored[j]; k++) {
+          m_karray[j][k][0] = neighbours.m_distances[j][k];
+          m_neighbours[j][k] = neighbours.m_instances[j][k];
         }
-        if (secondI == m_trainInstances.classIndex()) {
-          p2++;
+      }
+    }
+
+    /**
+     * Find the K nearest instances to supplied instance if the class is
+     * numeric, or the K nearest Hits (same class) and Misses (K from each of
+     * the other classes) if the class is discrete, using the nearest neighbour
+     * search built for each class.
+     * 
+     * @param instNum the index of the instance to find nearest neighbours of
+     * @throws Exception if the nearest neighbours can't be found
+     */
+    protected void findKHitMissBySearch(int instNum) throws Exception {
+      Instance thisInst = m_trainInstances.instance(instNum);
+      int own = m_numericClass ? 0 : (int) thisInst.classValue();
+      double[] thisVals = thisInst.toDoubleArray();
+
+      for (int cl = 0; cl < m_numClasses; cl++) {
+        if (m_searches[cl] == null) {
           continue;
         }
-        temp = 0.0;
-        temp2 = 0.0;
-
-        if (firstI == secondI) {
-          j = firstI;
-          temp = difference(j, inst.valueSparse(p1), cmp.valueSparse(p2));
-          p1++;
-          p2++;
-        } else if (firstI > secondI) {
-          j = secondI;
-          temp = difference(j, 0, cmp.valueSparse(p2));
-          p2++;
+
+        // the instance itself is one of the candidates of its own class
+        boolean skipSelf = (cl == own);
+        int k =
+          Math.min(skipSelf ? m_Knn + 1 : m_Knn,
+            m_classSubsets[cl].numInstances());
+        Instances neighbours;
+        double[] distances;
+        if (m_concurrentSearch) {
+          neighbours = m_searches[cl].kNearestNeighbours(thisInst, k);
+          distances = new double[neighbours.numInstances()];
+          DistanceFunction df = m_searches[cl].getDistanceFunction();
+          for (int j = 0; j < distances.length; j++) {
+            distances[j] = df.distance(thisInst, neighbours.instance(j));
+          }
         } else {
-          j = firstI;
-          temp = difference(j, inst.valueSparse(p1), 0);
-          p1++;
+          synchronized (m_searches[cl]) {
+            neighbours = m_searches[cl].kNearestNeighbours(thisInst, k);
+            distances = m_searches[cl].getDistances();
+          }
         }
 
-        temp2 = temp_diffP_diffA_givNearest * temp;
-        // P of different prediction and different att value given
-        // nearest instances
-        if (m_weightByDistance) {
-          temp2 *= (m_weightsByRank[i] / distNorm);
-        } else {
-          temp2 *= (1.0 / m_stored[0]); // equal influence
+        for (int j = 0; j < neighbours.numInstances() && m_stored[cl] < m_Knn; j++) {
+          Instance cmpInst = neighbours.instance(j);
+          if (skipSelf && Arrays.equals(thisVals, cmpInst.toDoubleArray())) {
+            skipSelf = false;
+            continue;
+          }
+          m_karray[cl][m_stored[cl]][0] = distances[j];
+          m_neighbours[cl][m_stored[cl]] = cmpInst;
+          m_stored[cl]++;
+        }
+      }
+    }
+
+    /**
+     * update attribute weights given an instance when the class is numeric
+     * 
+     * @param instNum the index of the instance to use when updating weights
+     */
+    protected void updateWeightsNumericClass(int instNum) {
+      int i, j;
+      double temp, temp2;
+      int[] tempSorted = null;
+      double[] tempDist = null;
+      double distNorm = 1.0;
+      int firstI, secondI;
+
+      Instance inst = m_trainInstances.instance(instNum);
+
+      // sort nearest neighbours and set up normalization variable
+      if (m_weightByDistance) {
+        tempDist = new double[m_stored[0]];
+
+        for (j = 0, distNorm = 0; j < m_stored[0]; j++) {
+          // copy the distances
+          tempDist[j] = m_karray[0][j][0];
+          // sum normalizer
+          distNorm += m_weightsByRank[j];
         }
 
-        m_ndcda[j] += temp2;
+        tempSorted = Utils.sort(tempDist);
+      }
 
-        // P of different attribute val given nearest instances
+      for (i = 0; i < m_stored[0]; i++) {
+        // P diff prediction (class) given nearest instances
         if (m_weightByDistance) {
+          temp = difference(m_classIndex, inst.value(m_classIndex),
+            m_neighbours[0][tempSorted[i]].value(m_classIndex));
           temp *= (m_weightsByRank[i] / distNorm);
         } else {
+          temp = difference(m_classIndex, inst.value(m_classIndex),
+            m_neighbours[0][i].value(m_classIndex));
           temp *= (1.0 / m_stored[0]); // equal influence
         }
 
-        m_nda[j] += temp;
-      }
-    }
-  }
-
-  /**
-   * update attribute weights given an instance when the class is discrete
-   * 
-   * @param instNum the index of the instance to use when updating weights
-   */
-  private void updateWeightsDiscreteClass(int instNum) {
-    int i, j, k;
-    int cl;
-    double temp_diff, w_norm = 1.0;
-    double[] tempDistClass;
-    int[] tempSortedClass = null;
-    double distNormClass = 1.0;
-    double[] tempDistAtt;
-    int[][] tempSortedAtt = null;
-    double[] distNormAtt = null;
-    int firstI, secondI;
-
-    // store the indexes (sparse instances) of non-zero elements
-    Instance inst = m_trainInstances.instance(instNum);
+        m_ndc += temp;
 
-    // get the class of this instance
-    cl = (int) m_trainInstances.instance(instNum).value(m_classIndex);
+        Instance cmp;
+        cmp = (m_weightByDistance) ? m_neighbours[0][tempSorted[i]]
+          : m_neighbours[0][i];
 
-    // sort nearest neighbours and set up normalization variables
-    if (m_weightByDistance) {
-      // do class (hits) first
-      // sort the distances
-      tempDistClass = new double[m_stored[cl]];
+        double temp_diffP_diffA_givNearest = difference(m_classIndex,
+          inst.value(m_classIndex), cmp.value(m_classIndex));
+        // now the attributes
+        for (int p1 = 0, p2 = 0; p1 < inst.numValues() || p2 < cmp.numValues();) {
+          if (p1 >= inst.numValues()) {
+            firstI = m_trainInstances.numAttributes();
+          } else {
+            firstI = inst.index(p1);
+          }
+          if (p2 >= cmp.numValues()) {
+            secondI = m_trainInstances.numAttributes();
+          } else {
+            secondI = cmp.index(p2);
+          }
+          if (firstI == m_trainInstances.classIndex()) {
+            p1++;
+            continue;
+          }
+          if (secondI == m_trainInstances.classIndex()) {
+            p2++;
+            continue;
+          }
+          temp = 0.0;
+          temp2 = 0.0;
+
+          if (firstI == secondI) {
+            j = firstI;
+            temp = difference(j, inst.valueSparse(p1), cmp.valueSparse(p2));
+            p1++;
+            p2++;
+          } else if (firstI > secondI) {
+            j = secondI;
+            temp = difference(j, 0, cmp.valueSparse(p2));
+            p2++;
+          } else {
+            j = firstI;
+            temp = difference(j, inst.valueSparse(p1), 0);
+            p1++;
+          }
 
-      for (j = 0, distNormClass = 0; j < m_stored[cl]; j++) {
-        // copy the distances
-        tempDistClass[j] = m_karray[cl][j][0];
-        // sum normalizer
-        distNormClass += m_weightsByRank[j];
-      }
+          temp2 = temp_diffP_diffA_givNearest * temp;
+          // P of different prediction and different att value given
+          // nearest instances
+          if (m_weightByDistance) {
+            temp2 *= (m_weightsByRank[i] / distNorm);
+          } else {
+            temp2 *= (1.0 / m_stored[0]); // equal influence
+          }
 
-      tempSortedClass = Utils.sort(tempDistClass);
-      // do misses (other classes)
-      tempSortedAtt = new int[m_numClasses][1];
-      distNormAtt = new double[m_numClasses];
+          m_ndcda[j] += temp2;
 
-      for (k = 0; k < m_numClasses; k++) {
-        if (k != cl) // already done cl
-        {
-          // sort the distances
-          tempDistAtt = new double[m_stored[k]];
-
-          for (j = 0, distNormAtt[k] = 0; j < m_stored[k]; j++) {
-            // copy the distances
-            tempDistAtt[j] = m_karray[k][j][0];
-            // sum normalizer
-            distNormAtt[k] += m_weightsByRank[j];
+          // P of different attribute val given nearest instances
+          if (m_weightByDistance) {
+            temp *= (m_weightsByRank[i] / distNorm);
+          } else {
+            temp *= (1.0 / m_stored[0]); // equal influence
           }
 
-          tempSortedAtt[k] = Utils.sort(tempDistAtt);
+          m_nda[j] += temp;
         }
       }
     }
 
-    if (m_numClasses > 2) {
-      // the amount of probability space left after removing the
-      // probability of this instance's class value
-      w_norm = (1.0 - m_classProbs[cl]);
-    }
-
-    // do the k nearest hits of the same class
-    for (j = 0, temp_diff = 0.0; j < m_stored[cl]; j++) {
-      Instance cmp;
-      cmp = (m_weightByDistance) ? m_trainInstances
-        .instance((int) m_karray[cl][tempSortedClass[j]][1]) : m_trainInstances
-        .instance((int) m_karray[cl][j][1]);
-
-      for (int p1 = 0, p2 = 0; p1 < inst.numValues() || p2 < cmp.numValues();) {
-        if (p1 >= inst.numValues()) {
-          firstI = m_trainInstances.numAttributes();
-        } else {
-          firstI = inst.index(p1);
-        }
-        if (p2 >= cmp.numValues()) {
-          secondI = m_trainInstances.numAttributes();
-        } else {
-          secondI = cmp.index(p2);
-        }
-        if (firstI == m_trainInstances.classIndex()) {
-          p1++;
-          continue;
-        }
-        if (secondI == m_trainInstances.classIndex()) {
-          p2++;
-          continue;
-        }
-        if (firstI == secondI) {
-          i = firstI;
-          temp_diff = difference(i, inst.valueSparse(p1), cmp.valueSparse(p2));
-          p1++;
-          p2++;
-        } else if (firstI > secondI) {
-          i = secondI;
-          temp_diff = difference(i, 0, cmp.valueSparse(p2));
-          p2++;
-        } else {
-          i = firstI;
-          temp_diff = difference(i, inst.valueSparse(p1), 0);
-          p1++;
+    /**
+     * update attribute weights given an instance when the class is discrete
+     * 
+     * @param instNum the index of the instance to use when updating weights
+     */
+    protected void updateWeightsDiscreteClass(int instNum) {
+      int i, j, k;
+      int cl;
+      double temp_diff, w_norm = 1.0;
+      double[] tempDistClass;
+      int[] tempSortedClass = null;
+      double distNormClass = 1.0;
+      double[] tempDistAtt;
+      int[][] tempSortedAtt = null;
+      double[] distNormAtt = null;
+      int firstI, secondI;
+
+      // store the indexes (sparse instances) of non-zero elements
+      Instance inst = m_trainInstances.instance(instNum);
+
+      // get the class of this instance
+      cl = (int) m_trainInstances.instance(instNum).value(m_classIndex);
+
+      // sort nearest neighbours and set up normalization variables
+      if (m_weightByDistance) {
+        // do class (hits) first
+        // sort the distances
+        tempDistClass = new double[m_stored[cl]];
+
+        for (j = 0, distNormClass = 0; j < m_stored[cl]; j++) {
+          // copy the distances
+          tempDistClass[j] = m_karray[cl][j][0];
+          // sum normalizer
+          distNormClass += m_weightsByRank[j];
         }
 
-        if (m_weightByDistance) {
-          temp_diff *= (m_weightsByRank[j] / distNormClass);
-        } else {
-          if (m_stored[cl] > 0) {
-            temp_diff /= m_stored[cl];
+        tempSortedClass = Utils.sort(tempDistClass);
+        // do misses (other classes)
+        tempSortedAtt = new int[m_numClasses][1];
+        distNormAtt = new double[m_numClasses];
+
+        for (k = 0; k < m_numClasses; k++) {
+          if (k != cl) // already done cl
+          {
+            // sort the distances
+            tempDistAtt = new double[m_stored[k]];
+
+            for (j = 0, distNormAtt[k] = 0; j < m_stored[k]; j++) {
+              // copy the distances
+              tempDistAtt[j] = m_karray[k][j][0];
+              // sum normalizer
+              distNormAtt[k] += m_weightsByRank[j];
+            }
+
+            tempSortedAtt[k] = Utils.sort(tempDistAtt);
           }
         }
-        m_weights[i] -= temp_diff;
+      }
 
+      if (m_numClasses > 2) {
+        // the amount of probability space left after removing the
+        // probability of this instance's class value
+        w_norm = (1.0 - m_classProbs[cl]);
       }
-    }
 
-    // now do k nearest misses from each of the other classes
-    temp_diff = 0.0;
-
-    for (k = 0; k < m_numClasses; k++) {
-      if (k != cl) // already done cl
-      {
-        for (j = 0; j < m_stored[k]; j++) {
-          Instance cmp;
-          cmp = (m_weightByDistance) ? m_trainInstances
-            .instance((int) m_karray[k][tempSortedAtt[k][j]][1])
-            : m_trainInstances.instance((int) m_karray[k][j][1]);
-
-          for (int p1 = 0, p2 = 0; p1 < inst.numValues()
-            || p2 < cmp.numValues();) {
-            if (p1 >= inst.numValues()) {
-              firstI = m_trainInstances.numAttributes();
-            } else {
-              firstI = inst.index(p1);
-            }
-            if (p2 >= cmp.numValues()) {
-              secondI = m_trainInstances.numAttributes();
-            } else {
-              secondI = cmp.index(p2);
-            }
-            if (firstI == m_trainInstances.classIndex()) {
-              p1++;
-              continue;
-            }
-            if (secondI == m_trainInstances.classIndex()) {
-              p2++;
-              continue;
-            }
-            if (firstI == secondI) {
-              i = firstI;
-              temp_diff = difference(i, inst.valueSparse(p1),
-                cmp.valueSparse(p2));
-              p1++;
-              p2++;
-            } else if (firstI > secondI) {
-              i = secondI;
-              temp_diff = difference(i, 0, cmp.valueSparse(p2));
-              p2++;
-            } else {
-              i = firstI;
-              temp_diff = difference(i, inst.valueSparse(p1), 0);
-              p1++;
-            }
+      // do the k nearest hits of the same class
+      for (j = 0, temp_diff = 0.0; j < m_stored[cl]; j++) {
+        Instance cmp;
+        cmp = (m_weightByDistance) ? m_neighbours[cl][tempSortedClass[j]]
+          : m_neighbours[cl][j];
 
-            if (m_weightByDistance) {
-              temp_diff *= (m_weightsByRank[j] / distNormAtt[k]);
-            } else {
-              if (m_stored[k] > 0) {
-                temp_diff /= m_stored[k];
-              }
-            }
-            if (m_numClasses > 2) {
-              m_weights[i] += ((m_classProbs[k] / w_norm) * temp_diff);
-            } else {
-              m_weights[i] += temp_diff;
+        for (int p1 = 0, p2 = 0; p1 < inst.numValues() || p2 < cmp.numValues();) {
+          if (p1 >= inst.numValues()) {
+            firstI = m_trainInstances.numAttributes();
+          } else {
+            firstI = inst.index(p1);
+          }
+          if (p2 >= cmp.numValues()) {
+            secondI = m_trainInstances.numAttributes();
+          } else {
+            secondI = cmp.index(p2);
+          }
+          if (firstI == m_trainInstances.classIndex()) {
+            p1++;
+            continue;
+          }
+          if (secondI == m_trainInstances.classIndex()) {
+            p2++;
+            continue;
+          }
+          if (firstI == secondI) {
+            i = firstI;
+            temp_diff = difference(i, inst.valueSparse(p1), cmp.valueSparse(p2));
+            p1++;
+            p2++;
+          } else if (firstI > secondI) {
+            i = secondI;
+            temp_diff = difference(i, 0, cmp.valueSparse(p2));
+            p2++;
+          } else {
+            i = firstI;
+            temp_diff = difference(i, inst.valueSparse(p1), 0);
+            p1++;
+          }
+
+          if (m_weightByDistance) {
+            temp_diff *= (m_weightsByRank[j] / distNormClass);
+          } else {
+            if (m_stored[cl] > 0) {
+              temp_diff /= m_stored[cl];
             }
           }
+          m_weightSums[i] -= temp_diff;
+
         }
       }
-    }
-  }
 
-  /**
-   * Find the K nearest instances to supplied instance if the class is numeric,
-   * or the K nearest Hits (same class) and Misses (K from each of the other
-   * classes) if the class is discrete.
-   * 
-   * @param instNum the index of the instance to find nearest neighbours of
-   */
-  private void findKHitMiss(int instNum) {
-    int i, j;
-    int cl;
-    double ww;
-    double temp_diff = 0.0;
-    Instance thisInst = m_trainInstances.instance(instNum);
-
-    for (i = 0; i < m_numInstances; i++) {
-      if (i != instNum) {
-        Instance cmpInst = m_trainInstances.instance(i);
-        temp_diff = distance(cmpInst, thisInst);
-
-        // class of this training instance or 0 if numeric
-        if (m_numericClass) {
-          cl = 0;
-        } else {
-          if (m_trainInstances.instance(i).classIsMissing()) {
-            // skip instances with missing class values in the nominal class case
-            continue;
+      // now do k nearest misses from each of the other classes
+      temp_diff = 0.0;
+
+      for (k = 0; k < m_numClasses; k++) {
+        if (k != cl) // already done cl
+        {
+          for (j = 0; j < m_stored[k]; j++) {
+            Instance cmp;
+            cmp = (m_weightByDistance) ? m_neighbours[k][tempSortedAtt[k][j]]
+              : m_neighbours[k][j];
+
+            for (int p1 = 0, p2 = 0; p1 < inst.numValues()
+              || p2 < cmp.numValues();) {
+              if (p1 >= inst.numValues()) {
+                firstI = m_trainInstances.numAttributes();
+              } else {
+                firstI = inst.index(p1);
+              }
+              if (p2 >= cmp.numValues()) {
+                secondI = m_trainInstances.numAttributes();
+              } else {
+                secondI = cmp.index(p2);
+              }
+              if (firstI == m_trainInstances.classIndex()) {
+                p1++;
+                continue;
+              }
+              if (secondI == m_trainInstances.classIndex()) {
+                p2++;
+                continue;
+              }
+              if (firstI == secondI) {
+                i = firstI;
+                temp_diff = difference(i, inst.valueSparse(p1),
+                  cmp.valueSparse(p2));
+                p1++;
+                p2++;
+              } else if (firstI > secondI) {
+                i = secondI;
+                temp_diff = difference(i, 0, cmp.valueSparse(p2));
+                p2++;
+              } else {
+                i = firstI;
+                temp_diff = difference(i, inst.valueSparse(p1), 0);
+                p1++;
+              }
+
+              if (m_weightByDistance) {
+                temp_diff *= (m_weightsByRank[j] / distNormAtt[k]);
+              } else {
+                if (m_stored[k] > 0) {
+                  temp_diff /= m_stored[k];
+                }
+              }
+              if (m_numClasses > 2) {
+                m_weightSums[i] += ((m_classProbs[k] / w_norm) * temp_diff);
+              } else {
+                m_weightSums[i] += temp_diff;
+              }
+            }
           }
-          cl = (int) m_trainInstances.instance(i).value(m_classIndex);
         }
+      }
+    }
 
-        // add this diff to the list for the class of this instance
-        if (m_stored[cl] < m_Knn) {
-          m_karray[cl][m_stored[cl]][0] = temp_diff;
-          m_karray[cl][m_stored[cl]][1] = i;
-          m_stored[cl]++;
-
-          // note the worst diff for this class
-          for (j = 0, ww = -1.0; j < m_stored[cl]; j++) {
-            if (m_karray[cl][j][0] > ww) {
-              ww = m_karray[cl][j][0];
-              m_index[cl] = j;
+    /**
+     * Find the K nearest instances to supplied instance if the class is numeric,
+     * or the K nearest Hits (same class) and Misses (K from each of the other
+     * classes) if the class is discrete.
+     * 
+     * @param instNum the index of the instance to find nearest neighbours of
+     */
+    protected void findKHitMiss(int instNum) {
+      int i, j;
+      int cl;
+      double ww;
+      double temp_diff = 0.0;
+      Instance thisInst = m_trainInstances.instance(instNum);
+
+      for (i = 0; i < m_numInstances; i++) {
+        if (i != instNum) {
+          Instance cmpInst = m_trainInstances.instance(i);
+          temp_diff = distance(cmpInst, thisInst);
+
+          // class of this training instance or 0 if numeric
+          if (m_numericClass) {
+            cl = 0;
+          } else {
+            if (m_trainInstances.instance(i).classIsMissing()) {
+              // skip instances with missing class values in the nominal class case
+              continue;
             }
+            cl = (int) m_trainInstances.instance(i).value(m_classIndex);
           }
 
-          m_worst[cl] = ww;
-        } else
-        /*
-         * if we already have stored knn for this class then check to see if
-         * this instance is better than the worst
-         */
-        {
-          if (temp_diff < m_karray[cl][m_index[cl]][0]) {
-            m_karray[cl][m_index[cl]][0] = temp_diff;
-            m_karray[cl][m_index[cl]][1] = i;
+          // add this diff to the list for the class of this instance
+          if (m_stored[cl] < m_Knn) {
+            m_karray[cl][m_stored[cl]][0] = temp_diff;
+            m_karray[cl][m_stored[cl]][1] = i;
+            m_neighbours[cl][m_stored[cl]] = cmpInst;
+            m_stored[cl]++;
 
+            // note the worst diff for this class
             for (j = 0, ww = -1.0; j < m_stored[cl]; j++) {
               if (m_karray[cl][j][0] > ww) {
                 ww = m_karray[cl][j][0];
@@ -1310,6 +1743,26 @@ public class ReliefFAttributeEval extends ASEvaluation implements
             }
 
             m_worst[cl] = ww;
+          } else
+          /*
+           * if we already have stored knn for this class then check to see if
+           * this instance is better than the worst
+           */
+          {
+            if (temp_diff < m_karray[cl][m_index[cl]][0]) {
+              m_karray[cl][m_index[cl]][0] = temp_diff;
+              m_karray[cl][m_index[cl]][1] = i;
+              m_neighbours[cl][m_index[cl]] = cmpInst;
+
+              for (j = 0, ww = -1.0; j < m_stored[cl]; j++) {
+                if (m_karray[cl][j][0] > ww) {
+                  ww = m_karray[cl][j][0];
+                  m_index[cl] = j;
+                }
+              }
+
+              m_worst[cl] = ww;
+            }
           }
         }
       }
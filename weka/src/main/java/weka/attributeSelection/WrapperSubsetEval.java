@@ -39,6 +39,7 @@ import weka.core.TechnicalInformation;
 import weka.core.TechnicalInformation.Field;
 import weka.core.TechnicalInformation.Type;
 import weka.core.TechnicalInformationHandler;
+import weka.core.ThreadSafe;
 import weka.core.Utils;
 import weka.filters.Filter;
 import weka.filters.unsupervised.attribute.Remove;
@@ -46,7 +47,9 @@ import weka.filters.unsupervised.attribute.Remove;
 import java.util.BitSet;
 import java.util.Collections;
 import java.util.Enumeration;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Random;
 import java.util.Vector;
 
@@ -128,6 +131,12 @@ import java.util.Vector;
  * </pre>
  * 
  * <pre>
+ * -cache-size &lt;num&gt;
+ *  Maximum number of evaluated subsets to cache.
+ *  (default = 10000, 0 = no caching)
+ * </pre>
+ * 
+ * <pre>
  * Options specific to scheme weka.classifiers.rules.ZeroR:
  * </pre>
  * 
@@ -142,8 +151,8 @@ import java.util.Vector;
  * @author Mark Hall (mhall@cs.waikato.ac.nz)
  * @version $Revision$
  */
-public class WrapperSubsetEval extends ASEvaluation
-  implements SubsetEvaluator, OptionHandler, TechnicalInformationHandler {
+public class WrapperSubsetEval extends ASEvaluation implements SubsetEvaluator,
+  ThreadSafe, OptionHandler, TechnicalInformationHandler {
 
   /** for serialization */
   static final long serialVersionUID = -4573057658746728675L;
@@ -154,8 +163,6 @@ public class WrapperSubsetEval extends ASEvaluation
   private int m_classIndex;
   /** number of attributes in the training data */
   private int m_numAttribs;
-  /** holds an evaluation object */
-  private Evaluation m_Evaluation;
   /** holds the base classifier object */
   private Classifier m_BaseClassifier;
   /** number of folds to use for cross validation */
@@ -168,6 +175,40 @@ public class WrapperSubsetEval extends ASEvaluation
    */
   private double m_threshold;
 
+  /** the maximum number of subset merits to cache (0 = no caching) */
+  private int m_subsetCacheSize = 10000;
+
+  /** the cache of subset merits */
+  private transient SubsetCache m_subsetCache;
+
+  /**
+   * A bounded cache of subset merits that evicts the least recently used
+   * subset once it is full. Access must be synchronized on the cache.
+   */
+  protected static class SubsetCache extends LinkedHashMap<BitSet, Double> {
+
+    /** for serialization */
+    private static final long serialVersionUID = -2165624632128417085L;
+
+    /** the maximum number of subsets to hold */
+    protected final int m_maxSize;
+
+    /**
+     * Constructor
+     * 
+     * @param maxSize the maximum number of subsets to hold
+     */
+    public SubsetCache(int maxSize) {
+      super(16, 0.75f, true);
+      m_maxSize = maxSize;
+    }
+
+    @Override
+    protected boolean removeEldestEntry(Map.Entry<BitSet, Double> eldest) {
+      return size() > m_maxSize;
+    }
+  }
+
   public static final int EVAL_DEFAULT = 1;
   public static final int EVAL_ACCURACY = 2;
   public static final int EVAL_RMSE = 3;
@@ -338,7 +379,7 @@ public class WrapperSubsetEval extends ASEvaluation
    **/
   @Override
   public Enumeration<Option> listOptions() {
-    Vector<Option> newVector = new Vector<Option>(4);
+    Vector<Option> newVector = new Vector<Option>(7);
     newVector.addElement(new Option(
       "\tclass name of base learner to use for \taccuracy estimation.\n"
         + "\tPlace any classifier options LAST on the command line\n"
@@ -374,6 +415,11 @@ public class WrapperSubsetEval extends ASEvaluation
         + "\tthe class-weighted average.",
       "IRclass", 1, "-IRclass <label | index>"));
 
+    newVector.addElement(new Option(
+      "\tMaximum number of evaluated subsets to cache.\n"
+        + "\t(default = 10000, 0 = no caching)",
+      "cache-size", 1, "-cache-size <num>"));
+
     if ((m_BaseClassifier != null)
       && (m_BaseClassifier instanceof OptionHandler)) {
       newVector.addElement(new Option("", "", 0, "\nOptions specific to scheme "
@@ -435,6 +481,12 @@ public class WrapperSubsetEval extends ASEvaluation
    * </pre>
    * 
    * <pre>
+   * -cache-size &lt;num&gt;
+   *  Maximum number of evaluated subsets to cache.
+   *  (default = 10000, 0 = no caching)
+   * </pre>
+   * 
+   * <pre>
    * Options specific to scheme weka.classifiers.rules.ZeroR:
    * </pre>
    * 
@@ -498,6 +550,11 @@ public class WrapperSubsetEval extends ASEvaluation
     if (optionString.length() > 0) {
       setIRClassValue(optionString);
     }
+
+    optionString = Utils.getOption("cache-size", options);
+    if (optionString.length() != 0) {
+      setSubsetCacheSize(Integer.parseInt(optionString));
+    }
   }
 
   /**
@@ -597,6 +654,36 @@ public class WrapperSubsetEval extends ASEvaluation
     return m_threshold;
   }
 
+  /**
+   * Returns the tip text for this property
+   * 
+   * @return tip text for this property suitable for displaying in the
+   *         explorer/experimenter gui
+   */
+  public String subsetCacheSizeTipText() {
+    return "The maximum number of evaluated subsets whose merit is cached. "
+      + "Once the cache is full, the least recently used subset is discarded. "
+      + "Use 0 to disable caching.";
+  }
+
+  /**
+   * Set the maximum number of evaluated subsets to cache.
+   * 
+   * @param size the maximum number of subsets (0 = no caching)
+   */
+  public void setSubsetCacheSize(int size) {
+    m_subsetCacheSize = size;
+  }
+
+  /**
+   * Get the maximum number of evaluated subsets to cache.
+   * 
+   * @return the maximum number of subsets (0 = no caching)
+   */
+  public int getSubsetCacheSize() {
+    return m_subsetCacheSize;
+  }
+
   /**
    * Returns the tip text for this property
    * 
@@ -695,7 +782,7 @@ public class WrapperSubsetEval extends ASEvaluation
       classifierOptions = ((OptionHandler) m_BaseClassifier).getOptions();
     }
 
-    String[] options = new String[13 + classifierOptions.length];
+    String[] options = new String[15 + classifierOptions.length];
     int current = 0;
 
     if (getClassifier() != null) {
@@ -718,6 +805,11 @@ public class WrapperSubsetEval extends ASEvaluation
       options[current++] = m_IRClassValS;
     }
 
+    if (getSubsetCacheSize() != 10000) {
+      options[current++] = "-cache-size";
+      options[current++] = "" + getSubsetCacheSize();
+    }
+
     options[current++] = "--";
     System.arraycopy(classifierOptions, 0, options, current,
       classifierOptions.length);
@@ -732,11 +824,12 @@ public class WrapperSubsetEval extends ASEvaluation
 
   protected void resetOptions() {
     m_trainInstances = null;
-    m_Evaluation = null;
+    m_subsetCache = null;
     m_BaseClassifier = new ZeroR();
     m_folds = 5;
     m_seed = 1;
     m_threshold = 0.01;
+    m_subsetCacheSize = 10000;
   }
 
   /**
@@ -817,10 +910,15 @@ public class WrapperSubsetEval extends ASEvaluation
           m_trainInstances.classAttribute().indexOfValue(m_IRClassValS);
       }
     }
+
+    m_subsetCache =
+      (m_subsetCacheSize > 0) ? new SubsetCache(m_subsetCacheSize) : null;
   }
 
   /**
-   * Evaluates a subset of attributes
+   * Evaluates a subset of attributes. The merit of a subset that has been
+   * evaluated before is taken from the cache. This method can be called
+   * concurrently.
    * 
    * @param subset a bitset representing the attribute subset to be evaluated
    * @return the error rate
@@ -828,6 +926,34 @@ public class WrapperSubsetEval extends ASEvaluation
    */
   @Override
   public double evaluateSubset(BitSet subset) throws Exception {
+    SubsetCache cache = m_subsetCache;
+    if (cache == null) {
+      return crossValidateSubset(subset);
+    }
+
+    Double merit;
+    synchronized (cache) {
+      merit = cache.get(subset);
+    }
+    if (merit == null) {
+      merit = crossValidateSubset(subset);
+      synchronized (cache) {
+        cache.put((BitSet) subset.clone(), merit);
+      }
+    }
+
+    return merit;
+  }
+
+  /**
+   * Evaluates a subset of attributes by cross-validating the base classifier
+   * on the data reduced to the subset.
+   * 
+   * @param subset a bitset representing the attribute subset to be evaluated
+   * @return the error rate
+   * @throws Exception if the subset could not be evaluated
+   */
+  protected double crossValidateSubset(BitSet subset) throws Exception {
     double evalMetric = 0;
     double[] repError = new double[5];
     int numAttributes = 0;
@@ -865,53 +991,53 @@ public class WrapperSubsetEval extends ASEvaluation
 
     // max of 5 repetitions of cross validation
     for (i = 0; i < 5; i++) {
-      m_Evaluation = new Evaluation(trainCopy);
-      m_Evaluation.crossValidateModel(m_BaseClassifier, trainCopy, m_folds,
+      Evaluation evaluation = new Evaluation(trainCopy);
+      evaluation.crossValidateModel(m_BaseClassifier, trainCopy, m_folds,
         Rnd);
 
       switch (m_evaluationMeasure.getID()) {
       case EVAL_DEFAULT:
-        repError[i] = m_Evaluation.errorRate();
+        repError[i] = evaluation.errorRate();
         break;
       case EVAL_ACCURACY:
-        repError[i] = m_Evaluation.errorRate();
+        repError[i] = evaluation.errorRate();
         break;
       case EVAL_RMSE:
-        repError[i] = m_Evaluation.rootMeanSquaredError();
+        repError[i] = evaluation.rootMeanSquaredError();
         break;
       case EVAL_MAE:
-        repError[i] = m_Evaluation.meanAbsoluteError();
+        repError[i] = evaluation.meanAbsoluteError();
         break;
       case EVAL_FMEASURE:
         if (m_IRClassVal < 0) {
-          repError[i] = m_Evaluation.weightedFMeasure();
+          repError[i] = evaluation.weightedFMeasure();
         } else {
-          repError[i] = m_Evaluation.fMeasure(m_IRClassVal);
+          repError[i] = evaluation.fMeasure(m_IRClassVal);
         }
         break;
       case EVAL_AUC:
         if (m_IRClassVal < 0) {
-          repError[i] = m_Evaluation.weightedAreaUnderROC();
+          repError[i] = evaluation.weightedAreaUnderROC();
         } else {
-          repError[i] = m_Evaluation.areaUnderROC(m_IRClassVal);
+          repError[i] = evaluation.areaUnderROC(m_IRClassVal);
         }
         break;
       case EVAL_AUPRC:
         if (m_IRClassVal < 0) {
-          repError[i] = m_Evaluation.weightedAreaUnderPRC();
+          repError[i] = evaluation.weightedAreaUnderPRC();
         } else {
-          repError[i] = m_Evaluation.areaUnderPRC(m_IRClassVal);
+          repError[i] = evaluation.areaUnderPRC(m_IRClassVal);
         }
         break;
       case EVAL_CORRELATION:
-        repError[i] = m_Evaluation.correlationCoefficient();
+        repError[i] = evaluation.correlationCoefficient();
         break;
       default:
         if (m_evaluationMeasure.getID() >= EVAL_PLUGIN) {
           metricName = ((PluginTag) m_evaluationMeasure).getMetricName();
           statName = ((PluginTag) m_evaluationMeasure).getStatisticName();
           statName = ((PluginTag) m_evaluationMeasure).getStatisticName();
-          pluginMetric = m_Evaluation.getPluginMetric(metricName);
+          pluginMetric = evaluation.getPluginMetric(metricName);
           if (pluginMetric == null) {
             throw new Exception(
               "Metric  " + metricName + " does not seem to be " + "available");
@@ -944,7 +1070,6 @@ public class WrapperSubsetEval extends ASEvaluation
     }
 
     evalMetric /= i;
-    m_Evaluation = null;
 
     switch (m_evaluationMeasure.getID()) {
     case EVAL_DEFAULT:
@@ -1118,6 +1243,7 @@ public class WrapperSubsetEval extends ASEvaluation
   @Override
   public void clean() {
     m_trainInstances = new Instances(m_trainInstances, 0);
+    m_subsetCache = null;
   }
 
   /**
@@ -33,10 +33,12 @@ import weka.core.Option;
 import weka.core.OptionHandler;
 import weka.core.RevisionHandler;
 import weka.core.RevisionUtils;
-import weka.core.SerializedObject;
 import weka.core.Utils;
 
+import java.io.BufferedWriter;
+import java.io.OutputStreamWriter;
 import java.io.Serializable;
+import java.io.Writer;
 import java.util.Enumeration;
 import java.util.Vector;
 
@@ -93,20 +95,22 @@ public abstract class AbstractClassifier implements Classifier, BatchPredictor,
   }
 
   /**
-   * Creates a deep copy of the given classifier using serialization.
+   * Creates a deep copy of the given classifier. Untrained classifiers that
+   * implement CopyableFromOptions are copied via their options, all others
+   * using serialization.
    *
    * @param model the classifier to copy
    * @return a deep copy of the classifier
    * @exception Exception if an error occurs
    */
   public static Classifier makeCopy(Classifier model) throws Exception {
-
-    return (Classifier) new SerializedObject(model).getObject();
+    return (Classifier) Utils.makeCopies(model, 1)[0];
   }
 
   /**
-   * Creates a given number of deep copies of the given classifier using
-   * serialization.
+   * Creates a given number of deep copies of the given classifier. Untrained
+   * classifiers that implement CopyableFromOptions are copied via their
+   * options, all others using serialization.
    *
    * @param model the classifier to copy
    * @param num the number of classifier copies to create.
@@ -120,9 +124,9 @@ public abstract class AbstractClassifier implements Classifier, BatchPredictor,
       throw new Exception("No model classifier set");
     }
     Classifier[] classifiers = new Classifier[num];
-    SerializedObject so = new SerializedObject(model);
+    Object[] copies = Utils.makeCopies(model, num);
     for (int i = 0; i < classifiers.length; i++) {
-      classifiers[i] = (Classifier) so.getObject();
+      classifiers[i] = (Classifier) copies[i];
     }
     return classifiers;
   }
@@ -138,7 +142,10 @@ public abstract class AbstractClassifier implements Classifier, BatchPredictor,
       if (classifier instanceof CommandlineRunnable) {
         ((CommandlineRunnable)classifier).preExecution();
       }
-      System.out.println(Evaluation.evaluateModel(classifier, options));
+      Writer output = new BufferedWriter(new OutputStreamWriter(System.out));
+      String result = Evaluation.evaluateModel(classifier, options, output);
+      output.flush();
+      System.out.println(result);
     } catch (Exception e) {
       if (((e.getMessage() != null)
         && (e.getMessage().indexOf("General options") == -1))
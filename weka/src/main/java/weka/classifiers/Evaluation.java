@@ -22,6 +22,7 @@
 package weka.classifiers;
 
 import java.io.Serializable;
+import java.io.Writer;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Random;
@@ -32,6 +33,7 @@ import weka.core.Instance;
 import weka.core.Instances;
 import weka.core.RevisionHandler;
 import weka.core.Summarizable;
+import weka.core.converters.ConverterUtils.DataSource;
 
 /**
  * Class for evaluating machine learning models. Delegates to the actual
@@ -300,6 +302,47 @@ public class Evaluation implements Serializable, Summarizable, RevisionHandler {
     return m_delegate.getDiscardPredictions();
   }
 
+  /**
+   * Sets whether to store the predictions for a nominal class in primitive
+   * arrays rather than as NominalPrediction objects, in order to conserve
+   * memory.
+   * 
+   * @param value true if to store the predictions compactly
+   */
+  public void setCompactPredictions(boolean value) {
+    m_delegate.setCompactPredictions(value);
+  }
+
+  /**
+   * Returns whether the predictions for a nominal class are stored in
+   * primitive arrays.
+   * 
+   * @return true if the predictions are stored compactly
+   */
+  public boolean getCompactPredictions() {
+    return m_delegate.getCompactPredictions();
+  }
+
+  /**
+   * Sets the number of bins of the histograms of predicted probabilities that
+   * the ROC and PRC areas are estimated from, 0 to compute the areas exactly.
+   * 
+   * @param value the number of bins, 0 for exact areas
+   */
+  public void setNumThresholdBins(int value) {
+    m_delegate.setNumThresholdBins(value);
+  }
+
+  /**
+   * Returns the number of bins of the histograms that the ROC and PRC areas
+   * are estimated from.
+   * 
+   * @return the number of bins, 0 if the areas are computed exactly
+   */
+  public int getNumThresholdBins() {
+    return m_delegate.getNumThresholdBins();
+  }
+
   /**
    * Returns the area under ROC for those predictions that have been collected
    * in the evaluateClassifier(Classifier, Instances) method. Returns
@@ -342,6 +385,29 @@ public class Evaluation implements Serializable, Summarizable, RevisionHandler {
     return m_delegate.weightedAreaUnderPRC();
   }
 
+  /**
+   * Returns the bound on the error of the estimated area under ROC if the
+   * area is estimated from histograms, 0 if it is computed exactly.
+   * 
+   * @param classIndex the index of the class to consider as "positive"
+   * @return the bound on the error
+   */
+  public double areaUnderROCErrorBound(int classIndex) {
+    return m_delegate.areaUnderROCErrorBound(classIndex);
+  }
+
+  /**
+   * Returns the bound on the error of the estimated area under the
+   * precision-recall curve if the area is estimated from histograms, 0 if it
+   * is computed exactly.
+   * 
+   * @param classIndex the index of the class to consider as "positive"
+   * @return the bound on the error
+   */
+  public double areaUnderPRCErrorBound(int classIndex) {
+    return m_delegate.areaUnderPRCErrorBound(classIndex);
+  }
+
   /**
    * Returns a copy of the confusion matrix.
    * 
@@ -669,6 +735,24 @@ public class Evaluation implements Serializable, Summarizable, RevisionHandler {
       options);
   }
 
+  /**
+   * Evaluates a classifier with the options given in an array of strings,
+   * streaming the predictions output with -classifications and -test-slots to
+   * the writer rather than collecting them in the returned string.
+   * 
+   * @param classifier machine learning classifier
+   * @param options the array of string containing the options
+   * @param output the writer to stream the predictions to, can be null
+   * @throws Exception if model could not be evaluated successfully
+   * @return a string describing the results, without the output already
+   *         written to the writer
+   */
+  public static String evaluateModel(Classifier classifier, String[] options,
+    Writer output) throws Exception {
+    return weka.classifiers.evaluation.Evaluation.evaluateModel(classifier,
+      options, output);
+  }
+
   /**
    * Evaluates the classifier on a given set of instances. Note that the data
    * must have exactly the same format (e.g. order of attributes) as the data
@@ -689,6 +773,30 @@ public class Evaluation implements Serializable, Summarizable, RevisionHandler {
     return m_delegate.evaluateModel(classifier, data, forPredictionsPrinting);
   }
 
+  /**
+   * Evaluates the classifier on the instances of a data source, which are read
+   * incrementally and scored in batches on the given number of threads. The
+   * statistics are updated and the predictions printed in the order of the
+   * data source.
+   * 
+   * @param classifier machine learning classifier
+   * @param source the data source to read the test instances from
+   * @param structure the structure of the test instances, with the class set
+   * @param numSlots the number of threads to score with
+   * @param batchSize the number of instances per batch
+   * @param forPredictionsPrinting varargs parameter that, if supplied, is
+   *          expected to hold a
+   *          weka.classifiers.evaluation.output.prediction.AbstractOutput
+   *          object
+   * @throws Exception if model could not be evaluated successfully
+   */
+  public void evaluateModel(Classifier classifier, DataSource source,
+    Instances structure, int numSlots, int batchSize,
+    Object... forPredictionsPrinting) throws Exception {
+    m_delegate.evaluateModel(classifier, source, structure, numSlots,
+      batchSize, forPredictionsPrinting);
+  }
+
   /**
    * Evaluates the supplied distribution on a single instance.
    * 
@@ -27,6 +27,7 @@ import java.util.Vector;
 
 import weka.classifiers.AbstractClassifier;
 import weka.core.*;
+import weka.core.CopyableFromOptions;
 import weka.core.Capabilities.Capability;
 import weka.core.TechnicalInformation.Field;
 import weka.core.TechnicalInformation.Type;
@@ -96,7 +97,7 @@ import weka.estimators.NormalEstimator;
  */
 public class NaiveBayes extends AbstractClassifier implements OptionHandler,
   WeightedInstancesHandler, WeightedAttributesHandler, TechnicalInformationHandler,
-  Aggregateable<NaiveBayes> {
+  Aggregateable<NaiveBayes>, CopyableFromOptions {
 
   /** for serialization */
   static final long serialVersionUID = 5995231201785697655L;
@@ -1013,6 +1014,18 @@ public class NaiveBayes extends AbstractClassifier implements OptionHandler,
     // nothing to do
   }
 
+  /**
+   * Returns whether this classifier can be copied via its options, i.e.,
+   * whether no model has been built yet.
+   *
+   * @return true if the classifier can be copied via its options
+   */
+  @Override
+  public boolean isCopyableFromOptions() {
+    return (m_Distributions == null) && (m_ClassDistribution == null)
+      && (m_Instances == null);
+  }
+
   /**
    * Main method for testing this class.
    * 
@@ -85,6 +85,8 @@ public class AggregateableEvaluation extends Evaluation implements
     m_TrainClassVals = eval.m_TrainClassVals;
     m_TrainClassWeights = eval.m_TrainClassWeights;
     m_NumTrainClassVals = eval.m_NumTrainClassVals;
+    setCompactPredictions(eval.getCompactPredictions());
+    setNumThresholdBins(eval.getNumThresholdBins());
   }
 
   /**
@@ -156,6 +158,22 @@ public class AggregateableEvaluation extends Evaluation implements
       }
     }
 
+    if (evaluation.m_CompactPredictions != null) {
+      if (m_CompactPredictions == null) {
+        m_CompactPredictions = new CompactPredictions(m_NumClasses);
+      }
+      m_CompactPredictions.merge(evaluation.m_CompactPredictions);
+    }
+
+    if (evaluation.m_ThresholdHistogram != null) {
+      if (m_ThresholdHistogram == null) {
+        m_ThresholdHistogram =
+          new ThresholdHistogram(m_NumClasses,
+            evaluation.m_ThresholdHistogram.getNumBins());
+      }
+      m_ThresholdHistogram.merge(evaluation.m_ThresholdHistogram);
+    }
+
     return this;
   }
 
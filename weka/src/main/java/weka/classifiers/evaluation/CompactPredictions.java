@@ -0,0 +1,351 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ * CompactPredictions.java
+ * Copyright (C) 2026 University of Waikato, Hamilton, New Zealand
+ *
+ */
+
+package weka.classifiers.evaluation;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import weka.core.RevisionHandler;
+import weka.core.RevisionUtils;
+import weka.core.Utils;
+
+/**
+ * Stores predictions for a nominal class in primitive arrays rather than as
+ * NominalPrediction objects: the actual class as int, the predicted
+ * distribution as floats and the weight as double. This needs 4 * (numClasses
+ * + 3) bytes per prediction, compared to more than 100 bytes for a
+ * NominalPrediction. <br/>
+ * <br/>
+ * The areas under the ROC and the precision-recall curve are computed directly
+ * from the arrays, in the same way as ThresholdCurve does, but with the
+ * probabilities rounded to float precision. Predictions with a missing class
+ * value or negative weight are skipped.
+ *
+ * @author The WEKA Team (wekalist@list.waikato.ac.nz)
+ * @version $Revision$
+ * @see ThresholdCurve
+ */
+public class CompactPredictions implements Serializable, RevisionHandler {
+
+  /** for serialization */
+  private static final long serialVersionUID = -2707412460498813227L;
+
+  /** the number of classes */
+  protected int m_NumClasses;
+
+  /** the number of predictions */
+  protected int m_Size;
+
+  /** the actual classes (-1 if missing) */
+  protected int[] m_Actual;
+
+  /** the predicted distributions, one after the other */
+  protected float[] m_Distributions;
+
+  /** the weights */
+  protected double[] m_Weights;
+
+  /**
+   * Creates an empty store.
+   *
+   * @param numClasses the number of classes
+   */
+  public CompactPredictions(int numClasses) {
+    m_NumClasses = numClasses;
+    m_Actual = new int[16];
+    m_Distributions = new float[16 * numClasses];
+    m_Weights = new double[16];
+  }
+
+  /**
+   * Returns the number of classes.
+   *
+   * @return the number of classes
+   */
+  public int getNumClasses() {
+    return m_NumClasses;
+  }
+
+  /**
+   * Returns the number of predictions stored.
+   *
+   * @return the number of predictions
+   */
+  public int size() {
+    return m_Size;
+  }
+
+  /**
+   * Makes sure the arrays can hold the given number of predictions.
+   *
+   * @param capacity the number of predictions
+   */
+  protected void ensureCapacity(int capacity) {
+    if (capacity <= m_Actual.length) {
+      return;
+    }
+    int newCapacity = Math.max(capacity, m_Actual.length + m_Actual.length / 2);
+    m_Actual = Arrays.copyOf(m_Actual, newCapacity);
+    m_Distributions = Arrays.copyOf(m_Distributions, newCapacity * m_NumClasses);
+    m_Weights = Arrays.copyOf(m_Weights, newCapacity);
+  }
+
+  /**
+   * Adds a prediction.
+   *
+   * @param actual the actual class value (may be missing)
+   * @param distribution the predicted distribution
+   * @param weight the weight of the prediction
+   */
+  public void add(double actual, double[] distribution, double weight) {
+    ensureCapacity(m_Size + 1);
+    m_Actual[m_Size] = Utils.isMissingValue(actual) ? -1 : (int) actual;
+    int offset = m_Size * m_NumClasses;
+    for (int i = 0; i < m_NumClasses; i++) {
+      m_Distributions[offset + i] = (float) distribution[i];
+    }
+    m_Weights[m_Size] = weight;
+    m_Size++;
+  }
+
+  /**
+   * Appends the predictions of another store (with the same number of
+   * classes).
+   *
+   * @param other the store to append
+   * @throws IllegalArgumentException if the number of classes differs
+   */
+  public void merge(CompactPredictions other) {
+    if (other.m_NumClasses != m_NumClasses) {
+      throw new IllegalArgumentException("Number of classes differs: "
+        + m_NumClasses + " != " + other.m_NumClasses);
+    }
+    ensureCapacity(m_Size + other.m_Size);
+    System.arraycopy(other.m_Actual, 0, m_Actual, m_Size, other.m_Size);
+    System.arraycopy(other.m_Distributions, 0, m_Distributions, m_Size
+      * m_NumClasses, other.m_Size * m_NumClasses);
+    System.arraycopy(other.m_Weights, 0, m_Weights, m_Size, other.m_Size);
+    m_Size += other.m_Size;
+  }
+
+  /**
+   * Returns the actual class of a prediction.
+   *
+   * @param index the index of the prediction
+   * @return the class, Prediction.MISSING_VALUE if missing
+   */
+  public double actual(int index) {
+    return (m_Actual[index] < 0) ? Prediction.MISSING_VALUE : m_Actual[index];
+  }
+
+  /**
+   * Returns the weight of a prediction.
+   *
+   * @param index the index of the prediction
+   * @return the weight
+   */
+  public double weight(int index) {
+    return m_Weights[index];
+  }
+
+  /**
+   * Returns the predicted probability of a class.
+   *
+   * @param index the index of the prediction
+   * @param classIndex the class
+   * @return the probability
+   */
+  public double probability(int index, int classIndex) {
+    return m_Distributions[index * m_NumClasses + classIndex];
+  }
+
+  /**
+   * Returns the predicted distribution.
+   *
+   * @param index the index of the prediction
+   * @return the distribution
+   */
+  public double[] distribution(int index) {
+    double[] result = new double[m_NumClasses];
+    int offset = index * m_NumClasses;
+    for (int i = 0; i < m_NumClasses; i++) {
+      result[i] = m_Distributions[offset + i];
+    }
+    return result;
+  }
+
+  /**
+   * Returns a prediction as NominalPrediction object.
+   *
+   * @param index the index of the prediction
+   * @return the prediction
+   */
+  public NominalPrediction getPrediction(int index) {
+    return new NominalPrediction(actual(index), distribution(index),
+      weight(index));
+  }
+
+  /**
+   * Returns all predictions as NominalPrediction objects. Note that this
+   * creates an object per prediction.
+   *
+   * @return the predictions
+   */
+  public ArrayList<Prediction> toList() {
+    ArrayList<Prediction> result = new ArrayList<Prediction>(m_Size);
+    for (int i = 0; i < m_Size; i++) {
+      result.add(getPrediction(i));
+    }
+    return result;
+  }
+
+  /**
+   * Returns the indices of the usable predictions (class not missing,
+   * non-negative weight), sorted by decreasing probability of the class. The
+   * probability is packed into the upper 32 bits of each entry, so a single
+   * primitive sort suffices.
+   *
+   * @param classIndex the class
+   * @return the packed probabilities and indices
+   */
+  protected long[] sortedByProbability(int classIndex) {
+    long[] result = new long[m_Size];
+    int n = 0;
+    for (int i = 0; i < m_Size; i++) {
+      if (m_Actual[i] < 0 || m_Weights[i] < 0) {
+        continue;
+      }
+      // adding 0 turns -0 into +0, the bits of non-negative floats are ordered
+      float p = m_Distributions[i * m_NumClasses + classIndex] + 0.0f;
+      result[n++] = ((long) Float.floatToIntBits(p) << 32) | i;
+    }
+    result = Arrays.copyOf(result, n);
+    Arrays.sort(result);
+
+    // reverse, for decreasing probabilities
+    for (int i = 0, j = n - 1; i < j; i++, j--) {
+      long tmp = result[i];
+      result[i] = result[j];
+      result[j] = tmp;
+    }
+    return result;
+  }
+
+  /**
+   * Returns the area under the ROC curve for a class, i.e. the
+   * Wilcoxon-Mann-Whitney statistic with ties counted as half.
+   *
+   * @param classIndex the class to consider as "positive"
+   * @return the area, missing if there are no predictions
+   */
+  public double areaUnderROC(int classIndex) {
+    if (m_Size == 0) {
+      return Utils.missingValue();
+    }
+
+    long[] sorted = sortedByProbability(classIndex);
+    double totPos = 0;
+    double totNeg = 0;
+    double area = 0;
+    int i = 0;
+    while (i < sorted.length) {
+      // group of tied probabilities
+      int bits = (int) (sorted[i] >>> 32);
+      double pos = 0;
+      double neg = 0;
+      for (; i < sorted.length && (int) (sorted[i] >>> 32) == bits; i++) {
+        int index = (int) sorted[i];
+        if (m_Actual[index] == classIndex) {
+          pos += m_Weights[index];
+        } else {
+          neg += m_Weights[index];
+        }
+      }
+      // negatives ranked below the positives of this group come later
+      area += neg * (totPos + 0.5 * pos);
+      totPos += pos;
+      totNeg += neg;
+    }
+
+    return area / (totPos * totNeg);
+  }
+
+  /**
+   * Returns the area under the precision-recall curve for a class. Like
+   * ThresholdCurve.getPRCArea, the precision at each threshold is multiplied
+   * with the increase in recall.
+   *
+   * @param classIndex the class to consider as "positive"
+   * @return the area, missing if not available
+   */
+  public double areaUnderPRC(int classIndex) {
+    if (m_Size == 0) {
+      return Utils.missingValue();
+    }
+
+    long[] sorted = sortedByProbability(classIndex);
+    double totPos = 0;
+    for (long s : sorted) {
+      int index = (int) s;
+      if (m_Actual[index] == classIndex) {
+        totPos += m_Weights[index];
+      }
+    }
+
+    double tp = 0;
+    double fp = 0;
+    double area = 0;
+    int i = 0;
+    while (i < sorted.length) {
+      int bits = (int) (sorted[i] >>> 32);
+      double pos = 0;
+      for (; i < sorted.length && (int) (sorted[i] >>> 32) == bits; i++) {
+        int index = (int) sorted[i];
+        if (m_Actual[index] == classIndex) {
+          pos += m_Weights[index];
+        } else {
+          fp += m_Weights[index];
+        }
+      }
+      tp += pos;
+      if (pos > 0) {
+        area += tp / (tp + fp) * pos / totPos;
+      }
+    }
+
+    if (area == 0) {
+      return Utils.missingValue();
+    }
+    return area;
+  }
+
+  /**
+   * Returns the revision string.
+   *
+   * @return the revision
+   */
+  @Override
+  public String getRevision() {
+    return RevisionUtils.extract("$Revision$");
+  }
+}
@@ -50,12 +50,20 @@ import java.beans.Introspector;
 import java.beans.MethodDescriptor;
 import java.io.*;
 import java.lang.reflect.Method;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Date;
 import java.util.Enumeration;
 import java.util.List;
 import java.util.Random;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
 import java.util.stream.Stream;
 import java.util.zip.GZIPInputStream;
 import java.util.zip.GZIPOutputStream;
@@ -168,6 +176,29 @@ import java.util.zip.GZIPOutputStream;
  * Turns off the collection of predictions in order to conserve memory.
  * <p/>
  *
+ * -compact-predictions <br/>
+ * Stores the predictions for a nominal class in primitive arrays rather than
+ * as objects, in order to conserve memory.
+ * <p/>
+ *
+ * -auc-bins &lt;number of bins&gt; <br/>
+ * Estimates the ROC and PRC areas from histograms of the predicted
+ * probabilities with the given number of bins, which needs a fixed amount of
+ * memory (also works with -no-predictions).
+ * <p/>
+ *
+ * -test-slots &lt;number of threads&gt; <br/>
+ * Reads the test file incrementally and scores it in batches on the given
+ * number of threads (0 = number of cores). Predictions are output and
+ * evaluated in the order of the test file, and are not stored unless
+ * -threshold-file is given (use -auc-bins for the ROC and PRC areas).
+ * <p/>
+ *
+ * -test-batch-size &lt;size&gt; <br/>
+ * The number of test instances per batch when scoring with -test-slots
+ * (default: 1000).
+ * <p/>
+ *
  * -r <br/>
  * Outputs cumulative margin distribution (and nothing else).
  * <p/>
@@ -448,6 +479,18 @@ public class Evaluation implements Summarizable, RevisionHandler, Serializable {
    */
   protected boolean m_DiscardPredictions;
 
+  /**
+   * The predictions for a nominal class stored in primitive arrays, if
+   * compact storage is used (null otherwise).
+   */
+  protected CompactPredictions m_CompactPredictions;
+
+  /**
+   * The histograms of the predicted probabilities for estimating AUC/PRC (null
+   * if the areas are computed exactly from the predictions).
+   */
+  protected ThresholdHistogram m_ThresholdHistogram;
+
   /**
    * Holds plugin evaluation metrics
    */
@@ -610,6 +653,63 @@ public class Evaluation implements Summarizable, RevisionHandler, Serializable {
     return m_DiscardPredictions;
   }
 
+  /**
+   * Sets whether to store the predictions for a nominal class in primitive
+   * arrays (actual class, distribution as floats and weight) rather than as
+   * NominalPrediction objects, in order to conserve memory. The predictions()
+   * method creates the objects on demand. Predictions collected so far are
+   * discarded.
+   *
+   * @param value true if to store the predictions compactly
+   * @see CompactPredictions
+   */
+  public void setCompactPredictions(boolean value) {
+    if (value && m_ClassIsNominal) {
+      m_CompactPredictions = new CompactPredictions(m_NumClasses);
+    } else {
+      m_CompactPredictions = null;
+    }
+  }
+
+  /**
+   * Returns whether the predictions for a nominal class are stored in
+   * primitive arrays.
+   *
+   * @return true if the predictions are stored compactly
+   */
+  public boolean getCompactPredictions() {
+    return m_CompactPredictions != null;
+  }
+
+  /**
+   * Sets the number of bins of the histograms of predicted probabilities that
+   * the ROC and PRC areas are estimated from. With histograms, the areas are
+   * available in a fixed amount of memory even if predictions are discarded.
+   * Use 0 to compute the areas exactly from the collected predictions. The
+   * histograms collected so far are discarded.
+   *
+   * @param value the number of bins, 0 for exact areas
+   * @see ThresholdHistogram
+   */
+  public void setNumThresholdBins(int value) {
+    if (value > 0 && m_ClassIsNominal) {
+      m_ThresholdHistogram = new ThresholdHistogram(m_NumClasses, value);
+    } else {
+      m_ThresholdHistogram = null;
+    }
+  }
+
+  /**
+   * Returns the number of bins of the histograms that the ROC and PRC areas
+   * are estimated from.
+   *
+   * @return the number of bins, 0 if the areas are computed exactly
+   */
+  public int getNumThresholdBins() {
+    return (m_ThresholdHistogram == null) ? 0 : m_ThresholdHistogram
+      .getNumBins();
+  }
+
   /**
    * Returns the list of plugin metrics in use (or null if there are none)
    *
@@ -695,6 +795,13 @@ public class Evaluation implements Summarizable, RevisionHandler, Serializable {
    */
   public double areaUnderROC(int classIndex) {
 
+    if (m_ThresholdHistogram != null) {
+      return m_ThresholdHistogram.areaUnderROC(classIndex);
+    }
+    if (m_CompactPredictions != null) {
+      return m_CompactPredictions.areaUnderROC(classIndex);
+    }
+
     // Check if any predictions have been collected
     if (m_Predictions == null) {
       return Utils.missingValue();
@@ -741,6 +848,13 @@ public class Evaluation implements Summarizable, RevisionHandler, Serializable {
    * @return the area under the precision-recall curve or not a number
    */
   public double areaUnderPRC(int classIndex) {
+    if (m_ThresholdHistogram != null) {
+      return m_ThresholdHistogram.areaUnderPRC(classIndex);
+    }
+    if (m_CompactPredictions != null) {
+      return m_CompactPredictions.areaUnderPRC(classIndex);
+    }
+
     // Check if any predictions have been collected
     if (m_Predictions == null) {
       return Utils.missingValue();
@@ -751,6 +865,37 @@ public class Evaluation implements Summarizable, RevisionHandler, Serializable {
     }
   }
 
+  /**
+   * Returns the bound on the error of the estimated area under ROC if the
+   * area is estimated from histograms, 0 if it is computed exactly.
+   *
+   * @param classIndex the index of the class to consider as "positive"
+   * @return the bound on the error
+   * @see #setNumThresholdBins(int)
+   */
+  public double areaUnderROCErrorBound(int classIndex) {
+    if (m_ThresholdHistogram == null) {
+      return 0;
+    }
+    return m_ThresholdHistogram.areaUnderROCErrorBound(classIndex);
+  }
+
+  /**
+   * Returns the bound on the error of the estimated area under the
+   * precision-recall curve if the area is estimated from histograms, 0 if it
+   * is computed exactly.
+   *
+   * @param classIndex the index of the class to consider as "positive"
+   * @return the bound on the error
+   * @see #setNumThresholdBins(int)
+   */
+  public double areaUnderPRCErrorBound(int classIndex) {
+    if (m_ThresholdHistogram == null) {
+      return 0;
+    }
+    return m_ThresholdHistogram.areaUnderPRCErrorBound(classIndex);
+  }
+
   /**
    * Calculates the weighted (by class size) AUPRC.
    *
@@ -998,6 +1143,29 @@ public class Evaluation implements Summarizable, RevisionHandler, Serializable {
    * Turns off the collection of predictions in order to conserve memory.
    * <p/>
    * <p>
+   * -compact-predictions <br/>
+   * Stores the predictions for a nominal class in primitive arrays rather than
+   * as objects, in order to conserve memory.
+   * <p/>
+   * <p>
+   * -auc-bins &lt;number of bins&gt; <br/>
+   * Estimates the ROC and PRC areas from histograms of the predicted
+   * probabilities with the given number of bins, which needs a fixed amount
+   * of memory (also works with -no-predictions).
+   * <p/>
+   * <p>
+   * -test-slots &lt;number of threads&gt; <br/>
+   * Reads the test file incrementally and scores it in batches on the given
+   * number of threads (0 = number of cores). Predictions are output and
+   * evaluated in the order of the test file, and are not stored unless
+   * -threshold-file is given (use -auc-bins for the ROC and PRC areas).
+   * <p/>
+   * <p>
+   * -test-batch-size &lt;size&gt; <br/>
+   * The number of test instances per batch when scoring with -test-slots
+   * (default: 1000).
+   * <p/>
+   * <p>
    * -r <br/>
    * Outputs cumulative margin distribution (and nothing else).
    * <p/>
@@ -1028,6 +1196,22 @@ public class Evaluation implements Summarizable, RevisionHandler, Serializable {
    */
   public static String evaluateModel(String classifierString, String[] options)
           throws Exception {
+    return evaluateModel(classifierString, options, null);
+  }
+
+  /**
+   * Evaluates a classifier with the options given in an array of strings,
+   * streaming the predictions to the writer if possible, see
+   * evaluateModel(Classifier, String[], Writer).
+   *
+   * @param classifierString class of machine learning classifier as a string
+   * @param options          the array of string containing the options
+   * @param output           the writer to stream the predictions to, can be null
+   * @return a string describing the results
+   * @throws Exception if model could not be evaluated successfully
+   */
+  public static String evaluateModel(String classifierString, String[] options,
+          Writer output) throws Exception {
 
     Classifier classifier;
 
@@ -1038,7 +1222,7 @@ public class Evaluation implements Summarizable, RevisionHandler, Serializable {
       throw new Exception("Can't find class with name " + classifierString
               + '.');
     }
-    return evaluateModel(classifier, options);
+    return evaluateModel(classifier, options, output);
   }
 
   /**
@@ -1056,7 +1240,10 @@ public class Evaluation implements Summarizable, RevisionHandler, Serializable {
       }
       String classifier = args[0];
       args[0] = "";
-      System.out.println(evaluateModel(classifier, args));
+      Writer output = new BufferedWriter(new OutputStreamWriter(System.out));
+      String result = evaluateModel(classifier, args, output);
+      output.flush();
+      System.out.println(result);
     } catch (Exception ex) {
       ex.printStackTrace();
       System.err.println(ex.getMessage());
@@ -1266,6 +1453,29 @@ public class Evaluation implements Summarizable, RevisionHandler, Serializable {
    * -no-predictions <br/>
    * Turns off the collection of predictions in order to conserve memory.
    * <p/>
+   * <p>
+   * -compact-predictions <br/>
+   * Stores the predictions for a nominal class in primitive arrays rather than
+   * as objects, in order to conserve memory.
+   * <p/>
+   * <p>
+   * -auc-bins &lt;number of bins&gt; <br/>
+   * Estimates the ROC and PRC areas from histograms of the predicted
+   * probabilities with the given number of bins, which needs a fixed amount
+   * of memory (also works with -no-predictions).
+   * <p/>
+   *
+   * -test-slots &lt;number of threads&gt; <br/>
+   * Reads the test file incrementally and scores it in batches on the given
+   * number of threads (0 = number of cores). Predictions are output and
+   * evaluated in the order of the test file, and are not stored unless
+   * -threshold-file is given (use -auc-bins for the ROC and PRC areas).
+   * <p/>
+   *
+   * -test-batch-size &lt;size&gt; <br/>
+   * The number of test instances per batch when scoring with -test-slots
+   * (default: 1000).
+   * <p/>
    *
    * -r <br/>
    * Outputs cumulative margin distribution (and nothing else).
@@ -1286,6 +1496,25 @@ public class Evaluation implements Summarizable, RevisionHandler, Serializable {
    * @return a string describing the results
    */
   public static String evaluateModel(Classifier classifier, String[] options) throws Exception {
+    return evaluateModel(classifier, options, null);
+  }
+
+  /**
+   * Evaluates a classifier with the options given in an array of strings, see
+   * evaluateModel(Classifier, String[]). If a writer is supplied, the
+   * predictions output with -classifications and -test-slots are written to
+   * it as soon as they are available, preceded by the output generated up to
+   * that point, rather than being collected in the returned string.
+   *
+   * @param classifier machine learning classifier
+   * @param options the array of string containing the options
+   * @param output the writer to stream the predictions to, can be null
+   * @throws Exception if model could not be evaluated successfully
+   * @return a string describing the results, without the output already
+   *         written to the writer
+   * @see #evaluateModel(Classifier, String[])
+   */
+  public static String evaluateModel(Classifier classifier, String[] options, Writer output) throws Exception {
 
     StringBuffer schemeOptionsText = null;
     long trainTimeStart = 0, trainTimeElapsed = 0, testTimeStart = 0, testTimeElapsed = 0;
@@ -1336,6 +1565,16 @@ public class Evaluation implements Summarizable, RevisionHandler, Serializable {
     String splitPercentageString = Utils.getOption("split-percentage", options);
     boolean preserveOrder = Utils.getFlag("preserve-order", options);
     boolean discardPredictions = Utils.getFlag("no-predictions", options);
+    boolean compactPredictions = Utils.getFlag("compact-predictions", options);
+    String aucBinsString = Utils.getOption("auc-bins", options);
+    int aucBins = (aucBinsString.length() > 0) ? Integer.parseInt(aucBinsString) : 0;
+    String testSlotsString = Utils.getOption("test-slots", options);
+    int testSlots = (testSlotsString.length() > 0) ? Integer.parseInt(testSlotsString) : -1;
+    if (testSlots == 0) {
+      testSlots = Runtime.getRuntime().availableProcessors();
+    }
+    String testBatchSizeString = Utils.getOption("test-batch-size", options);
+    int testBatchSize = (testBatchSizeString.length() > 0) ? Integer.parseInt(testBatchSizeString) : 1000;
     String metricsToToggle = Utils.getOption("toggle", options);
     boolean continueIteratingIterative = Utils.getFlag("continue-iterating", options);
     boolean cleanUpIterative = Utils.getFlag("clean-up", options);
@@ -1717,7 +1956,26 @@ public class Evaluation implements Summarizable, RevisionHandler, Serializable {
       classificationOutput.setBuffer(predsBuff);
       if (testFileName.length() > 0) { // CASE 1: SEPARATE TEST SET
         predsBuff.append("\n=== Predictions on test data ===\n\n");
-        classificationOutput.print(classifier, new DataSource(testFileName));
+        if (testSlots > 0) {
+          Evaluation scoringEvaluation = new Evaluation(new Instances(template, 0), costMatrix);
+          if (classifier instanceof weka.classifiers.misc.InputMappedClassifier) {
+            scoringEvaluation = new Evaluation(new Instances(mappedClassifierHeader, 0), costMatrix);
+          }
+          scoringEvaluation.setDiscardPredictions(true);
+          if (output != null) {
+            // stream the predictions rather than collecting them
+            output.write(text.toString() + "\n");
+            text.setLength(0);
+            classificationOutput.setWriter(output);
+          }
+          classificationOutput.printHeader();
+          scoringEvaluation.evaluateModel(classifier, new DataSource(testFileName), test, testSlots, testBatchSize,
+                  classificationOutput);
+          classificationOutput.printFooter();
+          classificationOutput.flush();
+        } else {
+          classificationOutput.print(classifier, new DataSource(testFileName));
+        }
       } else if (splitPercentage > 0) { // CASE 2: PERCENTAGE SPLIT
         Instances tmpInst = new DataSource(trainFileName).getDataSet(actualClassIndex);
         if (!preserveOrder) {
@@ -1747,7 +2005,9 @@ public class Evaluation implements Summarizable, RevisionHandler, Serializable {
         predsBuff.append("\n=== Predictions on training data ===\n\n");
         classificationOutput.print(classifier, new DataSource(trainFileName));
       }
-      text.append("\n" + predsBuff);
+      if (predsBuff.length() > 0) {
+        text.append("\n" + predsBuff);
+      }
     } else {
 
       // ================================================
@@ -1759,6 +2019,8 @@ public class Evaluation implements Summarizable, RevisionHandler, Serializable {
         testingEvaluation = new Evaluation(new Instances(mappedClassifierHeader, 0), costMatrix);
       }
       testingEvaluation.setDiscardPredictions(discardPredictions);
+      testingEvaluation.setCompactPredictions(compactPredictions);
+      testingEvaluation.setNumThresholdBins(aucBins);
       testingEvaluation.toggleEvalMetrics(toggleList);
 
       // CASE 1: SEPARATE TEST SET
@@ -1771,6 +2033,8 @@ public class Evaluation implements Summarizable, RevisionHandler, Serializable {
             trainingEvaluation = new Evaluation(new Instances(mappedClassifierHeader, 0), costMatrix);
           }
           trainingEvaluation.setDiscardPredictions(discardPredictions);
+          trainingEvaluation.setCompactPredictions(compactPredictions);
+          trainingEvaluation.setNumThresholdBins(aucBins);
           trainingEvaluation.toggleEvalMetrics(toggleList);
           trainingEvaluation.setPriors(train);
           testingEvaluation.setPriors(train);
@@ -1809,7 +2073,16 @@ public class Evaluation implements Summarizable, RevisionHandler, Serializable {
         if (train == null) {
           testingEvaluation.useNoPriors();
         }
-        if (classifier instanceof BatchPredictor && ((BatchPredictor) classifier).implementsMoreEfficientBatchPrediction()) {
+        if (testSlots > 0) {
+          // keep memory independent of the size of the test file, unless the
+          // predictions are needed for the threshold file
+          if (thresholdFile.length() == 0) {
+            testingEvaluation.setDiscardPredictions(true);
+          }
+          testTimeStart = System.currentTimeMillis();
+          testingEvaluation.evaluateModel(classifier, new DataSource(testFileName), test, testSlots, testBatchSize);
+          testTimeElapsed = System.currentTimeMillis() - testTimeStart;
+        } else if (classifier instanceof BatchPredictor && ((BatchPredictor) classifier).implementsMoreEfficientBatchPrediction()) {
           testTimeStart = System.currentTimeMillis();
           testingEvaluation.evaluateModel(classifier, new DataSource(testFileName).getDataSet(test.classIndex()));
           testTimeElapsed = System.currentTimeMillis() - testTimeStart;
@@ -1843,6 +2116,8 @@ public class Evaluation implements Summarizable, RevisionHandler, Serializable {
             trainingEvaluation = new Evaluation(new Instances(mappedClassifierHeader, 0), costMatrix);
           }
           trainingEvaluation.setDiscardPredictions(discardPredictions);
+          trainingEvaluation.setCompactPredictions(compactPredictions);
+          trainingEvaluation.setNumThresholdBins(aucBins);
           trainingEvaluation.toggleEvalMetrics(toggleList);
           DataSource trainSource = new DataSource(trainFileName);
           trainSource.getStructure(); // We already know the structure but need to advance to the data section
@@ -1913,6 +2188,8 @@ public class Evaluation implements Summarizable, RevisionHandler, Serializable {
             trainingEvaluation = new Evaluation(new Instances(mappedClassifierHeader, 0), costMatrix);
           }
           trainingEvaluation.setDiscardPredictions(discardPredictions);
+          trainingEvaluation.setCompactPredictions(compactPredictions);
+          trainingEvaluation.setNumThresholdBins(aucBins);
           trainingEvaluation.toggleEvalMetrics(toggleList);
           DataSource trainSource = new DataSource(trainFileName);
           trainSource.getStructure(); // We already know the structure but need to advance to the data section
@@ -1983,6 +2260,8 @@ public class Evaluation implements Summarizable, RevisionHandler, Serializable {
             trainingEvaluation = new Evaluation(new Instances(mappedClassifierHeader, 0), costMatrix);
           }
           trainingEvaluation.setDiscardPredictions(discardPredictions);
+          trainingEvaluation.setCompactPredictions(compactPredictions);
+          trainingEvaluation.setNumThresholdBins(aucBins);
           trainingEvaluation.toggleEvalMetrics(toggleList);
           DataSource trainSource = new DataSource(trainFileName);
           trainSource.getStructure(); // We already know the structure but need to advance to the data section
@@ -2139,6 +2418,231 @@ public class Evaluation implements Summarizable, RevisionHandler, Serializable {
     return predictions;
   }
 
+  /**
+   * Evaluates the classifier on the instances of a data source, which are read
+   * incrementally rather than loaded as a whole. The instances are scored in
+   * batches (via BatchPredictor, if the classifier implements it efficiently)
+   * on the given number of threads, each thread using its own copy of the
+   * classifier. The statistics are updated and the predictions printed in the
+   * order of the data source, hence the results are the same as with
+   * evaluateModelOnceAndRecordPrediction. At most two batches per thread are
+   * held in memory, i.e. the memory needed is independent of the size of the
+   * data source, unless the predictions are stored (see
+   * setDiscardPredictions). The printed predictions are flushed after each
+   * batch (see AbstractOutput.flush()), hence they are only kept in memory if
+   * the output has no writer.
+   *
+   * @param classifier the classifier to evaluate
+   * @param source the data source to read the test instances from
+   * @param structure the structure of the test instances, with the class set
+   * @param numSlots the number of threads to score with
+   * @param batchSize the number of instances per batch
+   * @param forPredictionsPrinting varargs parameter that, if supplied, is
+   *          expected to hold a
+   *          weka.classifiers.evaluation.output.prediction.AbstractOutput
+   *          object
+   * @throws Exception if model could not be evaluated successfully
+   */
+  public void evaluateModel(Classifier classifier, DataSource source,
+    Instances structure, int numSlots, int batchSize,
+    Object... forPredictionsPrinting) throws Exception {
+    // for predictions printing
+    AbstractOutput classificationOutput = null;
+
+    if (forPredictionsPrinting.length > 0) {
+      classificationOutput = (AbstractOutput) forPredictionsPrinting[0];
+    }
+    if (batchSize < 1) {
+      throw new IllegalArgumentException("Batch size must be at least 1!");
+    }
+
+    ExecutorService pool = null;
+    LinkedBlockingQueue<Classifier> copies = null;
+    if (numSlots > 1) {
+      copies = new LinkedBlockingQueue<Classifier>(
+        Arrays.asList(AbstractClassifier.makeCopies(classifier, numSlots)));
+      pool = Executors.newFixedThreadPool(numSlots);
+    }
+    ArrayDeque<Instances> batches = new ArrayDeque<Instances>();
+    ArrayDeque<Future<double[][]>> scores = new ArrayDeque<Future<double[][]>>();
+    int index = 0;
+    try {
+      source.reset();
+      source.getStructure();
+      while (source.hasMoreElements(structure)) {
+        Instances batch = new Instances(structure, batchSize);
+        while (batch.numInstances() < batchSize
+          && source.hasMoreElements(structure)) {
+          batch.add(source.nextElement(structure));
+        }
+        if (pool == null) {
+          index = evaluateBatch(classifier, batch,
+            scoreBatch(classifier, batch), index, classificationOutput);
+          continue;
+        }
+        batches.add(batch);
+        scores.add(pool.submit(new BatchScoring(copies, batch)));
+        if (scores.size() >= 2 * numSlots) {
+          index = evaluateBatch(classifier, batches.poll(),
+            waitFor(scores.poll()), index, classificationOutput);
+        }
+      }
+      while (!scores.isEmpty()) {
+        index = evaluateBatch(classifier, batches.poll(),
+          waitFor(scores.poll()), index, classificationOutput);
+      }
+    } finally {
+      if (pool != null) {
+        pool.shutdownNow();
+      }
+    }
+  }
+
+  /**
+   * Returns a copy of the instance with the class set to missing, i.e., the
+   * instance to obtain the prediction for.
+   *
+   * @param classifier the classifier to make the prediction
+   * @param instance the test instance
+   * @return the copy without class
+   * @throws Exception if the mapped class index can't be determined
+   */
+  protected static Instance classMissing(Classifier classifier,
+    Instance instance) throws Exception {
+    Instance result = (Instance) instance.copy();
+    result.setDataset(instance.dataset());
+    if (classifier instanceof weka.classifiers.misc.InputMappedClassifier) {
+      result.setMissing(((weka.classifiers.misc.InputMappedClassifier) classifier)
+        .getMappedClassIndex());
+    } else {
+      result.setClassMissing();
+    }
+    return result;
+  }
+
+  /**
+   * Computes the predicted distributions for a batch of instances.
+   *
+   * @param classifier the classifier to use
+   * @param batch the test instances
+   * @return the distributions
+   * @throws Exception if the distributions can't be computed
+   */
+  protected static double[][] scoreBatch(Classifier classifier,
+    Instances batch) throws Exception {
+    Instances dataPred = new Instances(batch, batch.numInstances());
+    for (int i = 0; i < batch.numInstances(); i++) {
+      dataPred.add(classMissing(classifier, batch.instance(i)));
+    }
+    if (classifier instanceof BatchPredictor
+      && ((BatchPredictor) classifier).implementsMoreEfficientBatchPrediction()) {
+      return ((BatchPredictor) classifier).distributionsForInstances(dataPred);
+    }
+    double[][] result = new double[dataPred.numInstances()][];
+    for (int i = 0; i < dataPred.numInstances(); i++) {
+      result[i] = classifier.distributionForInstance(dataPred.instance(i));
+    }
+    return result;
+  }
+
+  /**
+   * Updates the statistics with the predicted distributions of a batch and
+   * prints the predictions, which are then flushed to the writer and/or file
+   * of the output.
+   *
+   * @param classifier the classifier that made the predictions
+   * @param batch the test instances
+   * @param dists the predicted distributions
+   * @param index the index of the first instance of the batch
+   * @param classificationOutput the output for the predictions, can be null
+   * @return the index of the first instance of the next batch
+   * @throws Exception if model could not be evaluated successfully
+   */
+  protected int evaluateBatch(Classifier classifier, Instances batch,
+    double[][] dists, int index, AbstractOutput classificationOutput)
+    throws Exception {
+    for (int i = 0; i < batch.numInstances(); i++) {
+      Instance instance = batch.instance(i);
+      if (classifier instanceof weka.classifiers.misc.InputMappedClassifier) {
+        instance =
+          ((weka.classifiers.misc.InputMappedClassifier) classifier)
+            .constructMappedInstance((Instance) instance.copy());
+      }
+      double pred = evaluationForSingleInstance(dists[i], instance, true);
+      if (!m_ClassIsNominal) {
+        updateStatsForEstimators(classifier,
+          classMissing(classifier, batch.instance(i)), instance, pred);
+      }
+      if (classificationOutput != null) {
+        classificationOutput.printClassification(dists[i], instance, index);
+      }
+      index++;
+    }
+    if (classificationOutput != null) {
+      classificationOutput.flush();
+    }
+    return index;
+  }
+
+  /**
+   * Waits for the distributions of a batch to be computed.
+   *
+   * @param future the pending computation
+   * @return the distributions
+   * @throws Exception the exception thrown by the computation, if any
+   */
+  protected static double[][] waitFor(Future<double[][]> future)
+    throws Exception {
+    try {
+      return future.get();
+    } catch (ExecutionException ex) {
+      if (ex.getCause() instanceof Exception) {
+        throw (Exception) ex.getCause();
+      }
+      throw ex;
+    }
+  }
+
+  /**
+   * Computes the distributions for a batch with one of the copies of a
+   * classifier.
+   */
+  protected static class BatchScoring implements Callable<double[][]> {
+
+    /** the idle copies of the classifier */
+    protected BlockingQueue<Classifier> m_Copies;
+
+    /** the test instances */
+    protected Instances m_Batch;
+
+    /**
+     * Initializes the computation.
+     *
+     * @param copies the idle copies of the classifier
+     * @param batch the test instances
+     */
+    public BatchScoring(BlockingQueue<Classifier> copies, Instances batch) {
+      m_Copies = copies;
+      m_Batch = batch;
+    }
+
+    /**
+     * Computes the distributions.
+     *
+     * @return the distributions
+     * @throws Exception if the distributions can't be computed
+     */
+    @Override
+    public double[][] call() throws Exception {
+      Classifier classifier = m_Copies.take();
+      try {
+        return scoreBatch(classifier, m_Batch);
+      } finally {
+        m_Copies.put(classifier);
+      }
+    }
+  }
+
   /**
    * Evaluates the supplied distribution on a single instance.
    *
@@ -2159,12 +2663,20 @@ public class Evaluation implements Summarizable, RevisionHandler, Serializable {
         pred = Utils.missingValue();
       }
       updateStatsForClassifier(dist, instance);
+      if (storePredictions && m_ThresholdHistogram != null) {
+        m_ThresholdHistogram.add(instance.classValue(), dist, instance.weight());
+      }
       if (storePredictions && !m_DiscardPredictions) {
-        if (m_Predictions == null) {
-          m_Predictions = new ArrayList<Prediction>();
+        if (m_CompactPredictions != null) {
+          m_CompactPredictions.add(instance.classValue(), dist,
+            instance.weight());
+        } else {
+          if (m_Predictions == null) {
+            m_Predictions = new ArrayList<Prediction>();
+          }
+          m_Predictions.add(new NominalPrediction(instance.classValue(), dist,
+            instance.weight()));
         }
-        m_Predictions.add(new NominalPrediction(instance.classValue(), dist,
-          instance.weight()));
       }
     } else {
       pred = dist[0];
@@ -2217,6 +2729,22 @@ public class Evaluation implements Summarizable, RevisionHandler, Serializable {
         classifier.distributionForInstance(classMissing), instance,
         storePredictions);
 
+    updateStatsForEstimators(classifier, classMissing, instance, pred);
+    return pred;
+  }
+
+  /**
+   * Updates the coverage and complexity statistics for a numeric class.
+   *
+   * @param classifier machine learning classifier
+   * @param classMissing the test instance with the class set to missing
+   * @param instance the test instance
+   * @param pred the prediction made by the classifier
+   * @throws Exception if the intervals or densities can't be computed
+   */
+  protected void updateStatsForEstimators(Classifier classifier,
+    Instance classMissing, Instance instance, double pred) throws Exception {
+
     // We don't need to do the following if the class is nominal because in that
     // case
     // entropy and coverage statistics are always computed.
@@ -2237,7 +2765,6 @@ public class Evaluation implements Summarizable, RevisionHandler, Serializable {
         }
       }
     }
-    return pred;
   }
 
   /**
@@ -2312,15 +2839,20 @@ public class Evaluation implements Summarizable, RevisionHandler, Serializable {
   }
 
   /**
-   * Returns the predictions that have been collected.
+   * Returns the predictions that have been collected. If the predictions are
+   * stored compactly, a new list of prediction objects is created each time.
    *
    * @return a reference to the FastVector containing the predictions that have
    *         been collected. This should be null if no predictions have been
    *         collected.
+   * @see #setCompactPredictions(boolean)
    */
   public ArrayList<Prediction> predictions() {
     if (m_DiscardPredictions) {
       return null;
+    } else if (m_CompactPredictions != null) {
+      return (m_CompactPredictions.size() == 0) ? null : m_CompactPredictions
+        .toList();
     } else {
       return m_Predictions;
     }
@@ -4484,6 +5016,26 @@ public class Evaluation implements Summarizable, RevisionHandler, Serializable {
     optionsText.append("-no-predictions\n");
     optionsText
       .append("\tTurns off the collection of predictions in order to conserve memory.\n");
+    optionsText.append("-compact-predictions\n");
+    optionsText
+      .append("\tStores the predictions for a nominal class in primitive arrays\n"
+        + "\trather than as objects, in order to conserve memory.\n");
+    optionsText.append("-auc-bins <number of bins>\n");
+    optionsText
+      .append("\tEstimates the ROC and PRC areas from histograms of the predicted\n"
+        + "\tprobabilities with the given number of bins, which needs a fixed\n"
+        + "\tamount of memory (also works with -no-predictions).\n");
+    optionsText.append("-test-slots <number of threads>\n");
+    optionsText
+      .append("\tReads the test file incrementally and scores it in batches on\n"
+        + "\tthe given number of threads (0 = number of cores). Predictions\n"
+        + "\tare output and evaluated in the order of the test file, and are\n"
+        + "\tnot stored unless -threshold-file is given (use -auc-bins for\n"
+        + "\tthe ROC and PRC areas).\n");
+    optionsText.append("-test-batch-size <size>\n");
+    optionsText
+      .append("\tThe number of test instances per batch when scoring with\n"
+        + "\t-test-slots (default: 1000).\n");
 
     // Get scheme-specific options
     if (classifier instanceof OptionHandler) {
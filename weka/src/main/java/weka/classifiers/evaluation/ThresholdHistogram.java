@@ -0,0 +1,281 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ * ThresholdHistogram.java
+ * Copyright (C) 2026 University of Waikato, Hamilton, New Zealand
+ *
+ */
+
+package weka.classifiers.evaluation;
+
+import java.io.Serializable;
+
+import weka.core.RevisionHandler;
+import weka.core.RevisionUtils;
+import weka.core.Utils;
+
+/**
+ * Estimates the areas under the ROC and the precision-recall curve from
+ * histograms of the predicted probabilities, using a fixed amount of memory
+ * regardless of the number of predictions. For every class, the weights of
+ * the positive and the negative predictions are accumulated in a fixed number
+ * of equal-width bins over [0,1]. Histograms of disjoint sets of predictions
+ * (folds, partitions of the test data) can simply be merged. Predictions with
+ * a missing class value or negative weight are skipped. <br/>
+ * <br/>
+ * The estimates treat all probabilities within a bin as tied, i.e. the curves
+ * are only evaluated at the bin boundaries. The error compared to the exact
+ * areas (as computed by ThresholdCurve) is bounded as follows, where P_b and
+ * N_b are the weights of positives and negatives in bin b, and P and N the
+ * total weights:
+ * <ul>
+ * <li>ROC area: a positive/negative pair in the same bin is counted as 1/2,
+ * whereas it contributes either 0, 1/2 or 1 to the exact area. Hence the error
+ * is at most 0.5 * sum_b P_b * N_b / (P * N). For n bins and probabilities
+ * spread evenly over the bins this is about 0.5 / n.</li>
+ * <li>PRC area: within bin b the recall increases by P_b / P while the
+ * precision lies between TP_&gt;b / (TP_&gt;b + FP_&gt;=b) and TP_&gt;=b /
+ * (TP_&gt;=b + FP_&gt;b), where TP and FP are the weights of positives and
+ * negatives above or at the bin. The error is at most the sum of P_b / P times
+ * the width of that interval.</li>
+ * </ul>
+ * Both bounds are computed from the histograms and can be retrieved along
+ * with the estimates.
+ *
+ * @author The WEKA Team (wekalist@list.waikato.ac.nz)
+ * @version $Revision$
+ * @see ThresholdCurve
+ */
+public class ThresholdHistogram implements Serializable, RevisionHandler {
+
+  /** for serialization */
+  private static final long serialVersionUID = 5416386237919366417L;
+
+  /** the number of classes */
+  protected int m_NumClasses;
+
+  /** the number of bins */
+  protected int m_NumBins;
+
+  /** the weights of the positives per class and bin */
+  protected double[][] m_Positives;
+
+  /** the weights of the negatives per class and bin */
+  protected double[][] m_Negatives;
+
+  /**
+   * Creates empty histograms.
+   *
+   * @param numClasses the number of classes
+   * @param numBins the number of bins per class
+   */
+  public ThresholdHistogram(int numClasses, int numBins) {
+    if (numBins < 1) {
+      throw new IllegalArgumentException("Number of bins must be at least 1!");
+    }
+    m_NumClasses = numClasses;
+    m_NumBins = numBins;
+    m_Positives = new double[numClasses][numBins];
+    m_Negatives = new double[numClasses][numBins];
+  }
+
+  /**
+   * Returns the number of classes.
+   *
+   * @return the number of classes
+   */
+  public int getNumClasses() {
+    return m_NumClasses;
+  }
+
+  /**
+   * Returns the number of bins per class.
+   *
+   * @return the number of bins
+   */
+  public int getNumBins() {
+    return m_NumBins;
+  }
+
+  /**
+   * Returns the bin of a probability.
+   *
+   * @param p the probability
+   * @return the bin
+   */
+  protected int bin(double p) {
+    int result = (int) (p * m_NumBins);
+    if (result >= m_NumBins) {
+      result = m_NumBins - 1;
+    } else if (result < 0) {
+      result = 0;
+    }
+    return result;
+  }
+
+  /**
+   * Adds a prediction.
+   *
+   * @param actual the actual class value (may be missing)
+   * @param distribution the predicted distribution
+   * @param weight the weight of the prediction
+   */
+  public void add(double actual, double[] distribution, double weight) {
+    if (Utils.isMissingValue(actual) || weight < 0) {
+      return;
+    }
+
+    int a = (int) actual;
+    for (int i = 0; i < m_NumClasses; i++) {
+      if (i == a) {
+        m_Positives[i][bin(distribution[i])] += weight;
+      } else {
+        m_Negatives[i][bin(distribution[i])] += weight;
+      }
+    }
+  }
+
+  /**
+   * Adds the counts of other histograms (with the same number of classes and
+   * bins).
+   *
+   * @param other the histograms to merge
+   * @throws IllegalArgumentException if the histograms don't match
+   */
+  public void merge(ThresholdHistogram other) {
+    if (other.m_NumClasses != m_NumClasses || other.m_NumBins != m_NumBins) {
+      throw new IllegalArgumentException("Histograms differ in number of "
+        + "classes or bins!");
+    }
+    for (int i = 0; i < m_NumClasses; i++) {
+      for (int b = 0; b < m_NumBins; b++) {
+        m_Positives[i][b] += other.m_Positives[i][b];
+        m_Negatives[i][b] += other.m_Negatives[i][b];
+      }
+    }
+  }
+
+  /**
+   * Returns the estimated area under the ROC curve for a class.
+   *
+   * @param classIndex the class to consider as "positive"
+   * @return the area, NaN if there are no positives or no negatives
+   */
+  public double areaUnderROC(int classIndex) {
+    double[] pos = m_Positives[classIndex];
+    double[] neg = m_Negatives[classIndex];
+    double totPos = 0;
+    double totNeg = 0;
+    double area = 0;
+    for (int b = m_NumBins - 1; b >= 0; b--) {
+      area += neg[b] * (totPos + 0.5 * pos[b]);
+      totPos += pos[b];
+      totNeg += neg[b];
+    }
+
+    return area / (totPos * totNeg);
+  }
+
+  /**
+   * Returns the bound on the error of the estimated area under the ROC curve.
+   *
+   * @param classIndex the class to consider as "positive"
+   * @return the bound, NaN if there are no positives or no negatives
+   */
+  public double areaUnderROCErrorBound(int classIndex) {
+    double[] pos = m_Positives[classIndex];
+    double[] neg = m_Negatives[classIndex];
+    double totPos = 0;
+    double totNeg = 0;
+    double ties = 0;
+    for (int b = 0; b < m_NumBins; b++) {
+      ties += pos[b] * neg[b];
+      totPos += pos[b];
+      totNeg += neg[b];
+    }
+
+    return 0.5 * ties / (totPos * totNeg);
+  }
+
+  /**
+   * Returns the estimated area under the precision-recall curve for a class.
+   *
+   * @param classIndex the class to consider as "positive"
+   * @return the area, missing if not available
+   */
+  public double areaUnderPRC(int classIndex) {
+    double[] pos = m_Positives[classIndex];
+    double[] neg = m_Negatives[classIndex];
+    double totPos = Utils.sum(pos);
+
+    double tp = 0;
+    double fp = 0;
+    double area = 0;
+    for (int b = m_NumBins - 1; b >= 0; b--) {
+      tp += pos[b];
+      fp += neg[b];
+      if (pos[b] > 0) {
+        area += tp / (tp + fp) * pos[b] / totPos;
+      }
+    }
+
+    if (area == 0) {
+      return Utils.missingValue();
+    }
+    return area;
+  }
+
+  /**
+   * Returns the bound on the error of the estimated area under the
+   * precision-recall curve.
+   *
+   * @param classIndex the class to consider as "positive"
+   * @return the bound, missing if not available
+   */
+  public double areaUnderPRCErrorBound(int classIndex) {
+    double[] pos = m_Positives[classIndex];
+    double[] neg = m_Negatives[classIndex];
+    double totPos = Utils.sum(pos);
+    if (totPos == 0) {
+      return Utils.missingValue();
+    }
+
+    double tp = 0;
+    double fp = 0;
+    double bound = 0;
+    for (int b = m_NumBins - 1; b >= 0; b--) {
+      if (pos[b] > 0) {
+        double low = (tp + fp + neg[b] > 0) ? tp / (tp + fp + neg[b]) : 1;
+        double high = (tp + pos[b]) / (tp + pos[b] + fp);
+        bound += (high - low) * pos[b] / totPos;
+      }
+      tp += pos[b];
+      fp += neg[b];
+    }
+
+    return bound;
+  }
+
+  /**
+   * Returns the revision string.
+   *
+   * @return the revision
+   */
+  @Override
+  public String getRevision() {
+    return RevisionUtils.extract("$Revision$");
+  }
+}
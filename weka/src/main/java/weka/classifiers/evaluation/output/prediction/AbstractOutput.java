@@ -23,7 +23,9 @@ package weka.classifiers.evaluation.output.prediction;
 import java.io.BufferedWriter;
 import java.io.File;
 import java.io.FileWriter;
+import java.io.IOException;
 import java.io.Serializable;
+import java.io.Writer;
 import java.util.Enumeration;
 import java.util.Vector;
 
@@ -79,6 +81,10 @@ import weka.core.converters.ConverterUtils.DataSource;
  * output.printFooter();
  * </pre>
  * 
+ * Long outputs can be streamed rather than collected in the buffer, by setting
+ * a writer and calling flush() every now and then, e.g., after each batch of
+ * classifications.
+ * 
  * @author fracpete (fracpete at waikato dot ac dot nz)
  * @version $Revision$
  */
@@ -111,6 +117,12 @@ public abstract class AbstractOutput implements Serializable, OptionHandler {
   /** whether to suppress the regular output and only store in file. */
   protected boolean m_SuppressOutput;
 
+  /** the writer to stream the regular output to, null if only buffered. */
+  protected transient Writer m_Writer;
+
+  /** whether part of the output has already been written to the file. */
+  protected transient boolean m_FileFlushed;
+
   /**
    * Initializes the output class.
    */
@@ -283,6 +295,25 @@ public abstract class AbstractOutput implements Serializable, OptionHandler {
     return m_Buffer;
   }
 
+  /**
+   * Sets the writer that flush() writes the buffered regular output to.
+   * 
+   * @param value the writer, null to keep the output in the buffer
+   * @see #flush()
+   */
+  public void setWriter(Writer value) {
+    m_Writer = value;
+  }
+
+  /**
+   * Returns the writer that flush() writes the buffered regular output to.
+   * 
+   * @return the writer, can be null
+   */
+  public Writer getWriter() {
+    return m_Writer;
+  }
+
   /**
    * Sets the range of attributes to output.
    * 
@@ -514,6 +545,7 @@ public abstract class AbstractOutput implements Serializable, OptionHandler {
       throw new IllegalStateException(error);
     }
 
+    m_FileFlushed = false;
     doPrintHeader();
   }
 
@@ -704,7 +736,7 @@ public abstract class AbstractOutput implements Serializable, OptionHandler {
     // write output to file
     if (!m_OutputFile.isDirectory()) {
       try {
-        writer = new BufferedWriter(new FileWriter(m_OutputFile));
+        writer = new BufferedWriter(new FileWriter(m_OutputFile, m_FileFlushed));
         writer.write(m_FileBuffer.toString());
         writer.newLine();
         writer.flush();
@@ -712,6 +744,36 @@ public abstract class AbstractOutput implements Serializable, OptionHandler {
       } catch (Exception e) {
         e.printStackTrace();
       }
+      m_FileFlushed = false;
+    }
+  }
+
+  /**
+   * Writes the output generated so far to the writer (if set) and the output
+   * file (if set), and removes it from the respective buffer. Allows the
+   * classifications to be streamed rather than collected in memory. The
+   * footer is still only written by printFooter().
+   * 
+   * @throws IOException if writing fails
+   * @see #setWriter(Writer)
+   */
+  public void flush() throws IOException {
+    if ((m_Writer != null) && (m_Buffer != null) && (m_Buffer.length() > 0)) {
+      m_Writer.write(m_Buffer.toString());
+      m_Writer.flush();
+      m_Buffer.setLength(0);
+    }
+
+    if (!m_OutputFile.isDirectory() && (m_FileBuffer.length() > 0)) {
+      BufferedWriter writer =
+        new BufferedWriter(new FileWriter(m_OutputFile, m_FileFlushed));
+      try {
+        writer.write(m_FileBuffer.toString());
+      } finally {
+        writer.close();
+      }
+      m_FileBuffer.setLength(0);
+      m_FileFlushed = true;
     }
   }
 
@@ -34,6 +34,7 @@ import weka.classifiers.RandomizableParallelIteratedSingleClassifierEnhancer;
 import weka.classifiers.evaluation.Evaluation;
 import weka.core.AdditionalMeasureProducer;
 import weka.core.Aggregateable;
+import weka.core.CopyableFromOptions;
 import weka.core.Instance;
 import weka.core.Instances;
 import weka.core.Option;
@@ -156,7 +157,8 @@ import weka.core.PartitionGenerator;
 public class Bagging
   extends RandomizableParallelIteratedSingleClassifierEnhancer 
   implements WeightedInstancesHandler, AdditionalMeasureProducer,
-             TechnicalInformationHandler, PartitionGenerator, Aggregateable<Bagging> {
+             TechnicalInformationHandler, PartitionGenerator, Aggregateable<Bagging>,
+             CopyableFromOptions {
 
   /** for serialization */
   static final long serialVersionUID = -115879962237199703L;
@@ -910,6 +912,20 @@ public class Bagging
     return RevisionUtils.extract("$Revision$");
   }
 
+  /**
+   * Returns whether this classifier can be copied via its options, i.e.,
+   * whether no ensemble has been built yet and the base classifier can be
+   * copied via its options as well.
+   *
+   * @return true if the classifier can be copied via its options
+   */
+  @Override
+  public boolean isCopyableFromOptions() {
+    return (m_Classifiers == null) && (m_classifiersCache == null)
+      && (m_Classifier instanceof CopyableFromOptions)
+      && ((CopyableFromOptions) m_Classifier).isCopyableFromOptions();
+  }
+
   /**
    * Main method for testing this class.
    *
@@ -24,8 +24,12 @@ package weka.classifiers.meta;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Enumeration;
+import java.util.List;
 import java.util.Random;
 import java.util.Vector;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
 
 import weka.classifiers.AbstractClassifier;
 import weka.classifiers.Classifier;
@@ -438,6 +442,11 @@ public class Stacking
   protected void generateMetaLevel(Instances newData, Random random)
           throws Exception {
 
+    if (m_numExecutionSlots > 1) {
+      generateMetaLevelParallel(newData, random);
+      return;
+    }
+
     Instances metaData = metaFormat(newData);
     m_MetaFormat = new Instances(metaData, 0);
     for (int j = 0; j < m_NumFolds; j++) {
@@ -467,6 +476,97 @@ public class Stacking
     m_MetaClassifier.buildClassifier(metaData);
   }
 
+  /**
+   * Generates the meta data using the executor pool, with one task per fold and base classifier.
+   * Each task trains a copy of the base classifier on the training set of the fold and predicts
+   * the test set. The folds are generated up front, in the same order as in the sequential case,
+   * and the predictions are assembled in fold order, hence the meta data is the same. Note that
+   * the training sets of all folds are held in memory at the same time.
+   *
+   * @param newData the data to work on
+   * @param random  the random number generator to use for cross-validation
+   * @throws Exception if generation fails
+   */
+  protected void generateMetaLevelParallel(Instances newData, Random random)
+          throws Exception {
+
+    Instances metaData = metaFormat(newData);
+    m_MetaFormat = new Instances(metaData, 0);
+    final boolean batch = baseClassifiersImplementMoreEfficientBatchPrediction();
+
+    // start the executor pool
+    super.buildClassifier(newData);
+
+    Instances[] tests = new Instances[m_NumFolds];
+    List<Future<double[][]>> futures = new ArrayList<Future<double[][]>>();
+    try {
+      for (int j = 0; j < m_NumFolds; j++) {
+        final Instances train = newData.trainCV(m_NumFolds, j, random);
+        final Instances test = newData.testCV(m_NumFolds, j);
+        tests[j] = test;
+        for (int k = 0; k < m_Classifiers.length; k++) {
+          final Classifier template = getClassifier(k);
+          futures.add(m_executorPool.submit(new Callable<double[][]>() {
+            @Override
+            public double[][] call() throws Exception {
+              Classifier classifier = AbstractClassifier.makeCopy(template);
+              classifier.buildClassifier(train);
+              return basePredictions(classifier, test, batch);
+            }
+          }));
+        }
+      }
+
+      for (int j = 0; j < m_NumFolds; j++) {
+        double[][][] predictions = new double[m_Classifiers.length][][];
+        for (int k = 0; k < m_Classifiers.length; k++) {
+          predictions[k] = futures.get(j * m_Classifiers.length + k).get();
+        }
+        metaData.addAll(metaInstances(tests[j], predictions));
+        tests[j] = null;
+      }
+    } catch (ExecutionException e) {
+      if (e.getCause() instanceof Exception) {
+        throw (Exception) e.getCause();
+      }
+      throw e;
+    } finally {
+      m_executorPool.shutdownNow();
+    }
+
+    m_MetaClassifier.buildClassifier(metaData);
+  }
+
+  /**
+   * Returns the predictions of a base classifier for the given instances, in the form used by
+   * metaInstance and metaInstances: the predicted value if the class is numeric and the
+   * distribution otherwise.
+   *
+   * @param classifier the trained base classifier
+   * @param instances  the instances to predict
+   * @param batch      whether to use batch prediction (requires the classifier to implement
+   *                   BatchPredictor)
+   * @return the predictions
+   * @throws Exception if prediction fails
+   */
+  protected double[][] basePredictions(Classifier classifier, Instances instances, boolean batch)
+          throws Exception {
+
+    if (batch) {
+      return ((BatchPredictor) classifier).distributionsForInstances(instances);
+    }
+
+    double[][] result = new double[instances.numInstances()][];
+    for (int i = 0; i < instances.numInstances(); i++) {
+      if (m_BaseFormat.classAttribute().isNumeric()) {
+        result[i] = new double[] { classifier.classifyInstance(instances.instance(i)) };
+      } else {
+        result[i] = classifier.distributionForInstance(instances.instance(i));
+      }
+    }
+    return result;
+  }
+
   /**
    * Returns estimated class probabilities for the given instance if the class is nominal and a
    * one-element array containing the numeric prediction if the class is numeric.
@@ -602,6 +702,19 @@ public class Stacking
       predictions[k] = ((BatchPredictor) getClassifier(k)).distributionsForInstances(instances);
     }
 
+    return metaInstances(instances, predictions);
+  }
+
+  /**
+   * Makes a set of level-1 instances from the given instances and the predictions of the base
+   * classifiers.
+   *
+   * @param instances   the instances to be transformed
+   * @param predictions the predictions of each base classifier for each instance
+   * @return the level-1 instances
+   */
+  protected Instances metaInstances(Instances instances, double[][][] predictions) {
+
     Instances metaData = new Instances(m_MetaFormat, 0);
     for (int l = 0; l < instances.numInstances(); l++) {
       double[] values = new double[m_MetaFormat.numAttributes()];
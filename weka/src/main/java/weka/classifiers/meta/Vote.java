@@ -25,6 +25,7 @@ import weka.classifiers.Classifier;
 import weka.classifiers.RandomizableMultipleClassifiersCombiner;
 import weka.classifiers.misc.InputMappedClassifier;
 import weka.core.Aggregateable;
+import weka.core.BatchPredictor;
 import weka.core.Capabilities;
 import weka.core.Capabilities.Capability;
 import weka.core.Environment;
@@ -51,6 +52,11 @@ import java.util.Collections;
 import java.util.Enumeration;
 import java.util.List;
 import java.util.Vector;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 /**
  * <!-- globalinfo-start --> Class for combining classifiers. Different
@@ -91,6 +97,12 @@ import java.util.Vector;
  * </pre>
  * 
  * <pre>
+ * -num-slots &lt;num&gt;
+ *  Number of execution slots.
+ *  (default 1 - i.e. no parallelism)
+ * </pre>
+ * 
+ * <pre>
  * -S &lt;num&gt;
  *  Random number seed.
  *  (default 1)
@@ -207,6 +219,9 @@ public class Vote extends RandomizableMultipleClassifiersCombiner implements
   /** Print the individual models in the output */
   protected boolean m_dontPrintModels;
 
+  /** The number of threads to build and score the classifiers with */
+  protected int m_numExecutionSlots = 1;
+
   /**
    * Returns a string describing classifier
    * 
@@ -244,6 +259,10 @@ public class Vote extends RandomizableMultipleClassifiersCombiner implements
       "\tSuppress the printing of the individual models in the output",
       "do-not-print", 0, "-do-not-print"));
 
+    result.addElement(new Option("\tNumber of execution slots.\n"
+      + "\t(default 1 - i.e. no parallelism)", "num-slots", 1,
+      "-num-slots <num>"));
+
     result.addAll(Collections.list(super.listOptions()));
 
     return result.elements();
@@ -277,6 +296,11 @@ public class Vote extends RandomizableMultipleClassifiersCombiner implements
       result.add("-do-not-print");
     }
 
+    if (m_numExecutionSlots > 1) {
+      result.add("-num-slots");
+      result.add("" + m_numExecutionSlots);
+    }
+
     return result.toArray(new String[result.size()]);
   }
 
@@ -308,6 +332,12 @@ public class Vote extends RandomizableMultipleClassifiersCombiner implements
    * </pre>
    * 
    * <pre>
+   * -num-slots &lt;num&gt;
+   *  Number of execution slots.
+   *  (default 1 - i.e. no parallelism)
+   * </pre>
+   * 
+   * <pre>
    * -S &lt;num&gt;
    *  Random number seed.
    *  (default 1)
@@ -376,6 +406,13 @@ public class Vote extends RandomizableMultipleClassifiersCombiner implements
 
     setDoNotPrintModels(Utils.getFlag("do-not-print", options));
 
+    tmpStr = Utils.getOption("num-slots", options);
+    if (tmpStr.length() != 0) {
+      setNumExecutionSlots(Integer.parseInt(tmpStr));
+    } else {
+      setNumExecutionSlots(1);
+    }
+
     super.setOptions(options);
   }
 
@@ -472,7 +509,7 @@ public class Vote extends RandomizableMultipleClassifiersCombiner implements
   public void buildClassifier(Instances data) throws Exception {
 
     // remove instances with missing class
-    Instances newData = new Instances(data);
+    final Instances newData = new Instances(data);
     newData.deleteWithMissingClass();
     m_structure = new Instances(newData, 0);
 
@@ -490,9 +527,58 @@ public class Vote extends RandomizableMultipleClassifiersCombiner implements
     // can classifier handle the data?
     getCapabilities().testWithFail(data);
 
+    List<Callable<Object>> tasks = new ArrayList<Callable<Object>>();
     for (int i = 0; i < m_Classifiers.length; i++) {
-      getClassifier(i).buildClassifier(newData);
+      final Classifier classifier = getClassifier(i);
+      tasks.add(new Callable<Object>() {
+        @Override
+        public Object call() throws Exception {
+          classifier.buildClassifier(newData);
+          return null;
+        }
+      });
     }
+    runTasks(tasks);
+  }
+
+  /**
+   * Runs the given tasks, in parallel if more than one execution slot is
+   * available.
+   * 
+   * @param tasks the tasks to run
+   * @return the results of the tasks, in the same order
+   * @throws Exception the first exception thrown by a task (in task order)
+   */
+  protected <T> List<T> runTasks(List<Callable<T>> tasks) throws Exception {
+    List<T> result = new ArrayList<T>(tasks.size());
+
+    if ((m_numExecutionSlots <= 1) || (tasks.size() <= 1)) {
+      for (Callable<T> task : tasks) {
+        result.add(task.call());
+      }
+      return result;
+    }
+
+    ExecutorService pool =
+      Executors.newFixedThreadPool(Math.min(m_numExecutionSlots, tasks.size()));
+    try {
+      List<Future<T>> futures = new ArrayList<Future<T>>(tasks.size());
+      for (Callable<T> task : tasks) {
+        futures.add(pool.submit(task));
+      }
+      for (Future<T> future : futures) {
+        result.add(future.get());
+      }
+    } catch (ExecutionException e) {
+      if (e.getCause() instanceof Exception) {
+        throw (Exception) e.getCause();
+      }
+      throw e;
+    } finally {
+      pool.shutdownNow();
+    }
+
+    return result;
   }
 
   /**
@@ -616,19 +702,32 @@ public class Vote extends RandomizableMultipleClassifiersCombiner implements
    * @throws Exception if an error occurred during the prediction
    */
   protected double classifyInstanceMedian(Instance instance) throws Exception {
-    double[] results =
+    double[] preds =
       new double[m_Classifiers.length + m_preBuiltClassifiers.size()];
 
-    int numResults = 0;
+    int i = 0;
     for (Classifier m_Classifier : m_Classifiers) {
-      double pred = m_Classifier.classifyInstance(instance);
-      if (!Utils.isMissingValue(pred)) {
-        results[numResults++] = pred;
-      }
+      preds[i++] = m_Classifier.classifyInstance(instance);
+    }
+
+    for (int j = 0; j < m_preBuiltClassifiers.size(); j++) {
+      preds[i++] = m_preBuiltClassifiers.get(j).classifyInstance(instance);
     }
 
-    for (int i = 0; i < m_preBuiltClassifiers.size(); i++) {
-      double pred = m_preBuiltClassifiers.get(i).classifyInstance(instance);
+    return median(preds);
+  }
+
+  /**
+   * Returns the median of the given predictions, ignoring missing values.
+   * 
+   * @param preds the predictions of the classifiers
+   * @return the median or Utils.missingValue() if there are no predictions
+   */
+  protected double median(double[] preds) {
+    double[] results = new double[preds.length];
+
+    int numResults = 0;
+    for (double pred : preds) {
       if (!Utils.isMissingValue(pred)) {
         results[numResults++] = pred;
       }
@@ -687,6 +786,170 @@ public class Vote extends RandomizableMultipleClassifiersCombiner implements
     return result;
   }
 
+  /**
+   * Combines the given distributions of the classifiers for an instance using
+   * the selected combination rule. For the Median rule, the first element of
+   * each distribution is used as prediction.
+   * 
+   * @param instance the instance that was classified
+   * @param dists the distributions of the classifiers, followed by the ones of
+   *          the pre-built classifiers
+   * @return the distribution
+   */
+  protected double[] distributionForInstance(Instance instance,
+    double[][] dists) {
+    double[] result = new double[instance.numClasses()];
+
+    switch (m_CombinationRule) {
+    case AVERAGE_RULE:
+      result = distributionForInstanceAverage(instance, dists);
+      break;
+    case PRODUCT_RULE:
+      result = distributionForInstanceProduct(instance, dists);
+      break;
+    case MAJORITY_VOTING_RULE:
+      result = distributionForInstanceMajorityVoting(instance, dists);
+      break;
+    case MIN_RULE:
+      result = distributionForInstanceMin(instance, dists);
+      break;
+    case MAX_RULE:
+      result = distributionForInstanceMax(instance, dists);
+      break;
+    case MEDIAN_RULE:
+      double[] preds = new double[dists.length];
+      for (int i = 0; i < dists.length; i++) {
+        preds[i] = dists[i][0];
+      }
+      result[0] = median(preds);
+      break;
+    default:
+      throw new IllegalStateException("Unknown combination rule '"
+        + m_CombinationRule + "'!");
+    }
+
+    if (!instance.classAttribute().isNumeric() && (Utils.sum(result) > 0)) {
+      Utils.normalize(result);
+    }
+
+    return result;
+  }
+
+  /**
+   * Returns the distributions of the classifiers for the given instance.
+   * 
+   * @param instance the instance to be classified
+   * @return the distributions of the classifiers, followed by the ones of the
+   *         pre-built classifiers
+   * @throws Exception if instance could not be classified successfully
+   */
+  protected double[][] memberDistributions(Instance instance)
+    throws Exception {
+
+    double[][] dists =
+      new double[m_Classifiers.length + m_preBuiltClassifiers.size()][];
+    int i = 0;
+    for (Classifier m_Classifier : m_Classifiers) {
+      dists[i++] = m_Classifier.distributionForInstance(instance);
+    }
+    for (Classifier c : m_preBuiltClassifiers) {
+      dists[i++] = c.distributionForInstance(instance);
+    }
+
+    return dists;
+  }
+
+  /**
+   * Returns true if the classifiers are scored in parallel (more than one
+   * execution slot) or at least one of them can generate batch predictions
+   * efficiently.
+   * 
+   * @return true if batch prediction is more efficient
+   */
+  @Override
+  public boolean implementsMoreEfficientBatchPrediction() {
+    if (m_numExecutionSlots > 1) {
+      return true;
+    }
+    for (Classifier c : m_Classifiers) {
+      if ((c instanceof BatchPredictor)
+        && ((BatchPredictor) c).implementsMoreEfficientBatchPrediction()) {
+        return true;
+      }
+    }
+    for (Classifier c : m_preBuiltClassifiers) {
+      if ((c instanceof BatchPredictor)
+        && ((BatchPredictor) c).implementsMoreEfficientBatchPrediction()) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Classifies the given instances using the selected combination rule. Each
+   * classifier scores the whole batch (using batch prediction if it implements
+   * it efficiently), with the classifiers distributed over the execution
+   * slots, before the distributions are combined per instance.
+   * 
+   * @param instances the instances to be classified
+   * @return the distributions
+   * @throws Exception if the instances could not be classified successfully
+   */
+  @Override
+  public double[][] distributionsForInstances(final Instances instances)
+    throws Exception {
+
+    List<Classifier> members = new ArrayList<Classifier>();
+    Collections.addAll(members, m_Classifiers);
+    members.addAll(m_preBuiltClassifiers);
+
+    List<Callable<double[][]>> tasks = new ArrayList<Callable<double[][]>>();
+    for (final Classifier c : members) {
+      tasks.add(new Callable<double[][]>() {
+        @Override
+        public double[][] call() throws Exception {
+          return memberDistributions(c, instances);
+        }
+      });
+    }
+    List<double[][]> predictions = runTasks(tasks);
+
+    double[][] result = new double[instances.numInstances()][];
+    double[][] dists = new double[members.size()][];
+    for (int i = 0; i < instances.numInstances(); i++) {
+      for (int k = 0; k < dists.length; k++) {
+        dists[k] = predictions.get(k)[i];
+      }
+      result[i] = distributionForInstance(instances.instance(i), dists);
+    }
+
+    return result;
+  }
+
+  /**
+   * Returns the distributions of a single classifier for the given instances.
+   * 
+   * @param c the classifier
+   * @param instances the instances to be classified
+   * @return the distributions
+   * @throws Exception if the instances could not be classified successfully
+   */
+  protected double[][] memberDistributions(Classifier c, Instances instances)
+    throws Exception {
+
+    if ((c instanceof BatchPredictor)
+      && ((BatchPredictor) c).implementsMoreEfficientBatchPrediction()) {
+      return ((BatchPredictor) c).distributionsForInstances(instances);
+    }
+
+    double[][] result = new double[instances.numInstances()][];
+    for (int i = 0; i < instances.numInstances(); i++) {
+      result[i] = c.distributionForInstance(instances.instance(i));
+    }
+    return result;
+  }
+
   /**
    * Classifies a given instance using the Average of Probabilities combination
    * rule.
@@ -698,23 +961,25 @@ public class Vote extends RandomizableMultipleClassifiersCombiner implements
   protected double[] distributionForInstanceAverage(Instance instance)
     throws Exception {
 
+    return distributionForInstanceAverage(instance,
+      memberDistributions(instance));
+  }
+
+  /**
+   * Combines the given distributions using the Average of Probabilities
+   * combination rule.
+   * 
+   * @param instance the instance that was classified
+   * @param dists the distributions of the classifiers
+   * @return the distribution
+   */
+  protected double[] distributionForInstanceAverage(Instance instance,
+    double[][] dists) {
+
     double[] probs = new double[instance.numClasses()];
 
     double numPredictions = 0;
-    for (int i = 0; i < m_Classifiers.length; i++) {
-      double[] dist = getClassifier(i).distributionForInstance(instance);
-      if (!instance.classAttribute().isNumeric()
-        || !Utils.isMissingValue(dist[0])) {
-        for (int j = 0; j < dist.length; j++) {
-          probs[j] += dist[j];
-        }
-        numPredictions++;
-      }
-    }
-
-    for (int i = 0; i < m_preBuiltClassifiers.size(); i++) {
-      double[] dist =
-        m_preBuiltClassifiers.get(i).distributionForInstance(instance);
+    for (double[] dist : dists) {
       if (!instance.classAttribute().isNumeric()
         || !Utils.isMissingValue(dist[0])) {
         for (int j = 0; j < dist.length; j++) {
@@ -754,25 +1019,28 @@ public class Vote extends RandomizableMultipleClassifiersCombiner implements
   protected double[] distributionForInstanceProduct(Instance instance)
     throws Exception {
 
+    return distributionForInstanceProduct(instance,
+      memberDistributions(instance));
+  }
+
+  /**
+   * Combines the given distributions using the Product of Probabilities
+   * combination rule. Can assume that class is nominal.
+   * 
+   * @param instance the instance that was classified
+   * @param dists the distributions of the classifiers
+   * @return the distribution
+   */
+  protected double[] distributionForInstanceProduct(Instance instance,
+    double[][] dists) {
+
     double[] probs = new double[instance.numClasses()];
     for (int i = 0; i < probs.length; i++) {
       probs[i] = 1.0;
     }
 
     int numPredictions = 0;
-    for (int i = 0; i < m_Classifiers.length; i++) {
-      double[] dist = getClassifier(i).distributionForInstance(instance);
-      if (Utils.sum(dist) > 0) {
-        for (int j = 0; j < dist.length; j++) {
-          probs[j] *= dist[j];
-        }
-        numPredictions++;
-      }
-    }
-
-    for (int i = 0; i < m_preBuiltClassifiers.size(); i++) {
-      double[] dist =
-        m_preBuiltClassifiers.get(i).distributionForInstance(instance);
+    for (double[] dist : dists) {
       if (Utils.sum(dist) > 0) {
         for (int j = 0; j < dist.length; j++) {
           probs[j] *= dist[j];
@@ -805,33 +1073,27 @@ public class Vote extends RandomizableMultipleClassifiersCombiner implements
   protected double[] distributionForInstanceMajorityVoting(Instance instance)
     throws Exception {
 
-    double[] probs = new double[instance.classAttribute().numValues()];
-    double[] votes = new double[probs.length];
+    return distributionForInstanceMajorityVoting(instance,
+      memberDistributions(instance));
+  }
 
-    for (int i = 0; i < m_Classifiers.length; i++) {
-      probs = getClassifier(i).distributionForInstance(instance);
-      int maxIndex = 0;
-      for (int j = 0; j < probs.length; j++) {
-        if (probs[j] > probs[maxIndex]) {
-          maxIndex = j;
-        }
-      }
+  /**
+   * Combines the given distributions using the Majority Voting combination
+   * rule. Can assume that class is nominal.
+   * 
+   * @param instance the instance that was classified
+   * @param dists the distributions of the classifiers
+   * @return the distribution
+   */
+  protected double[] distributionForInstanceMajorityVoting(Instance instance,
+    double[][] dists) {
 
-      // Consider the cases when multiple classes happen to have the same
-      // probability
-      if (probs[maxIndex] > 0) {
-        for (int j = 0; j < probs.length; j++) {
-          if (probs[j] == probs[maxIndex]) {
-            votes[j]++;
-          }
-        }
-      }
-    }
+    double[] probs = new double[instance.classAttribute().numValues()];
+    double[] votes = new double[probs.length];
 
-    for (int i = 0; i < m_preBuiltClassifiers.size(); i++) {
-      probs = m_preBuiltClassifiers.get(i).distributionForInstance(instance);
+    for (double[] dist : dists) {
+      probs = dist;
       int maxIndex = 0;
-
       for (int j = 0; j < probs.length; j++) {
         if (probs[j] > probs[maxIndex]) {
           maxIndex = j;
@@ -871,7 +1133,7 @@ public class Vote extends RandomizableMultipleClassifiersCombiner implements
     int majorityIndex = tmpMajorityIndex;
     if (majorityIndexes.size() > 1) {
       // resolve ties by looking at the predicted distribution
-      double[] distPreds = distributionForInstanceAverage(instance);
+      double[] distPreds = distributionForInstanceAverage(instance, dists);
       majorityIndex = Utils.maxIndex(distPreds);
       // Resolve the ties according to a uniform random distribution
       // majorityIndex = majorityIndexes.get(m_Random.nextInt(majorityIndexes.size()));
@@ -896,25 +1158,24 @@ public class Vote extends RandomizableMultipleClassifiersCombiner implements
   protected double[] distributionForInstanceMax(Instance instance)
     throws Exception {
 
+    return distributionForInstanceMax(instance, memberDistributions(instance));
+  }
+
+  /**
+   * Combines the given distributions using the Maximum Probability combination
+   * rule.
+   * 
+   * @param instance the instance that was classified
+   * @param dists the distributions of the classifiers
+   * @return the distribution
+   */
+  protected double[] distributionForInstanceMax(Instance instance,
+    double[][] dists) {
+
     double[] probs = new double[instance.numClasses()];
 
     double numPredictions = 0;
-    for (int i = 0; i < m_Classifiers.length; i++) {
-      double[] dist = getClassifier(i).distributionForInstance(instance);
-      if (!instance.classAttribute().isNumeric()
-        || !Utils.isMissingValue(dist[0])) {
-        for (int j = 0; j < dist.length; j++) {
-          if ((probs[j] < dist[j]) || (numPredictions == 0)) {
-            probs[j] = dist[j];
-          }
-        }
-        numPredictions++;
-      }
-    }
-
-    for (int i = 0; i < m_preBuiltClassifiers.size(); i++) {
-      double[] dist =
-        m_preBuiltClassifiers.get(i).distributionForInstance(instance);
+    for (double[] dist : dists) {
       if (!instance.classAttribute().isNumeric()
         || !Utils.isMissingValue(dist[0])) {
         for (int j = 0; j < dist.length; j++) {
@@ -951,25 +1212,24 @@ public class Vote extends RandomizableMultipleClassifiersCombiner implements
   protected double[] distributionForInstanceMin(Instance instance)
     throws Exception {
 
+    return distributionForInstanceMin(instance, memberDistributions(instance));
+  }
+
+  /**
+   * Combines the given distributions using the Minimum Probability combination
+   * rule.
+   * 
+   * @param instance the instance that was classified
+   * @param dists the distributions of the classifiers
+   * @return the distribution
+   */
+  protected double[] distributionForInstanceMin(Instance instance,
+    double[][] dists) {
+
     double[] probs = new double[instance.numClasses()];
 
     double numPredictions = 0;
-    for (int i = 0; i < m_Classifiers.length; i++) {
-      double[] dist = getClassifier(i).distributionForInstance(instance);
-      if (!instance.classAttribute().isNumeric()
-        || !Utils.isMissingValue(dist[0])) {
-        for (int j = 0; j < dist.length; j++) {
-          if ((probs[j] > dist[j]) || (numPredictions == 0)) {
-            probs[j] = dist[j];
-          }
-        }
-        numPredictions++;
-      }
-    }
-
-    for (int i = 0; i < m_preBuiltClassifiers.size(); i++) {
-      double[] dist =
-        m_preBuiltClassifiers.get(i).distributionForInstance(instance);
+    for (double[] dist : dists) {
       if (!instance.classAttribute().isNumeric()
         || !Utils.isMissingValue(dist[0])) {
         for (int j = 0; j < dist.length; j++) {
@@ -1101,6 +1361,37 @@ public class Vote extends RandomizableMultipleClassifiersCombiner implements
     return m_dontPrintModels;
   }
 
+  /**
+   * Returns the tip text for this property
+   * 
+   * @return tip text for this property suitable for displaying in the
+   *         explorer/experimenter gui
+   */
+  public String numExecutionSlotsTipText() {
+    return "The number of execution slots (threads) to use for building "
+      + "and (batch) scoring the members of the ensemble.";
+  }
+
+  /**
+   * Set the number of execution slots (threads) to use for building and
+   * scoring the members of the ensemble.
+   * 
+   * @param numSlots the number of slots to use.
+   */
+  public void setNumExecutionSlots(int numSlots) {
+    m_numExecutionSlots = numSlots;
+  }
+
+  /**
+   * Get the number of execution slots (threads) to use for building and
+   * scoring the members of the ensemble.
+   * 
+   * @return the number of slots to use
+   */
+  public int getNumExecutionSlots() {
+    return m_numExecutionSlots;
+  }
+
   /**
    * Output a representation of this classifier
    * 
@@ -28,6 +28,7 @@ import weka.core.Attribute;
 import weka.core.Capabilities;
 import weka.core.Capabilities.Capability;
 import weka.core.ContingencyTables;
+import weka.core.CopyableFromOptions;
 import weka.core.Instance;
 import weka.core.Instances;
 import weka.core.RevisionUtils;
@@ -58,7 +59,7 @@ import weka.core.WeightedInstancesHandler;
  */
 public class DecisionStump 
   extends AbstractClassifier 
-  implements WeightedInstancesHandler, Sourcable {
+  implements WeightedInstancesHandler, Sourcable, CopyableFromOptions {
 
   /** for serialization */
   static final long serialVersionUID = 1618384535950391L;
@@ -751,6 +752,17 @@ public class DecisionStump
     }
   }
   
+  /**
+   * Returns whether this classifier can be copied via its options, i.e.,
+   * whether no stump has been built yet.
+   *
+   * @return true if the classifier can be copied via its options
+   */
+  @Override
+  public boolean isCopyableFromOptions() {
+    return (m_Distribution == null) && (m_ZeroR == null);
+  }
+
   /**
    * Returns the revision string.
    * 
@@ -35,6 +35,7 @@ import weka.classifiers.trees.j48.ModelSelection;
 import weka.classifiers.trees.j48.PruneableClassifierTree;
 import weka.core.AdditionalMeasureProducer;
 import weka.core.Capabilities;
+import weka.core.CopyableFromOptions;
 import weka.core.Drawable;
 import weka.core.Instance;
 import weka.core.Instances;
@@ -155,7 +156,8 @@ import weka.core.Capabilities.Capability;
  */
 public class J48 extends AbstractClassifier implements OptionHandler, Drawable,
   Matchable, Sourcable, WeightedInstancesHandler, Summarizable,
-  AdditionalMeasureProducer, TechnicalInformationHandler, PartitionGenerator {
+  AdditionalMeasureProducer, TechnicalInformationHandler, PartitionGenerator,
+  CopyableFromOptions {
 
   /** for serialization */
   static final long serialVersionUID = -217733168393644444L;
@@ -1200,6 +1202,17 @@ public class J48 extends AbstractClassifier implements OptionHandler, Drawable,
     return m_root.numNodes();
   }
 
+  /**
+   * Returns whether this classifier can be copied via its options, i.e.,
+   * whether no tree has been built yet.
+   *
+   * @return true if the classifier can be copied via its options
+   */
+  @Override
+  public boolean isCopyableFromOptions() {
+    return m_root == null;
+  }
+
   /**
    * Main method for testing this class
    * 
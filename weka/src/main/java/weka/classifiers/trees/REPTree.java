@@ -37,6 +37,7 @@ import weka.core.Attribute;
 import weka.core.Capabilities;
 import weka.core.Capabilities.Capability;
 import weka.core.ContingencyTables;
+import weka.core.CopyableFromOptions;
 import weka.core.Drawable;
 import weka.core.Instance;
 import weka.core.Instances;
@@ -99,7 +100,7 @@ import weka.core.WeightedInstancesHandler;
  */
 public class REPTree extends AbstractClassifier implements OptionHandler,
   WeightedInstancesHandler, Drawable, AdditionalMeasureProducer, Sourcable,
-  PartitionGenerator, Randomizable {
+  PartitionGenerator, Randomizable, CopyableFromOptions {
 
   /** for serialization */
   static final long serialVersionUID = -9216785998198681299L;
@@ -2175,6 +2176,17 @@ public class REPTree extends AbstractClassifier implements OptionHandler,
     return RevisionUtils.extract("$Revision$");
   }
 
+  /**
+   * Returns whether this classifier can be copied via its options, i.e.,
+   * whether no tree has been built yet.
+   *
+   * @return true if the classifier can be copied via its options
+   */
+  @Override
+  public boolean isCopyableFromOptions() {
+    return (m_Tree == null) && (m_zeroR == null);
+  }
+
   /**
    * Main method for this class.
    * 
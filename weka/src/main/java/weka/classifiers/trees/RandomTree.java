@@ -27,6 +27,7 @@ import weka.core.Attribute;
 import weka.core.Capabilities;
 import weka.core.Capabilities.Capability;
 import weka.core.ContingencyTables;
+import weka.core.CopyableFromOptions;
 import weka.core.Drawable;
 import weka.core.Instance;
 import weka.core.Instances;
@@ -127,7 +128,8 @@ import java.util.Vector;
  * @version $Revision$
  */
 public class RandomTree extends AbstractClassifier implements OptionHandler,
-  WeightedInstancesHandler, Randomizable, Drawable, PartitionGenerator {
+  WeightedInstancesHandler, Randomizable, Drawable, PartitionGenerator,
+  CopyableFromOptions {
 
   /** for serialization */
   private static final long serialVersionUID = -9051119597407396024L;
@@ -2084,6 +2086,20 @@ public class RandomTree extends AbstractClassifier implements OptionHandler,
     return sS - ((s * s) / weight);
   }
 
+  /**
+   * Returns whether this classifier can be copied via its options, i.e.,
+   * whether no tree has been built yet. Computation of impurity decreases is
+   * enabled by RandomForest and is not an option, so it prevents copying as
+   * well.
+   *
+   * @return true if the classifier can be copied via its options
+   */
+  @Override
+  public boolean isCopyableFromOptions() {
+    return (m_Tree == null) && (m_zeroR == null)
+      && !m_computeImpurityDecreases;
+  }
+
   /**
    * Main method for this class.
    * 
@@ -713,6 +713,7 @@ public class LogisticBase extends AbstractClassifier implements
     public void setValue(int attIndex, double value) {
 
       m_AttValues[attIndex] = value;
+      markDatasetModified();
     }
 
     /**
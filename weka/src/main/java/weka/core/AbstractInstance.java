@@ -575,6 +575,21 @@ public abstract class AbstractInstance implements Instance, Serializable,
   public final void setWeight(double weight) {
 
     m_Weight = weight;
+    markDatasetModified();
+  }
+
+  /**
+   * Notifies the dataset this instance belongs to (if any) that the values or
+   * the weight of the instance have changed. Must be called by subclasses
+   * whenever they modify the instance.
+   *
+   * @see Instances#getModificationCount()
+   */
+  protected void markDatasetModified() {
+
+    if (m_Dataset != null) {
+      m_Dataset.incrementModificationCount();
+    }
   }
 
   /**
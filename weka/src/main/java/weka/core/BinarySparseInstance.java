@@ -219,6 +219,7 @@ public class BinarySparseInstance extends SparseInstance {
   @Override
   public void replaceMissingValues(double[] array) {
 
+    markDatasetModified();
     // Does nothing, since we don't store missing values.
   }
 
@@ -235,6 +236,7 @@ public class BinarySparseInstance extends SparseInstance {
   @Override
   public void setValue(int attIndex, double value) {
 
+    markDatasetModified();
     int index = locateIndex(attIndex);
 
     if ((index >= 0) && (m_Indices[index] == attIndex)) {
@@ -270,6 +272,7 @@ public class BinarySparseInstance extends SparseInstance {
   @Override
   public void setValueSparse(int indexOfIndex, double value) {
 
+    markDatasetModified();
     if (value == 0) {
       int[] tempIndices = new int[m_Indices.length - 1];
       System.arraycopy(m_Indices, 0, tempIndices, 0, indexOfIndex);
@@ -265,6 +265,138 @@ public class Capabilities implements Cloneable, Serializable, RevisionHandler {
     }
   }
 
+  /**
+   * Statistics of a dataset that are required for testing it. They are
+   * computed on demand and cached with the dataset (see
+   * getStatistics(Instances)), so that testing the same data repeatedly, e.g.,
+   * by the base classifiers of an ensemble, does not scan the data again. The
+   * statistics become invalid once the data is modified.
+   */
+  protected static class DataStatistics {
+
+    /** the data the statistics are for */
+    protected final Instances m_Data;
+
+    /** the modification count of the data at creation time */
+    protected final int m_ModificationCount;
+
+    /** the number of instances at creation time */
+    protected final int m_NumInstances;
+
+    /** the number of attributes at creation time */
+    protected final int m_NumAttributes;
+
+    /** the first instance with a weight other than 1 (-1: none, -2: unknown) */
+    protected volatile int m_FirstNonUnitWeight = -2;
+
+    /** the number of missing values per attribute (-1 if unknown) */
+    protected final int[] m_NumMissing;
+
+    /** the first instance with a missing value per attribute (-1 if none) */
+    protected volatile int[] m_FirstMissing;
+
+    /**
+     * Initializes the statistics for the given data.
+     *
+     * @param data the data
+     */
+    protected DataStatistics(Instances data) {
+      m_Data = data;
+      m_ModificationCount = data.getModificationCount();
+      m_NumInstances = data.numInstances();
+      m_NumAttributes = data.numAttributes();
+      m_NumMissing = new int[m_NumAttributes];
+      Arrays.fill(m_NumMissing, -1);
+    }
+
+    /**
+     * Returns whether the statistics are still valid for the given data.
+     *
+     * @param data the data to check
+     * @return true if the data has not been modified since the statistics were
+     *         created
+     */
+    protected boolean isValid(Instances data) {
+      return (data == m_Data)
+        && (data.getModificationCount() == m_ModificationCount)
+        && (data.numInstances() == m_NumInstances)
+        && (data.numAttributes() == m_NumAttributes);
+    }
+
+    /**
+     * Returns the index of the first instance with a weight other than 1.
+     *
+     * @return the index, -1 if all weights are 1
+     */
+    public int firstNonUnitWeight() {
+      if (m_FirstNonUnitWeight == -2) {
+        int first = -1;
+        for (int i = 0; i < m_NumInstances; i++) {
+          if (m_Data.instance(i).weight() != 1.0) {
+            first = i;
+            break;
+          }
+        }
+        m_FirstNonUnitWeight = first;
+      }
+      return m_FirstNonUnitWeight;
+    }
+
+    /**
+     * Returns the number of missing values of the given attribute.
+     *
+     * @param att the index of the attribute
+     * @return the number of instances with a missing value
+     */
+    public int numMissing(int att) {
+      if (m_NumMissing[att] == -1) {
+        int count = 0;
+        for (int i = 0; i < m_NumInstances; i++) {
+          if (m_Data.instance(i).isMissing(att)) {
+            count++;
+          }
+        }
+        m_NumMissing[att] = count;
+      }
+      return m_NumMissing[att];
+    }
+
+    /**
+     * Returns the index of the first instance with a missing value in the
+     * given range of attributes.
+     *
+     * @param fromIndex the range of attributes - start (incl.)
+     * @param toIndex the range of attributes - end (incl.)
+     * @param skip the attribute to ignore (e.g., the class), -1 for none
+     * @return the index, -1 if there are no missing values
+     */
+    public int firstMissing(int fromIndex, int toIndex, int skip) {
+      int[] first = m_FirstMissing;
+      if (first == null) {
+        first = new int[m_NumAttributes];
+        Arrays.fill(first, -1);
+        for (int i = m_NumInstances - 1; i >= 0; i--) {
+          Instance inst = m_Data.instance(i);
+          for (int m = 0; m < inst.numValues(); m++) {
+            if (inst.isMissingSparse(m)) {
+              first[inst.index(m)] = i;
+            }
+          }
+        }
+        m_FirstMissing = first;
+      }
+
+      int result = -1;
+      for (int n = fromIndex; n <= toIndex; n++) {
+        if ((n != skip) && (first[n] > -1)
+          && ((result == -1) || (first[n] < result))) {
+          result = first[n];
+        }
+      }
+      return result;
+    }
+  }
+
   /** the object that owns this capabilities instance */
   protected CapabilitiesHandler m_Owner;
 
@@ -1151,6 +1283,22 @@ public class Capabilities implements Cloneable, Serializable, RevisionHandler {
     }
   }
 
+  /**
+   * Returns the statistics of the given data, using the ones cached with the
+   * data if they are still valid.
+   *
+   * @param data the data to get the statistics for
+   * @return the statistics
+   */
+  protected static DataStatistics getStatistics(Instances data) {
+    DataStatistics result = data.m_CapabilitiesStatistics;
+    if ((result == null) || !result.isValid(data)) {
+      result = new DataStatistics(data);
+      data.m_CapabilitiesStatistics = result;
+    }
+    return result;
+  }
+
   /**
    * Tests a certain range of attributes of the given data, whether it can be
    * processed by the handler, given its capabilities. Classifiers implementing
@@ -1176,13 +1324,12 @@ public class Capabilities implements Cloneable, Serializable, RevisionHandler {
     }
 
     int i;
-    int n;
-    int m;
+    int firstWeight;
+    int firstMissing;
     Attribute att;
-    Instance inst;
     boolean testClass;
     Capabilities cap;
-    boolean missing;
+    DataStatistics stats;
     Iterator<Capability> iter;
 
     // shall we test the data?
@@ -1202,6 +1349,9 @@ public class Capabilities implements Cloneable, Serializable, RevisionHandler {
       return false;
     }
 
+    // statistics of the data, cached with the data
+    stats = getStatistics(data);
+
     // do wee need to test the class attribute, i.e., is the class attribute
     // within the range of attributes?
     testClass = (data.classIndex() > -1) && (data.classIndex() >= fromIndex)
@@ -1263,22 +1413,15 @@ public class Capabilities implements Cloneable, Serializable, RevisionHandler {
       // missing class labels
       if (m_MissingClassValuesTest) {
         if (!handles(Capability.MISSING_CLASS_VALUES)) {
-          for (i = 0; i < data.numInstances(); i++) {
-            if (data.instance(i).classIsMissing()) {
-              m_FailReason = new WekaException(
-                createMessage("Cannot handle missing class values!"));
-              return false;
-            }
+          if (stats.numMissing(data.classIndex()) > 0) {
+            m_FailReason = new WekaException(
+              createMessage("Cannot handle missing class values!"));
+            return false;
           }
         } else {
           if (m_MinimumNumberInstancesTest) {
-            int hasClass = 0;
-
-            for (i = 0; i < data.numInstances(); i++) {
-              if (!data.instance(i).classIsMissing()) {
-                hasClass++;
-              }
-            }
+            int hasClass = data.numInstances()
+              - stats.numMissing(data.classIndex());
 
             // not enough instances with class labels?
             if (hasClass < getMinimumNumberInstances()) {
@@ -1295,65 +1438,26 @@ public class Capabilities implements Cloneable, Serializable, RevisionHandler {
       }
     }
 
-    // missing values and instance weights
-    missing = false;
+    // missing values and instance weights (the failure reported is the one
+    // for the first offending instance)
     Class weightedInstancesHandler = getClass("weka.core.WeightedInstancesHandler");
-    for (i = 0; i < data.numInstances(); i++) {
-      inst = data.instance(i);
-
-      if (inst.weight() != 1.0) {
-        if (INTERFACE_DEFINED_CAPABILITIES.contains(weightedInstancesHandler) &&
-                !m_InterfaceDefinedCapabilities.contains(weightedInstancesHandler)) {
-          m_FailReason = new WekaException(createMessage("Some instance weights are not equal to 1 and " +
-                  "scheme does not implement the WeightedInstancesHandler interface!"));
-          return false;
-        }
-      }
-
-      if (m_MissingValuesTest) {
-        if (!handles(Capability.MISSING_VALUES)) {
-          if (inst instanceof SparseInstance) {
-            for (m = 0; m < inst.numValues(); m++) {
-              n = inst.index(m);
-
-              // out of scope?
-              if (n < fromIndex) {
-                continue;
-              }
-              if (n > toIndex) {
-                break;
-              }
-
-              // skip class
-              if (n == inst.classIndex()) {
-                continue;
-              }
-
-              if (inst.isMissing(n)) {
-                missing = true;
-                break;
-              }
-            }
-          } else {
-            for (n = fromIndex; n <= toIndex; n++) {
-              // skip class
-              if (n == inst.classIndex()) {
-                continue;
-              }
-
-              if (inst.isMissing(n)) {
-                missing = true;
-                break;
-              }
-            }
-          }
-
-          if (missing) {
-            m_FailReason = new NoSupportForMissingValuesException(createMessage("Cannot handle missing values!"));
-            return false;
-          }
-        }
-      }
+    firstWeight = -1;
+    if (INTERFACE_DEFINED_CAPABILITIES.contains(weightedInstancesHandler) &&
+            !m_InterfaceDefinedCapabilities.contains(weightedInstancesHandler)) {
+      firstWeight = stats.firstNonUnitWeight();
+    }
+    firstMissing = -1;
+    if (m_MissingValuesTest && !handles(Capability.MISSING_VALUES)) {
+      firstMissing = stats.firstMissing(fromIndex, toIndex, data.classIndex());
+    }
+    if ((firstWeight > -1) && ((firstMissing == -1) || (firstWeight <= firstMissing))) {
+      m_FailReason = new WekaException(createMessage("Some instance weights are not equal to 1 and " +
+              "scheme does not implement the WeightedInstancesHandler interface!"));
+      return false;
+    }
+    if (firstMissing > -1) {
+      m_FailReason = new NoSupportForMissingValuesException(createMessage("Cannot handle missing values!"));
+      return false;
     }
 
     // instances
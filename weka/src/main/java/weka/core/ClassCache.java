@@ -28,9 +28,11 @@ import java.net.URLClassLoader;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Enumeration;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Hashtable;
 import java.util.Iterator;
+import java.util.Map;
 import java.util.Set;
 import java.util.jar.Attributes;
 import java.util.jar.JarEntry;
@@ -97,6 +99,21 @@ public class ClassCache implements RevisionHandler {
    */
   protected Hashtable<String, HashSet<String>> m_Cache;
 
+  /**
+   * the type information from the class discovery indexes found on the class
+   * path and in the packages (classname &lt;-&gt; info).
+   */
+  protected HashMap<String, ClassDiscoveryIndex.ClassInfo> m_TypeInfo;
+
+  /** the number of class files encountered while scanning a directory. */
+  protected int m_DirClassCount;
+
+  /** the newest class file encountered while scanning a directory. */
+  protected long m_DirNewest;
+
+  /** the stamp of the class names encountered while scanning a directory. */
+  protected ClassDiscoveryIndex.Stamp m_DirStamp;
+
   static {
     // notify if VERBOSE is still on
     if (VERBOSE) {
@@ -206,10 +223,14 @@ public class ClassCache implements RevisionHandler {
     files = dir.listFiles(new ClassFileFilter());
     if (files != null) {
       for (File file : files) {
+        m_DirClassCount++;
+        m_DirNewest = Math.max(m_DirNewest, file.lastModified());
         if (prefix == null) {
           add(file.getName());
+          m_DirStamp.add(cleanUp(file.getName()), 0);
         } else {
           add(prefix + "." + file.getName());
+          m_DirStamp.add(cleanUp(prefix + "." + file.getName()), 0);
         }
       }
     }
@@ -236,7 +257,44 @@ public class ClassCache implements RevisionHandler {
     if (VERBOSE) {
       System.out.println("Analyzing directory: " + dir);
     }
+    m_DirClassCount = 0;
+    m_DirNewest = 0;
+    m_DirStamp = new ClassDiscoveryIndex.Stamp();
     initFromDir(null, dir);
+    addIndex(ClassDiscoveryIndex.readFromDirectory(dir, m_DirClassCount,
+      m_DirNewest, m_DirStamp));
+  }
+
+  /**
+   * Adds the type information of the given class discovery index.
+   * 
+   * @param index the index to add, ignored if null
+   */
+  protected void addIndex(ClassDiscoveryIndex index) {
+    if (index == null) {
+      return;
+    }
+    if (VERBOSE) {
+      System.out.println("Using class discovery index with "
+        + index.getClassInfos().size() + " classes");
+    }
+    for (Map.Entry<String, ClassDiscoveryIndex.ClassInfo> entry : index
+      .getClassInfos().entrySet()) {
+      if (!m_TypeInfo.containsKey(entry.getKey())) {
+        m_TypeInfo.put(entry.getKey(), entry.getValue());
+      }
+    }
+  }
+
+  /**
+   * Returns the indexed type information for the given class.
+   * 
+   * @param classname the class to get the information for
+   * @return the type information, null if the class is not covered by an
+   *         up-to-date class discovery index
+   */
+  public ClassDiscoveryIndex.ClassInfo getTypeInfo(String classname) {
+    return m_TypeInfo.get(classname);
   }
 
   /**
@@ -280,6 +338,8 @@ public class ClassCache implements RevisionHandler {
     JarFile jar;
     JarEntry entry;
     Enumeration<JarEntry> enm;
+    int count;
+    ClassDiscoveryIndex.Stamp content;
 
     if (VERBOSE) {
       System.out.println("Analyzing jar: " + file);
@@ -293,12 +353,17 @@ public class ClassCache implements RevisionHandler {
     try {
       jar = new JarFile(file);
       enm = jar.entries();
+      count = 0;
+      content = new ClassDiscoveryIndex.Stamp();
       while (enm.hasMoreElements()) {
         entry = enm.nextElement();
         if (entry.getName().endsWith(".class")) {
           add(entry.getName());
+          content.add(cleanUp(entry.getName()), entry.getCrc());
+          count++;
         }
       }
+      addIndex(ClassDiscoveryIndex.readFromJar(jar, count, content));
       initFromManifest(jar.getManifest());
     } catch (Exception e) {
       e.printStackTrace();
@@ -370,6 +435,7 @@ public class ClassCache implements RevisionHandler {
     URL[] urls;
 
     m_Cache = new Hashtable<String, HashSet<String>>();
+    m_TypeInfo = new HashMap<String, ClassDiscoveryIndex.ClassInfo>();
 
     sysLoader = (URLClassLoader) getClass().getClassLoader();
     urls = sysLoader.getURLs();
@@ -384,6 +450,7 @@ public class ClassCache implements RevisionHandler {
 
   protected void initializeNew() {
     m_Cache = new Hashtable<String, HashSet<String>>();
+    m_TypeInfo = new HashMap<String, ClassDiscoveryIndex.ClassInfo>();
     WekaPackageClassLoaderManager wcl = WekaPackageClassLoaderManager.getWekaPackageClassLoaderManager();
 
     // parent classloader entries...
@@ -401,6 +468,15 @@ public class ClassCache implements RevisionHandler {
     for (String cl : classes) {
       add(cl);
     }
+
+    // type information of the package classes
+    for (WekaPackageLibIsolatingClassLoader loader : wcl
+      .getPackageClassLoaders()) {
+      addIndex(ClassDiscoveryIndex.readFromPackage(loader, false));
+    }
+    for (ClassDiscoveryIndex index : wcl.getDeferredPackageIndexes()) {
+      addIndex(index);
+    }
   }
 
   /**
@@ -224,6 +224,7 @@ public class ClassDiscovery implements RevisionHandler {
     Vector<String> result;
     int i;
     Class<?> clsNew;
+    ClassDiscoveryIndex.ClassInfo info;
 
     // already cached?
     result = getCache(cls, pkgname);
@@ -242,6 +243,22 @@ public class ClassDiscovery implements RevisionHandler {
       // check classes
       i = 0;
       while (i < result.size()) {
+        // determined by a class discovery index?
+        info = m_ClassCache.getTypeInfo(result.get(i));
+        if (info != null) {
+          if (info.isAbstract()) {
+            m_ClassCache.remove(result.get(i));
+            result.remove(i);
+          } else if ((cls.isInterface()) && (!info.hasInterface(cls.getName()))) {
+            result.remove(i);
+          } else if ((!cls.isInterface()) && (!info.isSubclass(cls.getName()))) {
+            result.remove(i);
+          } else {
+            i++;
+          }
+          continue;
+        }
+
         try {
           // clsNew = Class.forName(result.get(i));
           clsNew = WekaPackageClassLoaderManager.forName(result.get(i));
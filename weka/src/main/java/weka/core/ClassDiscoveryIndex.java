@@ -0,0 +1,983 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ *    ClassDiscoveryIndex.java
+ *    Copyright (C) 2026 University of Waikato, Hamilton, New Zealand
+ *
+ */
+
+package weka.core;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Serializable;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+import java.util.zip.CRC32;
+
+/**
+ * An index of the type hierarchy of a set of classes (the classes in a
+ * directory, a jar file or the top-level jar files of a package). For each
+ * class the index records whether it is abstract, its superclasses and its
+ * interfaces, so that ClassDiscovery can determine the implementations of a
+ * base type without having to load every candidate class. <br>
+ * <br>
+ * The index for Weka's own classes is generated at build time (see the main
+ * method) and stored as META-INF/weka/ClassDiscovery.index in the class
+ * directory or jar; the index of a package is generated when the package is
+ * installed (or loaded without a current index) and stored in the package
+ * directory, together with the package version and the size and timestamp of
+ * each top-level jar file. The index of a class directory or jar records
+ * stamps of the class names and of the class files' CRC32 checksums, which
+ * are compared with the ones of the classes present. An index that does not
+ * match the classes it describes is ignored and the classes are inspected by
+ * loading them, as before. Header lines and class entries are tab-separated.
+ *
+ * @author The WEKA Team (wekalist@list.waikato.ac.nz)
+ * @version $Revision$
+ */
+public class ClassDiscoveryIndex implements Serializable, RevisionHandler {
+
+  /** for serialization. */
+  private static final long serialVersionUID = -2453405466873329372L;
+
+  /** the location of the index in a class directory or jar file. */
+  public final static String INDEX_FILE = "META-INF/weka/ClassDiscovery.index";
+
+  /** the name of the index file in a package directory. */
+  public final static String PACKAGE_INDEX_FILE = "ClassDiscovery.index";
+
+  /** the header key for the number of classes covered by the index. */
+  protected final static String KEY_CLASSES = "#classes";
+
+  /** the header key for the name and version of a package. */
+  protected final static String KEY_PACKAGE = "#package";
+
+  /** the header key for a jar file (name, length, last modified). */
+  protected final static String KEY_SOURCE = "#source";
+
+  /** the header key for the stamp of the class names. */
+  protected final static String KEY_NAMES = "#names";
+
+  /** the header key for the stamp of the class names and checksums. */
+  protected final static String KEY_CONTENT = "#content";
+
+  /** the type marker of classes that could not be loaded. */
+  protected final static String UNRESOLVED = "U";
+
+  /**
+   * An order-independent hash of a set of classes, each represented by its
+   * name and a value (e.g., the CRC32 checksum of the class file).
+   */
+  public static class Stamp implements Serializable {
+
+    /** for serialization. */
+    private static final long serialVersionUID = -8264470418427019367L;
+
+    /** the hash so far. */
+    protected long m_Hash;
+
+    /**
+     * Adds a class.
+     *
+     * @param classname the name of the class
+     * @param value the value to associate with the class
+     */
+    public void add(String classname, long value) {
+      long h;
+
+      h = 1125899906842597L;
+      for (int i = 0; i < classname.length(); i++) {
+        h = 31 * h + classname.charAt(i);
+      }
+      h = (h ^ value) * 0x9E3779B97F4A7C15L;
+      h ^= h >>> 31;
+      h *= 0xBF58476D1CE4E5B9L;
+      h ^= h >>> 29;
+      // addition makes the hash independent of the order
+      m_Hash += h;
+    }
+
+    /**
+     * Returns the stamp as string.
+     *
+     * @return the stamp
+     */
+    @Override
+    public String toString() {
+      return Long.toHexString(m_Hash);
+    }
+  }
+
+  /**
+   * The type information of a single class.
+   */
+  public static class ClassInfo implements Serializable {
+
+    /** for serialization. */
+    private static final long serialVersionUID = 4133565013066549014L;
+
+    /** the name of the class. */
+    protected String m_Name;
+
+    /** whether the class is abstract (or an interface). */
+    protected boolean m_Abstract;
+
+    /** the superclasses, from the direct superclass up to Object. */
+    protected Set<String> m_Superclasses;
+
+    /**
+     * the interfaces implemented directly by the class or one of its
+     * superclasses.
+     */
+    protected Set<String> m_Interfaces;
+
+    /**
+     * Initializes the type information.
+     *
+     * @param name the name of the class
+     * @param isAbstract whether the class is abstract
+     * @param superclasses the superclasses
+     * @param interfaces the interfaces
+     */
+    public ClassInfo(String name, boolean isAbstract,
+      Collection<String> superclasses, Collection<String> interfaces) {
+      m_Name = name;
+      m_Abstract = isAbstract;
+      m_Superclasses = new HashSet<String>(superclasses);
+      m_Interfaces = new HashSet<String>(interfaces);
+    }
+
+    /**
+     * Extracts the type information from the given class. The interfaces are
+     * collected in the same way as InheritanceUtils.hasInterface(Class, Class)
+     * does.
+     *
+     * @param cls the class to inspect
+     */
+    public ClassInfo(Class<?> cls) {
+      Class<?> current;
+
+      m_Name = cls.getName();
+      m_Abstract = Modifier.isAbstract(cls.getModifiers());
+      m_Superclasses = new HashSet<String>();
+      m_Interfaces = new HashSet<String>();
+
+      current = cls.getSuperclass();
+      while (current != null) {
+        m_Superclasses.add(current.getName());
+        current = current.getSuperclass();
+      }
+
+      current = cls;
+      do {
+        for (Class<?> intf : current.getInterfaces()) {
+          m_Interfaces.add(intf.getName());
+        }
+        current = current.getSuperclass();
+      } while ((current != null) && (current != Object.class));
+    }
+
+    /**
+     * Returns the name of the class.
+     *
+     * @return the name
+     */
+    public String getName() {
+      return m_Name;
+    }
+
+    /**
+     * Returns whether the class is abstract (or an interface).
+     *
+     * @return true if abstract
+     */
+    public boolean isAbstract() {
+      return m_Abstract;
+    }
+
+    /**
+     * Checks whether the class is the given class or derived from it, like
+     * InheritanceUtils.isSubclass(Class, Class).
+     *
+     * @param superclass the name of the superclass to check against
+     * @return true if the class is a subclass
+     */
+    public boolean isSubclass(String superclass) {
+      return m_Name.equals(superclass) || m_Superclasses.contains(superclass);
+    }
+
+    /**
+     * Checks whether the class implements the given interface, like
+     * InheritanceUtils.hasInterface(Class, Class).
+     *
+     * @param intf the name of the interface to look for
+     * @return true if the class implements the interface
+     */
+    public boolean hasInterface(String intf) {
+      return m_Interfaces.contains(intf);
+    }
+
+    /**
+     * Returns the type information as a line of the index file.
+     *
+     * @return the line
+     */
+    @Override
+    public String toString() {
+      return m_Name + "\t" + (m_Abstract ? "A" : "C") + "\t"
+        + join(m_Superclasses) + "\t" + join(m_Interfaces);
+    }
+
+    /**
+     * Parses a line of the index file.
+     *
+     * @param line the line to parse
+     * @return the type information
+     * @throws IOException if the line is malformed
+     */
+    public static ClassInfo parse(String line) throws IOException {
+      String[] parts;
+
+      parts = line.split("\t", -1);
+      if (parts.length != 4) {
+        throw new IOException("Malformed class discovery index entry: " + line);
+      }
+
+      return new ClassInfo(parts[0], parts[1].equals("A"), split(parts[2]),
+        split(parts[3]));
+    }
+  }
+
+  /** the number of classes covered by the index. */
+  protected int m_NumClasses;
+
+  /** the name of the package, null if not a package index. */
+  protected String m_PackageName;
+
+  /** the version of the package, null if not a package index. */
+  protected String m_PackageVersion;
+
+  /** the stamp of the class names, null if not available. */
+  protected String m_NamesStamp;
+
+  /** the stamp of the class names and checksums, null if not available. */
+  protected String m_ContentStamp;
+
+  /** the jar files covered (name &lt;-&gt; "length\tlastModified"). */
+  protected Map<String, String> m_Sources = new LinkedHashMap<String, String>();
+
+  /** the type information (classname &lt;-&gt; info). */
+  protected Map<String, ClassInfo> m_Classes = new HashMap<String, ClassInfo>();
+
+  /** the classes that could not be loaded when generating the index. */
+  protected Set<String> m_Unresolved = new HashSet<String>();
+
+  /**
+   * Returns the number of classes the index was generated from. This includes
+   * classes that could not be loaded and therefore have no entry.
+   *
+   * @return the number of classes
+   */
+  public int getNumClasses() {
+    return m_NumClasses;
+  }
+
+  /**
+   * Returns the name of the package, if this is a package index.
+   *
+   * @return the package name, null if not a package index
+   */
+  public String getPackageName() {
+    return m_PackageName;
+  }
+
+  /**
+   * Returns the version of the package, if this is a package index.
+   *
+   * @return the package version, null if not a package index
+   */
+  public String getPackageVersion() {
+    return m_PackageVersion;
+  }
+
+  /**
+   * Returns the stamp of the names of the classes the index was generated
+   * from.
+   *
+   * @return the stamp, null if not available
+   */
+  public String getNamesStamp() {
+    return m_NamesStamp;
+  }
+
+  /**
+   * Returns the stamp of the names and CRC32 checksums of the class files the
+   * index was generated from.
+   *
+   * @return the stamp, null if not available
+   */
+  public String getContentStamp() {
+    return m_ContentStamp;
+  }
+
+  /**
+   * Returns the type information for the given class.
+   *
+   * @param classname the class to look up
+   * @return the type information, null if the class is not indexed
+   */
+  public ClassInfo getClassInfo(String classname) {
+    return m_Classes.get(classname);
+  }
+
+  /**
+   * Returns the type information of all indexed classes.
+   *
+   * @return the type information (classname &lt;-&gt; info)
+   */
+  public Map<String, ClassInfo> getClassInfos() {
+    return m_Classes;
+  }
+
+  /**
+   * Returns the names of all classes covered by the index, including the ones
+   * that could not be loaded when the index was generated.
+   *
+   * @return the class names
+   */
+  public Set<String> getClassnames() {
+    Set<String> result;
+
+    result = new HashSet<String>(m_Classes.keySet());
+    result.addAll(m_Unresolved);
+
+    return result;
+  }
+
+  /**
+   * Returns the names of all indexed classes that are neither abstract nor an
+   * interface and that are derived from the given class or implement the given
+   * interface.
+   *
+   * @param cls the name of the class/interface to look for
+   * @return the names of the implementations, sorted
+   */
+  public List<String> getImplementations(String cls) {
+    TreeSet<String> result;
+
+    result = new TreeSet<String>();
+    for (ClassInfo info : m_Classes.values()) {
+      if (!info.isAbstract()
+        && (info.isSubclass(cls) || info.hasInterface(cls))) {
+        result.add(info.getName());
+      }
+    }
+
+    return new ArrayList<String>(result);
+  }
+
+  /**
+   * Generates the type information for the given classes. The classes are
+   * loaded without being initialized; classes that cannot be loaded are
+   * counted, but not indexed.
+   *
+   * @param classnames the names of the classes to index
+   * @param loader the class loader to load the classes with
+   * @return the index
+   */
+  public static ClassDiscoveryIndex create(Collection<String> classnames,
+    ClassLoader loader) {
+    ClassDiscoveryIndex result;
+    Class<?> cls;
+
+    result = new ClassDiscoveryIndex();
+    result.m_NumClasses = classnames.size();
+    for (String classname : classnames) {
+      try {
+        cls = Class.forName(classname, false, loader);
+        result.m_Classes.put(classname, new ClassInfo(cls));
+      } catch (Throwable t) {
+        // left to ClassDiscovery to report
+        result.m_Unresolved.add(classname);
+      }
+    }
+
+    return result;
+  }
+
+  /**
+   * Records the size and timestamp of a jar file covered by the index.
+   *
+   * @param jar the jar file
+   */
+  public void addSource(File jar) {
+    m_Sources.put(jar.getName(), stamp(jar));
+  }
+
+  /**
+   * Writes the index to the given stream.
+   *
+   * @param stream the stream to write to
+   * @throws IOException if writing fails
+   */
+  public void write(OutputStream stream) throws IOException {
+    BufferedWriter writer;
+    TreeSet<String> names;
+
+    writer = new BufferedWriter(new OutputStreamWriter(stream, "UTF-8"));
+    writer.write(KEY_CLASSES + "\t" + m_NumClasses);
+    writer.newLine();
+    if (m_NamesStamp != null) {
+      writer.write(KEY_NAMES + "\t" + m_NamesStamp);
+      writer.newLine();
+    }
+    if (m_ContentStamp != null) {
+      writer.write(KEY_CONTENT + "\t" + m_ContentStamp);
+      writer.newLine();
+    }
+    if (m_PackageName != null) {
+      writer.write(KEY_PACKAGE + "\t" + m_PackageName + "\t"
+        + m_PackageVersion);
+      writer.newLine();
+    }
+    for (Map.Entry<String, String> source : m_Sources.entrySet()) {
+      writer.write(KEY_SOURCE + "\t" + source.getKey() + "\t"
+        + source.getValue());
+      writer.newLine();
+    }
+    names = new TreeSet<String>(m_Classes.keySet());
+    for (String name : names) {
+      writer.write(m_Classes.get(name).toString());
+      writer.newLine();
+    }
+    for (String name : new TreeSet<String>(m_Unresolved)) {
+      writer.write(name + "\t" + UNRESOLVED + "\t\t");
+      writer.newLine();
+    }
+    writer.flush();
+  }
+
+  /**
+   * Writes the index to the given file, creating the parent directories if
+   * necessary.
+   *
+   * @param file the file to write to
+   * @throws IOException if writing fails
+   */
+  public void write(File file) throws IOException {
+    OutputStream stream;
+
+    if ((file.getParentFile() != null) && !file.getParentFile().exists()) {
+      file.getParentFile().mkdirs();
+    }
+    stream = new FileOutputStream(file);
+    try {
+      write(stream);
+    } finally {
+      stream.close();
+    }
+  }
+
+  /**
+   * Reads an index from the given stream.
+   *
+   * @param stream the stream to read from
+   * @param headerOnly if true, only the header (counts, package, jar files) is
+   *          read
+   * @return the index
+   * @throws IOException if reading fails or the index is malformed
+   */
+  public static ClassDiscoveryIndex read(InputStream stream, boolean headerOnly)
+    throws IOException {
+    ClassDiscoveryIndex result;
+    BufferedReader reader;
+    String line;
+    String[] parts;
+    ClassInfo info;
+
+    result = new ClassDiscoveryIndex();
+    reader = new BufferedReader(new InputStreamReader(stream, "UTF-8"));
+    try {
+      while ((line = reader.readLine()) != null) {
+        if (line.length() == 0) {
+          continue;
+        }
+        if (line.startsWith("#")) {
+          parts = line.split("\t", -1);
+          if (parts[0].equals(KEY_CLASSES) && (parts.length == 2)) {
+            result.m_NumClasses = Integer.parseInt(parts[1]);
+          } else if (parts[0].equals(KEY_NAMES) && (parts.length == 2)) {
+            result.m_NamesStamp = parts[1];
+          } else if (parts[0].equals(KEY_CONTENT) && (parts.length == 2)) {
+            result.m_ContentStamp = parts[1];
+          } else if (parts[0].equals(KEY_PACKAGE) && (parts.length == 3)) {
+            result.m_PackageName = parts[1];
+            result.m_PackageVersion = parts[2];
+          } else if (parts[0].equals(KEY_SOURCE) && (parts.length == 4)) {
+            result.m_Sources.put(parts[1], parts[2] + "\t" + parts[3]);
+          }
+          continue;
+        }
+        if (headerOnly) {
+          break;
+        }
+        if (line.endsWith("\t" + UNRESOLVED + "\t\t")) {
+          result.m_Unresolved.add(line.substring(0, line.indexOf('\t')));
+          continue;
+        }
+        info = ClassInfo.parse(line);
+        result.m_Classes.put(info.getName(), info);
+      }
+    } catch (NumberFormatException e) {
+      throw new IOException("Malformed class discovery index header: "
+        + e.getMessage());
+    }
+
+    return result;
+  }
+
+  /**
+   * Reads an index from the given file.
+   *
+   * @param file the file to read from
+   * @param headerOnly if true, only the header is read
+   * @return the index
+   * @throws IOException if reading fails or the index is malformed
+   */
+  public static ClassDiscoveryIndex read(File file, boolean headerOnly)
+    throws IOException {
+    InputStream stream;
+
+    stream = new FileInputStream(file);
+    try {
+      return read(stream, headerOnly);
+    } finally {
+      stream.close();
+    }
+  }
+
+  /**
+   * Collects the class files in the given directory, in the same way
+   * ClassCache does.
+   *
+   * @param prefix the package prefix so far, null for the default package
+   * @param dir the directory to search
+   * @param classnames for storing the classnames
+   * @param files for storing the class files (same order as the names)
+   * @return the newest modification time of a class file
+   */
+  protected static long collectClasses(String prefix, File dir,
+    List<String> classnames, List<File> files) {
+    long result;
+    File[] list;
+
+    result = 0;
+    list = dir.listFiles(new ClassCache.ClassFileFilter());
+    if (list != null) {
+      for (File file : list) {
+        classnames.add(ClassCache.cleanUp(prefix == null ? file.getName()
+          : prefix + "." + file.getName()));
+        files.add(file);
+        result = Math.max(result, file.lastModified());
+      }
+    }
+
+    list = dir.listFiles(new ClassCache.DirectoryFilter());
+    if (list != null) {
+      for (File file : list) {
+        result = Math.max(result, collectClasses(prefix == null ? file.getName()
+          : prefix + "." + file.getName(), file, classnames, files));
+      }
+    }
+
+    return result;
+  }
+
+  /**
+   * Computes the CRC32 checksum of a file, as stored for jar entries.
+   *
+   * @param file the file
+   * @return the checksum
+   * @throws IOException if reading fails
+   */
+  protected static long crc(File file) throws IOException {
+    CRC32 result;
+    InputStream stream;
+    byte[] buffer;
+    int read;
+
+    result = new CRC32();
+    buffer = new byte[8192];
+    stream = new FileInputStream(file);
+    try {
+      while ((read = stream.read(buffer)) > 0) {
+        result.update(buffer, 0, read);
+      }
+    } finally {
+      stream.close();
+    }
+
+    return result.getValue();
+  }
+
+  /**
+   * Generates the index for the classes in the given class directory and
+   * stores it in the directory.
+   *
+   * @param dir the class directory (i.e., the root of the package hierarchy)
+   * @param loader the class loader to load the classes with
+   * @return the index
+   * @throws IOException if writing the index fails
+   */
+  public static ClassDiscoveryIndex indexDirectory(File dir, ClassLoader loader)
+    throws IOException {
+    ClassDiscoveryIndex result;
+    List<String> classnames;
+    List<File> files;
+    Stamp names;
+    Stamp content;
+
+    classnames = new ArrayList<String>();
+    files = new ArrayList<File>();
+    collectClasses(null, dir, classnames, files);
+    names = new Stamp();
+    content = new Stamp();
+    for (int i = 0; i < classnames.size(); i++) {
+      names.add(classnames.get(i), 0);
+      content.add(classnames.get(i), crc(files.get(i)));
+    }
+    result = create(classnames, loader);
+    result.m_NamesStamp = names.toString();
+    result.m_ContentStamp = content.toString();
+    result.write(new File(dir, INDEX_FILE));
+
+    return result;
+  }
+
+  /**
+   * Reads the index of a class directory, if it is present and up-to-date.
+   *
+   * @param dir the class directory
+   * @param numClasses the number of class files in the directory
+   * @param newest the newest modification time of a class file in the
+   *          directory
+   * @param names the stamp of the names of the classes in the directory
+   *          (values 0)
+   * @return the index, null if not available or outdated
+   */
+  public static ClassDiscoveryIndex readFromDirectory(File dir, int numClasses,
+    long newest, Stamp names) {
+    File file;
+    ClassDiscoveryIndex result;
+
+    file = new File(dir, INDEX_FILE);
+    if (!file.exists() || (file.lastModified() < newest)) {
+      return null;
+    }
+
+    try {
+      result = read(file, false);
+    } catch (IOException e) {
+      return null;
+    }
+
+    if ((result.getNumClasses() != numClasses)
+      || !names.toString().equals(result.getNamesStamp())) {
+      return null;
+    }
+
+    return result;
+  }
+
+  /**
+   * Reads the index stored in a jar file, if it is present and matches the
+   * classes in the jar.
+   *
+   * @param jar the jar file
+   * @param numClasses the number of class files in the jar
+   * @param content the stamp of the names and CRC32 checksums of the class
+   *          files in the jar
+   * @return the index, null if not available or outdated
+   */
+  public static ClassDiscoveryIndex readFromJar(JarFile jar,
+    int numClasses, Stamp content) {
+    JarEntry entry;
+    InputStream stream;
+    ClassDiscoveryIndex result;
+
+    entry = jar.getJarEntry(INDEX_FILE);
+    if (entry == null) {
+      return null;
+    }
+
+    try {
+      stream = jar.getInputStream(entry);
+      try {
+        result = read(stream, false);
+      } finally {
+        stream.close();
+      }
+    } catch (IOException e) {
+      return null;
+    }
+
+    if ((result.getNumClasses() != numClasses)
+      || !content.toString().equals(result.getContentStamp())) {
+      return null;
+    }
+
+    return result;
+  }
+
+  /**
+   * Returns the top-level jar files of a package directory, sorted by name.
+   *
+   * @param packageDir the package directory
+   * @return the jar files
+   */
+  protected static List<File> getPackageJars(File packageDir) {
+    List<File> result;
+    File[] files;
+
+    result = new ArrayList<File>();
+    files = packageDir.listFiles();
+    if (files != null) {
+      Arrays.sort(files);
+      for (File file : files) {
+        if (file.isFile() && file.getName().toLowerCase().endsWith(".jar")) {
+          result.add(file);
+        }
+      }
+    }
+
+    return result;
+  }
+
+  /**
+   * Checks whether the header of a package index matches the package's
+   * current version and top-level jar files.
+   *
+   * @param index the index to check
+   * @param packageDir the package directory
+   * @param version the current version of the package, null to skip the
+   *          version check
+   * @return true if up-to-date
+   */
+  protected static boolean isCurrent(ClassDiscoveryIndex index,
+    File packageDir, String version) {
+    List<File> jars;
+
+    if ((version != null) && !version.equals(index.getPackageVersion())) {
+      return false;
+    }
+
+    jars = getPackageJars(packageDir);
+    if (jars.size() != index.m_Sources.size()) {
+      return false;
+    }
+    for (File jar : jars) {
+      if (!stamp(jar).equals(index.m_Sources.get(jar.getName()))) {
+        return false;
+      }
+    }
+
+    return true;
+  }
+
+  /**
+   * Reads the index of a package, if it is present and matches the package's
+   * version and top-level jar files. This does not require the package's jar
+   * files to be opened.
+   *
+   * @param packageDir the package directory
+   * @param version the current version of the package, null to skip the
+   *          version check
+   * @param headerOnly if true, only the header is read
+   * @return the index, null if not available or outdated
+   */
+  public static ClassDiscoveryIndex readFromPackage(File packageDir,
+    String version, boolean headerOnly) {
+    File file;
+    ClassDiscoveryIndex result;
+
+    file = new File(packageDir, PACKAGE_INDEX_FILE);
+    if (!file.exists()) {
+      return null;
+    }
+
+    try {
+      result = read(file, headerOnly);
+    } catch (IOException e) {
+      return null;
+    }
+    if (!isCurrent(result, packageDir, version)) {
+      return null;
+    }
+
+    return result;
+  }
+
+  /**
+   * Reads the index of a package, if it is present and up-to-date.
+   *
+   * @param loader the class loader of the package
+   * @param headerOnly if true, only the header is read
+   * @return the index, null if not available or outdated
+   */
+  public static ClassDiscoveryIndex readFromPackage(
+    WekaPackageLibIsolatingClassLoader loader, boolean headerOnly) {
+    ClassDiscoveryIndex result;
+
+    if (loader.getPackageDir() == null) {
+      return null;
+    }
+
+    result = readFromPackage(loader.getPackageDir(),
+      loader.getPackageVersion(), headerOnly);
+    if ((result != null)
+      && (result.getNumClasses() != loader.getPackageJarEntries().size())) {
+      return null;
+    }
+
+    return result;
+  }
+
+  /**
+   * Generates the index of a package from its top-level jar files and stores
+   * it in the package directory, unless an up-to-date index is already
+   * present.
+   *
+   * @param loader the class loader of the package
+   * @return true if a new index was written
+   * @throws IOException if writing the index fails
+   */
+  public static boolean updatePackageIndex(
+    WekaPackageLibIsolatingClassLoader loader) throws IOException {
+    ClassDiscoveryIndex index;
+
+    if ((loader.getPackageDir() == null)
+      || (readFromPackage(loader, true) != null)) {
+      return false;
+    }
+
+    index = create(loader.getPackageJarEntries(), loader);
+    index.m_PackageName = loader.getPackageName();
+    index.m_PackageVersion = loader.getPackageVersion();
+    for (File jar : getPackageJars(loader.getPackageDir())) {
+      index.addSource(jar);
+    }
+    index.write(new File(loader.getPackageDir(), PACKAGE_INDEX_FILE));
+
+    return true;
+  }
+
+  /**
+   * Returns the size and timestamp of a file.
+   *
+   * @param file the file
+   * @return the stamp ("length\tlastModified")
+   */
+  protected static String stamp(File file) {
+    return file.length() + "\t" + file.lastModified();
+  }
+
+  /**
+   * Joins the names with commas.
+   *
+   * @param names the names to join
+   * @return the joined names
+   */
+  protected static String join(Collection<String> names) {
+    StringBuilder result;
+
+    result = new StringBuilder();
+    for (String name : new TreeSet<String>(names)) {
+      if (result.length() > 0) {
+        result.append(',');
+      }
+      result.append(name);
+    }
+
+    return result.toString();
+  }
+
+  /**
+   * Splits comma-separated names.
+   *
+   * @param names the names to split
+   * @return the names
+   */
+  protected static List<String> split(String names) {
+    if (names.length() == 0) {
+      return new ArrayList<String>();
+    }
+    return Arrays.asList(names.split(","));
+  }
+
+  /**
+   * Returns the revision string.
+   *
+   * @return the revision
+   */
+  @Override
+  public String getRevision() {
+    return RevisionUtils.extract("$Revision$");
+  }
+
+  /**
+   * Generates the index for each of the class directories supplied as
+   * arguments (used by the build). The classes must be on the classpath.
+   *
+   * @param args the class directories to index
+   * @throws Exception if indexing fails
+   */
+  public static void main(String[] args) throws Exception {
+    ClassDiscoveryIndex index;
+
+    if (args.length == 0) {
+      System.err.println("Usage: " + ClassDiscoveryIndex.class.getName()
+        + " <class directory> [<class directory> ...]");
+      System.exit(1);
+    }
+
+    for (String arg : args) {
+      index = indexDirectory(new File(arg),
+        ClassDiscoveryIndex.class.getClassLoader());
+      System.out.println(arg + ": indexed " + index.getClassInfos().size()
+        + " of " + index.getNumClasses() + " classes");
+    }
+  }
+}
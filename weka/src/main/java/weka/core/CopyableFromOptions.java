@@ -0,0 +1,43 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ *    CopyableFromOptions.java
+ *    Copyright (C) 2026 University of Waikato, Hamilton, New Zealand
+ *
+ */
+
+package weka.core;
+
+/**
+ * Interface for option handlers whose complete state can, at times, be
+ * reproduced by creating a new instance of their class and passing it the
+ * output of getOptions(). Such objects can be copied without serializing
+ * them (see Utils.makeCopies(Object, int)). This is usually only the case
+ * before a model has been built.
+ *
+ * @author The WEKA Team (wekalist@list.waikato.ac.nz)
+ * @version $Revision$
+ */
+public interface CopyableFromOptions extends OptionHandler {
+
+  /**
+   * Returns whether a new instance of this class configured with the current
+   * options is, at this moment, equivalent to this object.
+   *
+   * @return true if this object can be copied via its options
+   */
+  boolean isCopyableFromOptions();
+}
@@ -231,6 +231,7 @@ public class DenseInstance extends AbstractInstance {
   @Override
   public void replaceMissingValues(double[] array) {
 
+    markDatasetModified();
     if ((array == null) || (array.length != m_AttValues.length)) {
       throw new IllegalArgumentException("Unequal number of attributes!");
     }
@@ -255,6 +256,7 @@ public class DenseInstance extends AbstractInstance {
   @Override
   public void setValue(int attIndex, double value) {
 
+    markDatasetModified();
     freshAttributeVector();
     m_AttValues[attIndex] = value;
   }
@@ -272,6 +274,7 @@ public class DenseInstance extends AbstractInstance {
   @Override
   public void setValueSparse(int indexOfIndex, double value) {
 
+    markDatasetModified();
     freshAttributeVector();
     m_AttValues[indexOfIndex] = value;
   }
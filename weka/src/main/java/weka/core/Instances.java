@@ -123,6 +123,17 @@ RevisionHandler {
    */
   protected int m_Lines = 0;
 
+  /**
+   * The number of modifications of the data (instances, their values or
+   * weights, or the attributes) made so far. Not serialized.
+   *
+   * @see #getModificationCount()
+   */
+  protected transient int m_ModificationCount;
+
+  /** Statistics of the data cached by Capabilities, not serialized. */
+  protected transient Capabilities.DataStatistics m_CapabilitiesStatistics;
+
   /**
    * Reads an ARFF file from a reader, and assigns a weight of one to each
    * instance. Lets the index of the class attribute be undefined (negative).
@@ -319,6 +330,7 @@ RevisionHandler {
   @Override
   public boolean add(/* @non_null@ */Instance instance) {
 
+    m_ModificationCount++;
     Instance newInstance = (Instance) instance.copy();
 
     newInstance.setDataset(this);
@@ -342,6 +354,7 @@ RevisionHandler {
   @Override
   public void add(int index, /* @non_null@ */Instance instance) {
 
+    m_ModificationCount++;
     Instance newInstance = (Instance) instance.copy();
 
     newInstance.setDataset(this);
@@ -516,6 +529,7 @@ RevisionHandler {
    */
   public void delete() {
 
+    m_ModificationCount++;
     m_Instances = new ArrayList<Instance>();
   }
 
@@ -527,6 +541,7 @@ RevisionHandler {
   // @ requires 0 <= index && index < numInstances();
   public void delete(int index) {
 
+    m_ModificationCount++;
     m_Instances.remove(index);
   }
 
@@ -543,6 +558,7 @@ RevisionHandler {
   // @ requires position != classIndex();
   public void deleteAttributeAt(int position) {
 
+    m_ModificationCount++;
     if ((position < 0) || (position >= m_Attributes.size())) {
       throw new IllegalArgumentException("Index out of range");
     }
@@ -617,6 +633,7 @@ RevisionHandler {
   // @ requires 0 <= attIndex && attIndex < numAttributes();
   public void deleteWithMissing(int attIndex) {
 
+    m_ModificationCount++;
     ArrayList<Instance> newInstances = new ArrayList<Instance>(numInstances());
 
     for (int i = 0; i < numInstances(); i++) {
@@ -756,6 +773,7 @@ RevisionHandler {
   // @ requires position <= numAttributes();
   public void insertAttributeAt(/* @non_null@ */Attribute att, int position) {
 
+    m_ModificationCount++;
     if ((position < 0) || (position > m_Attributes.size())) {
       throw new IllegalArgumentException("Index out of range");
     }
@@ -1016,6 +1034,30 @@ RevisionHandler {
     return m_Instances.size();
   }
 
+  /**
+   * Returns the number of modifications made to this dataset so far. Adding,
+   * removing, replacing or reordering instances, changing the values or
+   * weights of instances that belong to this dataset (via the Instance
+   * interface), and inserting, deleting or replacing attributes all increase
+   * the count. Can be used to check whether information computed from the
+   * data is still valid. The count is not serialized.
+   *
+   * @return the modification count
+   */
+  public int getModificationCount() {
+    return m_ModificationCount;
+  }
+
+  /**
+   * Increases the modification count, e.g., when the values of an instance
+   * belonging to this dataset have been changed.
+   *
+   * @see #getModificationCount()
+   */
+  protected void incrementModificationCount() {
+    m_ModificationCount++;
+  }
+
   /**
    * Shuffles the instances in the set so that they are ordered randomly.
    * 
@@ -1073,6 +1115,7 @@ RevisionHandler {
   // @ requires position <= numAttributes();
   public void replaceAttributeAt(/* @non_null@ */Attribute att, int position) {
 
+    m_ModificationCount++;
     if ((position < 0) || (position > m_Attributes.size())) {
       throw new IllegalArgumentException("Index out of range");
     }
@@ -1137,6 +1180,7 @@ RevisionHandler {
   @Override
   public Instance remove(int index) {
 
+    m_ModificationCount++;
     return m_Instances.remove(index);
   }
 
@@ -1566,6 +1610,7 @@ RevisionHandler {
   @Override
   public Instance set(int index, /* @non_null@ */Instance instance) {
 
+    m_ModificationCount++;
     Instance newInstance = (Instance) instance.copy();
     Instance oldInstance = m_Instances.get(index);
 
@@ -1657,6 +1702,7 @@ RevisionHandler {
    */
   public void sort(int attIndex) {
 
+    m_ModificationCount++;
     if (!attribute(attIndex).isNominal()) {
 
       // Use quicksort from Utils class for sorting
@@ -1707,6 +1753,7 @@ RevisionHandler {
    */
   public void stableSort(int attIndex) {
 
+    m_ModificationCount++;
     if (!attribute(attIndex).isNominal()) {
 
       // Use quicksort from Utils class for sorting
@@ -2280,6 +2327,7 @@ RevisionHandler {
   // @ requires 0 <= j && j < numInstances();
   public void swap(int i, int j) {
 
+    m_ModificationCount++;
     Instance in = m_Instances.get(i);
     m_Instances.set(i, m_Instances.get(j));
     m_Instances.set(j, in);
@@ -72,6 +72,21 @@ public class ResourceUtils {
       return forNameNoSchemeMatch(classType, className, options);
     }
 
+    // fully qualified names (e.g., as output by getOptions()) can be loaded
+    // directly, without searching all known classes for a match
+    if (className.indexOf('.') > -1) {
+      Class<?> c = null;
+      try {
+        c = WekaPackageClassLoaderManager.forName(className);
+      } catch (Exception ex) {
+        // try matching the name against the known schemes below
+      }
+      if ((c != null) && !c.isArray()
+        && ((classType == null) || classType.isAssignableFrom(c))) {
+        return forNameNoSchemeMatch(classType, className, options);
+      }
+    }
+
     List<String> matches =
       Run.findSchemeMatch(classType, className, false, true);
     if (matches.size() == 0) {
@@ -318,6 +318,7 @@ public class SparseInstance extends AbstractInstance {
   @Override
   public void replaceMissingValues(double[] array) {
 
+    markDatasetModified();
     if ((array == null) || (array.length != m_NumAttributes)) {
       throw new IllegalArgumentException("Unequal number of attributes!");
     }
@@ -356,6 +357,7 @@ public class SparseInstance extends AbstractInstance {
   @Override
   public void setValue(int attIndex, double value) {
 
+    markDatasetModified();
     int index = locateIndex(attIndex);
 
     if ((index >= 0) && (m_Indices[index] == attIndex)) {
@@ -407,6 +409,7 @@ public class SparseInstance extends AbstractInstance {
   @Override
   public void setValueSparse(int indexOfIndex, double value) {
 
+    markDatasetModified();
     if (value != 0) {
       double[] tempValues = new double[m_AttValues.length];
       System.arraycopy(m_AttValues, 0, tempValues, 0, m_AttValues.length);
@@ -38,6 +38,7 @@ import java.text.BreakIterator;
 import java.text.DecimalFormat;
 import java.text.DecimalFormatSymbols;
 import java.text.ParseException;
+import java.util.Arrays;
 import java.util.Properties;
 import java.util.Random;
 import java.util.Vector;
@@ -619,17 +620,16 @@ public final class Utils implements RevisionHandler {
     for (int i = 0; i < options.length; i++) {
       if ((options[i].length() > 0) && (options[i].charAt(0) == '-')) {
         // Check if it is a negative number
-        try {
-          Double.valueOf(options[i]);
-        } catch (NumberFormatException e) {
-          // found?
-          if (options[i].equals("-" + flag)) {
-            return i;
-          }
-          // did we reach "--"?
-          if (options[i].charAt(1) == '-') {
-            return -1;
-          }
+        if (isNegativeNumber(options[i])) {
+          continue;
+        }
+        // found?
+        if (options[i].equals("-" + flag)) {
+          return i;
+        }
+        // did we reach "--"?
+        if (options[i].charAt(1) == '-') {
+          return -1;
         }
       }
     }
@@ -637,6 +637,31 @@ public final class Utils implements RevisionHandler {
     return -1;
   }
 
+  /**
+   * Returns whether the given string, which starts with '-', is a negative
+   * number. Only strings that can possibly be numbers are parsed, since
+   * failed parse attempts are expensive.
+   *
+   * @param option the string to check
+   * @return true if the string is a negative number
+   */
+  private static boolean isNegativeNumber(String option) {
+    if (option.length() < 2) {
+      return false;
+    }
+    char c = option.charAt(1);
+    if (!Character.isDigit(c) && (c != '.')
+      && !option.startsWith("-Infinity") && !option.startsWith("-NaN")) {
+      return false;
+    }
+    try {
+      Double.valueOf(option);
+      return true;
+    } catch (NumberFormatException e) {
+      return false;
+    }
+  }
+
   /**
    * Quotes a string if it contains special characters.
    * 
@@ -1080,6 +1105,68 @@ public final class Utils implements RevisionHandler {
     return ResourceUtils.forName(classType, className, options);
   }
 
+  /**
+   * Creates a given number of deep copies of the given object. If the object
+   * implements CopyableFromOptions and can currently be copied that way, the
+   * copies are new instances of its class configured with its options, which
+   * is much cheaper than serialization for large configurations. Otherwise,
+   * or if the options do not survive the round trip, the copies are created
+   * using serialization.
+   *
+   * @param model the object to copy
+   * @param num the number of copies to create
+   * @return an array of copies
+   * @throws Exception if the object cannot be copied
+   */
+  public static Object[] makeCopies(Object model, int num) throws Exception {
+
+    Object[] copies = new Object[num];
+    if (num == 0) {
+      return copies;
+    }
+    if ((model instanceof CopyableFromOptions)
+      && ((CopyableFromOptions) model).isCopyableFromOptions()) {
+      String[] options = ((CopyableFromOptions) model).getOptions();
+      OptionHandler first = copyFromOptions(model, options);
+      if ((first != null) && Arrays.equals(options, first.getOptions())) {
+        copies[0] = first;
+        for (int i = 1; i < num; i++) {
+          copies[i] = copyFromOptions(model, options);
+          if (copies[i] == null) {
+            break;
+          }
+        }
+        if (copies[num - 1] != null) {
+          return copies;
+        }
+      }
+    }
+    SerializedObject so = new SerializedObject(model);
+    for (int i = 0; i < num; i++) {
+      copies[i] = so.getObject();
+    }
+    return copies;
+  }
+
+  /**
+   * Creates a new instance of the given object's class and sets the given
+   * options on it.
+   *
+   * @param model the object to copy
+   * @param options the options of the object (not modified)
+   * @return the configured instance, or null if it could not be created
+   */
+  private static OptionHandler copyFromOptions(Object model, String[] options) {
+
+    try {
+      OptionHandler copy = (OptionHandler) model.getClass().newInstance();
+      copy.setOptions(options.clone());
+      return copy;
+    } catch (Exception ex) {
+      return null;
+    }
+  }
+
   /**
    * Returns a JFrame with the given title. The JFrame will be placed relative
    * to the ancestor window of the given component (or relative to the given component itself, if it is a window),
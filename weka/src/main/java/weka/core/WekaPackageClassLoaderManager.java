@@ -38,9 +38,11 @@ import java.security.ProtectionDomain;
 import java.util.ArrayList;
 import java.util.Enumeration;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipInputStream;
 
@@ -80,6 +82,23 @@ public class WekaPackageClassLoaderManager {
   /** Path to the weka.jar file on the classpath */
   protected File m_pathToWekaJarFile;
 
+  /**
+   * Directories of packages whose classloaders will be created when they are
+   * first needed, keyed by package name
+   */
+  protected Map<String, File> m_deferredPackages = new ConcurrentHashMap<>();
+
+  /** Class discovery indexes of deferred packages, keyed by package name */
+  protected Map<String, ClassDiscoveryIndex> m_deferredPackageIndexes =
+    new ConcurrentHashMap<>();
+
+  /**
+   * Lookup for the names of deferred packages keyed by class names from their
+   * top-level jar files
+   */
+  protected Map<String, String> m_deferredClassLookup =
+    new ConcurrentHashMap<>();
+
   private WekaPackageClassLoaderManager() {
   }
 
@@ -260,7 +279,143 @@ public class WekaPackageClassLoaderManager {
    * @return a set of all classes in all top-level package jar files
    */
   public Set<String> getPackageJarFileClasses() {
-    return m_classBasedClassLoaderLookup.keySet();
+    if (m_deferredClassLookup.isEmpty()) {
+      return m_classBasedClassLoaderLookup.keySet();
+    }
+
+    Set<String> result = new HashSet<>(m_classBasedClassLoaderLookup.keySet());
+    result.addAll(m_deferredClassLookup.keySet());
+    return result;
+  }
+
+  /**
+   * Register a package whose classloader should only be created when a class
+   * or resource from the package is first needed (or the classloader is
+   * requested via getPackageClassLoader()). The supplied class discovery
+   * index provides the names of the classes in the package's top-level jar
+   * files, so that the jar files do not have to be opened beforehand.
+   *
+   * @param packageDir the directory of the package
+   * @param index the up-to-date class discovery index of the package
+   */
+  public synchronized void deferPackage(File packageDir,
+    ClassDiscoveryIndex index) {
+    String packageName = packageDir.getName();
+
+    if (m_packageJarClassLoaders.containsKey(packageName)) {
+      return;
+    }
+
+    m_deferredPackages.put(packageName, packageDir);
+    m_deferredPackageIndexes.put(packageName, index);
+    for (String c : index.getClassnames()) {
+      m_deferredClassLookup.put(c, packageName);
+    }
+  }
+
+  /**
+   * Returns true if the named package has been registered via deferPackage()
+   * and its classloader has not been created yet
+   *
+   * @param packageName the name of the package to check
+   * @return true if loading of the package is still deferred
+   */
+  public boolean isPackageDeferred(String packageName) {
+    return m_deferredPackages.containsKey(packageName);
+  }
+
+  /**
+   * Returns true if there is a classloader for the named package, or if one
+   * will be created on demand. Unlike getPackageClassLoader(), this does not
+   * cause the classloader of a deferred package to be created.
+   *
+   * @param packageName the name of the package to check
+   * @return true if the package is available
+   */
+  public boolean isPackageAvailable(String packageName) {
+    return m_packageJarClassLoaders.containsKey(packageName)
+      || m_deferredPackages.containsKey(packageName);
+  }
+
+  /**
+   * Get the class discovery indexes of the packages whose loading is still
+   * deferred
+   *
+   * @return a list of class discovery indexes
+   */
+  public List<ClassDiscoveryIndex> getDeferredPackageIndexes() {
+    return new ArrayList<>(m_deferredPackageIndexes.values());
+  }
+
+  /**
+   * Creates the classloader for a deferred package and checks its integrity.
+   * Dependencies that are deferred themselves get loaded as part of the
+   * integrity check.
+   *
+   * @param packageName the name of the package to load
+   * @return the package's classloader, or null if the package could not be
+   *         loaded
+   */
+  protected synchronized WekaPackageLibIsolatingClassLoader
+    loadDeferredPackage(String packageName) {
+    File packageDir = forgetDeferredPackage(packageName);
+    if (packageDir == null) {
+      return m_packageJarClassLoaders.get(packageName);
+    }
+
+    if (System.getProperty("weka.core.classloader.debug", "false")
+      .equalsIgnoreCase("true")) {
+      System.out.println("[WekaPackageClassLoaderManager] loading deferred "
+        + "package " + packageName);
+    }
+
+    try {
+      addPackageToClassLoader(packageDir);
+      WekaPackageLibIsolatingClassLoader loader =
+        m_packageJarClassLoaders.get(packageName);
+      if (!loader.integrityCheck()) {
+        System.err.println("[Weka] Integrity: removing classloader for: "
+          + packageName);
+        removeClassLoaderLookups(packageName);
+        return null;
+      }
+      return loader;
+    } catch (Exception ex) {
+      ex.printStackTrace();
+      System.err.println("[WekaPackageClassLoaderManager] Problem loading "
+        + "package " + packageName);
+      removeClassLoaderLookups(packageName);
+      return null;
+    }
+  }
+
+  /**
+   * Removes the named package from the deferred packages
+   *
+   * @param packageName the name of the package
+   * @return the directory of the package, or null if the package was not
+   *         deferred
+   */
+  protected synchronized File forgetDeferredPackage(String packageName) {
+    File packageDir = m_deferredPackages.remove(packageName);
+    ClassDiscoveryIndex index = m_deferredPackageIndexes.remove(packageName);
+    if (index != null) {
+      for (String c : index.getClassnames()) {
+        m_deferredClassLookup.remove(c, packageName);
+      }
+    }
+    return packageDir;
+  }
+
+  /**
+   * Creates the classloaders of all packages whose loading is still deferred.
+   * Used when looking for resources, as these are not covered by the class
+   * discovery indexes.
+   */
+  protected void loadAllDeferredPackages() {
+    for (String packageName : new ArrayList<>(m_deferredPackages.keySet())) {
+      loadDeferredPackage(packageName);
+    }
   }
 
   /**
@@ -342,6 +497,7 @@ public class WekaPackageClassLoaderManager {
    * @param packageName the name of the package to remove the classloader for
    */
   public synchronized void removeClassLoaderForPackage(String packageName) {
+    forgetDeferredPackage(packageName);
     WekaPackageLibIsolatingClassLoader loader =
       m_packageJarClassLoaders.get(packageName);
     if (loader != null) {
@@ -362,6 +518,7 @@ public class WekaPackageClassLoaderManager {
   public synchronized ClassLoader addPackageToClassLoader(File packageDir)
     throws Exception {
 
+    forgetDeferredPackage(packageDir.getName());
     if (m_packageJarClassLoaders.containsKey(packageDir.getName())) {
       m_packageJarClassLoaders.get(packageDir.getName()).closeClassLoader();
     }
@@ -412,6 +569,16 @@ public class WekaPackageClassLoaderManager {
     return result;
   }
 
+  /**
+   * Get the classloaders of all loaded packages
+   *
+   * @return a list of package classloaders
+   */
+  public synchronized List<WekaPackageLibIsolatingClassLoader> getPackageClassLoaders() {
+    return new ArrayList<WekaPackageLibIsolatingClassLoader>(
+      m_packageJarClassLoaders.values());
+  }
+
   /**
    * Get the classloader for the named package
    * 
@@ -421,7 +588,12 @@ public class WekaPackageClassLoaderManager {
    */
   public WekaPackageLibIsolatingClassLoader getPackageClassLoader(
     String packageName) {
-    return m_packageJarClassLoaders.get(packageName);
+    WekaPackageLibIsolatingClassLoader result =
+      m_packageJarClassLoaders.get(packageName);
+    if (result == null && m_deferredPackages.containsKey(packageName)) {
+      result = loadDeferredPackage(packageName);
+    }
+    return result;
   }
 
   /**
@@ -458,6 +630,18 @@ public class WekaPackageClassLoaderManager {
       }
     }
 
+    if (result == null) {
+      // a class from a package whose loading has been deferred?
+      String owner = m_deferredClassLookup.get(name);
+      if (owner != null) {
+        WekaPackageLibIsolatingClassLoader loader =
+          getPackageClassLoader(owner);
+        if (loader != null) {
+          result = loader.findGloballyVisiblePackageClass(name);
+        }
+      }
+    }
+
     if (result == null) {
       throw new ClassNotFoundException("Unable to find class '" + name + "'");
     }
@@ -483,6 +667,9 @@ public class WekaPackageClassLoaderManager {
     result = getClass().getClassLoader().getResource(name);
 
     if (result == null) {
+      // resources are not indexed, so deferred packages have to be loaded
+      loadAllDeferredPackages();
+
       // now ask the package top-level classloaders
       for (Map.Entry<String, WekaPackageLibIsolatingClassLoader> e : m_packageJarClassLoaders
         .entrySet()) {
@@ -511,6 +698,9 @@ public class WekaPackageClassLoaderManager {
     if (getClass().getClassLoader().getResource(name) != null) {
       result = getClass().getClassLoader();
     } else {
+      // resources are not indexed, so deferred packages have to be loaded
+      loadAllDeferredPackages();
+
       // now ask the package top-level classloaders
       for (Map.Entry<String, WekaPackageLibIsolatingClassLoader> e : m_packageJarClassLoaders
         .entrySet()) {
@@ -889,21 +1079,30 @@ public class WekaPackageClassLoaderManager {
       }
     }
 
-    List<String> classKeys = new ArrayList<>();
     for (String p : problems) {
       System.err.println("[Weka] Integrity: removing classloader for: " + p);
-      // remove from lookups
-      m_packageJarClassLoaders.remove(p);
+      removeClassLoaderLookups(p);
+    }
+  }
 
-      for (Map.Entry<String, WekaPackageLibIsolatingClassLoader> e : m_classBasedClassLoaderLookup
-        .entrySet()) {
-        if (e.getValue().getPackageName().equals(p)) {
-          classKeys.add(e.getKey());
-        }
-      }
-      for (String k : classKeys) {
-        m_classBasedClassLoaderLookup.remove(k);
+  /**
+   * Removes the classloader of the named package from the lookups (after a
+   * failed integrity check)
+   *
+   * @param packageName the name of the package
+   */
+  protected synchronized void removeClassLoaderLookups(String packageName) {
+    m_packageJarClassLoaders.remove(packageName);
+
+    List<String> classKeys = new ArrayList<>();
+    for (Map.Entry<String, WekaPackageLibIsolatingClassLoader> e : m_classBasedClassLoaderLookup
+      .entrySet()) {
+      if (e.getValue().getPackageName().equals(packageName)) {
+        classKeys.add(e.getKey());
       }
     }
+    for (String k : classKeys) {
+      m_classBasedClassLoaderLookup.remove(k);
+    }
   }
 }
@@ -90,6 +90,12 @@ public class WekaPackageLibIsolatingClassLoader extends URLClassLoader {
   /** The name of the package that this classloader loads classes from */
   protected String m_packageName = "";
 
+  /** The directory of the package */
+  protected File m_packageDir;
+
+  /** The version of the package */
+  protected String m_packageVersion;
+
   /** A reference to the classloader manager */
   protected WekaPackageClassLoaderManager m_classloaderRepo;
 
@@ -138,7 +144,11 @@ public class WekaPackageLibIsolatingClassLoader extends URLClassLoader {
    */
   protected void init(File packageDir) throws Exception {
     m_packageName = packageDir.getName();
+    m_packageDir = packageDir;
     Package toLoad = WekaPackageManager.getInstalledPackageInfo(m_packageName);
+    Object version =
+      toLoad.getPackageMetaDataElement(WekaPackageManager.VERSION_KEY);
+    m_packageVersion = version != null ? version.toString().trim() : null;
 
     // Process any native libs before anything else!
     List<String> jarsToBeIgnoredWhenLoadingClasses =
@@ -836,6 +846,24 @@ public class WekaPackageLibIsolatingClassLoader extends URLClassLoader {
     return m_packageName;
   }
 
+  /**
+   * Get the directory of the package covered by this classloader
+   *
+   * @return the package directory
+   */
+  public File getPackageDir() {
+    return m_packageDir;
+  }
+
+  /**
+   * Get the version of the package covered by this classloader
+   *
+   * @return the package version, or null if not specified
+   */
+  public String getPackageVersion() {
+    return m_packageVersion;
+  }
+
   /**
    * Get a Set of the names of all classes contained within top-level jar files
    * in this package
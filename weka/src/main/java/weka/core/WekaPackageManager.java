@@ -212,6 +212,12 @@ public class WekaPackageManager {
   /** Load packages? */
   private static boolean m_loadPackages = true;
 
+  /**
+   * Defer the creation of package classloaders until a package is first
+   * needed?
+   */
+  private static boolean m_loadPackagesLazily;
+
   /** Established WEKA_HOME successfully? */
   protected static boolean m_wekaHomeEstablished;
 
@@ -419,6 +425,11 @@ public class WekaPackageManager {
     if (loadPackages != null) {
       m_loadPackages = loadPackages.equalsIgnoreCase("true");
     }
+    String loadLazily =
+      env.getVariableValue("weka.packageManager.loadPackagesLazily");
+    if (loadLazily != null) {
+      m_loadPackagesLazily = loadLazily.equalsIgnoreCase("true");
+    }
 
     // load any general package manager properties from props file
     File generalProps =
@@ -450,6 +461,12 @@ public class WekaPackageManager {
           m_loadPackages = loadPackages.equalsIgnoreCase("true");
         }
 
+        loadLazily =
+          gProps.getProperty("weka.packageManager.loadPackagesLazily");
+        if (loadLazily != null && loadLazily.length() > 0) {
+          m_loadPackagesLazily = loadLazily.equalsIgnoreCase("true");
+        }
+
         String pluginManagerDisableList =
           gProps.getProperty("weka.pluginManager.disable");
         if (pluginManagerDisableList != null
@@ -819,9 +836,9 @@ public class WekaPackageManager {
   public static boolean hasBeenLoaded(Package toCheck) {
 
     // if it loaded successfully, passed all integrity checks etc., then there
-    // will be package classloader for it
+    // will be package classloader for it (or one will be created on demand)
     return WekaPackageClassLoaderManager.getWekaPackageClassLoaderManager()
-      .getPackageClassLoader(toCheck.getName()) != null;
+      .isPackageAvailable(toCheck.getName());
   }
 
   /**
@@ -1204,6 +1221,120 @@ public class WekaPackageManager {
     return unknownPackages;
   }
 
+  /**
+   * Registers a package whose classloader is to be created when a class from
+   * the package is first needed, rather than now. This requires an up-to-date
+   * class discovery index, which provides the names of the classes in the
+   * package's top-level jar files. Packages that install native libraries,
+   * inject loaders or dependencies, set system properties or check for the
+   * presence of classes, environment variables or files are always loaded
+   * immediately, so that these checks happen as usual.
+   *
+   * @param toLoad the package to register
+   * @param packageDir the directory of the package
+   * @return true if the package was registered, false if it has to be loaded
+   *         immediately
+   */
+  protected static boolean deferPackageLoading(Package toLoad,
+    File packageDir) {
+    if (toLoad.getPackageMetaDataElement("NativeLibs") != null
+      || toLoad.getPackageMetaDataElement("InjectLoader") != null
+      || toLoad.getPackageMetaDataElement(INJECT_DEPENDENCY_KEY) != null
+      || toLoad.getPackageMetaDataElement(SET_SYSTEM_PROPERTIES_KEY) != null
+      || toLoad.getPackageMetaDataElement(DO_NOT_LOAD_IF_CLASS_NOT_PRESENT_KEY) != null
+      || toLoad.getPackageMetaDataElement(DO_NOT_LOAD_IF_ENV_VAR_NOT_SET_KEY) != null
+      || toLoad.getPackageMetaDataElement(DO_NOT_LOAD_IF_FILE_NOT_PRESENT_KEY) != null) {
+      return false;
+    }
+
+    Object version = toLoad.getPackageMetaDataElement(VERSION_KEY);
+    ClassDiscoveryIndex index =
+      ClassDiscoveryIndex.readFromPackage(packageDir,
+        version != null ? version.toString().trim() : null, false);
+    if (index == null) {
+      return false;
+    }
+
+    WekaPackageClassLoaderManager.getWekaPackageClassLoaderManager()
+      .deferPackage(packageDir, index);
+    return true;
+  }
+
+  /**
+   * Checks that the dependencies of deferred packages are available. Deferred
+   * packages with missing dependencies are loaded immediately, so that they
+   * fail (and get reported by) the usual integrity check.
+   *
+   * @param deferred the deferred packages, keyed by name
+   */
+  protected static void checkDeferredPackageDependencies(
+    Map<String, Package> deferred) {
+    WekaPackageClassLoaderManager manager =
+      WekaPackageClassLoaderManager.getWekaPackageClassLoaderManager();
+    boolean changed = true;
+    while (changed) {
+      changed = false;
+      for (Map.Entry<String, Package> e : deferred.entrySet()) {
+        if (!manager.isPackageDeferred(e.getKey())) {
+          continue;
+        }
+        try {
+          for (Dependency d : e.getValue().getDependencies()) {
+            String dep = d.getTarget().getPackage().getName();
+            if (!manager.isPackageAvailable(dep)) {
+              manager.getPackageClassLoader(e.getKey());
+              changed = true;
+              break;
+            }
+          }
+        } catch (Exception ex) {
+          manager.getPackageClassLoader(e.getKey());
+          changed = true;
+        }
+      }
+    }
+  }
+
+  /**
+   * Writes the class discovery index for the named package (used by
+   * ClassDiscovery to determine the types of the package's classes without
+   * loading them), unless the package has not been loaded or already has an
+   * up-to-date index.
+   *
+   * @param packageName the name of the package to index
+   * @param verbose true if a message should be output when the index is
+   *          written
+   */
+  protected static void updateClassDiscoveryIndex(String packageName,
+    boolean verbose) {
+    if (WekaPackageClassLoaderManager.getWekaPackageClassLoaderManager()
+      .isPackageDeferred(packageName)) {
+      // only deferred if it already has an up-to-date index
+      return;
+    }
+    WekaPackageLibIsolatingClassLoader loader =
+      WekaPackageClassLoaderManager.getWekaPackageClassLoaderManager()
+        .getPackageClassLoader(packageName);
+    if (loader == null) {
+      return;
+    }
+
+    try {
+      if (ClassDiscoveryIndex.updatePackageIndex(loader) && verbose) {
+        System.out.println("[WekaPackageManager] indexed classes of package "
+          + packageName);
+      }
+    } catch (IOException ex) {
+      // the package directory might not be writable; classes will be
+      // inspected by loading them instead
+      if (verbose) {
+        System.err.println("[WekaPackageManager] unable to write class "
+          + "discovery index for package " + packageName + ": "
+          + ex.getMessage());
+      }
+    }
+  }
+
   /**
    * Load all packages
    *
@@ -1261,6 +1392,9 @@ public class WekaPackageManager {
       // dynamic injection of dependencies between packages
       Map<String, List<String>> injectDependencies = new HashMap<>();
 
+      // packages whose classloaders will be created on demand
+      Map<String, Package> deferred = new HashMap<>();
+
       for (File content : contents) {
         if (content.isDirectory()) {
           try {
@@ -1277,9 +1411,14 @@ public class WekaPackageManager {
                     + content.getName());
                 }
                 checkForInjectDependencies(toLoad, injectDependencies);
-                WekaPackageClassLoaderManager
-                  .getWekaPackageClassLoaderManager().addPackageToClassLoader(
-                    content);
+                if (!m_loadPackagesLazily
+                  || !deferPackageLoading(toLoad, content)) {
+                  WekaPackageClassLoaderManager
+                    .getWekaPackageClassLoaderManager()
+                    .addPackageToClassLoader(content);
+                } else {
+                  deferred.put(content.getName(), toLoad);
+                }
               }
             }
           } catch (Exception ex) {
@@ -1295,13 +1434,22 @@ public class WekaPackageManager {
       // now check overall integrity
       WekaPackageClassLoaderManager.getWekaPackageClassLoaderManager()
         .performIntegrityCheck();
+      checkDeferredPackageDependencies(deferred);
+
+      // index packages installed before class discovery indexes were
+      // introduced, or modified since they were indexed
+      for (File content : contents) {
+        if (content.isDirectory()) {
+          updateClassDiscoveryIndex(content.getName(), verbose);
+        }
+      }
 
       // now process the various properties files in the packages
       for (File content : contents) {
         try {
           if (content.isDirectory()
             && WekaPackageClassLoaderManager.getWekaPackageClassLoaderManager()
-              .getPackageClassLoader(content.getName()) != null) {
+              .isPackageAvailable(content.getName())) {
             processPackageDirectory(content, verbose, goePropsFiles,
               avoidTriggeringFullClassDiscovery);
           }
@@ -2219,6 +2367,7 @@ public class WekaPackageManager {
     // and files etc.
     WekaPackageClassLoaderManager.getWekaPackageClassLoaderManager()
       .performIntegrityCheck();
+    updateClassDiscoveryIndex(packageName, false);
 
     // If the classloader for the package is still in play then
     // process all props files
@@ -2289,6 +2438,7 @@ public class WekaPackageManager {
     // and files etc.
     WekaPackageClassLoaderManager.getWekaPackageClassLoaderManager()
       .performIntegrityCheck();
+    updateClassDiscoveryIndex(toInstall.getName(), false);
 
     // If the classloader for the package is still in play then
     // process all props files
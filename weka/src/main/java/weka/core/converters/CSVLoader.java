@@ -124,6 +124,20 @@ import weka.core.converters.ArffLoader.ArffReader;
  *  The size of the in memory buffer (in rows).
  *  (default: 100)</pre>
  * 
+ * <pre> -fast
+ *  Read files in batch mode with the chunked parser,
+ *  which parses the values directly in a single pass.</pre>
+ * 
+ * <pre> -num-slots &lt;num&gt;
+ *  The number of threads to use with the chunked
+ *  parser.
+ *  (default: 1)</pre>
+ * 
+ * <pre> -chunk-size &lt;num&gt;
+ *  The size of the chunks (in bytes) for the
+ *  chunked parser.
+ *  (default: 4194304)</pre>
+ * 
  <!-- options-end -->
  * 
  * @author Mark Hall (mhall{[at]}pentaho{[dot]}com)
@@ -203,6 +217,15 @@ public class CSVLoader extends AbstractFileLoader implements BatchConverter,
   protected TYPE[] m_types;
   private int m_numBufferedRows;
 
+  /** whether to read files in batch mode with the chunked parser */
+  protected boolean m_useFastParser = false;
+
+  /** the number of threads to use with the chunked parser */
+  protected int m_numExecutionSlots = 1;
+
+  /** the size of the chunks (in bytes) for the chunked parser */
+  protected int m_chunkSize = 4 * 1024 * 1024;
+
   /**
    * default constructor.
    */
@@ -560,6 +583,98 @@ public class CSVLoader extends AbstractFileLoader implements BatchConverter,
     return "The number of rows to process in memory at any one time.";
   }
 
+  /**
+   * Set whether to read files in batch mode with the chunked parser, which
+   * scans the raw bytes of the file in a single pass and parses the values
+   * directly into the instances.
+   *
+   * @param fast true to use the chunked parser
+   */
+  public void setUseFastParser(boolean fast) {
+    m_useFastParser = fast;
+  }
+
+  /**
+   * Get whether to read files in batch mode with the chunked parser.
+   *
+   * @return true if the chunked parser is used
+   */
+  public boolean getUseFastParser() {
+    return m_useFastParser;
+  }
+
+  /**
+   * Returns the tip text for this property.
+   *
+   * @return tip text for this property suitable for displaying in the
+   *         explorer/experimenter gui
+   */
+  public String useFastParserTipText() {
+    return "Read files in batch mode with a parser that scans the raw bytes "
+      + "in a single pass, splits them into chunks that are parsed in "
+      + "parallel and stores the values directly, without a temporary file. "
+      + "The types inferred from the in memory buffer are promoted if "
+      + "necessary. The separator and enclosures must be ASCII characters.";
+  }
+
+  /**
+   * Set the number of threads to use with the chunked parser.
+   *
+   * @param slots the number of threads
+   */
+  public void setNumExecutionSlots(int slots) {
+    m_numExecutionSlots = slots;
+  }
+
+  /**
+   * Get the number of threads to use with the chunked parser.
+   *
+   * @return the number of threads
+   */
+  public int getNumExecutionSlots() {
+    return m_numExecutionSlots;
+  }
+
+  /**
+   * Returns the tip text for this property.
+   *
+   * @return tip text for this property suitable for displaying in the
+   *         explorer/experimenter gui
+   */
+  public String numExecutionSlotsTipText() {
+    return "The number of threads to parse the chunks of the file with "
+      + "(fast parser only).";
+  }
+
+  /**
+   * Set the size of the chunks the file is split into by the chunked parser.
+   *
+   * @param size the size in bytes
+   */
+  public void setChunkSize(int size) {
+    m_chunkSize = size;
+  }
+
+  /**
+   * Get the size of the chunks the file is split into by the chunked parser.
+   *
+   * @return the size in bytes
+   */
+  public int getChunkSize() {
+    return m_chunkSize;
+  }
+
+  /**
+   * Returns the tip text for this property.
+   *
+   * @return tip text for this property suitable for displaying in the
+   *         explorer/experimenter gui
+   */
+  public String chunkSizeTipText() {
+    return "The size (in bytes) of the chunks the file is split into for "
+      + "parsing (fast parser only).";
+  }
+
   /**
    * Get label specifications for nominal attributes.
    *
@@ -666,6 +781,17 @@ public class CSVLoader extends AbstractFileLoader implements BatchConverter,
     result.add(new Option("\tThe size of the in memory buffer (in rows).\n"
       + "\t(default: 100)", "B", 1, "-B <num>"));
 
+    result.add(new Option("\tRead files in batch mode with the chunked parser,\n"
+      + "\twhich parses the values directly in a single pass.", "fast", 0,
+      "-fast"));
+
+    result.add(new Option("\tThe number of threads to use with the chunked\n"
+      + "\tparser.\n" + "\t(default: 1)", "num-slots", 1, "-num-slots <num>"));
+
+    result.add(new Option("\tThe size of the chunks (in bytes) for the\n"
+      + "\tchunked parser.\n" + "\t(default: 4194304)", "chunk-size", 1,
+      "-chunk-size <num>"));
+
     return result.elements();
   }
 
@@ -712,6 +838,20 @@ public class CSVLoader extends AbstractFileLoader implements BatchConverter,
       result.add(spec);
     }
 
+    if (getUseFastParser()) {
+      result.add("-fast");
+    }
+
+    if (getNumExecutionSlots() != 1) {
+      result.add("-num-slots");
+      result.add("" + getNumExecutionSlots());
+    }
+
+    if (getChunkSize() != 4 * 1024 * 1024) {
+      result.add("-chunk-size");
+      result.add("" + getChunkSize());
+    }
+
     return result.toArray(new String[result.size()]);
   }
 
@@ -777,6 +917,26 @@ public class CSVLoader extends AbstractFileLoader implements BatchConverter,
       setEnclosureCharacters(tmpStr);
     }
 
+    setUseFastParser(Utils.getFlag("fast", options));
+
+    tmpStr = Utils.getOption("num-slots", options);
+    if (tmpStr.length() > 0) {
+      setNumExecutionSlots(Integer.parseInt(tmpStr));
+    } else {
+      setNumExecutionSlots(1);
+    }
+
+    tmpStr = Utils.getOption("chunk-size", options);
+    if (tmpStr.length() > 0) {
+      int size = Integer.parseInt(tmpStr);
+      if (size < 1) {
+        throw new Exception("Chunk size must be >= 1");
+      }
+      setChunkSize(size);
+    } else {
+      setChunkSize(4 * 1024 * 1024);
+    }
+
     while (true) {
       tmpStr = Utils.getOption('L', options);
       if (tmpStr.length() == 0) {
@@ -877,6 +1037,11 @@ public class CSVLoader extends AbstractFileLoader implements BatchConverter,
       getStructure();
     }
 
+    File file = getSourceFileForParsing();
+    if (file != null) {
+      return readDataFast(file);
+    }
+
     while (readData(true)) {
       ;
     }
@@ -898,6 +1063,58 @@ public class CSVLoader extends AbstractFileLoader implements BatchConverter,
     return initialInsts;
   }
 
+  /**
+   * Returns the file to read with the chunked parser, if the parser is
+   * enabled and the source is a file on disk.
+   *
+   * @return the file, null if the data is to be read with the tokenizer
+   */
+  protected File getSourceFileForParsing() {
+    if (!m_useFastParser || m_sourceFile == null) {
+      return null;
+    }
+
+    File file = m_sourceFile;
+    if (m_env != null) {
+      try {
+        file = new File(m_env.substitute(file.getPath()));
+      } catch (Exception ex) {
+        // ignore missing environment variables
+      }
+    }
+
+    return file.isFile() ? file : null;
+  }
+
+  /**
+   * Reads the file with the chunked parser, using the types determined from
+   * the in memory buffer as starting point.
+   *
+   * @param file the file to read
+   * @return the data
+   * @throws IOException if the file can't be read or parsed
+   */
+  protected Instances readDataFast(File file) throws IOException {
+    // the chunked parser reads the file from the start
+    m_sourceReader.close();
+    m_sourceReader = null;
+    if (m_dataDumper != null) {
+      m_dataDumper.close();
+      m_dataDumper = null;
+    }
+
+    ChunkedCSVReader reader =
+      new ChunkedCSVReader(m_structure, m_types, m_nominalVals,
+        m_FieldSeparator, m_Enclosures, m_MissingValue, m_dateFormat);
+    reader.setNumThreads(m_numExecutionSlots);
+    reader.setChunkSize(m_chunkSize);
+
+    Instances result = reader.read(file, !m_noHeaderRow);
+    m_structure = new Instances(result, 0);
+
+    return result;
+  }
+
   private boolean readData(boolean dump) throws IOException {
     if (m_sourceReader == null) {
       throw new IOException("No source has been specified");
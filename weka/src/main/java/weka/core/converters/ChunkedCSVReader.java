@@ -0,0 +1,1009 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ * ChunkedCSVReader.java
+ * Copyright (C) 2026 University of Waikato, Hamilton, New Zealand
+ *
+ */
+
+package weka.core.converters;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.text.ParseException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.zip.GZIPInputStream;
+
+import weka.core.Attribute;
+import weka.core.DenseInstance;
+import weka.core.Instances;
+import weka.core.RevisionHandler;
+import weka.core.RevisionUtils;
+import weka.core.Utils;
+import weka.core.converters.CSVLoader.TYPE;
+
+/**
+ * Reads the rows of a CSV file straight into columns of primitive values. The
+ * file is read sequentially in chunks of bytes that end at a line break, and
+ * the chunks are scanned and parsed in parallel; no intermediate strings are
+ * created for numeric values. The chunks are assembled into the final dataset
+ * in order once all of them have been parsed. <br/>
+ * <br/>
+ * Fields are split at the field separator. A field that starts with one of the
+ * enclosure characters extends to the matching enclosure, where a doubled
+ * enclosure or a backslash escape inserts the character literally. As with the
+ * tokenizer of the CSVLoader, enclosed values cannot span several lines. The
+ * separator and the enclosures have to be ASCII characters and the file has to
+ * use an ASCII compatible encoding (e.g. UTF-8 or ISO-8859-1). <br/>
+ * <br/>
+ * The types are determined with the same rules as the CSVLoader uses. The
+ * types inferred from a sample of the first rows decide how a column is
+ * parsed. A column that was numeric (or had no values at all) in the sample is
+ * promoted to string or nominal when a value is encountered that is not a
+ * number, in which case the file is parsed again with the promoted types.
+ *
+ * @author The WEKA Team (wekalist@list.waikato.ac.nz)
+ * @version $Revision$
+ */
+public class ChunkedCSVReader implements RevisionHandler {
+
+  /** the powers of ten that can be represented exactly as doubles */
+  protected static final double[] POWERS_OF_TEN = { 1e0, 1e1, 1e2, 1e3, 1e4,
+    1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11, 1e12, 1e13, 1e14, 1e15, 1e16, 1e17,
+    1e18, 1e19, 1e20, 1e21, 1e22 };
+
+  /** the relation name and the names of the attributes */
+  protected Instances m_Structure;
+
+  /** the current types of the columns */
+  protected TYPE[] m_Types;
+
+  /** the labels to list first for nominal columns (may be empty) */
+  protected Map<Integer, LinkedHashSet<String>> m_Labels;
+
+  /** the field separator */
+  protected byte m_Separator;
+
+  /** the enclosure characters, indexed by ASCII code */
+  protected boolean[] m_Enclosures = new boolean[128];
+
+  /** the placeholder for missing values */
+  protected String m_MissingValue;
+
+  /** the placeholder for missing values, encoded */
+  protected byte[] m_MissingBytes;
+
+  /** the format of date values */
+  protected String m_DateFormat;
+
+  /** the encoding of the file */
+  protected Charset m_Charset = Charset.defaultCharset();
+
+  /** the number of threads to parse the chunks with */
+  protected int m_NumThreads = 1;
+
+  /** the (minimum) size of a chunk in bytes */
+  protected int m_ChunkSize = 4 * 1024 * 1024;
+
+  /**
+   * Initializes the reader.
+   *
+   * @param structure the relation name and the names of the attributes
+   * @param types the types of the columns as inferred from a sample of the
+   *          first rows (or forced by the user), UNDETERMINED if a column had
+   *          no values in the sample
+   * @param labels the labels to list first for nominal columns (e.g. as
+   *          specified by the user), may be null
+   * @param fieldSeparator the field separator
+   * @param enclosures the comma-separated list of enclosure characters
+   * @param missingValue the placeholder for missing values
+   * @param dateFormat the format of date values
+   */
+  public ChunkedCSVReader(Instances structure, TYPE[] types,
+    Map<Integer, LinkedHashSet<String>> labels, String fieldSeparator,
+    String enclosures, String missingValue, String dateFormat) {
+
+    m_Structure = structure;
+    m_Types = types.clone();
+    m_Labels = (labels == null) ? new HashMap<Integer, LinkedHashSet<String>>()
+      : labels;
+    m_Separator = toASCII(fieldSeparator);
+    if (enclosures.length() > 0) {
+      for (String e : enclosures.split(",")) {
+        if (e.length() != 1) {
+          throw new IllegalArgumentException(
+            "Enclosures can only be single characters");
+        }
+        m_Enclosures[toASCII(e)] = true;
+      }
+    }
+    m_MissingValue = missingValue;
+    m_MissingBytes = missingValue.getBytes(m_Charset);
+    m_DateFormat = dateFormat;
+  }
+
+  /**
+   * Returns a character as ASCII code.
+   *
+   * @param s the string holding the character
+   * @return the ASCII code
+   * @throws IllegalArgumentException if the character isn't ASCII
+   */
+  protected static byte toASCII(String s) {
+    char c = s.charAt(0);
+    if (c >= 128) {
+      throw new IllegalArgumentException("Only ASCII characters can be used "
+        + "as field separator and enclosures: " + c);
+    }
+    return (byte) c;
+  }
+
+  /**
+   * Sets the number of threads to parse the chunks with.
+   *
+   * @param value the number of threads
+   */
+  public void setNumThreads(int value) {
+    m_NumThreads = Math.max(1, value);
+  }
+
+  /**
+   * Returns the number of threads to parse the chunks with.
+   *
+   * @return the number of threads
+   */
+  public int getNumThreads() {
+    return m_NumThreads;
+  }
+
+  /**
+   * Sets the minimum size of a chunk in bytes. Chunks are enlarged if a single
+   * row doesn't fit.
+   *
+   * @param value the size in bytes
+   */
+  public void setChunkSize(int value) {
+    m_ChunkSize = Math.max(1, value);
+  }
+
+  /**
+   * Returns the minimum size of a chunk in bytes.
+   *
+   * @return the size in bytes
+   */
+  public int getChunkSize() {
+    return m_ChunkSize;
+  }
+
+  /**
+   * Reads the given file (gzip compressed if its name ends with ".gz").
+   *
+   * @param file the file to read
+   * @param skipHeader whether the first line holds the attribute names
+   * @return the dataset
+   * @throws IOException if the file can't be read or parsed
+   */
+  public Instances read(File file, boolean skipHeader) throws IOException {
+    List<Chunk> chunks = parse(file, skipHeader);
+    while (promote(chunks)) {
+      chunks = parse(file, skipHeader);
+    }
+
+    return assemble(chunks);
+  }
+
+  /**
+   * Opens the file.
+   *
+   * @param file the file
+   * @return the stream
+   * @throws IOException if the file can't be opened
+   */
+  protected InputStream open(File file) throws IOException {
+    InputStream result = new FileInputStream(file);
+    if (file.getName().endsWith(AbstractFileLoader.FILE_EXTENSION_COMPRESSED)) {
+      result = new GZIPInputStream(new BufferedInputStream(result));
+    }
+    return result;
+  }
+
+  /**
+   * Returns the index of the last line break in the buffer.
+   *
+   * @param buffer the buffer
+   * @param length the number of bytes in the buffer
+   * @return the index, -1 if there is none
+   */
+  protected static int lastLineBreak(byte[] buffer, int length) {
+    for (int i = length - 1; i >= 0; i--) {
+      if (buffer[i] == '\n' || buffer[i] == '\r') {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  /**
+   * Reads the file chunk by chunk and parses the chunks with the current
+   * types, in parallel if more than one thread is used.
+   *
+   * @param file the file to read
+   * @param skipHeader whether the first line holds the attribute names
+   * @return the parsed chunks, in order
+   * @throws IOException if the file can't be read or parsed
+   */
+  protected List<Chunk> parse(File file, boolean skipHeader)
+    throws IOException {
+
+    List<Chunk> result = new ArrayList<Chunk>();
+    List<Future<Chunk>> futures = new ArrayList<Future<Chunk>>();
+    ExecutorService pool = null;
+    if (m_NumThreads > 1) {
+      pool = Executors.newFixedThreadPool(m_NumThreads);
+    }
+    InputStream in = open(file);
+
+    try {
+      byte[] buffer = new byte[m_ChunkSize];
+      int filled = 0;
+      boolean eof = false;
+      while (!eof) {
+        while (filled < buffer.length) {
+          int read = in.read(buffer, filled, buffer.length - filled);
+          if (read < 0) {
+            eof = true;
+            break;
+          }
+          filled += read;
+        }
+
+        int cut = eof ? filled : lastLineBreak(buffer, filled) + 1;
+        if (cut == 0) {
+          if (!eof) {
+            // the row doesn't fit into the buffer
+            buffer = Arrays.copyOf(buffer, buffer.length * 2);
+          }
+          continue;
+        }
+
+        byte[] next = new byte[Math.max(m_ChunkSize, filled - cut)];
+        System.arraycopy(buffer, cut, next, 0, filled - cut);
+        Chunk chunk = new Chunk(buffer, cut, skipHeader && result.isEmpty());
+        result.add(chunk);
+        buffer = next;
+        filled -= cut;
+
+        if (pool == null) {
+          chunk.call();
+        } else {
+          futures.add(pool.submit(chunk));
+          // limit the number of raw chunks held in memory
+          if (futures.size() > 2 * m_NumThreads) {
+            waitFor(futures.get(futures.size() - 2 * m_NumThreads - 1));
+          }
+        }
+      }
+
+      for (Future<Chunk> f : futures) {
+        waitFor(f);
+      }
+    } finally {
+      in.close();
+      if (pool != null) {
+        pool.shutdownNow();
+      }
+    }
+
+    // report the first error
+    long line = 0;
+    for (Chunk chunk : result) {
+      if (chunk.m_Error != null) {
+        throw new IOException(chunk.m_Error + " Problem encountered on line: "
+          + (line + chunk.m_NumLines));
+      }
+      line += chunk.m_NumLines;
+    }
+
+    return result;
+  }
+
+  /**
+   * Waits for a chunk to be parsed.
+   *
+   * @param future the future of the chunk
+   * @throws IOException if parsing failed or was interrupted
+   */
+  protected void waitFor(Future<Chunk> future) throws IOException {
+    try {
+      future.get();
+    } catch (ExecutionException ex) {
+      if (ex.getCause() instanceof IOException) {
+        throw (IOException) ex.getCause();
+      }
+      throw new IOException(ex.getCause());
+    } catch (InterruptedException ex) {
+      throw new IOException(ex);
+    }
+  }
+
+  /**
+   * Promotes the types of the columns that were parsed as numeric, but
+   * contain values that are not numbers. A column that had a number first
+   * becomes a string column, otherwise a nominal one. Columns that turned out
+   * to contain only numbers become numeric.
+   *
+   * @param chunks the parsed chunks
+   * @return true if a column was promoted, i.e. the file has to be parsed
+   *         again
+   */
+  protected boolean promote(List<Chunk> chunks) {
+    boolean result = false;
+
+    for (int i = 0; i < m_Types.length; i++) {
+      if (m_Types[i] != TYPE.NUMERIC && m_Types[i] != TYPE.UNDETERMINED) {
+        continue;
+      }
+
+      long firstNumber = -1;
+      long firstNonNumber = -1;
+      long offset = 0;
+      for (Chunk chunk : chunks) {
+        if (firstNumber < 0 && chunk.m_FirstNumber[i] >= 0) {
+          firstNumber = offset + chunk.m_FirstNumber[i];
+        }
+        if (firstNonNumber < 0 && chunk.m_FirstNonNumber[i] >= 0) {
+          firstNonNumber = offset + chunk.m_FirstNonNumber[i];
+        }
+        offset += chunk.m_NumRows;
+      }
+
+      if (firstNonNumber >= 0) {
+        if (m_Types[i] == TYPE.NUMERIC
+          || (firstNumber >= 0 && firstNumber < firstNonNumber)) {
+          m_Types[i] = TYPE.STRING;
+        } else {
+          m_Types[i] = TYPE.NOMINAL;
+        }
+        result = true;
+      } else if (firstNumber >= 0) {
+        m_Types[i] = TYPE.NUMERIC;
+      }
+    }
+
+    return result;
+  }
+
+  /**
+   * Assembles the dataset from the parsed chunks. The chunks are released
+   * while they are processed.
+   *
+   * @param chunks the parsed chunks
+   * @return the dataset
+   */
+  protected Instances assemble(List<Chunk> chunks) {
+    int numAtts = m_Types.length;
+    int numRows = 0;
+    for (Chunk chunk : chunks) {
+      numRows += chunk.m_NumRows;
+    }
+
+    // the labels of the nominal attributes in order of appearance
+    List<Map<String, Integer>> labelIndices =
+      new ArrayList<Map<String, Integer>>();
+    ArrayList<Attribute> atts = new ArrayList<Attribute>();
+    for (int i = 0; i < numAtts; i++) {
+      String name = m_Structure.attribute(i).name();
+      Map<String, Integer> indices = null;
+      if (m_Types[i] == TYPE.NUMERIC) {
+        atts.add(new Attribute(name));
+      } else if (m_Types[i] == TYPE.DATE) {
+        atts.add(new Attribute(name, m_DateFormat));
+      } else if (m_Types[i] == TYPE.NOMINAL) {
+        LinkedHashSet<String> labels = new LinkedHashSet<String>();
+        if (m_Labels.containsKey(i)) {
+          labels.addAll(m_Labels.get(i));
+        }
+        for (Chunk chunk : chunks) {
+          labels.addAll(chunk.m_Dictionaries.get(i).keySet());
+        }
+        if (labels.size() == 0) {
+          labels.add("*unknown*");
+        }
+        indices = new HashMap<String, Integer>();
+        for (String label : labels) {
+          indices.put(label, indices.size());
+        }
+        atts.add(new Attribute(name, new ArrayList<String>(labels)));
+      } else {
+        atts.add(new Attribute(name, (List<String>) null));
+      }
+      labelIndices.add(indices);
+    }
+
+    Instances result = new Instances(m_Structure.relationName(), atts, numRows);
+    for (int c = 0; c < chunks.size(); c++) {
+      Chunk chunk = chunks.get(c);
+      chunks.set(c, null);
+
+      // map the codes of the chunk to the indices of the labels/strings
+      int[][] map = new int[numAtts][];
+      for (int i = 0; i < numAtts; i++) {
+        if (chunk.m_Codes[i] == null) {
+          continue;
+        }
+        Map<String, Integer> dict = chunk.m_Dictionaries.get(i);
+        map[i] = new int[dict.size()];
+        for (Map.Entry<String, Integer> entry : dict.entrySet()) {
+          if (labelIndices.get(i) != null) {
+            map[i][entry.getValue()] = labelIndices.get(i).get(entry.getKey());
+          } else {
+            map[i][entry.getValue()] =
+              result.attribute(i).addStringValue(entry.getKey());
+          }
+        }
+      }
+
+      for (int r = 0; r < chunk.m_NumRows; r++) {
+        double[] vals = new double[numAtts];
+        for (int i = 0; i < numAtts; i++) {
+          if (chunk.m_Codes[i] != null) {
+            int code = chunk.m_Codes[i][r];
+            vals[i] = (code < 0) ? Utils.missingValue() : map[i][code];
+          } else if (m_Types[i] == TYPE.NUMERIC || m_Types[i] == TYPE.DATE) {
+            vals[i] = chunk.m_Values[i][r];
+          } else {
+            // column without any values
+            vals[i] = Utils.missingValue();
+          }
+        }
+        result.add(new DenseInstance(1.0, vals));
+      }
+    }
+
+    return result;
+  }
+
+  /**
+   * A chunk of the file consisting of complete lines, parsed into columns.
+   */
+  protected class Chunk implements Callable<Chunk> {
+
+    /** the raw bytes, released after parsing */
+    protected byte[] m_Data;
+
+    /** the number of bytes in the chunk */
+    protected int m_Length;
+
+    /** whether the first line is the header row */
+    protected boolean m_SkipFirstLine;
+
+    /** the number of (non-blank) rows */
+    protected int m_NumRows;
+
+    /** the number of lines processed */
+    protected int m_NumLines;
+
+    /** the values of numeric and date columns */
+    protected double[][] m_Values;
+
+    /** the codes of the values of string/nominal columns (-1 if missing) */
+    protected int[][] m_Codes;
+
+    /** the distinct values of string/nominal columns in order of appearance */
+    protected List<Map<String, Integer>> m_Dictionaries;
+
+    /** the first row with a number in columns parsed as numeric, -1 if none */
+    protected int[] m_FirstNumber;
+
+    /** the first row with another value in numeric columns, -1 if none */
+    protected int[] m_FirstNonNumber;
+
+    /** the attribute to parse dates with */
+    protected Attribute m_DateAttribute;
+
+    /** set if the last number couldn't be parsed */
+    protected boolean m_NotANumber;
+
+    /** the error that occurred, null if none */
+    protected String m_Error;
+
+    /**
+     * Initializes the chunk.
+     *
+     * @param data the raw bytes
+     * @param length the number of bytes in the chunk
+     * @param skipFirstLine whether the first line is the header row
+     */
+    public Chunk(byte[] data, int length, boolean skipFirstLine) {
+      m_Data = data;
+      m_Length = length;
+      m_SkipFirstLine = skipFirstLine;
+    }
+
+    /**
+     * Parses the chunk. An error is recorded rather than thrown, so it can be
+     * reported with the proper line number.
+     *
+     * @return the chunk itself
+     */
+    @Override
+    public Chunk call() {
+      int numAtts = m_Types.length;
+      int capacity = 1024;
+      m_Values = new double[numAtts][];
+      m_Codes = new int[numAtts][];
+      m_Dictionaries = new ArrayList<Map<String, Integer>>();
+      m_FirstNumber = new int[numAtts];
+      m_FirstNonNumber = new int[numAtts];
+      Arrays.fill(m_FirstNumber, -1);
+      Arrays.fill(m_FirstNonNumber, -1);
+      for (int i = 0; i < numAtts; i++) {
+        if (m_Types[i] == TYPE.NOMINAL || m_Types[i] == TYPE.STRING) {
+          m_Codes[i] = new int[capacity];
+        } else {
+          m_Values[i] = new double[capacity];
+        }
+        m_Dictionaries.add(new LinkedHashMap<String, Integer>());
+      }
+      m_DateAttribute = new Attribute("date", m_DateFormat);
+
+      try {
+        int pos = 0;
+        while (pos < m_Length) {
+          int end = pos;
+          while (end < m_Length && m_Data[end] != '\n' && m_Data[end] != '\r') {
+            end++;
+          }
+          int next = end + 1;
+          if (next < m_Length && m_Data[end] == '\r' && m_Data[next] == '\n') {
+            next++;
+          }
+          m_NumLines++;
+
+          if (m_SkipFirstLine) {
+            m_SkipFirstLine = false;
+          } else if (!isBlank(pos, end)) {
+            if (m_NumRows == capacity) {
+              capacity *= 2;
+              grow(capacity);
+            }
+            parseRow(pos, end);
+            m_NumRows++;
+          }
+          pos = next;
+        }
+      } catch (IOException ex) {
+        m_Error = ex.getMessage();
+      }
+
+      m_Data = null;
+      return this;
+    }
+
+    /**
+     * Enlarges the column arrays.
+     *
+     * @param capacity the new capacity
+     */
+    protected void grow(int capacity) {
+      for (int i = 0; i < m_Types.length; i++) {
+        if (m_Codes[i] != null) {
+          m_Codes[i] = Arrays.copyOf(m_Codes[i], capacity);
+        } else {
+          m_Values[i] = Arrays.copyOf(m_Values[i], capacity);
+        }
+      }
+    }
+
+    /**
+     * Checks whether a line consists only of control characters.
+     *
+     * @param start the start of the line
+     * @param end the end of the line (exclusive)
+     * @return true if the line is blank
+     */
+    protected boolean isBlank(int start, int end) {
+      for (int i = start; i < end; i++) {
+        if (m_Data[i] < 0 || m_Data[i] >= ' ' || m_Data[i] == m_Separator) {
+          return false;
+        }
+      }
+      return true;
+    }
+
+    /**
+     * Checks whether a byte is a control character other than the separator.
+     *
+     * @param b the byte
+     * @return true if a control character
+     */
+    protected boolean isControl(byte b) {
+      return b >= 0 && b < ' ' && b != m_Separator;
+    }
+
+    /**
+     * Splits a line into fields and stores their values.
+     *
+     * @param start the start of the line
+     * @param end the end of the line (exclusive)
+     * @throws IOException if the line can't be parsed
+     */
+    protected void parseRow(int start, int end) throws IOException {
+      int numAtts = m_Types.length;
+      int col = 0;
+      int p = start;
+
+      while (true) {
+        while (p < end && isControl(m_Data[p])) {
+          p++;
+        }
+
+        int fieldStart;
+        int fieldEnd;
+        String unescaped = null;
+        if (p < end && m_Data[p] >= 0 && m_Enclosures[m_Data[p]]) {
+          byte enclosure = m_Data[p];
+          p++;
+          fieldStart = p;
+          boolean plain = true;
+          while (p < end) {
+            if (m_Data[p] == enclosure) {
+              if (p + 1 < end && m_Data[p + 1] == enclosure) {
+                plain = false;
+                p += 2;
+                continue;
+              }
+              break;
+            }
+            if (m_Data[p] == '\\' && p + 1 < end) {
+              plain = false;
+              p += 2;
+            } else {
+              p++;
+            }
+          }
+          fieldEnd = Math.min(p, end);
+          if (!plain) {
+            unescaped = unescape(fieldStart, fieldEnd, enclosure);
+          }
+          if (p < end) {
+            p++;
+          }
+          while (p < end && m_Data[p] != m_Separator && m_Data[p] >= 0
+            && m_Data[p] <= ' ') {
+            p++;
+          }
+          if (p < end && m_Data[p] != m_Separator) {
+            throw new IOException("Unexpected character '" + (char) m_Data[p]
+              + "' after enclosed value.");
+          }
+        } else {
+          fieldStart = p;
+          while (p < end && m_Data[p] != m_Separator) {
+            p++;
+          }
+          fieldEnd = p;
+          while (fieldEnd > fieldStart && isControl(m_Data[fieldEnd - 1])) {
+            fieldEnd--;
+          }
+        }
+
+        if (col < numAtts) {
+          store(col, fieldStart, fieldEnd, unescaped);
+        }
+        col++;
+
+        if (p >= end) {
+          break;
+        }
+        p++;
+      }
+
+      if (col != numAtts) {
+        throw new IOException("wrong number of values. Read " + col
+          + ", expected " + numAtts + ".");
+      }
+    }
+
+    /**
+     * Resolves doubled enclosures and backslash escapes (as the
+     * StreamTokenizer does) in an enclosed value.
+     *
+     * @param start the start of the value
+     * @param end the end of the value (exclusive)
+     * @param enclosure the enclosure character
+     * @return the value
+     */
+    protected String unescape(int start, int end, byte enclosure) {
+      ByteArrayOutputStream out = new ByteArrayOutputStream(end - start);
+      int p = start;
+      while (p < end) {
+        byte b = m_Data[p++];
+        if (b == enclosure && p < end && m_Data[p] == enclosure) {
+          p++;
+        } else if (b == '\\' && p < end) {
+          b = m_Data[p++];
+          switch (b) {
+          case 'a':
+            b = 0x7;
+            break;
+          case 'b':
+            b = '\b';
+            break;
+          case 'f':
+            b = '\f';
+            break;
+          case 'n':
+            b = '\n';
+            break;
+          case 'r':
+            b = '\r';
+            break;
+          case 't':
+            b = '\t';
+            break;
+          case 'v':
+            b = 0xB;
+            break;
+          default:
+            if (b >= '0' && b <= '7') {
+              // octal escape of up to three digits
+              int value = b - '0';
+              int max = (b <= '3') ? 2 : 1;
+              for (int n = 0; n < max && p < end && m_Data[p] >= '0'
+                && m_Data[p] <= '7'; n++) {
+                value = value * 8 + (m_Data[p++] - '0');
+              }
+              b = (byte) value;
+            }
+          }
+        }
+        out.write(b);
+      }
+
+      return new String(out.toByteArray(), m_Charset);
+    }
+
+    /**
+     * Checks whether a field represents a missing value, i.e. it is empty,
+     * blank or equals the placeholder for missing values.
+     *
+     * @param start the start of the field
+     * @param end the end of the field (exclusive)
+     * @param unescaped the unescaped value of the field, null if it is stored
+     *          verbatim
+     * @return true if missing
+     */
+    protected boolean isMissing(int start, int end, String unescaped) {
+      if (unescaped != null) {
+        return unescaped.equals(m_MissingValue)
+          || unescaped.trim().length() == 0;
+      }
+
+      boolean blank = true;
+      for (int i = start; i < end && blank; i++) {
+        blank = m_Data[i] >= 0 && m_Data[i] <= ' ';
+      }
+      if (blank) {
+        return true;
+      }
+      if (end - start != m_MissingBytes.length) {
+        return false;
+      }
+      for (int i = 0; i < m_MissingBytes.length; i++) {
+        if (m_Data[start + i] != m_MissingBytes[i]) {
+          return false;
+        }
+      }
+      return true;
+    }
+
+    /**
+     * Stores the value of a field.
+     *
+     * @param col the column
+     * @param start the start of the field
+     * @param end the end of the field (exclusive)
+     * @param unescaped the unescaped value of the field, null if it is stored
+     *          verbatim
+     * @throws IOException if a date can't be parsed
+     */
+    protected void store(int col, int start, int end, String unescaped)
+      throws IOException {
+
+      int row = m_NumRows;
+      boolean missing = isMissing(start, end, unescaped);
+
+      if (m_Codes[col] != null) {
+        if (missing) {
+          m_Codes[col][row] = -1;
+        } else {
+          String value = (unescaped != null) ? unescaped
+            : new String(m_Data, start, end - start, m_Charset);
+          Map<String, Integer> dict = m_Dictionaries.get(col);
+          Integer code = dict.get(value);
+          if (code == null) {
+            code = dict.size();
+            dict.put(value, code);
+          }
+          m_Codes[col][row] = code;
+        }
+      } else if (missing) {
+        m_Values[col][row] = Utils.missingValue();
+      } else if (m_Types[col] == TYPE.DATE) {
+        String value = (unescaped != null) ? unescaped
+          : new String(m_Data, start, end - start, m_Charset);
+        try {
+          m_Values[col][row] = m_DateAttribute.parseDate(value);
+        } catch (ParseException ex) {
+          throw new IOException("Unable to parse date value " + value
+            + " using date format " + m_DateFormat + " for date attribute "
+            + m_Structure.attribute(col).name() + ".");
+        }
+      } else if (m_FirstNonNumber[col] < 0 || m_FirstNumber[col] < 0) {
+        // numeric, unless a value turns out not to be a number; the values
+        // are discarded in that case, only the position matters
+        double value = (unescaped != null) ? parseNumber(unescaped)
+          : parseNumber(start, end);
+        if (m_NotANumber) {
+          if (m_FirstNonNumber[col] < 0) {
+            m_FirstNonNumber[col] = row;
+          }
+        } else {
+          if (m_FirstNumber[col] < 0) {
+            m_FirstNumber[col] = row;
+          }
+          m_Values[col][row] = value;
+        }
+      }
+    }
+
+    /**
+     * Parses a number with Double.parseDouble.
+     *
+     * @param value the string to parse
+     * @return the number, NaN if not a number (m_NotANumber is set)
+     */
+    protected double parseNumber(String value) {
+      m_NotANumber = false;
+      try {
+        return Double.parseDouble(value);
+      } catch (NumberFormatException ex) {
+        m_NotANumber = true;
+        return Double.NaN;
+      }
+    }
+
+    /**
+     * Parses a number from the raw bytes. Plain decimal numbers with up to 15
+     * significant digits and small exponents are converted directly (which is
+     * exact, since the digits and the power of ten are both represented
+     * exactly as doubles), everything else is left to Double.parseDouble, so
+     * the same strings are accepted and the results are identical.
+     *
+     * @param start the start of the field
+     * @param end the end of the field (exclusive)
+     * @return the number, NaN if not a number (m_NotANumber is set)
+     */
+    protected double parseNumber(int start, int end) {
+      m_NotANumber = false;
+      while (start < end && m_Data[start] >= 0 && m_Data[start] <= ' ') {
+        start++;
+      }
+      while (end > start && m_Data[end - 1] >= 0 && m_Data[end - 1] <= ' ') {
+        end--;
+      }
+
+      int p = start;
+      boolean negative = false;
+      if (p < end && (m_Data[p] == '-' || m_Data[p] == '+')) {
+        negative = m_Data[p] == '-';
+        p++;
+      }
+
+      long mantissa = 0;
+      int digits = 0;
+      int exponent = 0;
+      boolean exact = true;
+      boolean any = false;
+      boolean point = false;
+      for (; p < end; p++) {
+        byte b = m_Data[p];
+        if (b >= '0' && b <= '9') {
+          any = true;
+          if (mantissa == 0 && b == '0') {
+            if (point) {
+              exponent--;
+            }
+          } else if (digits < 18) {
+            mantissa = mantissa * 10 + (b - '0');
+            digits++;
+            if (point) {
+              exponent--;
+            }
+          } else {
+            exact = false;
+            if (!point) {
+              exponent++;
+            }
+          }
+        } else if (b == '.' && !point) {
+          point = true;
+        } else {
+          break;
+        }
+      }
+
+      if (any && p < end && (m_Data[p] == 'e' || m_Data[p] == 'E')) {
+        p++;
+        boolean negExp = false;
+        if (p < end && (m_Data[p] == '-' || m_Data[p] == '+')) {
+          negExp = m_Data[p] == '-';
+          p++;
+        }
+        int exp = 0;
+        boolean expDigits = false;
+        for (; p < end && m_Data[p] >= '0' && m_Data[p] <= '9'; p++) {
+          expDigits = true;
+          if (exp < 100000) {
+            exp = exp * 10 + (m_Data[p] - '0');
+          }
+        }
+        if (!expDigits) {
+          any = false;
+        }
+        exponent += negExp ? -exp : exp;
+      }
+
+      if (!any || p < end || !exact || digits > 15
+        || exponent < -(POWERS_OF_TEN.length - 1)
+        || exponent > POWERS_OF_TEN.length - 1) {
+        // anything else (hex, suffixes, NaN, Infinity, many digits, ...)
+        return parseNumber(new String(m_Data, start, end - start, m_Charset));
+      }
+
+      double value = (exponent >= 0) ? mantissa * POWERS_OF_TEN[exponent]
+        : mantissa / POWERS_OF_TEN[-exponent];
+      return negative ? -value : value;
+    }
+  }
+
+  /**
+   * Returns the revision string.
+   *
+   * @return the revision
+   */
+  @Override
+  public String getRevision() {
+    return RevisionUtils.extract("$Revision$");
+  }
+}
@@ -49,8 +49,14 @@ import java.sql.Time;
 import java.util.ArrayList;
 import java.util.Enumeration;
 import java.util.Hashtable;
+import java.util.List;
 import java.util.StringTokenizer;
 import java.util.Vector;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 /**
  * <!-- globalinfo-start --> Reads Instances from a Database. Can read a
@@ -124,6 +130,33 @@ import java.util.Vector;
  *  Sets incremental loading
  * </pre>
  * 
+ * <pre>
+ * -streaming
+ *  Reads the rows in incremental mode from a single forward-only
+ *  cursor rather than with one LIMIT query per row.
+ *  No key columns are required in this mode.
+ * </pre>
+ * 
+ * <pre>
+ * -fetch-size &lt;num&gt;
+ *  The number of rows the JDBC driver should fetch at a time.
+ *  (default: 0, i.e., the driver's default)
+ * </pre>
+ * 
+ * <pre>
+ * -partition-column &lt;column name&gt;
+ *  The numeric column to split the rows on for loading them
+ *  in parallel in batch mode.
+ *  (default: none)
+ * </pre>
+ * 
+ * <pre>
+ * -num-partitions &lt;num&gt;
+ *  The number of key ranges (and concurrent queries) to
+ *  load in batch mode, if a partition column is set.
+ *  (default: 1)
+ * </pre>
+ * 
  * <!-- options-end -->
  * 
  * @author Stefan Mutter (mutter@cs.waikato.ac.nz)
@@ -245,6 +278,24 @@ public class DatabaseLoader extends AbstractLoader implements BatchConverter,
   /** Environment variables */
   protected transient Environment m_env;
 
+  /** Whether to read incrementally from a single forward-only cursor */
+  protected boolean m_Streaming = false;
+
+  /** The number of rows the JDBC driver should fetch at a time */
+  protected int m_FetchSize = 0;
+
+  /** The numeric column used to split the rows into key ranges */
+  protected String m_PartitionColumn = "";
+
+  /** The number of key ranges to load in parallel in batch mode */
+  protected int m_NumPartitions = 1;
+
+  /** The open cursor in streaming mode */
+  protected transient ResultSet m_StreamResultSet;
+
+  /** The column types of the result, as determined by DatabaseConnection */
+  protected transient int[] m_columnTypes;
+
   /**
    * Constructor
    * 
@@ -421,6 +472,8 @@ public class DatabaseLoader extends AbstractLoader implements BatchConverter,
    */
   public void resetStructure() {
 
+    closeStream();
+    m_columnTypes = null;
     m_structure = null;
     m_datasetPseudoInc = null;
     m_oldStructure = null;
@@ -709,6 +762,138 @@ public class DatabaseLoader extends AbstractLoader implements BatchConverter,
     return m_CreateSparseData;
   }
 
+  /**
+   * Returns the tip text for this property
+   *
+   * @return tip text for this property suitable for displaying in the
+   *         explorer/experimenter gui
+   */
+  public String streamingTipText() {
+    return "If true, the rows are read in incremental mode from a single "
+      + "forward-only cursor rather than with one LIMIT query per row. "
+      + "No key columns are required in this mode.";
+  }
+
+  /**
+   * Sets whether to read the rows in incremental mode from a single
+   * forward-only cursor.
+   *
+   * @param s true if a single cursor is to be used
+   */
+  public void setStreaming(boolean s) {
+    m_Streaming = s;
+  }
+
+  /**
+   * Gets whether to read the rows in incremental mode from a single
+   * forward-only cursor.
+   *
+   * @return true if a single cursor is used
+   */
+  @OptionMetadata(displayName = "Streaming", description = "Read the rows in "
+    + "incremental mode from a single forward-only cursor", displayOrder = 9)
+  public boolean getStreaming() {
+    return m_Streaming;
+  }
+
+  /**
+   * Returns the tip text for this property
+   *
+   * @return tip text for this property suitable for displaying in the
+   *         explorer/experimenter gui
+   */
+  public String fetchSizeTipText() {
+    return "The number of rows the JDBC driver should fetch at a time "
+      + "(0 = the driver's default). The value is passed on to the driver "
+      + "as is, some drivers use special values to enable streaming.";
+  }
+
+  /**
+   * Sets the number of rows the JDBC driver should fetch at a time.
+   *
+   * @param value the fetch size, 0 for the driver's default
+   */
+  public void setFetchSize(int value) {
+    m_FetchSize = value;
+  }
+
+  /**
+   * Gets the number of rows the JDBC driver should fetch at a time.
+   *
+   * @return the fetch size, 0 for the driver's default
+   */
+  @OptionMetadata(displayName = "Fetch size", description = "The number of "
+    + "rows the JDBC driver should fetch at a time (0 = driver's default)",
+    displayOrder = 10)
+  public int getFetchSize() {
+    return m_FetchSize;
+  }
+
+  /**
+   * Returns the tip text for this property
+   *
+   * @return tip text for this property suitable for displaying in the
+   *         explorer/experimenter gui
+   */
+  public String partitionColumnTipText() {
+    return "The numeric column to split the rows on for loading them in "
+      + "parallel in batch mode. The column has to be part of the result "
+      + "of the query.";
+  }
+
+  /**
+   * Sets the numeric column to split the rows on for parallel loading.
+   *
+   * @param value the name of the column, empty for none
+   */
+  public void setPartitionColumn(String value) {
+    m_PartitionColumn = (value == null) ? "" : value.trim();
+  }
+
+  /**
+   * Gets the numeric column to split the rows on for parallel loading.
+   *
+   * @return the name of the column, empty for none
+   */
+  @OptionMetadata(displayName = "Partition column", description = "The "
+    + "numeric column to split the rows on for loading them in parallel",
+    displayOrder = 11)
+  public String getPartitionColumn() {
+    return m_PartitionColumn;
+  }
+
+  /**
+   * Returns the tip text for this property
+   *
+   * @return tip text for this property suitable for displaying in the
+   *         explorer/experimenter gui
+   */
+  public String numPartitionsTipText() {
+    return "The number of key ranges (and concurrent queries) to load in "
+      + "batch mode, if a partition column is set.";
+  }
+
+  /**
+   * Sets the number of key ranges to load in parallel in batch mode.
+   *
+   * @param value the number of partitions
+   */
+  public void setNumPartitions(int value) {
+    m_NumPartitions = Math.max(1, value);
+  }
+
+  /**
+   * Gets the number of key ranges to load in parallel in batch mode.
+   *
+   * @return the number of partitions
+   */
+  @OptionMetadata(displayName = "Number of partitions", description = "The "
+    + "number of key ranges (and concurrent queries) to load in batch mode",
+    displayOrder = 12)
+  public int getNumPartitions() {
+    return m_NumPartitions;
+  }
+
   /**
    * Sets the database url, user and pw
    * 
@@ -982,31 +1167,39 @@ public class DatabaseLoader extends AbstractLoader implements BatchConverter,
           }
         }
 
-        // finds out which SQL statement to use for the DBMS to limit the number
-        // of resulting rows to one
-        int choice = 0;
-        boolean rightChoice = false;
-        while (!rightChoice) {
-          try {
-            String limitQ = limitQuery(m_query, 0, choice);
-            if (m_DataBaseConnection.execute(limitQ) == false) {
-              throw new IOException("Query didn't produce results");
-            }
-            m_choice = choice;
-            rightChoice = true;
-          } catch (SQLException ex) {
-            choice++;
-            if (choice == 3) {
-              System.out
-                .println("Incremental loading not supported for that DBMS. Pseudoincremental mode is used if you use incremental loading.\nAll rows are loaded into memory once and retrieved incrementally from memory instead of from the database.");
-              m_pseudoIncremental = true;
-              break pseudo;
+        ResultSet rs;
+        if (m_Streaming) {
+          // a single cursor is used, no need for a LIMIT clause - the
+          // metadata is obtained from a query restricted to one row, for
+          // which the fetch size doesn't matter
+          rs = m_DataBaseConnection.select(m_query, 0, 1);
+        } else {
+          // finds out which SQL statement to use for the DBMS to limit the
+          // number of resulting rows to one
+          int choice = 0;
+          boolean rightChoice = false;
+          while (!rightChoice) {
+            try {
+              String limitQ = limitQuery(m_query, 0, choice);
+              if (m_DataBaseConnection.execute(limitQ) == false) {
+                throw new IOException("Query didn't produce results");
+              }
+              m_choice = choice;
+              rightChoice = true;
+            } catch (SQLException ex) {
+              choice++;
+              if (choice == 3) {
+                System.out
+                  .println("Incremental loading not supported for that DBMS. Pseudoincremental mode is used if you use incremental loading.\nAll rows are loaded into memory once and retrieved incrementally from memory instead of from the database.");
+                m_pseudoIncremental = true;
+                break pseudo;
+              }
             }
           }
+          rs = m_DataBaseConnection.getResultSet();
         }
 
         String end = endOfQuery(false);
-        ResultSet rs = m_DataBaseConnection.getResultSet();
 
         ResultSetMetaData md = rs.getMetaData();
         // rs.close();
@@ -1173,7 +1366,9 @@ public class DatabaseLoader extends AbstractLoader implements BatchConverter,
           m_oldStructure = new Instances(m_structure, 0);
         }
 
-        if (m_DataBaseConnection.getResultSet() != null) {
+        if (m_Streaming) {
+          m_DataBaseConnection.close(rs);
+        } else if (m_DataBaseConnection.getResultSet() != null) {
           rs.close();
         }
       } else {
@@ -1211,35 +1406,19 @@ public class DatabaseLoader extends AbstractLoader implements BatchConverter,
     Instances result = null;
     checkEnv();
     try {
-      InstanceQuery iq = new InstanceQuery();
-      iq.initialize(m_CustomPropsFile);
-      String realURL = m_URL;
-      try {
-        realURL = m_env.substitute(realURL);
-      } catch (Exception ex) {
-      }
-      iq.setDatabaseURL(realURL);
-      String realUser = m_User;
-      try {
-        realUser = m_env.substitute(realUser);
-      } catch (Exception ex) {
-      }
-      iq.setUsername(realUser);
-      String realPass = m_Password;
-      try {
-        realPass = m_env.substitute(realPass);
-      } catch (Exception ex) {
-      }
-      iq.setPassword(realPass);
+      InstanceQuery iq = newInstanceQuery();
       String realQuery = m_query;
       try {
         realQuery = m_env.substitute(realQuery);
       } catch (Exception ex) {
       }
       iq.setQuery(realQuery);
-      iq.setSparseData(m_CreateSparseData);
 
-      result = iq.retrieveInstances();
+      if (m_PartitionColumn.length() > 0 && m_NumPartitions > 1) {
+        result = retrievePartitioned(iq, realQuery);
+      } else {
+        result = retrieveInstances(iq, realQuery);
+      }
 
       if (m_DataBaseConnection.getUpperCase()) {
         m_idColumn = m_idColumn.toUpperCase();
@@ -1271,6 +1450,264 @@ public class DatabaseLoader extends AbstractLoader implements BatchConverter,
     return result;
   }
 
+  /**
+   * Creates an InstanceQuery for the database, user and password of this
+   * loader (with environment variables resolved).
+   *
+   * @return the InstanceQuery, not connected yet
+   * @throws Exception if the InstanceQuery cannot be initialized
+   */
+  protected InstanceQuery newInstanceQuery() throws Exception {
+    checkEnv();
+
+    InstanceQuery iq = new InstanceQuery();
+    iq.initialize(m_CustomPropsFile);
+    String realURL = m_URL;
+    try {
+      realURL = m_env.substitute(realURL);
+    } catch (Exception ex) {
+    }
+    iq.setDatabaseURL(realURL);
+    String realUser = m_User;
+    try {
+      realUser = m_env.substitute(realUser);
+    } catch (Exception ex) {
+    }
+    iq.setUsername(realUser);
+    String realPass = m_Password;
+    try {
+      realPass = m_env.substitute(realPass);
+    } catch (Exception ex) {
+    }
+    iq.setPassword(realPass);
+    iq.setSparseData(m_CreateSparseData);
+
+    return iq;
+  }
+
+  /**
+   * Retrieves the result of a query, using a forward-only cursor with the
+   * fetch size if one is set.
+   *
+   * @param iq the InstanceQuery to use
+   * @param query the query to execute
+   * @return the instances
+   * @throws Exception if the query fails
+   */
+  protected Instances retrieveInstances(InstanceQuery iq, String query)
+    throws Exception {
+
+    if (m_FetchSize == 0) {
+      return iq.retrieveInstances(query);
+    }
+
+    iq.connectToDatabase();
+    // some drivers (e.g., PostgreSQL) only use a cursor outside of
+    // auto-commit mode
+    if (iq.getAutoCommit()) {
+      iq.setAutoCommit(false);
+    }
+    ResultSet rs = iq.select(query, m_FetchSize, 0);
+    try {
+      return InstanceQuery.retrieveInstances(iq, rs);
+    } finally {
+      iq.close(rs);
+    }
+  }
+
+  /**
+   * Returns the boundary of a key range as SQL literal.
+   *
+   * @param value the boundary
+   * @param integral whether the key values are integers
+   * @return the literal
+   */
+  protected static String rangeBoundary(double value, boolean integral) {
+    if (integral) {
+      return "" + (long) Math.floor(value);
+    }
+    return new java.math.BigDecimal(value).toPlainString();
+  }
+
+  /**
+   * Retrieves the result of a query in parallel. The range of values of the
+   * partition column is split into equally wide key ranges, the rows of each
+   * range are retrieved with a separate connection, and the partial results
+   * are merged in the order of the key ranges. Rows with a missing key are
+   * retrieved with the first range.
+   *
+   * @param iq the InstanceQuery to use for determining the key range
+   * @param query the query to execute
+   * @return the instances
+   * @throws Exception if a query fails
+   */
+  protected Instances retrievePartitioned(InstanceQuery iq, String query)
+    throws Exception {
+
+    String column = m_PartitionColumn;
+    try {
+      column = m_env.substitute(column);
+    } catch (Exception ex) {
+    }
+    String source = "(" + query + ") weka_partition";
+
+    iq.connectToDatabase();
+    ResultSet rs =
+      iq.select("SELECT MIN(" + column + "), MAX(" + column + ") FROM "
+        + source);
+    rs.next();
+    double min = rs.getDouble(1);
+    boolean empty = rs.wasNull();
+    double max = rs.getDouble(2);
+    iq.close(rs);
+    if (empty) {
+      // no rows or no key values, nothing to split
+      return retrieveInstances(iq, query);
+    }
+    iq.disconnectFromDatabase();
+
+    boolean integral = (min == Math.floor(min)) && (max == Math.floor(max));
+    int numPartitions = m_NumPartitions;
+    List<Callable<Instances>> tasks = new ArrayList<Callable<Instances>>();
+    for (int p = 0; p < numPartitions; p++) {
+      StringBuffer cond = new StringBuffer();
+      if (p > 0) {
+        cond.append(column + " >= "
+          + rangeBoundary(min + (max - min) * p / numPartitions, integral));
+      }
+      if (p < numPartitions - 1) {
+        if (cond.length() > 0) {
+          cond.append(" AND ");
+        }
+        cond.append(column + " < "
+          + rangeBoundary(min + (max - min) * (p + 1) / numPartitions,
+            integral));
+      }
+      if (p == 0) {
+        cond.insert(0, "(").append(" OR " + column + " IS NULL)");
+      }
+
+      final String partQuery = "SELECT * FROM " + source + " WHERE " + cond;
+      final InstanceQuery partIQ = newInstanceQuery();
+      tasks.add(new Callable<Instances>() {
+        @Override
+        public Instances call() throws Exception {
+          try {
+            return retrieveInstances(partIQ, partQuery);
+          } finally {
+            partIQ.disconnectFromDatabase();
+          }
+        }
+      });
+    }
+
+    List<Instances> parts = new ArrayList<Instances>();
+    ExecutorService pool = Executors.newFixedThreadPool(numPartitions);
+    try {
+      List<Future<Instances>> results = new ArrayList<Future<Instances>>();
+      for (Callable<Instances> task : tasks) {
+        results.add(pool.submit(task));
+      }
+      for (Future<Instances> f : results) {
+        try {
+          parts.add(f.get());
+        } catch (ExecutionException ex) {
+          if (ex.getCause() instanceof Exception) {
+            throw (Exception) ex.getCause();
+          }
+          throw ex;
+        }
+      }
+    } finally {
+      pool.shutdownNow();
+    }
+
+    return mergePartitions(parts);
+  }
+
+  /**
+   * Merges the results of the partitions. The values of nominal and string
+   * attributes are collected in order of appearance, as if the partitions had
+   * been retrieved with a single query.
+   *
+   * @param parts the results of the partitions, in order
+   * @return the merged instances
+   */
+  protected Instances mergePartitions(List<Instances> parts) {
+    Instances first = parts.get(0);
+    int numAttributes = first.numAttributes();
+    int numInstances = 0;
+    for (Instances part : parts) {
+      numInstances += part.numInstances();
+    }
+
+    ArrayList<Attribute> attribInfo = new ArrayList<Attribute>();
+    for (int i = 0; i < numAttributes; i++) {
+      Attribute att = first.attribute(i);
+      if (att.isNominal()) {
+        ArrayList<String> values = new ArrayList<String>();
+        Hashtable<String, Double> seen = new Hashtable<String, Double>();
+        for (Instances part : parts) {
+          Attribute partAtt = part.attribute(i);
+          for (int n = 0; n < partAtt.numValues(); n++) {
+            String value = partAtt.value(n);
+            if (!seen.containsKey(value)) {
+              seen.put(value, new Double(values.size()));
+              values.add(value);
+            }
+          }
+        }
+        attribInfo.add(new Attribute(att.name(), values));
+      } else if (att.isString()) {
+        Attribute merged = new Attribute(att.name(), (ArrayList<String>) null);
+        for (Instances part : parts) {
+          Attribute partAtt = part.attribute(i);
+          for (int n = 0; n < partAtt.numValues(); n++) {
+            merged.addStringValue(partAtt.value(n));
+          }
+        }
+        attribInfo.add(merged);
+      } else {
+        attribInfo.add((Attribute) att.copy());
+      }
+    }
+    Instances result =
+      new Instances(first.relationName(), attribInfo, numInstances);
+
+    for (Instances part : parts) {
+      for (int k = 0; k < part.numInstances(); k++) {
+        double[] vals = part.instance(k).toDoubleArray();
+        for (int i = 0; i < numAttributes; i++) {
+          Attribute partAtt = part.attribute(i);
+          if ((partAtt.isNominal() || partAtt.isString())
+            && !Utils.isMissingValue(vals[i])) {
+            int index = (int) vals[i];
+            vals[i] =
+              (index < partAtt.numValues()) ? result.attribute(i).indexOfValue(
+                partAtt.value(index)) : Utils.missingValue();
+          }
+        }
+        if (m_CreateSparseData) {
+          result.add(new SparseInstance(1.0, vals));
+        } else {
+          result.add(new DenseInstance(1.0, vals));
+        }
+      }
+    }
+
+    return result;
+  }
+
+  /**
+   * Closes the cursor used in streaming mode, if open.
+   */
+  protected void closeStream() {
+    if (m_StreamResultSet != null) {
+      m_DataBaseConnection.close(m_StreamResultSet);
+      m_StreamResultSet = null;
+    }
+  }
+
   /**
    * Reads an instance from a database.
    * 
@@ -1280,13 +1717,20 @@ public class DatabaseLoader extends AbstractLoader implements BatchConverter,
    */
   private Instance readInstance(ResultSet rs) throws Exception {
 
-    ResultSetMetaData md = rs.getMetaData();
-    int numAttributes = md.getColumnCount();
+    // the column types are the same for every row, determine them only once
+    if (m_columnTypes == null) {
+      ResultSetMetaData md = rs.getMetaData();
+      m_columnTypes = new int[md.getColumnCount()];
+      for (int i = 1; i <= m_columnTypes.length; i++) {
+        m_columnTypes[i - 1] =
+          m_DataBaseConnection.translateDBColumnType(md.getColumnTypeName(i));
+      }
+    }
+    int numAttributes = m_columnTypes.length;
     double[] vals = new double[numAttributes];
     m_structure.delete();
     for (int i = 1; i <= numAttributes; i++) {
-      switch (m_DataBaseConnection.translateDBColumnType(md
-        .getColumnTypeName(i))) {
+      switch (m_columnTypes[i - 1]) {
       case DatabaseConnection.STRING:
         String str = rs.getString(i);
         if (rs.wasNull()) {
@@ -1457,6 +1901,37 @@ public class DatabaseLoader extends AbstractLoader implements BatchConverter,
         return null;
       }
     }
+    // streaming mode: the rows are read one after the other from a single
+    // forward-only cursor, no unique order is required
+    if (m_Streaming) {
+      setRetrieval(INCREMENTAL);
+      try {
+        if (m_StreamResultSet == null) {
+          if (!m_DataBaseConnection.isConnected()) {
+            connectToDatabase();
+          }
+          // some drivers (e.g., PostgreSQL) only use a cursor outside of
+          // auto-commit mode
+          if (m_FetchSize != 0 && m_DataBaseConnection.getAutoCommit()) {
+            m_DataBaseConnection.setAutoCommit(false);
+          }
+          m_StreamResultSet =
+            m_DataBaseConnection.select(m_query, m_FetchSize, 0);
+          m_firstTime = false;
+        }
+        if (m_StreamResultSet.next()) {
+          return readInstance(m_StreamResultSet);
+        }
+        closeStream();
+        m_DataBaseConnection.disconnectFromDatabase();
+        resetStructure();
+        return null;
+      } catch (Exception ex) {
+        printException(ex);
+      }
+      return null;
+    }
+
     // real incremental mode. At the moment(version 1.0) only for MySQL and
     // HSQLDB (Postgres not tested, should work)
     setRetrieval(INCREMENTAL);
@@ -1543,6 +2018,25 @@ public class DatabaseLoader extends AbstractLoader implements BatchConverter,
       options.add("-I");
     }
 
+    if (m_Streaming) {
+      options.add("-streaming");
+    }
+
+    if (m_FetchSize != 0) {
+      options.add("-fetch-size");
+      options.add("" + m_FetchSize);
+    }
+
+    if (m_PartitionColumn.length() > 0) {
+      options.add("-partition-column");
+      options.add(m_PartitionColumn);
+    }
+
+    if (m_NumPartitions != 1) {
+      options.add("-num-partitions");
+      options.add("" + m_NumPartitions);
+    }
+
     if ((m_CustomPropsFile != null) && !m_CustomPropsFile.isDirectory()) {
       options.add("-custom-props");
       options.add(m_CustomPropsFile.toString());
@@ -1587,6 +2081,27 @@ public class DatabaseLoader extends AbstractLoader implements BatchConverter,
 
     newVector.add(new Option("\tSets incremental loading", "I", 0, "-I"));
 
+    newVector.add(new Option(
+      "\tReads the rows in incremental mode from a single forward-only\n"
+        + "\tcursor rather than with one LIMIT query per row.\n"
+        + "\tNo key columns are required in this mode.", "streaming", 0,
+      "-streaming"));
+
+    newVector.add(new Option(
+      "\tThe number of rows the JDBC driver should fetch at a time.\n"
+        + "\t(default: 0, i.e., the driver's default)", "fetch-size", 1,
+      "-fetch-size <num>"));
+
+    newVector.add(new Option(
+      "\tThe numeric column to split the rows on for loading them\n"
+        + "\tin parallel in batch mode.\n" + "\t(default: none)",
+      "partition-column", 1, "-partition-column <column name>"));
+
+    newVector.add(new Option(
+      "\tThe number of key ranges (and concurrent queries) to\n"
+        + "\tload in batch mode, if a partition column is set.\n"
+        + "\t(default: 1)", "num-partitions", 1, "-num-partitions <num>"));
+
     newVector.addElement(new Option(
       "\tReturn sparse rather than normal instances.", "S", 0, "-S"));
 
@@ -1645,6 +2160,33 @@ public class DatabaseLoader extends AbstractLoader implements BatchConverter,
    *  Sets incremental loading
    * </pre>
    * 
+   * <pre>
+   * -streaming
+   *  Reads the rows in incremental mode from a single forward-only
+   *  cursor rather than with one LIMIT query per row.
+   *  No key columns are required in this mode.
+   * </pre>
+   * 
+   * <pre>
+   * -fetch-size &lt;num&gt;
+   *  The number of rows the JDBC driver should fetch at a time.
+   *  (default: 0, i.e., the driver's default)
+   * </pre>
+   * 
+   * <pre>
+   * -partition-column &lt;column name&gt;
+   *  The numeric column to split the rows on for loading them
+   *  in parallel in batch mode.
+   *  (default: none)
+   * </pre>
+   * 
+   * <pre>
+   * -num-partitions &lt;num&gt;
+   *  The number of key ranges (and concurrent queries) to
+   *  load in batch mode, if a partition column is set.
+   *  (default: 1)
+   * </pre>
+   * 
    * <!-- options-end -->
    * 
    * @param options the options
@@ -1699,6 +2241,16 @@ public class DatabaseLoader extends AbstractLoader implements BatchConverter,
     } else {
       setCustomPropsFile(new File(tmpStr));
     }
+
+    setStreaming(Utils.getFlag("streaming", options));
+
+    tmpStr = Utils.getOption("fetch-size", options);
+    setFetchSize((tmpStr.length() == 0) ? 0 : Integer.parseInt(tmpStr));
+
+    setPartitionColumn(Utils.getOption("partition-column", options));
+
+    tmpStr = Utils.getOption("num-partitions", options);
+    setNumPartitions((tmpStr.length() == 0) ? 1 : Integer.parseInt(tmpStr));
   }
 
   /**
@@ -39,11 +39,23 @@ import weka.gui.PasswordProperty;
 import javax.swing.*;
 import java.io.File;
 import java.io.IOException;
+import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.sql.Types;
 import java.text.SimpleDateFormat;
+import java.util.ArrayList;
 import java.util.Enumeration;
+import java.util.List;
 import java.util.Vector;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
  * <!-- globalinfo-start --> Writes to a database (tested with MySQL, InstantDB,
@@ -102,6 +114,27 @@ import java.util.Vector;
  *  Input file in arff format that should be saved in database.
  * </pre>
  * 
+ * <pre>
+ * -batch-size &lt;num&gt;
+ *  The number of rows to send to the database in one batch,
+ *  using a prepared statement.
+ *  (default: 1, i.e., one INSERT statement per row)
+ * </pre>
+ * 
+ * <pre>
+ * -commit-interval &lt;num&gt;
+ *  The number of rows after which to commit the transaction.
+ *  (default: 0, i.e., use the connection's auto-commit setting)
+ * </pre>
+ * 
+ * <pre>
+ * -num-slots &lt;num&gt;
+ *  The number of connections to use for writing the rows
+ *  in parallel in batch mode. Each connection writes in one
+ *  transaction; all are rolled back if one of them fails.
+ *  (default: 1)
+ * </pre>
+ * 
  * <!-- options-end -->
  * 
  * @author Stefan Mutter (mutter@cs.waikato.ac.nz)
@@ -183,6 +216,216 @@ public class DatabaseSaver extends AbstractSaver implements BatchConverter,
   /** Environment variables to use */
   protected transient Environment m_env;
 
+  /** the number of rows to send to the database in one batch. */
+  protected int m_batchSize = 1;
+
+  /** the number of rows after which to commit (0 = auto-commit). */
+  protected int m_commitInterval = 0;
+
+  /** the number of connections to use for writing in parallel. */
+  protected int m_numExecutionSlots = 1;
+
+  /** the writer used for saving incrementally with prepared statements. */
+  protected transient BatchWriter m_incrementalWriter;
+
+  /**
+   * Writes rows into the table with a prepared INSERT statement. The rows are
+   * sent to the database in batches of the configured size (if the driver
+   * supports batch updates) and committed in the configured interval, or in
+   * a single transaction that is only committed by commit().
+   */
+  protected class BatchWriter {
+
+    /** the connection to write with. */
+    protected DatabaseConnection m_Connection;
+
+    /** the prepared INSERT statement. */
+    protected PreparedStatement m_Statement;
+
+    /** whether the driver supports batch updates. */
+    protected boolean m_SupportsBatch;
+
+    /** the auto-commit setting of the connection before writing. */
+    protected boolean m_AutoCommit;
+
+    /** whether all rows are written in a single transaction. */
+    protected boolean m_SingleTransaction;
+
+    /** the number of rows added to the current batch. */
+    protected int m_Pending;
+
+    /** the number of rows written since the last commit. */
+    protected int m_Uncommitted;
+
+    /**
+     * Prepares the INSERT statement for the table. The rows are committed in
+     * the configured interval.
+     *
+     * @param connection the (open) connection to write with
+     * @throws Exception if the statement cannot be prepared
+     */
+    public BatchWriter(DatabaseConnection connection) throws Exception {
+      this(connection, false);
+    }
+
+    /**
+     * Prepares the INSERT statement for the table.
+     *
+     * @param connection the (open) connection to write with
+     * @param singleTransaction if true, auto-commit is turned off and the rows
+     *          are only committed by commit(), regardless of the commit
+     *          interval
+     * @throws Exception if the statement cannot be prepared
+     */
+    public BatchWriter(DatabaseConnection connection, boolean singleTransaction)
+      throws Exception {
+      m_Connection = connection;
+      m_SupportsBatch =
+        (m_batchSize > 1) && connection.getMetaData().supportsBatchUpdates();
+      m_AutoCommit = connection.getAutoCommit();
+      m_SingleTransaction = singleTransaction;
+      if (singleTransaction || m_commitInterval > 0) {
+        connection.setAutoCommit(false);
+      }
+
+      int numParams = getInstances().numAttributes() + (m_id ? 1 : 0);
+      StringBuffer insert = new StringBuffer();
+      insert.append("INSERT INTO ");
+      insert.append(m_resolvedTableName);
+      insert.append(" VALUES ( ");
+      for (int i = 0; i < numParams; i++) {
+        insert.append((i == 0) ? "?" : ", ?");
+      }
+      insert.append(" )");
+      m_Statement = connection.prepareStatement(insert.toString());
+    }
+
+    /**
+     * Writes a row.
+     *
+     * @param inst the instance to write
+     * @param key the value for the primary key column (if enabled)
+     * @throws Exception if the row cannot be written
+     */
+    public void write(Instance inst, int key) throws Exception {
+      int param = 1;
+      if (m_id) {
+        m_Statement.setInt(param++, key);
+      }
+      for (int j = 0; j < inst.numAttributes(); j++, param++) {
+        Attribute att = inst.attribute(j);
+        if (inst.isMissing(j)) {
+          if (att.isDate()) {
+            m_Statement.setNull(param, Types.TIMESTAMP);
+          } else if (att.isNumeric()) {
+            m_Statement.setNull(param, Types.DOUBLE);
+          } else {
+            m_Statement.setNull(param, Types.VARCHAR);
+          }
+        } else if (att.isDate()) {
+          m_Statement.setTimestamp(param, new Timestamp((long) inst.value(j)));
+        } else if (att.isNumeric()) {
+          m_Statement.setDouble(param, inst.value(j));
+        } else {
+          m_Statement.setString(param, inst.stringValue(j));
+        }
+      }
+
+      if (m_SupportsBatch) {
+        m_Statement.addBatch();
+        m_Pending++;
+        if (m_Pending >= m_batchSize) {
+          executeBatch();
+        }
+      } else {
+        if (m_Statement.executeUpdate() < 1) {
+          throw new IOException("Tuple cannot be inserted.");
+        }
+        m_Uncommitted++;
+        commitIfDue();
+      }
+    }
+
+    /**
+     * Sends the rows of the current batch to the database.
+     *
+     * @throws Exception if the rows cannot be inserted
+     */
+    protected void executeBatch() throws Exception {
+      if (m_Pending == 0) {
+        return;
+      }
+      int[] counts = m_Statement.executeBatch();
+      for (int count : counts) {
+        if (count == Statement.EXECUTE_FAILED) {
+          throw new IOException("Tuple cannot be inserted.");
+        }
+      }
+      m_Uncommitted += m_Pending;
+      m_Pending = 0;
+      commitIfDue();
+    }
+
+    /**
+     * Commits the rows written so far, if the commit interval is reached.
+     *
+     * @throws Exception if the commit fails
+     */
+    protected void commitIfDue() throws Exception {
+      if (!m_SingleTransaction && m_commitInterval > 0
+        && m_Uncommitted >= m_commitInterval) {
+        commit();
+      }
+    }
+
+    /**
+     * Sends any remaining rows to the database and commits them, unless all
+     * rows are written in a single transaction.
+     *
+     * @throws Exception if the rows cannot be inserted
+     */
+    public void finish() throws Exception {
+      executeBatch();
+      if (!m_SingleTransaction && !m_Connection.getAutoCommit()) {
+        commit();
+      }
+    }
+
+    /**
+     * Commits the rows sent to the database so far.
+     *
+     * @throws Exception if the commit fails
+     */
+    public void commit() throws Exception {
+      m_Connection.commit();
+      m_Uncommitted = 0;
+    }
+
+    /**
+     * Closes the statement and restores the auto-commit setting of the
+     * connection. Rows that haven't been sent or committed yet are discarded.
+     */
+    public void close() {
+      try {
+        m_Statement.close();
+      } catch (Exception ex) {
+        // ignored
+      }
+      try {
+        if (m_Connection.isConnected()) {
+          if (!m_Connection.getAutoCommit()) {
+            m_Connection.rollback();
+          }
+          if (m_Connection.getAutoCommit() != m_AutoCommit) {
+            m_Connection.setAutoCommit(m_AutoCommit);
+          }
+        }
+      } catch (Exception ex) {
+        // ignored
+      }
+    }
+  }
+
   /**
    * Constructor.
    * 
@@ -309,6 +552,7 @@ public class DatabaseSaver extends AbstractSaver implements BatchConverter,
 
     setRetrieval(NONE);
 
+    closeIncrementalWriter();
     try {
       if (m_DataBaseConnection != null && m_DataBaseConnection.isConnected()) {
         m_DataBaseConnection.disconnectFromDatabase();
@@ -325,6 +569,9 @@ public class DatabaseSaver extends AbstractSaver implements BatchConverter,
     m_count = 1;
     m_id = false;
     m_tabName = true;
+    m_batchSize = 1;
+    m_commitInterval = 0;
+    m_numExecutionSlots = 1;
 
     /*
      * m_createText =
@@ -350,6 +597,7 @@ public class DatabaseSaver extends AbstractSaver implements BatchConverter,
   public void cancel() {
 
     if (getWriteMode() == CANCEL) {
+      closeIncrementalWriter();
       try {
         m_DataBaseConnection.update("DROP TABLE " + m_resolvedTableName);
         if (m_DataBaseConnection.tableExists(m_resolvedTableName)) {
@@ -668,6 +916,113 @@ public class DatabaseSaver extends AbstractSaver implements BatchConverter,
     return "The custom properties that the user can use to override the default ones.";
   }
 
+  /**
+   * Gets the number of rows that are sent to the database in one batch.
+   *
+   * @return the batch size
+   */
+  @OptionMetadata(displayName = "Batch size",
+    description = "The number of rows to send to the database in one batch, "
+      + "using a prepared statement (1 = one INSERT statement per row)",
+    displayOrder = 9)
+  public int getBatchSize() {
+    return m_batchSize;
+  }
+
+  /**
+   * Sets the number of rows that are sent to the database in one batch.
+   * Values greater than 1 make the saver use a prepared INSERT statement with
+   * JDBC batch updates.
+   *
+   * @param value the batch size
+   */
+  public void setBatchSize(int value) {
+    m_batchSize = Math.max(1, value);
+  }
+
+  /**
+   * Returns the tip text for this property.
+   *
+   * @return the tip text for this property
+   */
+  public String batchSizeTipText() {
+    return "The number of rows to send to the database in one batch, using a "
+      + "prepared statement (1 = one INSERT statement per row).";
+  }
+
+  /**
+   * Gets the number of rows after which the transaction is committed.
+   *
+   * @return the commit interval, 0 if the auto-commit setting of the
+   *         connection is used
+   */
+  @OptionMetadata(displayName = "Commit interval",
+    description = "The number of rows after which to commit the transaction "
+      + "(0 = use the auto-commit setting of the connection)",
+    displayOrder = 10)
+  public int getCommitInterval() {
+    return m_commitInterval;
+  }
+
+  /**
+   * Sets the number of rows after which the transaction is committed. With a
+   * value greater than 0, auto-commit is turned off while writing and the
+   * rows are committed after each batch once at least this many rows are
+   * pending. Not used when writing with several connections, which always
+   * write in a single transaction each.
+   *
+   * @param value the commit interval, 0 to use the auto-commit setting of the
+   *          connection
+   */
+  public void setCommitInterval(int value) {
+    m_commitInterval = Math.max(0, value);
+  }
+
+  /**
+   * Returns the tip text for this property.
+   *
+   * @return the tip text for this property
+   */
+  public String commitIntervalTipText() {
+    return "The number of rows after which to commit the transaction (0 = use "
+      + "the auto-commit setting of the connection).";
+  }
+
+  /**
+   * Gets the number of connections used for writing in parallel.
+   *
+   * @return the number of execution slots
+   */
+  @OptionMetadata(displayName = "Number of execution slots",
+    description = "The number of connections to use for writing the rows in "
+      + "parallel in batch mode", displayOrder = 11)
+  public int getNumExecutionSlots() {
+    return m_numExecutionSlots;
+  }
+
+  /**
+   * Sets the number of connections used for writing in parallel. Only used
+   * in batch mode; each connection writes a contiguous block of the rows in
+   * its own transaction. The transactions are committed once all blocks
+   * have been written, or all rolled back if one of them fails.
+   *
+   * @param value the number of execution slots
+   */
+  public void setNumExecutionSlots(int value) {
+    m_numExecutionSlots = Math.max(1, value);
+  }
+
+  /**
+   * Returns the tip text for this property.
+   *
+   * @return the tip text for this property
+   */
+  public String numExecutionSlotsTipText() {
+    return "The number of connections to use for writing the rows in parallel "
+      + "in batch mode. Each connection writes a block of rows in its own "
+      + "transaction; all are rolled back if one of them fails.";
+  }
+
   /**
    * Sets the database url.
    *
@@ -914,6 +1269,126 @@ public class DatabaseSaver extends AbstractSaver implements BatchConverter,
     }
   }
 
+  /**
+   * Returns whether the rows are written with a prepared statement rather
+   * than one literal INSERT statement per row.
+   *
+   * @return true if a prepared statement is used
+   */
+  protected boolean usePreparedStatement() {
+    return m_batchSize > 1 || m_commitInterval > 0 || m_numExecutionSlots > 1;
+  }
+
+  /**
+   * Closes the writer used for incremental saving, if any, discarding any
+   * rows that haven't been sent to the database yet.
+   */
+  protected void closeIncrementalWriter() {
+    if (m_incrementalWriter != null) {
+      m_incrementalWriter.close();
+      m_incrementalWriter = null;
+    }
+  }
+
+  /**
+   * Writes the instances with several connections in parallel. The rows are
+   * split into contiguous blocks, one per connection, and the primary key
+   * values (if enabled) are the same as when writing sequentially. Each
+   * connection writes its block in a single transaction, regardless of the
+   * commit interval. The transactions are only committed once all blocks
+   * have been written; if a block fails, all of them are rolled back. The
+   * commits themselves are not atomic across the connections, though: if
+   * committing one of them fails, the ones committed before stay in the
+   * table.
+   *
+   * @param instances the instances to write
+   * @throws Exception if a row cannot be written
+   */
+  protected void writeInstancesInParallel(final Instances instances)
+    throws Exception {
+
+    final int numInstances = instances.numInstances();
+    int numSlots = Math.min(m_numExecutionSlots, numInstances);
+    final DatabaseConnection[] connections = new DatabaseConnection[numSlots];
+    final BatchWriter[] writers = new BatchWriter[numSlots];
+    final AtomicBoolean failed = new AtomicBoolean();
+    List<Callable<Void>> tasks = new ArrayList<Callable<Void>>();
+    for (int t = 0; t < numSlots; t++) {
+      final int slot = t;
+      final int start = (int) ((long) numInstances * t / numSlots);
+      final int end = (int) ((long) numInstances * (t + 1) / numSlots);
+      final int firstKey = m_count + start;
+
+      // same database, drivers and (resolved) credentials as the main one
+      connections[t] =
+        new DatabaseConnection(m_DataBaseConnection.getProperties());
+      connections[t].setDatabaseURL(m_DataBaseConnection.getDatabaseURL());
+      connections[t].setUsername(m_DataBaseConnection.getUsername());
+      connections[t].setPassword(m_DataBaseConnection.getPassword());
+
+      tasks.add(new Callable<Void>() {
+        @Override
+        public Void call() throws Exception {
+          try {
+            connections[slot].connectToDatabase();
+            writers[slot] = new BatchWriter(connections[slot], true);
+            for (int i = start; i < end && !failed.get(); i++) {
+              writers[slot].write(instances.instance(i), firstKey + i - start);
+            }
+            writers[slot].finish();
+          } catch (Exception ex) {
+            // no point in the other slots carrying on
+            failed.set(true);
+            throw ex;
+          }
+          return null;
+        }
+      });
+    }
+
+    ExecutorService pool = Executors.newFixedThreadPool(numSlots);
+    try {
+      List<Future<Void>> results = new ArrayList<Future<Void>>();
+      for (Callable<Void> task : tasks) {
+        results.add(pool.submit(task));
+      }
+
+      // wait for all slots, so that none is still writing when rolling back
+      Exception error = null;
+      for (Future<Void> f : results) {
+        try {
+          f.get();
+        } catch (ExecutionException ex) {
+          if (error == null) {
+            error = (ex.getCause() instanceof Exception) ? (Exception) ex
+              .getCause() : ex;
+          }
+        }
+      }
+      if (error != null) {
+        throw error;
+      }
+
+      for (BatchWriter writer : writers) {
+        writer.commit();
+      }
+    } finally {
+      pool.shutdownNow();
+      // rolls back whatever hasn't been committed
+      for (int t = 0; t < numSlots; t++) {
+        if (writers[t] != null) {
+          writers[t].close();
+        }
+        try {
+          connections[t].disconnectFromDatabase();
+        } catch (Exception ex) {
+          // ignored
+        }
+      }
+    }
+    m_count += numInstances;
+  }
+
   /**
    * Saves an instances incrementally. Structure has to be set by using the
    * setStructure() method or setInstances() method. When a structure is set, a
@@ -966,9 +1441,20 @@ public class DatabaseSaver extends AbstractSaver implements BatchConverter,
         }
         if (inst != null) {
           // write instance
-          writeInstance(inst);
+          if (usePreparedStatement()) {
+            if (m_incrementalWriter == null) {
+              m_incrementalWriter = new BatchWriter(m_DataBaseConnection);
+            }
+            m_incrementalWriter.write(inst, m_count++);
+          } else {
+            writeInstance(inst);
+          }
         } else {
           // close
+          if (m_incrementalWriter != null) {
+            m_incrementalWriter.finish();
+            closeIncrementalWriter();
+          }
           m_DataBaseConnection.disconnectFromDatabase();
           resetStructure();
           m_count = 1;
@@ -1004,8 +1490,22 @@ public class DatabaseSaver extends AbstractSaver implements BatchConverter,
       }
       setWriteMode(WRITE);
       writeStructure();
-      for (int i = 0; i < instances.numInstances(); i++) {
-        writeInstance(instances.instance(i));
+      if (m_numExecutionSlots > 1 && instances.numInstances() > 1) {
+        writeInstancesInParallel(instances);
+      } else if (usePreparedStatement()) {
+        BatchWriter writer = new BatchWriter(m_DataBaseConnection);
+        try {
+          for (int i = 0; i < instances.numInstances(); i++) {
+            writer.write(instances.instance(i), m_count++);
+          }
+          writer.finish();
+        } finally {
+          writer.close();
+        }
+      } else {
+        for (int i = 0; i < instances.numInstances(); i++) {
+          writeInstance(instances.instance(i));
+        }
       }
       m_DataBaseConnection.disconnectFromDatabase();
       setWriteMode(WAIT);
@@ -1085,6 +1585,21 @@ public class DatabaseSaver extends AbstractSaver implements BatchConverter,
       options.add(m_CustomPropsFile.toString());
     }
 
+    if (m_batchSize != 1) {
+      options.add("-batch-size");
+      options.add("" + m_batchSize);
+    }
+
+    if (m_commitInterval != 0) {
+      options.add("-commit-interval");
+      options.add("" + m_commitInterval);
+    }
+
+    if (m_numExecutionSlots != 1) {
+      options.add("-num-slots");
+      options.add("" + m_numExecutionSlots);
+    }
+
     return options.toArray(new String[options.size()]);
   }
 
@@ -1143,6 +1658,27 @@ public class DatabaseSaver extends AbstractSaver implements BatchConverter,
    *  Input file in arff format that should be saved in database.
    * </pre>
    * 
+   * <pre>
+   * -batch-size &lt;num&gt;
+   *  The number of rows to send to the database in one batch,
+   *  using a prepared statement.
+   *  (default: 1, i.e., one INSERT statement per row)
+   * </pre>
+   * 
+   * <pre>
+   * -commit-interval &lt;num&gt;
+   *  The number of rows after which to commit the transaction.
+   *  (default: 0, i.e., use the connection's auto-commit setting)
+   * </pre>
+   * 
+   * <pre>
+   * -num-slots &lt;num&gt;
+   *  The number of connections to use for writing the rows
+   *  in parallel in batch mode. Each connection writes in one
+   *  transaction; all are rolled back if one of them fails.
+   *  (default: 1)
+   * </pre>
+   * 
    * <!-- options-end -->
    * 
    * @param options the options
@@ -1207,6 +1743,21 @@ public class DatabaseSaver extends AbstractSaver implements BatchConverter,
       setCustomPropsFile(new File(tmpStr));
     }
 
+    tmpStr = Utils.getOption("batch-size", options);
+    if (tmpStr.length() != 0) {
+      setBatchSize(Integer.parseInt(tmpStr));
+    }
+
+    tmpStr = Utils.getOption("commit-interval", options);
+    if (tmpStr.length() != 0) {
+      setCommitInterval(Integer.parseInt(tmpStr));
+    }
+
+    tmpStr = Utils.getOption("num-slots", options);
+    if (tmpStr.length() != 0) {
+      setNumExecutionSlots(Integer.parseInt(tmpStr));
+    }
+
     Utils.checkForRemainingOptions(options);
   }
 
@@ -1254,6 +1805,23 @@ public class DatabaseSaver extends AbstractSaver implements BatchConverter,
       "\tInput file in arff format that should be saved in database.", "i", 1,
       "-i <input file name>"));
 
+    newVector.addElement(new Option(
+      "\tThe number of rows to send to the database in one batch,\n"
+        + "\tusing a prepared statement.\n"
+        + "\t(default: 1, i.e., one INSERT statement per row)", "batch-size",
+      1, "-batch-size <num>"));
+
+    newVector.addElement(new Option(
+      "\tThe number of rows after which to commit the transaction.\n"
+        + "\t(default: 0, i.e., use the connection's auto-commit setting)",
+      "commit-interval", 1, "-commit-interval <num>"));
+
+    newVector.addElement(new Option(
+      "\tThe number of connections to use for writing the rows\n"
+        + "\tin parallel in batch mode. Each connection writes in one\n"
+        + "\ttransaction; all are rolled back if one of them fails.\n"
+        + "\t(default: 1)", "num-slots", 1, "-num-slots <num>"));
+
     return newVector.elements();
   }
 
@@ -0,0 +1,465 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ *    BytecodeGenerator.java
+ *    Copyright (C) 2026 University of Waikato, Hamilton, New Zealand
+ *
+ */
+
+package weka.core.expressionlanguage.common;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import weka.core.expressionlanguage.common.ExpressionCompiler.Code;
+
+/**
+ * Translates a register program of the {@link ExpressionCompiler} into a JVM
+ * class, so that the JIT can compile and inline the expression like hand
+ * written code.</p>
+ *
+ * Each register becomes a local double variable of the generated
+ * <code>run</code> method. The class file uses version 49, which doesn't
+ * require stack map frames for the branches.
+ *
+ * @author The WEKA Team (wekalist@list.waikato.ac.nz)
+ * @version $Revision$
+ */
+class BytecodeGenerator {
+
+  /** for generating unique class names */
+  private static final AtomicInteger COUNTER = new AtomicInteger();
+
+  /** the internal name of the base class */
+  private static final String CODE = Code.class.getName().replace('.', '/');
+
+  /** the signature of the run method */
+  private static final String RUN_DESC = "([D[L"
+    + Primitives.DoubleExpression.class.getName().replace('.', '/') + ";[L"
+    + Primitives.BooleanExpression.class.getName().replace('.', '/') + ";[L"
+    + ExpressionCompiler.ValueSource.class.getName().replace('.', '/') + ";)D";
+
+  /** the first local variable slot used for the registers */
+  private static final int FIRST_REGISTER = 5;
+
+  /** JVM opcodes */
+  private static final int ALOAD_0 = 0x2a, ALOAD = 0x19, DLOAD = 0x18,
+    DSTORE = 0x39, DCONST_0 = 0x0e, DCONST_1 = 0x0f, LDC2_W = 0x14,
+    SIPUSH = 0x11, AALOAD = 0x32, DADD = 0x63, DSUB = 0x67, DMUL = 0x6b,
+    DDIV = 0x6f, DNEG = 0x77, I2D = 0x87, DCMPL = 0x97, DCMPG = 0x98,
+    IFEQ = 0x99, IFNE = 0x9a, IFLT = 0x9b, IFGE = 0x9c, IFGT = 0x9d,
+    IFLE = 0x9e, GOTO = 0xa7, DRETURN = 0xaf, RETURN = 0xb1,
+    INVOKESPECIAL = 0xb7, INVOKESTATIC = 0xb8, INVOKEINTERFACE = 0xb9,
+    WIDE = 0xc4;
+
+  /** the class loader for a single generated class */
+  private static class CodeLoader extends ClassLoader {
+
+    public CodeLoader(ClassLoader parent) {
+      super(parent);
+    }
+
+    public Class<?> define(String name, byte[] bytes) {
+      return defineClass(name, bytes, 0, bytes.length);
+    }
+  }
+
+  /** the constant pool */
+  private final ByteArrayOutputStream m_Pool = new ByteArrayOutputStream();
+
+  /** the constant pool output */
+  private final DataOutputStream m_PoolOut = new DataOutputStream(m_Pool);
+
+  /** the number of constant pool slots used (starting at 1) */
+  private int m_PoolSize = 1;
+
+  /** the constant pool entries created so far */
+  private final Map<String, Integer> m_PoolEntries =
+    new HashMap<String, Integer>();
+
+  /** the bytecode of the run method */
+  private final ByteArrayOutputStream m_Code = new ByteArrayOutputStream();
+
+  /**
+   * Generates a class for the program and returns an instance of it.
+   *
+   * @param code the instructions of the program
+   * @param constants the constants of the program
+   * @param numRegisters the number of registers of the program
+   * @return the instance of the generated class
+   * @throws Exception if generating or loading the class fails
+   */
+  public static Code generate(int[] code, double[] constants, int numRegisters)
+    throws Exception {
+    String name = BytecodeGenerator.class.getPackage().getName()
+      + ".GeneratedExpression" + COUNTER.incrementAndGet();
+    byte[] bytes = new BytecodeGenerator().generateClass(
+      name.replace('.', '/'), code, constants, numRegisters);
+    Class<?> cls = new CodeLoader(BytecodeGenerator.class.getClassLoader())
+      .define(name, bytes);
+    return (Code) cls.newInstance();
+  }
+
+  /**
+   * Adds an entry to the constant pool (only once).
+   *
+   * @param key the unique key of the entry
+   * @param tag the tag of the entry
+   * @param data the data of the entry
+   * @param slots the number of slots the entry occupies
+   * @return the index of the entry
+   * @throws IOException never
+   */
+  private int pool(String key, int tag, byte[] data, int slots)
+    throws IOException {
+    Integer index = m_PoolEntries.get(key);
+    if (index == null) {
+      index = m_PoolSize;
+      m_PoolOut.writeByte(tag);
+      m_PoolOut.write(data);
+      m_PoolSize += slots;
+      m_PoolEntries.put(key, index);
+    }
+    return index;
+  }
+
+  private static byte[] u2(int... values) {
+    byte[] result = new byte[2 * values.length];
+    for (int i = 0; i < values.length; i++) {
+      result[2 * i] = (byte) (values[i] >> 8);
+      result[2 * i + 1] = (byte) values[i];
+    }
+    return result;
+  }
+
+  private int utf8(String s) throws IOException {
+    ByteArrayOutputStream data = new ByteArrayOutputStream();
+    new DataOutputStream(data).writeUTF(s);
+    return pool("U" + s, 1, data.toByteArray(), 1);
+  }
+
+  private int cls(String internalName) throws IOException {
+    return pool("C" + internalName, 7, u2(utf8(internalName)), 1);
+  }
+
+  private int nameAndType(String name, String desc) throws IOException {
+    return pool("N" + name + " " + desc, 12, u2(utf8(name), utf8(desc)), 1);
+  }
+
+  private int method(String owner, String name, String desc, boolean itf)
+    throws IOException {
+    return pool((itf ? "I" : "M") + owner + "." + name + desc, itf ? 11 : 10,
+      u2(cls(owner), nameAndType(name, desc)), 1);
+  }
+
+  private int dbl(double value) throws IOException {
+    ByteArrayOutputStream data = new ByteArrayOutputStream();
+    new DataOutputStream(data).writeLong(Double.doubleToRawLongBits(value));
+    return pool("D" + Double.doubleToRawLongBits(value), 6,
+      data.toByteArray(), 2);
+  }
+
+  private void op(int... bytes) {
+    for (int b : bytes) {
+      m_Code.write(b);
+    }
+  }
+
+  private void op2(int opcode, int operand) {
+    op(opcode, (operand >> 8) & 0xff, operand & 0xff);
+  }
+
+  private void local(int opcode, int slot) {
+    if (slot > 255) {
+      op(WIDE);
+      op2(opcode, slot);
+    } else {
+      op(opcode, slot);
+    }
+  }
+
+  private void load(int register) {
+    local(DLOAD, FIRST_REGISTER + 2 * register);
+  }
+
+  private void store(int register) {
+    local(DSTORE, FIRST_REGISTER + 2 * register);
+  }
+
+  private void index(int value) {
+    op2(SIPUSH, value);
+  }
+
+  private void math(String name, String desc) throws IOException {
+    op2(INVOKESTATIC, method("java/lang/Math", name, desc, false));
+  }
+
+  /**
+   * Emits a comparison of the two doubles on the stack, leaving 1 or 0.
+   *
+   * @param cmp DCMPL or DCMPG
+   * @param branch the branch taken when the result is 1
+   */
+  private void compare(int cmp, int branch) {
+    op(cmp);
+    op2(branch, 7); // skip the following dconst_0 and goto
+    op(DCONST_0);
+    op2(GOTO, 4);
+    op(DCONST_1);
+  }
+
+  /**
+   * Generates the class file.
+   *
+   * @param name the internal name of the class
+   * @param code the instructions of the program
+   * @param constants the constants of the program
+   * @param numRegisters the number of registers
+   * @return the class file
+   * @throws Exception if the program is too large or invalid
+   */
+  private byte[] generateClass(String name, int[] code, double[] constants,
+    int numRegisters) throws Exception {
+    int size = code.length / 4;
+    int[] offsets = new int[size + 1];
+    List<int[]> jumps = new ArrayList<int[]>();
+    String dblExpr = Primitives.DoubleExpression.class.getName()
+      .replace('.', '/');
+    String boolExpr = Primitives.BooleanExpression.class.getName()
+      .replace('.', '/');
+    String source = ExpressionCompiler.ValueSource.class.getName()
+      .replace('.', '/');
+
+    for (int i = 0; i < size; i++) {
+      offsets[i] = m_Code.size();
+      int dst = code[4 * i + 1];
+      int a = code[4 * i + 2];
+      int b = code[4 * i + 3];
+      switch (code[4 * i]) {
+      case ExpressionCompiler.CONST:
+        op2(LDC2_W, dbl(constants[a]));
+        store(dst);
+        break;
+      case ExpressionCompiler.CALL_DOUBLE:
+        op(ALOAD, 2);
+        index(a);
+        op(AALOAD);
+        op2(INVOKEINTERFACE, method(dblExpr, "evaluate", "()D", true));
+        op(1, 0);
+        store(dst);
+        break;
+      case ExpressionCompiler.CALL_BOOLEAN:
+        op(ALOAD, 3);
+        index(a);
+        op(AALOAD);
+        op2(INVOKEINTERFACE, method(boolExpr, "evaluate", "()Z", true));
+        op(1, 0);
+        op(I2D);
+        store(dst);
+        break;
+      case ExpressionCompiler.LOAD:
+      case ExpressionCompiler.IS_MISSING:
+        op(ALOAD, 4);
+        index(a);
+        op(AALOAD);
+        index(b);
+        if (code[4 * i] == ExpressionCompiler.LOAD) {
+          op2(INVOKEINTERFACE, method(source, "value", "(I)D", true));
+          op(2, 0);
+        } else {
+          op2(INVOKEINTERFACE, method(source, "isMissing", "(I)Z", true));
+          op(2, 0);
+          op(I2D);
+        }
+        store(dst);
+        break;
+      case ExpressionCompiler.MOVE:
+        load(a);
+        store(dst);
+        break;
+      case ExpressionCompiler.ADD:
+      case ExpressionCompiler.SUB:
+      case ExpressionCompiler.MUL:
+      case ExpressionCompiler.DIV:
+      case ExpressionCompiler.POW:
+        load(a);
+        load(b);
+        switch (code[4 * i]) {
+        case ExpressionCompiler.ADD:
+          op(DADD);
+          break;
+        case ExpressionCompiler.SUB:
+          op(DSUB);
+          break;
+        case ExpressionCompiler.MUL:
+          op(DMUL);
+          break;
+        case ExpressionCompiler.DIV:
+          op(DDIV);
+          break;
+        default:
+          math("pow", "(DD)D");
+        }
+        store(dst);
+        break;
+      case ExpressionCompiler.NEG:
+        load(a);
+        op(DNEG);
+        store(dst);
+        break;
+      case ExpressionCompiler.LT:
+      case ExpressionCompiler.LE:
+      case ExpressionCompiler.GT:
+      case ExpressionCompiler.GE:
+      case ExpressionCompiler.EQ:
+        load(a);
+        load(b);
+        switch (code[4 * i]) {
+        case ExpressionCompiler.LT:
+          compare(DCMPG, IFLT);
+          break;
+        case ExpressionCompiler.LE:
+          compare(DCMPG, IFLE);
+          break;
+        case ExpressionCompiler.GT:
+          compare(DCMPL, IFGT);
+          break;
+        case ExpressionCompiler.GE:
+          compare(DCMPL, IFGE);
+          break;
+        default:
+          compare(DCMPL, IFEQ);
+        }
+        store(dst);
+        break;
+      case ExpressionCompiler.NOT:
+        load(a);
+        op(DCONST_0);
+        compare(DCMPL, IFEQ);
+        store(dst);
+        break;
+      case ExpressionCompiler.JUMP_IF_FALSE:
+      case ExpressionCompiler.JUMP_IF_TRUE:
+        load(a);
+        op(DCONST_0);
+        op(DCMPL);
+        jumps.add(new int[] { m_Code.size(), b });
+        op2((code[4 * i] == ExpressionCompiler.JUMP_IF_FALSE) ? IFEQ : IFNE, 0);
+        break;
+      case ExpressionCompiler.JUMP:
+        jumps.add(new int[] { m_Code.size(), b });
+        op2(GOTO, 0);
+        break;
+      case ExpressionCompiler.ABS:
+      case ExpressionCompiler.SQRT:
+      case ExpressionCompiler.LOG:
+      case ExpressionCompiler.EXP:
+      case ExpressionCompiler.SIN:
+      case ExpressionCompiler.COS:
+      case ExpressionCompiler.TAN:
+      case ExpressionCompiler.RINT:
+      case ExpressionCompiler.FLOOR:
+      case ExpressionCompiler.CEIL:
+        load(a);
+        math(MATH_FUNCTIONS[code[4 * i] - ExpressionCompiler.ABS], "(D)D");
+        store(dst);
+        break;
+      default:
+        throw new IllegalStateException("Unknown opcode: " + code[4 * i]);
+      }
+    }
+    offsets[size] = m_Code.size();
+    load(0);
+    op(DRETURN);
+
+    // resolve the jumps
+    byte[] bytecode = m_Code.toByteArray();
+    for (int[] jump : jumps) {
+      int delta = offsets[jump[1]] - jump[0];
+      bytecode[jump[0] + 1] = (byte) (delta >> 8);
+      bytecode[jump[0] + 2] = (byte) delta;
+    }
+    if (bytecode.length >= 32768) {
+      throw new IllegalStateException("Expression too large for bytecode!");
+    }
+
+    // constructor
+    byte[] init = new byte[] { (byte) ALOAD_0, (byte) INVOKESPECIAL, 0, 0,
+      (byte) RETURN };
+    int superInit = method(CODE, "<init>", "()V", false);
+    init[2] = (byte) (superInit >> 8);
+    init[3] = (byte) superInit;
+
+    int thisClass = cls(name);
+    int superClass = cls(CODE);
+    int codeAttr = utf8("Code");
+    int initName = utf8("<init>");
+    int initDesc = utf8("()V");
+    int runName = utf8("run");
+    int runDesc = utf8(RUN_DESC);
+
+    ByteArrayOutputStream result = new ByteArrayOutputStream();
+    DataOutputStream out = new DataOutputStream(result);
+    out.writeInt(0xCAFEBABE);
+    out.writeShort(0);
+    out.writeShort(49);
+    out.writeShort(m_PoolSize);
+    m_PoolOut.flush();
+    out.write(m_Pool.toByteArray());
+    out.writeShort(0x0031); // public final super
+    out.writeShort(thisClass);
+    out.writeShort(superClass);
+    out.writeShort(0); // interfaces
+    out.writeShort(0); // fields
+    out.writeShort(2); // methods
+    writeMethod(out, initName, initDesc, codeAttr, 1, 1, init);
+    writeMethod(out, runName, runDesc, codeAttr, 6,
+      FIRST_REGISTER + 2 * numRegisters, bytecode);
+    out.writeShort(0); // attributes
+    out.flush();
+
+    return result.toByteArray();
+  }
+
+  /** the names of the Math functions, in the order of their opcodes */
+  private static final String[] MATH_FUNCTIONS = { "abs", "sqrt", "log",
+    "exp", "sin", "cos", "tan", "rint", "floor", "ceil" };
+
+  /**
+   * Writes a public method with a code attribute.
+   */
+  private static void writeMethod(DataOutputStream out, int name, int desc,
+    int codeAttr, int maxStack, int maxLocals, byte[] code) throws IOException {
+    out.writeShort(0x0001); // public
+    out.writeShort(name);
+    out.writeShort(desc);
+    out.writeShort(1); // attributes
+    out.writeShort(codeAttr);
+    out.writeInt(12 + code.length);
+    out.writeShort(maxStack);
+    out.writeShort(maxLocals);
+    out.writeInt(code.length);
+    out.write(code);
+    out.writeShort(0); // exception table
+    out.writeShort(0); // attributes
+  }
+}
@@ -0,0 +1,672 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ *    ExpressionCompiler.java
+ *    Copyright (C) 2026 University of Waikato, Hamilton, New Zealand
+ *
+ */
+
+package weka.core.expressionlanguage.common;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import weka.core.expressionlanguage.common.Primitives.BooleanExpression;
+import weka.core.expressionlanguage.common.Primitives.DoubleExpression;
+import weka.core.expressionlanguage.core.Node;
+
+/**
+ * Compiles an AST (abstract syntax tree) of double or boolean type into a flat
+ * register program, which in turn gets translated into JVM bytecode.</p>
+ *
+ * Evaluating the AST directly means one virtual call per node and value. The
+ * compiled program instead consists of an array of simple instructions
+ * operating on double registers (booleans are represented as 0 and 1). It is
+ * translated into a class whose registers are local variables, hence the JIT
+ * can optimize the expression as a whole.</p>
+ *
+ * Nodes take part in the compilation by implementing {@link Compilable}. Nodes
+ * that don't (e.g. string operations or user supplied variables) are embedded
+ * as they are and evaluated through a call, hence every AST can be compiled.
+ * </p>
+ *
+ * If the translation into bytecode fails, the program is interpreted instead.
+ * Setting the system property <code>weka.core.expressionlanguage.debug</code>
+ * to <code>true</code> reports such failures on stderr.</p>
+ *
+ * Example:</br>
+ * <code>
+ * DoubleExpression expr = ExpressionCompiler.compile((DoubleExpression) Parser.parse(...));
+ * </code>
+ *
+ * @author The WEKA Team (wekalist@list.waikato.ac.nz)
+ * @version $Revision$
+ */
+public class ExpressionCompiler {
+
+  /** whether to report failures to generate bytecode */
+  protected static final boolean DEBUG = System.getProperty(
+    "weka.core.expressionlanguage.debug", "false").equalsIgnoreCase("true");
+
+  /** loads a constant: dst, constant index */
+  public static final int CONST = 0;
+  /** evaluates an embedded double expression: dst, node index */
+  public static final int CALL_DOUBLE = 1;
+  /** evaluates an embedded boolean expression: dst, node index */
+  public static final int CALL_BOOLEAN = 2;
+  /** loads a value from a value source: dst, source index, value index */
+  public static final int LOAD = 3;
+  /** checks a value of a value source for missing: dst, source, value index */
+  public static final int IS_MISSING = 4;
+  /** copies a register: dst, src */
+  public static final int MOVE = 5;
+  /** addition: dst, left, right */
+  public static final int ADD = 6;
+  /** subtraction: dst, left, right */
+  public static final int SUB = 7;
+  /** multiplication: dst, left, right */
+  public static final int MUL = 8;
+  /** division: dst, left, right */
+  public static final int DIV = 9;
+  /** power: dst, base, exponent */
+  public static final int POW = 10;
+  /** unary minus: dst, src */
+  public static final int NEG = 11;
+  /** less than: dst, left, right */
+  public static final int LT = 12;
+  /** less equal: dst, left, right */
+  public static final int LE = 13;
+  /** greater than: dst, left, right */
+  public static final int GT = 14;
+  /** greater equal: dst, left, right */
+  public static final int GE = 15;
+  /** equal: dst, left, right */
+  public static final int EQ = 16;
+  /** logical not: dst, src */
+  public static final int NOT = 17;
+  /** jumps to the target if the register is 0: -, src, target */
+  public static final int JUMP_IF_FALSE = 18;
+  /** jumps to the target if the register is not 0: -, src, target */
+  public static final int JUMP_IF_TRUE = 19;
+  /** jumps to the target: -, -, target */
+  public static final int JUMP = 20;
+  /** Math.abs: dst, src */
+  public static final int ABS = 21;
+  /** Math.sqrt: dst, src */
+  public static final int SQRT = 22;
+  /** Math.log: dst, src */
+  public static final int LOG = 23;
+  /** Math.exp: dst, src */
+  public static final int EXP = 24;
+  /** Math.sin: dst, src */
+  public static final int SIN = 25;
+  /** Math.cos: dst, src */
+  public static final int COS = 26;
+  /** Math.tan: dst, src */
+  public static final int TAN = 27;
+  /** Math.rint: dst, src */
+  public static final int RINT = 28;
+  /** Math.floor: dst, src */
+  public static final int FLOOR = 29;
+  /** Math.ceil: dst, src */
+  public static final int CEIL = 30;
+
+  /**
+   * Interface for AST nodes that can emit instructions for themselves.
+   *
+   * @author The WEKA Team (wekalist@list.waikato.ac.nz)
+   * @version $Revision$
+   */
+  public static interface Compilable extends Node {
+
+    /**
+     * Emits the instructions that compute the value of this node into the
+     * given register. Registers above dst may be used as temporaries.
+     *
+     * @param program the program to emit the instructions to
+     * @param dst the register to store the result in
+     */
+    public void compile(Program program, int dst);
+  }
+
+  /**
+   * Interface for objects exposing the values of the current row (e.g. the
+   * attribute values of the current instance) to a compiled program.
+   *
+   * @author The WEKA Team (wekalist@list.waikato.ac.nz)
+   * @version $Revision$
+   */
+  public static interface ValueSource extends Serializable {
+
+    /**
+     * Returns the value at the given index.
+     *
+     * @param index the index of the value
+     * @return the value
+     */
+    public double value(int index);
+
+    /**
+     * Returns whether the value at the given index is missing.
+     *
+     * @param index the index of the value
+     * @return whether the value is missing
+     */
+    public boolean isMissing(int index);
+  }
+
+  /**
+   * Base class for the JVM classes generated from programs.
+   *
+   * @author The WEKA Team (wekalist@list.waikato.ac.nz)
+   * @version $Revision$
+   */
+  public static abstract class Code {
+
+    /**
+     * Executes the generated code.
+     *
+     * @param constants the constants of the program
+     * @param doubleNodes the embedded double nodes
+     * @param booleanNodes the embedded boolean nodes
+     * @param sources the value sources
+     * @return the content of register 0
+     */
+    public abstract double run(double[] constants,
+      DoubleExpression[] doubleNodes, BooleanExpression[] booleanNodes,
+      ValueSource[] sources);
+  }
+
+  /**
+   * A flat register program. When executed for the first time, the program is
+   * translated into a JVM class. If that isn't possible (e.g. due to security
+   * restrictions), the program gets interpreted instead.
+   *
+   * @author The WEKA Team (wekalist@list.waikato.ac.nz)
+   * @version $Revision$
+   */
+  public static class Program implements Serializable {
+
+    private static final long serialVersionUID = 3496317530473452768L;
+
+    /** the instructions, four ints each: opcode, dst, a, b */
+    private int[] code = new int[64];
+
+    /** the number of instructions */
+    private int size = 0;
+
+    /** the constants */
+    private final List<Double> constantList = new ArrayList<Double>();
+
+    /** the constants as array (after compilation) */
+    private double[] constants;
+
+    /** the embedded nodes */
+    private final List<Node> nodeList = new ArrayList<Node>();
+
+    /** the embedded double nodes (after compilation) */
+    private DoubleExpression[] doubleNodes;
+
+    /** the embedded boolean nodes (after compilation) */
+    private BooleanExpression[] booleanNodes;
+
+    /** the value sources */
+    private final List<ValueSource> sourceList = new ArrayList<ValueSource>();
+
+    /** the value sources as array (after compilation) */
+    private ValueSource[] sources;
+
+    /** the registers */
+    private double[] registers;
+
+    /** the number of registers used */
+    private int numRegisters = 1;
+
+    /** the generated code (not serialized, generated again when needed) */
+    private transient Code generated;
+
+    /** whether the generation of code has been attempted */
+    private transient boolean generationAttempted;
+
+    /**
+     * Emits the instructions computing the value of the given node into the
+     * given register. Nodes that aren't {@link Compilable} are embedded.
+     *
+     * @param node the node to compile
+     * @param dst the register to store the result in
+     */
+    public void compile(Node node, int dst) {
+      numRegisters = Math.max(numRegisters, dst + 1);
+      if (node instanceof Compilable) {
+        ((Compilable) node).compile(this, dst);
+      } else if (node instanceof DoubleExpression) {
+        emit(CALL_DOUBLE, dst, embed(node), 0);
+      } else if (node instanceof BooleanExpression) {
+        emit(CALL_BOOLEAN, dst, embed(node), 0);
+      } else {
+        throw new IllegalArgumentException("Only double and boolean "
+          + "expressions can be compiled!");
+      }
+    }
+
+    /**
+     * Emits an instruction.
+     *
+     * @param opcode the opcode
+     * @param dst the destination register
+     * @param a the first argument
+     * @param b the second argument
+     * @return the index of the instruction
+     */
+    public int emit(int opcode, int dst, int a, int b) {
+      if (4 * size + 4 > code.length) {
+        code = Arrays.copyOf(code, 2 * code.length);
+      }
+      code[4 * size] = opcode;
+      code[4 * size + 1] = dst;
+      code[4 * size + 2] = a;
+      code[4 * size + 3] = b;
+      numRegisters = Math.max(numRegisters, dst + 1);
+      return size++;
+    }
+
+    /**
+     * Emits a unary operation on the given operand.
+     *
+     * @param opcode the opcode
+     * @param operand the operand
+     * @param dst the destination register
+     */
+    public void emitUnary(int opcode, Node operand, int dst) {
+      compile(operand, dst);
+      emit(opcode, dst, dst, 0);
+    }
+
+    /**
+     * Emits a binary operation on the given operands.
+     *
+     * @param opcode the opcode
+     * @param left the left operand
+     * @param right the right operand
+     * @param dst the destination register
+     */
+    public void emitBinary(int opcode, Node left, Node right, int dst) {
+      compile(left, dst);
+      compile(right, dst + 1);
+      emit(opcode, dst, dst, dst + 1);
+    }
+
+    /**
+     * Emits a conditional expression.
+     *
+     * @param condition the condition
+     * @param ifPart the value if the condition is true
+     * @param elsePart the value if the condition is false
+     * @param dst the destination register
+     */
+    public void emitIfElse(Node condition, Node ifPart, Node elsePart, int dst) {
+      compile(condition, dst);
+      int toElse = emit(JUMP_IF_FALSE, 0, dst, 0);
+      compile(ifPart, dst);
+      int toEnd = emit(JUMP, 0, 0, 0);
+      setJumpTarget(toElse, size);
+      compile(elsePart, dst);
+      setJumpTarget(toEnd, size);
+    }
+
+    /**
+     * Emits a short circuit logical and/or.
+     *
+     * @param and true for and, false for or
+     * @param left the left operand
+     * @param right the right operand
+     * @param dst the destination register
+     */
+    public void emitShortCircuit(boolean and, Node left, Node right, int dst) {
+      compile(left, dst);
+      int toEnd = emit(and ? JUMP_IF_FALSE : JUMP_IF_TRUE, 0, dst, 0);
+      compile(right, dst);
+      setJumpTarget(toEnd, size);
+    }
+
+    /**
+     * Sets the target of a jump instruction.
+     *
+     * @param jump the index of the jump instruction
+     * @param target the index of the instruction to jump to
+     */
+    public void setJumpTarget(int jump, int target) {
+      code[4 * jump + 3] = target;
+    }
+
+    /**
+     * Adds a constant.
+     *
+     * @param value the constant
+     * @return the index of the constant
+     */
+    public int constant(double value) {
+      constantList.add(value);
+      return constantList.size() - 1;
+    }
+
+    /**
+     * Embeds a node that gets evaluated through a call.
+     *
+     * @param node the node
+     * @return the index of the node
+     */
+    public int embed(Node node) {
+      nodeList.add(node);
+      return nodeList.size() - 1;
+    }
+
+    /**
+     * Adds a value source (only once).
+     *
+     * @param source the value source
+     * @return the index of the value source
+     */
+    public int source(ValueSource source) {
+      for (int i = 0; i < sourceList.size(); i++) {
+        if (sourceList.get(i) == source) {
+          return i;
+        }
+      }
+      sourceList.add(source);
+      return sourceList.size() - 1;
+    }
+
+    /**
+     * Returns the number of instructions.
+     *
+     * @return the number of instructions
+     */
+    public int size() {
+      return size;
+    }
+
+    /**
+     * Finishes the compilation.
+     */
+    protected void link() {
+      code = Arrays.copyOf(code, 4 * size);
+      constants = new double[constantList.size()];
+      for (int i = 0; i < constants.length; i++) {
+        constants[i] = constantList.get(i);
+      }
+      doubleNodes = new DoubleExpression[nodeList.size()];
+      booleanNodes = new BooleanExpression[nodeList.size()];
+      for (int i = 0; i < nodeList.size(); i++) {
+        if (nodeList.get(i) instanceof DoubleExpression) {
+          doubleNodes[i] = (DoubleExpression) nodeList.get(i);
+        } else {
+          booleanNodes[i] = (BooleanExpression) nodeList.get(i);
+        }
+      }
+      sources = sourceList.toArray(new ValueSource[sourceList.size()]);
+      registers = new double[numRegisters];
+    }
+
+    /**
+     * Translates the program into a JVM class, if not done already.
+     *
+     * @return true if the program has been translated
+     */
+    public boolean generate() {
+      if (!generationAttempted) {
+        generationAttempted = true;
+        try {
+          generated = BytecodeGenerator.generate(code, constants, numRegisters);
+        } catch (Exception e) {
+          // e.g. expression too large, class can't be instantiated
+          generated = null;
+          if (DEBUG) {
+            System.err.println("Failed to generate bytecode, interpreting "
+              + "expression instead:");
+            e.printStackTrace();
+          }
+        } catch (LinkageError e) {
+          // e.g. ClassFormatError, VerifyError
+          generated = null;
+          if (DEBUG) {
+            System.err.println("Failed to load generated bytecode, "
+              + "interpreting expression instead:");
+            e.printStackTrace();
+          }
+        }
+      }
+      return generated != null;
+    }
+
+    /**
+     * Executes the program.
+     *
+     * @return the content of register 0
+     */
+    public double run() {
+      if (generate()) {
+        return generated.run(constants, doubleNodes, booleanNodes, sources);
+      }
+      return interpret();
+    }
+
+    /**
+     * Executes the program without using the generated code.
+     *
+     * @return the content of register 0
+     */
+    public double interpret() {
+      final int[] code = this.code;
+      final double[] r = registers;
+      final int end = code.length;
+      int pc = 0;
+
+      while (pc < end) {
+        int dst = code[pc + 1];
+        int a = code[pc + 2];
+        int b = code[pc + 3];
+        switch (code[pc]) {
+        case CONST:
+          r[dst] = constants[a];
+          break;
+        case CALL_DOUBLE:
+          r[dst] = doubleNodes[a].evaluate();
+          break;
+        case CALL_BOOLEAN:
+          r[dst] = booleanNodes[a].evaluate() ? 1 : 0;
+          break;
+        case LOAD:
+          r[dst] = sources[a].value(b);
+          break;
+        case IS_MISSING:
+          r[dst] = sources[a].isMissing(b) ? 1 : 0;
+          break;
+        case MOVE:
+          r[dst] = r[a];
+          break;
+        case ADD:
+          r[dst] = r[a] + r[b];
+          break;
+        case SUB:
+          r[dst] = r[a] - r[b];
+          break;
+        case MUL:
+          r[dst] = r[a] * r[b];
+          break;
+        case DIV:
+          r[dst] = r[a] / r[b];
+          break;
+        case POW:
+          r[dst] = Math.pow(r[a], r[b]);
+          break;
+        case NEG:
+          r[dst] = -r[a];
+          break;
+        case LT:
+          r[dst] = r[a] < r[b] ? 1 : 0;
+          break;
+        case LE:
+          r[dst] = r[a] <= r[b] ? 1 : 0;
+          break;
+        case GT:
+          r[dst] = r[a] > r[b] ? 1 : 0;
+          break;
+        case GE:
+          r[dst] = r[a] >= r[b] ? 1 : 0;
+          break;
+        case EQ:
+          r[dst] = r[a] == r[b] ? 1 : 0;
+          break;
+        case NOT:
+          r[dst] = r[a] == 0 ? 1 : 0;
+          break;
+        case JUMP_IF_FALSE:
+          if (r[a] == 0) {
+            pc = 4 * b;
+            continue;
+          }
+          break;
+        case JUMP_IF_TRUE:
+          if (r[a] != 0) {
+            pc = 4 * b;
+            continue;
+          }
+          break;
+        case JUMP:
+          pc = 4 * b;
+          continue;
+        case ABS:
+          r[dst] = Math.abs(r[a]);
+          break;
+        case SQRT:
+          r[dst] = Math.sqrt(r[a]);
+          break;
+        case LOG:
+          r[dst] = Math.log(r[a]);
+          break;
+        case EXP:
+          r[dst] = Math.exp(r[a]);
+          break;
+        case SIN:
+          r[dst] = Math.sin(r[a]);
+          break;
+        case COS:
+          r[dst] = Math.cos(r[a]);
+          break;
+        case TAN:
+          r[dst] = Math.tan(r[a]);
+          break;
+        case RINT:
+          r[dst] = Math.rint(r[a]);
+          break;
+        case FLOOR:
+          r[dst] = Math.floor(r[a]);
+          break;
+        case CEIL:
+          r[dst] = Math.ceil(r[a]);
+          break;
+        default:
+          throw new IllegalStateException("Unknown opcode: " + code[pc]);
+        }
+        pc += 4;
+      }
+
+      return r[0];
+    }
+  }
+
+  /**
+   * A compiled expression of double type.
+   */
+  private static class CompiledDoubleExpression implements DoubleExpression {
+
+    private static final long serialVersionUID = -2553361766498466291L;
+
+    private final Program program;
+
+    public CompiledDoubleExpression(Program program) {
+      this.program = program;
+    }
+
+    @Override
+    public double evaluate() {
+      return program.run();
+    }
+  }
+
+  /**
+   * A compiled expression of boolean type.
+   */
+  private static class CompiledBooleanExpression implements BooleanExpression {
+
+    private static final long serialVersionUID = 1369283853394658707L;
+
+    private final Program program;
+
+    public CompiledBooleanExpression(Program program) {
+      this.program = program;
+    }
+
+    @Override
+    public boolean evaluate() {
+      return program.run() != 0;
+    }
+  }
+
+  /**
+   * Compiles the given node into a program.
+   *
+   * @param node the node to compile
+   * @return the program
+   */
+  public static Program compileProgram(Node node) {
+    Program program = new Program();
+    program.compile(node, 0);
+    program.link();
+    return program;
+  }
+
+  /**
+   * Compiles the given expression of double type. Expressions that aren't
+   * {@link Compilable} are returned as they are.
+   *
+   * @param expr the expression to compile
+   * @return the compiled expression
+   */
+  public static DoubleExpression compile(DoubleExpression expr) {
+    if (!(expr instanceof Compilable)) {
+      return expr;
+    }
+    return new CompiledDoubleExpression(compileProgram(expr));
+  }
+
+  /**
+   * Compiles the given expression of boolean type. Expressions that aren't
+   * {@link Compilable} are returned as they are.
+   *
+   * @param expr the expression to compile
+   * @return the compiled expression
+   */
+  public static BooleanExpression compile(BooleanExpression expr) {
+    if (!(expr instanceof Compilable)) {
+      return expr;
+    }
+    return new CompiledBooleanExpression(compileProgram(expr));
+  }
+}
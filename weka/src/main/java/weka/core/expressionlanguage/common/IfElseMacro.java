@@ -25,6 +25,8 @@ import weka.core.expressionlanguage.core.Node;
 import weka.core.expressionlanguage.core.Macro;
 import weka.core.expressionlanguage.core.MacroDeclarations;
 import weka.core.expressionlanguage.core.SemanticException;
+import weka.core.expressionlanguage.common.ExpressionCompiler.Compilable;
+import weka.core.expressionlanguage.common.ExpressionCompiler.Program;
 import weka.core.expressionlanguage.common.Primitives.BooleanExpression;
 import weka.core.expressionlanguage.common.Primitives.DoubleExpression;
 import weka.core.expressionlanguage.common.Primitives.StringExpression;
@@ -125,7 +127,7 @@ public class IfElseMacro implements MacroDeclarations, Macro {
     throw new SemanticException("ifelse's second and third parameter must be doubles, booleans or Strings!");
   }
 
-  private static class DoubleIfElse implements DoubleExpression {
+  private static class DoubleIfElse implements DoubleExpression, Compilable {
 
     private final BooleanExpression condition;
     private final DoubleExpression ifPart;
@@ -139,6 +141,11 @@ public class IfElseMacro implements MacroDeclarations, Macro {
       this.ifPart = ifPart;
       this.elsePart = elsePart;
     }
+
+    @Override
+    public void compile(Program program, int dst) {
+      program.emitIfElse(condition, ifPart, elsePart, dst);
+    }
     
     @Override
     public double evaluate() {
@@ -148,7 +155,7 @@ public class IfElseMacro implements MacroDeclarations, Macro {
     }
   }
  
-  private static class BooleanIfElse implements BooleanExpression {
+  private static class BooleanIfElse implements BooleanExpression, Compilable {
 
     private final BooleanExpression condition;
     private final BooleanExpression ifPart;
@@ -162,6 +169,11 @@ public class IfElseMacro implements MacroDeclarations, Macro {
       this.ifPart = ifPart;
       this.elsePart = elsePart;
     }
+
+    @Override
+    public void compile(Program program, int dst) {
+      program.emitIfElse(condition, ifPart, elsePart, dst);
+    }
     
     @Override
     public boolean evaluate() {
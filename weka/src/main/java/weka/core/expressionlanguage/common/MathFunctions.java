@@ -28,6 +28,8 @@ import weka.core.expressionlanguage.core.Node;
 import weka.core.expressionlanguage.core.Macro;
 import weka.core.expressionlanguage.core.MacroDeclarations;
 import weka.core.expressionlanguage.core.SemanticException;
+import weka.core.expressionlanguage.common.ExpressionCompiler.Compilable;
+import weka.core.expressionlanguage.common.ExpressionCompiler.Program;
 import weka.core.expressionlanguage.common.Primitives.DoubleExpression;
 
 /**
@@ -125,7 +127,8 @@ public class MathFunctions implements MacroDeclarations {
     
   }
 
-  private static abstract class DoubleUnaryFunction implements DoubleExpression {
+  private static abstract class DoubleUnaryFunction implements DoubleExpression,
+    Compilable {
 
     final DoubleExpression expr;
     
@@ -133,6 +136,12 @@ public class MathFunctions implements MacroDeclarations {
       this.expr = expr;
     }
 
+    abstract int opcode();
+
+    @Override
+    public void compile(Program program, int dst) {
+      program.emitUnary(opcode(), expr, dst);
+    }
   }
  
   private static class AbsFunction extends DoubleUnaryFunction {
@@ -141,6 +150,11 @@ public class MathFunctions implements MacroDeclarations {
       super(expr);
     }
 
+    @Override
+    int opcode() {
+      return ExpressionCompiler.ABS;
+    }
+
     @Override
     public double evaluate() {
       return Math.abs(expr.evaluate());
@@ -154,6 +168,11 @@ public class MathFunctions implements MacroDeclarations {
       super(expr);
     }
 
+    @Override
+    int opcode() {
+      return ExpressionCompiler.SQRT;
+    }
+
     @Override
     public double evaluate() {
       return Math.sqrt(expr.evaluate());
@@ -167,6 +186,11 @@ public class MathFunctions implements MacroDeclarations {
       super(expr);
     }
 
+    @Override
+    int opcode() {
+      return ExpressionCompiler.LOG;
+    }
+
     @Override
     public double evaluate() {
       return Math.log(expr.evaluate());
@@ -180,6 +204,11 @@ public class MathFunctions implements MacroDeclarations {
       super(expr);
     }
 
+    @Override
+    int opcode() {
+      return ExpressionCompiler.EXP;
+    }
+
     @Override
     public double evaluate() {
       return Math.exp(expr.evaluate());
@@ -193,6 +222,11 @@ public class MathFunctions implements MacroDeclarations {
       super(expr);
     }
 
+    @Override
+    int opcode() {
+      return ExpressionCompiler.SIN;
+    }
+
     @Override
     public double evaluate() {
       return Math.sin(expr.evaluate());
@@ -207,6 +241,11 @@ public class MathFunctions implements MacroDeclarations {
       super(expr);
     }
 
+    @Override
+    int opcode() {
+      return ExpressionCompiler.COS;
+    }
+
     @Override
     public double evaluate() {
       return Math.cos(expr.evaluate());
@@ -220,6 +259,11 @@ public class MathFunctions implements MacroDeclarations {
       super(expr);
     }
 
+    @Override
+    int opcode() {
+      return ExpressionCompiler.TAN;
+    }
+
     @Override
     public double evaluate() {
       return Math.tan(expr.evaluate());
@@ -233,6 +277,11 @@ public class MathFunctions implements MacroDeclarations {
       super(expr);
     }
 
+    @Override
+    int opcode() {
+      return ExpressionCompiler.RINT;
+    }
+
     @Override
     public double evaluate() {
       return Math.rint(expr.evaluate());
@@ -246,6 +295,11 @@ public class MathFunctions implements MacroDeclarations {
       super(expr);
     }
 
+    @Override
+    int opcode() {
+      return ExpressionCompiler.FLOOR;
+    }
+
     @Override
     public double evaluate() {
       return Math.floor(expr.evaluate());
@@ -259,6 +313,11 @@ public class MathFunctions implements MacroDeclarations {
       super(expr);
     }
 
+    @Override
+    int opcode() {
+      return ExpressionCompiler.CEIL;
+    }
+
     @Override
     public double evaluate() {
       return Math.ceil(expr.evaluate());
@@ -281,7 +340,7 @@ public class MathFunctions implements MacroDeclarations {
     }
   }
   
-  private static class PowFunction implements DoubleExpression {
+  private static class PowFunction implements DoubleExpression, Compilable {
     
     private final DoubleExpression base;
     private final DoubleExpression exponent;
@@ -291,6 +350,11 @@ public class MathFunctions implements MacroDeclarations {
       this.exponent = exponent;
     }
 
+    @Override
+    public void compile(Program program, int dst) {
+      program.emitBinary(ExpressionCompiler.POW, base, exponent, dst);
+    }
+
     @Override
     public double evaluate() {
       return Math.pow(base.evaluate(), exponent.evaluate());
@@ -24,6 +24,8 @@ package weka.core.expressionlanguage.common;
 import java.io.Serializable;
 import java.util.regex.Pattern;
 
+import weka.core.expressionlanguage.common.ExpressionCompiler.Compilable;
+import weka.core.expressionlanguage.common.ExpressionCompiler.Program;
 import weka.core.expressionlanguage.common.Primitives.BooleanExpression;
 import weka.core.expressionlanguage.common.Primitives.DoubleExpression;
 import weka.core.expressionlanguage.common.Primitives.StringConstant;
@@ -217,7 +219,7 @@ public class Operators {
   }
 
   private static abstract class DoubleBinaryExpression implements
-    DoubleExpression, Serializable {
+    DoubleExpression, Compilable, Serializable {
 
     private static final long serialVersionUID = -5632795030311662604L;
 
@@ -229,6 +231,12 @@ public class Operators {
       this.right = right;
     }
 
+    abstract int opcode();
+
+    @Override
+    public void compile(Program program, int dst) {
+      program.emitBinary(opcode(), left, right, dst);
+    }
   }
 
   private static class Addition extends DoubleBinaryExpression implements
@@ -240,6 +248,11 @@ public class Operators {
       super(left, right);
     }
 
+    @Override
+    int opcode() {
+      return ExpressionCompiler.ADD;
+    }
+
     @Override
     public double evaluate() {
       return left.evaluate() + right.evaluate();
@@ -255,6 +268,11 @@ public class Operators {
       super(left, right);
     }
 
+    @Override
+    int opcode() {
+      return ExpressionCompiler.SUB;
+    }
+
     @Override
     public double evaluate() {
       return left.evaluate() - right.evaluate();
@@ -270,6 +288,11 @@ public class Operators {
       super(left, right);
     }
 
+    @Override
+    int opcode() {
+      return ExpressionCompiler.MUL;
+    }
+
     @Override
     public double evaluate() {
       return left.evaluate() * right.evaluate();
@@ -277,7 +300,8 @@ public class Operators {
 
   }
 
-  private static class UMinus implements DoubleExpression, Serializable {
+  private static class UMinus implements DoubleExpression, Compilable,
+    Serializable {
 
     private static final long serialVersionUID = 8950381197456945108L;
 
@@ -287,6 +311,11 @@ public class Operators {
       this.expr = expr;
     }
 
+    @Override
+    public void compile(Program program, int dst) {
+      program.emitUnary(ExpressionCompiler.NEG, expr, dst);
+    }
+
     @Override
     public double evaluate() {
       return -(expr.evaluate());
@@ -302,6 +331,11 @@ public class Operators {
       super(left, right);
     }
 
+    @Override
+    int opcode() {
+      return ExpressionCompiler.DIV;
+    }
+
     @Override
     public double evaluate() {
       return left.evaluate() / right.evaluate();
@@ -318,6 +352,11 @@ public class Operators {
       super(left, right);
     }
 
+    @Override
+    int opcode() {
+      return ExpressionCompiler.POW;
+    }
+
     @Override
     public double evaluate() {
       return Math.pow(left.evaluate(), right.evaluate());
@@ -340,7 +379,8 @@ public class Operators {
   }
 
   private static class LessThan extends
-    BooleanBinaryExpression<DoubleExpression> implements Serializable {
+    BooleanBinaryExpression<DoubleExpression> implements Compilable,
+    Serializable {
 
     private static final long serialVersionUID = -4323355926531143842L;
 
@@ -348,6 +388,11 @@ public class Operators {
       super(left, right);
     }
 
+    @Override
+    public void compile(Program program, int dst) {
+      program.emitBinary(ExpressionCompiler.LT, left, right, dst);
+    }
+
     @Override
     public boolean evaluate() {
       return left.evaluate() < right.evaluate();
@@ -356,7 +401,8 @@ public class Operators {
   }
 
   private static class LessEqual extends
-    BooleanBinaryExpression<DoubleExpression> implements Serializable {
+    BooleanBinaryExpression<DoubleExpression> implements Compilable,
+    Serializable {
 
     private static final long serialVersionUID = -1949681957973467756L;
 
@@ -364,6 +410,11 @@ public class Operators {
       super(left, right);
     }
 
+    @Override
+    public void compile(Program program, int dst) {
+      program.emitBinary(ExpressionCompiler.LE, left, right, dst);
+    }
+
     @Override
     public boolean evaluate() {
       return left.evaluate() <= right.evaluate();
@@ -372,7 +423,8 @@ public class Operators {
   }
 
   private static class GreaterThan extends
-    BooleanBinaryExpression<DoubleExpression> implements Serializable {
+    BooleanBinaryExpression<DoubleExpression> implements Compilable,
+    Serializable {
 
     private static final long serialVersionUID = 4541137398510802289L;
 
@@ -380,6 +432,11 @@ public class Operators {
       super(left, right);
     }
 
+    @Override
+    public void compile(Program program, int dst) {
+      program.emitBinary(ExpressionCompiler.GT, left, right, dst);
+    }
+
     @Override
     public boolean evaluate() {
       return left.evaluate() > right.evaluate();
@@ -388,7 +445,8 @@ public class Operators {
   }
 
   private static class GreaterEqual extends
-    BooleanBinaryExpression<DoubleExpression> implements Serializable {
+    BooleanBinaryExpression<DoubleExpression> implements Compilable,
+    Serializable {
 
     private static final long serialVersionUID = 3425719763247073382L;
 
@@ -396,6 +454,11 @@ public class Operators {
       super(left, right);
     }
 
+    @Override
+    public void compile(Program program, int dst) {
+      program.emitBinary(ExpressionCompiler.GE, left, right, dst);
+    }
+
     @Override
     public boolean evaluate() {
       return left.evaluate() >= right.evaluate();
@@ -404,7 +467,8 @@ public class Operators {
   }
 
   private static class Equal extends BooleanBinaryExpression<DoubleExpression>
-    implements Serializable {
+    implements Compilable,
+    Serializable {
 
     private static final long serialVersionUID = 4154699553290213656L;
 
@@ -412,6 +476,11 @@ public class Operators {
       super(left, right);
     }
 
+    @Override
+    public void compile(Program program, int dst) {
+      program.emitBinary(ExpressionCompiler.EQ, left, right, dst);
+    }
+
     @Override
     public boolean evaluate() {
       return left.evaluate() == right.evaluate();
@@ -420,7 +489,7 @@ public class Operators {
   }
 
   private static class And extends BooleanBinaryExpression<BooleanExpression>
-    implements Serializable {
+    implements Compilable, Serializable {
 
     private static final long serialVersionUID = 6786891291372905824L;
 
@@ -428,6 +497,11 @@ public class Operators {
       super(left, right);
     }
 
+    @Override
+    public void compile(Program program, int dst) {
+      program.emitShortCircuit(true, left, right, dst);
+    }
+
     @Override
     public boolean evaluate() {
       return left.evaluate() && right.evaluate();
@@ -436,7 +510,7 @@ public class Operators {
   }
 
   private static class Or extends BooleanBinaryExpression<BooleanExpression>
-    implements Serializable {
+    implements Compilable, Serializable {
 
     private static final long serialVersionUID = -5943051466425242059L;
 
@@ -444,6 +518,11 @@ public class Operators {
       super(left, right);
     }
 
+    @Override
+    public void compile(Program program, int dst) {
+      program.emitShortCircuit(false, left, right, dst);
+    }
+
     @Override
     public boolean evaluate() {
       return left.evaluate() || right.evaluate();
@@ -451,7 +530,8 @@ public class Operators {
 
   }
 
-  private static class Not implements BooleanExpression, Serializable {
+  private static class Not implements BooleanExpression, Compilable,
+    Serializable {
 
     private static final long serialVersionUID = -6235716110409152192L;
 
@@ -461,6 +541,11 @@ public class Operators {
       this.expr = expr;
     }
 
+    @Override
+    public void compile(Program program, int dst) {
+      program.emitUnary(ExpressionCompiler.NOT, expr, dst);
+    }
+
     @Override
     public boolean evaluate() {
       return !expr.evaluate();
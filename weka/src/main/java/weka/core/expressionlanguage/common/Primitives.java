@@ -21,6 +21,8 @@
 
 package weka.core.expressionlanguage.common;
 
+import weka.core.expressionlanguage.common.ExpressionCompiler.Compilable;
+import weka.core.expressionlanguage.common.ExpressionCompiler.Program;
 import weka.core.expressionlanguage.core.Node;
 
 import java.io.Serializable;
@@ -93,7 +95,8 @@ public class Primitives implements Serializable {
    * @author Benjamin Weber ( benweber at student dot ethz dot ch )
    * @version $Revision: 1000 $
    */
-  public static class BooleanConstant implements BooleanExpression, Serializable {
+  public static class BooleanConstant implements BooleanExpression, Compilable,
+    Serializable {
 
     private static final long serialVersionUID = -7104666336890622673L;
 
@@ -102,6 +105,11 @@ public class Primitives implements Serializable {
     public BooleanConstant(boolean value) {
       this.value = value;
     }
+
+    @Override
+    public void compile(Program program, int dst) {
+      program.emit(ExpressionCompiler.CONST, dst, program.constant(value ? 1 : 0), 0);
+    }
     
     @Override
     public boolean evaluate() {
@@ -115,7 +123,8 @@ public class Primitives implements Serializable {
    * @author Benjamin Weber ( benweber at student dot ethz dot ch )
    * @version $Revision: 1000 $
    */
-  public static class DoubleConstant implements DoubleExpression, Serializable {
+  public static class DoubleConstant implements DoubleExpression, Compilable,
+    Serializable {
 
     private static final long serialVersionUID = 6876724986473710563L;
 
@@ -125,6 +134,11 @@ public class Primitives implements Serializable {
       this.value = value;
     }
 
+    @Override
+    public void compile(Program program, int dst) {
+      program.emit(ExpressionCompiler.CONST, dst, program.constant(value), 0);
+    }
+
     @Override
     public double evaluate() {
       return value;
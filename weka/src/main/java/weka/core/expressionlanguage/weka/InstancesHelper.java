@@ -31,6 +31,10 @@ import weka.core.expressionlanguage.core.MacroDeclarations;
 import weka.core.expressionlanguage.core.Node;
 import weka.core.expressionlanguage.core.SemanticException;
 import weka.core.expressionlanguage.core.VariableDeclarations;
+import weka.core.expressionlanguage.common.ExpressionCompiler;
+import weka.core.expressionlanguage.common.ExpressionCompiler.Compilable;
+import weka.core.expressionlanguage.common.ExpressionCompiler.Program;
+import weka.core.expressionlanguage.common.ExpressionCompiler.ValueSource;
 import weka.core.expressionlanguage.common.Primitives.BooleanExpression;
 import weka.core.expressionlanguage.common.Primitives.DoubleExpression;
 import weka.core.expressionlanguage.common.Primitives.StringExpression;
@@ -52,7 +56,7 @@ import weka.core.expressionlanguage.common.Primitives.StringExpression;
  * @version $Revision: 1000 $
  */
 public class InstancesHelper implements VariableDeclarations, Macro,
-  MacroDeclarations {
+  MacroDeclarations, ValueSource {
 
   // from MathExpression filter and AttributeExpression
   private static final Pattern ATTRIBUTE1 = Pattern.compile("[aA][0-9]+");
@@ -152,7 +156,7 @@ public class InstancesHelper implements VariableDeclarations, Macro,
       + " is only applicable to a dataset value!");
   }
 
-  private static class isMissing implements BooleanExpression {
+  private static class isMissing implements BooleanExpression, Compilable {
 
     private static final long serialVersionUID = -3805035561340865906L;
 
@@ -162,6 +166,12 @@ public class InstancesHelper implements VariableDeclarations, Macro,
       this.value = value;
     }
 
+    @Override
+    public void compile(Program program, int dst) {
+      program.emit(ExpressionCompiler.IS_MISSING, dst,
+        program.source(value.getHelper()), value.getIndex());
+    }
+
     @Override
     public boolean evaluate() {
       return value.isMissing();
@@ -208,6 +218,34 @@ public class InstancesHelper implements VariableDeclarations, Macro,
     return missingAccessed;
   }
 
+  /**
+   * Returns the value of the attribute with the given index of the current
+   * instance. Missing values are recorded (see {@link #missingAccessed()}).
+   * 
+   * @param index the index of the attribute
+   * @return the value, missing if the value is missing
+   */
+  @Override
+  public double value(int index) {
+    if (instance.isMissing(index)) {
+      missingAccessed = true;
+      return Utils.missingValue();
+    }
+    return instance.value(index);
+  }
+
+  /**
+   * Returns whether the value of the attribute with the given index of the
+   * current instance is missing.
+   * 
+   * @param index the index of the attribute
+   * @return whether the value is missing
+   */
+  @Override
+  public boolean isMissing(int index) {
+    return instance.isMissing(index);
+  }
+
   private int getIndex(String attribute) {
 
     if (ATTRIBUTE1.matcher(attribute).matches())
@@ -273,12 +311,17 @@ public class InstancesHelper implements VariableDeclarations, Macro,
       return index;
     }
 
+    public InstancesHelper getHelper() {
+      return InstancesHelper.this;
+    }
+
     public boolean isMissing() {
       return instance.isMissing(getIndex());
     }
   }
 
-  private class DoubleValue extends Value implements DoubleExpression {
+  private class DoubleValue extends Value implements DoubleExpression,
+    Compilable {
 
     private static final long serialVersionUID = -1001674545929082424L;
 
@@ -287,13 +330,15 @@ public class InstancesHelper implements VariableDeclarations, Macro,
       assert dataset.attribute(getIndex()).isNumeric();
     }
 
+    @Override
+    public void compile(Program program, int dst) {
+      program.emit(ExpressionCompiler.LOAD, dst, program.source(getHelper()),
+        getIndex());
+    }
+
     @Override
     public double evaluate() {
-      if (isMissing()) {
-        missingAccessed = true;
-        return Utils.missingValue();
-      }
-      return instance.value(getIndex());
+      return value(getIndex());
     }
   }
 
@@ -0,0 +1,348 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ * CovarianceAccumulator.java
+ * Copyright (C) 2026 University of Waikato, Hamilton, New Zealand
+ *
+ */
+
+package weka.core.matrix;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import weka.core.Instance;
+import weka.core.Instances;
+import weka.core.RevisionHandler;
+import weka.core.RevisionUtils;
+
+/**
+ * Accumulates the sums and the sums of products of a set of numeric attributes
+ * in a single pass over the data, from which means, covariances and
+ * correlations can be computed. Accumulators for disjoint parts of the data
+ * can be merged, so the data can be processed in parallel or as a stream.
+ * Only the upper triangle of the matrix of products is stored, i.e. p(p+1)/2
+ * values for p attributes. All rows are counted with weight 1. <br/>
+ * <br/>
+ * The values can be shifted by a constant vector before they are accumulated,
+ * which avoids the loss of precision when computing the covariances of
+ * attributes whose means are large compared to their standard deviations: any
+ * rough estimate of the means (e.g. the first row) will do. Without a shift,
+ * only the non-zero values of sparse instances are visited.
+ *
+ * @author The WEKA Team (wekalist@list.waikato.ac.nz)
+ * @version $Revision$
+ */
+public class CovarianceAccumulator implements Serializable, RevisionHandler {
+
+  /** for serialization */
+  private static final long serialVersionUID = 4383010963524462618L;
+
+  /** the number of attributes */
+  protected int m_NumAttributes;
+
+  /** the shift subtracted from the values (null for none) */
+  protected double[] m_Shift;
+
+  /** the number of rows added */
+  protected long m_Count;
+
+  /** the sums of the (shifted) values */
+  protected double[] m_Sums;
+
+  /** the upper triangle of the sums of products, row by row */
+  protected double[] m_Products;
+
+  /**
+   * Creates an empty accumulator without a shift.
+   *
+   * @param numAttributes the number of attributes
+   */
+  public CovarianceAccumulator(int numAttributes) {
+    this(numAttributes, null);
+  }
+
+  /**
+   * Creates an empty accumulator.
+   *
+   * @param numAttributes the number of attributes
+   * @param shift the values to subtract from each row before accumulating it
+   *          (null for none)
+   */
+  public CovarianceAccumulator(int numAttributes, double[] shift) {
+    m_NumAttributes = numAttributes;
+    m_Shift = (shift == null) ? null : shift.clone();
+    m_Sums = new double[numAttributes];
+    m_Products = new double[numAttributes * (numAttributes + 1) / 2];
+  }
+
+  /**
+   * Returns the number of attributes.
+   *
+   * @return the number of attributes
+   */
+  public int getNumAttributes() {
+    return m_NumAttributes;
+  }
+
+  /**
+   * Returns the number of rows added so far.
+   *
+   * @return the number of rows
+   */
+  public long getCount() {
+    return m_Count;
+  }
+
+  /**
+   * Returns the index of an entry in the packed upper triangle.
+   *
+   * @param i the row (i &lt;= j)
+   * @param j the column
+   * @return the index
+   */
+  protected int index(int i, int j) {
+    return i * m_NumAttributes - i * (i - 1) / 2 + (j - i);
+  }
+
+  /**
+   * Adds a row of values.
+   *
+   * @param values the values, one per attribute
+   */
+  public void add(double[] values) {
+    int n = m_NumAttributes;
+    if (m_Shift != null) {
+      double[] shifted = new double[n];
+      for (int i = 0; i < n; i++) {
+        shifted[i] = values[i] - m_Shift[i];
+      }
+      values = shifted;
+    }
+
+    m_Count++;
+    int k = 0;
+    for (int i = 0; i < n; i++) {
+      double vi = values[i];
+      m_Sums[i] += vi;
+      for (int j = i; j < n; j++) {
+        m_Products[k++] += vi * values[j];
+      }
+    }
+  }
+
+  /**
+   * Adds an instance. All attributes of the instance are used, so it should
+   * only have numeric attributes without missing values.
+   *
+   * @param instance the instance to add
+   */
+  public void add(Instance instance) {
+    if (m_Shift != null || instance.numValues() == m_NumAttributes) {
+      add(instance.toDoubleArray());
+      return;
+    }
+
+    // sparse: only pairs of non-zero values contribute
+    m_Count++;
+    int num = instance.numValues();
+    for (int a = 0; a < num; a++) {
+      int i = instance.index(a);
+      double vi = instance.valueSparse(a);
+      if (vi == 0) {
+        continue;
+      }
+      m_Sums[i] += vi;
+      int base = index(i, i) - i;
+      for (int b = a; b < num; b++) {
+        m_Products[base + instance.index(b)] += vi * instance.valueSparse(b);
+      }
+    }
+  }
+
+  /**
+   * Merges the statistics of another accumulator (for a disjoint set of rows
+   * of the same attributes, with the same shift) into this one.
+   *
+   * @param other the accumulator to merge
+   * @throws IllegalArgumentException if the accumulators don't match
+   */
+  public void merge(CovarianceAccumulator other) {
+    if (other.m_NumAttributes != m_NumAttributes) {
+      throw new IllegalArgumentException("Number of attributes differs: "
+        + m_NumAttributes + " != " + other.m_NumAttributes);
+    }
+    if (!Arrays.equals(m_Shift, other.m_Shift)) {
+      throw new IllegalArgumentException("Accumulators use different shifts!");
+    }
+
+    m_Count += other.m_Count;
+    for (int i = 0; i < m_NumAttributes; i++) {
+      m_Sums[i] += other.m_Sums[i];
+    }
+    for (int k = 0; k < m_Products.length; k++) {
+      m_Products[k] += other.m_Products[k];
+    }
+  }
+
+  /**
+   * Returns the mean of an attribute.
+   *
+   * @param i the attribute index
+   * @return the mean
+   */
+  public double getMean(int i) {
+    double mean = m_Sums[i] / m_Count;
+    return (m_Shift == null) ? mean : mean + m_Shift[i];
+  }
+
+  /**
+   * Returns the sum of the products of the (shifted) values of two
+   * attributes. Without a shift, this is the co-moment about the origin.
+   *
+   * @param i the first attribute index
+   * @param j the second attribute index
+   * @return the sum of the products
+   */
+  public double getCrossProduct(int i, int j) {
+    return (i <= j) ? m_Products[index(i, j)] : m_Products[index(j, i)];
+  }
+
+  /**
+   * Returns the co-moment of two attributes, i.e. the sum of the products of
+   * their deviations from their means.
+   *
+   * @param i the first attribute index
+   * @param j the second attribute index
+   * @return the co-moment
+   */
+  public double getCoMoment(int i, int j) {
+    return getCrossProduct(i, j) - m_Sums[i] * m_Sums[j] / m_Count;
+  }
+
+  /**
+   * Returns the (sample) covariance of two attributes.
+   *
+   * @param i the first attribute index
+   * @param j the second attribute index
+   * @return the covariance
+   */
+  public double getCovariance(int i, int j) {
+    return getCoMoment(i, j) / (m_Count - 1);
+  }
+
+  /**
+   * Returns the correlation of two attributes. The correlation with an
+   * attribute that is constant is 0 (1 on the diagonal).
+   *
+   * @param i the first attribute index
+   * @param j the second attribute index
+   * @return the correlation
+   */
+  public double getCorrelation(int i, int j) {
+    if (i == j) {
+      return 1.0;
+    }
+    double denom = Math.sqrt(getCoMoment(i, i) * getCoMoment(j, j));
+    return (denom > 0) ? getCoMoment(i, j) / denom : 0.0;
+  }
+
+  /**
+   * Computes the statistics of all attributes of a set of instances. The rows
+   * are split into contiguous blocks that are processed in parallel, and the
+   * accumulators of the blocks are merged in order, so the result only
+   * depends on the data and the number of threads.
+   *
+   * @param data the data (numeric attributes only, no missing values)
+   * @param shift the values to subtract from each row (null for none)
+   * @param numThreads the number of threads to use
+   * @return the accumulator holding the statistics
+   * @throws Exception if a problem occurs
+   */
+  public static CovarianceAccumulator compute(final Instances data,
+    final double[] shift, int numThreads) throws Exception {
+
+    final int numAttributes = data.numAttributes();
+    final int numInstances = data.numInstances();
+    numThreads = Math.max(1, Math.min(numThreads, numInstances));
+
+    if (numThreads == 1) {
+      CovarianceAccumulator result =
+        new CovarianceAccumulator(numAttributes, shift);
+      for (int i = 0; i < numInstances; i++) {
+        result.add(data.instance(i));
+      }
+      return result;
+    }
+
+    List<Callable<CovarianceAccumulator>> tasks =
+      new ArrayList<Callable<CovarianceAccumulator>>();
+    for (int t = 0; t < numThreads; t++) {
+      final int start = (int) ((long) numInstances * t / numThreads);
+      final int end = (int) ((long) numInstances * (t + 1) / numThreads);
+      tasks.add(new Callable<CovarianceAccumulator>() {
+        @Override
+        public CovarianceAccumulator call() {
+          CovarianceAccumulator acc =
+            new CovarianceAccumulator(numAttributes, shift);
+          for (int i = start; i < end; i++) {
+            acc.add(data.instance(i));
+          }
+          return acc;
+        }
+      });
+    }
+
+    ExecutorService pool = Executors.newFixedThreadPool(numThreads);
+    try {
+      CovarianceAccumulator result = null;
+      for (Future<CovarianceAccumulator> f : pool.invokeAll(tasks)) {
+        try {
+          if (result == null) {
+            result = f.get();
+          } else {
+            result.merge(f.get());
+          }
+        } catch (ExecutionException ex) {
+          if (ex.getCause() instanceof Exception) {
+            throw (Exception) ex.getCause();
+          }
+          throw ex;
+        }
+      }
+      return result;
+    } finally {
+      pool.shutdownNow();
+    }
+  }
+
+  /**
+   * Returns the revision string.
+   *
+   * @return the revision
+   */
+  @Override
+  public String getRevision() {
+    return RevisionUtils.extract("$Revision$");
+  }
+}
@@ -0,0 +1,258 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ * RandomizedEigenvalueDecomposition.java
+ * Copyright (C) 2026 University of Waikato, Hamilton, New Zealand
+ *
+ */
+
+package weka.core.matrix;
+
+import java.util.Random;
+
+import weka.core.RevisionHandler;
+import weka.core.RevisionUtils;
+
+/**
+ * Computes the k largest eigenvalues and the corresponding eigenvectors of a
+ * symmetric positive semi-definite matrix (e.g. a covariance matrix) with a
+ * randomized range finder. The range of the matrix is sampled with a random
+ * Gaussian matrix of k + oversampling columns, refined with a few power
+ * iterations, and the small projected matrix is decomposed with
+ * EigenvalueDecomposition. This takes O(n^2 k) time instead of the O(n^3) of
+ * a full decomposition, and the matrix is only accessed through products with
+ * blocks of vectors. For a positive semi-definite matrix the result is also
+ * its truncated singular value decomposition. <br/>
+ * <br/>
+ * For more information see: <br/>
+ * <br/>
+ * N. Halko, P.G. Martinsson, J.A. Tropp (2011). Finding structure with
+ * randomness: Probabilistic algorithms for constructing approximate matrix
+ * decompositions. SIAM Review. 53(2):217-288.
+ *
+ * @author The WEKA Team (wekalist@list.waikato.ac.nz)
+ * @version $Revision$
+ */
+public class RandomizedEigenvalueDecomposition implements RevisionHandler {
+
+  /** the dimension of the matrix */
+  protected int m_N;
+
+  /** the upper triangle of the matrix, row by row */
+  protected double[] m_Packed;
+
+  /** the eigenvalues, in decreasing order */
+  protected double[] m_Eigenvalues;
+
+  /** the eigenvectors, [n][k], one per column */
+  protected double[][] m_Eigenvectors;
+
+  /**
+   * Decomposes a symmetric matrix given by its upper triangle.
+   *
+   * @param packed the upper triangle of the matrix, row by row (n(n+1)/2
+   *          values)
+   * @param n the dimension of the matrix
+   * @param k the number of eigenvalues to compute
+   * @param oversampling the number of additional random vectors to use
+   * @param iterations the number of power iterations
+   * @param seed the seed for the random vectors
+   */
+  public RandomizedEigenvalueDecomposition(double[] packed, int n, int k,
+    int oversampling, int iterations, long seed) {
+
+    m_N = n;
+    m_Packed = packed;
+    k = Math.max(0, Math.min(k, n));
+    int l = Math.min(n, k + Math.max(0, oversampling));
+    Random random = new Random(seed);
+
+    // sample the range of the matrix
+    double[][] omega = new double[n][l];
+    for (int i = 0; i < n; i++) {
+      for (int c = 0; c < l; c++) {
+        omega[i][c] = random.nextGaussian();
+      }
+    }
+    double[][] q = orthonormalize(multiply(omega), random);
+    for (int it = 0; it < iterations; it++) {
+      q = orthonormalize(multiply(q), random);
+    }
+
+    // project onto the sampled range: B = Q^T A Q
+    double[][] aq = multiply(q);
+    double[][] b = new double[l][l];
+    for (int i = 0; i < n; i++) {
+      for (int r = 0; r < l; r++) {
+        double qir = q[i][r];
+        if (qir == 0) {
+          continue;
+        }
+        for (int c = 0; c < l; c++) {
+          b[r][c] += qir * aq[i][c];
+        }
+      }
+    }
+    for (int r = 0; r < l; r++) {
+      for (int c = r + 1; c < l; c++) {
+        double avg = (b[r][c] + b[c][r]) / 2;
+        b[r][c] = avg;
+        b[c][r] = avg;
+      }
+    }
+
+    EigenvalueDecomposition evd = new EigenvalueDecomposition(new Matrix(b));
+    double[] values = evd.getRealEigenvalues();
+    double[][] v = evd.getV().getArray();
+
+    // keep the k largest eigenvalues (EigenvalueDecomposition sorts them in
+    // increasing order for symmetric matrices)
+    int[] order = weka.core.Utils.sort(values);
+    m_Eigenvalues = new double[k];
+    m_Eigenvectors = new double[n][k];
+    for (int e = 0; e < k; e++) {
+      int col = order[l - 1 - e];
+      m_Eigenvalues[e] = values[col];
+      for (int i = 0; i < n; i++) {
+        double sum = 0;
+        for (int r = 0; r < l; r++) {
+          sum += q[i][r] * v[r][col];
+        }
+        m_Eigenvectors[i][e] = sum;
+      }
+    }
+    m_Packed = null;
+  }
+
+  /**
+   * Multiplies the matrix with a block of column vectors.
+   *
+   * @param x the vectors, [n][l]
+   * @return the product, [n][l]
+   */
+  protected double[][] multiply(double[][] x) {
+    int l = x[0].length;
+    double[][] y = new double[m_N][l];
+    int k = 0;
+    for (int i = 0; i < m_N; i++) {
+      double[] xi = x[i];
+      double[] yi = y[i];
+      double aii = m_Packed[k++];
+      for (int c = 0; c < l; c++) {
+        yi[c] += aii * xi[c];
+      }
+      for (int j = i + 1; j < m_N; j++) {
+        double aij = m_Packed[k++];
+        if (aij == 0) {
+          continue;
+        }
+        double[] xj = x[j];
+        double[] yj = y[j];
+        for (int c = 0; c < l; c++) {
+          yi[c] += aij * xj[c];
+          yj[c] += aij * xi[c];
+        }
+      }
+    }
+    return y;
+  }
+
+  /**
+   * Orthonormalizes the columns of a block of vectors in place, using modified
+   * Gram-Schmidt with re-orthogonalization. A column that is (numerically)
+   * linearly dependent on the previous ones is replaced by a random vector.
+   *
+   * @param y the vectors, [n][l]
+   * @param random the random number generator for replacement columns
+   * @return the orthonormalized vectors
+   */
+  protected double[][] orthonormalize(double[][] y, Random random) {
+    int n = y.length;
+    int l = y[0].length;
+    for (int c = 0; c < l; c++) {
+      double before = columnNorm(y, c);
+      for (int attempt = 0; attempt < 3; attempt++) {
+        for (int pass = 0; pass < 2; pass++) {
+          for (int p = 0; p < c; p++) {
+            double dot = 0;
+            for (int i = 0; i < n; i++) {
+              dot += y[i][p] * y[i][c];
+            }
+            for (int i = 0; i < n; i++) {
+              y[i][c] -= dot * y[i][p];
+            }
+          }
+        }
+        double norm = columnNorm(y, c);
+        if (norm > 1e-10 * before && norm > 0) {
+          for (int i = 0; i < n; i++) {
+            y[i][c] /= norm;
+          }
+          break;
+        }
+        // dependent column: try a random direction instead
+        for (int i = 0; i < n; i++) {
+          y[i][c] = random.nextGaussian();
+        }
+        before = columnNorm(y, c);
+      }
+    }
+    return y;
+  }
+
+  /**
+   * Returns the Euclidean norm of a column.
+   *
+   * @param y the vectors
+   * @param c the column
+   * @return the norm
+   */
+  protected static double columnNorm(double[][] y, int c) {
+    double sum = 0;
+    for (double[] row : y) {
+      sum += row[c] * row[c];
+    }
+    return Math.sqrt(sum);
+  }
+
+  /**
+   * Returns the k largest eigenvalues, in decreasing order.
+   *
+   * @return the eigenvalues
+   */
+  public double[] getEigenvalues() {
+    return m_Eigenvalues;
+  }
+
+  /**
+   * Returns the eigenvectors corresponding to the eigenvalues, one per column.
+   *
+   * @return the eigenvectors, [n][k]
+   */
+  public double[][] getEigenvectors() {
+    return m_Eigenvectors;
+  }
+
+  /**
+   * Returns the revision string.
+   *
+   * @return the revision
+   */
+  @Override
+  public String getRevision() {
+    return RevisionUtils.extract("$Revision$");
+  }
+}
@@ -25,7 +25,6 @@ import java.io.File;
 import java.util.Calendar;
 import java.util.Collections;
 import java.util.Enumeration;
-import java.util.Random;
 import java.util.TimeZone;
 import java.util.Vector;
 
@@ -364,20 +363,16 @@ public class CrossValidationResultProducer implements ResultProducer,
 
     if (getRawOutput()) {
       if (m_ZipDest == null) {
-        m_ZipDest = new OutputZipper(m_OutputFile);
+        m_ZipDest = OutputZipper.forDestination(m_OutputFile);
       }
     }
 
     if (m_Instances == null) {
       throw new Exception("No Instances set");
     }
-    // Randomize on a copy of the original dataset
-    Instances runInstances = new Instances(m_Instances);
-    Random random = new Random(run);
-    runInstances.randomize(random);
-    if (runInstances.classAttribute().isNominal()) {
-      runInstances.stratify(m_NumFolds);
-    }
+    // Randomize and stratify once per dataset and run, shared by all schemes
+    int[][] folds = DataSplitCache.crossValidation(m_Instances, run,
+      m_NumFolds);
     for (int fold = 0; fold < m_NumFolds; fold++) {
       // Add in some fields to the key like run and fold number, dataset name
       Object[] seKey = m_SplitEvaluator.getKey();
@@ -387,8 +382,9 @@ public class CrossValidationResultProducer implements ResultProducer,
       key[2] = "" + (fold + 1);
       System.arraycopy(seKey, 0, key, 3, seKey.length);
       if (m_ResultListener.isResultRequired(this, key)) {
-        Instances train = runInstances.trainCV(m_NumFolds, fold, random);
-        Instances test = runInstances.testCV(m_NumFolds, fold);
+        Instances train = DataSplitCache.subset(m_Instances, folds[2 * fold]);
+        Instances test =
+          DataSplitCache.subset(m_Instances, folds[2 * fold + 1]);
         try {
           Object[] seResults = m_SplitEvaluator.getResult(train, test);
           Object[] results = new Object[seResults.length + 1];
@@ -396,7 +392,7 @@ public class CrossValidationResultProducer implements ResultProducer,
           System.arraycopy(seResults, 0, results, 1, seResults.length);
           if (m_debugOutput) {
             String resultName = ("" + run + "." + (fold + 1) + "."
-              + Utils.backQuoteChars(runInstances.relationName()) + "." + m_SplitEvaluator
+              + Utils.backQuoteChars(m_Instances.relationName()) + "." + m_SplitEvaluator
               .toString()).replace(' ', '_');
             resultName = Utils.removeSubstring(resultName, "weka.classifiers.");
             resultName = Utils.removeSubstring(resultName, "weka.filters.");
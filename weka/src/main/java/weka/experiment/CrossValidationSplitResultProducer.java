@@ -182,7 +182,7 @@ public class CrossValidationSplitResultProducer extends
 
     if (getRawOutput()) {
       if (m_ZipDest == null) {
-        m_ZipDest = new OutputZipper(m_OutputFile);
+        m_ZipDest = OutputZipper.forDestination(m_OutputFile);
       }
     }
 
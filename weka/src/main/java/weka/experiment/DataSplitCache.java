@@ -0,0 +1,315 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ *    DataSplitCache.java
+ *    Copyright (C) 2026 University of Waikato, Hamilton, New Zealand
+ *
+ */
+
+package weka.experiment;
+
+import java.lang.ref.SoftReference;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.WeakHashMap;
+
+import weka.core.Attribute;
+import weka.core.DenseInstance;
+import weka.core.Instance;
+import weka.core.Instances;
+import weka.core.RevisionHandler;
+import weka.core.RevisionUtils;
+import weka.core.Utils;
+
+/**
+ * Computes the train/test splits of the result producers as arrays of
+ * instance indices and memoizes them per dataset, so that the schemes of an
+ * experiment that are run on the same dataset and run number (sequentially
+ * or concurrently) randomize and stratify the data only once. The splits are
+ * computed on a copy of the dataset that holds only the class values and the
+ * original indices, using the same operations and random number sequence as
+ * the result producers used to apply to the full data, hence the resulting
+ * train and test sets are the same. <br/>
+ * <br/>
+ * The cache only holds weak references to the datasets and soft references
+ * to the splits, i.e. entries vanish when a dataset is no longer used or
+ * memory gets short. Entries are discarded as well if the dataset was
+ * modified after the splits were computed (see
+ * Instances.getModificationCount()).
+ *
+ * @author The WEKA Team (wekalist@list.waikato.ac.nz)
+ * @version $Revision$
+ */
+public class DataSplitCache implements RevisionHandler {
+
+  /** the splits per dataset */
+  protected static final Map<Instances, Entry> CACHE =
+    new WeakHashMap<Instances, Entry>();
+
+  /**
+   * The splits of a dataset.
+   */
+  protected static class Entry {
+
+    /** the modification count of the dataset when the entry was created */
+    protected int m_ModificationCount;
+
+    /** the number of instances when the entry was created */
+    protected int m_NumInstances;
+
+    /** the splits, indexed by type and parameters */
+    protected Map<String, SoftReference<int[][]>> m_Splits =
+      new HashMap<String, SoftReference<int[][]>>();
+  }
+
+  /**
+   * Returns the entry of a dataset, replacing it if the dataset was modified.
+   *
+   * @param data the dataset
+   * @return the entry
+   */
+  protected static Entry getEntry(Instances data) {
+    synchronized (CACHE) {
+      Entry result = CACHE.get(data);
+      if ((result == null)
+        || (result.m_ModificationCount != data.getModificationCount())
+        || (result.m_NumInstances != data.numInstances())) {
+        result = new Entry();
+        result.m_ModificationCount = data.getModificationCount();
+        result.m_NumInstances = data.numInstances();
+        CACHE.put(data, result);
+      }
+      return result;
+    }
+  }
+
+  /**
+   * Returns a copy of the dataset with only the class and the index of each
+   * instance as attributes.
+   *
+   * @param data the dataset
+   * @return the copy
+   */
+  protected static Instances indexSet(Instances data) {
+    ArrayList<Attribute> atts = new ArrayList<Attribute>(2);
+    atts.add((Attribute) data.classAttribute().copy());
+    atts.add(new Attribute("index"));
+    Instances result = new Instances(data.relationName(), atts,
+      data.numInstances());
+    result.setClassIndex(0);
+    for (int i = 0; i < data.numInstances(); i++) {
+      double[] values = { data.instance(i).classValue(), i };
+      result.add(new DenseInstance(1.0, values));
+    }
+    return result;
+  }
+
+  /**
+   * Returns the original indices of the instances of an index set.
+   *
+   * @param indexSet the index set
+   * @return the indices
+   */
+  protected static int[] indices(Instances indexSet) {
+    int[] result = new int[indexSet.numInstances()];
+    for (int i = 0; i < result.length; i++) {
+      result[i] = (int) indexSet.instance(i).value(1);
+    }
+    return result;
+  }
+
+  /**
+   * Returns the instances with the given indices.
+   *
+   * @param data the dataset
+   * @param indices the indices of the instances
+   * @return the subset (containing copies of the instances)
+   */
+  public static Instances subset(Instances data, int[] indices) {
+    Instances result = new Instances(data, indices.length);
+    for (int index : indices) {
+      result.add(data.instance(index));
+    }
+    return result;
+  }
+
+  /**
+   * Returns the splits of a randomized and (for a nominal class) stratified
+   * cross-validation, as done by CrossValidationResultProducer: the data is
+   * randomized with a random number generator seeded with the run number,
+   * and each training set is randomized again with the same generator.
+   *
+   * @param data the dataset
+   * @param run the run number
+   * @param numFolds the number of folds
+   * @return the indices of the training set (at 2 * fold) and the test set
+   *         (at 2 * fold + 1) of each fold
+   */
+  public static int[][] crossValidation(Instances data, int run, int numFolds) {
+    Entry entry = getEntry(data);
+    String key = "cv " + run + " " + numFolds;
+    synchronized (entry) {
+      SoftReference<int[][]> ref = entry.m_Splits.get(key);
+      int[][] result = (ref == null) ? null : ref.get();
+      if (result == null) {
+        Instances runInstances = indexSet(data);
+        Random random = new Random(run);
+        runInstances.randomize(random);
+        if (runInstances.classAttribute().isNominal()) {
+          runInstances.stratify(numFolds);
+        }
+        result = new int[2 * numFolds][];
+        for (int fold = 0; fold < numFolds; fold++) {
+          result[2 * fold] =
+            indices(runInstances.trainCV(numFolds, fold, random));
+          result[2 * fold + 1] = indices(runInstances.testCV(numFolds, fold));
+        }
+        entry.m_Splits.put(key, new SoftReference<int[][]>(result));
+      }
+      return result;
+    }
+  }
+
+  /**
+   * Returns the split of a train/test split, as done by
+   * RandomSplitResultProducer: if randomized, the data is randomized with a
+   * random number generator seeded with the run number and, for a nominal
+   * class, the training set is drawn from each class separately.
+   *
+   * @param data the dataset
+   * @param run the run number
+   * @param trainPercent the percentage of the data to use for training
+   * @param randomize whether to randomize the data
+   * @return the indices of the training set (at 0) and the test set (at 1)
+   */
+  public static int[][] randomSplit(Instances data, int run,
+    double trainPercent, boolean randomize) {
+    Entry entry = getEntry(data);
+    String key = "split " + run + " " + trainPercent + " " + randomize;
+    synchronized (entry) {
+      SoftReference<int[][]> ref = entry.m_Splits.get(key);
+      int[][] result = (ref == null) ? null : ref.get();
+      if (result == null) {
+        Instances[] split = split(indexSet(data), run, trainPercent,
+          randomize);
+        result = new int[][] { indices(split[0]), indices(split[1]) };
+        entry.m_Splits.put(key, new SoftReference<int[][]>(result));
+      }
+      return result;
+    }
+  }
+
+  /**
+   * Splits a dataset into training and test set.
+   *
+   * @param runInstances the dataset
+   * @param run the run number
+   * @param trainPercent the percentage of the data to use for training
+   * @param randomize whether to randomize the data
+   * @return the training set (at 0) and the test set (at 1)
+   */
+  protected static Instances[] split(Instances runInstances, int run,
+    double trainPercent, boolean randomize) {
+
+    Instances train;
+    Instances test;
+
+    if (!randomize) {
+
+      // Don't do any randomization
+      int trainSize = Utils.round(runInstances.numInstances() * trainPercent
+        / 100);
+      int testSize = runInstances.numInstances() - trainSize;
+      train = new Instances(runInstances, 0, trainSize);
+      test = new Instances(runInstances, trainSize, testSize);
+    } else {
+      Random rand = new Random(run);
+      runInstances.randomize(rand);
+
+      // Nominal class
+      if (runInstances.classAttribute().isNominal()) {
+
+        // create the subset for each classs
+        int numClasses = runInstances.numClasses();
+        Instances[] subsets = new Instances[numClasses + 1];
+        for (int i = 0; i < numClasses + 1; i++) {
+          subsets[i] = new Instances(runInstances, 10);
+        }
+
+        // divide instances into subsets
+        for (Instance inst : runInstances) {
+          if (inst.classIsMissing()) {
+            subsets[numClasses].add(inst);
+          } else {
+            subsets[(int) inst.classValue()].add(inst);
+          }
+        }
+
+        // merge into train and test sets
+        train = new Instances(runInstances, runInstances.numInstances());
+        test = new Instances(runInstances, runInstances.numInstances());
+        for (int i = 0; i < numClasses + 1; i++) {
+          int trainSize = Utils.probRound(subsets[i].numInstances()
+            * trainPercent / 100, rand);
+          for (int j = 0; j < trainSize; j++) {
+            train.add(subsets[i].instance(j));
+          }
+          for (int j = trainSize; j < subsets[i].numInstances(); j++) {
+            test.add(subsets[i].instance(j));
+          }
+          // free memory
+          subsets[i] = null;
+        }
+
+        // randomize the final sets
+        train.randomize(rand);
+        test.randomize(rand);
+      } else {
+
+        // Numeric target
+        int trainSize = Utils.probRound(runInstances.numInstances()
+          * trainPercent / 100, rand);
+        int testSize = runInstances.numInstances() - trainSize;
+        train = new Instances(runInstances, 0, trainSize);
+        test = new Instances(runInstances, trainSize, testSize);
+      }
+    }
+
+    return new Instances[] { train, test };
+  }
+
+  /**
+   * Removes all entries from the cache. Called by Experiment.postProcess(),
+   * other experiments that are still running simply recompute their splits.
+   */
+  public static void clear() {
+    synchronized (CACHE) {
+      CACHE.clear();
+    }
+  }
+
+  /**
+   * Returns the revision string.
+   *
+   * @return the revision
+   */
+  @Override
+  public String getRevision() {
+    return RevisionUtils.extract("$Revision$");
+  }
+}
@@ -24,6 +24,8 @@ package weka.experiment;
 import java.sql.DatabaseMetaData;
 import java.sql.ResultSet;
 import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
 
 import weka.core.RevisionUtils;
 
@@ -33,6 +35,14 @@ import weka.core.RevisionUtils;
  * <p/>
  * <!-- globalinfo-end -->
  * 
+ * Results are written in batches of batchSize rows, each batch within a single
+ * transaction; pending results are written at the latest when postProcess is
+ * called. With preloadKeys enabled, the keys of the results table are read
+ * once and isResultRequired is answered from memory, rather than with a query
+ * per key. The in-memory index only knows about results stored by this
+ * listener, hence preloadKeys should be turned off if several experiments
+ * write the same results concurrently.
+ * 
  * @author Len Trigg (trigg@cs.waikato.ac.nz)
  * @version $Revision$
  */
@@ -60,6 +70,27 @@ public class DatabaseResultListener extends DatabaseUtils implements
   /** Stores the cached values */
   protected ArrayList<String> m_Cache = new ArrayList<String>();
 
+  /** the number of results to write to the database at once */
+  protected int m_BatchSize = 100;
+
+  /** whether to read all keys of the results table into memory */
+  protected boolean m_PreloadKeys = true;
+
+  /** the keys of the results in the table (and pending) */
+  protected transient HashSet<List<String>> m_KeyIndex;
+
+  /** the table the key index was loaded from */
+  protected transient String m_KeyIndexTableName;
+
+  /** the keys of the results not written to the database yet */
+  protected transient ArrayList<Object[]> m_PendingKeys;
+
+  /** the results not written to the database yet */
+  protected transient ArrayList<Object[]> m_PendingResults;
+
+  /** the keys of the pending results, as generated by getKeyIndexEntry */
+  protected transient HashSet<List<String>> m_PendingIndex;
+
   /**
    * Returns a string describing this result listener
    * 
@@ -109,7 +140,13 @@ public class DatabaseResultListener extends DatabaseUtils implements
     if (m_ResultProducer != rp) {
       throw new Error("Unrecognized ResultProducer calling postProcess!!");
     }
-    disconnectFromDatabase();
+    try {
+      flushResults();
+    } finally {
+      m_KeyIndex = null;
+      m_KeyIndexTableName = null;
+      disconnectFromDatabase();
+    }
   }
 
   /**
@@ -182,7 +219,86 @@ public class DatabaseResultListener extends DatabaseUtils implements
 
     // null result could occur from a chain of doRunKeys calls
     if (result != null) {
-      putResultInTable(m_ResultsTableName, rp, key, result);
+      if (m_BatchSize <= 1) {
+        putResultInTable(m_ResultsTableName, rp, key, result);
+        addToKeyIndex(key);
+      } else {
+        if (m_PendingKeys == null) {
+          m_PendingKeys = new ArrayList<Object[]>();
+          m_PendingResults = new ArrayList<Object[]>();
+          m_PendingIndex = new HashSet<List<String>>();
+        }
+        m_PendingKeys.add(key);
+        m_PendingResults.add(result);
+        List<String> entry = getKeyIndexEntry(key);
+        if (entry != null) {
+          m_PendingIndex.add(entry);
+        }
+        if (m_PendingKeys.size() >= m_BatchSize) {
+          flushResults();
+        }
+      }
+    }
+  }
+
+  /**
+   * Adds the key of a result that has been written to the in-memory index of
+   * the results table, if the index is loaded.
+   * 
+   * @param key the key of the result
+   */
+  protected void addToKeyIndex(Object[] key) {
+    List<String> entry = getKeyIndexEntry(key);
+    if ((m_KeyIndex != null) && (entry != null)
+      && m_ResultsTableName.equals(m_KeyIndexTableName)) {
+      m_KeyIndex.add(entry);
+    }
+  }
+
+  /**
+   * Writes the results that haven't been sent to the database yet. If the
+   * batch fails, it is rolled back and the results are written one by one, so
+   * that only the failing ones are lost. Their keys don't end up in the
+   * in-memory index, i.e., they are computed again if the experiment is
+   * resumed.
+   * 
+   * @throws Exception if some of the results couldn't be written
+   */
+  public void flushResults() throws Exception {
+    if ((m_PendingKeys == null) || m_PendingKeys.isEmpty()) {
+      return;
+    }
+
+    Exception error = null;
+    try {
+      putResultsInTable(m_ResultsTableName, m_ResultProducer, m_PendingKeys,
+        m_PendingResults);
+      for (Object[] key : m_PendingKeys) {
+        addToKeyIndex(key);
+      }
+    } catch (Exception ex) {
+      if (m_Debug) {
+        System.err.println("Writing batch failed, writing results one by one: "
+          + ex);
+      }
+      for (int i = 0; i < m_PendingKeys.size(); i++) {
+        try {
+          putResultInTable(m_ResultsTableName, m_ResultProducer,
+            m_PendingKeys.get(i), m_PendingResults.get(i));
+          addToKeyIndex(m_PendingKeys.get(i));
+        } catch (Exception e) {
+          if (error == null) {
+            error = e;
+          }
+        }
+      }
+    } finally {
+      m_PendingKeys.clear();
+      m_PendingResults.clear();
+      m_PendingIndex.clear();
+    }
+    if (error != null) {
+      throw error;
     }
   }
 
@@ -210,21 +326,42 @@ public class DatabaseResultListener extends DatabaseUtils implements
       System.err.flush();
     }
     boolean retval = false;
-
-    // Check the key cache first
-    if (!m_CacheKeyName.equals("")) {
-      if (!isCacheValid(key)) {
-        loadCache(rp, key);
+    String source = "";
+
+    List<String> entry = getKeyIndexEntry(key);
+    if ((entry != null) && (m_PendingIndex != null)
+      && m_PendingIndex.contains(entry)) {
+      // waiting to be written
+      retval = false;
+      source = " (pending)";
+    } else if ((entry != null) && m_PreloadKeys) {
+      // Check the in-memory index of the table
+      if (!m_ResultsTableName.equals(m_KeyIndexTableName)) {
+        loadKeyIndex(rp);
       }
-      retval = !isKeyInCache(rp, key);
+      retval = !m_KeyIndex.contains(entry);
+      source = " (index)";
     } else {
-      // Ask whether the results are needed
-      retval = !isKeyInTable(m_ResultsTableName, rp, key);
+      if (entry == null) {
+        // null values act as wildcards, the query must see all results
+        flushResults();
+      }
+      // Check the key cache first
+      if (!m_CacheKeyName.equals("")) {
+        if (!isCacheValid(key)) {
+          loadCache(rp, key);
+        }
+        retval = !isKeyInCache(rp, key);
+        source = " (cache)";
+      } else {
+        // Ask whether the results are needed
+        retval = !isKeyInTable(m_ResultsTableName, rp, key);
+      }
     }
 
     if (m_Debug) {
       System.err.println(" ..." + (retval ? "required" : "not required")
-        + (m_CacheKeyName.equals("") ? "" : " (cache)"));
+        + source);
       System.err.flush();
     }
     return retval;
@@ -243,6 +380,8 @@ public class DatabaseResultListener extends DatabaseUtils implements
     if (!isConnected()) {
       connectToDatabase();
     }
+    // pending results belong to the current table
+    flushResults();
     if (!experimentIndexExists()) {
       createExperimentIndex();
     }
@@ -257,6 +396,81 @@ public class DatabaseResultListener extends DatabaseUtils implements
     m_ResultsTableName = tableName;
   }
 
+  /**
+   * Reads the keys of the current results table into memory.
+   * 
+   * @param rp the ResultProducer the keys belong to
+   * @throws Exception if an error occurs
+   */
+  protected void loadKeyIndex(ResultProducer rp) throws Exception {
+    if (m_Debug) {
+      System.err.print(" (loading key index)");
+      System.err.flush();
+    }
+    m_KeyIndex = getKeysFromTable(m_ResultsTableName, rp);
+    m_KeyIndexTableName = m_ResultsTableName;
+  }
+
+  /**
+   * Returns the tip text for this property
+   * 
+   * @return tip text for this property suitable for displaying in the
+   *         explorer/experimenter gui
+   */
+  public String batchSizeTipText() {
+    return "The number of results to write to the database at once, "
+      + "within a single transaction (1 writes each result immediately).";
+  }
+
+  /**
+   * Get the number of results written to the database at once.
+   * 
+   * @return the batch size
+   */
+  public int getBatchSize() {
+    return m_BatchSize;
+  }
+
+  /**
+   * Set the number of results written to the database at once.
+   * 
+   * @param value the batch size
+   */
+  public void setBatchSize(int value) {
+    m_BatchSize = value;
+  }
+
+  /**
+   * Returns the tip text for this property
+   * 
+   * @return tip text for this property suitable for displaying in the
+   *         explorer/experimenter gui
+   */
+  public String preloadKeysTipText() {
+    return "Whether to read the keys of all results stored in the table "
+      + "into memory, rather than querying the database for each key "
+      + "(turn off if several experiments store the same results "
+      + "concurrently).";
+  }
+
+  /**
+   * Get whether the keys of the results table are read into memory.
+   * 
+   * @return true if the keys are preloaded
+   */
+  public boolean getPreloadKeys() {
+    return m_PreloadKeys;
+  }
+
+  /**
+   * Set whether the keys of the results table are read into memory.
+   * 
+   * @param value true if the keys are to be preloaded
+   */
+  public void setPreloadKeys(boolean value) {
+    m_PreloadKeys = value;
+  }
+
   /**
    * Returns the tip text for this property
    * 
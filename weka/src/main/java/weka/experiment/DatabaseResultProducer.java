@@ -351,6 +351,7 @@ public class DatabaseResultProducer extends DatabaseResultListener implements
 
     if (!isRequiredByDatabase && isRequiredByListener) {
       // Pass the result through to the listener
+      flushResults();
       Object[] result = getResultFromTable(m_ResultsTableName, rp, key);
       System.err.println("Got result from database: "
         + DatabaseUtils.arrayToString(result));
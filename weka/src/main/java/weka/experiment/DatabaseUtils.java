@@ -41,9 +41,11 @@ import java.sql.ResultSetMetaData;
 import java.sql.SQLException;
 import java.sql.Statement;
 import java.sql.Types;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Enumeration;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Properties;
 import java.util.StringTokenizer;
 import java.util.Vector;
@@ -858,6 +860,40 @@ public class DatabaseUtils implements Serializable, RevisionHandler {
     return result;
   }
 
+  /**
+   * Executes a SQL SELECT query with a forward-only, read-only cursor, e.g.,
+   * for streaming through a large result. The fetch size is passed on to the
+   * JDBC driver as a hint for the number of rows to transfer at a time. Note:
+   * the ResultSet object must be closed by the caller, e.g., with
+   * <code>close(ResultSet)</code>.
+   *
+   * @param query the SQL query
+   * @param fetchSize the number of rows to fetch at a time (0 for the driver's
+   *          default)
+   * @param maxRows the maximum number of rows to return (0 for no limit)
+   * @return the generated ResultSet
+   * @throws SQLException if an error occurs
+   */
+  public ResultSet select(String query, int fetchSize, int maxRows)
+    throws SQLException {
+    if (!isConnected()) {
+      throw new IllegalStateException("Not connected, please connect first!");
+    }
+
+    Statement statement =
+      m_Connection.createStatement(ResultSet.TYPE_FORWARD_ONLY,
+        ResultSet.CONCUR_READ_ONLY);
+    if (fetchSize != 0) {
+      statement.setFetchSize(fetchSize);
+    }
+    if (maxRows > 0) {
+      statement.setMaxRows(maxRows);
+    }
+    ResultSet result = statement.executeQuery(query);
+
+    return result;
+  }
+
   /**
    * closes the ResultSet and the statement that generated the ResultSet to
    * avoid memory leaks in JDBC drivers - in contrast to the JDBC specs, a lot
@@ -891,6 +927,83 @@ public class DatabaseUtils implements Serializable, RevisionHandler {
     }
   }
 
+  /**
+   * Creates a prepared statement for the given SQL, e.g., a parameterized
+   * INSERT that gets executed in batches. In contrast to
+   * <code>execute(String)</code>, the statement is not stored and must be
+   * closed by the caller.
+   *
+   * @param query the SQL with '?' placeholders for the parameters
+   * @return the prepared statement
+   * @throws SQLException if an error occurs
+   */
+  public PreparedStatement prepareStatement(String query) throws SQLException {
+    if (!isConnected()) {
+      throw new IllegalStateException("Not connected, please connect first!");
+    }
+
+    return m_Connection.prepareStatement(query);
+  }
+
+  /**
+   * Returns whether the current connection commits each statement
+   * automatically.
+   *
+   * @return true if in auto-commit mode
+   * @throws SQLException if an error occurs
+   */
+  public boolean getAutoCommit() throws SQLException {
+    if (!isConnected()) {
+      throw new IllegalStateException("Not connected, please connect first!");
+    }
+
+    return m_Connection.getAutoCommit();
+  }
+
+  /**
+   * Sets whether the current connection commits each statement automatically.
+   *
+   * @param autoCommit true to enable auto-commit mode
+   * @throws SQLException if an error occurs
+   */
+  public void setAutoCommit(boolean autoCommit) throws SQLException {
+    if (!isConnected()) {
+      throw new IllegalStateException("Not connected, please connect first!");
+    }
+
+    m_Connection.setAutoCommit(autoCommit);
+  }
+
+  /**
+   * Commits the current transaction. Does nothing in auto-commit mode.
+   *
+   * @throws SQLException if an error occurs
+   */
+  public void commit() throws SQLException {
+    if (!isConnected()) {
+      throw new IllegalStateException("Not connected, please connect first!");
+    }
+
+    if (!m_Connection.getAutoCommit()) {
+      m_Connection.commit();
+    }
+  }
+
+  /**
+   * Rolls back the current transaction. Does nothing in auto-commit mode.
+   *
+   * @throws SQLException if an error occurs
+   */
+  public void rollback() throws SQLException {
+    if (!isConnected()) {
+      throw new IllegalStateException("Not connected, please connect first!");
+    }
+
+    if (!m_Connection.getAutoCommit()) {
+      m_Connection.rollback();
+    }
+  }
+
   /**
    * Checks that a given table exists.
    * 
@@ -1081,47 +1194,200 @@ public class DatabaseUtils implements Serializable, RevisionHandler {
   public void putResultInTable(String tableName, ResultProducer rp,
     Object[] key, Object[] result) throws Exception {
 
-    String query = "INSERT INTO " + tableName + " VALUES ( ";
+    String query = getInsertQuery(tableName, key, result);
+
+    if (m_Debug) {
+      System.err.println("Submitting result: " + query);
+    }
+    update(query);
+    close();
+  }
+
+  /**
+   * Inserts several results into the database with a single batch of
+   * statements, within one transaction. Falls back to executing the
+   * statements one by one if the JDBC driver doesn't support batch updates.
+   * If any insert fails, none of the results are stored (provided the
+   * database supports transactions).
+   * 
+   * @param tableName the name of the table where the results are stored
+   * @param rp the ResultProducer who generated the results
+   * @param keys the keys of the results
+   * @param results the results to store
+   * @throws Exception if an error occurs
+   */
+  public void putResultsInTable(String tableName, ResultProducer rp,
+    List<Object[]> keys, List<Object[]> results) throws Exception {
+
+    if (!isConnected()) {
+      throw new IllegalStateException("Not connected, please connect first!");
+    }
+
+    boolean autoCommit = getAutoCommit();
+    boolean batch = m_Connection.getMetaData().supportsBatchUpdates();
+    Statement statement = null;
+    try {
+      setAutoCommit(false);
+      statement = m_Connection.createStatement();
+      for (int i = 0; i < keys.size(); i++) {
+        String query = getInsertQuery(tableName, keys.get(i), results.get(i));
+        if (m_Debug) {
+          System.err.println("Submitting result: " + query);
+        }
+        if (batch) {
+          statement.addBatch(query);
+        } else {
+          statement.executeUpdate(query);
+        }
+      }
+      if (batch) {
+        statement.executeBatch();
+      }
+      commit();
+    } catch (Exception ex) {
+      try {
+        rollback();
+      } catch (Exception e) {
+        // ignored, report the original problem
+      }
+      throw ex;
+    } finally {
+      if (statement != null) {
+        statement.close();
+      }
+      setAutoCommit(autoCommit);
+    }
+  }
+
+  /**
+   * Generates the SQL statement to insert a result for the supplied key into
+   * the database.
+   * 
+   * @param tableName the name of the table where the result is stored
+   * @param key the key for the result
+   * @param result the result to store
+   * @return the INSERT statement
+   */
+  protected String getInsertQuery(String tableName, Object[] key,
+    Object[] result) {
+
+    StringBuilder query = new StringBuilder();
+    query.append("INSERT INTO ").append(tableName).append(" VALUES ( ");
     // Add the results to the table
     for (int i = 0; i < key.length; i++) {
       if (i != 0) {
-        query += ',';
+        query.append(',');
       }
       if (key[i] != null) {
         if (key[i] instanceof String) {
-          query += "'" + processKeyString(key[i].toString()) + "'";
+          query.append("'").append(processKeyString(key[i].toString()))
+            .append("'");
         } else if (key[i] instanceof Double) {
-          query += safeDoubleToString((Double) key[i]);
+          query.append(safeDoubleToString((Double) key[i]));
         } else {
-          query += key[i].toString();
+          query.append(key[i].toString());
         }
       } else {
-        query += "NULL";
+        query.append("NULL");
       }
     }
     for (Object element : result) {
-      query += ',';
+      query.append(',');
       if (element != null) {
         if (element instanceof String) {
-          query += "'" + element.toString() + "'";
+          query.append("'").append(element.toString()).append("'");
         } else if (element instanceof Double) {
-          query += safeDoubleToString((Double) element);
+          query.append(safeDoubleToString((Double) element));
         } else {
-          query += element.toString();
-          // !!
-          // System.err.println("res: "+ result[i].toString());
+          query.append(element.toString());
         }
       } else {
-        query += "NULL";
+        query.append("NULL");
       }
     }
-    query += ')';
+    query.append(')');
 
-    if (m_Debug) {
-      System.err.println("Submitting result: " + query);
+    return query.toString();
+  }
+
+  /**
+   * Reads the keys of all results stored in a table, e.g., to determine which
+   * results are required without querying the database for every single key.
+   * Rows with a NULL value in any of the key columns are skipped.
+   * 
+   * @param tableName the name of the table to read the keys from
+   * @param rp the ResultProducer that determines the key columns
+   * @return the keys, as generated by getKeyIndexEntry
+   * @throws Exception if an error occurs
+   * @see #getKeyIndexEntry(Object[])
+   */
+  protected HashSet<List<String>> getKeysFromTable(String tableName,
+    ResultProducer rp) throws Exception {
+
+    String[] keyNames = rp.getKeyNames();
+    Object[] keyTypes = rp.getKeyTypes();
+    StringBuilder query = new StringBuilder("SELECT ");
+    for (int i = 0; i < keyNames.length; i++) {
+      if (i != 0) {
+        query.append(", ");
+      }
+      query.append("Key_").append(keyNames[i]);
     }
-    update(query);
-    close();
+    query.append(" FROM ").append(tableName);
+
+    HashSet<List<String>> result = new HashSet<List<String>>();
+    ResultSet rs = select(query.toString(), 1000, 0);
+    try {
+      while (rs.next()) {
+        List<String> entry = new ArrayList<String>(keyNames.length);
+        for (int i = 0; i < keyNames.length; i++) {
+          String value;
+          if (keyTypes[i] instanceof Double) {
+            double d = rs.getDouble(i + 1);
+            value = rs.wasNull() ? null : Double.toString(d);
+          } else {
+            value = rs.getString(i + 1);
+          }
+          if (value == null) {
+            entry = null;
+            break;
+          }
+          entry.add(value);
+        }
+        if (entry != null) {
+          result.add(entry);
+        }
+      }
+    } finally {
+      close(rs);
+    }
+
+    return result;
+  }
+
+  /**
+   * Turns a result key into the form stored by getKeysFromTable, i.e., strings
+   * are processed the same way as when they are inserted into the database.
+   * 
+   * @param key the key for the result
+   * @return the entry, null if the key contains null values (which act as
+   *         wildcards in the database queries)
+   * @see #getKeysFromTable(String, ResultProducer)
+   */
+  protected static List<String> getKeyIndexEntry(Object[] key) {
+    List<String> result = new ArrayList<String>(key.length);
+    for (Object element : key) {
+      if (element == null) {
+        return null;
+      }
+      if (element instanceof Double) {
+        result.add(Double.toString((Double) element));
+      } else {
+        // unescaped version of processKeyString
+        result.add(element.toString().replaceAll("\\\\", "/"));
+      }
+    }
+    return result;
   }
 
   /**
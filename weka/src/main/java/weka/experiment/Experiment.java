@@ -30,11 +30,14 @@ import java.io.FileOutputStream;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
 import java.io.Serializable;
+import java.lang.ref.SoftReference;
 import java.lang.reflect.Array;
 import java.lang.reflect.Method;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.Vector;
 
 import javax.swing.DefaultListModel;
@@ -97,6 +100,12 @@ import weka.experiment.xml.XMLExperiment;
  * </pre>
  * 
  * <pre>
+ * -num-slots &lt;num&gt;
+ *  The number of threads to run the iterations of the experiment on.
+ *  (default 1)
+ * </pre>
+ * 
+ * <pre>
  * Options specific to result producer weka.experiment.RandomSplitResultProducer:
  * </pre>
  * 
@@ -215,6 +224,9 @@ public class Experiment implements Serializable, OptionHandler, RevisionHandler
   /** User notes about the experiment */
   protected String m_Notes = "";
 
+  /** The number of threads to run the iterations on */
+  protected int m_NumExecutionSlots = 1;
+
   /**
    * Method names of additional measures of objects contained in the custom
    * property iterator. Only methods names beginning with "measure" and
@@ -366,6 +378,11 @@ public class Experiment implements Serializable, OptionHandler, RevisionHandler
   protected transient boolean m_Finished = true;
   /** The dataset currently being used */
   protected transient Instances m_CurrentInstances;
+  /**
+   * The datasets loaded so far, shared by all iterations that use them, which
+   * also lets the result producers reuse their splits (see DataSplitCache)
+   */
+  protected transient Map<Integer, SoftReference<Instances>> m_DatasetCache;
   /** The custom property value that has actually been set */
   protected transient int m_CurrentProperty;
 
@@ -409,6 +426,7 @@ public class Experiment implements Serializable, OptionHandler, RevisionHandler
     m_PropertyNumber = 0;
     m_CurrentProperty = -1;
     m_CurrentInstances = null;
+    m_DatasetCache = new HashMap<Integer, SoftReference<Instances>>();
     m_Finished = false;
     if (m_UsePropertyIterator && (m_PropertyArray == null)) {
       throw new Exception("Null array for property iterator");
@@ -516,15 +534,30 @@ public class Experiment implements Serializable, OptionHandler, RevisionHandler
   protected void setProperty(int propertyDepth, Object origValue)
     throws Exception {
 
+    setProperty(propertyDepth, origValue, m_PropertyNumber);
+  }
+
+  /**
+   * Sets the custom property of the given object (and its sub-objects) to the
+   * value with the given index.
+   * 
+   * @param propertyDepth the current depth in the property path
+   * @param origValue the object to set the property of
+   * @param propertyNumber the index of the value in the property array
+   * @throws Exception if an error occurs
+   */
+  protected void setProperty(int propertyDepth, Object origValue,
+    int propertyNumber) throws Exception {
+
     PropertyDescriptor current = m_PropertyPath[propertyDepth].property;
     Object subVal = null;
     if (propertyDepth < m_PropertyPath.length - 1) {
       Method getter = current.getReadMethod();
       Object getArgs[] = {};
       subVal = getter.invoke(origValue, getArgs);
-      setProperty(propertyDepth + 1, subVal);
+      setProperty(propertyDepth + 1, subVal, propertyNumber);
     } else {
-      subVal = Array.get(m_PropertyArray, m_PropertyNumber);
+      subVal = Array.get(m_PropertyArray, propertyNumber);
     }
     Method setter = current.getWriteMethod();
     Object[] args = { subVal };
@@ -556,19 +589,7 @@ public class Experiment implements Serializable, OptionHandler, RevisionHandler
     }
 
     if (m_CurrentInstances == null) {
-      File currentFile = (File) getDatasets().elementAt(m_DatasetNumber);
-      AbstractFileLoader loader = ConverterUtils.getLoaderForFile(currentFile);
-      loader.setFile(currentFile);
-      Instances data = new Instances(loader.getDataSet());
-      // only set class attribute if not already done by loader
-      if (data.classIndex() == -1) {
-        if (m_ClassFirst) {
-          data.setClassIndex(0);
-        } else {
-          data.setClassIndex(data.numAttributes() - 1);
-        }
-      }
-      m_CurrentInstances = data;
+      m_CurrentInstances = loadDataset(m_DatasetNumber);
       m_ResultProducer.setInstances(m_CurrentInstances);
     }
 
@@ -577,6 +598,53 @@ public class Experiment implements Serializable, OptionHandler, RevisionHandler
     advanceCounters();
   }
 
+  /**
+   * Loads a dataset of the experiment and sets its class attribute, unless
+   * already done by the loader. Datasets are only parsed once per run of the
+   * experiment (as long as memory permits), subsequent calls return the same
+   * object, which must therefore not be modified.
+   * 
+   * @param datasetNumber the index of the dataset
+   * @return the dataset
+   * @throws Exception if the dataset can't be loaded
+   */
+  protected Instances loadDataset(int datasetNumber) throws Exception {
+    if (m_DatasetCache == null) {
+      m_DatasetCache = new HashMap<Integer, SoftReference<Instances>>();
+    }
+    SoftReference<Instances> ref = m_DatasetCache.get(datasetNumber);
+    Instances data = (ref == null) ? null : ref.get();
+    if (data == null) {
+      data = readDataset(datasetNumber);
+      m_DatasetCache.put(datasetNumber, new SoftReference<Instances>(data));
+    }
+    return data;
+  }
+
+  /**
+   * Reads a dataset of the experiment from disk and sets its class attribute,
+   * unless already done by the loader.
+   * 
+   * @param datasetNumber the index of the dataset
+   * @return the dataset
+   * @throws Exception if the dataset can't be loaded
+   */
+  protected Instances readDataset(int datasetNumber) throws Exception {
+    File currentFile = (File) getDatasets().elementAt(datasetNumber);
+    AbstractFileLoader loader = ConverterUtils.getLoaderForFile(currentFile);
+    loader.setFile(currentFile);
+    Instances data = new Instances(loader.getDataSet());
+    // only set class attribute if not already done by loader
+    if (data.classIndex() == -1) {
+      if (m_ClassFirst) {
+        data.setClassIndex(0);
+      } else {
+        data.setClassIndex(data.numAttributes() - 1);
+      }
+    }
+    return data;
+  }
+
   /**
    * Increments iteration counters appropriately.
    */
@@ -625,29 +693,60 @@ public class Experiment implements Serializable, OptionHandler, RevisionHandler
     }
   }
 
+  /**
+   * Returns a description of an iteration, for progress output.
+   * 
+   * @param propertyNumber the index of the custom property value
+   * @param datasetNumber the index of the dataset
+   * @param runNumber the run number
+   * @return the description
+   */
+  protected String describeIteration(int propertyNumber, int datasetNumber,
+    int runNumber) {
+
+    String current = "Iteration:";
+    if (getUsePropertyIterator()) {
+      String ctype = getPropertyArray().getClass().getComponentType()
+        .getName();
+      int lastDot = ctype.lastIndexOf('.');
+      if (lastDot != -1) {
+        ctype = ctype.substring(lastDot + 1);
+      }
+      String cname = " " + ctype + "=" + (propertyNumber + 1) + ":"
+        + getPropertyArrayValue(propertyNumber).getClass().getName();
+      current += cname;
+    }
+    String dname = ((File) getDatasets().elementAt(datasetNumber)).getName();
+    current += " Dataset=" + dname + " Run=" + runNumber;
+
+    return current;
+  }
+
+  /**
+   * Runs all iterations of the experiment, continuing past errors. With more
+   * than one execution slot, the iterations are run in parallel (see
+   * ParallelExperimentRunner).
+   * 
+   * @param verbose whether to output progress information to stdout
+   */
   public void runExperiment(boolean verbose) {
 
+    if (getNumExecutionSlots() > 1) {
+      try {
+        new ParallelExperimentRunner(this, getNumExecutionSlots())
+          .run(verbose);
+      } catch (Exception ex) {
+        ex.printStackTrace();
+        System.err.println(ex.getMessage());
+      }
+      return;
+    }
+
     while (hasMoreIterations()) {
       try {
         if (verbose) {
-          String current = "Iteration:";
-          if (getUsePropertyIterator()) {
-            int cnum = getCurrentPropertyNumber();
-            String ctype = getPropertyArray().getClass().getComponentType()
-              .getName();
-            int lastDot = ctype.lastIndexOf('.');
-            if (lastDot != -1) {
-              ctype = ctype.substring(lastDot + 1);
-            }
-            String cname = " " + ctype + "=" + (cnum + 1) + ":"
-              + getPropertyArrayValue(cnum).getClass().getName();
-            current += cname;
-          }
-          String dname = ((File) getDatasets().elementAt(
-            getCurrentDatasetNumber())).getName();
-          current += " Dataset=" + dname + " Run=" + (getCurrentRunNumber());
-
-          System.out.println(current);
+          System.out.println(describeIteration(getCurrentPropertyNumber(),
+            getCurrentDatasetNumber(), getCurrentRunNumber()));
         }
 
         nextIteration();
@@ -675,6 +774,8 @@ public class Experiment implements Serializable, OptionHandler, RevisionHandler
   public void postProcess() throws Exception {
 
     m_ResultProducer.postProcess();
+    m_DatasetCache = null;
+    DataSplitCache.clear();
   }
 
   /**
@@ -795,6 +896,28 @@ public class Experiment implements Serializable, OptionHandler, RevisionHandler
     m_Notes = newNotes;
   }
 
+  /**
+   * Get the number of threads to run the iterations of the experiment on.
+   * 
+   * @return the number of threads
+   */
+  public int getNumExecutionSlots() {
+
+    return m_NumExecutionSlots;
+  }
+
+  /**
+   * Set the number of threads to run the iterations of the experiment on. If
+   * greater than 1, each iteration (custom property value, dataset and run)
+   * runs on its own copy of the result producer.
+   * 
+   * @param newNumExecutionSlots the number of threads
+   */
+  public void setNumExecutionSlots(int newNumExecutionSlots) {
+
+    m_NumExecutionSlots = newNumExecutionSlots;
+  }
+
   /**
    * Returns an enumeration describing the available options..
    * 
@@ -803,7 +926,7 @@ public class Experiment implements Serializable, OptionHandler, RevisionHandler
   @Override
   public Enumeration<Option> listOptions() {
 
-    Vector<Option> newVector = new Vector<Option>(6);
+    Vector<Option> newVector = new Vector<Option>(7);
 
     newVector.addElement(new Option(
       "\tThe lower run number to start the experiment from.\n"
@@ -826,6 +949,9 @@ public class Experiment implements Serializable, OptionHandler, RevisionHandler
     newVector.addElement(new Option(
       "\tA string containing any notes about the experiment.\n"
         + "\t(default none)", "N", 1, "-N <string>"));
+    newVector.addElement(new Option(
+      "\tThe number of threads to run the iterations of the experiment on.\n"
+        + "\t(default 1)", "num-slots", 1, "-num-slots <num>"));
 
     if ((m_ResultProducer != null)
       && (m_ResultProducer instanceof OptionHandler)) {
@@ -882,6 +1008,12 @@ public class Experiment implements Serializable, OptionHandler, RevisionHandler
    * </pre>
    * 
    * <pre>
+   * -num-slots &lt;num&gt;
+   *  The number of threads to run the iterations of the experiment on.
+   *  (default 1)
+   * </pre>
+   * 
+   * <pre>
    * Options specific to result producer weka.experiment.RandomSplitResultProducer:
    * </pre>
    * 
@@ -987,6 +1119,13 @@ public class Experiment implements Serializable, OptionHandler, RevisionHandler
 
     setNotes(Utils.getOption('N', options));
 
+    String slotsString = Utils.getOption("num-slots", options);
+    if (slotsString.length() != 0) {
+      setNumExecutionSlots(Integer.parseInt(slotsString));
+    } else {
+      setNumExecutionSlots(1);
+    }
+
     getDatasets().removeAllElements();
     String dataName;
     do {
@@ -1056,7 +1195,7 @@ public class Experiment implements Serializable, OptionHandler, RevisionHandler
     }
 
     String[] options = new String[rpOptions.length + getDatasets().size() * 2
-      + 11];
+      + 13];
     int current = 0;
 
     options[current++] = "-L";
@@ -1081,6 +1220,10 @@ public class Experiment implements Serializable, OptionHandler, RevisionHandler
       options[current++] = "-N";
       options[current++] = getNotes();
     }
+    if (getNumExecutionSlots() > 1) {
+      options[current++] = "-num-slots";
+      options[current++] = "" + getNumExecutionSlots();
+    }
     options[current++] = "--";
 
     System.arraycopy(rpOptions, 0, options, current, rpOptions.length);
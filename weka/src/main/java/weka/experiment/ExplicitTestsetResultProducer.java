@@ -746,7 +746,7 @@ public class ExplicitTestsetResultProducer implements ResultProducer,
   public void doRun(int run) throws Exception {
     if (getRawOutput()) {
       if (m_ZipDest == null) {
-        m_ZipDest = new OutputZipper(m_OutputFile);
+        m_ZipDest = OutputZipper.forDestination(m_OutputFile);
       }
     }
 
@@ -25,6 +25,8 @@ package weka.experiment;
 import java.io.DataOutputStream;
 import java.io.File;
 import java.io.FileOutputStream;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.zip.GZIPOutputStream;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipOutputStream;
@@ -38,7 +40,9 @@ import weka.core.RevisionUtils;
  * each output string will be written to an individually named
  * gzip file. If the destination file is a file, then each
  * output string is appended as a named entry to the zip file until
- * finished() is called to close the file.
+ * finished() is called to close the file. While sharing is enabled
+ * (see startSharing()), all result producers writing to the same zip
+ * file use the same zipper, which is closed by stopSharing().
  *
  * @author Mark Hall (mhall@cs.waikato.ac.nz)
  * @version $Revision$
@@ -50,6 +54,15 @@ public class OutputZipper
   DataOutputStream m_zipOut = null;
   ZipOutputStream m_zs = null;
 
+  /** whether the zipper is shared, i.e., only closed by stopSharing() */
+  boolean m_shared = false;
+
+  /** the shared zippers per zip file, null if sharing is not enabled */
+  static Map<File, OutputZipper> m_sharedZippers = null;
+
+  /** the number of callers that enabled sharing */
+  static int m_sharingCount = 0;
+
   /**
    * Constructor.
    * 
@@ -76,7 +89,8 @@ public class OutputZipper
    * @param name the name of the file/entry to save it to
    * @throws Exception if something goes wrong
    */
-  public void zipit(String outString, String name) throws Exception {
+  public synchronized void zipit(String outString, String name)
+    throws Exception {
     File saveFile;
     ZipEntry ze;
     
@@ -97,15 +111,86 @@ public class OutputZipper
   }
 
   /**
-   * Closes the zip file.
+   * Closes the zip file, unless the zipper is shared.
    * 
    * @throws Exception if something goes wrong
    */
-  public void finished() throws Exception {
-    if (m_zipOut != null) {
+  public synchronized void finished() throws Exception {
+    if ((m_zipOut != null) && !m_shared) {
       m_zipOut.close();
     }
   }
+
+  /**
+   * Returns a zipper for the given destination. While sharing is enabled,
+   * the same zipper is returned for the same zip file, otherwise a new one.
+   * 
+   * @param destination a destination file or directory
+   * @return the zipper
+   * @throws Exception if something goes wrong.
+   */
+  public static synchronized OutputZipper forDestination(File destination)
+    throws Exception {
+    if ((m_sharedZippers == null) || destination.isDirectory()) {
+      return new OutputZipper(destination);
+    }
+
+    File key = destination.getAbsoluteFile();
+    OutputZipper result = m_sharedZippers.get(key);
+    if (result == null) {
+      result = new OutputZipper(destination);
+      result.m_shared = true;
+      m_sharedZippers.put(key, result);
+    }
+    return result;
+  }
+
+  /**
+   * Enables sharing of zip files between result producers that run in
+   * parallel, e.g., copies of the same result producer. Must be followed by
+   * a call to stopSharing().
+   */
+  public static synchronized void startSharing() {
+    if (m_sharingCount == 0) {
+      m_sharedZippers = new HashMap<File, OutputZipper>();
+    }
+    m_sharingCount++;
+  }
+
+  /**
+   * Ends sharing of zip files. Once all callers of startSharing() have
+   * called this method, the shared zip files are closed.
+   * 
+   * @throws Exception if closing a zip file fails
+   */
+  public static synchronized void stopSharing() throws Exception {
+    if (m_sharingCount == 0) {
+      return;
+    }
+    m_sharingCount--;
+    if (m_sharingCount > 0) {
+      return;
+    }
+
+    Map<File, OutputZipper> zippers = m_sharedZippers;
+    m_sharedZippers = null;
+    Exception error = null;
+    for (OutputZipper zipper : zippers.values()) {
+      synchronized (zipper) {
+        zipper.m_shared = false;
+      }
+      try {
+        zipper.finished();
+      } catch (Exception ex) {
+        if (error == null) {
+          error = ex;
+        }
+      }
+    }
+    if (error != null) {
+      throw error;
+    }
+  }
   
   /**
    * Returns the revision string.
@@ -23,7 +23,6 @@ package weka.experiment;
 
 import java.io.BufferedReader;
 import java.io.FileReader;
-import java.util.ArrayList;
 import java.util.Enumeration;
 
 import weka.core.Attribute;
@@ -127,6 +126,12 @@ import weka.core.Utils;
  *  Produce table comparisons output suitable for GNUPlot
  * </pre>
  * 
+ * <pre>
+ * -num-slots &lt;num&gt;
+ *  The number of threads to compute the statistics on.
+ *  (default 1)
+ * </pre>
+ * 
  * <!-- options-end -->
  * 
  * @author Richard Kirkby (rkirkby@cs.waikato.ac.nz)
@@ -186,19 +191,21 @@ public class PairedCorrectedTTester extends PairedTTester implements
       prepareData();
     }
 
-    Resultset resultset1 = (Resultset) m_Resultsets.get(resultset1Index);
-    Resultset resultset2 = (Resultset) m_Resultsets.get(resultset2Index);
-    ArrayList<Instance> dataset1 = resultset1.dataset(datasetSpecifier);
-    ArrayList<Instance> dataset2 = resultset2.dataset(datasetSpecifier);
-    String datasetName = templateString(datasetSpecifier);
+    Resultset resultset1 = m_Resultsets.get(resultset1Index);
+    Resultset resultset2 = m_Resultsets.get(resultset2Index);
+    Dataset dataset1 = resultset1.getDataset(datasetSpecifier);
+    Dataset dataset2 = resultset2.getDataset(datasetSpecifier);
     if (dataset1 == null) {
-      throw new Exception("No results for dataset=" + datasetName
-        + " for resultset=" + resultset1.templateString());
+      throw new Exception("No results for dataset="
+        + templateString(datasetSpecifier) + " for resultset="
+        + resultset1.templateString());
     } else if (dataset2 == null) {
-      throw new Exception("No results for dataset=" + datasetName
-        + " for resultset=" + resultset2.templateString());
-    } else if (dataset1.size() != dataset2.size()) {
-      throw new Exception("Results for dataset=" + datasetName
+      throw new Exception("No results for dataset="
+        + templateString(datasetSpecifier) + " for resultset="
+        + resultset2.templateString());
+    } else if (dataset1.contents().size() != dataset2.contents().size()) {
+      throw new Exception("Results for dataset="
+        + templateString(datasetSpecifier)
         + " differ in size for resultset=" + resultset1.templateString()
         + " and resultset=" + resultset2.templateString());
     }
@@ -220,43 +227,17 @@ public class PairedCorrectedTTester extends PairedTTester implements
     if (trainSizeIndex >= 0 && testSizeIndex >= 0) {
       double totalTrainSize = 0.0;
       double totalTestSize = 0.0;
-      for (int k = 0; k < dataset1.size(); k++) {
-        Instance current = dataset1.get(k);
-        totalTrainSize += current.value(trainSizeIndex);
-        totalTestSize += current.value(testSizeIndex);
+      double[] trainSizes = dataset1.values(trainSizeIndex);
+      double[] testSizes = dataset1.values(testSizeIndex);
+      for (int k = 0; k < trainSizes.length; k++) {
+        totalTrainSize += trainSizes[k];
+        totalTestSize += testSizes[k];
       }
       testTrainRatio = totalTestSize / totalTrainSize;
     }
     PairedStats pairedStats = new PairedStatsCorrected(m_SignificanceLevel,
       testTrainRatio);
-
-    for (int k = 0; k < dataset1.size(); k++) {
-      Instance current1 = dataset1.get(k);
-      Instance current2 = dataset2.get(k);
-      if (current1.isMissing(comparisonColumn)) {
-        System.err.println("Instance has missing value in comparison "
-          + "column!\n" + current1);
-        continue;
-      }
-      if (current2.isMissing(comparisonColumn)) {
-        System.err.println("Instance has missing value in comparison "
-          + "column!\n" + current2);
-        continue;
-      }
-      if (current1.value(m_RunColumn) != current2.value(m_RunColumn)) {
-        System.err.println("Run numbers do not match!\n" + current1 + current2);
-      }
-      if (m_FoldColumn != -1) {
-        if (current1.value(m_FoldColumn) != current2.value(m_FoldColumn)) {
-          System.err.println("Fold numbers do not match!\n" + current1
-            + current2);
-        }
-      }
-
-      double value1 = current1.value(comparisonColumn);
-      double value2 = current2.value(comparisonColumn);
-      pairedStats.add(value1, value2);
-    }
+    addValues(pairedStats, dataset1, dataset2, comparisonColumn);
     pairedStats.calculateDerived();
     return pairedStats;
   }
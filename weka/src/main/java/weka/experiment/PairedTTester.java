@@ -26,6 +26,11 @@ import java.io.FileReader;
 import java.io.Serializable;
 import java.text.SimpleDateFormat;
 import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import weka.core.Attribute;
 import weka.core.Instance;
@@ -103,8 +108,19 @@ import weka.core.Utils;
  *  Produce table comparisons output suitable for GNUPlot
  * </pre>
  * 
+ * <pre>
+ * -num-slots &lt;num&gt;
+ *  The number of threads to compute the statistics on.
+ *  (default 1)
+ * </pre>
+ * 
  * <!-- options-end -->
  * 
+ * Results are grouped into resultsets and datasets with hash tables on the
+ * key column values, and the values of the compared columns are extracted
+ * into arrays once per dataset, so that switching the comparison column only
+ * requires computing the statistics.
+ * 
  * @author Len Trigg (trigg@cs.waikato.ac.nz)
  * @version $Revision$
  */
@@ -164,6 +180,10 @@ public class PairedTTester implements OptionHandler, Tester, RevisionHandler {
   /** Stores a vector for each resultset holding all instances in each set */
   protected ArrayList<Resultset> m_Resultsets = new ArrayList<Resultset>();
 
+  /** the resultsets, indexed by the values of the resultset key columns */
+  protected HashMap<List<Double>, Resultset> m_ResultsetIndex =
+    new HashMap<List<Double>, Resultset>();
+
   /** Indicates whether the instances have been partitioned */
   protected boolean m_ResultsetsValid;
 
@@ -173,6 +193,9 @@ public class PairedTTester implements OptionHandler, Tester, RevisionHandler {
   /** the instance of the class to produce the output. */
   protected ResultMatrix m_ResultMatrix = new ResultMatrixPlainText();
 
+  /** the number of threads to compute the statistics on */
+  protected int m_NumExecutionSlots = 1;
+
   /** A list of unique "dataset" specifiers that have been observed */
   protected class DatasetSpecifiers implements RevisionHandler, Serializable {
 
@@ -182,12 +205,16 @@ public class PairedTTester implements OptionHandler, Tester, RevisionHandler {
     /** the specifiers that have been observed */
     ArrayList<Instance> m_Specifiers = new ArrayList<Instance>();
 
+    /** the dataset key column values of the specifiers */
+    HashSet<List<Double>> m_Keys = new HashSet<List<Double>>();
+
     /**
      * Removes all specifiers.
      */
     protected void removeAllSpecifiers() {
 
       m_Specifiers.clear();
+      m_Keys.clear();
     }
 
     /**
@@ -197,20 +224,9 @@ public class PairedTTester implements OptionHandler, Tester, RevisionHandler {
      */
     protected void add(Instance inst) {
 
-      for (int i = 0; i < m_Specifiers.size(); i++) {
-        Instance specifier = m_Specifiers.get(i);
-        boolean found = true;
-        for (int m_DatasetKeyColumn : m_DatasetKeyColumns) {
-          if (inst.value(m_DatasetKeyColumn) != specifier
-            .value(m_DatasetKeyColumn)) {
-            found = false;
-          }
-        }
-        if (found) {
-          return;
-        }
+      if (m_Keys.add(datasetIndexKey(inst))) {
+        m_Specifiers.add(inst);
       }
-      m_Specifiers.add(inst);
     }
 
     /**
@@ -257,6 +273,9 @@ public class PairedTTester implements OptionHandler, Tester, RevisionHandler {
     /** the dataset */
     ArrayList<Instance> m_Dataset;
 
+    /** the values of the columns extracted so far */
+    HashMap<Integer, double[]> m_Values = new HashMap<Integer, double[]>();
+
     /**
      * Constructor
      * 
@@ -295,6 +314,7 @@ public class PairedTTester implements OptionHandler, Tester, RevisionHandler {
     protected void add(Instance inst) {
 
       m_Dataset.add(inst);
+      m_Values.clear();
     }
 
     /**
@@ -307,6 +327,26 @@ public class PairedTTester implements OptionHandler, Tester, RevisionHandler {
       return m_Dataset;
     }
 
+    /**
+     * Returns the values of a column for all instances in the dataset, in the
+     * same order. The values are extracted once and then cached.
+     * 
+     * @param column the index of the column
+     * @return the values
+     */
+    protected synchronized double[] values(int column) {
+
+      double[] result = m_Values.get(column);
+      if (result == null) {
+        result = new double[m_Dataset.size()];
+        for (int i = 0; i < result.length; i++) {
+          result[i] = m_Dataset.get(i).value(column);
+        }
+        m_Values.put(column, result);
+      }
+      return result;
+    }
+
     /**
      * Sorts the instances in the dataset by the run number.
      * 
@@ -324,6 +364,7 @@ public class PairedTTester implements OptionHandler, Tester, RevisionHandler {
         newDataset.add(m_Dataset.get(element));
       }
       m_Dataset = newDataset;
+      m_Values.clear();
     }
 
     /**
@@ -349,6 +390,10 @@ public class PairedTTester implements OptionHandler, Tester, RevisionHandler {
     /** the dataset */
     ArrayList<Dataset> m_Datasets;
 
+    /** the datasets, indexed by the values of the dataset key columns */
+    HashMap<List<Double>, Dataset> m_DatasetIndex =
+      new HashMap<List<Double>, Dataset>();
+
     /**
      * Constructir
      * 
@@ -410,12 +455,22 @@ public class PairedTTester implements OptionHandler, Tester, RevisionHandler {
      */
     public ArrayList<Instance> dataset(Instance inst) {
 
-      for (int i = 0; i < m_Datasets.size(); i++) {
-        if (m_Datasets.get(i).matchesTemplate(inst)) {
-          return m_Datasets.get(i).contents();
-        }
+      Dataset dataset = getDataset(inst);
+      if (dataset == null) {
+        return null;
       }
-      return null;
+      return dataset.contents();
+    }
+
+    /**
+     * Returns the dataset the given instance belongs to.
+     * 
+     * @param inst a template instance
+     * @return the dataset, null if there are no results for it
+     */
+    protected Dataset getDataset(Instance inst) {
+
+      return m_DatasetIndex.get(datasetIndexKey(inst));
     }
 
     /**
@@ -425,14 +480,15 @@ public class PairedTTester implements OptionHandler, Tester, RevisionHandler {
      */
     public void add(Instance newInst) {
 
-      for (int i = 0; i < m_Datasets.size(); i++) {
-        if (m_Datasets.get(i).matchesTemplate(newInst)) {
-          m_Datasets.get(i).add(newInst);
-          return;
-        }
+      List<Double> key = datasetIndexKey(newInst);
+      Dataset dataset = m_DatasetIndex.get(key);
+      if (dataset != null) {
+        dataset.add(newInst);
+        return;
       }
       Dataset newDataset = new Dataset(newInst);
       m_Datasets.add(newDataset);
+      m_DatasetIndex.put(key, newDataset);
     }
 
     /**
@@ -458,6 +514,47 @@ public class PairedTTester implements OptionHandler, Tester, RevisionHandler {
     }
   } // Resultset
 
+  /**
+   * Returns the values of the given columns, for looking up instances that
+   * match on these columns.
+   * 
+   * @param inst the instance
+   * @param columns the indices of the columns
+   * @return the values
+   */
+  protected List<Double> indexKey(Instance inst, int[] columns) {
+
+    List<Double> result = new ArrayList<Double>(columns.length);
+    for (int column : columns) {
+      // adding 0 turns -0 into +0, as the two are equal when compared as
+      // double values, but not as Double objects
+      result.add(inst.value(column) + 0.0);
+    }
+    return result;
+  }
+
+  /**
+   * Returns the values of the dataset key columns.
+   * 
+   * @param inst the instance
+   * @return the values
+   */
+  protected List<Double> datasetIndexKey(Instance inst) {
+
+    return indexKey(inst, m_DatasetKeyColumns);
+  }
+
+  /**
+   * Returns the values of the resultset key columns.
+   * 
+   * @param inst the instance
+   * @return the values
+   */
+  protected List<Double> resultsetIndexKey(Instance inst) {
+
+    return indexKey(inst, m_ResultsetKeyColumns);
+  }
+
   /**
    * Returns a string descriptive of the key column values for the "datasets
    * 
@@ -547,6 +644,7 @@ public class PairedTTester implements OptionHandler, Tester, RevisionHandler {
 
     // Split the data up into result sets
     m_Resultsets.clear();
+    m_ResultsetIndex.clear();
     m_DatasetSpecifiers.removeAllSpecifiers();
     for (int i = 0; i < m_Instances.numInstances(); i++) {
       Instance current = m_Instances.instance(i);
@@ -566,18 +664,14 @@ public class PairedTTester implements OptionHandler, Tester, RevisionHandler {
             + "column " + (m_DatasetKeyColumn + 1) + "!\n" + current);
         }
       }
-      boolean found = false;
-      for (int j = 0; j < m_Resultsets.size(); j++) {
-        Resultset resultset = m_Resultsets.get(j);
-        if (resultset.matchesTemplate(current)) {
-          resultset.add(current);
-          found = true;
-          break;
-        }
-      }
-      if (!found) {
-        Resultset resultset = new Resultset(current);
+      List<Double> key = resultsetIndexKey(current);
+      Resultset resultset = m_ResultsetIndex.get(key);
+      if (resultset != null) {
+        resultset.add(current);
+      } else {
+        resultset = new Resultset(current);
         m_Resultsets.add(resultset);
+        m_ResultsetIndex.put(key, resultset);
       }
 
       m_DatasetSpecifiers.add(current);
@@ -707,54 +801,165 @@ public class PairedTTester implements OptionHandler, Tester, RevisionHandler {
 
     Resultset resultset1 = m_Resultsets.get(resultset1Index);
     Resultset resultset2 = m_Resultsets.get(resultset2Index);
-    ArrayList<Instance> dataset1 = resultset1.dataset(datasetSpecifier);
-    ArrayList<Instance> dataset2 = resultset2.dataset(datasetSpecifier);
-    String datasetName = templateString(datasetSpecifier);
+    Dataset dataset1 = resultset1.getDataset(datasetSpecifier);
+    Dataset dataset2 = resultset2.getDataset(datasetSpecifier);
     if (dataset1 == null) {
-      throw new Exception("No results for dataset=" + datasetName
-        + " for resultset=" + resultset1.templateString());
+      throw new Exception("No results for dataset="
+        + templateString(datasetSpecifier) + " for resultset="
+        + resultset1.templateString());
     } else if (dataset2 == null) {
-      throw new Exception("No results for dataset=" + datasetName
-        + " for resultset=" + resultset2.templateString());
-    } else if (dataset1.size() != dataset2.size()) {
-      throw new Exception("Results for dataset=" + datasetName
+      throw new Exception("No results for dataset="
+        + templateString(datasetSpecifier) + " for resultset="
+        + resultset2.templateString());
+    } else if (dataset1.contents().size() != dataset2.contents().size()) {
+      throw new Exception("Results for dataset="
+        + templateString(datasetSpecifier)
         + " differ in size for resultset=" + resultset1.templateString()
         + " and resultset=" + resultset2.templateString());
     }
 
     PairedStats pairedStats = new PairedStats(m_SignificanceLevel);
+    addValues(pairedStats, dataset1, dataset2, comparisonColumn);
+    pairedStats.calculateDerived();
+    // System.err.println("Differences stats:\n" +
+    // pairedStats.differencesStats);
+    return pairedStats;
+
+  }
 
-    for (int k = 0; k < dataset1.size(); k++) {
-      Instance current1 = dataset1.get(k);
-      Instance current2 = dataset2.get(k);
-      if (current1.isMissing(comparisonColumn)) {
+  /**
+   * Adds the pairs of values of the comparison column of two datasets to the
+   * statistics, skipping pairs where a value is missing. Pairs with differing
+   * run or fold numbers are reported, but still added.
+   * 
+   * @param pairedStats the statistics to add the values to
+   * @param dataset1 the results of the first resultset
+   * @param dataset2 the results of the second resultset (of the same size)
+   * @param comparisonColumn the column containing values to compare
+   */
+  protected void addValues(PairedStats pairedStats, Dataset dataset1,
+    Dataset dataset2, int comparisonColumn) {
+
+    double[] values1 = dataset1.values(comparisonColumn);
+    double[] values2 = dataset2.values(comparisonColumn);
+    double[] runs1 = dataset1.values(m_RunColumn);
+    double[] runs2 = dataset2.values(m_RunColumn);
+    double[] folds1 = null;
+    double[] folds2 = null;
+    if (m_FoldColumn != -1) {
+      folds1 = dataset1.values(m_FoldColumn);
+      folds2 = dataset2.values(m_FoldColumn);
+    }
+
+    for (int k = 0; k < values1.length; k++) {
+      if (Utils.isMissingValue(values1[k])) {
         System.err.println("Instance has missing value in comparison "
-          + "column!\n" + current1);
+          + "column!\n" + dataset1.contents().get(k));
         continue;
       }
-      if (current2.isMissing(comparisonColumn)) {
+      if (Utils.isMissingValue(values2[k])) {
         System.err.println("Instance has missing value in comparison "
-          + "column!\n" + current2);
+          + "column!\n" + dataset2.contents().get(k));
         continue;
       }
-      if (current1.value(m_RunColumn) != current2.value(m_RunColumn)) {
-        System.err.println("Run numbers do not match!\n" + current1 + current2);
+      if (runs1[k] != runs2[k]) {
+        System.err.println("Run numbers do not match!\n"
+          + dataset1.contents().get(k) + dataset2.contents().get(k));
       }
       if (m_FoldColumn != -1) {
-        if (current1.value(m_FoldColumn) != current2.value(m_FoldColumn)) {
-          System.err.println("Fold numbers do not match!\n" + current1
-            + current2);
+        if (folds1[k] != folds2[k]) {
+          System.err.println("Fold numbers do not match!\n"
+            + dataset1.contents().get(k) + dataset2.contents().get(k));
         }
       }
-      double value1 = current1.value(comparisonColumn);
-      double value2 = current2.value(comparisonColumn);
-      pairedStats.add(value1, value2);
+      pairedStats.add(values1[k], values2[k]);
+    }
+  }
+
+  /**
+   * Computes the paired comparisons between the given pairs of resultsets for
+   * all datasets. The datasets are distributed over the number of threads set
+   * with setNumExecutionSlots. Comparisons that fail are null, with the
+   * exception stored in the errors array instead.
+   * 
+   * @param pairs the pairs of resultset indices to compare
+   * @param comparisonColumn the column containing values to compare
+   * @param errors for storing the exceptions, indexed by dataset and pair
+   * @return the statistics, indexed by dataset and pair
+   * @throws Exception if the computation is interrupted
+   */
+  protected PairedStats[][] calculateStatistics(final int[][] pairs,
+    final int comparisonColumn, final Exception[][] errors) throws Exception {
+
+    final PairedStats[][] result = new PairedStats[errors.length][];
+    int numThreads = Math.min(m_NumExecutionSlots, errors.length);
+    if (numThreads <= 1) {
+      calculateStatistics(pairs, comparisonColumn, 0, errors.length, result,
+        errors);
+      return result;
+    }
+
+    // several chunks per thread, to even out the load
+    int chunkSize = Math.max(1, errors.length / (4 * numThreads));
+    ExecutorService pool = Executors.newFixedThreadPool(numThreads);
+    try {
+      ArrayList<Future<Object>> futures = new ArrayList<Future<Object>>();
+      for (int i = 0; i < errors.length; i += chunkSize) {
+        final int from = i;
+        final int to = Math.min(errors.length, i + chunkSize);
+        futures.add(pool.submit(new Callable<Object>() {
+          @Override
+          public Object call() {
+            calculateStatistics(pairs, comparisonColumn, from, to, result,
+              errors);
+            return null;
+          }
+        }));
+      }
+      for (Future<Object> future : futures) {
+        try {
+          future.get();
+        } catch (ExecutionException ex) {
+          if (ex.getCause() instanceof Exception) {
+            throw (Exception) ex.getCause();
+          }
+          throw ex;
+        }
+      }
+    } finally {
+      pool.shutdownNow();
     }
-    pairedStats.calculateDerived();
-    // System.err.println("Differences stats:\n" +
-    // pairedStats.differencesStats);
-    return pairedStats;
 
+    return result;
+  }
+
+  /**
+   * Computes the paired comparisons between the given pairs of resultsets for
+   * a range of datasets.
+   * 
+   * @param pairs the pairs of resultset indices to compare
+   * @param comparisonColumn the column containing values to compare
+   * @param fromDataset the first dataset
+   * @param toDataset the dataset after the last one
+   * @param result for storing the statistics, indexed by dataset and pair
+   * @param errors for storing the exceptions, indexed by dataset and pair
+   */
+  protected void calculateStatistics(int[][] pairs, int comparisonColumn,
+    int fromDataset, int toDataset, PairedStats[][] result,
+    Exception[][] errors) {
+
+    for (int k = fromDataset; k < toDataset; k++) {
+      result[k] = new PairedStats[pairs.length];
+      for (int p = 0; p < pairs.length; p++) {
+        try {
+          result[k][p] =
+            calculateStatistics(m_DatasetSpecifiers.specifier(k), pairs[p][0],
+              pairs[p][1], comparisonColumn);
+        } catch (Exception ex) {
+          errors[k][p] = ex;
+        }
+      }
+    }
   }
 
   /**
@@ -832,28 +1037,36 @@ public class PairedTTester implements OptionHandler, Tester, RevisionHandler {
     int[][] win = new int[numResultsets][numResultsets];
     // int [][] nonSigWin = new int [numResultsets][numResultsets];
     for (int i = 0; i < numResultsets; i++) {
+      // compare with all later resultsets at once
+      int[][] pairs = new int[numResultsets - i - 1][];
+      for (int j = i + 1; j < numResultsets; j++) {
+        pairs[j - i - 1] = new int[] { i, j };
+      }
+      Exception[][] errors = new Exception[getNumDatasets()][pairs.length];
+      PairedStats[][] stats =
+        calculateStatistics(pairs, comparisonColumn, errors);
+
       for (int j = i + 1; j < numResultsets; j++) {
         System.err
           .print("Comparing (" + (i + 1) + ") with (" + (j + 1) + ")\r");
         System.err.flush();
         for (int k = 0; k < getNumDatasets(); k++) {
-          try {
-            PairedStats pairedStats = calculateStatistics(
-              m_DatasetSpecifiers.specifier(k), i, j, comparisonColumn);
-            if (pairedStats.differencesSignificance < 0) {
-              win[i][j]++;
-            } else if (pairedStats.differencesSignificance > 0) {
-              win[j][i]++;
-            }
-
-            if (pairedStats.differencesStats.mean < 0) {
-              nonSigWin[i][j]++;
-            } else if (pairedStats.differencesStats.mean > 0) {
-              nonSigWin[j][i]++;
-            }
-          } catch (Exception ex) {
+          PairedStats pairedStats = stats[k][j - i - 1];
+          if (pairedStats == null) {
             // ex.printStackTrace();
-            System.err.println(ex.getMessage());
+            System.err.println(errors[k][j - i - 1].getMessage());
+            continue;
+          }
+          if (pairedStats.differencesSignificance < 0) {
+            win[i][j]++;
+          } else if (pairedStats.differencesSignificance > 0) {
+            win[j][i]++;
+          }
+
+          if (pairedStats.differencesStats.mean < 0) {
+            nonSigWin[i][j]++;
+          } else if (pairedStats.differencesStats.mean > 0) {
+            nonSigWin[j][i]++;
           }
         }
       }
@@ -938,6 +1151,22 @@ public class PairedTTester implements OptionHandler, Tester, RevisionHandler {
 
     double[] sortValues = new double[getNumDatasets()];
 
+    // compare the base with all resultsets (and itself on the sort column)
+    int[][] pairs = new int[getNumResultsets()][];
+    for (int j = 0; j < getNumResultsets(); j++) {
+      pairs[j] = new int[] { baseResultset, j };
+    }
+    Exception[][] errors = new Exception[getNumDatasets()][pairs.length];
+    PairedStats[][] stats =
+      calculateStatistics(pairs, comparisonColumn, errors);
+    Exception[][] sortErrors = new Exception[getNumDatasets()][1];
+    PairedStats[][] sortStats = null;
+    if ((getSortColumn() != -1) && displayResultset(baseResultset)) {
+      sortStats =
+        calculateStatistics(new int[][] { { baseResultset, baseResultset } },
+          getSortColumn(), sortErrors);
+    }
+
     // determine max field width
     for (int i = 0; i < getNumDatasets(); i++) {
       sortValues[i] = Double.POSITIVE_INFINITY; // sorts skipped cols to end
@@ -947,9 +1176,10 @@ public class PairedTTester implements OptionHandler, Tester, RevisionHandler {
           continue;
         }
         try {
-          PairedStats pairedStats = calculateStatistics(
-            m_DatasetSpecifiers.specifier(i), baseResultset, j,
-            comparisonColumn);
+          PairedStats pairedStats = stats[i][j];
+          if (pairedStats == null) {
+            throw errors[i][j];
+          }
           if (!Double.isInfinite(pairedStats.yStats.mean)
             && !Double.isNaN(pairedStats.yStats.mean)) {
             double width = ((Math.log(Math.abs(pairedStats.yStats.mean)) / Math
@@ -961,9 +1191,10 @@ public class PairedTTester implements OptionHandler, Tester, RevisionHandler {
 
           if (j == baseResultset) {
             if (getSortColumn() != -1) {
-              sortValues[i] = calculateStatistics(
-                m_DatasetSpecifiers.specifier(i), baseResultset, j,
-                getSortColumn()).xStats.mean;
+              if (sortStats[i][0] == null) {
+                throw sortErrors[i][0];
+              }
+              sortValues[i] = sortStats[i][0].xStats.mean;
             } else {
               sortValues[i] = i;
             }
@@ -1024,9 +1255,10 @@ public class PairedTTester implements OptionHandler, Tester, RevisionHandler {
       for (int j = 0; j < getNumResultsets(); j++) {
         try {
           // calc stats
-          PairedStats pairedStats = calculateStatistics(
-            m_DatasetSpecifiers.specifier(i), baseResultset, j,
-            comparisonColumn);
+          PairedStats pairedStats = stats[i][j];
+          if (pairedStats == null) {
+            throw errors[i][j];
+          }
 
           // count
           m_ResultMatrix.setCount(i, pairedStats.count);
@@ -1116,6 +1348,9 @@ public class PairedTTester implements OptionHandler, Tester, RevisionHandler {
     newVector.addElement(new Option(
       "\tProduce table comparisons output suitable for GNUPlot", "gnuplot", 0,
       "-gnuplot"));
+    newVector.addElement(new Option(
+      "\tThe number of threads to compute the statistics on.\n"
+        + "\t(default 1)", "num-slots", 1, "-num-slots <num>"));
     newVector.addElement(new Option(
             "",
             "", 0, "\nOptions specific to result matrix "
@@ -1191,6 +1426,12 @@ public class PairedTTester implements OptionHandler, Tester, RevisionHandler {
    *  Produce table comparisons output suitable for GNUPlot
    * </pre>
    * 
+   * <pre>
+   * -num-slots &lt;num&gt;
+   *  The number of threads to compute the statistics on.
+   *  (default 1)
+   * </pre>
+   * 
    * <!-- options-end -->
    * 
    * @param options an array containing options to set.
@@ -1263,6 +1504,13 @@ public class PairedTTester implements OptionHandler, Tester, RevisionHandler {
       generatorRange.setRanges(resultsetList);
     }
     setResultsetKeyColumns(generatorRange);
+
+    String slotsStr = Utils.getOption("num-slots", options);
+    if (slotsStr.length() != 0) {
+      setNumExecutionSlots(Integer.parseInt(slotsStr));
+    } else {
+      setNumExecutionSlots(1);
+    }
   }
 
   /**
@@ -1292,6 +1540,11 @@ public class PairedTTester implements OptionHandler, Tester, RevisionHandler {
       options.add("-V");
     }
 
+    if (getNumExecutionSlots() > 1) {
+      options.add("-num-slots");
+      options.add("" + getNumExecutionSlots());
+    }
+
     options.add("-result-matrix");
     String spec = getResultMatrix().getClass().getName();
     if (getResultMatrix() instanceof OptionHandler) {
@@ -1302,6 +1555,27 @@ public class PairedTTester implements OptionHandler, Tester, RevisionHandler {
     return options.toArray(new String[options.size()]);
   }
 
+  /**
+   * Get the number of threads the statistics are computed on.
+   * 
+   * @return the number of threads
+   */
+  public int getNumExecutionSlots() {
+
+    return m_NumExecutionSlots;
+  }
+
+  /**
+   * Set the number of threads the statistics are computed on. The statistics
+   * are the same regardless of the number of threads.
+   * 
+   * @param newNumExecutionSlots the number of threads
+   */
+  public void setNumExecutionSlots(int newNumExecutionSlots) {
+
+    m_NumExecutionSlots = newNumExecutionSlots;
+  }
+
   /**
    * Get the value of ResultsetKeyColumns.
    * 
@@ -1514,6 +1788,9 @@ public class PairedTTester implements OptionHandler, Tester, RevisionHandler {
     setRunColumn(tester.getRunColumn());
     setFoldColumn(tester.getFoldColumn());
     setSortColumn(tester.getSortColumn());
+    if (tester instanceof PairedTTester) {
+      setNumExecutionSlots(((PairedTTester) tester).getNumExecutionSlots());
+    }
   }
 
   /**
@@ -0,0 +1,386 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ *    ParallelExperimentRunner.java
+ *    Copyright (C) 2026 University of Waikato, Hamilton, New Zealand
+ *
+ */
+
+package weka.experiment;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import weka.core.Instances;
+import weka.core.RevisionHandler;
+import weka.core.RevisionUtils;
+import weka.core.SerializedObject;
+
+/**
+ * Runs the iterations of an experiment on a pool of threads within the local
+ * JVM, as an alternative to distributing them to RemoteEngine servers. Every
+ * iteration (custom property value, dataset and run) is executed by its own
+ * copy of the result producer, obtained through serialization after the
+ * property value has been set. The datasets are loaded once per sequence of
+ * iterations that use them and shared read-only between the copies. <br/>
+ * <br/>
+ * The result listener of the experiment is only accessed under a lock, and
+ * always sees the result producer of the experiment rather than the copies.
+ * Its isResultRequired method is called when an iteration asks for it, so
+ * listeners that check for existing results (such as the
+ * DatabaseResultListener) allow interrupted experiments to be resumed. The
+ * results themselves are collected per iteration and passed on in the order
+ * of the sequential experiment, hence the output is the same as with
+ * Experiment.runExperiment on a single thread. <br/>
+ * <br/>
+ * Raw output of the split evaluators that goes to a zip file is written by a
+ * single zipper shared by all copies of the result producer (see
+ * OutputZipper.startSharing()), which is closed once all iterations are
+ * done. The entries may be in a different order than with a sequential run.
+ *
+ * @author The WEKA Team (wekalist@list.waikato.ac.nz)
+ * @version $Revision$
+ */
+public class ParallelExperimentRunner implements RevisionHandler {
+
+  /** the experiment to run */
+  protected Experiment m_Experiment;
+
+  /** the number of threads */
+  protected int m_NumThreads;
+
+  /**
+   * Initializes the runner.
+   *
+   * @param experiment the experiment to run (already initialized)
+   * @param numThreads the number of threads
+   */
+  public ParallelExperimentRunner(Experiment experiment, int numThreads) {
+    m_Experiment = experiment;
+    m_NumThreads = Math.max(1, numThreads);
+  }
+
+  /**
+   * Runs all remaining iterations of the experiment, continuing past errors
+   * in individual iterations.
+   *
+   * @param verbose whether to output progress information to stdout
+   * @throws Exception if the result producer can't be copied, the run is
+   *           interrupted or the raw output can't be closed
+   */
+  public void run(boolean verbose) throws Exception {
+    Experiment exp = m_Experiment;
+    ResultProducer producer = exp.getResultProducer();
+    ResultListener listener = exp.getResultListener();
+
+    ExecutorService pool = Executors.newFixedThreadPool(m_NumThreads);
+    ArrayDeque<Iteration> pending = new ArrayDeque<Iteration>();
+    int datasetNumber = -1;
+    Instances data = null;
+    OutputZipper.startSharing();
+    try {
+      while (exp.hasMoreIterations()) {
+        Iteration iteration =
+          new Iteration(exp.getCurrentPropertyNumber(),
+            exp.getCurrentDatasetNumber(), exp.getCurrentRunNumber());
+        if (verbose) {
+          iteration.m_Description =
+            exp.describeIteration(iteration.m_PropertyNumber,
+              iteration.m_DatasetNumber, iteration.m_RunNumber);
+        }
+        try {
+          if ((data == null) || (datasetNumber != iteration.m_DatasetNumber)) {
+            data = null;
+            datasetNumber = iteration.m_DatasetNumber;
+            data = exp.loadDataset(datasetNumber);
+          }
+          iteration.m_Producer =
+            copyProducer(producer, listener, iteration.m_PropertyNumber);
+          iteration.m_Producer.setInstances(data);
+          iteration.m_Listener = new IterationListener(listener, producer);
+          iteration.m_Producer.setResultListener(iteration.m_Listener);
+          iteration.m_Future = pool.submit(iteration);
+        } catch (Exception ex) {
+          iteration.m_Error = ex;
+        }
+        pending.add(iteration);
+        exp.advanceCounters();
+
+        if (pending.size() >= 2 * m_NumThreads) {
+          finish(pending.poll());
+        }
+      }
+      while (!pending.isEmpty()) {
+        finish(pending.poll());
+      }
+    } finally {
+      pool.shutdownNow();
+      OutputZipper.stopSharing();
+    }
+  }
+
+  /**
+   * Returns a copy of the result producer, with the custom property set to
+   * the given value.
+   *
+   * @param producer the result producer of the experiment
+   * @param listener the result listener of the experiment
+   * @param propertyNumber the index of the custom property value
+   * @return the copy
+   * @throws Exception if the copy can't be created
+   */
+  protected ResultProducer copyProducer(ResultProducer producer,
+    ResultListener listener, int propertyNumber) throws Exception {
+
+    if (m_Experiment.getUsePropertyIterator()) {
+      m_Experiment.setProperty(0, producer, propertyNumber);
+    }
+    // the listener and data are not to be copied
+    SerializedObject so;
+    producer.setResultListener(null);
+    producer.setInstances(null);
+    try {
+      so = new SerializedObject(producer);
+    } finally {
+      producer.setResultListener(listener);
+    }
+
+    return (ResultProducer) so.getObject();
+  }
+
+  /**
+   * Waits for an iteration to finish and passes its results on to the result
+   * listener of the experiment. Errors are reported the same way as by the
+   * sequential experiment.
+   *
+   * @param iteration the iteration
+   * @throws InterruptedException if interrupted while waiting
+   */
+  protected void finish(Iteration iteration) throws InterruptedException {
+
+    Exception error = iteration.m_Error;
+    if (iteration.m_Future != null) {
+      try {
+        iteration.m_Future.get();
+      } catch (ExecutionException ex) {
+        if (ex.getCause() instanceof Exception) {
+          error = (Exception) ex.getCause();
+        } else {
+          error = ex;
+        }
+      }
+    }
+    if (iteration.m_Description != null) {
+      System.out.println(iteration.m_Description);
+    }
+    if (iteration.m_Listener != null) {
+      try {
+        iteration.m_Listener.deliver();
+      } catch (Exception ex) {
+        if (error == null) {
+          error = ex;
+        }
+      }
+    }
+    if (error != null) {
+      error.printStackTrace();
+      System.err.println(error.getMessage());
+    }
+  }
+
+  /**
+   * A single iteration of the experiment.
+   */
+  protected static class Iteration implements Callable<Object> {
+
+    /** the index of the custom property value */
+    protected int m_PropertyNumber;
+
+    /** the index of the dataset */
+    protected int m_DatasetNumber;
+
+    /** the run number */
+    protected int m_RunNumber;
+
+    /** the progress output, null if not verbose */
+    protected String m_Description;
+
+    /** the copy of the result producer */
+    protected ResultProducer m_Producer;
+
+    /** collects the results of the iteration */
+    protected IterationListener m_Listener;
+
+    /** the pending execution */
+    protected Future<Object> m_Future;
+
+    /** the error that occurred while setting up the iteration */
+    protected Exception m_Error;
+
+    /**
+     * Initializes the iteration.
+     *
+     * @param propertyNumber the index of the custom property value
+     * @param datasetNumber the index of the dataset
+     * @param runNumber the run number
+     */
+    public Iteration(int propertyNumber, int datasetNumber, int runNumber) {
+      m_PropertyNumber = propertyNumber;
+      m_DatasetNumber = datasetNumber;
+      m_RunNumber = runNumber;
+    }
+
+    /**
+     * Performs the run.
+     *
+     * @return always null
+     * @throws Exception if the run fails
+     */
+    @Override
+    public Object call() throws Exception {
+      m_Producer.doRun(m_RunNumber);
+      return null;
+    }
+  }
+
+  /**
+   * Collects the results of an iteration until they can be passed on to the
+   * result listener of the experiment.
+   */
+  protected static class IterationListener implements ResultListener {
+
+    /** for serialization */
+    private static final long serialVersionUID = 3236385312536446217L;
+
+    /** the result listener of the experiment, also used as lock */
+    protected ResultListener m_Listener;
+
+    /** the result producer of the experiment */
+    protected ResultProducer m_Producer;
+
+    /** the keys of the results collected so far */
+    protected ArrayList<Object[]> m_Keys = new ArrayList<Object[]>();
+
+    /** the results collected so far */
+    protected ArrayList<Object[]> m_Results = new ArrayList<Object[]>();
+
+    /**
+     * Initializes the listener.
+     *
+     * @param listener the result listener of the experiment
+     * @param producer the result producer of the experiment
+     */
+    public IterationListener(ResultListener listener, ResultProducer producer) {
+      m_Listener = listener;
+      m_Producer = producer;
+    }
+
+    /**
+     * Passes the collected results on to the result listener of the
+     * experiment.
+     *
+     * @throws Exception if the listener doesn't accept a result
+     */
+    public void deliver() throws Exception {
+      synchronized (m_Listener) {
+        for (int i = 0; i < m_Keys.size(); i++) {
+          m_Listener.acceptResult(m_Producer, m_Keys.get(i), m_Results.get(i));
+        }
+      }
+      m_Keys.clear();
+      m_Results.clear();
+    }
+
+    /**
+     * Determines the column constraints via the listener of the experiment.
+     *
+     * @param rp the ResultProducer
+     * @return the constraints
+     * @throws Exception if an error occurs
+     */
+    @Override
+    public String[] determineColumnConstraints(ResultProducer rp)
+      throws Exception {
+      synchronized (m_Listener) {
+        return m_Listener.determineColumnConstraints(m_Producer);
+      }
+    }
+
+    /**
+     * Does nothing, the listener of the experiment is set up by the
+     * experiment.
+     *
+     * @param rp the ResultProducer
+     */
+    @Override
+    public void preProcess(ResultProducer rp) {
+    }
+
+    /**
+     * Does nothing, the listener of the experiment is finished by the
+     * experiment.
+     *
+     * @param rp the ResultProducer
+     */
+    @Override
+    public void postProcess(ResultProducer rp) {
+    }
+
+    /**
+     * Collects a result.
+     *
+     * @param rp the ResultProducer that generated the result
+     * @param key the key for the result
+     * @param result the result
+     */
+    @Override
+    public void acceptResult(ResultProducer rp, Object[] key, Object[] result) {
+      m_Keys.add(key);
+      m_Results.add(result);
+    }
+
+    /**
+     * Asks the listener of the experiment whether the result is required.
+     *
+     * @param rp the ResultProducer
+     * @param key the key of the result
+     * @return true if the result is required
+     * @throws Exception if an error occurs
+     */
+    @Override
+    public boolean isResultRequired(ResultProducer rp, Object[] key)
+      throws Exception {
+      synchronized (m_Listener) {
+        return m_Listener.isResultRequired(m_Producer, key);
+      }
+    }
+  }
+
+  /**
+   * Returns the revision string.
+   *
+   * @return the revision
+   */
+  @Override
+  public String getRevision() {
+    return RevisionUtils.extract("$Revision$");
+  }
+}
@@ -25,12 +25,10 @@ import java.io.File;
 import java.util.Calendar;
 import java.util.Collections;
 import java.util.Enumeration;
-import java.util.Random;
 import java.util.TimeZone;
 import java.util.Vector;
 
 import weka.core.AdditionalMeasureProducer;
-import weka.core.Instance;
 import weka.core.Instances;
 import weka.core.Option;
 import weka.core.OptionHandler;
@@ -355,7 +353,7 @@ public class RandomSplitResultProducer implements ResultProducer,
 
     if (getRawOutput()) {
       if (m_ZipDest == null) {
-        m_ZipDest = new OutputZipper(m_OutputFile);
+        m_ZipDest = OutputZipper.forDestination(m_OutputFile);
       }
     }
 
@@ -370,81 +368,11 @@ public class RandomSplitResultProducer implements ResultProducer,
     System.arraycopy(seKey, 0, key, 2, seKey.length);
     if (m_ResultListener.isResultRequired(this, key)) {
 
-      // Randomize on a copy of the original dataset
-      Instances runInstances = new Instances(m_Instances);
-
-      Instances train;
-      Instances test;
-
-      if (!m_randomize) {
-
-        // Don't do any randomization
-        int trainSize = Utils.round(runInstances.numInstances()
-          * m_TrainPercent / 100);
-        int testSize = runInstances.numInstances() - trainSize;
-        train = new Instances(runInstances, 0, trainSize);
-        test = new Instances(runInstances, trainSize, testSize);
-      } else {
-        Random rand = new Random(run);
-        runInstances.randomize(rand);
-
-        // Nominal class
-        if (runInstances.classAttribute().isNominal()) {
-
-          // create the subset for each classs
-          int numClasses = runInstances.numClasses();
-          Instances[] subsets = new Instances[numClasses + 1];
-          for (int i = 0; i < numClasses + 1; i++) {
-            subsets[i] = new Instances(runInstances, 10);
-          }
-
-          // divide instances into subsets
-          Enumeration<Instance> e = runInstances.enumerateInstances();
-          while (e.hasMoreElements()) {
-            Instance inst = e.nextElement();
-            if (inst.classIsMissing()) {
-              subsets[numClasses].add(inst);
-            } else {
-              subsets[(int) inst.classValue()].add(inst);
-            }
-          }
-
-          // Compactify them
-          for (int i = 0; i < numClasses + 1; i++) {
-            subsets[i].compactify();
-          }
-
-          // merge into train and test sets
-          train = new Instances(runInstances, runInstances.numInstances());
-          test = new Instances(runInstances, runInstances.numInstances());
-          for (int i = 0; i < numClasses + 1; i++) {
-            int trainSize = Utils.probRound(subsets[i].numInstances()
-              * m_TrainPercent / 100, rand);
-            for (int j = 0; j < trainSize; j++) {
-              train.add(subsets[i].instance(j));
-            }
-            for (int j = trainSize; j < subsets[i].numInstances(); j++) {
-              test.add(subsets[i].instance(j));
-            }
-            // free memory
-            subsets[i] = null;
-          }
-          train.compactify();
-          test.compactify();
-
-          // randomize the final sets
-          train.randomize(rand);
-          test.randomize(rand);
-        } else {
-
-          // Numeric target
-          int trainSize = Utils.probRound(runInstances.numInstances()
-            * m_TrainPercent / 100, rand);
-          int testSize = runInstances.numInstances() - trainSize;
-          train = new Instances(runInstances, 0, trainSize);
-          test = new Instances(runInstances, trainSize, testSize);
-        }
-      }
+      // Split once per dataset and run, shared by all schemes
+      int[][] split = DataSplitCache.randomSplit(m_Instances, run,
+        m_TrainPercent, m_randomize);
+      Instances train = DataSplitCache.subset(m_Instances, split[0]);
+      Instances test = DataSplitCache.subset(m_Instances, split[1]);
       try {
         Object[] seResults = m_SplitEvaluator.getResult(train, test);
         Object[] results = new Object[seResults.length + 1];
@@ -452,7 +380,7 @@ public class RandomSplitResultProducer implements ResultProducer,
         System.arraycopy(seResults, 0, results, 1, seResults.length);
         if (m_debugOutput) {
           String resultName = ("" + run + "."
-            + Utils.backQuoteChars(runInstances.relationName()) + "." + m_SplitEvaluator
+            + Utils.backQuoteChars(m_Instances.relationName()) + "." + m_SplitEvaluator
             .toString()).replace(' ', '_');
           resultName = Utils.removeSubstring(resultName, "weka.classifiers.");
           resultName = Utils.removeSubstring(resultName, "weka.filters.");
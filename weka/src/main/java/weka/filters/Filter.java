@@ -21,6 +21,7 @@
 
 package weka.filters;
 
+import weka.core.Attribute;
 import weka.core.Capabilities;
 import weka.core.Capabilities.Capability;
 import weka.core.CapabilitiesHandler;
@@ -34,7 +35,6 @@ import weka.core.Queue;
 import weka.core.RelationalLocator;
 import weka.core.RevisionHandler;
 import weka.core.RevisionUtils;
-import weka.core.SerializedObject;
 import weka.core.StringLocator;
 import weka.core.UnsupportedAttributeTypeException;
 import weka.core.Utils;
@@ -44,10 +44,17 @@ import weka.core.converters.ConverterUtils.DataSource;
 import java.io.FileOutputStream;
 import java.io.PrintWriter;
 import java.io.Serializable;
+import java.util.ArrayList;
 import java.util.Date;
 import java.util.Enumeration;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Vector;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 /**
  * An abstract class for instance filters: objects that take instances as input,
@@ -119,6 +126,12 @@ public abstract class Filter implements Serializable, CapabilitiesHandler,
   /** Whether capabilities should not be checked before classifier is built. */
   protected boolean m_DoNotCheckCapabilities = false;
 
+  /**
+   * The minimum number of instances per thread for useFilter(Instances,
+   * Filter, int) to process the data in parallel.
+   */
+  public static final int MIN_INSTANCES_PER_THREAD = 1000;
+
   /**
    * Returns true if the a new batch was started, either a new instance of the
    * filter was created or the batchFinished() method got called.
@@ -651,19 +664,22 @@ public abstract class Filter implements Serializable, CapabilitiesHandler,
   }
 
   /**
-   * Creates a deep copy of the given filter using serialization.
+   * Creates a deep copy of the given filter. Untrained filters that implement
+   * CopyableFromOptions are copied via their options, all others using
+   * serialization.
    *
    * @param model the filter to copy
    * @return a deep copy of the filter
    * @throws Exception if an error occurs
    */
   public static Filter makeCopy(Filter model) throws Exception {
-    return (Filter) new SerializedObject(model).getObject();
+    return (Filter) Utils.makeCopies(model, 1)[0];
   }
 
   /**
-   * Creates a given number of deep copies of the given filter using
-   * serialization.
+   * Creates a given number of deep copies of the given filter. Untrained
+   * filters that implement CopyableFromOptions are copied via their options,
+   * all others using serialization.
    *
    * @param model the filter to copy
    * @param num the number of filter copies to create.
@@ -676,9 +692,9 @@ public abstract class Filter implements Serializable, CapabilitiesHandler,
       throw new Exception("No model filter set");
     }
     Filter[] filters = new Filter[num];
-    SerializedObject so = new SerializedObject(model);
+    Object[] copies = Utils.makeCopies(model, num);
     for (int i = 0; i < filters.length; i++) {
-      filters[i] = (Filter) so.getObject();
+      filters[i] = (Filter) copies[i];
     }
     return filters;
   }
@@ -719,6 +735,102 @@ public abstract class Filter implements Serializable, CapabilitiesHandler,
     return newData;
   }
 
+  /**
+   * Filters an entire set of instances through a filter and returns the new
+   * set, using the given number of threads. The data is only processed in
+   * parallel if the filter implements InstanceIndependentFilter and currently
+   * processes instances independently, the output format is already defined,
+   * and neither input nor output contain string or relational attributes.
+   * Otherwise this method behaves like useFilter(Instances, Filter). Each
+   * thread works on a contiguous part of the data with its own copy of the
+   * filter, and the output is assembled in the original order.
+   *
+   * @param data the data to be filtered
+   * @param filter the filter to be used
+   * @param numThreads the number of threads to use, 0 for one per available
+   *          processor
+   * @return the filtered set of data
+   * @throws Exception if the filter can't be used successfully
+   */
+  public static Instances useFilter(final Instances data, Filter filter,
+    int numThreads) throws Exception {
+
+    if (numThreads <= 0) {
+      numThreads = Runtime.getRuntime().availableProcessors();
+    }
+    numThreads = Math.min(numThreads,
+      data.numInstances() / MIN_INSTANCES_PER_THREAD);
+    if ((numThreads < 2) || !(filter instanceof InstanceIndependentFilter)
+      || !((InstanceIndependentFilter) filter).isInstanceIndependent()
+      || !filter.isOutputFormatDefined() || hasStringOrRelational(data)
+      || hasStringOrRelational(filter.outputFormatPeek())) {
+      return useFilter(data, filter);
+    }
+
+    Filter[] copies = makeCopies(filter, numThreads);
+    ExecutorService executor = Executors.newFixedThreadPool(numThreads);
+    List<Future<List<Instance>>> results =
+      new ArrayList<Future<List<Instance>>>();
+    try {
+      int chunkSize = data.numInstances() / numThreads;
+      for (int i = 0; i < numThreads; i++) {
+        final Filter copy = copies[i];
+        final int first = i * chunkSize;
+        final int last =
+          (i == numThreads - 1) ? data.numInstances() : first + chunkSize;
+        results.add(executor.submit(new Callable<List<Instance>>() {
+          @Override
+          public List<Instance> call() throws Exception {
+            List<Instance> processed = new ArrayList<Instance>(last - first);
+            Instance inst;
+            for (int j = first; j < last; j++) {
+              copy.input(data.instance(j));
+              while ((inst = copy.output()) != null) {
+                processed.add(inst);
+              }
+            }
+            copy.batchFinished();
+            while ((inst = copy.output()) != null) {
+              processed.add(inst);
+            }
+            return processed;
+          }
+        }));
+      }
+
+      Instances newData = filter.getOutputFormat();
+      for (Future<List<Instance>> result : results) {
+        for (Instance inst : result.get()) {
+          newData.add(inst);
+        }
+      }
+
+      // the filter itself has seen an (empty) batch now as well
+      filter.batchFinished();
+
+      return newData;
+    } catch (ExecutionException e) {
+      if (e.getCause() instanceof Exception) {
+        throw (Exception) e.getCause();
+      }
+      throw e;
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  /**
+   * Returns whether the given dataset has any string or relational
+   * attributes.
+   *
+   * @param data the dataset to check
+   * @return true if string or relational attributes are present
+   */
+  private static boolean hasStringOrRelational(Instances data) {
+    return data.checkForStringAttributes()
+      || data.checkForAttributeType(Attribute.RELATIONAL);
+  }
+
   /**
    * Returns a description of the filter, by default only the classname.
    *
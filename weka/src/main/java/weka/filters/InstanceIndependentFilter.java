@@ -0,0 +1,45 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ *    InstanceIndependentFilter.java
+ *    Copyright (C) 2026 University of Waikato, Hamilton, New Zealand
+ *
+ */
+
+package weka.filters;
+
+/**
+ * Interface for filters that, in their current state, transform each input
+ * instance independently of all other instances and make the result
+ * available for output immediately. Such filters can be applied to disjoint
+ * parts of a dataset concurrently (using copies of the filter) by
+ * Filter.useFilter(Instances, Filter, int).
+ *
+ * @author The WEKA Team (wekalist@list.waikato.ac.nz)
+ * @version $Revision$
+ */
+public interface InstanceIndependentFilter {
+
+  /**
+   * Returns whether subsequent calls to input() process each instance
+   * independently of all others and make the converted instance available
+   * immediately. Filters that compute statistics from the first batch should
+   * only return true once the first batch has been processed.
+   *
+   * @return true if the filter currently processes instances independently
+   */
+  boolean isInstanceIndependent();
+}
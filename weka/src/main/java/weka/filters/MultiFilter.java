@@ -52,7 +52,8 @@ import weka.core.*;
  * @version $Revision$
  * @see weka.filters.StreamableFilter
  */
-public class MultiFilter extends SimpleStreamFilter implements WeightedAttributesHandler, WeightedInstancesHandler {
+public class MultiFilter extends SimpleStreamFilter implements
+  InstanceIndependentFilter, WeightedAttributesHandler, WeightedInstancesHandler {
 
   /** for serialization */
   private static final long serialVersionUID = -6293720886005713120L;
@@ -66,6 +67,12 @@ public class MultiFilter extends SimpleStreamFilter implements WeightedAttribute
   /** whether we already checked the streamable state */
   protected boolean m_StreamableChecked = false;
 
+  /**
+   * the index of the last filter whose input format has been set while
+   * processing the first batch.
+   */
+  protected transient int m_LastInitialized = -1;
+
   /**
    * Returns a string describing this filter
    * 
@@ -375,9 +382,11 @@ public class MultiFilter extends SimpleStreamFilter implements WeightedAttribute
 
   /**
    * Processes the given data (may change the provided dataset) and returns the
-   * modified version. This method is called in batchFinished(). This
-   * implementation only calls process(Instance) for each instance in the given
-   * dataset.
+   * modified version. This method is called in batchFinished(). Consecutive
+   * filters that process instances independently are fused, i.e., each
+   * instance is passed through all of them in one go, without materializing
+   * the intermediate datasets. All other filters are applied to the complete
+   * output of their predecessor.
    * 
    * @param instances the data to process
    * @return the modified data
@@ -389,14 +398,150 @@ public class MultiFilter extends SimpleStreamFilter implements WeightedAttribute
   protected Instances process(Instances instances) throws Exception {
     Instances result;
     int i;
+    int last;
 
     result = instances;
 
-    for (i = 0; i < getFilters().length; i++) {
-      if (!isFirstBatchDone()) {
+    m_LastInitialized = -1;
+    i = 0;
+    while (i < getFilters().length) {
+      if (!isFirstBatchDone() && (i > m_LastInitialized)) {
         getFilter(i).setInputFormat(result);
+        m_LastInitialized = i;
+      }
+      last = determineLastFusedFilter(i);
+      if (last > i) {
+        result = processFused(result, i, last);
+      } else {
+        result = Filter.useFilter(result, getFilter(i));
+      }
+      i = last + 1;
+    }
+
+    return result;
+  }
+
+  /**
+   * Checks whether the filter processes instances independently in its
+   * current state and has its output format defined.
+   * 
+   * @param filter the filter to check
+   * @return true if the filter can be part of a fused sequence of filters
+   */
+  protected boolean isFusable(Filter filter) {
+    return isInstanceIndependent(filter) && filter.isOutputFormatDefined();
+  }
+
+  /**
+   * Checks whether the filter processes instances independently in its
+   * current state, i.e., whether it is a candidate for fusing before its input
+   * format gets set.
+   * 
+   * @param filter the filter to check
+   * @return true if the filter is instance independent
+   */
+  protected boolean isInstanceIndependent(Filter filter) {
+    return (filter instanceof InstanceIndependentFilter)
+      && ((InstanceIndependentFilter) filter).isInstanceIndependent();
+  }
+
+  /**
+   * Determines the last filter of the sequence of fusable filters starting at
+   * the given index. If the first batch hasn't been processed yet, the input
+   * format of each instance independent filter following a fusable one gets
+   * initialized with its predecessor's output format (see
+   * m_LastInitialized), other filters are left to process(Instances).
+   * 
+   * @param first the index of the first filter in the sequence, whose input
+   *          format has been set already
+   * @return the index of the last filter in the sequence, same as first if
+   *         there is nothing to fuse
+   * @throws Exception if setting an input format fails
+   */
+  protected int determineLastFusedFilter(int first) throws Exception {
+    int result;
+
+    result = first;
+    while ((result + 1 < getFilters().length) && isFusable(getFilter(result))
+      && isInstanceIndependent(getFilter(result + 1))) {
+      if (!isFirstBatchDone()) {
+        getFilter(result + 1).setInputFormat(getFilter(result).getOutputFormat());
+        m_LastInitialized = result + 1;
+      }
+      if (!isFusable(getFilter(result + 1))) {
+        break;
+      }
+      result++;
+    }
+
+    return result;
+  }
+
+  /**
+   * Passes the instance through the filters with the given indices.
+   * 
+   * @param instance the instance to process
+   * @param first the index of the first filter to use
+   * @param last the index of the last filter to use
+   * @return the processed instance, null if one of the filters didn't make
+   *         its output available
+   * @throws Exception in case the processing goes wrong
+   */
+  protected Instance processFused(Instance instance, int first, int last)
+    throws Exception {
+    Instance result;
+    int i;
+
+    result = instance;
+
+    for (i = first; i <= last; i++) {
+      if (getFilter(i).input(result)) {
+        result = getFilter(i).output();
+      } else {
+        result = null;
+        break;
+      }
+    }
+
+    return result;
+  }
+
+  /**
+   * Passes each instance of the data through the filters with the given
+   * indices, without creating the intermediate datasets, and finishes the
+   * batch of each of these filters.
+   * 
+   * @param instances the data to process
+   * @param first the index of the first filter to use
+   * @param last the index of the last filter to use
+   * @return the processed data
+   * @throws Exception in case the processing goes wrong
+   */
+  protected Instances processFused(Instances instances, int first, int last)
+    throws Exception {
+    Instances result;
+    Instance inst;
+    int i;
+
+    result = getFilter(last).getOutputFormat();
+
+    for (i = 0; i < instances.numInstances(); i++) {
+      inst = processFused(instances.instance(i), first, last);
+      if (inst != null) {
+        result.add(inst);
+      }
+    }
+
+    for (i = first; i <= last; i++) {
+      getFilter(i).batchFinished();
+      while ((inst = getFilter(i).output()) != null) {
+        if (i < last) {
+          inst = processFused(inst, i + 1, last);
+        }
+        if (inst != null) {
+          result.add(inst);
+        }
       }
-      result = Filter.useFilter(result, getFilter(i));
     }
 
     return result;
@@ -442,6 +587,27 @@ public class MultiFilter extends SimpleStreamFilter implements WeightedAttribute
     return result;
   }
 
+  /**
+   * Returns true if instances get processed immediately and all the base
+   * filters process instances independently.
+   * 
+   * @return true if the filter currently processes instances independently
+   */
+  @Override
+  public boolean isInstanceIndependent() {
+    if (!hasImmediateOutputFormat() && !isFirstBatchDone()) {
+      return false;
+    }
+
+    for (Filter f : m_Filters) {
+      if (!isFusable(f)) {
+        return false;
+      }
+    }
+
+    return true;
+  }
+
   /**
    * Returns the revision string.
    * 
@@ -26,6 +26,7 @@ import java.util.Vector;
 
 import weka.core.*;
 import weka.core.Capabilities.Capability;
+import weka.core.expressionlanguage.common.ExpressionCompiler;
 import weka.core.expressionlanguage.common.IfElseMacro;
 import weka.core.expressionlanguage.common.JavaMacro;
 import weka.core.expressionlanguage.common.MacroDeclarationsCompositor;
@@ -35,6 +36,7 @@ import weka.core.expressionlanguage.core.Node;
 import weka.core.expressionlanguage.parser.Parser;
 import weka.core.expressionlanguage.weka.InstancesHelper;
 import weka.filters.Filter;
+import weka.filters.InstanceIndependentFilter;
 import weka.filters.StreamableFilter;
 import weka.filters.UnsupervisedFilter;
 
@@ -76,7 +78,8 @@ import weka.filters.UnsupervisedFilter;
  * @version $Revision$
  */
 public class AddExpression extends Filter implements UnsupervisedFilter,
-  StreamableFilter, OptionHandler, WeightedInstancesHandler, WeightedAttributesHandler {
+  StreamableFilter, InstanceIndependentFilter, CopyableFromOptions,
+  OptionHandler, WeightedInstancesHandler, WeightedAttributesHandler {
 
   /** for serialization */
   static final long serialVersionUID = 402130384261736245L;
@@ -357,7 +360,7 @@ public class AddExpression extends Filter implements UnsupervisedFilter,
     if (!(node instanceof DoubleExpression))
       throw new Exception("Expression must be of double type!");
     
-    m_Expression = (DoubleExpression) node;
+    m_Expression = ExpressionCompiler.compile((DoubleExpression) node);
 
     super.setInputFormat(instanceInfo);
 
@@ -415,6 +418,27 @@ public class AddExpression extends Filter implements UnsupervisedFilter,
     return true;
   }
 
+  /**
+   * Returns true, as each instance is processed independently.
+   * 
+   * @return true
+   */
+  @Override
+  public boolean isInstanceIndependent() {
+    return true;
+  }
+
+  /**
+   * Returns whether this filter can be copied via its options, i.e., whether
+   * no input format has been set yet.
+   *
+   * @return true if the filter can be copied via its options
+   */
+  @Override
+  public boolean isCopyableFromOptions() {
+    return (getInputFormat() == null) && !isOutputFormatDefined();
+  }
+
   /**
    * Returns the revision string.
    * 
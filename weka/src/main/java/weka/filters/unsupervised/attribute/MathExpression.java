@@ -27,6 +27,7 @@ import java.util.Vector;
 
 import weka.core.*;
 import weka.core.Capabilities.Capability;
+import weka.core.expressionlanguage.common.ExpressionCompiler;
 import weka.core.expressionlanguage.common.IfElseMacro;
 import weka.core.expressionlanguage.common.JavaMacro;
 import weka.core.expressionlanguage.common.MacroDeclarationsCompositor;
@@ -40,6 +41,7 @@ import weka.core.expressionlanguage.parser.Parser;
 import weka.core.expressionlanguage.weka.InstancesHelper;
 import weka.core.expressionlanguage.weka.StatsHelper;
 import weka.experiment.Stats;
+import weka.filters.InstanceIndependentFilter;
 import weka.filters.UnsupervisedFilter;
 
 /**
@@ -86,7 +88,8 @@ import weka.filters.UnsupervisedFilter;
  * @version $Revision$
  */
 public class MathExpression extends PotentialClassIgnorer implements
-  UnsupervisedFilter, WeightedInstancesHandler, WeightedAttributesHandler {
+  UnsupervisedFilter, InstanceIndependentFilter, CopyableFromOptions,
+  WeightedInstancesHandler, WeightedAttributesHandler {
 
   /** for serialization */
   static final long serialVersionUID = -3713222714671997901L;
@@ -229,7 +232,7 @@ public class MathExpression extends PotentialClassIgnorer implements
     
     m_CurrentValue = currentValueDeclaration.getInitializer();
 
-    m_CompiledExpression = (DoubleExpression) node;
+    m_CompiledExpression = ExpressionCompiler.compile((DoubleExpression) node);
     
   }
 
@@ -583,6 +586,27 @@ public class MathExpression extends PotentialClassIgnorer implements
     m_SelectCols.setRanges(rangeList);
   }
 
+  /**
+   * Returns true once the statistics have been computed from the first batch.
+   * 
+   * @return true if the first batch has been processed
+   */
+  @Override
+  public boolean isInstanceIndependent() {
+    return m_FirstBatchDone;
+  }
+
+  /**
+   * Returns whether this filter can be copied via its options, i.e., whether
+   * no input format has been set yet.
+   *
+   * @return true if the filter can be copied via its options
+   */
+  @Override
+  public boolean isCopyableFromOptions() {
+    return (getInputFormat() == null) && !isOutputFormatDefined();
+  }
+
   /**
    * Returns the revision string.
    * 
@@ -28,6 +28,7 @@ import java.util.Vector;
 import weka.core.*;
 import weka.core.Capabilities.Capability;
 import weka.filters.Filter;
+import weka.filters.InstanceIndependentFilter;
 import weka.filters.StreamableFilter;
 import weka.filters.UnsupervisedFilter;
 
@@ -77,7 +78,8 @@ import weka.filters.UnsupervisedFilter;
  * @version $Revision$
  */
 public class NominalToBinary extends Filter implements UnsupervisedFilter,
-  OptionHandler, StreamableFilter, WeightedAttributesHandler, WeightedInstancesHandler {
+  OptionHandler, StreamableFilter, InstanceIndependentFilter, CopyableFromOptions,
+  WeightedAttributesHandler, WeightedInstancesHandler {
 
   /** for serialization */
   static final long serialVersionUID = -1130642825710549138L;
@@ -621,6 +623,27 @@ public class NominalToBinary extends Filter implements UnsupervisedFilter,
     push(inst); // No need to copy instance
   }
 
+  /**
+   * Returns true, as each instance is processed independently.
+   * 
+   * @return true
+   */
+  @Override
+  public boolean isInstanceIndependent() {
+    return true;
+  }
+
+  /**
+   * Returns whether this filter can be copied via its options, i.e., whether
+   * no input format has been set yet.
+   *
+   * @return true if the filter can be copied via its options
+   */
+  @Override
+  public boolean isCopyableFromOptions() {
+    return (getInputFormat() == null) && !isOutputFormatDefined();
+  }
+
   /**
    * Returns the revision string.
    * 
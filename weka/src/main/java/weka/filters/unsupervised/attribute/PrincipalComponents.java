@@ -37,6 +37,8 @@ import weka.core.OptionHandler;
 import weka.core.RevisionUtils;
 import weka.core.SparseInstance;
 import weka.core.Utils;
+import weka.core.matrix.CovarianceAccumulator;
+import weka.core.matrix.RandomizedEigenvalueDecomposition;
 import weka.filters.Filter;
 import weka.filters.UnsupervisedFilter;
 
@@ -81,6 +83,18 @@ import weka.filters.UnsupervisedFilter;
  *  (-1 = include all, default: -1)
  * </pre>
  * 
+ * <pre>
+ * -randomized
+ *  Compute only the PC attributes to retain (see -M),
+ *  using a randomized decomposition.
+ * </pre>
+ * 
+ * <pre>
+ * -num-slots &lt;num&gt;
+ *  Number of threads to use for computing the
+ *  correlation/covariance matrix. (default: 1)
+ * </pre>
+ * 
  * <!-- options-end -->
  * 
  * @author Mark Hall (mhall@cs.waikato.ac.nz) -- attribute selection code
@@ -169,6 +183,24 @@ public class PrincipalComponents extends Filter implements OptionHandler,
   /** maximum number of attributes in the transformed data (-1 for all). */
   protected int m_MaxAttributes = -1;
 
+  /** whether to compute only the top components with a randomized method */
+  protected boolean m_Randomized = false;
+
+  /** the number of threads to use for computing the matrix */
+  protected int m_NumExecutionSlots = 1;
+
+  /**
+   * The upper triangle of the correlation/covariance matrix, if only the top
+   * components are computed (m_Correlation is null then).
+   */
+  protected double[] m_PackedCorrelation;
+
+  /** the number of power iterations of the randomized decomposition */
+  protected static final int RANDOMIZED_ITERATIONS = 2;
+
+  /** the oversampling of the randomized decomposition */
+  protected static final int RANDOMIZED_OVERSAMPLING = 10;
+
   /**
    * Returns a string describing this filter.
    * 
@@ -212,6 +244,16 @@ public class PrincipalComponents extends Filter implements OptionHandler,
       "\tMaximum number of PC attributes to retain.\n"
         + "\t(-1 = include all, default: -1)", "M", 1, "-M <num>"));
 
+    result.addElement(new Option(
+      "\tCompute only the PC attributes to retain (see -M),\n"
+        + "\tusing a randomized decomposition.", "randomized", 0,
+      "-randomized"));
+
+    result.addElement(new Option(
+      "\tNumber of threads to use for computing the\n"
+        + "\tcorrelation/covariance matrix. (default: 1)", "num-slots", 1,
+      "-num-slots <num>"));
+
     return result.elements();
   }
 
@@ -249,6 +291,18 @@ public class PrincipalComponents extends Filter implements OptionHandler,
    *  (-1 = include all, default: -1)
    * </pre>
    * 
+   * <pre>
+   * -randomized
+   *  Compute only the PC attributes to retain (see -M),
+   *  using a randomized decomposition.
+   * </pre>
+   * 
+   * <pre>
+   * -num-slots &lt;num&gt;
+   *  Number of threads to use for computing the
+   *  correlation/covariance matrix. (default: 1)
+   * </pre>
+   * 
    * <!-- options-end -->
    * 
    * @param options the list of options as an array of strings
@@ -280,6 +334,15 @@ public class PrincipalComponents extends Filter implements OptionHandler,
 
     setCenterData(Utils.getFlag('C', options));
 
+    setRandomized(Utils.getFlag("randomized", options));
+
+    tmpStr = Utils.getOption("num-slots", options);
+    if (tmpStr.length() != 0) {
+      setNumExecutionSlots(Integer.parseInt(tmpStr));
+    } else {
+      setNumExecutionSlots(1);
+    }
+
     Utils.checkForRemainingOptions(options);
   }
 
@@ -306,6 +369,15 @@ public class PrincipalComponents extends Filter implements OptionHandler,
       result.add("-C");
     }
 
+    if (getRandomized()) {
+      result.add("-randomized");
+    }
+
+    if (getNumExecutionSlots() != 1) {
+      result.add("-num-slots");
+      result.add("" + getNumExecutionSlots());
+    }
+
     return result.toArray(new String[result.size()]);
   }
 
@@ -428,6 +500,68 @@ public class PrincipalComponents extends Filter implements OptionHandler,
     return m_MaxAttributes;
   }
 
+  /**
+   * Returns the tip text for this property
+   * 
+   * @return tip text for this property suitable for displaying in the
+   *         explorer/experimenter gui
+   */
+  public String randomizedTipText() {
+    return "If true and the maximum number of PC attributes is set, only that "
+      + "many components are computed, using a randomized decomposition. This "
+      + "is much faster than a full decomposition for many attributes, but "
+      + "the components are approximations.";
+  }
+
+  /**
+   * Sets whether to compute only the top components with a randomized
+   * decomposition.
+   * 
+   * @param value true if a randomized decomposition is to be used
+   */
+  public void setRandomized(boolean value) {
+    m_Randomized = value;
+  }
+
+  /**
+   * Gets whether to compute only the top components with a randomized
+   * decomposition.
+   * 
+   * @return true if a randomized decomposition is used
+   */
+  public boolean getRandomized() {
+    return m_Randomized;
+  }
+
+  /**
+   * Returns the tip text for this property
+   * 
+   * @return tip text for this property suitable for displaying in the
+   *         explorer/experimenter gui
+   */
+  public String numExecutionSlotsTipText() {
+    return "The number of threads to use for computing the "
+      + "correlation/covariance matrix.";
+  }
+
+  /**
+   * Sets the number of threads to use for computing the matrix.
+   * 
+   * @param value the number of threads
+   */
+  public void setNumExecutionSlots(int value) {
+    m_NumExecutionSlots = value;
+  }
+
+  /**
+   * Gets the number of threads to use for computing the matrix.
+   * 
+   * @return the number of threads
+   */
+  public int getNumExecutionSlots() {
+    return m_NumExecutionSlots;
+  }
+
   /**
    * Returns the capabilities of this evaluator.
    * 
@@ -485,7 +619,7 @@ public class PrincipalComponents extends Filter implements OptionHandler,
     }
 
     if (m_MaxAttributes > 0) {
-      numAttsLowerBound = m_NumAttribs - m_MaxAttributes;
+      numAttsLowerBound = m_Eigenvalues.length - m_MaxAttributes;
     } else {
       numAttsLowerBound = 0;
     }
@@ -495,7 +629,7 @@ public class PrincipalComponents extends Filter implements OptionHandler,
 
     cumulative = 0.0;
     attributes = new ArrayList<Attribute>();
-    for (i = m_NumAttribs - 1; i >= numAttsLowerBound; i--) {
+    for (i = m_Eigenvalues.length - 1; i >= numAttsLowerBound; i--) {
       attName = new StringBuffer();
       // build array of coefficients
       coeff_mags = new double[m_NumAttribs];
@@ -568,23 +702,44 @@ public class PrincipalComponents extends Filter implements OptionHandler,
       m_TrainInstances = Filter.useFilter(m_TrainInstances, m_standardizeFilter);
     }
 
-    // now compute the covariance matrix
-    m_Correlation = new UpperSymmDenseMatrix(m_NumAttribs);
-
-    for (int i = 0; i < m_NumAttribs; i++) {
-      for (int j = i; j < m_NumAttribs; j++) {
-
-        double cov = 0;
-        for (Instance inst: m_TrainInstances) {
-          cov += inst.value(i) * inst.value(j);
+    // now compute the covariance matrix in a single pass over the data. The
+    // data has been centered already, so the products about the origin are
+    // used
+    CovarianceAccumulator acc = CovarianceAccumulator.compute(m_TrainInstances,
+      null, m_NumExecutionSlots);
+    double denom = m_TrainInstances.numInstances() - 1;
+
+    m_Correlation = null;
+    m_PackedCorrelation = null;
+    if (useRandomized()) {
+      m_PackedCorrelation = new double[m_NumAttribs * (m_NumAttribs + 1) / 2];
+      int k = 0;
+      for (int i = 0; i < m_NumAttribs; i++) {
+        for (int j = i; j < m_NumAttribs; j++) {
+          m_PackedCorrelation[k++] = acc.getCrossProduct(i, j) / denom;
+        }
+      }
+    } else {
+      m_Correlation = new UpperSymmDenseMatrix(m_NumAttribs);
+      for (int i = 0; i < m_NumAttribs; i++) {
+        for (int j = i; j < m_NumAttribs; j++) {
+          m_Correlation.set(i, j, acc.getCrossProduct(i, j) / denom);
         }
-
-        cov /= m_TrainInstances.numInstances() - 1;
-        m_Correlation.set(i, j, cov);
       }
     }
   }
 
+  /**
+   * Returns whether only the top components are to be computed with a
+   * randomized decomposition.
+   * 
+   * @return true if the randomized decomposition is to be used
+   */
+  protected boolean useRandomized() {
+    return m_Randomized && m_MaxAttributes > 0
+      && m_MaxAttributes < m_NumAttribs;
+  }
+
   /**
    * Transform an instance in original (unormalized) format.
    * 
@@ -634,7 +789,7 @@ public class PrincipalComponents extends Filter implements OptionHandler,
     }
 
     if (m_MaxAttributes > 0) {
-      numAttsLowerBound = m_NumAttribs - m_MaxAttributes;
+      numAttsLowerBound = m_Eigenvalues.length - m_MaxAttributes;
     } else {
       numAttsLowerBound = 0;
     }
@@ -643,13 +798,13 @@ public class PrincipalComponents extends Filter implements OptionHandler,
     }
 
     cumulative = 0;
-    for (i = m_NumAttribs - 1; i >= numAttsLowerBound; i--) {
+    for (i = m_Eigenvalues.length - 1; i >= numAttsLowerBound; i--) {
       tempval = 0.0;
       for (j = 0; j < m_NumAttribs; j++) {
         tempval += m_Eigenvectors[j][m_SortedEigens[i]] * tempInst.value(j);
       }
 
-      newVals[m_NumAttribs - i - 1] = tempval;
+      newVals[m_Eigenvalues.length - i - 1] = tempval;
       cumulative += m_Eigenvalues[m_SortedEigens[i]];
       if ((cumulative / m_SumOfEigenValues) >= m_CoverVariance) {
         break;
@@ -734,11 +889,25 @@ public class PrincipalComponents extends Filter implements OptionHandler,
     fillCovariance();
 
     // get eigen vectors/values
+    if (m_Correlation == null) {
+      // only the top components: the total variance is the trace
+      RandomizedEigenvalueDecomposition evd =
+        new RandomizedEigenvalueDecomposition(m_PackedCorrelation,
+          m_NumAttribs, m_MaxAttributes, RANDOMIZED_OVERSAMPLING,
+          RANDOMIZED_ITERATIONS, 1);
+      m_Eigenvectors = evd.getEigenvectors();
+      m_Eigenvalues = evd.getEigenvalues();
+      m_SumOfEigenValues = 0.0;
+      for (i = 0, j = 0; i < m_NumAttribs; j += m_NumAttribs - i, i++) {
+        m_SumOfEigenValues += m_PackedCorrelation[j];
+      }
+      m_PackedCorrelation = null;
+    } else {
+      SymmDenseEVD evd = SymmDenseEVD.factorize(m_Correlation);
 
-    SymmDenseEVD evd = SymmDenseEVD.factorize(m_Correlation);
-
-    m_Eigenvectors = Matrices.getArray(evd.getEigenvectors());
-    m_Eigenvalues = evd.getEigenvalues();
+      m_Eigenvectors = Matrices.getArray(evd.getEigenvectors());
+      m_Eigenvalues = evd.getEigenvalues();
+    }
 
     // any eigenvalues less than 0 are not worth anything --- change to 0
     for (i = 0; i < m_Eigenvalues.length; i++) {
@@ -747,7 +916,9 @@ public class PrincipalComponents extends Filter implements OptionHandler,
       }
     }
     m_SortedEigens = Utils.sort(m_Eigenvalues);
-    m_SumOfEigenValues = Utils.sum(m_Eigenvalues);
+    if (m_Correlation != null) {
+      m_SumOfEigenValues = Utils.sum(m_Eigenvalues);
+    }
 
     m_TransformedFormat = determineOutputFormat(m_TrainInstances);
     setOutputFormat(m_TransformedFormat);
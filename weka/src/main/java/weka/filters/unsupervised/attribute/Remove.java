@@ -28,6 +28,7 @@ import java.util.Vector;
 import weka.core.*;
 import weka.core.Capabilities.Capability;
 import weka.filters.Filter;
+import weka.filters.InstanceIndependentFilter;
 import weka.filters.StreamableFilter;
 import weka.filters.UnsupervisedFilter;
 
@@ -59,7 +60,8 @@ import weka.filters.UnsupervisedFilter;
  * @version $Revision$
  */
 public class Remove extends Filter implements UnsupervisedFilter,
-  StreamableFilter, OptionHandler, WeightedAttributesHandler, WeightedInstancesHandler {
+  StreamableFilter, InstanceIndependentFilter, CopyableFromOptions,
+  OptionHandler, WeightedAttributesHandler, WeightedInstancesHandler {
 
   /** for serialization */
   static final long serialVersionUID = 5011337331921522847L;
@@ -373,6 +375,27 @@ public class Remove extends Filter implements UnsupervisedFilter,
     setAttributeIndices(Range.indicesToRangeList(attributes));
   }
 
+  /**
+   * Returns true, as each instance is processed independently.
+   * 
+   * @return true
+   */
+  @Override
+  public boolean isInstanceIndependent() {
+    return true;
+  }
+
+  /**
+   * Returns whether this filter can be copied via its options, i.e., whether
+   * no input format has been set yet.
+   *
+   * @return true if the filter can be copied via its options
+   */
+  @Override
+  public boolean isCopyableFromOptions() {
+    return (getInputFormat() == null) && !isOutputFormatDefined();
+  }
+
   /**
    * Returns the revision string.
    * 
@@ -23,6 +23,7 @@ package weka.filters.unsupervised.attribute;
 
 import weka.core.*;
 import weka.core.Capabilities.Capability;
+import weka.filters.InstanceIndependentFilter;
 import weka.filters.Sourcable;
 import weka.filters.UnsupervisedFilter;
 
@@ -49,8 +50,8 @@ import weka.filters.UnsupervisedFilter;
  * @version $Revision$
  */
 public class ReplaceMissingValues extends PotentialClassIgnorer implements
-  UnsupervisedFilter, Sourcable, WeightedInstancesHandler,
-  WeightedAttributesHandler {
+  UnsupervisedFilter, Sourcable, InstanceIndependentFilter,
+  CopyableFromOptions, WeightedInstancesHandler, WeightedAttributesHandler {
 
   /** for serialization */
   static final long serialVersionUID = 8349568310991609867L;
@@ -407,6 +408,28 @@ public class ReplaceMissingValues extends PotentialClassIgnorer implements
     return result.toString();
   }
 
+  /**
+   * Returns true once the modes and means have been computed from the first
+   * batch.
+   * 
+   * @return true if the modes and means are available
+   */
+  @Override
+  public boolean isInstanceIndependent() {
+    return m_ModesAndMeans != null;
+  }
+
+  /**
+   * Returns whether this filter can be copied via its options, i.e., whether
+   * no input format has been set yet.
+   *
+   * @return true if the filter can be copied via its options
+   */
+  @Override
+  public boolean isCopyableFromOptions() {
+    return (getInputFormat() == null) && !isOutputFormatDefined();
+  }
+
   /**
    * Returns the revision string.
    * 
@@ -23,6 +23,7 @@ package weka.filters.unsupervised.attribute;
 
 import weka.core.*;
 import weka.core.Capabilities.Capability;
+import weka.filters.InstanceIndependentFilter;
 import weka.filters.Sourcable;
 import weka.filters.UnsupervisedFilter;
 
@@ -47,7 +48,8 @@ import weka.filters.UnsupervisedFilter;
  */
 public class Standardize 
   extends PotentialClassIgnorer 
-  implements UnsupervisedFilter, Sourcable, WeightedAttributesHandler, WeightedInstancesHandler {
+  implements UnsupervisedFilter, Sourcable, InstanceIndependentFilter,
+  CopyableFromOptions, WeightedAttributesHandler, WeightedInstancesHandler {
   
   /** for serialization */
   static final long serialVersionUID = -6830769026855053281L;
@@ -344,6 +346,28 @@ public class Standardize
     return result.toString();
   }
   
+  /**
+   * Returns true once the means and standard deviations have been computed
+   * from the first batch.
+   * 
+   * @return true if the means and standard deviations are available
+   */
+  @Override
+  public boolean isInstanceIndependent() {
+    return m_Means != null;
+  }
+
+  /**
+   * Returns whether this filter can be copied via its options, i.e., whether
+   * no input format has been set yet.
+   *
+   * @return true if the filter can be copied via its options
+   */
+  @Override
+  public boolean isCopyableFromOptions() {
+    return (getInputFormat() == null) && !isOutputFormatDefined();
+  }
+
   /**
    * Returns the revision string.
    * 
@@ -26,6 +26,7 @@ import java.util.Vector;
 
 import weka.core.*;
 import weka.core.Capabilities.Capability;
+import weka.core.expressionlanguage.common.ExpressionCompiler;
 import weka.core.expressionlanguage.common.IfElseMacro;
 import weka.core.expressionlanguage.common.JavaMacro;
 import weka.core.expressionlanguage.common.MacroDeclarationsCompositor;
@@ -403,7 +404,8 @@ public class SubsetByExpression extends SimpleBatchFilter
       if (!(node instanceof BooleanExpression))
         throw new Exception("Expression must be of boolean type!");
       
-      BooleanExpression condition = (BooleanExpression) node;
+      BooleanExpression condition =
+        ExpressionCompiler.compile((BooleanExpression) node);
 
       // filter dataset
       for (int i = 0; i < instances.numInstances(); i++) {
@@ -84,6 +84,17 @@ public class JoinStepEditorDialog extends StepEditorDialog {
   /** Move down button for the second instance stream */
   protected JButton m_downTwoBut = new JButton("Down");
 
+  /** Check box for selecting the hash join mode */
+  protected JCheckBox m_hashJoinCheck = new JCheckBox(
+    "Hash join (inputs don't need to be sorted)");
+
+  /** Check box for building the hash table on the first input */
+  protected JCheckBox m_buildOnFirstCheck = new JCheckBox(
+    "Build hash table on first input (instance streams)");
+
+  /** Field for the memory budget of the hash table */
+  protected EnvironmentField m_hashTableMemoryField = new EnvironmentField();
+
   /**
    * Initialize the step editor dialog
    */
@@ -207,6 +218,35 @@ public class JoinStepEditorDialog extends StepEditorDialog {
     listTwoP.add(js2, BorderLayout.CENTER);
 
     controlHolder.add(listTwoP, BorderLayout.EAST);
+
+    // hash join settings
+    Join join = (Join) getStepToEdit();
+    m_hashJoinCheck.setSelected(join.getHashJoin());
+    m_buildOnFirstCheck.setSelected(join.getBuildOnFirstInput());
+    m_hashTableMemoryField.setEnvironment(m_env);
+    m_hashTableMemoryField.setText(join.getHashTableMemory());
+    m_buildOnFirstCheck.setEnabled(join.getHashJoin());
+    m_hashTableMemoryField.setEnabled(join.getHashJoin());
+    m_hashJoinCheck.addActionListener(new ActionListener() {
+      @Override
+      public void actionPerformed(ActionEvent e) {
+        m_buildOnFirstCheck.setEnabled(m_hashJoinCheck.isSelected());
+        m_hashTableMemoryField.setEnabled(m_hashJoinCheck.isSelected());
+      }
+    });
+    JPanel memoryP = new JPanel();
+    memoryP.setLayout(new BorderLayout());
+    memoryP.add(new JLabel("Memory budget for hash table "),
+      BorderLayout.WEST);
+    memoryP.add(m_hashTableMemoryField, BorderLayout.CENTER);
+    JPanel hashJoinP = new JPanel();
+    hashJoinP.setLayout(new GridLayout(0, 1));
+    hashJoinP.setBorder(BorderFactory.createEmptyBorder(0, 5, 0, 5));
+    hashJoinP.add(m_hashJoinCheck);
+    hashJoinP.add(m_buildOnFirstCheck);
+    hashJoinP.add(memoryP);
+    controlHolder.add(hashJoinP, BorderLayout.SOUTH);
+
     add(controlHolder, BorderLayout.CENTER);
 
     // setup incoming atts combos
@@ -369,5 +409,10 @@ public class JoinStepEditorDialog extends StepEditorDialog {
     }
 
     ((Join) getStepToEdit()).setKeySpec(b.toString());
+    ((Join) getStepToEdit()).setHashJoin(m_hashJoinCheck.isSelected());
+    ((Join) getStepToEdit()).setBuildOnFirstInput(m_buildOnFirstCheck
+      .isSelected());
+    ((Join) getStepToEdit()).setHashTableMemory(m_hashTableMemoryField
+      .getText());
   }
 }
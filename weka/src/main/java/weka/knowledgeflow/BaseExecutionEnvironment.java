@@ -23,12 +23,15 @@ package weka.knowledgeflow;
 
 import weka.core.Defaults;
 import weka.core.Environment;
+import weka.core.Instance;
 import weka.core.Settings;
 import weka.core.WekaException;
 import weka.gui.Logger;
 import weka.core.PluginManager;
 import weka.gui.knowledgeflow.GraphicalEnvironmentCommandHandler;
 
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
@@ -98,6 +101,24 @@ public class BaseExecutionEnvironment implements ExecutionEnvironment {
    */
   protected transient ExecutorService m_singleThreadService;
 
+  /**
+   * Maximum number of Data objects queued between pipelined streaming steps. 0
+   * = no pipelining, i.e. streaming steps execute on the thread of the step
+   * producing the stream.
+   */
+  protected int m_streamingQueueSize;
+
+  /** Number of workers to use for steps that are marked as replicable */
+  protected int m_streamingReplicas;
+
+  /** The pipeline stages of the instance streams in the running flow */
+  protected ConcurrentHashMap<StepManagerImpl, StreamingStage> m_streamingStages =
+    new ConcurrentHashMap<StepManagerImpl, StreamingStage>();
+
+  /** Steps whose instance stream can't be pipelined */
+  protected Set<StepManagerImpl> m_unpipelinedSteps = ConcurrentHashMap
+    .newKeySet();
+
   /** The log */
   protected transient Logger m_log;
 
@@ -284,6 +305,7 @@ public class BaseExecutionEnvironment implements ExecutionEnvironment {
     if (getFlowExecutor() != null) {
       getFlowExecutor().stopProcessing();
     }
+    shutdownStreamingStages();
     if (m_executorService != null) {
       m_executorService.shutdownNow();
       m_executorService = null;
@@ -358,12 +380,53 @@ public class BaseExecutionEnvironment implements ExecutionEnvironment {
           .availableProcessors());
 
     m_singleThreadService = Executors.newSingleThreadExecutor();
+
+    shutdownStreamingStages();
+    m_streamingQueueSize =
+      getSettings().getSetting(KFDefaults.APP_ID,
+        BaseExecutionEnvironmentDefaults.STREAMING_PIPELINE_QUEUE_SIZE_KEY,
+        BaseExecutionEnvironmentDefaults.STREAMING_PIPELINE_QUEUE_SIZE,
+        getEnvironmentVariables());
+    m_streamingReplicas =
+      getSettings().getSetting(KFDefaults.APP_ID,
+        BaseExecutionEnvironmentDefaults.STREAMING_STEP_REPLICAS_KEY,
+        BaseExecutionEnvironmentDefaults.STREAMING_STEP_REPLICAS,
+        getEnvironmentVariables());
+    if (m_streamingReplicas <= 0) {
+      m_streamingReplicas = Runtime.getRuntime().availableProcessors();
+    }
+    if (m_streamingQueueSize > 0) {
+      m_logHandler.logDebug("Pipelining instance streams (queue size: "
+        + m_streamingQueueSize + ", replicas: " + m_streamingReplicas + ")");
+    }
   }
 
   /**
    * Stop the client executor service
    */
   protected void stopClientExecutionService() {
+    // let pipelined streams run to completion first
+    boolean interrupted = false;
+    try {
+      boolean busy = true;
+      while (busy) {
+        busy = false;
+        for (StreamingStage stage : m_streamingStages.values()) {
+          if (stage.isBusy()) {
+            busy = true;
+            stage.waitUntilIdle();
+          }
+        }
+      }
+    } catch (InterruptedException e) {
+      // stop waiting - data still queued in the stages is discarded
+      interrupted = true;
+      Thread.currentThread().interrupt();
+      m_logHandler.logWarning("Interrupted while waiting for pipelined "
+        + "instance streams to finish - aborting them");
+    }
+    shutdownStreamingStages();
+
     if (m_executorService != null) {
       m_executorService.shutdown();
       try {
@@ -380,7 +443,9 @@ public class BaseExecutionEnvironment implements ExecutionEnvironment {
         // a situation where the step tries to launch a task when the
         // client executor service has been shutdown. Blocking here at the
         // main executor service should avoid this situation.
-        m_executorService.awaitTermination(5L, TimeUnit.SECONDS);
+        if (!interrupted) {
+          m_executorService.awaitTermination(5L, TimeUnit.SECONDS);
+        }
       } catch (InterruptedException e) {
         e.printStackTrace();
       }
@@ -443,6 +508,64 @@ public class BaseExecutionEnvironment implements ExecutionEnvironment {
     }
   }
 
+  /**
+   * Get the pipeline stage for the supplied step and streaming data. Creates
+   * (and starts) the stage when the first data of an instance stream arrives.
+   * Streams with string attributes are not pipelined, as string values are
+   * passed on via the header of the stream.
+   *
+   * @param step the step to receive the data
+   * @param data the streaming data
+   * @return the pipeline stage of the step, or null if the data should be
+   *         processed on the current thread
+   */
+  protected StreamingStage getStreamingStage(StepManagerImpl step, Data data) {
+    if (m_streamingQueueSize <= 0
+      || !data.getConnectionName().equals(StepManager.CON_INSTANCE)) {
+      return null;
+    }
+
+    StreamingStage stage = m_streamingStages.get(step);
+    if (stage != null || m_unpipelinedSteps.contains(step)) {
+      return stage;
+    }
+
+    Instance inst = data.getPayloadElement(StepManager.CON_INSTANCE);
+    if (inst == null || step.isStreamFinished(data)) {
+      return null;
+    }
+    if (inst.dataset() == null || inst.dataset().checkForStringAttributes()) {
+      m_unpipelinedSteps.add(step);
+      return null;
+    }
+
+    stage =
+      new StreamingStage(step, m_streamingQueueSize,
+        step.stepIsReplicable() ? m_streamingReplicas : 1);
+    StreamingStage existing = m_streamingStages.putIfAbsent(step, stage);
+    if (existing != null) {
+      return existing;
+    }
+    m_logHandler.logDebug("Starting streaming stage for " + step.getName()
+      + " (" + stage.getNumWorkers() + " worker(s))");
+    step.setStreamingStage(stage);
+    stage.start();
+
+    return stage;
+  }
+
+  /**
+   * Stop the pipeline stages of any instance streams
+   */
+  protected void shutdownStreamingStages() {
+    for (StreamingStage stage : m_streamingStages.values()) {
+      stage.shutdown();
+      stage.getStep().setStreamingStage(null);
+    }
+    m_streamingStages.clear();
+    m_unpipelinedSteps.clear();
+  }
+
   /**
    * Send the supplied data to the specified step. Base implementation just
    * calls processIncoming() on the step directly. Subclasses may opt to do
@@ -460,8 +583,15 @@ public class BaseExecutionEnvironment implements ExecutionEnvironment {
       if (data.length == 1
         && (StepManagerImpl.connectionIsIncremental(data[0]))) {
         // we don't want the overhead of spinning up a thread for single
-        // instance (streaming) connections.
-        step.processIncoming(data[0]);
+        // instance (streaming) connections. Instead, these are either
+        // processed on the current thread or handed to the pipeline stage
+        // of the step
+        StreamingStage stage = getStreamingStage(step, data[0]);
+        if (stage != null) {
+          stage.put(data[0]);
+        } else {
+          step.processIncoming(data[0]);
+        }
       } else {
         String taskType =
           step.getStepMustRunSingleThreaded() ? " (single-threaded)" : (step
@@ -529,6 +659,35 @@ public class BaseExecutionEnvironment implements ExecutionEnvironment {
 
     /** Default (0) means use as many threads as there are cpu processors */
     public static final int RESOURCE_INTENSIVE_EXECUTOR_SERVICE_NUM_THREADS = 0;
+
+    public static final Settings.SettingKey STREAMING_BATCH_SIZE_KEY =
+      new Settings.SettingKey(KFDefaults.APP_ID + ".streamingBatchSize",
+        "Number of instances per streaming data event",
+        "<html>Instance streams are passed between steps in micro-batches<br>"
+          + "of this many instances. 1 = pass on one instance at a time.</html>");
+
+    /** Default (1) means that instance streams are not micro-batched */
+    public static final int STREAMING_BATCH_SIZE = 1;
+
+    public static final Settings.SettingKey STREAMING_PIPELINE_QUEUE_SIZE_KEY =
+      new Settings.SettingKey(KFDefaults.APP_ID + ".streamingPipelineQueueSize",
+        "Size of the queues between pipelined streaming steps",
+        "<html>Steps processing an instance stream run in their own thread,<br>"
+          + "connected by queues holding this many data events. 0 = process<br>"
+          + "the stream in the thread of the step producing it.</html>");
+
+    /** Default (0) means that instance streams are not pipelined */
+    public static final int STREAMING_PIPELINE_QUEUE_SIZE = 0;
+
+    public static final Settings.SettingKey STREAMING_STEP_REPLICAS_KEY =
+      new Settings.SettingKey(KFDefaults.APP_ID + ".streamingStepReplicas",
+        "Number of threads to use for replicable streaming steps",
+        "<html>Number of threads that process the instance stream of a<br>"
+          + "pipelined step that can be replicated. 0 = use as many<br>"
+          + "threads as there are cpu processors.</html>");
+
+    /** Default (0) means use as many threads as there are cpu processors */
+    public static final int STREAMING_STEP_REPLICAS = 0;
     private static final long serialVersionUID = -3386792058002464330L;
 
     public BaseExecutionEnvironmentDefaults() {
@@ -538,6 +697,10 @@ public class BaseExecutionEnvironment implements ExecutionEnvironment {
         STEP_EXECUTOR_SERVICE_NUM_THREADS);
       m_defaults.put(RESOURCE_INTENSIVE_EXECUTOR_SERVICE_NUM_THREADS_KEY,
         RESOURCE_INTENSIVE_EXECUTOR_SERVICE_NUM_THREADS);
+      m_defaults.put(STREAMING_BATCH_SIZE_KEY, STREAMING_BATCH_SIZE);
+      m_defaults.put(STREAMING_PIPELINE_QUEUE_SIZE_KEY,
+        STREAMING_PIPELINE_QUEUE_SIZE);
+      m_defaults.put(STREAMING_STEP_REPLICAS_KEY, STREAMING_STEP_REPLICAS);
     }
   }
 }
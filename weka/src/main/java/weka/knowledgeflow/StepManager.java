@@ -21,6 +21,7 @@
 
 package weka.knowledgeflow;
 
+import weka.core.Instance;
 import weka.core.Instances;
 import weka.core.Settings;
 import weka.core.WekaException;
@@ -84,6 +85,7 @@ public interface StepManager {
   public static final String CON_AUX_DATA_INCREMENTAL_STREAM_END =
     "incremental_stream_end";
   public static final String CON_AUX_DATA_IS_INCREMENTAL = "incremental_stream";
+  public static final String CON_AUX_DATA_INSTANCE_BATCH = "aux_instance_batch";
 
   /**
    * Get the name of the step managed by this StepManager
@@ -345,6 +347,76 @@ public interface StepManager {
    */
   void throughputUpdateEnd();
 
+  /**
+   * End a throughput measurement for a unit of work that covered several
+   * instances (i.e. a micro-batch of an instance stream). Should only be used
+   * by steps that are processing instance streams.
+   *
+   * @param numInstances the number of instances processed in the unit of work
+   */
+  void throughputUpdateEnd(int numInstances);
+
+  /**
+   * Get the number of instances that steps emitting instance streams should
+   * pack into each Data object. Batches are carried as an array of instances in
+   * the CON_AUX_DATA_INSTANCE_BATCH payload element, while the usual instance
+   * payload element holds the first instance of the batch. A value of 1 means
+   * that micro-batching is turned off.
+   *
+   * @return the number of instances per streaming Data object
+   */
+  int getStreamingBatchSize();
+
+  /**
+   * Get the instances carried by an incremental Data object. Returns the
+   * micro-batch if the data object holds one, otherwise an array containing
+   * just the single instance (from the primary payload for instance
+   * connections, or the CON_AUX_DATA_TEST_INSTANCE element for other
+   * incremental connections).
+   *
+   * @param data the data object to get the instances from
+   * @return the instances carried by the data object
+   */
+  Instance[] getStreamingInstances(Data data);
+
+  /**
+   * Mark the step managed by this step manager as one that can process
+   * micro-batches of instances (see CON_AUX_DATA_INSTANCE_BATCH) natively.
+   * Incoming batches are split into one Data object per instance for steps
+   * that are not marked.
+   *
+   * @param processesInstanceBatches true if the managed step processes
+   *          micro-batches of instances
+   */
+  void setStepProcessesInstanceBatches(boolean processesInstanceBatches);
+
+  /**
+   * Returns true if the step managed by this step manager has been marked as
+   * one that can process micro-batches of instances natively
+   *
+   * @return true if the managed step processes micro-batches of instances
+   */
+  boolean getStepProcessesInstanceBatches();
+
+  /**
+   * Mark the step managed by this step manager as one that can be replicated
+   * when instance streams are pipelined. I.e. processIncoming() may be called
+   * concurrently from several threads for the instance connection, each call
+   * being independent of the others. The output of the step is still passed
+   * on in the order in which the incoming data arrived.
+   *
+   * @param replicable true if the managed step can be replicated
+   */
+  void setStepIsReplicable(boolean replicable);
+
+  /**
+   * Returns true if the step managed by this step manager has been marked as
+   * one that can be replicated when instance streams are pipelined
+   *
+   * @return true if the managed step can be replicated
+   */
+  boolean stepIsReplicable();
+
   /**
    * Signal that throughput measurement has finished. Should only be used by
    * steps that are emitting incremental data. Call as the completion of an
@@ -22,6 +22,7 @@
 package weka.knowledgeflow;
 
 import weka.core.Environment;
+import weka.core.Instance;
 import weka.core.Instances;
 import weka.core.OptionHandler;
 import weka.core.Settings;
@@ -149,6 +150,27 @@ public class StepManagerImpl implements StepManager {
    */
   protected boolean m_stepMustRunSingleThreaded;
 
+  /**
+   * True if the managed step can process micro-batches of instances natively
+   */
+  protected boolean m_stepProcessesInstanceBatches;
+
+  /**
+   * True if the managed step can be replicated when instance streams are
+   * pipelined
+   */
+  protected boolean m_stepIsReplicable;
+
+  /** The pipeline stage that feeds instance streams to the managed step */
+  protected volatile StreamingStage m_streamingStage;
+
+  /**
+   * Output of the managed step that is held back by the current thread until
+   * it can be passed on in order (see {@code StreamingStage})
+   */
+  protected final ThreadLocal<List<DeferredOutput>> m_deferredOutput =
+    new ThreadLocal<List<DeferredOutput>>();
+
   /**
    * Constructor
    *
@@ -240,6 +262,70 @@ public class StepManagerImpl implements StepManager {
     return m_stepMustRunSingleThreaded;
   }
 
+  /**
+   * Set whether the managed step can process micro-batches of instances
+   * natively. If not, incoming batches are split into one Data object per
+   * instance before being passed to the step.
+   *
+   * @param processesInstanceBatches true if the managed step processes
+   *          micro-batches of instances
+   */
+  @Override
+  public void setStepProcessesInstanceBatches(boolean processesInstanceBatches) {
+    m_stepProcessesInstanceBatches = processesInstanceBatches;
+  }
+
+  /**
+   * Get whether the managed step can process micro-batches of instances
+   * natively
+   *
+   * @return true if the managed step processes micro-batches of instances
+   */
+  @Override
+  public boolean getStepProcessesInstanceBatches() {
+    return m_stepProcessesInstanceBatches;
+  }
+
+  /**
+   * Set whether the managed step can be replicated when instance streams are
+   * pipelined
+   *
+   * @param replicable true if the managed step can be replicated
+   */
+  @Override
+  public void setStepIsReplicable(boolean replicable) {
+    m_stepIsReplicable = replicable;
+  }
+
+  /**
+   * Get whether the managed step can be replicated when instance streams are
+   * pipelined
+   *
+   * @return true if the managed step can be replicated
+   */
+  @Override
+  public boolean stepIsReplicable() {
+    return m_stepIsReplicable;
+  }
+
+  /**
+   * Set the pipeline stage that feeds instance streams to the managed step
+   *
+   * @param stage the stage (or null if instance streams are not pipelined)
+   */
+  protected void setStreamingStage(StreamingStage stage) {
+    m_streamingStage = stage;
+  }
+
+  /**
+   * Get the pipeline stage that feeds instance streams to the managed step
+   *
+   * @return the stage, or null if instance streams are not pipelined
+   */
+  protected StreamingStage getStreamingStage() {
+    return m_streamingStage;
+  }
+
   /**
    * Get the step visual in use (if running in a visual environment)
    *
@@ -426,7 +512,8 @@ public class StepManagerImpl implements StepManager {
    */
   @Override
   public boolean isStepBusy() {
-    return m_stepIsBusy;
+    StreamingStage stage = m_streamingStage;
+    return m_stepIsBusy || (stage != null && stage.isBusy());
   }
 
   /**
@@ -502,12 +589,121 @@ public class StepManagerImpl implements StepManager {
     return data.getPayloadElement(CON_AUX_DATA_INCREMENTAL_STREAM_END, false);
   }
 
+  /**
+   * Get the number of instances that steps emitting instance streams should
+   * pack into each Data object. 1 means no micro-batching.
+   *
+   * @return the number of instances per streaming Data object
+   */
+  @Override
+  public int getStreamingBatchSize() {
+    if (getExecutionEnvironment() == null) {
+      return BaseExecutionEnvironment.BaseExecutionEnvironmentDefaults.STREAMING_BATCH_SIZE;
+    }
+    int batchSize =
+      getSettings().getSetting(KFDefaults.APP_ID,
+        BaseExecutionEnvironment.BaseExecutionEnvironmentDefaults.STREAMING_BATCH_SIZE_KEY,
+        BaseExecutionEnvironment.BaseExecutionEnvironmentDefaults.STREAMING_BATCH_SIZE,
+        getExecutionEnvironment().getEnvironmentVariables());
+
+    return Math.max(1, batchSize);
+  }
+
+  /**
+   * Get the instances carried by an incremental Data object - either the
+   * micro-batch or the single instance
+   *
+   * @param data the data object to get the instances from
+   * @return the instances carried by the data object
+   */
+  @Override
+  public Instance[] getStreamingInstances(Data data) {
+    Instance[] batch = data.getPayloadElement(CON_AUX_DATA_INSTANCE_BATCH);
+    if (batch != null) {
+      return batch;
+    }
+
+    Instance inst = data.getPayloadElement(streamingInstanceElement(data));
+    return inst != null ? new Instance[] { inst } : new Instance[0];
+  }
+
+  /**
+   * Get the name of the payload element that holds the instance in an
+   * incremental Data object. This is the primary payload for instance
+   * connections and the test instance for the other incremental connections
+   * (e.g. incrementalClassifier).
+   *
+   * @param data the data object
+   * @return the name of the payload element holding the instance
+   */
+  protected static String streamingInstanceElement(Data data) {
+    return data.getConnectionName().equals(CON_INSTANCE) ? CON_INSTANCE
+      : CON_AUX_DATA_TEST_INSTANCE;
+  }
+
+  /**
+   * Split a Data object that carries a micro-batch of instances into one Data
+   * object per instance. Used to pass batches on to steps and listeners that
+   * can only process one instance at a time. The same Data object is re-used
+   * for each instance, so it must not be retained by the receiver.
+   *
+   * @param data the data object carrying the batch
+   * @param receiver the receiver for the individual Data objects
+   * @throws WekaException if a problem occurs
+   */
+  protected void splitInstanceBatch(Data data, InstanceBatchReceiver receiver)
+    throws WekaException {
+    Instance[] batch = data.getPayloadElement(CON_AUX_DATA_INSTANCE_BATCH);
+    String element = streamingInstanceElement(data);
+    Data single = new Data();
+    single.m_payloadMap.putAll(data.m_payloadMap);
+    single.m_payloadMap.remove(CON_AUX_DATA_INSTANCE_BATCH);
+    single.setConnectionName(data.getConnectionName());
+    single.setSourceStep(data.getSourceStep());
+    for (Instance inst : batch) {
+      single.setPayloadElement(element, inst);
+      if (!receiver.receive(single)) {
+        break;
+      }
+    }
+  }
+
+  /**
+   * Callback for the individual Data objects produced when splitting a
+   * micro-batch of instances
+   */
+  protected static interface InstanceBatchReceiver {
+
+    /**
+     * Receive a Data object carrying a single instance
+     *
+     * @param data the Data object
+     * @return false if no further instances should be passed on
+     * @throws WekaException if a problem occurs
+     */
+    boolean receive(Data data) throws WekaException;
+  }
+
+  /**
+   * Returns true if the supplied Data object carries a micro-batch of
+   * instances that needs to be split for a receiver that can only process one
+   * instance at a time
+   *
+   * @param data the data object to check
+   * @return true if the data object carries a batch (and is not the end of
+   *         stream marker)
+   */
+  protected boolean isInstanceBatch(Data data) {
+    return data.getPayloadElement(CON_AUX_DATA_INSTANCE_BATCH) != null
+      && !isStreamFinished(data);
+  }
+
   /**
    * Clients can use this to record a start point for streaming throughput
    * measuring
    */
   @Override
-  public void throughputUpdateStart() {
+  public synchronized void throughputUpdateStart() {
     if (m_throughput == null) {
       m_throughput = new StreamThroughput(stepStatusMessagePrefix());
     }
@@ -521,8 +717,19 @@ public class StepManagerImpl implements StepManager {
    */
   @Override
   public void throughputUpdateEnd() {
+    throughputUpdateEnd(1);
+  }
+
+  /**
+   * Clients can use this to record a stop point for streaming throughput
+   * measuring when a micro-batch of instances has been processed
+   *
+   * @param numInstances the number of instances processed
+   */
+  @Override
+  public synchronized void throughputUpdateEnd(int numInstances) {
     if (m_throughput != null) {
-      m_throughput.updateEnd(m_log.getLog());
+      m_throughput.updateEnd(m_log.getLog(), numInstances);
 
       if (isStopRequested()) {
         finished();
@@ -895,6 +1102,18 @@ public class StepManagerImpl implements StepManager {
   protected void notifyOutputListeners(Data data) throws WekaException {
     List<StepOutputListener> listenersForType =
       m_outputListeners.get(data.getConnectionName());
+    if (listenersForType != null && listenersForType.size() > 0
+      && isInstanceBatch(data)) {
+      // listeners only ever see one instance at a time
+      splitInstanceBatch(data, new InstanceBatchReceiver() {
+        @Override
+        public boolean receive(Data single) throws WekaException {
+          notifyOutputListeners(single);
+          return true;
+        }
+      });
+      return;
+    }
     if (listenersForType != null) {
       for (StepOutputListener l : listenersForType) {
         if (!l.dataFromStep(data)) {
@@ -920,6 +1139,9 @@ public class StepManagerImpl implements StepManager {
   @Override
   public void outputData(String outgoingConnectionName, Data data)
     throws WekaException {
+    if (deferOutput(outgoingConnectionName, null, data)) {
+      return;
+    }
     if (!isStopRequested()) {
       data.setConnectionName(outgoingConnectionName);
       data.setSourceStep(m_managedStep);
@@ -955,6 +1177,9 @@ public class StepManagerImpl implements StepManager {
    */
   @Override
   public void outputData(Data... data) throws WekaException {
+    if (deferOutput(null, null, data)) {
+      return;
+    }
     if (!isStopRequested()) {
       Map<StepManagerImpl, List<Data>> stepsToSendTo =
         new LinkedHashMap<StepManagerImpl, List<Data>>();
@@ -1004,6 +1229,9 @@ public class StepManagerImpl implements StepManager {
   @Override
   public void outputData(String outgoingConnectionName, String stepName,
     Data data) throws WekaException {
+    if (deferOutput(outgoingConnectionName, stepName, data)) {
+      return;
+    }
     if (!isStopRequested()) {
       data.setConnectionName(outgoingConnectionName);
       data.setSourceStep(m_managedStep);
@@ -1057,7 +1285,17 @@ public class StepManagerImpl implements StepManager {
    */
   protected void processIncoming(Data data) {
     try {
-      getManagedStep().processIncoming(data);
+      if (!m_stepProcessesInstanceBatches && isInstanceBatch(data)) {
+        splitInstanceBatch(data, new InstanceBatchReceiver() {
+          @Override
+          public boolean receive(Data single) throws WekaException {
+            getManagedStep().processIncoming(single);
+            return !isStopRequested();
+          }
+        });
+      } else {
+        getManagedStep().processIncoming(data);
+      }
     } catch (WekaException ex) {
       interrupted();
       logError(ex.getMessage(), ex);
@@ -1067,6 +1305,106 @@ public class StepManagerImpl implements StepManager {
     }
   }
 
+  /**
+   * Have the managed step process the supplied data object, holding back any
+   * output it produces. Used when the step is replicated, so that the output
+   * can be passed on in the order in which the data arrived.
+   *
+   * @param data the data for the managed step to process
+   * @return the output produced by the step
+   */
+  protected List<DeferredOutput> processIncomingDeferred(Data data) {
+    List<DeferredOutput> output = new ArrayList<DeferredOutput>();
+    m_deferredOutput.set(output);
+    try {
+      processIncoming(data);
+    } finally {
+      m_deferredOutput.remove();
+    }
+
+    return output;
+  }
+
+  /**
+   * Pass on output that was held back by processIncomingDeferred()
+   *
+   * @param output the output to pass on
+   */
+  protected void outputDeferred(List<DeferredOutput> output) {
+    try {
+      for (DeferredOutput o : output) {
+        if (o.m_stepName != null) {
+          outputData(o.m_connectionName, o.m_stepName, o.m_data[0]);
+        } else if (o.m_connectionName != null) {
+          outputData(o.m_connectionName, o.m_data[0]);
+        } else {
+          outputData(o.m_data);
+        }
+      }
+    } catch (WekaException ex) {
+      interrupted();
+      logError(ex.getMessage(), ex);
+    } catch (Throwable ex) {
+      interrupted();
+      logError(ex.getMessage(), ex);
+    }
+  }
+
+  /**
+   * Holds back output if the current thread is processing data for a
+   * replicated step. The data objects are copied, as steps usually re-use
+   * them.
+   *
+   * @param connectionName the name of the outgoing connection (may be null)
+   * @param stepName the name of the step to send the data to (may be null)
+   * @param data the data being output
+   * @return true if the output was held back
+   */
+  protected boolean deferOutput(String connectionName, String stepName,
+    Data... data) {
+    List<DeferredOutput> output = m_deferredOutput.get();
+    if (output == null) {
+      return false;
+    }
+
+    Data[] copies = new Data[data.length];
+    for (int i = 0; i < data.length; i++) {
+      copies[i] = StreamingStage.copy(data[i]);
+    }
+    output.add(new DeferredOutput(connectionName, stepName, copies));
+
+    return true;
+  }
+
+  /**
+   * Output of a replicated step that has been held back
+   */
+  protected static class DeferredOutput {
+
+    /** The name of the outgoing connection (may be null) */
+    protected final String m_connectionName;
+
+    /** The name of the target step (may be null) */
+    protected final String m_stepName;
+
+    /** The data that was output */
+    protected final Data[] m_data;
+
+    /**
+     * Constructor
+     *
+     * @param connectionName the name of the outgoing connection
+     * @param stepName the name of the target step
+     * @param data the data that was output
+     */
+    protected DeferredOutput(String connectionName, String stepName,
+      Data[] data) {
+      m_connectionName = connectionName;
+      m_stepName = stepName;
+      m_data = data;
+    }
+  }
+
   /**
    * Used by the rendering routine in LayoutPanel to ensure that connections
    * downstream from a deleted connection get rendered in grey rather than red.
@@ -0,0 +1,307 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ *    StreamingStage.java
+ *    Copyright (C) 2026 University of Waikato, Hamilton, New Zealand
+ *
+ */
+
+package weka.knowledgeflow;
+
+import weka.core.WekaException;
+
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A stage of a pipelined instance stream. Data sent to a step over an instance
+ * connection is put into a bounded queue and processed by the worker thread(s)
+ * of the stage, so that the steps of a streaming flow run concurrently rather
+ * than all on the thread of the step producing the stream. Producers block
+ * while the queue is full. If the step has been marked as replicable, several
+ * workers process data concurrently and the output of the step is passed on in
+ * the order in which the data was received.
+ *
+ * @author The WEKA Team (wekalist@list.waikato.ac.nz)
+ * @version $Revision$
+ */
+public class StreamingStage {
+
+  /** The step that processes the data in this stage */
+  protected final StepManagerImpl m_step;
+
+  /** The queue of data waiting to be processed */
+  protected final BlockingQueue<Entry> m_queue;
+
+  /** The worker threads */
+  protected final Thread[] m_workers;
+
+  /** Number of data objects queued or being processed */
+  protected final AtomicInteger m_pending = new AtomicInteger();
+
+  /** Sequence number of the next data object to queue */
+  protected long m_nextSeq;
+
+  /** Sequence number of the next data object whose output can be passed on */
+  protected long m_nextToEmit;
+
+  /** Lock for passing on output in order */
+  protected final Object m_mergeLock = new Object();
+
+  /** Lock for signalling that the stage has become idle or was shut down */
+  protected final Object m_idleLock = new Object();
+
+  /** True once the stage has been shut down */
+  protected volatile boolean m_shutdown;
+
+  /**
+   * A queued data object
+   */
+  protected static class Entry {
+
+    /** The position of the data in the stream */
+    protected final long m_seq;
+
+    /** The data */
+    protected final Data m_data;
+
+    /**
+     * Constructor
+     *
+     * @param seq the position of the data in the stream
+     * @param data the data
+     */
+    protected Entry(long seq, Data data) {
+      m_seq = seq;
+      m_data = data;
+    }
+  }
+
+  /**
+   * Constructor
+   *
+   * @param step the step that processes the data in this stage
+   * @param queueSize the maximum number of data objects that can be queued
+   * @param numWorkers the number of worker threads to use
+   */
+  public StreamingStage(StepManagerImpl step, int queueSize, int numWorkers) {
+    m_step = step;
+    m_queue = new ArrayBlockingQueue<Entry>(Math.max(1, queueSize));
+    m_workers = new Thread[Math.max(1, numWorkers)];
+    for (int i = 0; i < m_workers.length; i++) {
+      m_workers[i] = new Thread("Streaming stage - " + step.getName()) {
+        @Override
+        public void run() {
+          work();
+        }
+      };
+      m_workers[i].setDaemon(true);
+    }
+  }
+
+  /**
+   * Get the step that processes the data in this stage
+   *
+   * @return the step
+   */
+  public StepManagerImpl getStep() {
+    return m_step;
+  }
+
+  /**
+   * Get the number of worker threads
+   *
+   * @return the number of worker threads
+   */
+  public int getNumWorkers() {
+    return m_workers.length;
+  }
+
+  /**
+   * Start the worker threads
+   */
+  public void start() {
+    for (Thread t : m_workers) {
+      t.start();
+    }
+  }
+
+  /**
+   * Returns true if there is data queued or being processed
+   *
+   * @return true if the stage is busy
+   */
+  public boolean isBusy() {
+    return !m_shutdown && m_pending.get() > 0;
+  }
+
+  /**
+   * Queue a data object for processing. The data object is copied (its payload
+   * is not), so the caller is free to re-use it. Blocks while the queue is
+   * full.
+   *
+   * @param data the data to queue
+   * @throws WekaException if the stage has been shut down or the calling thread
+   *           is interrupted
+   */
+  public void put(Data data) throws WekaException {
+    if (m_shutdown) {
+      throw new WekaException("Streaming stage for step '" + m_step.getName()
+        + "' has been shut down");
+    }
+    Data copy = copy(data);
+    m_pending.incrementAndGet();
+    try {
+      synchronized (this) {
+        m_queue.put(new Entry(m_nextSeq++, copy));
+      }
+    } catch (InterruptedException ex) {
+      finished();
+      throw new WekaException(ex);
+    }
+  }
+
+  /**
+   * Record that a data object has been processed (or dropped), waking up
+   * threads waiting for the stage to become idle if it was the last one.
+   */
+  protected void finished() {
+    if (m_pending.decrementAndGet() == 0) {
+      synchronized (m_idleLock) {
+        m_idleLock.notifyAll();
+      }
+    }
+  }
+
+  /**
+   * Wait until all queued data has been processed (or the stage is shut
+   * down).
+   *
+   * @throws InterruptedException if the calling thread is interrupted
+   */
+  public void waitUntilIdle() throws InterruptedException {
+    synchronized (m_idleLock) {
+      while (!m_shutdown && m_pending.get() > 0) {
+        m_idleLock.wait();
+      }
+    }
+  }
+
+  /**
+   * Stop the worker threads. Any queued data is discarded.
+   */
+  public void shutdown() {
+    m_shutdown = true;
+    for (Thread t : m_workers) {
+      t.interrupt();
+    }
+    m_queue.clear();
+    synchronized (m_idleLock) {
+      m_idleLock.notifyAll();
+    }
+  }
+
+  /**
+   * The loop run by each worker thread
+   */
+  protected void work() {
+    while (!m_shutdown) {
+      Entry entry;
+      try {
+        entry = m_queue.take();
+      } catch (InterruptedException ex) {
+        return;
+      }
+      try {
+        if (m_workers.length == 1) {
+          if (!m_step.isStopRequested()) {
+            m_step.processIncoming(entry.m_data);
+          }
+        } else {
+          processReplicated(entry);
+        }
+      } catch (InterruptedException ex) {
+        return;
+      } finally {
+        finished();
+      }
+    }
+  }
+
+  /**
+   * Process a data object with one of several workers. The output of the step
+   * is held back until the output for all preceding data has been passed on.
+   * The first data object and the end of the stream are processed only once
+   * all preceding data has been processed.
+   *
+   * @param entry the data to process
+   * @throws InterruptedException if the worker is interrupted while waiting
+   */
+  protected void processReplicated(Entry entry) throws InterruptedException {
+    // the first data object initializes the step (which may decide that it
+    // can't be replicated after all), so it is processed on its own
+    synchronized (m_mergeLock) {
+      while (m_nextToEmit < Math.min(entry.m_seq, 1)) {
+        m_mergeLock.wait();
+      }
+    }
+    boolean replicate =
+      entry.m_seq > 0 && m_step.stepIsReplicable()
+        && !m_step.isStreamFinished(entry.m_data);
+    List<StepManagerImpl.DeferredOutput> output = null;
+    if (replicate && !m_step.isStopRequested()) {
+      output = m_step.processIncomingDeferred(entry.m_data);
+    }
+
+    synchronized (m_mergeLock) {
+      while (m_nextToEmit != entry.m_seq) {
+        m_mergeLock.wait();
+      }
+    }
+    try {
+      if (!m_step.isStopRequested()) {
+        if (!replicate) {
+          m_step.processIncoming(entry.m_data);
+        } else if (output != null) {
+          m_step.outputDeferred(output);
+        }
+      }
+    } finally {
+      synchronized (m_mergeLock) {
+        m_nextToEmit++;
+        m_mergeLock.notifyAll();
+      }
+    }
+  }
+
+  /**
+   * Make a shallow copy of a data object. The payload elements themselves are
+   * shared.
+   *
+   * @param data the data object to copy
+   * @return the copy
+   */
+  protected static Data copy(Data data) {
+    Data copy = new Data();
+    copy.m_connectionName = data.m_connectionName;
+    copy.m_sourceStep = data.m_sourceStep;
+    copy.m_payloadMap.putAll(data.m_payloadMap);
+
+    return copy;
+  }
+}
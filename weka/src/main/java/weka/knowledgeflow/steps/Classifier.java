@@ -155,6 +155,7 @@ public class Classifier extends WekaAlgorithmWrapper implements
       m_trainedClassifierHeader = null;
       m_trainTestHelper = null;
       m_incrementalData = new Data(StepManager.CON_INCREMENTAL_CLASSIFIER);
+      getStepManager().setStepProcessesInstanceBatches(true);
       m_classifierTemplate =
         AbstractClassifier
           .makeCopy((weka.classifiers.Classifier) getWrappedAlgorithm());
@@ -567,7 +568,6 @@ public class Classifier extends WekaAlgorithmWrapper implements
     if (isStopRequested()) {
       return;
     }
-    Instance inst = (Instance) data.getPayloadElement(StepManager.CON_INSTANCE);
     if (getStepManager().isStreamFinished(data)) {
       // finished
       if (m_trainedClassifier instanceof UpdateableBatchProcessor) {
@@ -584,6 +584,8 @@ public class Classifier extends WekaAlgorithmWrapper implements
         StepManager.CON_INCREMENTAL_CLASSIFIER, m_trainedClassifier);
       m_incrementalData.setPayloadElement(
         StepManager.CON_AUX_DATA_TEST_INSTANCE, null);
+      m_incrementalData.setPayloadElement(
+        StepManager.CON_AUX_DATA_INSTANCE_BATCH, null);
       // getStepManager().outputData(m_incrementalData);
 
       outputTextData(m_trainedClassifier, -1);
@@ -595,6 +597,50 @@ public class Classifier extends WekaAlgorithmWrapper implements
       return;
     }
 
+    Instance[] batch =
+      data.getPayloadElement(StepManager.CON_AUX_DATA_INSTANCE_BATCH);
+    if (batch != null) {
+      if (m_classifierIsIncremental && m_updateIncrementalClassifier) {
+        // test-then-train has to see the model as updated by all preceding
+        // instances, so pass the batch on one instance at a time
+        for (Instance inst : batch) {
+          if (isStopRequested()) {
+            return;
+          }
+          processStreamingInstance(inst);
+        }
+      } else {
+        // the model does not change, so downstream steps can score the whole
+        // batch in one go
+        m_incrementalData.setPayloadElement(
+          StepManager.CON_AUX_DATA_TEST_INSTANCE, batch[0]);
+        m_incrementalData.setPayloadElement(
+          StepManager.CON_AUX_DATA_INSTANCE_BATCH, batch);
+        m_incrementalData.setPayloadElement(
+          StepManager.CON_INCREMENTAL_CLASSIFIER, m_trainedClassifier);
+        getStepManager().outputData(m_incrementalData.getConnectionName(),
+          m_incrementalData);
+        m_incrementalData.setPayloadElement(
+          StepManager.CON_AUX_DATA_INSTANCE_BATCH, null);
+        getStepManager().throughputUpdateStart();
+        getStepManager().throughputUpdateEnd(batch.length);
+      }
+      return;
+    }
+
+    processStreamingInstance((Instance) data
+      .getPayloadElement(StepManager.CON_INSTANCE));
+  }
+
+  /**
+   * Process a single instance from an incoming instance stream. Passes the
+   * instance on for testing and then updates the classifier with it (if
+   * incremental training is turned on).
+   *
+   * @param inst the instance to process
+   * @throws WekaException if a problem occurs
+   */
+  protected void processStreamingInstance(Instance inst) throws WekaException {
     // test on the instance
     m_incrementalData.setPayloadElement(StepManager.CON_AUX_DATA_TEST_INSTANCE,
       inst);
@@ -24,7 +24,9 @@ package weka.knowledgeflow.steps;
 import weka.core.EnvironmentHandler;
 import weka.core.Instance;
 import weka.core.Instances;
+import weka.core.OptionMetadata;
 import weka.core.WekaException;
+import weka.filters.InstanceIndependentFilter;
 import weka.filters.StreamableFilter;
 import weka.gui.ProgrammaticProperty;
 import weka.gui.knowledgeflow.StepVisual;
@@ -32,9 +34,11 @@ import weka.knowledgeflow.Data;
 import weka.knowledgeflow.StepManager;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.atomic.AtomicInteger;
 
 /**
@@ -56,7 +60,7 @@ public class Filter extends WekaAlgorithmWrapper {
   protected weka.filters.Filter m_streamingFilter;
 
   /** True if we've been reset */
-  protected boolean m_isReset;
+  protected volatile boolean m_isReset;
 
   /** True if we're streaming */
   protected boolean m_streaming;
@@ -78,6 +82,22 @@ public class Filter extends WekaAlgorithmWrapper {
   /** Keeps track of the number of train/test batches processed */
   protected AtomicInteger m_setCount;
 
+  /**
+   * True if copies of the streaming filter may process an instance stream in
+   * parallel
+   */
+  protected boolean m_replicateStreaming;
+
+  /** Copies of the streaming filter used by the threads of a replicated step */
+  protected Map<Thread, weka.filters.Filter> m_streamingFilterCopies =
+    new ConcurrentHashMap<Thread, weka.filters.Filter>();
+
+  /**
+   * The header shared by all instances output by the copies of a replicated
+   * streaming filter
+   */
+  protected Instances m_replicatedOutputFormat;
+
   /**
    * Get the class of the wrapped algorithm
    *
@@ -120,6 +140,33 @@ public class Filter extends WekaAlgorithmWrapper {
     return (weka.filters.Filter) getWrappedAlgorithm();
   }
 
+  /**
+   * Set whether copies of the filter may process an instance stream in
+   * parallel. Only applies if instance streams are pipelined, and to filters
+   * that declare (via InstanceIndependentFilter) that they process each
+   * instance independently of the others once initialized.
+   *
+   * @param replicate true if the filter can be replicated when streaming
+   */
+  @OptionMetadata(
+    displayName = "Replicate when streaming",
+    description = "Let copies of the filter process a (pipelined) instance "
+      + "stream in parallel, if the filter declares that it processes each "
+      + "instance independently")
+  public void setReplicateStreaming(boolean replicate) {
+    m_replicateStreaming = replicate;
+  }
+
+  /**
+   * Get whether copies of the filter may process an instance stream in
+   * parallel.
+   *
+   * @return true if the filter can be replicated when streaming
+   */
+  public boolean getReplicateStreaming() {
+    return m_replicateStreaming;
+  }
+
   /**
    * Get a list of incoming connection types that this step can accept. Ideally
    * (and if appropriate), this should take into account the state of the step
@@ -228,6 +275,13 @@ public class Filter extends WekaAlgorithmWrapper {
     }
 
     m_incrementalData = new Data(StepManager.CON_INSTANCE);
+    getStepManager().setStepProcessesInstanceBatches(true);
+    // whether the initialized filter is instance independent is checked once
+    // the stream starts
+    getStepManager().setStepIsReplicable(
+      m_replicateStreaming && m_filterTemplate instanceof StreamableFilter
+        && m_filterTemplate instanceof InstanceIndependentFilter);
+    m_streamingFilterCopies.clear();
     m_filterMap.clear();
     m_waitingTestData.clear();
     m_streaming = false;
@@ -248,22 +302,14 @@ public class Filter extends WekaAlgorithmWrapper {
       data.getPayloadElement(StepManager.CON_AUX_DATA_MAX_SET_NUM);
 
     if (m_isReset) {
-      m_isReset = false;
-      m_setCount = new AtomicInteger(maxSetNum != null ? maxSetNum : 1);
-      getStepManager().processing();
-      if (data.getConnectionName().equals(StepManager.CON_INSTANCE)) {
-        Instances incomingStructure =
-          ((Instance) data.getPayloadElement(StepManager.CON_INSTANCE))
-            .dataset();
-        m_streaming = true;
-        getStepManager().logBasic("Initializing streaming filter");
-        try {
-          m_streamingFilter = weka.filters.Filter.makeCopy(m_filterTemplate);
-          m_streamingFilter.setInputFormat(incomingStructure);
-          m_stringAttsPresent =
-            m_streamingFilter.getOutputFormat().checkForStringAttributes();
-        } catch (Exception ex) {
-          throw new WekaException(ex);
+      // several threads may arrive here at once if the step is replicated
+      synchronized (this) {
+        if (m_isReset) {
+          try {
+            initialize(data, maxSetNum);
+          } finally {
+            m_isReset = false;
+          }
         }
       }
     }
@@ -420,6 +466,111 @@ public class Filter extends WekaAlgorithmWrapper {
     }
   }
 
+  /**
+   * Initialize processing on receipt of the first data object
+   *
+   * @param data the first data object
+   * @param maxSetNum the maximum set number (may be null)
+   * @throws WekaException if a problem occurs
+   */
+  protected void initialize(Data data, Integer maxSetNum)
+    throws WekaException {
+    m_setCount = new AtomicInteger(maxSetNum != null ? maxSetNum : 1);
+    getStepManager().processing();
+    if (data.getConnectionName().equals(StepManager.CON_INSTANCE)) {
+      Instances incomingStructure =
+        ((Instance) data.getPayloadElement(StepManager.CON_INSTANCE))
+          .dataset();
+      m_streaming = true;
+      getStepManager().logBasic("Initializing streaming filter");
+      try {
+        m_streamingFilter = weka.filters.Filter.makeCopy(m_filterTemplate);
+        m_streamingFilter.setInputFormat(incomingStructure);
+        m_stringAttsPresent =
+          m_streamingFilter.getOutputFormat().checkForStringAttributes();
+        if (getStepManager().stepIsReplicable()
+          && !((InstanceIndependentFilter) m_streamingFilter)
+            .isInstanceIndependent()) {
+          // e.g. a filter that keeps state across instances
+          getStepManager().logBasic(
+            "Filter does not process instances independently - not "
+              + "replicating the filter");
+          getStepManager().setStepIsReplicable(false);
+        }
+        if (m_stringAttsPresent && getStepManager().stepIsReplicable()) {
+          // string values are passed on via the (shared) header
+          getStepManager().logBasic(
+            "Output contains string attributes - not replicating the filter");
+          getStepManager().setStepIsReplicable(false);
+        }
+        m_replicatedOutputFormat = m_streamingFilter.getOutputFormat();
+      } catch (Exception ex) {
+        throw new WekaException(ex);
+      }
+    }
+  }
+
+  /**
+   * Get the streaming filter to use in the current thread. If the step is
+   * replicated, each thread uses its own copy of the initialized streaming
+   * filter.
+   *
+   * @return the streaming filter to use
+   * @throws WekaException if the filter can't be copied
+   */
+  protected weka.filters.Filter getStreamingFilter() throws WekaException {
+    if (!getStepManager().stepIsReplicable()) {
+      return m_streamingFilter;
+    }
+
+    weka.filters.Filter copy =
+      m_streamingFilterCopies.get(Thread.currentThread());
+    if (copy == null) {
+      try {
+        copy = weka.filters.Filter.makeCopy(m_streamingFilter);
+      } catch (Exception ex) {
+        throw new WekaException(ex);
+      }
+      m_streamingFilterCopies.put(Thread.currentThread(), copy);
+    }
+
+    return copy;
+  }
+
+  /**
+   * Get the data object to output streaming results in. A new one is needed for
+   * every output if the step is replicated, as several threads output at once.
+   *
+   * @return the data object to use
+   */
+  protected Data getStreamingOutputData() {
+    return getStepManager().stepIsReplicable() ? new Data(
+      StepManager.CON_INSTANCE) : m_incrementalData;
+  }
+
+  /**
+   * Prepare a filtered instance for output. Downstream steps expect all
+   * instances of a stream to share one header, so the output of the copies of
+   * a replicated filter gets a common header. String values are stored in the
+   * header, which is how they are passed on in a stream.
+   *
+   * @param filteredI the filtered instance
+   */
+  protected void prepareForOutput(Instance filteredI) {
+    if (getStepManager().stepIsReplicable()) {
+      filteredI.setDataset(m_replicatedOutputFormat);
+    } else if (m_stringAttsPresent) {
+      for (int i = 0; i < filteredI.numAttributes(); i++) {
+        if (filteredI.dataset().attribute(i).isString()
+          && !filteredI.isMissing(i)) {
+          String val = filteredI.stringValue(i);
+          filteredI.dataset().attribute(i).setStringValue(val);
+          filteredI.setValue(i, 0);
+        }
+      }
+    }
+  }
+
   /**
    * Process an instance
    *
@@ -427,25 +578,24 @@ public class Filter extends WekaAlgorithmWrapper {
    * @throws WekaException if a problem occurs
    */
   protected void processStreaming(Data data) throws WekaException {
+    Instance[] batch =
+      data.getPayloadElement(StepManager.CON_AUX_DATA_INSTANCE_BATCH);
+    if (batch != null) {
+      processStreamingBatch(batch);
+      return;
+    }
+
     Instance toFilter = data.getPrimaryPayload();
+    weka.filters.Filter streamingFilter = getStreamingFilter();
     getStepManager().throughputUpdateStart();
     try {
-      if (m_streamingFilter.input(toFilter)) {
-        Instance filteredI = m_streamingFilter.output();
-        if (m_stringAttsPresent) {
-          for (int i = 0; i < filteredI.numAttributes(); i++) {
-            if (filteredI.dataset().attribute(i).isString()
-              && !filteredI.isMissing(i)) {
-              String val = filteredI.stringValue(i);
-              filteredI.dataset().attribute(i).setStringValue(val);
-              filteredI.setValue(i, 0);
-            }
-          }
-        }
-        m_incrementalData
-          .setPayloadElement(StepManager.CON_INSTANCE, filteredI);
+      if (streamingFilter.input(toFilter)) {
+        Instance filteredI = streamingFilter.output();
+        prepareForOutput(filteredI);
+        Data output = getStreamingOutputData();
+        output.setPayloadElement(StepManager.CON_INSTANCE, filteredI);
         if (!isStopRequested()) {
-          getStepManager().outputData(m_incrementalData);
+          getStepManager().outputData(output);
         }
       }
     } catch (Exception ex) {
@@ -454,19 +604,86 @@ public class Filter extends WekaAlgorithmWrapper {
     getStepManager().throughputUpdateEnd();
   }
 
+  /**
+   * Process a micro-batch of instances. Filtered instances are passed on as a
+   * batch too, unless the output contains string attributes (whose values are
+   * passed on via the header, one instance at a time).
+   *
+   * @param batch the instances to process
+   * @throws WekaException if a problem occurs
+   */
+  protected void processStreamingBatch(Instance[] batch) throws WekaException {
+    if (m_stringAttsPresent) {
+      Data single = new Data(StepManager.CON_INSTANCE);
+      for (Instance inst : batch) {
+        if (isStopRequested()) {
+          return;
+        }
+        single.setPayloadElement(StepManager.CON_INSTANCE, inst);
+        processStreaming(single);
+      }
+      return;
+    }
+
+    weka.filters.Filter streamingFilter = getStreamingFilter();
+    getStepManager().throughputUpdateStart();
+    Instance[] filtered = new Instance[batch.length];
+    int count = 0;
+    try {
+      for (Instance toFilter : batch) {
+        if (streamingFilter.input(toFilter)) {
+          filtered[count] = streamingFilter.output();
+          prepareForOutput(filtered[count++]);
+        }
+      }
+    } catch (Exception ex) {
+      throw new WekaException(ex);
+    }
+    if (count > 0 && !isStopRequested()) {
+      if (count < filtered.length) {
+        filtered = Arrays.copyOf(filtered, count);
+      }
+      Data output = getStreamingOutputData();
+      output.setPayloadElement(StepManager.CON_INSTANCE, filtered[0]);
+      output.setPayloadElement(StepManager.CON_AUX_DATA_INSTANCE_BATCH,
+        filtered);
+      getStepManager().outputData(output);
+      output.setPayloadElement(StepManager.CON_AUX_DATA_INSTANCE_BATCH, null);
+    }
+    getStepManager().throughputUpdateEnd(batch.length);
+  }
+
   /**
    * Check to see if there are any pending instances to output from the filter
    *
    * @throws WekaException if a problem occurs
    */
   protected void checkPendingStreaming() throws WekaException {
+    m_incrementalData.setPayloadElement(
+      StepManager.CON_AUX_DATA_INSTANCE_BATCH, null);
+    checkPendingStreaming(m_streamingFilter);
+    for (weka.filters.Filter copy : m_streamingFilterCopies.values()) {
+      checkPendingStreaming(copy);
+    }
+    m_streamingFilterCopies.clear();
+  }
+
+  /**
+   * Check to see if there are any pending instances to output from the
+   * supplied streaming filter
+   *
+   * @param streamingFilter the streaming filter to check
+   * @throws WekaException if a problem occurs
+   */
+  protected void checkPendingStreaming(weka.filters.Filter streamingFilter)
+    throws WekaException {
     try {
-      m_streamingFilter.batchFinished();
+      streamingFilter.batchFinished();
       Instances structureCopy =
-        m_streamingFilter.getOutputFormat().stringFreeStructure();
-      while (m_streamingFilter.numPendingOutput() > 0) {
+        streamingFilter.getOutputFormat().stringFreeStructure();
+      while (streamingFilter.numPendingOutput() > 0) {
         getStepManager().throughputUpdateStart();
-        Instance filteredI = m_streamingFilter.output();
+        Instance filteredI = streamingFilter.output();
         if (m_stringAttsPresent) {
           for (int i = 0; i < filteredI.numAttributes(); i++) {
             if (filteredI.attribute(i).isString() && ! filteredI.isMissing(i)) {
@@ -476,6 +693,8 @@ public class Filter extends WekaAlgorithmWrapper {
             }
           }
           filteredI.setDataset(structureCopy);
+        } else if (getStepManager().stepIsReplicable()) {
+          filteredI.setDataset(m_replicatedOutputFormat);
         }
         m_incrementalData
           .setPayloadElement(StepManager.CON_INSTANCE, filteredI);
@@ -32,6 +32,8 @@ import weka.gui.knowledgeflow.KFGUIConsts;
 import weka.knowledgeflow.Data;
 import weka.knowledgeflow.StepManager;
 
+import java.io.File;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
@@ -53,10 +55,11 @@ import java.util.concurrent.atomic.AtomicInteger;
 @KFStep(
   name = "Join",
   category = "Flow",
-  toolTipText = "Performs an inner join on two incoming datasets/instance streams (IMPORTANT: assumes that "
-    + "both datasets are sorted in ascending order of the key fields). If data is not sorted then use"
-    + "a Sorter step to sort both into ascending order of the key fields. Does not handle the case where"
-    + "keys are not unique in one or both inputs.",
+  toolTipText = "Performs an inner join on two incoming datasets/instance streams (IMPORTANT: unless "
+    + "the hash join mode is used, assumes that both datasets are sorted in ascending order of the key "
+    + "fields). If data is not sorted then use a Sorter step to sort both into ascending order of the key "
+    + "fields, or use the hash join mode. The merge join does not handle the case where keys are not "
+    + "unique in one or both inputs.",
   iconPath = KFGUIConsts.BASE_ICON_PATH + "Join.gif")
 public class Join extends BaseStep {
 
@@ -65,6 +68,12 @@ public class Join extends BaseStep {
 
   private static final long serialVersionUID = -8248954818247532014L;
 
+  /** Number of partitions used when the hash table exceeds the memory budget */
+  protected static final int NUM_PARTITIONS = 16;
+
+  /** Maximum number of times that the data is partitioned for a hash join */
+  protected static final int MAX_PARTITION_LEVELS = 3;
+
   /** First source of data */
   protected StepManager m_firstInput;
 
@@ -144,6 +153,24 @@ public class Join extends BaseStep {
    */
   protected boolean m_secondIsWaiting;
 
+  /** True to perform a hash join rather than a merge join */
+  protected boolean m_hashJoin;
+
+  /**
+   * True to build the hash table on the first input rather than the second
+   * (instance streams only - for batch data the smaller input is used)
+   */
+  protected boolean m_buildOnFirstInput;
+
+  /** Memory budget for the hash table */
+  protected String m_hashTableMemory = "100MB";
+
+  /** The state of a streaming hash join */
+  protected transient HashJoin m_hashJoinState;
+
+  /** Collects the output of a batch hash join */
+  protected transient Instances m_hashJoinOutput;
+
   /**
    * Set the key specification (in internal format -
    * k11,k12,...,k1nKEY_SPEC_SEPARATORk21,k22,...,k2n)
@@ -164,6 +191,68 @@ public class Join extends BaseStep {
     return m_keySpec;
   }
 
+  /**
+   * Set whether to perform a hash join rather than a merge join. A hash join
+   * does not need the inputs to be sorted on the key fields and handles keys
+   * that are not unique.
+   *
+   * @param hashJoin true to perform a hash join
+   */
+  public void setHashJoin(boolean hashJoin) {
+    m_hashJoin = hashJoin;
+  }
+
+  /**
+   * Get whether to perform a hash join rather than a merge join
+   *
+   * @return true if a hash join is performed
+   */
+  public boolean getHashJoin() {
+    return m_hashJoin;
+  }
+
+  /**
+   * Set whether to build the hash table on the first input rather than the
+   * second one when joining instance streams. For batch data the hash table is
+   * always built on the smaller input.
+   *
+   * @param buildOnFirst true to build the hash table on the first input
+   */
+  public void setBuildOnFirstInput(boolean buildOnFirst) {
+    m_buildOnFirstInput = buildOnFirst;
+  }
+
+  /**
+   * Get whether to build the hash table on the first input rather than the
+   * second one when joining instance streams
+   *
+   * @return true if the hash table is built on the first input
+   */
+  public boolean getBuildOnFirstInput() {
+    return m_buildOnFirstInput;
+  }
+
+  /**
+   * Set the memory budget for the hash table (in bytes, the suffixes KB, MB
+   * and GB can be used). If the input the table is built on exceeds the
+   * budget, both inputs are partitioned into temp files that are joined one
+   * pair at a time.
+   *
+   * @param memory the memory budget
+   */
+  public void setHashTableMemory(String memory) {
+    m_hashTableMemory = memory;
+  }
+
+  /**
+   * Get the memory budget for the hash table
+   *
+   * @return the memory budget
+   */
+  public String getHashTableMemory() {
+    return m_hashTableMemory;
+  }
+
   /**
    * Get the names of the connected steps as a list
    *
@@ -263,6 +352,12 @@ public class Join extends BaseStep {
     m_headerTwo = null;
     m_firstFinished = false;
     m_secondFinished = false;
+    m_runningIncrementally = false;
+    m_mergedHeader = null;
+    if (m_hashJoinState != null) {
+      m_hashJoinState.cleanup();
+      m_hashJoinState = null;
+    }
 
     if (getStepManager().numIncomingConnections() < 2) {
       throw new WekaException("Two incoming connections are required for the "
@@ -317,10 +412,20 @@ public class Join extends BaseStep {
           "Finished receiving from " + m_secondInput.getName());
       }
 
+      if (m_hashJoin) {
+        finishHashJoinInput(
+          data.getSourceStep().getStepManager() == m_firstInput,
+          m_firstFinished && m_secondFinished);
+      }
+
       if (m_firstFinished && m_secondFinished) {
-        clearBuffers();
-        m_streamingData.clearPayload();
-        getStepManager().throughputFinished(m_streamingData);
+        if (!m_hashJoin) {
+          clearBuffers();
+        }
+        if (!isStopRequested()) {
+          m_streamingData.clearPayload();
+          getStepManager().throughputFinished(m_streamingData);
+        }
       }
 
       return;
@@ -328,6 +433,7 @@ public class Join extends BaseStep {
 
     Instance inst = data.getPrimaryPayload();
     StepManager source = data.getSourceStep().getStepManager();
+    m_runningIncrementally = true;
     if (m_headerOne == null || m_headerTwo == null) {
       if (m_headerOne == null && source == m_firstInput) {
         m_headerOne = new Instances(inst.dataset(), 0);
@@ -364,6 +470,25 @@ public class Join extends BaseStep {
       }
     }
 
+    if (m_hashJoin) {
+      Sorter.InstanceHolder newH = new Sorter.InstanceHolder();
+      newH.m_instance = inst;
+      copyStringAttVals(newH, source == m_firstInput ? m_stringAttIndexesOne
+        : m_stringAttIndexesTwo);
+      if (m_hashJoinState == null) {
+        m_hashJoinState = new HashJoin(m_buildOnFirstInput);
+      }
+      try {
+        m_hashJoinState.add(source == m_firstInput, newH);
+      } catch (WekaException ex) {
+        throw ex;
+      } catch (Exception ex) {
+        m_hashJoinState.cleanup();
+        throw new WekaException(ex);
+      }
+      return;
+    }
+
     if (source == m_firstInput) {
       addToFirstBuffer(inst);
     } else {
@@ -393,6 +518,95 @@ public class Join extends BaseStep {
     }
   }
 
+  /**
+   * Handle the end of one of the input streams when performing a hash join
+   *
+   * @param first true if the first input has finished
+   * @param both true if both inputs have now finished
+   * @throws WekaException if a problem occurs
+   */
+  protected void finishHashJoinInput(boolean first, boolean both)
+    throws WekaException {
+    if (m_hashJoinState == null) {
+      m_hashJoinState = new HashJoin(m_buildOnFirstInput);
+    }
+    try {
+      m_hashJoinState.inputFinished(first);
+      if (both) {
+        m_hashJoinState.finish();
+      }
+    } catch (WekaException ex) {
+      m_hashJoinState.cleanup();
+      throw ex;
+    } catch (Exception ex) {
+      m_hashJoinState.cleanup();
+      throw new WekaException(ex);
+    } finally {
+      if (both || isStopRequested()) {
+        m_hashJoinState.cleanup();
+      }
+    }
+  }
+
+  /**
+   * Perform a hash join of the two buffered batch datasets. The hash table is
+   * built on the smaller one.
+   *
+   * @return the joined instances
+   * @throws WekaException if a problem occurs
+   */
+  protected Instances hashJoinBuffers() throws WekaException {
+    boolean buildIsFirst = m_firstBuffer.size() <= m_secondBuffer.size();
+    Queue<Sorter.InstanceHolder> build =
+      buildIsFirst ? m_firstBuffer : m_secondBuffer;
+    Queue<Sorter.InstanceHolder> probe =
+      buildIsFirst ? m_secondBuffer : m_firstBuffer;
+
+    HashJoin join = new HashJoin(buildIsFirst);
+    m_hashJoinOutput = new Instances(m_mergedHeader, 0);
+    try {
+      while (!isStopRequested() && build.size() > 0) {
+        join.add(buildIsFirst, build.remove());
+      }
+      join.inputFinished(buildIsFirst);
+      while (!isStopRequested() && probe.size() > 0) {
+        join.add(!buildIsFirst, probe.remove());
+      }
+      join.inputFinished(!buildIsFirst);
+      join.finish();
+
+      return m_hashJoinOutput;
+    } catch (WekaException ex) {
+      throw ex;
+    } catch (Exception ex) {
+      throw new WekaException(ex);
+    } finally {
+      join.cleanup();
+      m_hashJoinOutput = null;
+    }
+  }
+
+  /**
+   * Output an instance produced by the hash join
+   *
+   * @param first the matching instance from the first input
+   * @param second the matching instance from the second input
+   * @throws WekaException if a problem occurs
+   */
+  protected void outputHashJoinMatch(Sorter.InstanceHolder first,
+    Sorter.InstanceHolder second) throws WekaException {
+    if (m_hashJoinOutput != null) {
+      m_hashJoinOutput.add(generateMergedInstance(first, second));
+      return;
+    }
+
+    getStepManager().throughputUpdateStart();
+    Instance newInst = generateMergedInstance(first, second);
+    m_streamingData.setPayloadElement(StepManager.CON_INSTANCE, newInst);
+    getStepManager().throughputUpdateEnd();
+    getStepManager().outputData(m_streamingData);
+  }
+
   /**
    * Copy the string values out of an instance into the temporary storage in
    * InstanceHolder
@@ -520,12 +734,17 @@ public class Join extends BaseStep {
       getStepManager().processing();
       generateMergedHeader();
 
-      Instances newData = new Instances(m_mergedHeader, 0);
-      while (!isStopRequested() && m_firstBuffer.size() > 0
-        && m_secondBuffer.size() > 0) {
-        Instance newI = processBuffers();
-        if (newI != null) {
-          newData.add(newI);
+      Instances newData;
+      if (m_hashJoin) {
+        newData = hashJoinBuffers();
+      } else {
+        newData = new Instances(m_mergedHeader, 0);
+        while (!isStopRequested() && m_firstBuffer.size() > 0
+          && m_secondBuffer.size() > 0) {
+          Instance newI = processBuffers();
+          if (newI != null) {
+            newData.add(newI);
+          }
         }
       }
 
@@ -697,7 +916,7 @@ public class Join extends BaseStep {
       if (two.m_stringVals != null && two.m_stringVals.size() > 0
         && m_mergedHeader.attribute(count).isString()) {
         String valToSetInHeader =
-          one.m_stringVals.get(two.m_instance.attribute(i).name());
+          two.m_stringVals.get(two.m_instance.attribute(i).name());
         currentStructure.attribute(count).setStringValue(valToSetInHeader);
         vals[count] = 0;
       }
@@ -712,11 +931,15 @@ public class Join extends BaseStep {
   }
 
   /**
-   * Generate the header of the output instance structure
+   * Resolve the key specification of one of the inputs to attribute indexes
+   *
+   * @param input the input (0 for the first input, 1 for the second)
+   * @param header the structure of the input
+   * @return the indexes of the key attributes
+   * @throws WekaException if the key specification is invalid
    */
-  protected void generateMergedHeader() throws WekaException {
-    // check validity of key fields first
-
+  protected int[] resolveKeyIndexes(int input, Instances header)
+    throws WekaException {
     if (m_keySpec == null || m_keySpec.length() == 0) {
       throw new WekaException("Key fields are null!");
     }
@@ -730,47 +953,44 @@ public class Join extends BaseStep {
     }
 
     // try to parse as a Range first
-    for (int i = 0; i < 2; i++) {
-      String rangeS = parts[i].trim();
-
-      Range r = new Range();
-      r.setUpper(i == 0 ? m_headerOne.numAttributes() : m_headerTwo
-        .numAttributes());
-      try {
-        r.setRanges(rangeS);
-        if (i == 0) {
-          m_keyIndexesOne = r.getSelection();
-        } else {
-          m_keyIndexesTwo = r.getSelection();
-        }
-      } catch (IllegalArgumentException e) {
-        // assume a list of attribute names
-        String[] names = rangeS.split(",");
-        if (i == 0) {
-          m_keyIndexesOne = new int[names.length];
-        } else {
-          m_keyIndexesTwo = new int[names.length];
+    String rangeS = parts[input].trim();
+    Range r = new Range();
+    r.setUpper(header.numAttributes());
+    try {
+      r.setRanges(rangeS);
+      return r.getSelection();
+    } catch (IllegalArgumentException e) {
+      // assume a list of attribute names
+      String[] names = rangeS.split(",");
+      int[] indexes = new int[names.length];
+
+      for (int j = 0; j < names.length; j++) {
+        String aName = names[j].trim();
+        Attribute anAtt = header.attribute(aName);
+
+        if (anAtt == null) {
+          throw new WekaException("Invalid key attribute name");
         }
+        indexes[j] = anAtt.index();
+      }
 
-        for (int j = 0; j < names.length; j++) {
-          String aName = names[j].trim();
-          Attribute anAtt =
-            (i == 0) ? m_headerOne.attribute(aName) : m_headerTwo
-              .attribute(aName);
+      return indexes;
+    }
+  }
 
-          if (anAtt == null) {
-            throw new WekaException("Invalid key attribute name");
-          }
+  /**
+   * Generate the header of the output instance structure
+   */
+  protected void generateMergedHeader() throws WekaException {
+    // check validity of key fields first
 
-          if (i == 0) {
-            m_keyIndexesOne[j] = anAtt.index();
-          } else {
-            m_keyIndexesTwo[j] = anAtt.index();
-          }
-        }
-      }
+    if (m_keySpec == null || m_keySpec.length() == 0) {
+      throw new WekaException("Key fields are null!");
     }
 
+    m_keyIndexesOne = resolveKeyIndexes(0, m_headerOne);
+    m_keyIndexesTwo = resolveKeyIndexes(1, m_headerTwo);
+
     if (m_keyIndexesOne == null || m_keyIndexesTwo == null) {
       throw new WekaException("Key fields are null!");
     }
@@ -832,6 +1052,621 @@ public class Join extends BaseStep {
     }
   }
 
+  /**
+   * The key of an instance for the hash join. Nominal and string values are
+   * represented by their labels, so that the inputs don't need to have the
+   * same nominal value ordering; missing values are represented by null.
+   */
+  protected static class JoinKey {
+
+    /** The key values */
+    protected final Object[] m_values;
+
+    /** The hash code of the key values */
+    protected final int m_hash;
+
+    /**
+     * Constructor
+     *
+     * @param values the key values
+     */
+    public JoinKey(Object[] values) {
+      m_values = values;
+      m_hash = Arrays.hashCode(values);
+    }
+
+    @Override
+    public int hashCode() {
+      return m_hash;
+    }
+
+    @Override
+    public boolean equals(Object other) {
+      return other instanceof JoinKey && ((JoinKey) other).m_hash == m_hash
+        && Arrays.equals(((JoinKey) other).m_values, m_values);
+    }
+  }
+
+  /**
+   * Performs a hash join. The instances of one input (the build side) are put
+   * into a hash table keyed on the key fields and the instances of the other
+   * input (the probe side) are then looked up in the table. Probe instances
+   * that arrive before the build side has finished are buffered (in memory up
+   * to the memory budget, then in a temp file). If the hash table exceeds the
+   * memory budget, both inputs are partitioned into temp files by the hash of
+   * their keys (Grace hash join) and matching partitions are joined one at a
+   * time, partitioning again with a different hash function if a partition is
+   * still too large.
+   */
+  protected class HashJoin {
+
+    /** True if the hash table is built on the first input */
+    protected boolean m_buildIsFirst;
+
+    /** The memory budget for the hash table (in bytes) */
+    protected long m_budget;
+
+    /** The hash table */
+    protected Map<JoinKey, List<Sorter.InstanceHolder>> m_table =
+      new HashMap<JoinKey, List<Sorter.InstanceHolder>>();
+
+    /** The estimated memory used by the hash table */
+    protected long m_tableBytes;
+
+    /** True once the build side has finished */
+    protected boolean m_buildFinished;
+
+    /** Probe instances received before the build side has finished */
+    protected List<Sorter.InstanceHolder> m_pendingProbe =
+      new ArrayList<Sorter.InstanceHolder>();
+
+    /** The estimated memory used by the buffered probe instances */
+    protected long m_pendingBytes;
+
+    /** Temp file for probe instances that don't fit into memory */
+    protected File m_pendingFile;
+
+    /** Writer for the pending probe instances temp file */
+    protected Sorter.RunWriter m_pendingWriter;
+
+    /** The build side partitions (null unless the hash table was spilled) */
+    protected File[] m_buildParts;
+
+    /** The probe side partitions (null unless the hash table was spilled) */
+    protected File[] m_probeParts;
+
+    /** Writers for the build side partitions */
+    protected Sorter.RunWriter[] m_buildWriters;
+
+    /** Writers for the probe side partitions */
+    protected Sorter.RunWriter[] m_probeWriters;
+
+    /** The key indexes of the build side */
+    protected int[] m_buildKeys;
+
+    /** The key indexes of the probe side */
+    protected int[] m_probeKeys;
+
+    /**
+     * Constructor
+     *
+     * @param buildIsFirst true if the hash table is built on the first input
+     * @throws WekaException if the memory budget can't be parsed
+     */
+    public HashJoin(boolean buildIsFirst) throws WekaException {
+      m_buildIsFirst = buildIsFirst;
+      try {
+        m_budget =
+          Sorter.parseMemorySize(environmentSubstitute(m_hashTableMemory));
+      } catch (IllegalArgumentException ex) {
+        throw new WekaException(ex);
+      }
+      getStepManager().logDetailed(
+        "Hash join - building hash table on the "
+          + (buildIsFirst ? "first" : "second") + " input");
+    }
+
+    /**
+     * Add an instance
+     *
+     * @param first true if the instance comes from the first input
+     * @param holder the instance
+     * @throws Exception if a problem occurs
+     */
+    public void add(boolean first, Sorter.InstanceHolder holder)
+      throws Exception {
+      if (first == m_buildIsFirst) {
+        build(holder);
+      } else {
+        probe(holder);
+      }
+    }
+
+    /**
+     * Signal that one of the inputs has finished
+     *
+     * @param first true if the first input has finished
+     * @throws Exception if a problem occurs
+     */
+    public void inputFinished(boolean first) throws Exception {
+      if (first != m_buildIsFirst || m_buildFinished) {
+        return;
+      }
+
+      m_buildFinished = true;
+      if (m_buildWriters != null) {
+        closeWriters(m_buildWriters);
+      }
+      getStepManager().logDetailed(
+        "Hash join - build side finished ("
+          + (m_buildWriters != null ? "partitioned into temp files"
+            : m_table.size() + " keys") + ")");
+
+      // now process the probe instances that have been waiting
+      List<Sorter.InstanceHolder> pending = m_pendingProbe;
+      m_pendingProbe = null;
+      for (Sorter.InstanceHolder h : pending) {
+        if (isStopRequested()) {
+          return;
+        }
+        probe(h);
+      }
+      if (m_pendingWriter != null) {
+        m_pendingWriter.close();
+        m_pendingWriter = null;
+        Sorter.RunReader reader = createReader(m_pendingFile, false);
+        try {
+          Sorter.InstanceHolder h;
+          while (!isStopRequested() && (h = next(reader, false)) != null) {
+            probe(h);
+          }
+        } finally {
+          reader.close();
+          m_pendingFile.delete();
+        }
+      }
+    }
+
+    /**
+     * Join the partitions if the hash table was spilled. To be called once
+     * both inputs have finished.
+     *
+     * @throws Exception if a problem occurs
+     */
+    public void finish() throws Exception {
+      if (m_probeWriters == null) {
+        return;
+      }
+
+      closeWriters(m_probeWriters);
+      for (int i = 0; i < m_buildParts.length && !isStopRequested(); i++) {
+        getStepManager().logDetailed(
+          "Hash join - joining partition " + (i + 1) + " of "
+            + m_buildParts.length);
+        joinPartition(m_buildParts[i], m_probeParts[i], 1);
+      }
+    }
+
+    /**
+     * Close any temp files and delete them
+     */
+    public void cleanup() {
+      if (m_pendingWriter != null) {
+        try {
+          m_pendingWriter.close();
+        } catch (IOException ex) {
+          // ignore
+        }
+        m_pendingWriter = null;
+      }
+      if (m_pendingFile != null) {
+        m_pendingFile.delete();
+      }
+      for (Sorter.RunWriter[] writers : Arrays.asList(m_buildWriters,
+        m_probeWriters)) {
+        if (writers != null) {
+          try {
+            closeWriters(writers);
+          } catch (IOException ex) {
+            // ignore
+          }
+        }
+      }
+      for (File[] parts : Arrays.asList(m_buildParts, m_probeParts)) {
+        if (parts != null) {
+          for (File f : parts) {
+            f.delete();
+          }
+        }
+      }
+      m_table.clear();
+    }
+
+    /**
+     * Add an instance to the build side
+     *
+     * @param holder the instance
+     * @throws Exception if a problem occurs
+     */
+    protected void build(Sorter.InstanceHolder holder) throws Exception {
+      JoinKey key = getKey(holder, true);
+      if (m_buildWriters != null) {
+        m_buildWriters[partition(key, 0)].write(holder);
+        return;
+      }
+
+      m_tableBytes += insert(m_table, key, holder);
+      if (m_tableBytes > m_budget) {
+        spill();
+      }
+    }
+
+    /**
+     * Look up an instance from the probe side (or buffer it if the build side
+     * hasn't finished yet)
+     *
+     * @param holder the instance
+     * @throws Exception if a problem occurs
+     */
+    protected void probe(Sorter.InstanceHolder holder) throws Exception {
+      if (!m_buildFinished) {
+        if (m_pendingWriter != null) {
+          m_pendingWriter.write(holder);
+        } else {
+          m_pendingProbe.add(holder);
+          m_pendingBytes += Sorter.estimateSize(holder);
+          if (m_pendingBytes > m_budget) {
+            getStepManager().logDetailed(
+              "Hash join - buffering instances from the probe side in a "
+                + "temp file until the build side has finished");
+            m_pendingFile = createTempFile();
+            m_pendingWriter = createWriter(m_pendingFile, false);
+            for (Sorter.InstanceHolder h : m_pendingProbe) {
+              m_pendingWriter.write(h);
+            }
+            m_pendingProbe.clear();
+          }
+        }
+        return;
+      }
+
+      JoinKey key = getKey(holder, false);
+      if (m_probeWriters != null) {
+        m_probeWriters[partition(key, 0)].write(holder);
+        return;
+      }
+
+      List<Sorter.InstanceHolder> matches = m_table.get(key);
+      if (matches != null) {
+        for (Sorter.InstanceHolder match : matches) {
+          output(match, holder);
+        }
+      }
+    }
+
+    /**
+     * Write the hash table to partition files. All further instances are
+     * written to the partition files as well.
+     *
+     * @throws Exception if a problem occurs
+     */
+    protected void spill() throws Exception {
+      getStepManager().logDetailed(
+        "Hash join - hash table exceeds the memory budget, partitioning "
+          + "inputs into " + NUM_PARTITIONS + " temp files each");
+      m_buildParts = new File[NUM_PARTITIONS];
+      m_probeParts = new File[NUM_PARTITIONS];
+      m_buildWriters = createWriters(m_buildParts, true);
+      m_probeWriters = createWriters(m_probeParts, false);
+      for (Map.Entry<JoinKey, List<Sorter.InstanceHolder>> e : m_table
+        .entrySet()) {
+        Sorter.RunWriter writer = m_buildWriters[partition(e.getKey(), 0)];
+        for (Sorter.InstanceHolder h : e.getValue()) {
+          writer.write(h);
+        }
+      }
+      m_table.clear();
+      m_tableBytes = 0;
+    }
+
+    /**
+     * Join a pair of partition files, partitioning them further if the build
+     * side doesn't fit into memory. The files are deleted afterwards.
+     *
+     * @param build the build side partition
+     * @param probe the probe side partition
+     * @param level the number of times the data has been partitioned
+     * @throws Exception if a problem occurs
+     */
+    protected void joinPartition(File build, File probe, int level)
+      throws Exception {
+      try {
+        Map<JoinKey, List<Sorter.InstanceHolder>> table =
+          new HashMap<JoinKey, List<Sorter.InstanceHolder>>();
+        long bytes = 0;
+        Sorter.RunReader reader = createReader(build, true);
+        try {
+          Sorter.InstanceHolder h;
+          while (!isStopRequested() && (h = next(reader, true)) != null) {
+            bytes += insert(table, getKey(h, true), h);
+            if (bytes > m_budget && level < MAX_PARTITION_LEVELS) {
+              table = null;
+              reader.close();
+              File[] buildParts = split(build, true, level);
+              File[] probeParts = split(probe, false, level);
+              for (int i = 0; i < NUM_PARTITIONS && !isStopRequested(); i++) {
+                joinPartition(buildParts[i], probeParts[i], level + 1);
+              }
+              return;
+            }
+          }
+        } finally {
+          reader.close();
+        }
+
+        reader = createReader(probe, false);
+        try {
+          Sorter.InstanceHolder h;
+          while (!isStopRequested() && (h = next(reader, false)) != null) {
+            List<Sorter.InstanceHolder> matches = table.get(getKey(h, false));
+            if (matches != null) {
+              for (Sorter.InstanceHolder match : matches) {
+                output(match, h);
+              }
+            }
+          }
+        } finally {
+          reader.close();
+        }
+      } finally {
+        build.delete();
+        probe.delete();
+      }
+    }
+
+    /**
+     * Partition a temp file
+     *
+     * @param file the file to partition
+     * @param build true if the file holds build side instances
+     * @param level the level to partition at
+     * @return the partition files
+     * @throws Exception if a problem occurs
+     */
+    protected File[] split(File file, boolean build, int level)
+      throws Exception {
+      File[] parts = new File[NUM_PARTITIONS];
+      Sorter.RunWriter[] writers = createWriters(parts, build);
+      Sorter.RunReader reader = createReader(file, build);
+      try {
+        Sorter.InstanceHolder h;
+        while (!isStopRequested() && (h = next(reader, build)) != null) {
+          writers[partition(getKey(h, build), level)].write(h);
+        }
+      } finally {
+        reader.close();
+        closeWriters(writers);
+      }
+
+      return parts;
+    }
+
+    /**
+     * Output a match
+     *
+     * @param buildH the instance from the build side
+     * @param probeH the instance from the probe side
+     * @throws WekaException if a problem occurs
+     */
+    protected void output(Sorter.InstanceHolder buildH,
+      Sorter.InstanceHolder probeH) throws WekaException {
+      if (m_buildIsFirst) {
+        outputHashJoinMatch(buildH, probeH);
+      } else {
+        outputHashJoinMatch(probeH, buildH);
+      }
+    }
+
+    /**
+     * Get the key of an instance
+     *
+     * @param holder the instance
+     * @param build true if the instance comes from the build side
+     * @return the key
+     * @throws WekaException if the key fields can't be determined
+     */
+    protected JoinKey getKey(Sorter.InstanceHolder holder, boolean build)
+      throws WekaException {
+      Instances header = getHeader(build);
+      int[] keys = build ? m_buildKeys : m_probeKeys;
+      if (keys == null) {
+        keys = resolveKeyIndexes(build == m_buildIsFirst ? 0 : 1, header);
+        if (build) {
+          m_buildKeys = keys;
+        } else {
+          m_probeKeys = keys;
+        }
+      }
+
+      Instance inst = holder.m_instance;
+      Object[] values = new Object[keys.length];
+      for (int i = 0; i < keys.length; i++) {
+        Attribute att = header.attribute(keys[i]);
+        if (inst.isMissing(keys[i])) {
+          values[i] = null;
+        } else if (att.isNominal()) {
+          values[i] = att.value((int) inst.value(keys[i]));
+        } else if (att.isString()) {
+          values[i] =
+            holder.m_stringVals == null || holder.m_stringVals.size() == 0 ? inst
+              .stringValue(keys[i]) : holder.m_stringVals.get(att.name());
+        } else {
+          // adding 0.0 turns -0.0 into 0.0
+          values[i] = inst.value(keys[i]) + 0.0;
+        }
+      }
+
+      return new JoinKey(values);
+    }
+
+    /**
+     * Get the structure of one of the sides
+     *
+     * @param build true for the build side
+     * @return the structure
+     */
+    protected Instances getHeader(boolean build) {
+      return build == m_buildIsFirst ? m_headerOne : m_headerTwo;
+    }
+
+    /**
+     * Create a writer for a temp file
+     *
+     * @param file the file
+     * @param build true if the file holds build side instances
+     * @return the writer
+     * @throws IOException if a problem occurs
+     */
+    protected Sorter.RunWriter createWriter(File file, boolean build)
+      throws IOException {
+      boolean first = build == m_buildIsFirst;
+      return new Sorter.RunWriter(file, getHeader(build).numAttributes(),
+        getStringAttNames(first ? m_stringAttIndexesOne : m_stringAttIndexesTwo));
+    }
+
+    /**
+     * Create writers for new partition files
+     *
+     * @param parts the array to hold the partition files
+     * @param build true if the files hold build side instances
+     * @return the writers
+     * @throws IOException if a problem occurs
+     */
+    protected Sorter.RunWriter[] createWriters(File[] parts, boolean build)
+      throws IOException {
+      Sorter.RunWriter[] writers = new Sorter.RunWriter[parts.length];
+      for (int i = 0; i < parts.length; i++) {
+        parts[i] = createTempFile();
+        writers[i] = createWriter(parts[i], build);
+      }
+      return writers;
+    }
+
+    /**
+     * Close writers
+     *
+     * @param writers the writers to close
+     * @throws IOException if a problem occurs
+     */
+    protected void closeWriters(Sorter.RunWriter[] writers) throws IOException {
+      for (Sorter.RunWriter writer : writers) {
+        writer.close();
+      }
+    }
+
+    /**
+     * Create a reader for a temp file
+     *
+     * @param file the file
+     * @param build true if the file holds build side instances
+     * @return the reader
+     * @throws IOException if a problem occurs
+     */
+    protected Sorter.RunReader createReader(File file, boolean build)
+      throws IOException {
+      boolean first = build == m_buildIsFirst;
+      return new Sorter.RunReader(file, getHeader(build).numAttributes(),
+        getStringAttNames(first ? m_stringAttIndexesOne : m_stringAttIndexesTwo));
+    }
+
+    /**
+     * Read the next instance from a temp file
+     *
+     * @param reader the reader
+     * @param build true if the file holds build side instances
+     * @return the next instance or null if there are no more
+     * @throws IOException if a problem occurs
+     */
+    protected Sorter.InstanceHolder next(Sorter.RunReader reader,
+      boolean build) throws IOException {
+      Sorter.InstanceHolder h = reader.next();
+      if (h != null) {
+        h.m_instance.setDataset(getHeader(build));
+      }
+      return h;
+    }
+  }
+
+  /**
+   * Add an instance to a hash table
+   *
+   * @param table the table
+   * @param key the key of the instance
+   * @param holder the instance
+   * @return the estimated increase in memory used by the table
+   */
+  protected static long insert(Map<JoinKey, List<Sorter.InstanceHolder>> table,
+    JoinKey key, Sorter.InstanceHolder holder) {
+    long bytes = Sorter.estimateSize(holder) + 8;
+    List<Sorter.InstanceHolder> list = table.get(key);
+    if (list == null) {
+      list = new ArrayList<Sorter.InstanceHolder>(1);
+      table.put(key, list);
+      bytes += 96 + 16 * key.m_values.length;
+    }
+    list.add(holder);
+
+    return bytes;
+  }
+
+  /**
+   * Get the partition of a key
+   *
+   * @param key the key
+   * @param level the level of partitioning (a different hash function is used
+   *          at each level)
+   * @return the partition
+   */
+  protected static int partition(JoinKey key, int level) {
+    int h = key.hashCode() + level * 0x9E3779B9;
+    h ^= h >>> 16;
+    h *= 0x85EBCA6B;
+    h ^= h >>> 13;
+    h *= 0xC2B2AE35;
+    h ^= h >>> 16;
+
+    return (h & 0x7fffffff) % NUM_PARTITIONS;
+  }
+
+  /**
+   * Get the names of string attributes
+   *
+   * @param stringAttIndexes the indexes of string attributes, keyed by name
+   *          (may be null)
+   * @return the names
+   */
+  protected static String[] getStringAttNames(
+    Map<String, Integer> stringAttIndexes) {
+    if (stringAttIndexes == null || stringAttIndexes.size() == 0) {
+      return new String[0];
+    }
+    return stringAttIndexes.keySet().toArray(
+      new String[stringAttIndexes.size()]);
+  }
+
+  /**
+   * Create a temp file for the hash join
+   *
+   * @return the temp file
+   * @throws IOException if the file can't be created
+   */
+  protected static File createTempFile() throws IOException {
+    File tempFile = File.createTempFile("Join", ".tmp");
+    tempFile.deleteOnExit();
+
+    return tempFile;
+  }
+
   /**
    * Get a list of incoming connection types that this step can accept. Ideally
    * (and if appropriate), this should take into account the state of the step
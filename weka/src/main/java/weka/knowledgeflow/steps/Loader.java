@@ -37,6 +37,7 @@ import weka.knowledgeflow.StepManagerImpl;
 
 import java.io.Serializable;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 /**
@@ -217,6 +218,40 @@ public class Loader extends WekaAlgorithmWrapper implements Serializable {
         throw new WekaException(ex);
       }
 
+      // string values are passed on via the header, which rules out
+      // having more than one instance in flight
+      int batchSize =
+        stringAttsPresent ? 1 : getStepManager().getStreamingBatchSize();
+      while (batchSize > 1 && !isStopRequested() && nextInstance != null) {
+        m_flowThroughput.updateStart();
+        getStepManager().throughputUpdateStart();
+
+        Instance[] batch = new Instance[batchSize];
+        int count = 0;
+        while (nextInstance != null && count < batchSize) {
+          batch[count++] = nextInstance;
+          try {
+            nextInstance = theLoader.getNextInstance(structure);
+          } catch (Exception ex) {
+            m_instanceData.clearPayload();
+            getStepManager().throughputFinished(m_instanceData);
+            throw new WekaException(ex);
+          }
+        }
+        if (count < batchSize) {
+          batch = Arrays.copyOf(batch, count);
+        }
+        m_instanceData.setPayloadElement(StepManager.CON_INSTANCE, batch[0]);
+        m_instanceData.setPayloadElement(
+          StepManager.CON_AUX_DATA_INSTANCE_BATCH, batch);
+
+        getStepManager().throughputUpdateEnd(count); // finished read operation
+        getStepManager().outputData(StepManager.CON_INSTANCE, m_instanceData);
+
+        m_flowThroughput.updateEnd(
+          ((StepManagerImpl) getStepManager()).getLog(), count);
+      }
+
       while (!isStopRequested() && nextInstance != null) {
         m_flowThroughput.updateStart();
         getStepManager().throughputUpdateStart();
@@ -71,6 +71,7 @@ public class PredictionAppender extends BaseStep {
   @Override
   public void stepInit() throws WekaException {
     m_streamingOutputStructure = null;
+    getStepManager().setStepProcessesInstanceBatches(true);
   }
 
   /**
@@ -190,22 +191,125 @@ public class PredictionAppender extends BaseStep {
       }
     }
 
+    Instance[] batch =
+      data.getPayloadElement(StepManager.CON_AUX_DATA_INSTANCE_BATCH);
+    if (batch != null) {
+      processIncrementalClassifierBatch(classifier, batch);
+      return;
+    }
+
+    m_instanceData.setPayloadElement(StepManagerImpl.CON_INSTANCE,
+      predictStreaming(classifier, inst, null));
+    if (isStopRequested()) {
+      return;
+    }
+    getStepManager().throughputUpdateEnd();
+    getStepManager().outputData(m_instanceData.getConnectionName(),
+      m_instanceData);
+  }
+
+  /**
+   * Process a micro-batch of instances from an incremental classifier. Uses
+   * batch prediction if the classifier implements it efficiently.
+   *
+   * @param classifier the classifier to use
+   * @param batch the instances to append predictions to
+   * @throws WekaException if a problem occurs
+   */
+  protected void processIncrementalClassifierBatch(
+    weka.classifiers.Classifier classifier, Instance[] batch)
+    throws WekaException {
+
+    if (m_stringAttIndexes.size() > 0) {
+      // string values are passed on via the header, so output one
+      // instance at a time
+      for (int i = 0; i < batch.length; i++) {
+        if (isStopRequested()) {
+          return;
+        }
+        if (i > 0) {
+          getStepManager().throughputUpdateStart();
+        }
+        m_instanceData.setPayloadElement(StepManagerImpl.CON_INSTANCE,
+          predictStreaming(classifier, batch[i], null));
+        getStepManager().throughputUpdateEnd();
+        getStepManager().outputData(m_instanceData.getConnectionName(),
+          m_instanceData);
+      }
+      return;
+    }
+
+    double[][] preds = null;
+    if (classifier instanceof BatchPredictor
+      && ((BatchPredictor) classifier).implementsMoreEfficientBatchPrediction()) {
+      Instances toPredict = new Instances(batch[0].dataset(), batch.length);
+      for (Instance inst : batch) {
+        toPredict.add(inst);
+      }
+      try {
+        preds =
+          ((BatchPredictor) classifier).distributionsForInstances(toPredict);
+      } catch (Exception ex) {
+        throw new WekaException(ex);
+      }
+    }
+
+    Instance[] newBatch = new Instance[batch.length];
+    for (int i = 0; i < batch.length; i++) {
+      newBatch[i] =
+        predictStreaming(classifier, batch[i], preds != null ? preds[i] : null);
+    }
+
+    if (isStopRequested()) {
+      return;
+    }
+    m_instanceData.setPayloadElement(StepManagerImpl.CON_INSTANCE, newBatch[0]);
+    m_instanceData.setPayloadElement(StepManager.CON_AUX_DATA_INSTANCE_BATCH,
+      newBatch);
+    getStepManager().throughputUpdateEnd(batch.length);
+    getStepManager().outputData(m_instanceData.getConnectionName(),
+      m_instanceData);
+    m_instanceData.setPayloadElement(StepManager.CON_AUX_DATA_INSTANCE_BATCH,
+      null);
+  }
+
+  /**
+   * Make an output instance with the prediction of an incremental classifier
+   * appended
+   *
+   * @param classifier the classifier to use
+   * @param inst the instance to predict
+   * @param dist the predicted distribution for the instance, or null if it
+   *          still has to be computed
+   * @return the output instance
+   * @throws WekaException if a problem occurs
+   */
+  protected Instance predictStreaming(weka.classifiers.Classifier classifier,
+    Instance inst, double[] dist) throws WekaException {
     double[] instanceVals =
       new double[m_streamingOutputStructure.numAttributes()];
-    Instance newInstance = null;
     for (int i = 0; i < inst.numAttributes(); i++) {
       instanceVals[i] = inst.value(i);
     }
     if (!m_appendProbabilities || inst.classAttribute().isNumeric()) {
       try {
-        double predClass = classifier.classifyInstance(inst);
+        double predClass;
+        if (dist == null) {
+          predClass = classifier.classifyInstance(inst);
+        } else if (inst.classAttribute().isNumeric()) {
+          predClass = dist[0];
+        } else {
+          predClass =
+            Utils.sum(dist) > 0 ? Utils.maxIndex(dist) : Utils.missingValue();
+        }
         instanceVals[instanceVals.length - 1] = predClass;
       } catch (Exception ex) {
         throw new WekaException(ex);
       }
     } else if (m_appendProbabilities) {
       try {
-        double[] preds = classifier.distributionForInstance(inst);
+        double[] preds =
+          dist != null ? dist : classifier.distributionForInstance(inst);
         int index = 0;
         for (int i = instanceVals.length - inst.classAttribute().numValues(); i < instanceVals.length; i++) {
           instanceVals[i] = preds[index++];
@@ -226,13 +330,7 @@ public class PredictionAppender extends BaseStep {
       }
     }
 
-    m_instanceData.setPayloadElement(StepManagerImpl.CON_INSTANCE, newInst);
-    if (isStopRequested()) {
-      return;
-    }
-    getStepManager().throughputUpdateEnd();
-    getStepManager().outputData(m_instanceData.getConnectionName(),
-      m_instanceData);
+    return newInst;
   }
 
   /**
@@ -140,6 +140,7 @@ public class Saver extends WekaAlgorithmWrapper implements Serializable {
   @Override
   public void stepInit() throws WekaException {
     m_saver = null;
+    getStepManager().setStepProcessesInstanceBatches(true);
 
     if (!(getWrappedAlgorithm() instanceof weka.core.converters.Saver)) {
       throw new WekaException("Incorrect type of algorithm");
@@ -305,14 +306,22 @@ public class Saver extends WekaAlgorithmWrapper implements Serializable {
         return;
       }
 
+      Instance[] batch =
+        data.getPayloadElement(StepManager.CON_AUX_DATA_INSTANCE_BATCH);
       if (!isStopRequested()) {
         getStepManager().throughputUpdateStart();
-        m_saver.writeIncremental(toSave);
+        if (batch != null) {
+          for (Instance inst : batch) {
+            m_saver.writeIncremental(inst);
+          }
+        } else {
+          m_saver.writeIncremental(toSave);
+        }
       } else {
         // make sure that saver finishes and closes file
         m_saver.writeIncremental(null);
       }
-      getStepManager().throughputUpdateEnd();
+      getStepManager().throughputUpdateEnd(batch != null ? batch.length : 1);
     } catch (Exception ex) {
       throw new WekaException(ex);
     }
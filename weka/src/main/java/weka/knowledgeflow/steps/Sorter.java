@@ -23,11 +23,12 @@ package weka.knowledgeflow.steps;
 
 import java.io.BufferedInputStream;
 import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
-import java.io.ObjectInputStream;
-import java.io.ObjectOutputStream;
+import java.io.IOException;
 import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -36,12 +37,20 @@ import java.util.Comparator;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import weka.core.Attribute;
+import weka.core.BinarySparseInstance;
+import weka.core.DenseInstance;
 import weka.core.Environment;
 import weka.core.Instance;
 import weka.core.Instances;
 import weka.core.OptionMetadata;
+import weka.core.SparseInstance;
 import weka.core.WekaException;
 import weka.gui.FilePropertyMetadata;
 import weka.gui.ProgrammaticProperty;
@@ -60,15 +69,25 @@ import weka.knowledgeflow.StepManager;
     + "to the values of user-specified attributes. Instances can be sorted "
     + "according to multiple attributes (defined in order). Handles datasets "
     + "larger than can be fit into main memory via instance connections and "
-    + "specifying the in-memory buffer size. Implements a merge-sort by writing "
-    + "the sorted in-memory buffer to a file when full and then interleaving "
-    + "instances from the disk-based file(s) when the incoming stream has "
+    + "specifying the memory budget for in-memory buffers. Implements an "
+    + "external merge-sort by sorting full in-memory buffers in parallel and "
+    + "writing them to temp files, and then merging the sorted files "
+    + "(in several passes if there are many) when the incoming stream has "
     + "finished.",
   iconPath = KFGUIConsts.BASE_ICON_PATH + "Sorter.gif")
 public class Sorter extends BaseStep {
 
   private static final long serialVersionUID = 3373283983192467264L;
 
+  /** Row type of a dense instance in a temp file */
+  protected static final int ROW_DENSE = 0;
+
+  /** Row type of a sparse instance in a temp file */
+  protected static final int ROW_SPARSE = 1;
+
+  /** Row type of a binary sparse instance in a temp file */
+  protected static final int ROW_BINARY_SPARSE = 2;
+
   /** Comparator that applies the sort rules */
   protected transient SortComparator m_sortComparator;
 
@@ -78,11 +97,44 @@ public class Sorter extends BaseStep {
   /** List of sorted temp files for incremental operation */
   protected transient List<File> m_bufferFiles;
 
-  /** Size of the in-memory buffer */
-  protected String m_bufferSize = "10000";
+  /** Runs pending sorting and writing to temp files */
+  protected transient List<Future<File>> m_pendingSpills;
+
+  /** Executes the sorting and writing of full buffers */
+  protected transient ExecutorService m_sortExecutor;
+
+  /** Estimated memory used by the in-memory buffer (in bytes) */
+  protected long m_bufferBytes;
+
+  /** Maximum number of instances in the in-memory buffer */
+  protected String m_bufferSize = "0";
 
-  /** Size of the in-memory buffer after resolving any environment vars */
-  protected int m_bufferSizeI = 10000;
+  /**
+   * Maximum number of instances in the in-memory buffer after resolving any
+   * environment vars (0 for no limit)
+   */
+  protected int m_bufferSizeI;
+
+  /** Memory budget for buffering instances when streaming */
+  protected String m_bufferMemory = "100MB";
+
+  /**
+   * Memory budget for a single buffer (in bytes) after resolving any
+   * environment vars
+   */
+  protected long m_bufferMemoryL;
+
+  /** Number of threads to use for sorting full buffers */
+  protected String m_sortThreads = "2";
+
+  /** Number of sort threads after resolving any environment vars */
+  protected int m_sortThreadsI = 2;
+
+  /** Maximum number of temp files to merge at once */
+  protected String m_mergeFanIn = "64";
+
+  /** Maximum number of temp files to merge after resolving environment vars */
+  protected int m_mergeFanInI = 64;
 
   /** Holds indexes of string attributes, keyed by attribute name */
   protected Map<String, Integer> m_stringAttIndexes;
@@ -123,12 +175,81 @@ public class Sorter extends BaseStep {
    * @param buffSize the size of the in-memory buffer
    */
   @OptionMetadata(displayName = "Size of in-mem streaming buffer",
-    description = "Number of instances to sort in memory before writing to a "
-      + "temp file (instance connections only)", displayOrder = 1)
+    description = "Maximum number of instances to sort in memory before "
+      + "writing to a temp file (instance connections only). 0 means that the "
+      + "buffer is only limited by the memory budget", displayOrder = 1)
   public void setBufferSize(String buffSize) {
     m_bufferSize = buffSize;
   }
 
+  /**
+   * Get the memory budget for buffering instances when streaming
+   *
+   * @return the memory budget
+   */
+  public String getBufferMemory() {
+    return m_bufferMemory;
+  }
+
+  /**
+   * Set the memory budget for buffering instances when streaming
+   *
+   * @param bufferMemory the memory budget (in bytes, the suffixes KB, MB and
+   *          GB can be used)
+   */
+  @OptionMetadata(displayName = "Memory budget for streaming buffers",
+    description = "Memory (in bytes, the suffixes KB, MB and GB can be used) "
+      + "to use for buffering instances (instance connections only). The "
+      + "budget is shared between the buffer being filled and the buffers "
+      + "being sorted", displayOrder = 2)
+  public void setBufferMemory(String bufferMemory) {
+    m_bufferMemory = bufferMemory;
+  }
+
+  /**
+   * Get the number of threads to use for sorting full buffers
+   *
+   * @return the number of sort threads
+   */
+  public String getSortThreads() {
+    return m_sortThreads;
+  }
+
+  /**
+   * Set the number of threads to use for sorting full buffers
+   *
+   * @param sortThreads the number of sort threads
+   */
+  @OptionMetadata(displayName = "Number of sort threads",
+    description = "Number of full buffers that can be sorted and written to "
+      + "temp files while the next buffer is filled (instance connections "
+      + "only)", displayOrder = 3)
+  public void setSortThreads(String sortThreads) {
+    m_sortThreads = sortThreads;
+  }
+
+  /**
+   * Get the maximum number of temp files to merge at once
+   *
+   * @return the maximum number of temp files to merge at once
+   */
+  public String getMergeFanIn() {
+    return m_mergeFanIn;
+  }
+
+  /**
+   * Set the maximum number of temp files to merge at once
+   *
+   * @param mergeFanIn the maximum number of temp files to merge at once
+   */
+  @OptionMetadata(displayName = "Maximum number of files to merge at once",
+    description = "If there are more temp files than this, then they are "
+      + "merged in several passes (instance connections only)",
+    displayOrder = 4)
+  public void setMergeFanIn(String mergeFanIn) {
+    m_mergeFanIn = mergeFanIn;
+  }
+
   /**
    * Set the directory to use for temporary files during incremental operation
    *
@@ -138,7 +259,7 @@ public class Sorter extends BaseStep {
     directoriesOnly = true)
   @OptionMetadata(displayName = "Directory for temp files",
     description = "Where to store temporary files when spilling to disk",
-    displayOrder = 2)
+    displayOrder = 5)
   public void setTempDirectory(File tempDir) {
     m_tempDirectory = tempDir;
   }
@@ -183,6 +304,20 @@ public class Sorter extends BaseStep {
     m_stringAttIndexes = new HashMap<String, Integer>();
     m_bufferFiles = new ArrayList<File>();
     m_streamingData = new Data(StepManager.CON_INSTANCE);
+    shutdownSortExecutor();
+  }
+
+  /**
+   * Stop processing. Stops the sort threads and removes the temp files, as a
+   * stopped stream never gets to the final merge.
+   */
+  @Override
+  public void stop() {
+    super.stop();
+    shutdownSortExecutor();
+    if (m_bufferFiles != null) {
+      deleteTempFiles(m_bufferFiles);
+    }
   }
 
   /**
@@ -271,9 +406,51 @@ public class Sorter extends BaseStep {
     }
 
     if (m_streaming) {
-      String buffSize = environmentSubstitute(m_bufferSize);
-      m_bufferSizeI = Integer.parseInt(buffSize);
-      m_incrementalBuffer = new ArrayList<InstanceHolder>(m_bufferSizeI);
+      String buffSize = environmentSubstitute(m_bufferSize).trim();
+      m_bufferSizeI = buffSize.length() > 0 ? Integer.parseInt(buffSize) : 0;
+      m_sortThreadsI =
+        Math.max(1,
+          Integer.parseInt(environmentSubstitute(m_sortThreads).trim()));
+      m_mergeFanInI =
+        Math.max(2, Integer.parseInt(environmentSubstitute(m_mergeFanIn)
+          .trim()));
+      // the budget is shared by the buffer being filled and those being sorted
+      m_bufferMemoryL =
+        parseMemorySize(environmentSubstitute(m_bufferMemory))
+          / (m_sortThreadsI + 1);
+      m_incrementalBuffer = new ArrayList<InstanceHolder>();
+      m_bufferBytes = 0;
+      m_bufferFiles = new ArrayList<File>();
+      m_pendingSpills = new ArrayList<Future<File>>();
+      shutdownSortExecutor();
+      m_sortExecutor = Executors.newFixedThreadPool(m_sortThreadsI);
+    }
+  }
+
+  /**
+   * Parses a memory size given in bytes, optionally with one of the suffixes
+   * KB, MB or GB.
+   *
+   * @param size the size to parse
+   * @return the size in bytes
+   * @throws IllegalArgumentException if the size can't be parsed
+   */
+  protected static long parseMemorySize(String size) {
+    String s = size.trim().toUpperCase();
+    if (s.endsWith("B") && s.length() > 1
+      && "KMG".indexOf(s.charAt(s.length() - 2)) >= 0) {
+      s = s.substring(0, s.length() - 1);
+    }
+    long factor = 1;
+    if (s.length() > 0 && "KMG".indexOf(s.charAt(s.length() - 1)) >= 0) {
+      factor = 1L << (10 * ("KMG".indexOf(s.charAt(s.length() - 1)) + 1));
+      s = s.substring(0, s.length() - 1).trim();
+    }
+    try {
+      return (long) (Double.parseDouble(s) * factor);
+    } catch (NumberFormatException ex) {
+      throw new IllegalArgumentException("Unable to parse memory size: "
+        + size);
     }
   }
 
@@ -291,15 +468,24 @@ public class Sorter extends BaseStep {
         Instance inst = data.getPrimaryPayload();
         structure = new Instances(inst.dataset(), 0);
         m_streaming = true;
-        getStepManager().logBasic(
-          "Starting streaming sort. Using streaming " + "buffer size: "
-            + m_bufferSizeI);
         m_isReset = false;
       } else {
         structure = data.getPrimaryPayload();
         structure = new Instances(structure, 0);
       }
-      init(structure);
+      try {
+        init(structure);
+      } catch (IllegalArgumentException ex) {
+        throw new WekaException(ex);
+      }
+      if (m_streaming) {
+        getStepManager().logBasic(
+          "Starting streaming sort. Using " + m_sortThreadsI
+            + " sort thread(s) and a memory budget of " + m_bufferMemoryL
+            + " bytes per buffer"
+            + (m_bufferSizeI > 0 ? " (at most " + m_bufferSizeI
+              + " instances)" : ""));
+      }
     }
 
     if (m_streaming) {
@@ -368,11 +554,13 @@ public class Sorter extends BaseStep {
         copyStringAttVals(tempH);
       }
       m_incrementalBuffer.add(tempH);
+      m_bufferBytes += estimateSize(tempH);
 
-      if (m_incrementalBuffer.size() == m_bufferSizeI) {
+      if (m_bufferBytes >= m_bufferMemoryL
+        || m_incrementalBuffer.size() == m_bufferSizeI) {
         // time to sort and write this to a temp file
         try {
-          sortBuffer(true);
+          spillBuffer();
         } catch (Exception ex) {
           throw new WekaException(ex);
         }
@@ -387,256 +575,397 @@ public class Sorter extends BaseStep {
    * @throws WekaException if a problem occurs
    */
   protected void emitBufferedInstances() throws WekaException {
-    if (isStopRequested()) {
-      return;
-    }
-
-    if (m_incrementalBuffer.size() > 0) {
-      try {
-        getStepManager().throughputUpdateStart();
-        sortBuffer(false);
-        getStepManager().throughputUpdateEnd();
-      } catch (Exception ex) {
-        throw new WekaException(ex);
+    List<RunReader> readers = new ArrayList<RunReader>();
+    try {
+      if (isStopRequested()) {
+        return;
       }
+      waitForSpills(0);
+      getStepManager().throughputUpdateStart();
+      sortInMemoryBuffer();
+      getStepManager().throughputUpdateEnd();
 
       if (m_bufferFiles.size() == 0) {
         // we only have the in memory buffer
-        getStepManager().logDetailed("Emitting in memory buffer");
-        Instances newHeader =
-          new Instances(m_incrementalBuffer.get(0).m_instance.dataset(), 0);
-        for (int i = 0; i < m_incrementalBuffer.size(); i++) {
-          getStepManager().throughputUpdateStart();
-          InstanceHolder currentH = m_incrementalBuffer.get(i);
-          currentH.m_instance.setDataset(newHeader);
-          if (m_stringAttIndexes != null) {
-            for (String attName : m_stringAttIndexes.keySet()) {
-              boolean setValToZero =
-                newHeader.attribute(attName).numValues() > 0;
-              newHeader.attribute(attName).setStringValue(
-                currentH.m_stringVals.get(attName));
-              if (setValToZero) {
-                currentH.m_instance.setValue(newHeader.attribute(attName), 0);
-              }
-            }
-          }
-          if (isStopRequested()) {
-            return;
-          }
-          m_streamingData.setPayloadElement(StepManager.CON_INSTANCE,
-            currentH.m_instance);
-          getStepManager().throughputUpdateEnd();
-          getStepManager().outputData(m_streamingData);
-          if (i == m_incrementalBuffer.size() - 1) {
-            // end of stream
-            m_streamingData.clearPayload();
-            getStepManager().throughputFinished(m_streamingData);
-          }
-        }
+        emitInMemoryBuffer();
         return;
       }
-    }
-
-    List<ObjectInputStream> inputStreams = new ArrayList<ObjectInputStream>();
-    // for the interleaving part of the merge sort
-    List<InstanceHolder> merger = new ArrayList<InstanceHolder>();
-
-    Instances tempHeader = new Instances(m_connectedFormat, 0);
-
-    // add an instance from the in-memory buffer first
-    if (m_incrementalBuffer.size() > 0) {
-      InstanceHolder tempH = m_incrementalBuffer.remove(0);
-      merger.add(tempH);
-    }
-
-    if (isStopRequested()) {
-      return;
-    }
-
-    if (m_bufferFiles.size() > 0) {
-      getStepManager().logDetailed("Merging temp files");
-    }
-    // open all temp buffer files and read one instance from each
-    for (int i = 0; i < m_bufferFiles.size(); i++) {
-      ObjectInputStream ois = null;
-      try {
-        FileInputStream fis = new FileInputStream(m_bufferFiles.get(i));
-        BufferedInputStream bis = new BufferedInputStream(fis, 50000);
-        ois = new ObjectInputStream(bis);
 
-        InstanceHolder tempH = (InstanceHolder) ois.readObject();
-        if (tempH != null) {
-          inputStreams.add(ois);
+      mergeTempFiles(m_incrementalBuffer.size() > 0 ? 1 : 0);
+      if (isStopRequested()) {
+        return;
+      }
 
-          tempH.m_fileNumber = i;
-          merger.add(tempH);
-        } else {
-          // no instances?!??
-          ois.close();
+      getStepManager().logDetailed(
+        "Merging " + m_bufferFiles.size() + " temp files");
+      List<RunSource> sources = new ArrayList<RunSource>();
+      for (File f : m_bufferFiles) {
+        RunReader reader = createRunReader(f);
+        readers.add(reader);
+        sources.add(reader);
+      }
+      if (m_incrementalBuffer.size() > 0) {
+        // the in-memory buffer holds the most recent instances
+        sources.add(new BufferSource(m_incrementalBuffer));
+      }
+      LoserTree merger = new LoserTree(sources, m_sortComparator);
+
+      Instances tempHeader = new Instances(m_connectedFormat, 0);
+      int mergeCount = 0;
+      InstanceHolder holder;
+      while ((holder = merger.next()) != null) {
+        if (isStopRequested()) {
+          return;
         }
-      } catch (Exception ex) {
-        if (ois != null) {
-          try {
-            ois.close();
-          } catch (Exception e) {
-            throw new WekaException(e);
+        getStepManager().throughputUpdateStart();
+        holder.m_instance.setDataset(tempHeader);
+
+        if (m_stringAttIndexes != null) {
+          for (String attName : m_stringAttIndexes.keySet()) {
+            boolean setValToZero =
+              (tempHeader.attribute(attName).numValues() > 1);
+            tempHeader.attribute(attName).setStringValue(
+              holder.m_stringVals.get(attName));
+            if (setValToZero
+              && !holder.m_instance.isMissing(tempHeader.attribute(attName))) {
+              holder.m_instance.setValue(tempHeader.attribute(attName), 0);
+            }
           }
         }
-        throw new WekaException(ex);
+
+        m_streamingData.setPayloadElement(StepManager.CON_INSTANCE,
+          holder.m_instance);
+        getStepManager().throughputUpdateEnd();
+        getStepManager().outputData(m_streamingData);
+
+        mergeCount++;
+        if (mergeCount % 100000 == 0) {
+          getStepManager().logDetailed("Merged " + mergeCount + " instances");
+        }
       }
-    }
-    Collections.sort(merger, m_sortComparator);
 
-    int mergeCount = 0;
-    do {
-      if (isStopRequested()) {
-        return;
+      // signal end of stream
+      m_streamingData.clearPayload();
+      getStepManager().throughputFinished(m_streamingData);
+    } catch (WekaException ex) {
+      throw ex;
+    } catch (Exception ex) {
+      throw new WekaException(ex);
+    } finally {
+      for (RunReader reader : readers) {
+        reader.close();
       }
-      InstanceHolder holder = merger.remove(0);
-      holder.m_instance.setDataset(tempHeader);
+      shutdownSortExecutor();
+      deleteTempFiles(m_bufferFiles);
+    }
+  }
 
+  /**
+   * Output the sorted in-memory buffer when no temp files have been written
+   *
+   * @throws WekaException if a problem occurs
+   */
+  protected void emitInMemoryBuffer() throws WekaException {
+    getStepManager().logDetailed("Emitting in memory buffer");
+    Instances newHeader = new Instances(m_connectedFormat, 0);
+    for (int i = 0; i < m_incrementalBuffer.size(); i++) {
+      getStepManager().throughputUpdateStart();
+      InstanceHolder currentH = m_incrementalBuffer.get(i);
+      currentH.m_instance.setDataset(newHeader);
       if (m_stringAttIndexes != null) {
         for (String attName : m_stringAttIndexes.keySet()) {
-          boolean setValToZero =
-            (tempHeader.attribute(attName).numValues() > 1);
-          tempHeader.attribute(attName).setStringValue(
-            holder.m_stringVals.get(attName));
-          if (setValToZero) {
-            holder.m_instance.setValue(tempHeader.attribute(attName), 0);
+          boolean setValToZero = newHeader.attribute(attName).numValues() > 0;
+          newHeader.attribute(attName).setStringValue(
+            currentH.m_stringVals.get(attName));
+          if (setValToZero
+            && !currentH.m_instance.isMissing(newHeader.attribute(attName))) {
+            currentH.m_instance.setValue(newHeader.attribute(attName), 0);
           }
         }
       }
-
+      if (isStopRequested()) {
+        return;
+      }
       m_streamingData.setPayloadElement(StepManager.CON_INSTANCE,
-        holder.m_instance);
-      mergeCount++;
+        currentH.m_instance);
+      getStepManager().throughputUpdateEnd();
       getStepManager().outputData(m_streamingData);
-      getStepManager().throughputUpdateStart();
+    }
 
-      if (mergeCount % m_bufferSizeI == 0) {
-        getStepManager().logDetailed("Merged " + mergeCount + " instances");
-      }
-      int smallest = holder.m_fileNumber;
+    // end of stream
+    m_streamingData.clearPayload();
+    getStepManager().throughputFinished(m_streamingData);
+  }
 
-      // now get another instance from the source of "smallest"
-      InstanceHolder nextH = null;
-      if (smallest == -1) {
-        if (m_incrementalBuffer.size() > 0) {
-          nextH = m_incrementalBuffer.remove(0);
-          nextH.m_fileNumber = -1;
-        }
-      } else {
-        ObjectInputStream tis = inputStreams.get(smallest);
+  /**
+   * Hand the full in-memory buffer over to a sort thread, which sorts it and
+   * writes it to a temp file. Waits while all sort threads are busy.
+   *
+   * @throws Exception if a problem occurs
+   */
+  protected void spillBuffer() throws Exception {
+    waitForSpills(m_sortThreadsI - 1);
+    if (isStopRequested()) {
+      return;
+    }
+
+    final List<InstanceHolder> buffer = m_incrementalBuffer;
+    final File tempFile = createTempFile();
+    m_bufferFiles.add(tempFile);
+    getStepManager().logDetailed(
+      "Writing buffer to temp file " + m_bufferFiles.size()
+        + ". Buffer contains " + buffer.size() + " instances");
+    getStepManager().logDebug("Temp file: " + tempFile.toString());
 
+    m_pendingSpills.add(m_sortExecutor.submit(new Callable<File>() {
+      @Override
+      public File call() throws Exception {
+        if (m_sortComparator != null) {
+          Collections.sort(buffer, m_sortComparator);
+        }
+        RunWriter writer = createRunWriter(tempFile);
         try {
-          InstanceHolder tempH = (InstanceHolder) tis.readObject();
-          if (tempH != null) {
-            nextH = tempH;
-            nextH.m_fileNumber = smallest;
-          } else {
-            throw new Exception("end of buffer");
-          }
-        } catch (Exception ex) {
-          // EOF
-          try {
-            getStepManager().logDetailed("Closing temp file");
-            tis.close();
-          } catch (Exception e) {
-            throw new WekaException(ex);
-          }
-          File file = m_bufferFiles.remove(smallest);
-          // file.delete();
-          inputStreams.remove(smallest);
-
-          // update file numbers
-          for (InstanceHolder h : merger) {
-            if (h.m_fileNumber != -1 && h.m_fileNumber > smallest) {
-              h.m_fileNumber--;
+          for (InstanceHolder holder : buffer) {
+            if (isStopRequested()) {
+              break;
             }
+            writer.write(holder);
           }
+        } finally {
+          writer.close();
         }
+        return tempFile;
       }
+    }));
+    m_incrementalBuffer = new ArrayList<InstanceHolder>(buffer.size());
+    m_bufferBytes = 0;
+  }
 
-      if (nextH != null) {
-        // find the correct position (i.e. interleave) for this new Instance
-        int index = Collections.binarySearch(merger, nextH, m_sortComparator);
-        if (index < 0) {
-          merger.add(index * -1 - 1, nextH);
-        } else {
-          merger.add(index, nextH);
-        }
-        nextH = null;
-      }
-      getStepManager().throughputUpdateEnd();
-    } while (merger.size() > 0 && !isStopRequested());
+  /**
+   * Wait until no more than the given number of buffers are still being sorted
+   * and written
+   *
+   * @param maxPending the maximum number of buffers that can still be pending
+   * @throws Exception if sorting or writing a buffer failed
+   */
+  protected void waitForSpills(int maxPending) throws Exception {
+    while (m_pendingSpills.size() > maxPending) {
+      getResult(m_pendingSpills.remove(0));
+    }
+  }
 
-    if (!isStopRequested()) {
-      // signal end of stream
-      m_streamingData.clearPayload();
-      getStepManager().throughputFinished(m_streamingData);
-    } else {
-      // try an close any input streams still open...
-      for (ObjectInputStream is : inputStreams) {
-        try {
-          is.close();
-        } catch (Exception ex) {
-          // ignore
+  /**
+   * Sort the in-memory buffer, using all available processors
+   */
+  protected void sortInMemoryBuffer() {
+    if (m_sortComparator != null && m_incrementalBuffer.size() > 1) {
+      getStepManager().logBasic("Sorting in memory buffer");
+      InstanceHolder[] holders =
+        m_incrementalBuffer.toArray(new InstanceHolder[m_incrementalBuffer
+          .size()]);
+      Arrays.parallelSort(holders, m_sortComparator);
+      m_incrementalBuffer = new ArrayList<InstanceHolder>(Arrays.asList(holders));
+    }
+  }
+
+  /**
+   * Merge the temp files in one or more passes until no more than the maximum
+   * number of files to merge at once (less the given number of sources that
+   * will be merged with them) are left. The files merged in each pass are
+   * processed by the sort threads.
+   *
+   * @param reserved the number of other sources that will take part in the
+   *          final merge
+   * @throws Exception if a problem occurs
+   */
+  protected void mergeTempFiles(int reserved) throws Exception {
+    while (m_bufferFiles.size() + reserved > m_mergeFanInI
+      && !isStopRequested()) {
+      getStepManager().logDetailed(
+        "Merge pass over " + m_bufferFiles.size() + " temp files");
+      List<Future<File>> pass = new ArrayList<Future<File>>();
+      List<File> merged = new ArrayList<File>();
+      try {
+        for (int i = 0; i < m_bufferFiles.size(); i += m_mergeFanInI) {
+          final List<File> group =
+            new ArrayList<File>(m_bufferFiles.subList(i,
+              Math.min(i + m_mergeFanInI, m_bufferFiles.size())));
+          final File tempFile = createTempFile();
+          merged.add(tempFile);
+          pass.add(m_sortExecutor.submit(new Callable<File>() {
+            @Override
+            public File call() throws Exception {
+              mergeRuns(group, tempFile);
+              return tempFile;
+            }
+          }));
+        }
+        for (Future<File> f : pass) {
+          getResult(f);
         }
+      } catch (Exception ex) {
+        deleteTempFiles(merged);
+        throw ex;
       }
+      deleteTempFiles(m_bufferFiles);
+      m_bufferFiles = merged;
     }
   }
 
   /**
-   * Sort the buffer
+   * Merge sorted temp files into a single sorted temp file
    *
-   * @param write true if the buffer sould be written to a tmp file
+   * @param runs the temp files to merge
+   * @param output the file to write to
    * @throws Exception if a problem occurs
    */
-  private void sortBuffer(boolean write) throws Exception {
-    getStepManager().logBasic("Sorting in memory buffer");
-    Collections.sort(m_incrementalBuffer, m_sortComparator);
-    if (!write) {
-      return;
+  protected void mergeRuns(List<File> runs, File output) throws Exception {
+    List<RunReader> readers = new ArrayList<RunReader>();
+    try {
+      for (File f : runs) {
+        readers.add(createRunReader(f));
+      }
+      LoserTree merger =
+        new LoserTree(new ArrayList<RunSource>(readers), m_sortComparator);
+      RunWriter writer = createRunWriter(output);
+      try {
+        InstanceHolder holder;
+        while ((holder = merger.next()) != null && !isStopRequested()) {
+          writer.write(holder);
+        }
+      } finally {
+        writer.close();
+      }
+    } finally {
+      for (RunReader reader : readers) {
+        reader.close();
+      }
     }
+  }
 
-    if (isStopRequested()) {
-      return;
+  /**
+   * Get the result of a sort thread's task
+   *
+   * @param future the future of the task
+   * @return the temp file written by the task
+   * @throws Exception if the task failed
+   */
+  protected static File getResult(Future<File> future) throws Exception {
+    try {
+      return future.get();
+    } catch (ExecutionException ex) {
+      if (ex.getCause() instanceof Exception) {
+        throw (Exception) ex.getCause();
+      }
+      throw ex;
     }
+  }
 
+  /**
+   * Create a new temp file, in the temp directory if one has been set
+   *
+   * @return the temp file
+   * @throws IOException if the file can't be created
+   */
+  protected File createTempFile() throws IOException {
+    File tempDir = null;
     String tmpDir = m_tempDirectory.toString();
-    File tempFile = File.createTempFile("Sorter", ".tmp");
-
     if (tmpDir != null && tmpDir.length() > 0) {
-      tmpDir = environmentSubstitute(tmpDir);
-      File tempDir = new File(tmpDir);
-      if (tempDir.exists() && tempDir.canWrite()) {
-        String filename = tempFile.getName();
-        tempFile = new File(tmpDir + File.separator + filename);
-        tempFile.deleteOnExit();
+      tempDir = new File(environmentSubstitute(tmpDir));
+      if (!tempDir.exists() || !tempDir.canWrite()) {
+        tempDir = null;
       }
     }
-    getStepManager().logDebug("Temp file: " + tempFile.toString());
+    File tempFile = File.createTempFile("Sorter", ".tmp", tempDir);
+    tempFile.deleteOnExit();
 
-    m_bufferFiles.add(tempFile);
-    FileOutputStream fos = new FileOutputStream(tempFile);
-    BufferedOutputStream bos = new BufferedOutputStream(fos, 50000);
-    ObjectOutputStream oos = new ObjectOutputStream(bos);
-    getStepManager().logDetailed(
-      "Writing buffer to temp file " + m_bufferFiles.size()
-        + ". Buffer contains " + m_incrementalBuffer.size() + " instances");
+    return tempFile;
+  }
 
-    for (int i = 0; i < m_incrementalBuffer.size(); i++) {
-      InstanceHolder temp = m_incrementalBuffer.get(i);
-      temp.m_instance.setDataset(null);
-      oos.writeObject(temp);
-      if (i % (m_bufferSizeI / 10) == 0) {
-        oos.reset();
+  /**
+   * Delete temp files
+   *
+   * @param files the files to delete
+   */
+  protected static void deleteTempFiles(List<File> files) {
+    for (File f : files) {
+      if (!f.delete()) {
+        f.deleteOnExit();
+      }
+    }
+    files.clear();
+  }
+
+  /**
+   * Stop the sort threads (if any)
+   */
+  protected void shutdownSortExecutor() {
+    if (m_sortExecutor != null) {
+      m_sortExecutor.shutdownNow();
+      m_sortExecutor = null;
+    }
+  }
+
+  /**
+   * Create a writer for a temp file
+   *
+   * @param file the file to write to
+   * @return the writer
+   * @throws IOException if the file can't be opened
+   */
+  protected RunWriter createRunWriter(File file) throws IOException {
+    return new RunWriter(file, m_connectedFormat.numAttributes(),
+      getStringAttNames());
+  }
+
+  /**
+   * Create a reader for a temp file
+   *
+   * @param file the file to read
+   * @return the reader
+   * @throws IOException if the file can't be opened
+   */
+  protected RunReader createRunReader(File file) throws IOException {
+    return new RunReader(file, m_connectedFormat.numAttributes(),
+      getStringAttNames());
+  }
+
+  /**
+   * Get the names of the string attributes, in the order in which their values
+   * are stored in temp files
+   *
+   * @return the names of the string attributes
+   */
+  protected String[] getStringAttNames() {
+    if (m_stringAttIndexes == null) {
+      return new String[0];
+    }
+    return m_stringAttIndexes.keySet().toArray(
+      new String[m_stringAttIndexes.size()]);
+  }
+
+  /**
+   * Estimate the memory used by a buffered instance
+   *
+   * @param holder the holder of the instance
+   * @return the estimated size in bytes
+   */
+  protected static long estimateSize(InstanceHolder holder) {
+    // the holder and instance objects plus the instance's array(s)
+    long size = 96;
+    if (holder.m_instance instanceof SparseInstance) {
+      size += 12L * holder.m_instance.numValues();
+    } else {
+      size += 8L * holder.m_instance.numValues();
+    }
+    if (holder.m_stringVals != null) {
+      size += 48;
+      for (String val : holder.m_stringVals.values()) {
+        size += 64 + (val != null ? 2L * val.length() : 0);
       }
     }
 
-    bos.flush();
-    oos.close();
-    m_incrementalBuffer.clear();
+    return size;
   }
 
   private void copyStringAttVals(InstanceHolder holder) {
@@ -652,6 +981,335 @@ public class Sorter extends BaseStep {
     }
   }
 
+  /**
+   * A sorted sequence of instances that takes part in a merge
+   */
+  protected static interface RunSource {
+
+    /**
+     * Get the next instance
+     *
+     * @return the next instance or null if there are no more instances
+     * @throws IOException if a problem occurs
+     */
+    InstanceHolder next() throws IOException;
+  }
+
+  /**
+   * Source for the sorted in-memory buffer
+   */
+  protected static class BufferSource implements RunSource {
+
+    /** The buffer */
+    protected List<InstanceHolder> m_buffer;
+
+    /** Index of the next instance */
+    protected int m_index;
+
+    /**
+     * Constructor
+     *
+     * @param buffer the sorted buffer
+     */
+    public BufferSource(List<InstanceHolder> buffer) {
+      m_buffer = buffer;
+    }
+
+    @Override
+    public InstanceHolder next() {
+      return m_index < m_buffer.size() ? m_buffer.get(m_index++) : null;
+    }
+  }
+
+  /**
+   * Writes instances to a temp file using a compact binary encoding. Each row
+   * consists of a type byte (dense, sparse or binary sparse), the weight, the
+   * (index and) value pairs and the values of any string attributes.
+   */
+  protected static class RunWriter {
+
+    /** The stream to write to */
+    protected DataOutputStream m_out;
+
+    /** The number of attributes */
+    protected int m_numAttributes;
+
+    /** The names of the string attributes */
+    protected String[] m_stringAtts;
+
+    /**
+     * Constructor
+     *
+     * @param file the file to write to
+     * @param numAttributes the number of attributes
+     * @param stringAtts the names of the string attributes
+     * @throws IOException if the file can't be opened
+     */
+    public RunWriter(File file, int numAttributes, String[] stringAtts)
+      throws IOException {
+      m_out =
+        new DataOutputStream(new BufferedOutputStream(
+          new FileOutputStream(file), 1 << 16));
+      m_numAttributes = numAttributes;
+      m_stringAtts = stringAtts;
+    }
+
+    /**
+     * Write an instance
+     *
+     * @param holder the holder of the instance
+     * @throws IOException if a problem occurs
+     */
+    public void write(InstanceHolder holder) throws IOException {
+      Instance inst = holder.m_instance;
+      if (inst instanceof BinarySparseInstance) {
+        m_out.writeByte(ROW_BINARY_SPARSE);
+        m_out.writeDouble(inst.weight());
+        m_out.writeInt(inst.numValues());
+        for (int i = 0; i < inst.numValues(); i++) {
+          m_out.writeInt(inst.index(i));
+        }
+      } else if (inst instanceof SparseInstance) {
+        m_out.writeByte(ROW_SPARSE);
+        m_out.writeDouble(inst.weight());
+        m_out.writeInt(inst.numValues());
+        for (int i = 0; i < inst.numValues(); i++) {
+          m_out.writeInt(inst.index(i));
+          m_out.writeDouble(inst.valueSparse(i));
+        }
+      } else {
+        m_out.writeByte(ROW_DENSE);
+        m_out.writeDouble(inst.weight());
+        for (int i = 0; i < m_numAttributes; i++) {
+          m_out.writeDouble(inst.value(i));
+        }
+      }
+
+      for (String att : m_stringAtts) {
+        String val =
+          holder.m_stringVals != null ? holder.m_stringVals.get(att) : null;
+        if (val == null) {
+          m_out.writeInt(-1);
+        } else {
+          byte[] bytes = val.getBytes("UTF-8");
+          m_out.writeInt(bytes.length);
+          m_out.write(bytes);
+        }
+      }
+    }
+
+    /**
+     * Close the file
+     *
+     * @throws IOException if a problem occurs
+     */
+    public void close() throws IOException {
+      m_out.close();
+    }
+  }
+
+  /**
+   * Reads instances from a temp file written by a {@code RunWriter}
+   */
+  protected static class RunReader implements RunSource {
+
+    /** The stream to read from */
+    protected DataInputStream m_in;
+
+    /** The number of attributes */
+    protected int m_numAttributes;
+
+    /** The names of the string attributes */
+    protected String[] m_stringAtts;
+
+    /**
+     * Constructor
+     *
+     * @param file the file to read from
+     * @param numAttributes the number of attributes
+     * @param stringAtts the names of the string attributes
+     * @throws IOException if the file can't be opened
+     */
+    public RunReader(File file, int numAttributes, String[] stringAtts)
+      throws IOException {
+      m_in =
+        new DataInputStream(new BufferedInputStream(new FileInputStream(file),
+          1 << 16));
+      m_numAttributes = numAttributes;
+      m_stringAtts = stringAtts;
+    }
+
+    @Override
+    public InstanceHolder next() throws IOException {
+      int type = m_in.read();
+      if (type < 0) {
+        return null;
+      }
+
+      InstanceHolder holder = new InstanceHolder();
+      holder.m_fileNumber = -1;
+      double weight = m_in.readDouble();
+      if (type == ROW_DENSE) {
+        double[] vals = new double[m_numAttributes];
+        for (int i = 0; i < vals.length; i++) {
+          vals[i] = m_in.readDouble();
+        }
+        holder.m_instance = new DenseInstance(weight, vals);
+      } else {
+        int[] indices = new int[m_in.readInt()];
+        double[] vals = type == ROW_SPARSE ? new double[indices.length] : null;
+        for (int i = 0; i < indices.length; i++) {
+          indices[i] = m_in.readInt();
+          if (vals != null) {
+            vals[i] = m_in.readDouble();
+          }
+        }
+        holder.m_instance =
+          vals != null ? new SparseInstance(weight, vals, indices,
+            m_numAttributes) : new BinarySparseInstance(weight, indices,
+            m_numAttributes);
+      }
+
+      if (m_stringAtts.length > 0) {
+        holder.m_stringVals = new HashMap<String, String>();
+        for (String att : m_stringAtts) {
+          int length = m_in.readInt();
+          String val = null;
+          if (length >= 0) {
+            byte[] bytes = new byte[length];
+            m_in.readFully(bytes);
+            val = new String(bytes, "UTF-8");
+          }
+          holder.m_stringVals.put(att, val);
+        }
+      }
+
+      return holder;
+    }
+
+    /**
+     * Close the file
+     */
+    public void close() {
+      try {
+        m_in.close();
+      } catch (IOException ex) {
+        // ignore
+      }
+    }
+  }
+
+  /**
+   * Merges sorted sources using a tournament tree of losers. Each internal
+   * node holds the loser of the match played at it, so that only the matches
+   * on the path from the leaf of the last winner's source to the root need to
+   * be replayed to find the next winner, i.e. log2(k) comparisons per instance
+   * for k sources. Ties are resolved in favour of the earlier source, which
+   * makes the merge stable.
+   */
+  protected static class LoserTree {
+
+    /** The sources to merge */
+    protected RunSource[] m_sources;
+
+    /** The current instance of each source (null once exhausted) */
+    protected InstanceHolder[] m_heads;
+
+    /** Index of the overall winner (0) and the losers at the internal nodes */
+    protected int[] m_tree;
+
+    /** The comparator to use */
+    protected Comparator<InstanceHolder> m_comparator;
+
+    /**
+     * Constructor
+     *
+     * @param sources the sorted sources to merge
+     * @param comparator the comparator to use (may be null)
+     * @throws IOException if a problem occurs
+     */
+    public LoserTree(List<RunSource> sources,
+      Comparator<InstanceHolder> comparator) throws IOException {
+      int k = sources.size();
+      m_sources = sources.toArray(new RunSource[k]);
+      m_comparator = comparator;
+      m_heads = new InstanceHolder[k];
+      for (int i = 0; i < k; i++) {
+        m_heads[i] = m_sources[i].next();
+      }
+
+      // leaves are at positions k..2k-1, internal nodes at 1..k-1
+      m_tree = new int[Math.max(1, k)];
+      int[] winners = new int[2 * k];
+      for (int i = 0; i < k; i++) {
+        winners[k + i] = i;
+      }
+      for (int n = k - 1; n > 0; n--) {
+        int a = winners[2 * n];
+        int b = winners[2 * n + 1];
+        if (beats(a, b)) {
+          winners[n] = a;
+          m_tree[n] = b;
+        } else {
+          winners[n] = b;
+          m_tree[n] = a;
+        }
+      }
+      m_tree[0] = k > 1 ? winners[1] : 0;
+    }
+
+    /**
+     * Get the next instance in sort order
+     *
+     * @return the next instance or null if all sources are exhausted
+     * @throws IOException if a problem occurs
+     */
+    public InstanceHolder next() throws IOException {
+      if (m_heads.length == 0) {
+        return null;
+      }
+      int winner = m_tree[0];
+      InstanceHolder result = m_heads[winner];
+      if (result == null) {
+        return null;
+      }
+
+      m_heads[winner] = m_sources[winner].next();
+      for (int n = (winner + m_heads.length) / 2; n > 0; n /= 2) {
+        if (beats(m_tree[n], winner)) {
+          int loser = winner;
+          winner = m_tree[n];
+          m_tree[n] = loser;
+        }
+      }
+      m_tree[0] = winner;
+
+      return result;
+    }
+
+    /**
+     * Returns true if the current instance of the first source comes before
+     * that of the second one
+     *
+     * @param a the index of the first source
+     * @param b the index of the second source
+     * @return true if source a wins the match
+     */
+    protected boolean beats(int a, int b) {
+      if (m_heads[a] == null) {
+        return m_heads[b] == null && a < b;
+      }
+      if (m_heads[b] == null) {
+        return true;
+      }
+      int cmp =
+        m_comparator != null ? m_comparator.compare(m_heads[a], m_heads[b])
+          : 0;
+
+      return cmp < 0 || (cmp == 0 && a < b);
+    }
+  }
+
   /**
    * Inner class that holds instances and the index of the temp file that holds
    * them (if operating in incremental mode)
@@ -19,9 +19,15 @@
 
 package weka.attributeSelection;
 
+import java.util.Random;
+
+import weka.core.Attribute;
 import weka.core.CheckGOE;
 import weka.core.CheckOptionHandler;
+import weka.core.Instances;
 import weka.core.OptionHandler;
+import weka.core.TestInstances;
+import weka.core.Utils;
 import weka.core.CheckScheme.PostProcessor;
 
 /**
@@ -92,4 +98,84 @@ public abstract class AbstractEvaluatorTest
     
     return result;
   }
+
+  /**
+   * Generates a dataset with nominal and numeric attributes and 10% missing
+   * attribute values, used for comparing the merits computed with different
+   * numbers of execution slots.
+   *
+   * @param classType	the type of the class attribute
+   * @return		the dataset
+   * @throws Exception	if generation fails
+   */
+  protected Instances makeExecutionSlotsDataset(int classType) throws Exception {
+    TestInstances	gen;
+    Instances		data;
+    Random		rand;
+    int			i;
+    int			n;
+
+    gen = new TestInstances();
+    gen.setSeed(42);
+    gen.setNumInstances(300);
+    gen.setNumNominal(12);
+    gen.setNumNominalValues(3);
+    gen.setNumNumeric(12);
+    gen.setNumClasses(3);
+    gen.setClassType(classType);
+    data = gen.generate();
+
+    rand = new Random(42);
+    for (i = 0; i < data.numInstances(); i++) {
+      for (n = 0; n < data.numAttributes(); n++) {
+        if ((n != data.classIndex()) && (rand.nextInt(10) == 0))
+          data.instance(i).setMissing(n);
+      }
+    }
+
+    return data;
+  }
+
+  /**
+   * Checks that the evaluator computes the same merits with several
+   * execution slots as with a single one, using a nominal class.
+   *
+   * @param options	additional options for the evaluator
+   * @throws Exception	if the evaluator fails
+   */
+  protected void checkExecutionSlots(String[] options) throws Exception {
+    checkExecutionSlots(options, makeExecutionSlotsDataset(Attribute.NOMINAL));
+  }
+
+  /**
+   * Checks that the evaluator computes the same merits with several
+   * execution slots as with a single one.
+   *
+   * @param options	additional options for the evaluator
+   * @param data	the data to build the evaluator on
+   * @throws Exception	if the evaluator fails
+   */
+  protected void checkExecutionSlots(String[] options, Instances data)
+    throws Exception {
+    ASEvaluation	single;
+    ASEvaluation	multi;
+    int			i;
+
+    single = getEvaluator();
+    ((OptionHandler) single).setOptions(Utils.splitOptions(
+	Utils.joinOptions(options) + " -num-slots 1"));
+    single.buildEvaluator(data);
+    multi = getEvaluator();
+    ((OptionHandler) multi).setOptions(Utils.splitOptions(
+	Utils.joinOptions(options) + " -num-slots 4"));
+    multi.buildEvaluator(data);
+
+    for (i = 0; i < data.numAttributes(); i++) {
+      if (i == data.classIndex())
+	continue;
+      assertEquals("merit of attribute " + (i+1),
+	  ((AttributeEvaluator) single).evaluateAttribute(i),
+	  ((AttributeEvaluator) multi).evaluateAttribute(i), 0.0);
+    }
+  }
 }
@@ -19,6 +19,12 @@
 
 package weka.attributeSelection;
 
+import java.util.Arrays;
+
+import weka.core.Attribute;
+import weka.core.Instances;
+import weka.core.SelectedTag;
+import weka.core.TestInstances;
 import junit.framework.Test;
 import junit.framework.TestSuite;
 
@@ -46,6 +52,74 @@ public class BestFirstTest
     return new CfsSubsetEval();
   }
 
+  /**
+   * Runs BestFirst with the given number of threads and returns the selected
+   * attributes and the search output.
+   *
+   * @param eval	the evaluator to use
+   * @param direction	the search direction
+   * @param slots	the number of threads
+   * @return		the selected attributes and the search output
+   * @throws Exception	if the search fails
+   */
+  protected String search(ASEvaluation eval, int direction, int slots)
+    throws Exception {
+    Instances	data;
+    BestFirst	search;
+    int[]	selected;
+
+    data = makeSearchDataset();
+    eval.buildEvaluator(data);
+    search = new BestFirst();
+    search.setDirection(new SelectedTag(direction, BestFirst.TAGS_SELECTION));
+    search.setNumExecutionSlots(slots);
+    selected = search.search(eval, data);
+
+    return Arrays.toString(selected) + "\n" + search.toString();
+  }
+
+  /**
+   * Generates a dataset with a nominal class.
+   *
+   * @return		the dataset
+   * @throws Exception	if generation fails
+   */
+  protected Instances makeSearchDataset() throws Exception {
+    TestInstances	gen;
+
+    gen = new TestInstances();
+    gen.setSeed(42);
+    gen.setNumInstances(100);
+    gen.setNumNominal(5);
+    gen.setNumNumeric(5);
+    gen.setClassType(Attribute.NOMINAL);
+    return gen.generate();
+  }
+
+  /**
+   * Tests that evaluating the children of a node in parallel gives the same
+   * search result as evaluating them sequentially.
+   */
+  public void testExecutionSlots() throws Exception {
+    WrapperSubsetEval	wrapper;
+    int[]		directions;
+    int			i;
+
+    directions = new int[]{BestFirst.SELECTION_FORWARD,
+	BestFirst.SELECTION_BACKWARD, BestFirst.SELECTION_BIDIRECTIONAL};
+    for (i = 0; i < directions.length; i++) {
+      assertEquals("CfsSubsetEval, direction " + directions[i],
+	  search(new CfsSubsetEval(), directions[i], 1),
+	  search(new CfsSubsetEval(), directions[i], 4));
+    }
+
+    wrapper = new WrapperSubsetEval();
+    wrapper.setClassifier(new weka.classifiers.bayes.NaiveBayes());
+    assertEquals("WrapperSubsetEval",
+	search(wrapper, BestFirst.SELECTION_FORWARD, 1),
+	search(wrapper, BestFirst.SELECTION_FORWARD, 4));
+  }
+
   public static Test suite() {
     return new TestSuite(BestFirstTest.class);
   }
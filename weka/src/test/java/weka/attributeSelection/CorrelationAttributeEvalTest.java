@@ -46,6 +46,13 @@ public class CorrelationAttributeEvalTest
     return new CorrelationAttributeEval();
   }
 
+  /**
+   * Tests that the merits don't depend on the number of execution slots.
+   */
+  public void testExecutionSlots() throws Exception {
+    checkExecutionSlots(new String[]{});
+  }
+
   public static Test suite() {
     return new TestSuite(CorrelationAttributeEvalTest.class);
   }
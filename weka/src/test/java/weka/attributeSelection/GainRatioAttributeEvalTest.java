@@ -46,6 +46,14 @@ public class GainRatioAttributeEvalTest
     return new GainRatioAttributeEval();
   }
 
+  /**
+   * Tests that the merits don't depend on the number of execution slots.
+   */
+  public void testExecutionSlots() throws Exception {
+    checkExecutionSlots(new String[]{});
+    checkExecutionSlots(new String[]{"-M"});
+  }
+
   public static Test suite() {
     return new TestSuite(GainRatioAttributeEvalTest.class);
   }
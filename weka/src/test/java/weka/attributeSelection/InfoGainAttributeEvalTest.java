@@ -46,6 +46,15 @@ public class InfoGainAttributeEvalTest
     return new InfoGainAttributeEval();
   }
 
+  /**
+   * Tests that the merits don't depend on the number of execution slots.
+   */
+  public void testExecutionSlots() throws Exception {
+    checkExecutionSlots(new String[]{});
+    checkExecutionSlots(new String[]{"-M"});
+    checkExecutionSlots(new String[]{"-B"});
+  }
+
   public static Test suite() {
     return new TestSuite(InfoGainAttributeEvalTest.class);
   }
@@ -46,6 +46,13 @@ public class OneRAttributeEvalTest
     return new OneRAttributeEval();
   }
 
+  /**
+   * Tests that the merits don't depend on the number of execution slots.
+   */
+  public void testExecutionSlots() throws Exception {
+    checkExecutionSlots(new String[]{});
+  }
+
   public static Test suite() {
     return new TestSuite(OneRAttributeEvalTest.class);
   }
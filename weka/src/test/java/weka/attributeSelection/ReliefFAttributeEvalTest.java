@@ -19,6 +19,13 @@
 
 package weka.attributeSelection;
 
+import weka.core.Attribute;
+import weka.core.Instances;
+import weka.core.neighboursearch.CoverTree;
+import weka.core.neighboursearch.FilteredNeighbourSearch;
+import weka.core.neighboursearch.KDTree;
+import weka.filters.Filter;
+import weka.filters.unsupervised.attribute.ReplaceMissingValues;
 import junit.framework.Test;
 import junit.framework.TestSuite;
 
@@ -46,6 +53,44 @@ public class ReliefFAttributeEvalTest
     return new ReliefFAttributeEval();
   }
 
+  /**
+   * Tests that the merits don't depend on the number of execution slots.
+   */
+  public void testExecutionSlots() throws Exception {
+    Instances	nominal;
+    Instances	numeric;
+
+    checkExecutionSlots(new String[]{});
+    checkExecutionSlots(new String[]{"-W"});
+    numeric = makeExecutionSlotsDataset(Attribute.NUMERIC);
+    checkExecutionSlots(new String[]{}, numeric);
+
+    // the tree searches can't handle missing values
+    nominal = replaceMissing(makeExecutionSlotsDataset(Attribute.NOMINAL));
+    numeric = replaceMissing(numeric);
+    checkExecutionSlots(new String[]{"-S", KDTree.class.getName()}, nominal);
+    checkExecutionSlots(
+	new String[]{"-S", KDTree.class.getName(), "-W"}, numeric);
+    checkExecutionSlots(new String[]{"-S", CoverTree.class.getName()}, nominal);
+    checkExecutionSlots(
+	new String[]{"-S", FilteredNeighbourSearch.class.getName()}, nominal);
+  }
+
+  /**
+   * Replaces the missing values in the data.
+   *
+   * @param data	the data to process
+   * @return		the data without missing values
+   * @throws Exception	if filtering fails
+   */
+  protected Instances replaceMissing(Instances data) throws Exception {
+    ReplaceMissingValues	filter;
+
+    filter = new ReplaceMissingValues();
+    filter.setInputFormat(data);
+    return Filter.useFilter(data, filter);
+  }
+
   public static Test suite() {
     return new TestSuite(ReliefFAttributeEvalTest.class);
   }
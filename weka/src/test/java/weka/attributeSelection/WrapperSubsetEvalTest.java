@@ -19,6 +19,12 @@
 
 package weka.attributeSelection;
 
+import java.util.BitSet;
+
+import weka.core.Attribute;
+import weka.core.Instances;
+import weka.core.TestInstances;
+import weka.core.Utils;
 import junit.framework.Test;
 import junit.framework.TestSuite;
 
@@ -48,6 +54,120 @@ public class WrapperSubsetEvalTest
     return eval;
   }
 
+  /**
+   * Generates a small dataset with a nominal class.
+   *
+   * @return		the dataset
+   * @throws Exception	if generation fails
+   */
+  protected Instances makeCacheDataset() throws Exception {
+    TestInstances	gen;
+
+    gen = new TestInstances();
+    gen.setSeed(42);
+    gen.setNumInstances(100);
+    gen.setNumNominal(3);
+    gen.setNumNumeric(3);
+    gen.setClassType(Attribute.NOMINAL);
+    return gen.generate();
+  }
+
+  /**
+   * Tests that the subset cache discards the least recently used subset.
+   */
+  public void testSubsetCacheEviction() {
+    WrapperSubsetEval.SubsetCache	cache;
+    BitSet				a;
+    BitSet				b;
+    BitSet				c;
+
+    a = new BitSet();
+    a.set(0);
+    b = new BitSet();
+    b.set(1);
+    c = new BitSet();
+    c.set(2);
+
+    cache = new WrapperSubsetEval.SubsetCache(2);
+    cache.put(a, 0.1);
+    cache.put(b, 0.2);
+    // touch a, so that b is the least recently used subset
+    assertEquals(0.1, cache.get(a), 0.0);
+    cache.put(c, 0.3);
+
+    assertEquals(2, cache.size());
+    assertTrue("a was used recently", cache.containsKey(a));
+    assertFalse("b should have been evicted", cache.containsKey(b));
+    assertTrue("c was added last", cache.containsKey(c));
+  }
+
+  /**
+   * Tests that subsets evaluated before are taken from the cache and that
+   * cached merits are the same as the ones computed without caching.
+   */
+  public void testSubsetCache() throws Exception {
+    Instances		data;
+    WrapperSubsetEval	cached;
+    WrapperSubsetEval	uncached;
+    final int[]		count;
+    BitSet		subset;
+    int			i;
+
+    data  = makeCacheDataset();
+    count = new int[1];
+    cached = new WrapperSubsetEval() {
+      private static final long serialVersionUID = 1L;
+      @Override
+      protected double crossValidateSubset(BitSet subset) throws Exception {
+	count[0]++;
+	return super.crossValidateSubset(subset);
+      }
+    };
+    cached.setClassifier(new weka.classifiers.trees.J48());
+    cached.setSubsetCacheSize(2);
+    cached.buildEvaluator(data);
+    uncached = (WrapperSubsetEval) getEvaluator();
+    uncached.setSubsetCacheSize(0);
+    uncached.buildEvaluator(data);
+
+    for (i = 0; i < 3; i++) {
+      subset = new BitSet();
+      subset.set(i);
+      assertEquals("merit of subset " + subset,
+	  uncached.evaluateSubset(subset), cached.evaluateSubset(subset), 0.0);
+    }
+    assertEquals(3, count[0]);
+
+    // {1} and {2} are still cached, {0} has been evicted
+    subset = new BitSet();
+    subset.set(2);
+    cached.evaluateSubset(subset);
+    subset = new BitSet();
+    subset.set(1);
+    cached.evaluateSubset(subset);
+    assertEquals(3, count[0]);
+    subset = new BitSet();
+    subset.set(0);
+    cached.evaluateSubset(subset);
+    assertEquals(4, count[0]);
+  }
+
+  /**
+   * Tests that the cache size is only listed in the options if it differs
+   * from the default.
+   */
+  public void testSubsetCacheSizeOption() throws Exception {
+    WrapperSubsetEval	eval;
+
+    eval = (WrapperSubsetEval) getEvaluator();
+    assertFalse(Utils.joinOptions(eval.getOptions()).contains("-cache-size"));
+    eval.setSubsetCacheSize(5);
+    assertTrue(Utils.joinOptions(eval.getOptions()).contains("-cache-size 5"));
+    eval = (WrapperSubsetEval) getEvaluator();
+    eval.setOptions(new String[]{"-cache-size", "0"});
+    assertEquals(0, eval.getSubsetCacheSize());
+  }
+
   public static Test suite() {
     return new TestSuite(WrapperSubsetEvalTest.class);
   }
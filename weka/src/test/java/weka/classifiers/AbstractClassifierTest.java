@@ -28,8 +28,10 @@ import weka.core.Attribute;
 import weka.core.CheckGOE;
 import weka.core.CheckOptionHandler;
 import weka.core.CheckScheme.PostProcessor;
+import weka.core.CopyableFromOptions;
 import weka.core.Instances;
 import weka.core.OptionHandler;
+import weka.core.SerializedObject;
 import weka.test.Regression;
 
 /**
@@ -991,6 +993,51 @@ public abstract class AbstractClassifierTest extends TestCase {
     }
   }
 
+  /**
+   * tests whether copies of an untrained classifier that are created via its
+   * options make the same predictions as copies created via serialization
+   */
+  public void testMakeCopies() throws Exception {
+    Classifier original;
+    Instances train;
+    String expected;
+
+    if (!(m_Classifier instanceof CopyableFromOptions)
+      || !((CopyableFromOptions) m_Classifier).isCopyableFromOptions()
+      || m_Tester.hasClasspathProblems()) {
+      return;
+    }
+
+    original = m_Classifier;
+    try {
+      for (int i = FIRST_CLASSTYPE; i <= LAST_CLASSTYPE; i++) {
+        if (!canPredict(i)) {
+          continue;
+        }
+
+        train = m_Tester.makeTestDataset(42, m_Tester.getNumInstances(),
+          m_NominalPredictors[i] ? m_Tester.getNumNominal() : 0,
+          m_NumericPredictors[i] ? m_Tester.getNumNumeric() : 0,
+          m_StringPredictors[i] ? m_Tester.getNumString() : 0,
+          m_DatePredictors[i] ? m_Tester.getNumDate() : 0,
+          m_RelationalPredictors[i] ? m_Tester.getNumRelational() : 0, 2, i,
+          m_multiInstanceHandler);
+
+        m_Classifier = (Classifier) new SerializedObject(original).getObject();
+        try {
+          expected = predictionsToString(useClassifier(train));
+        } catch (Exception e) {
+          continue;
+        }
+        m_Classifier = AbstractClassifier.makeCopies(original, 1)[0];
+        assertEquals("Copy via options differs from serialized copy",
+          expected, predictionsToString(useClassifier(train)));
+      }
+    } finally {
+      m_Classifier = original;
+    }
+  }
+
   /**
    * tests the listing of the options
    */
@@ -19,13 +19,18 @@
 
 package weka.classifiers.evaluation;
 
+import java.io.File;
+import java.io.FileWriter;
 import java.io.IOException;
 import java.io.StringReader;
+import java.io.StringWriter;
 
 import junit.framework.Test;
 import junit.framework.TestCase;
 import junit.framework.TestSuite;
+import weka.classifiers.bayes.NaiveBayes;
 import weka.core.Instances;
+import weka.core.converters.ConverterUtils.DataSource;
 
 /**
  * Tests Evaluation. So far just does a simple regression test for
@@ -80,6 +85,123 @@ public class EvaluationTest extends TestCase {
     }
   }
 
+  /**
+   * Creates an evaluation with the predictions of PREDS recorded.
+   * 
+   * @param compact whether to store the predictions compactly
+   * @param numBins the number of bins of the threshold histograms
+   * @return the evaluation
+   * @throws Exception if evaluation fails
+   */
+  protected Evaluation evaluate(boolean compact, int numBins) throws Exception {
+    Instances inst = new Instances(new StringReader(DATA));
+    inst.setClassIndex(inst.numAttributes() - 1);
+    Evaluation eval = new Evaluation(inst);
+    eval.setCompactPredictions(compact);
+    eval.setNumThresholdBins(numBins);
+
+    for (int i = 0; i < inst.numInstances(); i++) {
+      eval.evaluateModelOnceAndRecordPrediction(PREDS[i], inst.instance(i));
+    }
+
+    return eval;
+  }
+
+  public void testCompactPredictions() throws Exception {
+    Evaluation standard = evaluate(false, 0);
+    Evaluation compact = evaluate(true, 0);
+
+    assertEquals(standard.predictions().size(), compact.predictions().size());
+    for (int i = 0; i < 2; i++) {
+      assertEquals(standard.areaUnderROC(i), compact.areaUnderROC(i), 1e-12);
+      assertEquals(standard.areaUnderPRC(i), compact.areaUnderPRC(i), 1e-12);
+    }
+  }
+
+  public void testThresholdHistogram() throws Exception {
+    Evaluation standard = evaluate(false, 0);
+    Evaluation histogram = evaluate(false, 10);
+
+    for (int i = 0; i < 2; i++) {
+      assertEquals(standard.areaUnderROC(i), histogram.areaUnderROC(i),
+        histogram.areaUnderROCErrorBound(i) + 1e-12);
+      assertEquals(standard.areaUnderPRC(i), histogram.areaUnderPRC(i),
+        histogram.areaUnderPRCErrorBound(i) + 1e-12);
+    }
+
+    // with enough bins, no two probabilities share a bin
+    histogram = evaluate(false, 1000);
+    for (int i = 0; i < 2; i++) {
+      assertEquals(0, histogram.areaUnderROCErrorBound(i), 1e-12);
+      assertEquals(standard.areaUnderROC(i), histogram.areaUnderROC(i), 1e-12);
+    }
+  }
+
+  public void testStreamingEvaluation() throws Exception {
+    Instances inst = new Instances(new StringReader(DATA));
+    inst.setClassIndex(inst.numAttributes() - 1);
+    NaiveBayes classifier = new NaiveBayes();
+    classifier.buildClassifier(inst);
+
+    Evaluation standard = new Evaluation(inst);
+    standard.evaluateModel(classifier, inst);
+    for (int slots = 1; slots <= 3; slots++) {
+      Evaluation streaming = new Evaluation(inst);
+      streaming.evaluateModel(classifier, new DataSource(inst),
+        new Instances(inst, 0), slots, 4);
+      assertEquals(standard.toSummaryString(), streaming.toSummaryString());
+      assertEquals(standard.predictions().size(), streaming.predictions()
+        .size());
+      for (int i = 0; i < standard.predictions().size(); i++) {
+        assertEquals(standard.predictions().get(i).predicted(), streaming
+          .predictions().get(i).predicted(), 1e-12);
+      }
+      assertEquals(standard.areaUnderROC(0), streaming.areaUnderROC(0), 1e-12);
+    }
+  }
+
+  /**
+   * Writes DATA to a temporary ARFF file.
+   * 
+   * @return the file
+   * @throws Exception if writing fails
+   */
+  protected File writeData() throws Exception {
+    File result = File.createTempFile("EvaluationTest", ".arff");
+    result.deleteOnExit();
+    FileWriter writer = new FileWriter(result);
+    writer.write(DATA);
+    writer.close();
+    return result;
+  }
+
+  public void testStreamingPredictionsOutput() throws Exception {
+    File data = writeData();
+    String output = "weka.classifiers.evaluation.output.prediction.PlainText";
+
+    String expected = Evaluation.evaluateModel(new NaiveBayes(), new String[] {
+      "-t", data.getPath(), "-T", data.getPath(), "-classifications", output });
+    StringWriter writer = new StringWriter();
+    String result = Evaluation.evaluateModel(new NaiveBayes(), new String[] {
+      "-t", data.getPath(), "-T", data.getPath(), "-classifications", output,
+      "-test-slots", "2", "-test-batch-size", "4" }, writer);
+
+    assertTrue(writer.toString().contains("=== Predictions on test data ==="));
+    assertEquals(expected, writer.toString() + result);
+  }
+
+  public void testStreamingThresholdFile() throws Exception {
+    File data = writeData();
+    File threshold = File.createTempFile("EvaluationTest", ".arff");
+    threshold.deleteOnExit();
+
+    Evaluation.evaluateModel(new NaiveBayes(), new String[] { "-t",
+      data.getPath(), "-T", data.getPath(), "-test-slots", "2",
+      "-threshold-file", threshold.getPath() });
+    assertTrue(new DataSource(threshold.getPath()).getDataSet()
+      .numInstances() > 0);
+  }
+
   public static Test suite() {
     return new TestSuite(weka.classifiers.evaluation.EvaluationTest.class);
   }
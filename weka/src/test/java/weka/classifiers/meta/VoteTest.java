@@ -21,6 +21,12 @@ package weka.classifiers.meta;
 
 import weka.classifiers.AbstractClassifierTest;
 import weka.classifiers.Classifier;
+import weka.classifiers.bayes.NaiveBayes;
+import weka.classifiers.functions.Logistic;
+import weka.classifiers.trees.J48;
+import weka.core.Instances;
+
+import java.io.InputStreamReader;
 
 import junit.framework.Test;
 import junit.framework.TestSuite;
@@ -44,6 +50,58 @@ public class VoteTest
     return new Vote();
   }
 
+  /**
+   * Loads the iris dataset.
+   * 
+   * @return the dataset
+   * @throws Exception if loading fails
+   */
+  protected Instances getIris() throws Exception {
+    Instances result = new Instances(new InputStreamReader(
+      ClassLoader.getSystemResourceAsStream("weka/gui/beans/templates/iris.arff")));
+    result.setClassIndex(result.numAttributes() - 1);
+    return result;
+  }
+
+  /**
+   * Builds Vote with J48, NaiveBayes and Logistic as base classifiers on
+   * the given data.
+   * 
+   * @param data the training data
+   * @param numSlots the number of execution slots
+   * @return the built classifier
+   * @throws Exception if building fails
+   */
+  protected Vote build(Instances data, int numSlots) throws Exception {
+    Vote result = new Vote();
+    result.setClassifiers(new Classifier[] { new J48(), new NaiveBayes(),
+      new Logistic() });
+    result.setNumExecutionSlots(numSlots);
+    result.buildClassifier(data);
+    return result;
+  }
+
+  /**
+   * Tests that building with several execution slots yields the same model
+   * as building with a single one.
+   * 
+   * @throws Exception if an error occurs
+   */
+  public void testExecutionSlots() throws Exception {
+    Instances data = getIris();
+    double[][] sequential = build(data, 1).distributionsForInstances(data);
+    double[][] parallel = build(data, 3).distributionsForInstances(data);
+
+    assertEquals(sequential.length, parallel.length);
+    for (int i = 0; i < sequential.length; i++) {
+      assertEquals(sequential[i].length, parallel[i].length);
+      for (int j = 0; j < sequential[i].length; j++) {
+        assertEquals("instance " + i + ", class " + j, sequential[i][j],
+          parallel[i][j], 0.0);
+      }
+    }
+  }
+
   public static Test suite() {
     return new TestSuite(VoteTest.class);
   }
@@ -0,0 +1,396 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ * ClassDiscoveryIndexTest.java
+ * Copyright (C) 2026 University of Waikato, Hamilton, New Zealand
+ */
+
+package weka.core;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Vector;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+import weka.classifiers.AbstractClassifier;
+import weka.classifiers.Classifier;
+import weka.filters.Filter;
+import weka.filters.StreamableFilter;
+
+/**
+ * Tests ClassDiscoveryIndex. Run from the command line with:
+ * <p/>
+ * java weka.core.ClassDiscoveryIndexTest
+ *
+ * @author The WEKA Team (wekalist@list.waikato.ac.nz)
+ * @version $Revision$
+ */
+public class ClassDiscoveryIndexTest extends TestCase {
+
+  /** the classes to index */
+  protected static final String[] CLASSES = {
+    "weka.classifiers.AbstractClassifier", "weka.classifiers.Classifier",
+    "weka.classifiers.trees.J48", "weka.classifiers.trees.RandomForest",
+    "weka.classifiers.bayes.NaiveBayes", "weka.filters.Filter",
+    "weka.filters.unsupervised.attribute.Remove",
+    "weka.filters.unsupervised.attribute.ReplaceMissingValues",
+    "weka.core.Instances" };
+
+  /** the base types to check */
+  protected static final Class<?>[] TYPES = { Classifier.class,
+    AbstractClassifier.class, OptionHandler.class, Filter.class,
+    StreamableFilter.class, Randomizable.class, Object.class };
+
+  /**
+   * Constructs the <code>ClassDiscoveryIndexTest</code>.
+   *
+   * @param name the name of the test class
+   */
+  public ClassDiscoveryIndexTest(String name) {
+    super(name);
+  }
+
+  /**
+   * Creates an index of the test classes.
+   *
+   * @return the index
+   */
+  protected ClassDiscoveryIndex createIndex() {
+    return ClassDiscoveryIndex.create(Arrays.asList(CLASSES), getClass()
+      .getClassLoader());
+  }
+
+  /**
+   * Tests whether the indexed type information matches the one determined by
+   * loading the classes.
+   *
+   * @throws Exception if an error occurs
+   */
+  public void testTypeInformation() throws Exception {
+    ClassDiscoveryIndex index = createIndex();
+
+    assertEquals(CLASSES.length, index.getNumClasses());
+    for (String name : CLASSES) {
+      Class<?> cls = Class.forName(name);
+      ClassDiscoveryIndex.ClassInfo info = index.getClassInfo(name);
+      assertNotNull("not indexed: " + name, info);
+      assertEquals(name, Modifier.isAbstract(cls.getModifiers()),
+        info.isAbstract());
+      for (Class<?> type : TYPES) {
+        if (type.isInterface()) {
+          assertEquals(name + "/" + type.getName(),
+            InheritanceUtils.hasInterface(type, cls),
+            info.hasInterface(type.getName()));
+        } else if (!cls.isInterface()) {
+          assertEquals(name + "/" + type.getName(),
+            InheritanceUtils.isSubclass(type, cls),
+            info.isSubclass(type.getName()));
+        }
+      }
+    }
+
+    assertEquals(
+      Arrays.asList("weka.classifiers.bayes.NaiveBayes",
+        "weka.classifiers.trees.J48", "weka.classifiers.trees.RandomForest"),
+      index.getImplementations(AbstractClassifier.class.getName()));
+  }
+
+  /**
+   * Tests writing and reading an index.
+   *
+   * @throws Exception if an error occurs
+   */
+  public void testReadWrite() throws Exception {
+    List<String> names = new ArrayList<String>(Arrays.asList(CLASSES));
+    names.add("weka.core.DoesNotExist");
+    ClassDiscoveryIndex index = ClassDiscoveryIndex.create(names, getClass()
+      .getClassLoader());
+    assertNull(index.getClassInfo("weka.core.DoesNotExist"));
+    index.addSource(new File("dummy.jar"));
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    index.write(out);
+
+    ClassDiscoveryIndex read = ClassDiscoveryIndex.read(
+      new ByteArrayInputStream(out.toByteArray()), false);
+    assertEquals(index.getNumClasses(), read.getNumClasses());
+    assertEquals(index.getClassInfos().keySet(), read.getClassInfos()
+      .keySet());
+    for (String name : index.getClassInfos().keySet()) {
+      assertEquals(index.getClassInfo(name).toString(), read.getClassInfo(name)
+        .toString());
+    }
+    assertEquals(names.size(), read.getClassnames().size());
+    assertTrue(read.getClassnames().contains("weka.core.DoesNotExist"));
+
+    ClassDiscoveryIndex header = ClassDiscoveryIndex.read(
+      new ByteArrayInputStream(out.toByteArray()), true);
+    assertEquals(index.getNumClasses(), header.getNumClasses());
+    assertEquals(0, header.getClassInfos().size());
+  }
+
+  /**
+   * Tests that the index of a class directory is only used while it is
+   * up-to-date.
+   *
+   * @throws Exception if an error occurs
+   */
+  public void testDirectoryIndex() throws Exception {
+    File dir = File.createTempFile("classdiscovery", "");
+    dir.delete();
+    try {
+      List<String> names = new ArrayList<String>();
+      names.add("weka.classifiers.trees.J48");
+      names.add("weka.classifiers.bayes.NaiveBayes");
+      for (String name : names) {
+        copyClassFile(name, dir);
+      }
+
+      ClassDiscoveryIndex index = ClassDiscoveryIndex.indexDirectory(dir,
+        getClass().getClassLoader());
+      assertEquals(2, index.getNumClasses());
+      assertTrue(new File(dir, ClassDiscoveryIndex.INDEX_FILE).exists());
+
+      long newest = new File(dir, "weka/classifiers/trees/J48.class")
+        .lastModified();
+      ClassDiscoveryIndex.Stamp stamp = namesStamp(names);
+      ClassDiscoveryIndex read = ClassDiscoveryIndex.readFromDirectory(dir, 2,
+        newest, stamp);
+      assertNotNull(read);
+      assertEquals(index.getClassInfos().keySet(), read.getClassInfos()
+        .keySet());
+
+      // different number of classes or newer classes
+      assertNull(ClassDiscoveryIndex.readFromDirectory(dir, 3, newest, stamp));
+      assertNull(ClassDiscoveryIndex.readFromDirectory(dir, 2, new File(dir,
+        ClassDiscoveryIndex.INDEX_FILE).lastModified() + 1000, stamp));
+
+      // same number of classes, but a different class
+      assertNull(ClassDiscoveryIndex.readFromDirectory(dir, 2, newest,
+        namesStamp(Arrays.asList("weka.classifiers.trees.J48",
+          "weka.classifiers.rules.ZeroR"))));
+
+      // class cache picks up the index
+      ClassCache cache = new ClassCache();
+      cache.initFromDir(dir);
+      assertNotNull(cache.getTypeInfo("weka.classifiers.trees.J48"));
+    } finally {
+      delete(dir);
+    }
+  }
+
+  /**
+   * Tests that the index stored in a jar is only used if the jar contains the
+   * classes the index was generated from.
+   *
+   * @throws Exception if an error occurs
+   */
+  public void testJarIndex() throws Exception {
+    File dir = File.createTempFile("classdiscovery", "");
+    dir.delete();
+    try {
+      List<String> names = new ArrayList<String>();
+      names.add("weka.classifiers.trees.J48");
+      names.add("weka.classifiers.bayes.NaiveBayes");
+      for (String name : names) {
+        copyClassFile(name, dir);
+      }
+      ClassDiscoveryIndex.indexDirectory(dir, getClass().getClassLoader());
+
+      File jar = new File(dir, "classes.jar");
+      writeJar(jar, dir, names);
+      ClassCache cache = new ClassCache();
+      cache.initFromJar(jar);
+      assertNotNull(cache.getTypeInfo("weka.classifiers.trees.J48"));
+
+      // same number of classes, but a different class
+      copyClassFile("weka.classifiers.rules.ZeroR", dir);
+      names.set(1, "weka.classifiers.rules.ZeroR");
+      writeJar(jar, dir, names);
+      cache = new ClassCache();
+      cache.initFromJar(jar);
+      assertNull(cache.getTypeInfo("weka.classifiers.trees.J48"));
+    } finally {
+      delete(dir);
+    }
+  }
+
+  /**
+   * Tests that a package index covering a jar with a space in its name is
+   * recognized as up-to-date.
+   *
+   * @throws Exception if an error occurs
+   */
+  public void testPackageSourceWithSpace() throws Exception {
+    File dir = File.createTempFile("classdiscovery", "");
+    dir.delete();
+    try {
+      dir.mkdirs();
+      File jar = new File(dir, "my library.jar");
+      writeJar(jar, dir, new ArrayList<String>());
+      ClassDiscoveryIndex index = createIndex();
+      index.addSource(jar);
+      index.write(new File(dir, ClassDiscoveryIndex.PACKAGE_INDEX_FILE));
+
+      ClassDiscoveryIndex read = ClassDiscoveryIndex.readFromPackage(dir, null,
+        false);
+      assertNotNull(read);
+      assertEquals(index.getClassInfos().keySet(), read.getClassInfos()
+        .keySet());
+    } finally {
+      delete(dir);
+    }
+  }
+
+  /**
+   * Tests that ClassDiscovery returns the same classes with and without
+   * indexed type information.
+   *
+   * @throws Exception if an error occurs
+   */
+  public void testFindWithIndex() throws Exception {
+    String pkg = "weka.classifiers.trees";
+    try {
+      ClassDiscovery.clearClassCache();
+      Vector<String> expected = ClassDiscovery.find(Classifier.class, pkg);
+      Vector<String> expectedFilters = ClassDiscovery.find(Filter.class,
+        "weka.filters.unsupervised.attribute");
+
+      ClassDiscovery.clearClassCache();
+      List<String> names = new ArrayList<String>(
+        ClassDiscovery.m_ClassCache.getClassnames(pkg));
+      names.addAll(ClassDiscovery.m_ClassCache
+        .getClassnames("weka.filters.unsupervised.attribute"));
+      ClassDiscovery.m_ClassCache.addIndex(ClassDiscoveryIndex.create(names,
+        getClass().getClassLoader()));
+      assertNotNull(ClassDiscovery.m_ClassCache
+        .getTypeInfo("weka.classifiers.trees.J48"));
+
+      assertEquals(expected, ClassDiscovery.find(Classifier.class, pkg));
+      assertEquals(expectedFilters, ClassDiscovery.find(Filter.class,
+        "weka.filters.unsupervised.attribute"));
+    } finally {
+      ClassDiscovery.clearClassCache();
+    }
+  }
+
+  /**
+   * Copies the class file of the given class into the directory structure
+   * below the given directory.
+   *
+   * @param classname the class to copy
+   * @param dir the root directory
+   * @throws Exception if copying fails
+   */
+  protected void copyClassFile(String classname, File dir) throws Exception {
+    String resource = classname.replace('.', '/') + ".class";
+    File file = new File(dir, resource);
+    file.getParentFile().mkdirs();
+    InputStream in = getClass().getClassLoader().getResourceAsStream(resource);
+    OutputStream out = new FileOutputStream(file);
+    byte[] buffer = new byte[8192];
+    int read;
+    while ((read = in.read(buffer)) > 0) {
+      out.write(buffer, 0, read);
+    }
+    out.close();
+    in.close();
+  }
+
+  /**
+   * Returns the stamp of the given class names, as computed by ClassCache for
+   * a directory.
+   *
+   * @param names the class names
+   * @return the stamp
+   */
+  protected ClassDiscoveryIndex.Stamp namesStamp(List<String> names) {
+    ClassDiscoveryIndex.Stamp result = new ClassDiscoveryIndex.Stamp();
+    for (String name : names) {
+      result.add(name, 0);
+    }
+    return result;
+  }
+
+  /**
+   * Writes a jar with the given classes and the index found below the given
+   * directory.
+   *
+   * @param jar the jar to write
+   * @param dir the root directory of the class files
+   * @param classnames the classes to include
+   * @throws Exception if writing fails
+   */
+  protected void writeJar(File jar, File dir, List<String> classnames)
+    throws Exception {
+    List<String> resources = new ArrayList<String>();
+    for (String classname : classnames) {
+      resources.add(classname.replace('.', '/') + ".class");
+    }
+    if (new File(dir, ClassDiscoveryIndex.INDEX_FILE).exists()) {
+      resources.add(ClassDiscoveryIndex.INDEX_FILE);
+    }
+
+    JarOutputStream out = new JarOutputStream(new FileOutputStream(jar));
+    byte[] buffer = new byte[8192];
+    int read;
+    for (String resource : resources) {
+      out.putNextEntry(new JarEntry(resource));
+      InputStream in = new FileInputStream(new File(dir, resource));
+      while ((read = in.read(buffer)) > 0) {
+        out.write(buffer, 0, read);
+      }
+      in.close();
+      out.closeEntry();
+    }
+    out.close();
+  }
+
+  /**
+   * Deletes the file or directory (recursively).
+   *
+   * @param file the file or directory to delete
+   */
+  protected void delete(File file) {
+    File[] files = file.listFiles();
+    if (files != null) {
+      for (File f : files) {
+        delete(f);
+      }
+    }
+    file.delete();
+  }
+
+  public static Test suite() {
+    return new TestSuite(ClassDiscoveryIndexTest.class);
+  }
+
+  public static void main(String[] args) {
+    junit.textui.TestRunner.run(suite());
+  }
+}
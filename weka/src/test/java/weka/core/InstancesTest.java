@@ -279,6 +279,64 @@ public class InstancesTest
     assertEquals("# of instances differ", 10, data.numInstances());
   }
 
+  /**
+   * Tests whether modifications of the data are counted.
+   *
+   * @see Instances#getModificationCount()
+   */
+  public void testModificationCount() {
+    int		count;
+
+    count = m_Instances.getModificationCount();
+    m_Instances.instance(0).value(2);
+    m_Instances.attributeStats(2);
+    assertEquals("read access counted", count, m_Instances.getModificationCount());
+
+    m_Instances.instance(0).setValue(2, 1.0);
+    assertTrue("setValue not counted", m_Instances.getModificationCount() > count);
+    count = m_Instances.getModificationCount();
+    m_Instances.instance(0).setWeight(2.0);
+    assertTrue("setWeight not counted", m_Instances.getModificationCount() > count);
+    count = m_Instances.getModificationCount();
+    m_Instances.add(m_Instances.instance(0));
+    assertTrue("add not counted", m_Instances.getModificationCount() > count);
+    count = m_Instances.getModificationCount();
+    m_Instances.swap(0, 1);
+    assertTrue("swap not counted", m_Instances.getModificationCount() > count);
+    count = m_Instances.getModificationCount();
+    m_Instances.deleteAttributeAt(0);
+    assertTrue("deleteAttributeAt not counted", m_Instances.getModificationCount() > count);
+  }
+
+  /**
+   * Tests whether the statistics cached by Capabilities.test(Instances) are
+   * invalidated when the data is modified.
+   */
+  public void testCachedCapabilitiesStatistics() {
+    Instances		data;
+    Capabilities	cap;
+
+    data = new Instances(m_Instances);
+    data.deleteStringAttributes();
+    for (int i = 0; i < data.numAttributes(); i++)
+      data.deleteWithMissing(i);
+    data.setClassIndex(data.numAttributes() - 1);
+
+    cap = new Capabilities(null);
+    cap.enable(Capabilities.Capability.NOMINAL_ATTRIBUTES);
+    cap.enable(Capabilities.Capability.NUMERIC_ATTRIBUTES);
+    cap.enable(Capabilities.Capability.NUMERIC_CLASS);
+    assertTrue("data without missing values rejected", cap.test(data));
+    assertTrue("data without missing values rejected", cap.test(data));
+
+    data.instance(data.numInstances() - 1).setMissing(0);
+    assertFalse("missing value not detected", cap.test(data));
+    data.instance(data.numInstances() - 1).setValue(0, 0);
+    assertTrue("replaced missing value not detected", cap.test(data));
+    data.instance(0).setClassMissing();
+    assertFalse("missing class value not detected", cap.test(data));
+  }
+
   /**
    * Executes the test from command-line.
    * 
@@ -47,6 +47,8 @@ public class AllTests extends WekaTestSuite {
     Vector<String> packages = new Vector<String>();
     packages.add("weka.core.converters");
     suite.addTest(suite(AbstractConverterTest.class.getName(), packages));
+    suite.addTest(DatabaseSaverTest.suite());
+    suite.addTest(DatabaseLoaderTest.suite());
 
     return suite;
   }
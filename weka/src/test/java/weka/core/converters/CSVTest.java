@@ -19,6 +19,10 @@
 
 package weka.core.converters;
 
+import java.io.File;
+
+import weka.core.Instances;
+
 import junit.framework.Test;
 import junit.framework.TestSuite;
 
@@ -72,6 +76,39 @@ public class CSVTest
     m_CompareValuesAsString = true;
   }
 
+  /**
+   * tests whether the chunked parser (with several threads and small chunks)
+   * produces the same data as the default tokenizer.
+   */
+  public void testFastParser() {
+    Instances data;
+    Instances fast;
+    CSVLoader loader;
+
+    try {
+      m_Saver.setInstances(m_Instances);
+      m_Saver.setFile(new File(m_ExportFilename));
+      m_Saver.writeBatch();
+
+      loader = new CSVLoader();
+      loader.setFile(new File(m_ExportFilename));
+      data = loader.getDataSet();
+
+      loader = new CSVLoader();
+      loader.setUseFastParser(true);
+      loader.setNumExecutionSlots(2);
+      loader.setChunkSize(256);
+      loader.setFile(new File(m_ExportFilename));
+      fast = loader.getDataSet();
+
+      assertTrue(data.equalHeadersMsg(fast), data.equalHeaders(fast));
+      compareDatasets(data, fast);
+    } catch (Exception e) {
+      e.printStackTrace();
+      fail("Loading with the fast parser failed: " + e.toString());
+    }
+  }
+
   /**
    * returns a test suite.
    * 
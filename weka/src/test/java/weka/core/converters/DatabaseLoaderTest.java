@@ -0,0 +1,302 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ * DatabaseLoaderTest.java
+ * Copyright (C) 2026 University of Waikato, Hamilton, New Zealand
+ */
+
+package weka.core.converters;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+import weka.core.Instance;
+import weka.core.Instances;
+
+/**
+ * Tests the streaming, fetch size and partitioned retrieval of DatabaseLoader
+ * against an in-memory stub JDBC driver, by comparing the results with the
+ * plain batch retrieval. Run from the command line with:
+ * <p/>
+ * java weka.core.converters.DatabaseLoaderTest
+ *
+ * @author The WEKA Team (wekalist@list.waikato.ac.nz)
+ * @version $Revision$
+ * @see StubJDBCDriver
+ */
+public class DatabaseLoaderTest extends TestCase {
+
+  /** the name of the stub database. */
+  protected final static String DATABASE = "DatabaseLoaderTest";
+
+  /** the name of the table to read. */
+  protected final static String TABLE = "data";
+
+  /** the name of the partition column. */
+  protected final static String KEY = "part_key";
+
+  /** the props file pointing to the stub driver. */
+  protected File m_PropsFile;
+
+  /**
+   * Constructs the <code>DatabaseLoaderTest</code>.
+   *
+   * @param name the name of the test class
+   */
+  public DatabaseLoaderTest(String name) {
+    super(name);
+  }
+
+  /**
+   * Writes the props file and the table to read.
+   *
+   * @throws Exception if an error occurs
+   */
+  @Override
+  protected void setUp() throws Exception {
+    super.setUp();
+
+    Properties props = new Properties();
+    props.setProperty("jdbcDriver", StubJDBCDriver.class.getName());
+    props.setProperty("jdbcURL", StubJDBCDriver.PREFIX + DATABASE);
+    m_PropsFile = File.createTempFile("DatabaseLoaderTest", ".props");
+    FileOutputStream out = new FileOutputStream(m_PropsFile);
+    props.store(out, null);
+    out.close();
+
+    StubJDBCDriver.dropDatabase(DATABASE);
+    // the rows are ordered by key range (for three partitions), so that a
+    // partitioned load yields the same order as a single query: the labels
+    // appear in a different order in each range and rows without a key
+    // belong to the first range
+    createTable(TABLE, new String[] { "1, 0.5, 'a'", "NULL, 1.5, 'b'",
+      "2, NULL, 'a'", "3, 2.5, NULL", "NULL, 6.5, 'a'", "4, 3.0, 'c'",
+      "5, 3.5, 'b'", "6, -1.0, 'a'", "7, 4.5, 'c'", "8, 5.0, 'd'",
+      "9, 5.5, 'c'", "10, 6.0, 'd'", "11, 7.0, 'a'", "12, 7.5, 'b'" });
+  }
+
+  /**
+   * Removes the props file and the stub database.
+   *
+   * @throws Exception if an error occurs
+   */
+  @Override
+  protected void tearDown() throws Exception {
+    m_PropsFile.delete();
+    StubJDBCDriver.dropDatabase(DATABASE);
+
+    super.tearDown();
+  }
+
+  /**
+   * Creates a table with a key, a numeric and a string column in the stub
+   * database.
+   *
+   * @param name the name of the table
+   * @param rows the values of the rows, as listed in an INSERT statement
+   * @throws Exception if creating the table fails
+   */
+  protected void createTable(String name, String[] rows) throws Exception {
+    Connection conn =
+      DriverManager.getConnection(StubJDBCDriver.PREFIX + DATABASE);
+    Statement statement = conn.createStatement();
+    statement.executeUpdate("CREATE TABLE " + name + " ( " + KEY
+      + " INTEGER, x DOUBLE, label VARCHAR )");
+    for (String row : rows) {
+      statement.executeUpdate("INSERT INTO " + name + " VALUES ( " + row
+        + " )");
+    }
+    statement.close();
+    conn.close();
+  }
+
+  /**
+   * Returns a loader reading from the stub database.
+   *
+   * @param table the table to read
+   * @return the loader
+   * @throws Exception if setting up fails
+   */
+  protected DatabaseLoader getLoader(String table) throws Exception {
+    DatabaseLoader result = new DatabaseLoader();
+    result.setCustomPropsFile(m_PropsFile);
+    result.setSource(StubJDBCDriver.PREFIX + DATABASE, "", "");
+    result.setQuery("SELECT * FROM " + table);
+    return result;
+  }
+
+  /**
+   * Returns the data loaded in batch mode with a single query.
+   *
+   * @param table the table to read
+   * @return the data
+   * @throws Exception if loading fails
+   */
+  protected Instances getPlainDataSet(String table) throws Exception {
+    Instances result = getLoader(table).getDataSet();
+    assertNotNull("plain batch load", result);
+    return result;
+  }
+
+  /**
+   * Loads the data with several partitions and compares it with the plain
+   * batch load.
+   *
+   * @param table the table to read
+   * @param fetchSize the fetch size
+   * @throws Exception if loading fails
+   */
+  protected void checkPartitioned(String table, int fetchSize)
+    throws Exception {
+    Instances expected = getPlainDataSet(table);
+    DatabaseLoader loader = getLoader(table);
+    loader.setPartitionColumn(KEY);
+    loader.setNumPartitions(3);
+    loader.setFetchSize(fetchSize);
+    Instances actual = loader.getDataSet();
+
+    assertNotNull("partitioned load", actual);
+    assertNull(expected.equalHeadersMsg(actual));
+    assertEquals(expected.toString(), actual.toString());
+  }
+
+  /**
+   * Tests that a partitioned load yields the same data as a single query,
+   * including rows without a key and the order of the labels.
+   *
+   * @throws Exception if an error occurs
+   */
+  public void testPartitioned() throws Exception {
+    Instances data = getPlainDataSet(TABLE);
+    assertEquals(14, data.numInstances());
+    assertEquals("a", data.attribute("label").value(0));
+    assertEquals("d", data.attribute("label").value(3));
+
+    StubJDBCDriver.Database database = StubJDBCDriver.getDatabase(DATABASE);
+    int numQueries = database.getNumQueries();
+    checkPartitioned(TABLE, 0);
+    assertEquals("queries: plain load, key range and partitions", 1 + 1 + 3,
+      database.getNumQueries() - numQueries);
+  }
+
+  /**
+   * Tests a partitioned load with a fetch size.
+   *
+   * @throws Exception if an error occurs
+   */
+  public void testPartitionedFetchSize() throws Exception {
+    checkPartitioned(TABLE, 4);
+
+    StubJDBCDriver.Database database = StubJDBCDriver.getDatabase(DATABASE);
+    assertTrue("queries with fetch size", database.getNumFetches() >= 3);
+    assertEquals("queries with fetch size in auto-commit mode", 0,
+      database.getNumAutoCommitFetches());
+  }
+
+  /**
+   * Tests partitioned loads of a table whose keys have a single value and of
+   * an empty table.
+   *
+   * @throws Exception if an error occurs
+   */
+  public void testPartitionedDegenerateRange() throws Exception {
+    createTable("single", new String[] { "NULL, 1.0, 'a'", "5, 2.0, 'b'",
+      "5, 3.0, 'a'", "5, NULL, 'c'" });
+    checkPartitioned("single", 0);
+
+    createTable("empty", new String[0]);
+    checkPartitioned("empty", 0);
+    assertEquals(0, getPlainDataSet("empty").numInstances());
+  }
+
+  /**
+   * Tests a batch load with a fetch size, which turns off auto-commit.
+   *
+   * @throws Exception if an error occurs
+   */
+  public void testFetchSize() throws Exception {
+    Instances expected = getPlainDataSet(TABLE);
+    DatabaseLoader loader = getLoader(TABLE);
+    loader.setFetchSize(5);
+    Instances actual = loader.getDataSet();
+
+    assertEquals(expected.toString(), actual.toString());
+    StubJDBCDriver.Database database = StubJDBCDriver.getDatabase(DATABASE);
+    assertEquals("queries with fetch size", 1, database.getNumFetches());
+    assertEquals("queries with fetch size in auto-commit mode", 0,
+      database.getNumAutoCommitFetches());
+  }
+
+  /**
+   * Tests that streaming yields the same rows as the plain batch load.
+   *
+   * @throws Exception if an error occurs
+   */
+  public void testStreaming() throws Exception {
+    Instances expected = getPlainDataSet(TABLE);
+    for (int fetchSize : new int[] { 0, 5 }) {
+      DatabaseLoader loader = getLoader(TABLE);
+      loader.setStreaming(true);
+      loader.setFetchSize(fetchSize);
+      Instances structure = loader.getStructure();
+      assertEquals(expected.numAttributes(), structure.numAttributes());
+
+      List<String> rows = new ArrayList<String>();
+      Instance inst;
+      while ((inst = loader.getNextInstance(structure)) != null) {
+        rows.add(inst.toString());
+      }
+      assertEquals("fetch size " + fetchSize, expected.numInstances(),
+        rows.size());
+      for (int i = 0; i < rows.size(); i++) {
+        assertEquals("fetch size " + fetchSize + ", row " + i, expected
+          .instance(i).toString(), rows.get(i));
+      }
+    }
+
+    StubJDBCDriver.Database database = StubJDBCDriver.getDatabase(DATABASE);
+    assertTrue("queries with fetch size", database.getNumFetches() > 0);
+    assertEquals("queries with fetch size in auto-commit mode", 0,
+      database.getNumAutoCommitFetches());
+  }
+
+  /**
+   * Returns a test suite.
+   *
+   * @return test suite
+   */
+  public static Test suite() {
+    return new TestSuite(DatabaseLoaderTest.class);
+  }
+
+  /**
+   * Runs the test from command-line.
+   *
+   * @param args ignored
+   */
+  public static void main(String[] args) {
+    junit.textui.TestRunner.run(suite());
+  }
+}
@@ -0,0 +1,285 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ * DatabaseSaverTest.java
+ * Copyright (C) 2026 University of Waikato, Hamilton, New Zealand
+ */
+
+package weka.core.converters;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Properties;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+import weka.core.Attribute;
+import weka.core.Instances;
+import weka.core.TestInstances;
+
+/**
+ * Tests DatabaseSaver against an in-memory stub JDBC driver. Run from the
+ * command line with:
+ * <p/>
+ * java weka.core.converters.DatabaseSaverTest
+ *
+ * @author The WEKA Team (wekalist@list.waikato.ac.nz)
+ * @version $Revision$
+ * @see StubJDBCDriver
+ */
+public class DatabaseSaverTest extends TestCase {
+
+  /** the name of the stub database. */
+  protected final static String DATABASE = "DatabaseSaverTest";
+
+  /** the name of the table to write. */
+  protected final static String TABLE = "data";
+
+  /** the props file pointing to the stub driver. */
+  protected File m_PropsFile;
+
+  /** the data to write. */
+  protected Instances m_Instances;
+
+  /**
+   * Constructs the <code>DatabaseSaverTest</code>.
+   *
+   * @param name the name of the test class
+   */
+  public DatabaseSaverTest(String name) {
+    super(name);
+  }
+
+  /**
+   * Writes the props file and generates the data.
+   *
+   * @throws Exception if an error occurs
+   */
+  @Override
+  protected void setUp() throws Exception {
+    super.setUp();
+
+    Properties props = new Properties();
+    props.setProperty("jdbcDriver", StubJDBCDriver.class.getName());
+    props.setProperty("jdbcURL", StubJDBCDriver.PREFIX + DATABASE);
+    props.setProperty("CREATE_STRING", "TEXT");
+    props.setProperty("CREATE_INT", "INT");
+    props.setProperty("CREATE_DOUBLE", "DOUBLE");
+    props.setProperty("idColumn", "auto_generated_id");
+    m_PropsFile = File.createTempFile("DatabaseSaverTest", ".props");
+    FileOutputStream out = new FileOutputStream(m_PropsFile);
+    props.store(out, null);
+    out.close();
+
+    TestInstances gen = new TestInstances();
+    gen.setSeed(42);
+    gen.setNumInstances(100);
+    gen.setNumNominal(2);
+    gen.setNumNumeric(2);
+    gen.setClassType(Attribute.NOMINAL);
+    m_Instances = gen.generate();
+    m_Instances.instance(3).setMissing(0);
+    m_Instances.instance(7).setMissing(2);
+
+    StubJDBCDriver.dropDatabase(DATABASE);
+  }
+
+  /**
+   * Removes the props file and the stub database.
+   *
+   * @throws Exception if an error occurs
+   */
+  @Override
+  protected void tearDown() throws Exception {
+    m_PropsFile.delete();
+    StubJDBCDriver.dropDatabase(DATABASE);
+
+    super.tearDown();
+  }
+
+  /**
+   * Returns a saver writing to the stub database, with primary keys.
+   *
+   * @param batchSize the batch size
+   * @param commitInterval the commit interval
+   * @param numSlots the number of execution slots
+   * @return the saver
+   * @throws Exception if setting up fails
+   */
+  protected DatabaseSaver getSaver(int batchSize, int commitInterval,
+    int numSlots) throws Exception {
+    DatabaseSaver result = new DatabaseSaver();
+    result.setCustomPropsFile(m_PropsFile);
+    result.setDestination(StubJDBCDriver.PREFIX + DATABASE, "", "");
+    result.setRelationForTableName(false);
+    result.setTableName(TABLE);
+    result.setAutoKeyGeneration(true);
+    result.setBatchSize(batchSize);
+    result.setCommitInterval(commitInterval);
+    result.setNumExecutionSlots(numSlots);
+    result.setInstances(m_Instances);
+    return result;
+  }
+
+  /**
+   * Returns the rows written to the stub database, ordered by key.
+   *
+   * @return the rows
+   */
+  protected List<Object[]> getRows() {
+    List<Object[]> result =
+      StubJDBCDriver.getDatabase(DATABASE).getRows();
+    Collections.sort(result, new Comparator<Object[]>() {
+      @Override
+      public int compare(Object[] o1, Object[] o2) {
+        return ((Integer) o1[0]).compareTo((Integer) o2[0]);
+      }
+    });
+    return result;
+  }
+
+  /**
+   * Checks that the given rows hold the first instances of the data, with
+   * consecutive keys starting at 1.
+   *
+   * @param rows the rows ordered by key
+   * @param numRows the expected number of rows
+   */
+  protected void checkRows(List<Object[]> rows, int numRows) {
+    assertEquals("number of rows", numRows, rows.size());
+    for (int i = 0; i < numRows; i++) {
+      Object[] row = rows.get(i);
+      assertEquals("key", i + 1, row[0]);
+      for (int j = 0; j < m_Instances.numAttributes(); j++) {
+        Object expected = null;
+        if (!m_Instances.instance(i).isMissing(j)) {
+          if (m_Instances.attribute(j).isNumeric()) {
+            expected = m_Instances.instance(i).value(j);
+          } else {
+            expected = m_Instances.instance(i).stringValue(j);
+          }
+        }
+        assertEquals("row " + (i + 1) + ", attribute " + (j + 1), expected,
+          row[j + 1]);
+      }
+    }
+  }
+
+  /**
+   * Tests writing one INSERT statement per row.
+   *
+   * @throws Exception if an error occurs
+   */
+  public void testLiteralInserts() throws Exception {
+    getSaver(1, 0, 1).writeBatch();
+
+    assertTrue(StubJDBCDriver.getDatabase(DATABASE).hasTable(TABLE));
+    assertEquals(m_Instances.numInstances(),
+      StubJDBCDriver.getDatabase(DATABASE).getRows().size());
+  }
+
+  /**
+   * Tests writing with a prepared statement in batches.
+   *
+   * @throws Exception if an error occurs
+   */
+  public void testBatchInserts() throws Exception {
+    getSaver(16, 0, 1).writeBatch();
+    checkRows(getRows(), m_Instances.numInstances());
+  }
+
+  /**
+   * Tests writing without batch updates, but with a commit interval.
+   *
+   * @throws Exception if an error occurs
+   */
+  public void testCommitInterval() throws Exception {
+    StubJDBCDriver.getDatabase(DATABASE).setSupportsBatch(false);
+    getSaver(16, 10, 1).writeBatch();
+    checkRows(getRows(), m_Instances.numInstances());
+  }
+
+  /**
+   * Tests that writing with several connections gives the same rows and keys
+   * as writing with one.
+   *
+   * @throws Exception if an error occurs
+   */
+  public void testParallelInserts() throws Exception {
+    getSaver(16, 0, 1).writeBatch();
+    List<Object[]> sequential = getRows();
+
+    StubJDBCDriver.dropDatabase(DATABASE);
+    getSaver(16, 0, 4).writeBatch();
+    List<Object[]> parallel = getRows();
+
+    checkRows(parallel, m_Instances.numInstances());
+    for (int i = 0; i < sequential.size(); i++) {
+      assertTrue("row " + (i + 1),
+        Arrays.equals(sequential.get(i), parallel.get(i)));
+    }
+  }
+
+  /**
+   * Tests that the rows committed before a failure are kept when writing
+   * sequentially with a commit interval.
+   *
+   * @throws Exception if an error occurs
+   */
+  public void testFailureWithCommitInterval() throws Exception {
+    StubJDBCDriver.getDatabase(DATABASE).setFailOn(45);
+    getSaver(10, 20, 1).writeBatch();
+    checkRows(getRows(), 40);
+  }
+
+  /**
+   * Tests that no rows are left behind if one of several connections fails,
+   * even with a commit interval.
+   *
+   * @throws Exception if an error occurs
+   */
+  public void testParallelFailureRollsBack() throws Exception {
+    StubJDBCDriver.Database database = StubJDBCDriver.getDatabase(DATABASE);
+    database.setFailOn(90);
+    getSaver(10, 5, 4).writeBatch();
+
+    assertEquals("committed rows", 0, getRows().size());
+    assertTrue("rolled back connections", database.getRollbacks() > 0);
+  }
+
+  /**
+   * Returns a test suite.
+   *
+   * @return test suite
+   */
+  public static Test suite() {
+    return new TestSuite(DatabaseSaverTest.class);
+  }
+
+  /**
+   * Runs the test from command-line.
+   *
+   * @param args ignored
+   */
+  public static void main(String[] args) {
+    junit.textui.TestRunner.run(suite());
+  }
+}
@@ -0,0 +1,1306 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ * StubJDBCDriver.java
+ * Copyright (C) 2026 University of Waikato, Hamilton, New Zealand
+ */
+
+package weka.core.converters;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.Driver;
+import java.sql.DriverManager;
+import java.sql.DriverPropertyInfo;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.sql.Statement;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.logging.Logger;
+
+/**
+ * A minimal in-memory JDBC driver for testing the database converters and the
+ * experiment database classes without a database server. URLs have the form
+ * <code>jdbc:stub:&lt;name&gt;</code> and all connections with the same name
+ * share one database. The following statements are understood:
+ * <ul>
+ * <li>CREATE TABLE and DROP TABLE</li>
+ * <li>INSERT INTO, either literal or as prepared statement</li>
+ * <li>SELECT of all columns (*), of a list of columns or of COUNT(*), MIN and
+ * MAX, from a table or a subquery, with an optional WHERE clause made up of
+ * comparisons with literals, IS [NOT] NULL, AND, OR and parentheses</li>
+ * </ul>
+ * Inserted rows are kept per connection until they get committed (right away
+ * in auto-commit mode), and inserts can be made to fail for testing the error
+ * handling. Queries only see committed rows.
+ *
+ * @author The WEKA Team (wekalist@list.waikato.ac.nz)
+ * @version $Revision$
+ */
+public class StubJDBCDriver implements Driver {
+
+  /** the prefix of the URLs accepted by the driver. */
+  public final static String PREFIX = "jdbc:stub:";
+
+  /** the databases, indexed by name. */
+  protected final static Map<String, Database> DATABASES =
+    new HashMap<String, Database>();
+
+  static {
+    try {
+      DriverManager.registerDriver(new StubJDBCDriver());
+    } catch (SQLException e) {
+      throw new ExceptionInInitializerError(e);
+    }
+  }
+
+  /**
+   * The columns and rows of a table or of the result of a query.
+   */
+  protected static class Table {
+
+    /** the names of the columns. */
+    protected List<String> m_Names = new ArrayList<String>();
+
+    /** the type names of the columns. */
+    protected List<String> m_Types = new ArrayList<String>();
+
+    /** the rows. */
+    protected List<Object[]> m_Rows = new ArrayList<Object[]>();
+
+    /**
+     * Adds a column.
+     *
+     * @param name the name of the column
+     * @param type the type name of the column
+     */
+    public void addColumn(String name, String type) {
+      m_Names.add(name);
+      m_Types.add(type);
+    }
+
+    /**
+     * Returns the index of the column, ignoring the case.
+     *
+     * @param name the name of the column
+     * @return the index
+     * @throws SQLException if there is no such column
+     */
+    public int indexOf(String name) throws SQLException {
+      for (int i = 0; i < m_Names.size(); i++) {
+        if (m_Names.get(i).equalsIgnoreCase(name)) {
+          return i;
+        }
+      }
+      throw new SQLException("Unknown column: " + name);
+    }
+  }
+
+  /**
+   * An insert that hasn't been committed yet.
+   */
+  protected static class Insert {
+
+    /** the name of the table, null if unknown. */
+    protected String m_Table;
+
+    /** the row as recorded for getRows(). */
+    protected Object[] m_Row;
+
+    /** the values of the columns of the table, null if not parsed. */
+    protected Object[] m_Values;
+
+    /**
+     * Initializes the insert.
+     *
+     * @param table the name of the table, null if unknown
+     * @param row the row as recorded for getRows()
+     * @param values the values of the columns, null if not parsed
+     */
+    public Insert(String table, Object[] row, Object[] values) {
+      m_Table = table;
+      m_Row = row;
+      m_Values = values;
+    }
+  }
+
+  /**
+   * The tables and committed rows of a database.
+   */
+  public static class Database {
+
+    /** the tables, indexed by name. */
+    protected Map<String, Table> m_Tables = new HashMap<String, Table>();
+
+    /** the committed rows, with the parameter values of the inserts. */
+    protected List<Object[]> m_Rows = new ArrayList<Object[]>();
+
+    /** the number of rollbacks with uncommitted rows. */
+    protected int m_Rollbacks;
+
+    /** whether batch updates are supported. */
+    protected boolean m_SupportsBatch = true;
+
+    /** inserts whose first value equals one of these fail. */
+    protected List<Object> m_FailOn = new ArrayList<Object>();
+
+    /** the number of SELECT statements executed. */
+    protected int m_NumQueries;
+
+    /** the number of batches executed. */
+    protected int m_NumBatches;
+
+    /** the number of SELECT statements executed with a fetch size. */
+    protected int m_NumFetches;
+
+    /** the number of those executed in auto-commit mode. */
+    protected int m_NumAutoCommitFetches;
+
+    /**
+     * Returns a copy of the committed rows.
+     *
+     * @return the rows
+     */
+    public synchronized List<Object[]> getRows() {
+      return new ArrayList<Object[]>(m_Rows);
+    }
+
+    /**
+     * Returns a copy of the committed rows of a table, with the values of the
+     * columns (only rows whose values could be determined).
+     *
+     * @param name the name of the table
+     * @return the rows, empty if there is no such table
+     */
+    public synchronized List<Object[]> getRows(String name) {
+      Table table = m_Tables.get(name);
+      return (table == null) ? new ArrayList<Object[]>()
+        : new ArrayList<Object[]>(table.m_Rows);
+    }
+
+    /**
+     * Returns whether the table exists.
+     *
+     * @param name the name of the table
+     * @return true if the table exists
+     */
+    public synchronized boolean hasTable(String name) {
+      return m_Tables.containsKey(name);
+    }
+
+    /**
+     * Returns the number of rollbacks that discarded uncommitted rows.
+     *
+     * @return the number of rollbacks
+     */
+    public synchronized int getRollbacks() {
+      return m_Rollbacks;
+    }
+
+    /**
+     * Sets whether batch updates are supported.
+     *
+     * @param value true if supported
+     */
+    public synchronized void setSupportsBatch(boolean value) {
+      m_SupportsBatch = value;
+    }
+
+    /**
+     * Makes the inserts fail whose first value equals the given one. For
+     * literal INSERT statements, the first value is the statement itself.
+     *
+     * @param value the value, null to let all inserts succeed
+     */
+    public synchronized void setFailOn(Object value) {
+      m_FailOn.clear();
+      addFailOn(value);
+    }
+
+    /**
+     * Makes the inserts fail whose first value equals the given one, in
+     * addition to the ones set up to fail already.
+     *
+     * @param value the value, null is ignored
+     */
+    public synchronized void addFailOn(Object value) {
+      if (value != null) {
+        m_FailOn.add(value);
+      }
+    }
+
+    /**
+     * Returns the number of SELECT statements executed so far.
+     *
+     * @return the number of queries
+     */
+    public synchronized int getNumQueries() {
+      return m_NumQueries;
+    }
+
+    /**
+     * Returns the number of batches executed so far.
+     *
+     * @return the number of batches
+     */
+    public synchronized int getNumBatches() {
+      return m_NumBatches;
+    }
+
+    /**
+     * Returns the number of SELECT statements executed with a fetch size.
+     *
+     * @return the number of queries
+     */
+    public synchronized int getNumFetches() {
+      return m_NumFetches;
+    }
+
+    /**
+     * Returns the number of SELECT statements executed with a fetch size in
+     * auto-commit mode.
+     *
+     * @return the number of queries
+     */
+    public synchronized int getNumAutoCommitFetches() {
+      return m_NumAutoCommitFetches;
+    }
+
+    /**
+     * Stores a committed insert.
+     *
+     * @param insert the insert
+     */
+    protected synchronized void add(Insert insert) {
+      m_Rows.add(insert.m_Row);
+      Table table = (insert.m_Table == null) ? null : m_Tables.get(insert.m_Table);
+      if ((table != null) && (insert.m_Values != null)
+        && (insert.m_Values.length == table.m_Names.size())) {
+        table.m_Rows.add(insert.m_Values);
+      }
+    }
+  }
+
+  /**
+   * Returns the database with the given name, creating it if necessary.
+   *
+   * @param name the name of the database
+   * @return the database
+   */
+  public static synchronized Database getDatabase(String name) {
+    Database result = DATABASES.get(name);
+    if (result == null) {
+      result = new Database();
+      DATABASES.put(name, result);
+    }
+    return result;
+  }
+
+  /**
+   * Removes the database with the given name.
+   *
+   * @param name the name of the database
+   */
+  public static synchronized void dropDatabase(String name) {
+    DATABASES.remove(name);
+  }
+
+  /**
+   * Returns the default value for a method's return type.
+   *
+   * @param type the return type
+   * @return the default value
+   */
+  protected static Object defaultValue(Class<?> type) {
+    if (type == Boolean.TYPE) {
+      return false;
+    } else if (type == Integer.TYPE) {
+      return 0;
+    } else if (type == Long.TYPE) {
+      return 0L;
+    } else if (type == Double.TYPE) {
+      return 0.0;
+    } else if (type == Float.TYPE) {
+      return 0.0f;
+    } else if (type == Short.TYPE) {
+      return (short) 0;
+    } else if (type == Byte.TYPE) {
+      return (byte) 0;
+    } else if (type == Character.TYPE) {
+      return (char) 0;
+    } else {
+      return null;
+    }
+  }
+
+  /**
+   * Creates a proxy for the given JDBC interface.
+   *
+   * @param intf the interface
+   * @param handler the handler for the method calls
+   * @return the proxy
+   */
+  protected static <T> T proxy(Class<T> intf, InvocationHandler handler) {
+    return intf.cast(Proxy.newProxyInstance(
+      StubJDBCDriver.class.getClassLoader(), new Class<?>[] { intf }, handler));
+  }
+
+  /**
+   * Splits SQL into tokens and parses the statements understood by the
+   * driver. Conditions are parsed anew for every row they are evaluated on.
+   */
+  protected static class Parser {
+
+    /** the tokens. */
+    protected List<String> m_Tokens = new ArrayList<String>();
+
+    /** the position of the next token. */
+    protected int m_Pos;
+
+    /**
+     * Splits the SQL into tokens. Quoted strings are kept as tokens including
+     * the quotes.
+     *
+     * @param sql the SQL
+     */
+    public Parser(String sql) {
+      int i = 0;
+      while (i < sql.length()) {
+        char c = sql.charAt(i);
+        int start = i;
+        if (Character.isWhitespace(c)) {
+          i++;
+          continue;
+        } else if (c == '\'') {
+          i++;
+          while (i < sql.length()) {
+            if (sql.charAt(i) == '\'') {
+              if ((i + 1 < sql.length()) && (sql.charAt(i + 1) == '\'')) {
+                i++;
+              } else {
+                break;
+              }
+            }
+            i++;
+          }
+          i = Math.min(i + 1, sql.length());
+        } else if (Character.isDigit(c) || (c == '.')
+          || ((c == '-') && isNumberStart(sql, i))) {
+          i++;
+          while ((i < sql.length())
+            && (Character.isDigit(sql.charAt(i)) || (sql.charAt(i) == '.')
+              || (Character.toUpperCase(sql.charAt(i)) == 'E') || (((sql
+              .charAt(i) == '-') || (sql.charAt(i) == '+')) && (Character
+              .toUpperCase(sql.charAt(i - 1)) == 'E')))) {
+            i++;
+          }
+        } else if (Character.isLetter(c) || (c == '_')) {
+          while ((i < sql.length())
+            && (Character.isLetterOrDigit(sql.charAt(i))
+              || (sql.charAt(i) == '_') || (sql.charAt(i) == '.'))) {
+            i++;
+          }
+        } else if (((c == '<') || (c == '>')) && (i + 1 < sql.length())
+          && ((sql.charAt(i + 1) == '=') || (sql.charAt(i + 1) == '>'))) {
+          i += 2;
+        } else {
+          i++;
+        }
+        m_Tokens.add(sql.substring(start, i));
+      }
+    }
+
+    /**
+     * Returns whether the minus sign at the given position starts a number,
+     * i.e., follows an operator, a comma or an opening parenthesis.
+     *
+     * @param sql the SQL
+     * @param pos the position of the minus sign
+     * @return true if a negative number starts
+     */
+    protected boolean isNumberStart(String sql, int pos) {
+      if ((pos + 1 >= sql.length()) || !Character.isDigit(sql.charAt(pos + 1))) {
+        return false;
+      }
+      if (m_Tokens.isEmpty()) {
+        return true;
+      }
+      String last = m_Tokens.get(m_Tokens.size() - 1);
+      return "(,=<>".indexOf(last.charAt(last.length() - 1)) > -1;
+    }
+
+    /**
+     * Returns the next token without consuming it.
+     *
+     * @return the token, null at the end
+     */
+    public String peek() {
+      return (m_Pos < m_Tokens.size()) ? m_Tokens.get(m_Pos) : null;
+    }
+
+    /**
+     * Returns whether the next token equals the given one (ignoring the case).
+     *
+     * @param token the expected token
+     * @return true if the next token matches
+     */
+    public boolean at(String token) {
+      return token.equalsIgnoreCase(peek());
+    }
+
+    /**
+     * Consumes the next token.
+     *
+     * @return the token
+     * @throws SQLException if there are no more tokens
+     */
+    public String next() throws SQLException {
+      if (m_Pos >= m_Tokens.size()) {
+        throw new SQLException("Unexpected end of statement");
+      }
+      return m_Tokens.get(m_Pos++);
+    }
+
+    /**
+     * Consumes the next token, which must equal the given one (ignoring the
+     * case).
+     *
+     * @param token the expected token
+     * @throws SQLException if the next token is a different one
+     */
+    public void expect(String token) throws SQLException {
+      String actual = next();
+      if (!token.equalsIgnoreCase(actual)) {
+        throw new SQLException("Expected " + token + " instead of " + actual);
+      }
+    }
+
+    /**
+     * Parses a literal value.
+     *
+     * @return the value: a String, an Integer, a Double or null
+     * @throws SQLException if there is no literal
+     */
+    public Object literal() throws SQLException {
+      String token = next();
+      if (token.startsWith("'")) {
+        return token.substring(1, Math.max(1, token.length() - 1)).replace(
+          "''", "'");
+      } else if (token.equalsIgnoreCase("NULL")) {
+        return null;
+      }
+      try {
+        if ((token.indexOf('.') == -1) && (token.toUpperCase().indexOf('E') == -1)) {
+          return Integer.valueOf(token);
+        }
+        return Double.valueOf(token);
+      } catch (NumberFormatException e) {
+        return token;
+      }
+    }
+
+    /**
+     * Parses the column definitions of a CREATE TABLE statement, the table
+     * name being the next token.
+     *
+     * @return the empty table
+     * @throws SQLException if parsing fails
+     */
+    public Table create() throws SQLException {
+      Table result = new Table();
+      next();
+      if (at("(")) {
+        next();
+        while (!at(")")) {
+          String name = next();
+          String type = at(",") || at(")") ? "" : next();
+          // skip sizes and constraints
+          int depth = 0;
+          while ((depth > 0) || !(at(",") || at(")"))) {
+            String token = next();
+            if (token.equals("(")) {
+              depth++;
+            } else if (token.equals(")")) {
+              depth--;
+            }
+          }
+          result.addColumn(name, type);
+          if (at(",")) {
+            next();
+          }
+        }
+      }
+      return result;
+    }
+
+    /**
+     * Parses the values of a literal INSERT statement, the table name being
+     * the next token.
+     *
+     * @return the values
+     * @throws SQLException if parsing fails
+     */
+    public Object[] values() throws SQLException {
+      next();
+      while (!at("VALUES")) {
+        next();
+      }
+      next();
+      expect("(");
+      List<Object> result = new ArrayList<Object>();
+      while (!at(")")) {
+        result.add(literal());
+        if (at(",")) {
+          next();
+        }
+      }
+      return result.toArray();
+    }
+
+    /**
+     * Parses and executes a SELECT statement, including a subquery.
+     *
+     * @param database the database to query
+     * @return the result
+     * @throws SQLException if parsing fails or the statement isn't supported
+     */
+    public Table select(Database database) throws SQLException {
+      expect("SELECT");
+      List<String[]> items = new ArrayList<String[]>();
+      while (!at("FROM")) {
+        String token = next();
+        if (at("(")) {
+          next();
+          String arg = next();
+          expect(")");
+          items.add(new String[] { token.toUpperCase(), arg });
+        } else {
+          items.add(new String[] { null, token });
+        }
+        if (at(",")) {
+          next();
+        }
+      }
+      next();
+
+      Table source;
+      if (at("(")) {
+        next();
+        source = select(database);
+        expect(")");
+        if ((peek() != null) && !at("WHERE") && !at(")")) {
+          // the alias of the subquery
+          next();
+        }
+      } else {
+        String name = next();
+        synchronized (database) {
+          Table table = database.m_Tables.get(name);
+          if (table == null) {
+            throw new SQLException("Unknown table: " + name);
+          }
+          source = new Table();
+          source.m_Names.addAll(table.m_Names);
+          source.m_Types.addAll(table.m_Types);
+          source.m_Rows.addAll(table.m_Rows);
+        }
+      }
+
+      List<Object[]> rows = new ArrayList<Object[]>();
+      if (at("WHERE")) {
+        next();
+        int start = m_Pos;
+        for (Object[] row : source.m_Rows) {
+          m_Pos = start;
+          if (or(source, row)) {
+            rows.add(row);
+          }
+        }
+        if (source.m_Rows.isEmpty()) {
+          or(source, new Object[source.m_Names.size()]);
+        }
+      } else {
+        rows.addAll(source.m_Rows);
+      }
+      if ((peek() != null) && !at(")")) {
+        throw new SQLException("Unsupported: " + peek());
+      }
+
+      Table result = new Table();
+      if ((items.size() == 1) && (items.get(0)[0] == null)
+        && items.get(0)[1].equals("*")) {
+        result.m_Names.addAll(source.m_Names);
+        result.m_Types.addAll(source.m_Types);
+        result.m_Rows.addAll(rows);
+      } else if (items.get(0)[0] == null) {
+        int[] indices = new int[items.size()];
+        for (int i = 0; i < indices.length; i++) {
+          indices[i] = source.indexOf(items.get(i)[1]);
+          result.addColumn(source.m_Names.get(indices[i]),
+            source.m_Types.get(indices[i]));
+        }
+        for (Object[] row : rows) {
+          Object[] values = new Object[indices.length];
+          for (int i = 0; i < indices.length; i++) {
+            values[i] = row[indices[i]];
+          }
+          result.m_Rows.add(values);
+        }
+      } else {
+        Object[] values = new Object[items.size()];
+        for (int i = 0; i < values.length; i++) {
+          String function = items.get(i)[0];
+          if (function.equals("COUNT")) {
+            result.addColumn(function, "INT");
+            values[i] = rows.size();
+            continue;
+          }
+          int index = source.indexOf(items.get(i)[1]);
+          result.addColumn(function, source.m_Types.get(index));
+          for (Object[] row : rows) {
+            if (row[index] == null) {
+              continue;
+            }
+            if ((values[i] == null)
+              || (function.equals("MIN") && (compare(row[index], values[i]) < 0))
+              || (function.equals("MAX") && (compare(row[index], values[i]) > 0))) {
+              values[i] = row[index];
+            }
+          }
+        }
+        result.m_Rows.add(values);
+      }
+      return result;
+    }
+
+    /**
+     * Compares two non-null values, numbers by their value.
+     *
+     * @param v1 the first value
+     * @param v2 the second value
+     * @return the result of the comparison
+     */
+    protected static int compare(Object v1, Object v2) {
+      if ((v1 instanceof Number) && (v2 instanceof Number)) {
+        return Double.compare(((Number) v1).doubleValue(),
+          ((Number) v2).doubleValue());
+      }
+      return v1.toString().compareTo(v2.toString());
+    }
+
+    /**
+     * Evaluates a disjunction on a row.
+     *
+     * @param table the table the row belongs to
+     * @param row the row
+     * @return the result
+     * @throws SQLException if parsing fails
+     */
+    protected boolean or(Table table, Object[] row) throws SQLException {
+      boolean result = and(table, row);
+      while (at("OR")) {
+        next();
+        result = and(table, row) || result;
+      }
+      return result;
+    }
+
+    /**
+     * Evaluates a conjunction on a row.
+     *
+     * @param table the table the row belongs to
+     * @param row the row
+     * @return the result
+     * @throws SQLException if parsing fails
+     */
+    protected boolean and(Table table, Object[] row) throws SQLException {
+      boolean result = condition(table, row);
+      while (at("AND")) {
+        next();
+        result = condition(table, row) && result;
+      }
+      return result;
+    }
+
+    /**
+     * Evaluates a comparison, a NULL check or a parenthesized condition on a
+     * row.
+     *
+     * @param table the table the row belongs to
+     * @param row the row
+     * @return the result
+     * @throws SQLException if parsing fails
+     */
+    protected boolean condition(Table table, Object[] row) throws SQLException {
+      if (at("(")) {
+        next();
+        boolean result = or(table, row);
+        expect(")");
+        return result;
+      }
+      Object value = row[table.indexOf(next())];
+      String op = next();
+      if (op.equalsIgnoreCase("IS")) {
+        boolean negate = at("NOT");
+        if (negate) {
+          next();
+        }
+        expect("NULL");
+        return (value == null) != negate;
+      }
+      Object literal = literal();
+      if ((value == null) || (literal == null)) {
+        return false;
+      }
+      int cmp = compare(value, literal);
+      if (op.equals("=")) {
+        return cmp == 0;
+      } else if (op.equals("<>")) {
+        return cmp != 0;
+      } else if (op.equals("<")) {
+        return cmp < 0;
+      } else if (op.equals("<=")) {
+        return cmp <= 0;
+      } else if (op.equals(">")) {
+        return cmp > 0;
+      } else if (op.equals(">=")) {
+        return cmp >= 0;
+      }
+      throw new SQLException("Unsupported operator: " + op);
+    }
+  }
+
+  /**
+   * Handles the calls to a connection.
+   */
+  protected static class ConnectionHandler implements InvocationHandler {
+
+    /** the database. */
+    protected Database m_Database;
+
+    /** the auto-commit setting. */
+    protected boolean m_AutoCommit = true;
+
+    /** whether the connection has been closed. */
+    protected boolean m_Closed;
+
+    /** the inserts since the last commit. */
+    protected List<Insert> m_Uncommitted = new ArrayList<Insert>();
+
+    /**
+     * Initializes the handler.
+     *
+     * @param database the database to connect to
+     */
+    public ConnectionHandler(Database database) {
+      m_Database = database;
+    }
+
+    /**
+     * Inserts a row.
+     *
+     * @param insert the insert
+     * @throws SQLException if the insert is set up to fail
+     */
+    public void insert(Insert insert) throws SQLException {
+      synchronized (m_Database) {
+        if (insert.m_Row.length > 0
+          && m_Database.m_FailOn.contains(insert.m_Row[0])) {
+          throw new SQLException("Insert of " + insert.m_Row[0] + " failed");
+        }
+        if (m_AutoCommit) {
+          m_Database.add(insert);
+        } else {
+          m_Uncommitted.add(insert);
+        }
+      }
+    }
+
+    /**
+     * Executes a statement other than a prepared INSERT or a SELECT.
+     *
+     * @param sql the statement
+     * @return the update count
+     * @throws SQLException if the insert is set up to fail
+     */
+    public int execute(String sql) throws SQLException {
+      String[] parts = sql.trim().split("\\s+");
+      String command = (parts[0] + " " + parts[1]).toUpperCase();
+      if (command.equals("CREATE TABLE")) {
+        Table table;
+        try {
+          table = new Parser(sql.trim().substring(command.length())).create();
+        } catch (SQLException e) {
+          table = new Table();
+        }
+        synchronized (m_Database) {
+          m_Database.m_Tables.put(parts[2], table);
+        }
+      } else if (command.equals("DROP TABLE")) {
+        synchronized (m_Database) {
+          m_Database.m_Tables.remove(parts[2]);
+          m_Database.m_Rows.clear();
+        }
+      } else if (command.equals("INSERT INTO")) {
+        Object[] values;
+        try {
+          values = new Parser(sql.trim().substring(command.length())).values();
+        } catch (SQLException e) {
+          values = null;
+        }
+        insert(new Insert(parts[2], new Object[] { sql }, values));
+        return 1;
+      }
+      return 0;
+    }
+
+    /**
+     * Executes a SELECT statement.
+     *
+     * @param sql the statement
+     * @param statement the statement proxy executing the query
+     * @param fetchSize the fetch size of the statement
+     * @param maxRows the maximum number of rows, 0 for no limit
+     * @return the result set
+     * @throws SQLException if the query fails
+     */
+    public ResultSet query(String sql, Statement statement, int fetchSize,
+      int maxRows) throws SQLException {
+      synchronized (m_Database) {
+        m_Database.m_NumQueries++;
+        if (fetchSize != 0) {
+          m_Database.m_NumFetches++;
+          if (m_AutoCommit) {
+            m_Database.m_NumAutoCommitFetches++;
+          }
+        }
+      }
+      Parser parser = new Parser(sql);
+      Table result = parser.select(m_Database);
+      if (parser.peek() != null) {
+        throw new SQLException("Unsupported: " + parser.peek());
+      }
+      if ((maxRows > 0) && (result.m_Rows.size() > maxRows)) {
+        result.m_Rows = new ArrayList<Object[]>(result.m_Rows.subList(0,
+          maxRows));
+      }
+      return proxy(ResultSet.class, new ResultSetHandler(result, statement));
+    }
+
+    @Override
+    public Object invoke(Object proxy, Method method, Object[] args)
+      throws Throwable {
+      String name = method.getName();
+      if (name.equals("setAutoCommit")) {
+        if ((Boolean) args[0] && !m_AutoCommit) {
+          invoke(proxy, Connection.class.getMethod("commit"), null);
+        }
+        m_AutoCommit = (Boolean) args[0];
+        return null;
+      } else if (name.equals("getAutoCommit")) {
+        return m_AutoCommit;
+      } else if (name.equals("commit")) {
+        synchronized (m_Database) {
+          for (Insert insert : m_Uncommitted) {
+            m_Database.add(insert);
+          }
+        }
+        m_Uncommitted.clear();
+        return null;
+      } else if (name.equals("rollback")) {
+        if (!m_Uncommitted.isEmpty()) {
+          synchronized (m_Database) {
+            m_Database.m_Rollbacks++;
+          }
+        }
+        m_Uncommitted.clear();
+        return null;
+      } else if (name.equals("close")) {
+        // like most databases, discard an open transaction
+        m_Uncommitted.clear();
+        m_Closed = true;
+        return null;
+      } else if (name.equals("isClosed")) {
+        return m_Closed;
+      } else if (name.equals("getMetaData")) {
+        return proxy(DatabaseMetaData.class, new MetaDataHandler(m_Database));
+      } else if (name.equals("createStatement")) {
+        return proxy(Statement.class, new StatementHandler(this, null));
+      } else if (name.equals("prepareStatement")) {
+        return proxy(PreparedStatement.class, new StatementHandler(this,
+          (String) args[0]));
+      }
+      return defaultValue(method.getReturnType());
+    }
+  }
+
+  /**
+   * Handles the calls to a (prepared) statement.
+   */
+  protected static class StatementHandler implements InvocationHandler {
+
+    /** the connection. */
+    protected ConnectionHandler m_Connection;
+
+    /** the SQL of a prepared statement, null for a plain statement. */
+    protected String m_SQL;
+
+    /** the current parameter values. */
+    protected Map<Integer, Object> m_Params = new HashMap<Integer, Object>();
+
+    /** the rows of the current batch. */
+    protected List<Object[]> m_Batch = new ArrayList<Object[]>();
+
+    /** the statements of the current batch of a plain statement. */
+    protected List<String> m_SQLBatch = new ArrayList<String>();
+
+    /** the result of the last query. */
+    protected ResultSet m_ResultSet;
+
+    /** the fetch size. */
+    protected int m_FetchSize;
+
+    /** the maximum number of rows. */
+    protected int m_MaxRows;
+
+    /**
+     * Initializes the handler.
+     *
+     * @param connection the connection
+     * @param sql the SQL of a prepared statement, null for a plain statement
+     */
+    public StatementHandler(ConnectionHandler connection, String sql) {
+      m_Connection = connection;
+      m_SQL = sql;
+    }
+
+    /**
+     * Returns the current parameter values as a row.
+     *
+     * @return the row
+     */
+    protected Object[] row() {
+      Object[] result = new Object[m_Params.size()];
+      for (int i = 0; i < result.length; i++) {
+        result[i] = m_Params.get(i + 1);
+      }
+      return result;
+    }
+
+    /**
+     * Inserts a row with the prepared statement.
+     *
+     * @param row the parameter values
+     * @throws SQLException if the insert fails
+     */
+    protected void insert(Object[] row) throws SQLException {
+      String[] parts = m_SQL.trim().split("\\s+");
+      m_Connection.insert(new Insert(parts[2], row, row));
+    }
+
+    /**
+     * Executes a statement, storing the result set of a query.
+     *
+     * @param proxy the statement proxy
+     * @param sql the statement
+     * @return true if the statement was a query
+     * @throws SQLException if the statement fails
+     */
+    protected boolean execute(Object proxy, String sql) throws SQLException {
+      if (sql.trim().toUpperCase().startsWith("SELECT")) {
+        m_ResultSet =
+          m_Connection.query(sql, (Statement) proxy, m_FetchSize, m_MaxRows);
+        return true;
+      }
+      m_ResultSet = null;
+      m_Connection.execute(sql);
+      return false;
+    }
+
+    /**
+     * Executes the prepared statement.
+     *
+     * @param proxy the statement proxy
+     * @return true if the statement was a query
+     * @throws SQLException if the statement fails
+     */
+    protected boolean executePrepared(Object proxy) throws SQLException {
+      if (m_SQL.indexOf('?') > -1) {
+        insert(row());
+        return false;
+      }
+      return execute(proxy, m_SQL);
+    }
+
+    @Override
+    public Object invoke(Object proxy, Method method, Object[] args)
+      throws Throwable {
+      String name = method.getName();
+      if (name.equals("setFetchSize")) {
+        m_FetchSize = (Integer) args[0];
+        return null;
+      } else if (name.equals("getFetchSize")) {
+        return m_FetchSize;
+      } else if (name.equals("setMaxRows")) {
+        m_MaxRows = (Integer) args[0];
+        return null;
+      } else if (name.startsWith("set") && args != null && args.length == 2) {
+        m_Params.put((Integer) args[0],
+          name.equals("setNull") ? null : args[1]);
+        return null;
+      } else if (name.equals("addBatch")) {
+        if (args == null) {
+          m_Batch.add(row());
+        } else {
+          m_SQLBatch.add((String) args[0]);
+        }
+        return null;
+      } else if (name.equals("clearBatch")) {
+        m_Batch.clear();
+        m_SQLBatch.clear();
+        return null;
+      } else if (name.equals("executeBatch")) {
+        synchronized (m_Connection.m_Database) {
+          m_Connection.m_Database.m_NumBatches++;
+        }
+        int[] result = new int[m_Batch.size() + m_SQLBatch.size()];
+        try {
+          for (int i = 0; i < m_Batch.size(); i++) {
+            insert(m_Batch.get(i));
+            result[i] = 1;
+          }
+          for (int i = 0; i < m_SQLBatch.size(); i++) {
+            result[m_Batch.size() + i] =
+              m_Connection.execute(m_SQLBatch.get(i));
+          }
+        } finally {
+          m_Batch.clear();
+          m_SQLBatch.clear();
+        }
+        return result;
+      } else if (name.equals("executeQuery")) {
+        execute(proxy, (args == null) ? m_SQL : (String) args[0]);
+        if (m_ResultSet == null) {
+          throw new SQLException("Not a query");
+        }
+        return m_ResultSet;
+      } else if (name.equals("executeUpdate")) {
+        if (args == null) {
+          executePrepared(proxy);
+          return 1;
+        }
+        return m_Connection.execute((String) args[0]);
+      } else if (name.equals("execute")) {
+        return (args == null) ? executePrepared(proxy) : execute(proxy,
+          (String) args[0]);
+      } else if (name.equals("getResultSet")) {
+        return m_ResultSet;
+      } else if (name.equals("getUpdateCount")) {
+        return -1;
+      }
+      return defaultValue(method.getReturnType());
+    }
+  }
+
+  /**
+   * Handles the calls to the result set of a query and its meta data.
+   */
+  protected static class ResultSetHandler implements InvocationHandler {
+
+    /** the result. */
+    protected Table m_Result;
+
+    /** the statement that executed the query. */
+    protected Statement m_Statement;
+
+    /** the index of the current row. */
+    protected int m_Row = -1;
+
+    /** whether the last value read was NULL. */
+    protected boolean m_WasNull;
+
+    /**
+     * Initializes the handler.
+     *
+     * @param result the result of the query
+     * @param statement the statement that executed the query
+     */
+    public ResultSetHandler(Table result, Statement statement) {
+      m_Result = result;
+      m_Statement = statement;
+    }
+
+    /**
+     * Returns the value of a column of the current row.
+     *
+     * @param column the index of the column, starting at 1
+     * @return the value
+     * @throws SQLException if there is no current row
+     */
+    protected Object value(int column) throws SQLException {
+      if ((m_Row < 0) || (m_Row >= m_Result.m_Rows.size())) {
+        throw new SQLException("No current row");
+      }
+      Object result = m_Result.m_Rows.get(m_Row)[column - 1];
+      m_WasNull = (result == null);
+      return result;
+    }
+
+    @Override
+    public Object invoke(Object proxy, Method method, Object[] args)
+      throws Throwable {
+      String name = method.getName();
+      Class<?> type = method.getReturnType();
+      if (name.equals("next")) {
+        m_Row++;
+        return m_Row < m_Result.m_Rows.size();
+      } else if (name.equals("wasNull")) {
+        return m_WasNull;
+      } else if (name.equals("getMetaData")) {
+        return proxy(ResultSetMetaData.class, this);
+      } else if (name.equals("getStatement")) {
+        return m_Statement;
+      } else if (name.equals("getColumnCount")) {
+        return m_Result.m_Names.size();
+      } else if (name.equals("getColumnName") || name.equals("getColumnLabel")) {
+        return m_Result.m_Names.get((Integer) args[0] - 1);
+      } else if (name.equals("getColumnTypeName")) {
+        return m_Result.m_Types.get((Integer) args[0] - 1);
+      } else if (name.equals("getColumnType")) {
+        return Types.OTHER;
+      } else if ((proxy instanceof ResultSet) && name.startsWith("get")
+        && (args != null) && (args.length == 1) && (args[0] instanceof Integer)) {
+        Object value = value((Integer) args[0]);
+        if (value == null) {
+          return defaultValue(type);
+        } else if (type == String.class) {
+          return value.toString();
+        } else if (type == Object.class) {
+          return value;
+        } else if (type == Boolean.TYPE) {
+          return Boolean.valueOf(value.toString());
+        }
+        double number = (value instanceof Number) ? ((Number) value)
+          .doubleValue() : Double.parseDouble(value.toString());
+        if (type == Double.TYPE) {
+          return number;
+        } else if (type == Float.TYPE) {
+          return (float) number;
+        } else if (type == Long.TYPE) {
+          return (long) number;
+        } else if (type == Integer.TYPE) {
+          return (int) number;
+        } else if (type == Short.TYPE) {
+          return (short) number;
+        } else if (type == Byte.TYPE) {
+          return (byte) number;
+        }
+      }
+      return defaultValue(type);
+    }
+  }
+
+  /**
+   * Handles the calls to the meta data of a connection.
+   */
+  protected static class MetaDataHandler implements InvocationHandler {
+
+    /** the database. */
+    protected Database m_Database;
+
+    /**
+     * Initializes the handler.
+     *
+     * @param database the database
+     */
+    public MetaDataHandler(Database database) {
+      m_Database = database;
+    }
+
+    @Override
+    public Object invoke(Object proxy, Method method, Object[] args)
+      throws Throwable {
+      String name = method.getName();
+      if (name.equals("supportsBatchUpdates")) {
+        synchronized (m_Database) {
+          return m_Database.m_SupportsBatch;
+        }
+      } else if (name.equals("getTables")) {
+        final int[] rows = { m_Database.hasTable((String) args[2]) ? 1 : 0 };
+        return proxy(ResultSet.class, new InvocationHandler() {
+          @Override
+          public Object invoke(Object proxy, Method method, Object[] args) {
+            if (method.getName().equals("next")) {
+              return rows[0]-- > 0;
+            }
+            return defaultValue(method.getReturnType());
+          }
+        });
+      }
+      return defaultValue(method.getReturnType());
+    }
+  }
+
+  @Override
+  public Connection connect(String url, Properties info) throws SQLException {
+    if (!acceptsURL(url)) {
+      return null;
+    }
+    return proxy(Connection.class, new ConnectionHandler(
+      getDatabase(url.substring(PREFIX.length()))));
+  }
+
+  @Override
+  public boolean acceptsURL(String url) {
+    return (url != null) && url.startsWith(PREFIX);
+  }
+
+  @Override
+  public DriverPropertyInfo[] getPropertyInfo(String url, Properties info) {
+    return new DriverPropertyInfo[0];
+  }
+
+  @Override
+  public int getMajorVersion() {
+    return 1;
+  }
+
+  @Override
+  public int getMinorVersion() {
+    return 0;
+  }
+
+  @Override
+  public boolean jdbcCompliant() {
+    return false;
+  }
+
+  @Override
+  public Logger getParentLogger() throws SQLFeatureNotSupportedException {
+    throw new SQLFeatureNotSupportedException();
+  }
+}
@@ -21,6 +21,8 @@
 
 package weka.core.expressionlanguage;
 
+import weka.core.expressionlanguage.common.ExpressionCompiler;
+import weka.core.expressionlanguage.common.ExpressionCompiler.Program;
 import weka.core.expressionlanguage.common.IfElseMacro;
 import weka.core.expressionlanguage.common.JavaMacro;
 import weka.core.expressionlanguage.common.MacroDeclarationsCompositor;
@@ -110,7 +112,14 @@ public class ExpressionLanguageTest extends TestCase {
     if (!(node instanceof BooleanExpression))
       throw new Exception("Type error in expression!");
   
-    return ((BooleanExpression) node).evaluate();
+    boolean result = ((BooleanExpression) node).evaluate();
+    Program program = ExpressionCompiler.compileProgram(node);
+    assertTrue("Failed to generate bytecode: " + expr, program.generate());
+    assertEquals("Compiled expression differs: " + expr, result,
+      program.run() != 0);
+    assertEquals("Interpreted expression differs: " + expr, result,
+      program.interpret() != 0);
+    return result;
   }
 
   private static double evaluateDouble(String expr, Object... values) throws Exception {
@@ -120,7 +129,14 @@ public class ExpressionLanguageTest extends TestCase {
     if (!(node instanceof DoubleExpression))
       throw new Exception("Type error in expression!");
   
-    return ((DoubleExpression) node).evaluate();
+    double result = ((DoubleExpression) node).evaluate();
+    Program program = ExpressionCompiler.compileProgram(node);
+    assertTrue("Failed to generate bytecode: " + expr, program.generate());
+    assertEquals("Compiled expression differs: " + expr, 0,
+      Double.compare(result, program.run()));
+    assertEquals("Interpreted expression differs: " + expr, 0,
+      Double.compare(result, program.interpret()));
+    return result;
   }
 
   private static String evaluateString(String expr, Object... values) throws Exception {
@@ -0,0 +1,247 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ * DataSplitCacheTest.java
+ * Copyright (C) 2026 University of Waikato, Hamilton, New Zealand
+ */
+
+package weka.experiment;
+
+import java.util.Random;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+import weka.core.Attribute;
+import weka.core.Instances;
+import weka.core.TestInstances;
+
+/**
+ * Tests DataSplitCache, by comparing its splits with the ones obtained from
+ * the full data. Run from the command line with:
+ * <p/>
+ * java weka.experiment.DataSplitCacheTest
+ *
+ * @author The WEKA Team (wekalist@list.waikato.ac.nz)
+ * @version $Revision$
+ */
+public class DataSplitCacheTest extends TestCase {
+
+  /** the data with a nominal class */
+  protected Instances m_Nominal;
+
+  /** the data with a numeric class */
+  protected Instances m_Numeric;
+
+  /**
+   * Constructs the <code>DataSplitCacheTest</code>.
+   *
+   * @param name the name of the test class
+   */
+  public DataSplitCacheTest(String name) {
+    super(name);
+  }
+
+  /**
+   * Generates the data.
+   *
+   * @throws Exception if an error occurs
+   */
+  @Override
+  protected void setUp() throws Exception {
+    super.setUp();
+
+    m_Nominal = generate(Attribute.NOMINAL);
+    m_Numeric = generate(Attribute.NUMERIC);
+    DataSplitCache.clear();
+  }
+
+  /**
+   * Clears the cache.
+   *
+   * @throws Exception if an error occurs
+   */
+  @Override
+  protected void tearDown() throws Exception {
+    DataSplitCache.clear();
+
+    super.tearDown();
+  }
+
+  /**
+   * Generates a dataset with unbalanced classes (for a nominal class) and a
+   * few missing class values.
+   *
+   * @param classType the type of the class
+   * @return the dataset
+   * @throws Exception if generation fails
+   */
+  protected Instances generate(int classType) throws Exception {
+    TestInstances gen = new TestInstances();
+    gen.setSeed(17);
+    gen.setNumInstances(103);
+    gen.setNumNominal(2);
+    gen.setNumNumeric(3);
+    gen.setNumClasses(3);
+    gen.setClassType(classType);
+    Instances result = gen.generate();
+    for (int i = 0; i < result.numInstances(); i++) {
+      if ((classType == Attribute.NOMINAL) && (i % 3 == 0)) {
+        result.instance(i).setClassValue(0);
+      }
+      if (i % 25 == 7) {
+        result.instance(i).setClassMissing();
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Asserts that two datasets hold the same instances in the same order.
+   *
+   * @param msg the message for failures
+   * @param expected the expected instances
+   * @param actual the actual instances
+   */
+  protected void assertSameInstances(String msg, Instances expected,
+    Instances actual) {
+    assertEquals(msg + ": number of instances", expected.numInstances(),
+      actual.numInstances());
+    for (int i = 0; i < expected.numInstances(); i++) {
+      assertEquals(msg + ": instance " + i, expected.instance(i).toString(),
+        actual.instance(i).toString());
+    }
+  }
+
+  /**
+   * Checks the cross-validation splits against the ones of
+   * Instances.trainCV/testCV on the randomized and stratified data.
+   *
+   * @param data the dataset
+   */
+  protected void checkCrossValidation(Instances data) {
+    for (int run = 1; run <= 3; run++) {
+      for (int numFolds : new int[] { 2, 5, 10 }) {
+        Instances runInstances = new Instances(data);
+        Random random = new Random(run);
+        runInstances.randomize(random);
+        if (runInstances.classAttribute().isNominal()) {
+          runInstances.stratify(numFolds);
+        }
+        int[][] folds = DataSplitCache.crossValidation(data, run, numFolds);
+        assertEquals(2 * numFolds, folds.length);
+        for (int fold = 0; fold < numFolds; fold++) {
+          String msg = "run " + run + ", " + numFolds + " folds, fold " + fold;
+          assertSameInstances(msg + ", train",
+            runInstances.trainCV(numFolds, fold, random),
+            DataSplitCache.subset(data, folds[2 * fold]));
+          assertSameInstances(msg + ", test",
+            runInstances.testCV(numFolds, fold),
+            DataSplitCache.subset(data, folds[2 * fold + 1]));
+        }
+      }
+    }
+  }
+
+  /**
+   * Checks the train/test splits against the ones obtained by splitting the
+   * full data.
+   *
+   * @param data the dataset
+   */
+  protected void checkRandomSplit(Instances data) {
+    for (int run = 1; run <= 3; run++) {
+      for (double percent : new double[] { 33.3, 66.0, 90.0 }) {
+        for (boolean randomize : new boolean[] { false, true }) {
+          Instances[] expected =
+            DataSplitCache.split(new Instances(data), run, percent, randomize);
+          int[][] split =
+            DataSplitCache.randomSplit(data, run, percent, randomize);
+          String msg = "run " + run + ", " + percent + "%, " + randomize;
+          assertSameInstances(msg + ", train", expected[0],
+            DataSplitCache.subset(data, split[0]));
+          assertSameInstances(msg + ", test", expected[1],
+            DataSplitCache.subset(data, split[1]));
+        }
+      }
+    }
+  }
+
+  /**
+   * Tests the cross-validation splits for a nominal class.
+   */
+  public void testCrossValidationNominal() {
+    checkCrossValidation(m_Nominal);
+  }
+
+  /**
+   * Tests the cross-validation splits for a numeric class.
+   */
+  public void testCrossValidationNumeric() {
+    checkCrossValidation(m_Numeric);
+  }
+
+  /**
+   * Tests the train/test splits for a nominal class.
+   */
+  public void testRandomSplitNominal() {
+    checkRandomSplit(m_Nominal);
+  }
+
+  /**
+   * Tests the train/test splits for a numeric class.
+   */
+  public void testRandomSplitNumeric() {
+    checkRandomSplit(m_Numeric);
+  }
+
+  /**
+   * Tests that splits are reused, but recomputed once the data was modified
+   * or the cache cleared.
+   */
+  public void testCaching() {
+    int[][] folds = DataSplitCache.crossValidation(m_Nominal, 1, 10);
+    assertSame(folds, DataSplitCache.crossValidation(m_Nominal, 1, 10));
+    assertNotSame(folds, DataSplitCache.crossValidation(m_Nominal, 2, 10));
+
+    DataSplitCache.clear();
+    int[][] cleared = DataSplitCache.crossValidation(m_Nominal, 1, 10);
+    assertNotSame(folds, cleared);
+
+    m_Nominal.delete(0);
+    int[][] modified = DataSplitCache.crossValidation(m_Nominal, 1, 10);
+    assertNotSame(cleared, modified);
+    checkCrossValidation(m_Nominal);
+  }
+
+  /**
+   * Returns a test suite.
+   *
+   * @return test suite
+   */
+  public static Test suite() {
+    return new TestSuite(DataSplitCacheTest.class);
+  }
+
+  /**
+   * Runs the test from command-line.
+   *
+   * @param args ignored
+   */
+  public static void main(String[] args) {
+    junit.textui.TestRunner.run(suite());
+  }
+}
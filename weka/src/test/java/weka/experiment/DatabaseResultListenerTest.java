@@ -0,0 +1,322 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ * DatabaseResultListenerTest.java
+ * Copyright (C) 2026 University of Waikato, Hamilton, New Zealand
+ */
+
+package weka.experiment;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+import weka.core.Instances;
+import weka.core.converters.StubJDBCDriver;
+
+/**
+ * Tests DatabaseResultListener against an in-memory stub JDBC driver. Run from
+ * the command line with:
+ * <p/>
+ * java weka.experiment.DatabaseResultListenerTest
+ *
+ * @author The WEKA Team (wekalist@list.waikato.ac.nz)
+ * @version $Revision$
+ * @see StubJDBCDriver
+ */
+public class DatabaseResultListenerTest extends TestCase {
+
+  /** the name of the stub database. */
+  protected final static String DATABASE = "DatabaseResultListenerTest";
+
+  /** the result producer generating the keys and results */
+  protected StubResultProducer m_Producer;
+
+  /**
+   * Constructs the <code>DatabaseResultListenerTest</code>.
+   *
+   * @param name the name of the test class
+   */
+  public DatabaseResultListenerTest(String name) {
+    super(name);
+  }
+
+  /**
+   * Sets up the result producer and removes the stub database.
+   *
+   * @throws Exception if an error occurs
+   */
+  @Override
+  protected void setUp() throws Exception {
+    super.setUp();
+
+    m_Producer = new StubResultProducer();
+    StubJDBCDriver.dropDatabase(DATABASE);
+  }
+
+  /**
+   * Removes the stub database.
+   *
+   * @throws Exception if an error occurs
+   */
+  @Override
+  protected void tearDown() throws Exception {
+    StubJDBCDriver.dropDatabase(DATABASE);
+
+    super.tearDown();
+  }
+
+  /**
+   * Returns the stub database.
+   *
+   * @return the database
+   */
+  protected StubJDBCDriver.Database getDatabase() {
+    return StubJDBCDriver.getDatabase(DATABASE);
+  }
+
+  /**
+   * Returns a listener writing to the stub database, which has been prepared
+   * for the results of the producer.
+   *
+   * @param batchSize the batch size
+   * @param preloadKeys whether to read the keys of the results table
+   * @return the listener
+   * @throws Exception if setting up fails
+   */
+  protected DatabaseResultListener getListener(int batchSize,
+    boolean preloadKeys) throws Exception {
+    DatabaseResultListener result = new DatabaseResultListener();
+    result.setDatabaseURL(StubJDBCDriver.PREFIX + DATABASE);
+    result.setBatchSize(batchSize);
+    result.setPreloadKeys(preloadKeys);
+    result.preProcess(m_Producer);
+    return result;
+  }
+
+  /**
+   * Returns the key of a result.
+   *
+   * @param run the run
+   * @return the key
+   */
+  protected Object[] key(int run) {
+    return new Object[] { "dataset", "" + run };
+  }
+
+  /**
+   * Returns a result.
+   *
+   * @param run the run
+   * @return the result
+   */
+  protected Object[] result(int run) {
+    return new Object[] { new Double(run) };
+  }
+
+  /**
+   * Returns the runs of the results stored in the results table, in order.
+   *
+   * @param listener the listener that wrote the results
+   * @return the runs
+   */
+  protected List<String> getStoredRuns(DatabaseResultListener listener) {
+    List<String> result = new ArrayList<String>();
+    for (Object[] row : getDatabase().getRows(listener.m_ResultsTableName)) {
+      result.add((String) row[1]);
+    }
+    return result;
+  }
+
+  /**
+   * Tests that a batch of results gets written with a single batch of
+   * statements once it is full, and the remainder when finished.
+   *
+   * @throws Exception if an error occurs
+   */
+  public void testBatch() throws Exception {
+    DatabaseResultListener listener = getListener(5, true);
+    int numBatches = getDatabase().getNumBatches();
+
+    for (int i = 0; i < 4; i++) {
+      listener.acceptResult(m_Producer, key(i), result(i));
+    }
+    assertEquals("pending results", 0, getStoredRuns(listener).size());
+    assertFalse("pending result required",
+      listener.isResultRequired(m_Producer, key(2)));
+
+    listener.acceptResult(m_Producer, key(4), result(4));
+    assertEquals("batches", numBatches + 1, getDatabase().getNumBatches());
+    assertEquals("stored results", 5, getStoredRuns(listener).size());
+
+    listener.acceptResult(m_Producer, key(5), result(5));
+    listener.acceptResult(m_Producer, key(6), result(6));
+    listener.postProcess(m_Producer);
+    assertEquals("batches", numBatches + 2, getDatabase().getNumBatches());
+    assertEquals("stored results", 7, getStoredRuns(listener).size());
+  }
+
+  /**
+   * Tests that the results of a failing batch get written one by one, that
+   * only the keys of the written ones end up in the key index and that the
+   * error of the first failing result is reported.
+   *
+   * @throws Exception if an error occurs
+   */
+  public void testFailingBatch() throws Exception {
+    DatabaseResultListener listener = getListener(4, true);
+    // loads the (empty) key index
+    assertTrue(listener.isResultRequired(m_Producer, key(0)));
+
+    String table = listener.m_ResultsTableName;
+    String firstFailing = listener.getInsertQuery(table, key(1), result(1));
+    getDatabase().setFailOn(firstFailing);
+    getDatabase().addFailOn(listener.getInsertQuery(table, key(2), result(2)));
+    for (int i = 0; i < 3; i++) {
+      listener.acceptResult(m_Producer, key(i), result(i));
+    }
+    try {
+      listener.acceptResult(m_Producer, key(3), result(3));
+      fail("Failing results not reported");
+    } catch (SQLException e) {
+      assertTrue("first error reported: " + e.getMessage(), e.getMessage()
+        .contains(firstFailing));
+    }
+    getDatabase().setFailOn(null);
+
+    assertEquals("rolled back batches", 1, getDatabase().getRollbacks());
+    List<String> stored = getStoredRuns(listener);
+    assertEquals("stored results", 2, stored.size());
+    assertTrue(stored.contains("0"));
+    assertTrue(stored.contains("3"));
+
+    int numQueries = getDatabase().getNumQueries();
+    assertFalse(listener.isResultRequired(m_Producer, key(0)));
+    assertTrue(listener.isResultRequired(m_Producer, key(1)));
+    assertTrue(listener.isResultRequired(m_Producer, key(2)));
+    assertFalse(listener.isResultRequired(m_Producer, key(3)));
+    assertEquals("queries", numQueries, getDatabase().getNumQueries());
+  }
+
+  /**
+   * Tests that preloading the keys answers isResultRequired with a single
+   * query, rather than with one query per key, and gives the same answers.
+   *
+   * @throws Exception if an error occurs
+   */
+  public void testPreloadKeys() throws Exception {
+    DatabaseResultListener listener = getListener(1, true);
+    for (int i = 0; i < 10; i++) {
+      listener.acceptResult(m_Producer, key(i), result(i));
+    }
+    listener.postProcess(m_Producer);
+
+    for (boolean preload : new boolean[] { true, false }) {
+      listener = getListener(1, preload);
+      int numQueries = getDatabase().getNumQueries();
+      for (int i = 0; i < 20; i++) {
+        assertEquals("preload " + preload + ", run " + i, i >= 10,
+          listener.isResultRequired(m_Producer, key(i)));
+      }
+      assertEquals("preload " + preload + ", queries", preload ? 1 : 20,
+        getDatabase().getNumQueries() - numQueries);
+      listener.postProcess(m_Producer);
+    }
+  }
+
+  /**
+   * Generates results with two string keys and a numeric measure.
+   */
+  protected static class StubResultProducer implements ResultProducer {
+
+    /** for serialization */
+    private static final long serialVersionUID = 4406328726853950519L;
+
+    @Override
+    public void setInstances(Instances instances) {
+    }
+
+    @Override
+    public void setResultListener(ResultListener listener) {
+    }
+
+    @Override
+    public void setAdditionalMeasures(String[] additionalMeasures) {
+    }
+
+    @Override
+    public void preProcess() {
+    }
+
+    @Override
+    public void postProcess() {
+    }
+
+    @Override
+    public void doRun(int run) {
+    }
+
+    @Override
+    public void doRunKeys(int run) {
+    }
+
+    @Override
+    public String[] getKeyNames() {
+      return new String[] { "Dataset", "Run" };
+    }
+
+    @Override
+    public Object[] getKeyTypes() {
+      return new Object[] { "", "" };
+    }
+
+    @Override
+    public String[] getResultNames() {
+      return new String[] { "Measure" };
+    }
+
+    @Override
+    public Object[] getResultTypes() {
+      return new Object[] { new Double(0) };
+    }
+
+    @Override
+    public String getCompatibilityState() {
+      return "-stub";
+    }
+  }
+
+  /**
+   * Returns a test suite.
+   *
+   * @return test suite
+   */
+  public static Test suite() {
+    return new TestSuite(DatabaseResultListenerTest.class);
+  }
+
+  /**
+   * Runs the test from command-line.
+   *
+   * @param args ignored
+   */
+  public static void main(String[] args) {
+    junit.textui.TestRunner.run(suite());
+  }
+}
@@ -0,0 +1,235 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ * PairedTTesterTest.java
+ * Copyright (C) 2026 University of Waikato, Hamilton, New Zealand
+ */
+
+package weka.experiment;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Random;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+import weka.core.Attribute;
+import weka.core.DenseInstance;
+import weka.core.Instances;
+import weka.core.Utils;
+
+/**
+ * Tests PairedTTester and PairedCorrectedTTester, by comparing the output
+ * computed with one and with several threads. Run from the command line with:
+ * <p/>
+ * java weka.experiment.PairedTTesterTest
+ *
+ * @author The WEKA Team (wekalist@list.waikato.ac.nz)
+ * @version $Revision$
+ */
+public class PairedTTesterTest extends TestCase {
+
+  /** the number of datasets */
+  protected final static int NUM_DATASETS = 7;
+
+  /** the number of schemes */
+  protected final static int NUM_SCHEMES = 4;
+
+  /** the number of runs */
+  protected final static int NUM_RUNS = 5;
+
+  /** the number of folds */
+  protected final static int NUM_FOLDS = 3;
+
+  /** the index of the compared column */
+  protected final static int COMPARISON_COLUMN = 4;
+
+  /** the results to test */
+  protected Instances m_Results;
+
+  /**
+   * Constructs the <code>PairedTTesterTest</code>.
+   *
+   * @param name the name of the test class
+   */
+  public PairedTTesterTest(String name) {
+    super(name);
+  }
+
+  /**
+   * Generates the results.
+   *
+   * @throws Exception if an error occurs
+   */
+  @Override
+  protected void setUp() throws Exception {
+    super.setUp();
+
+    m_Results = generateResults();
+  }
+
+  /**
+   * Generates the results of a cross-validation experiment, with schemes of
+   * different accuracy and a few missing values.
+   *
+   * @return the results
+   */
+  protected Instances generateResults() {
+    ArrayList<String> datasets = new ArrayList<String>();
+    for (int i = 0; i < NUM_DATASETS; i++) {
+      datasets.add("dataset" + (i + 1));
+    }
+    ArrayList<String> schemes = new ArrayList<String>();
+    for (int i = 0; i < NUM_SCHEMES; i++) {
+      schemes.add("scheme" + (i + 1));
+    }
+    ArrayList<Attribute> atts = new ArrayList<Attribute>();
+    atts.add(new Attribute("Key_Dataset", datasets));
+    atts.add(new Attribute("Key_Run"));
+    atts.add(new Attribute("Key_Fold"));
+    atts.add(new Attribute("Key_Scheme", schemes));
+    atts.add(new Attribute("Percent_correct"));
+    atts.add(new Attribute("Number_of_training_instances"));
+    atts.add(new Attribute("Number_of_testing_instances"));
+    Instances result = new Instances("results", atts, 0);
+
+    Random random = new Random(42);
+    for (int d = 0; d < NUM_DATASETS; d++) {
+      for (int s = 0; s < NUM_SCHEMES; s++) {
+        for (int r = 1; r <= NUM_RUNS; r++) {
+          for (int f = 1; f <= NUM_FOLDS; f++) {
+            double[] values = new double[atts.size()];
+            values[0] = d;
+            values[1] = r;
+            values[2] = f;
+            values[3] = s;
+            values[4] = 70 + 3 * s * (d % 3 - 1) + 5 * random.nextGaussian();
+            if (random.nextInt(50) == 0) {
+              values[4] = Utils.missingValue();
+            }
+            values[5] = 100;
+            values[6] = 50;
+            result.add(new DenseInstance(1.0, values));
+          }
+        }
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Returns a tester for the results.
+   *
+   * @param corrected whether to use the corrected resampled t-test
+   * @param numSlots the number of execution slots
+   * @return the tester
+   * @throws Exception if setting up fails
+   */
+  protected PairedTTester getTester(boolean corrected, int numSlots)
+    throws Exception {
+    PairedTTester result =
+      corrected ? new PairedCorrectedTTester() : new PairedTTester();
+    result.setOptions(new String[] { "-D", "1", "-R", "2", "-F", "3", "-G",
+      "4", "-S", "0.05", "-num-slots", "" + numSlots });
+    result.setInstances(m_Results);
+    return result;
+  }
+
+  /**
+   * Checks that several threads give the same output as a single thread.
+   *
+   * @param corrected whether to use the corrected resampled t-test
+   * @throws Exception if an error occurs
+   */
+  protected void checkExecutionSlots(boolean corrected) throws Exception {
+    PairedTTester sequential = getTester(corrected, 1);
+    PairedTTester parallel = getTester(corrected, 4);
+
+    assertEquals(NUM_SCHEMES, sequential.getNumResultsets());
+    for (int base = 0; base < NUM_SCHEMES; base++) {
+      assertEquals("base " + base,
+        sequential.multiResultsetFull(base, COMPARISON_COLUMN),
+        parallel.multiResultsetFull(base, COMPARISON_COLUMN));
+    }
+
+    int[][] sequentialNonSig = new int[NUM_SCHEMES][NUM_SCHEMES];
+    int[][] parallelNonSig = new int[NUM_SCHEMES][NUM_SCHEMES];
+    int[][] sequentialWins =
+      sequential.multiResultsetWins(COMPARISON_COLUMN, sequentialNonSig);
+    int[][] parallelWins =
+      parallel.multiResultsetWins(COMPARISON_COLUMN, parallelNonSig);
+    assertTrue("wins", Arrays.deepEquals(sequentialWins, parallelWins));
+    assertTrue("non-significant wins",
+      Arrays.deepEquals(sequentialNonSig, parallelNonSig));
+
+    assertEquals(sequential.multiResultsetSummary(COMPARISON_COLUMN),
+      parallel.multiResultsetSummary(COMPARISON_COLUMN));
+    assertEquals(sequential.multiResultsetRanking(COMPARISON_COLUMN),
+      parallel.multiResultsetRanking(COMPARISON_COLUMN));
+  }
+
+  /**
+   * Tests the paired t-test with several threads.
+   *
+   * @throws Exception if an error occurs
+   */
+  public void testExecutionSlots() throws Exception {
+    checkExecutionSlots(false);
+  }
+
+  /**
+   * Tests the corrected resampled t-test with several threads.
+   *
+   * @throws Exception if an error occurs
+   */
+  public void testExecutionSlotsCorrected() throws Exception {
+    checkExecutionSlots(true);
+  }
+
+  /**
+   * Tests that the number of execution slots is only part of the options if
+   * it differs from the default.
+   *
+   * @throws Exception if an error occurs
+   */
+  public void testNumSlotsOption() throws Exception {
+    assertFalse(Arrays.asList(getTester(false, 1).getOptions()).contains(
+      "-num-slots"));
+    String[] options = getTester(false, 3).getOptions();
+    int index = Arrays.asList(options).indexOf("-num-slots");
+    assertTrue(index >= 0);
+    assertEquals("3", options[index + 1]);
+  }
+
+  /**
+   * Returns a test suite.
+   *
+   * @return test suite
+   */
+  public static Test suite() {
+    return new TestSuite(PairedTTesterTest.class);
+  }
+
+  /**
+   * Runs the test from command-line.
+   *
+   * @param args ignored
+   */
+  public static void main(String[] args) {
+    junit.textui.TestRunner.run(suite());
+  }
+}
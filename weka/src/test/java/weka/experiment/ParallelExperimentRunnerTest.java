@@ -0,0 +1,320 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ * ParallelExperimentRunnerTest.java
+ * Copyright (C) 2026 University of Waikato, Hamilton, New Zealand
+ */
+
+package weka.experiment;
+
+import java.beans.PropertyDescriptor;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+import javax.swing.DefaultListModel;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+import weka.classifiers.Classifier;
+import weka.classifiers.bayes.NaiveBayes;
+import weka.classifiers.rules.ZeroR;
+import weka.classifiers.trees.J48;
+import weka.core.Attribute;
+import weka.core.Instances;
+import weka.core.TestInstances;
+import weka.core.converters.ArffSaver;
+
+/**
+ * Tests ParallelExperimentRunner, by comparing the output of experiments run
+ * on one and on several threads. Run from the command line with:
+ * <p/>
+ * java weka.experiment.ParallelExperimentRunnerTest
+ *
+ * @author The WEKA Team (wekalist@list.waikato.ac.nz)
+ * @version $Revision$
+ */
+public class ParallelExperimentRunnerTest extends TestCase {
+
+  /** the number of datasets */
+  protected final static int NUM_DATASETS = 2;
+
+  /** the number of runs */
+  protected final static int NUM_RUNS = 3;
+
+  /** the number of folds */
+  protected final static int NUM_FOLDS = 3;
+
+  /** the datasets of the experiments */
+  protected File[] m_Datasets;
+
+  /** the temporary files to delete */
+  protected List<File> m_TempFiles;
+
+  /**
+   * Constructs the <code>ParallelExperimentRunnerTest</code>.
+   *
+   * @param name the name of the test class
+   */
+  public ParallelExperimentRunnerTest(String name) {
+    super(name);
+  }
+
+  /**
+   * Writes the datasets.
+   *
+   * @throws Exception if an error occurs
+   */
+  @Override
+  protected void setUp() throws Exception {
+    super.setUp();
+
+    m_TempFiles = new ArrayList<File>();
+    m_Datasets = new File[NUM_DATASETS];
+    for (int i = 0; i < NUM_DATASETS; i++) {
+      TestInstances gen = new TestInstances();
+      gen.setSeed(i + 1);
+      gen.setRelation("data" + (i + 1));
+      gen.setNumInstances(60);
+      gen.setNumNominal(2);
+      gen.setNumNumeric(2);
+      gen.setClassType(Attribute.NOMINAL);
+      Instances data = gen.generate();
+      m_Datasets[i] = createTempFile(".arff");
+      ArffSaver saver = new ArffSaver();
+      saver.setInstances(data);
+      saver.setFile(m_Datasets[i]);
+      saver.writeBatch();
+    }
+  }
+
+  /**
+   * Removes the temporary files.
+   *
+   * @throws Exception if an error occurs
+   */
+  @Override
+  protected void tearDown() throws Exception {
+    for (File file : m_TempFiles) {
+      file.delete();
+    }
+
+    super.tearDown();
+  }
+
+  /**
+   * Returns a new temporary file that is deleted in tearDown.
+   *
+   * @param suffix the suffix of the file
+   * @return the file
+   * @throws Exception if the file can't be created
+   */
+  protected File createTempFile(String suffix) throws Exception {
+    File result = File.createTempFile("ParallelExperimentRunnerTest", suffix);
+    m_TempFiles.add(result);
+    return result;
+  }
+
+  /**
+   * Runs a cross-validation experiment with several classifiers, writing the
+   * raw output to the given zip file.
+   *
+   * @param numSlots the number of execution slots
+   * @param rawOutput the zip file for the raw output
+   * @return the collected results
+   * @throws Exception if the experiment fails
+   */
+  protected CollectingListener runExperiment(int numSlots, File rawOutput)
+    throws Exception {
+
+    ClassifierSplitEvaluator evaluator = new ClassifierSplitEvaluator();
+    CrossValidationResultProducer producer =
+      new CrossValidationResultProducer();
+    producer.setNumFolds(NUM_FOLDS);
+    producer.setSplitEvaluator(evaluator);
+    producer.setRawOutput(true);
+    producer.setOutputFile(rawOutput);
+
+    PropertyNode[] path = new PropertyNode[2];
+    path[0] =
+      new PropertyNode(evaluator, new PropertyDescriptor("splitEvaluator",
+        CrossValidationResultProducer.class),
+        CrossValidationResultProducer.class);
+    path[1] =
+      new PropertyNode(new ZeroR(), new PropertyDescriptor("classifier",
+        ClassifierSplitEvaluator.class), ClassifierSplitEvaluator.class);
+
+    DefaultListModel datasets = new DefaultListModel();
+    for (File dataset : m_Datasets) {
+      datasets.addElement(dataset);
+    }
+
+    CollectingListener result = new CollectingListener();
+    Experiment exp = new Experiment();
+    exp.setResultProducer(producer);
+    exp.setResultListener(result);
+    exp.setRunLower(1);
+    exp.setRunUpper(NUM_RUNS);
+    exp.setDatasets(datasets);
+    exp.setPropertyPath(path);
+    exp.setPropertyArray(new Classifier[] { new ZeroR(), new J48(),
+      new NaiveBayes() });
+    exp.setUsePropertyIterator(true);
+    exp.setNumExecutionSlots(numSlots);
+
+    exp.initialize();
+    exp.runExperiment();
+    exp.postProcess();
+
+    return result;
+  }
+
+  /**
+   * Reads the entries of a zip file.
+   *
+   * @param file the zip file
+   * @return the contents per entry name
+   * @throws Exception if the zip file can't be read
+   */
+  protected Map<String, String> readZipFile(File file) throws Exception {
+    Map<String, String> result = new HashMap<String, String>();
+    ZipFile zip = new ZipFile(file);
+    try {
+      Enumeration<? extends ZipEntry> entries = zip.entries();
+      while (entries.hasMoreElements()) {
+        ZipEntry entry = entries.nextElement();
+        InputStream in = zip.getInputStream(entry);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[4096];
+        int read;
+        while ((read = in.read(buffer)) != -1) {
+          out.write(buffer, 0, read);
+        }
+        in.close();
+        assertNull("duplicate entry " + entry.getName(),
+          result.put(entry.getName(), out.toString("UTF-8")));
+      }
+    } finally {
+      zip.close();
+    }
+    return result;
+  }
+
+  /**
+   * Tests that several threads produce the same results and raw output as a
+   * single thread.
+   *
+   * @throws Exception if an error occurs
+   */
+  public void testExecutionSlots() throws Exception {
+    File sequentialZip = createTempFile(".zip");
+    File parallelZip = createTempFile(".zip");
+    CollectingListener sequential = runExperiment(1, sequentialZip);
+    CollectingListener parallel = runExperiment(4, parallelZip);
+
+    int numResults = NUM_DATASETS * NUM_RUNS * NUM_FOLDS * 3;
+    assertEquals("number of results", numResults, sequential.m_Keys.size());
+    assertEquals("number of results", numResults, parallel.m_Keys.size());
+    for (int i = 0; i < numResults; i++) {
+      assertTrue("key " + i, Arrays.equals(sequential.m_Keys.get(i),
+        parallel.m_Keys.get(i)));
+      Object[] expected = sequential.m_Results.get(i);
+      Object[] actual = parallel.m_Results.get(i);
+      for (int j = 0; j < expected.length; j++) {
+        // timings and timestamps differ between runs
+        if (sequential.m_ResultNames[j].toLowerCase().contains("time")) {
+          continue;
+        }
+        assertEquals("result " + i + ", " + sequential.m_ResultNames[j],
+          expected[j], actual[j]);
+      }
+    }
+
+    Map<String, String> expectedZip = readZipFile(sequentialZip);
+    assertEquals("number of zip entries", numResults, expectedZip.size());
+    assertEquals(expectedZip, readZipFile(parallelZip));
+  }
+
+  /**
+   * Collects the keys and results of an experiment.
+   */
+  protected static class CollectingListener implements ResultListener {
+
+    /** for serialization */
+    private static final long serialVersionUID = -1837469018413521735L;
+
+    /** the names of the result fields */
+    protected String[] m_ResultNames;
+
+    /** the keys in the order received */
+    protected List<Object[]> m_Keys = new ArrayList<Object[]>();
+
+    /** the results in the order received */
+    protected List<Object[]> m_Results = new ArrayList<Object[]>();
+
+    @Override
+    public String[] determineColumnConstraints(ResultProducer rp) {
+      return null;
+    }
+
+    @Override
+    public void preProcess(ResultProducer rp) throws Exception {
+      m_ResultNames = rp.getResultNames();
+    }
+
+    @Override
+    public void postProcess(ResultProducer rp) {
+    }
+
+    @Override
+    public void acceptResult(ResultProducer rp, Object[] key, Object[] result) {
+      m_Keys.add(key);
+      m_Results.add(result);
+    }
+
+    @Override
+    public boolean isResultRequired(ResultProducer rp, Object[] key) {
+      return true;
+    }
+  }
+
+  /**
+   * Returns a test suite.
+   *
+   * @return test suite
+   */
+  public static Test suite() {
+    return new TestSuite(ParallelExperimentRunnerTest.class);
+  }
+
+  /**
+   * Runs the test from command-line.
+   *
+   * @param args ignored
+   */
+  public static void main(String[] args) {
+    junit.textui.TestRunner.run(suite());
+  }
+}
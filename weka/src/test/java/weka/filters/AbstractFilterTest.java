@@ -26,10 +26,12 @@ import weka.core.Attribute;
 import weka.core.Capabilities.Capability;
 import weka.core.CheckGOE;
 import weka.core.CheckOptionHandler;
+import weka.core.CopyableFromOptions;
 import weka.core.Instance;
 import weka.core.Instances;
 import weka.core.OptionHandler;
 import weka.core.SerializationHelper;
+import weka.core.SerializedObject;
 import weka.core.TestInstances;
 import weka.test.Regression;
 
@@ -970,4 +972,73 @@ public abstract class AbstractFilterTest
       fail("Failed to apply filter for 2nd time: " + e);
     }
   }
+
+  /**
+   * Tests whether filtering with several threads produces the same output as
+   * sequential filtering, for filters that process instances independently.
+   */
+  public void testParallelFiltering() {
+    Instances 	data;
+    Instances 	sequential;
+    Instances 	parallel;
+    String 	msg;
+
+    if (!(m_Filter instanceof InstanceIndependentFilter))
+      return;
+
+    // enough data (without string attributes) for two threads
+    data = new Instances(m_Instances);
+    data.deleteAttributeType(Attribute.STRING);
+    data.deleteAttributeType(Attribute.RELATIONAL);
+    while (data.numInstances() < 2 * Filter.MIN_INSTANCES_PER_THREAD) {
+      for (int i = 0; i < m_Instances.numInstances(); i++)
+	data.add(data.instance(i));
+    }
+
+    try {
+      m_Filter.setInputFormat(data);
+      Filter.useFilter(data, m_Filter);
+      sequential = Filter.useFilter(data, m_Filter);
+      parallel = Filter.useFilter(data, m_Filter, 2);
+      assertEquals(sequential.numInstances(), parallel.numInstances());
+      msg = compareDatasets(sequential, parallel);
+      assertNull("Parallel filtering differs: " + msg, msg);
+    }
+    catch (Exception e) {
+      e.printStackTrace();
+      fail("Failed to apply filter in parallel: " + e);
+    }
+  }
+
+  /**
+   * Tests whether copies of an unused filter that are created via its options
+   * produce the same output as copies created via serialization.
+   */
+  public void testMakeCopy() {
+    Filter 	serialized;
+    Filter 	copy;
+    Instances 	expected;
+    Instances 	actual;
+    String 	msg;
+
+    if (!(m_Filter instanceof CopyableFromOptions)
+	|| !((CopyableFromOptions) m_Filter).isCopyableFromOptions())
+      return;
+
+    try {
+      serialized = (Filter) new SerializedObject(m_Filter).getObject();
+      copy = Filter.makeCopy(m_Filter);
+      serialized.setInputFormat(m_Instances);
+      expected = Filter.useFilter(m_Instances, serialized);
+      copy.setInputFormat(m_Instances);
+      actual = Filter.useFilter(m_Instances, copy);
+      assertEquals(expected.numInstances(), actual.numInstances());
+      msg = compareDatasets(expected, actual);
+      assertNull("Copy via options differs from serialized copy: " + msg, msg);
+    }
+    catch (Exception e) {
+      e.printStackTrace();
+      fail("Failed to copy filter: " + e);
+    }
+  }
 }
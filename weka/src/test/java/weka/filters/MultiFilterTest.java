@@ -23,6 +23,7 @@ import weka.core.Instances;
 import weka.filters.unsupervised.attribute.Add;
 import weka.filters.unsupervised.attribute.AddExpression;
 import weka.filters.unsupervised.attribute.Center;
+import weka.filters.unsupervised.attribute.Remove;
 import weka.filters.unsupervised.attribute.ReplaceMissingValues;
 
 import junit.framework.Test;
@@ -105,6 +106,88 @@ public class MultiFilterTest extends AbstractFilterTest {
     assertEquals(m_Instances.numInstances(),  result.numInstances());
   }
 
+  /**
+   * tests whether fusing Remove + AddExpression + ReplaceMissingValues
+   * produces the same output as applying the filters one after the other
+   */
+  public void testFused() throws Exception {
+    Filter[] filters = new Filter[3];
+    filters[0] = new Remove();
+    ((Remove) filters[0]).setAttributeIndices("1");
+    filters[1] = new AddExpression();
+    ((AddExpression) filters[1]).setExpression("a2*a5");
+    filters[2] = new ReplaceMissingValues();
+
+    MultiFilter multi = new MultiFilter();
+    multi.setFilters(new Filter[] { Filter.makeCopy(filters[0]),
+      Filter.makeCopy(filters[1]), Filter.makeCopy(filters[2]) });
+    multi.setInputFormat(m_Instances);
+
+    Instances stepwise = m_Instances;
+    for (Filter filter : filters) {
+      filter.setInputFormat(stepwise);
+      stepwise = Filter.useFilter(stepwise, filter);
+    }
+    Instances fused = Filter.useFilter(m_Instances, multi);
+    assertEquals(stepwise.numInstances(), fused.numInstances());
+    assertNull(compareDatasets(stepwise, fused));
+
+    // second batch: all filters are fused now
+    stepwise = m_Instances;
+    for (Filter filter : filters) {
+      stepwise = Filter.useFilter(stepwise, filter);
+    }
+    fused = Filter.useFilter(m_Instances, multi);
+    assertEquals(stepwise.numInstances(), fused.numInstances());
+    assertNull(compareDatasets(stepwise, fused));
+  }
+
+  /**
+   * Tests that a filter following a fused sequence, which can't be fused
+   * itself, has its input format set only once on the first batch.
+   */
+  public void testNonFusableFollowerInitializedOnce() throws Exception {
+    Remove remove = new Remove();
+    remove.setAttributeIndices("1");
+    CountingCenter center = new CountingCenter();
+
+    MultiFilter multi = new MultiFilter();
+    multi.setFilters(new Filter[] { remove, center });
+    multi.setInputFormat(m_Instances);
+    center.m_NumInitialized = 0;
+
+    Instances fused = Filter.useFilter(m_Instances, multi);
+    assertEquals(1, center.m_NumInitialized);
+
+    Remove stepwiseRemove = new Remove();
+    stepwiseRemove.setAttributeIndices("1");
+    stepwiseRemove.setInputFormat(m_Instances);
+    Instances stepwise = Filter.useFilter(m_Instances, stepwiseRemove);
+    Center stepwiseCenter = new Center();
+    stepwiseCenter.setInputFormat(stepwise);
+    stepwise = Filter.useFilter(stepwise, stepwiseCenter);
+    assertEquals(stepwise.numInstances(), fused.numInstances());
+    assertNull(compareDatasets(stepwise, fused));
+  }
+
+  /**
+   * Center filter that counts how often its input format gets set.
+   */
+  protected static class CountingCenter extends Center {
+
+    /** for serialization */
+    private static final long serialVersionUID = 2968317764592370137L;
+
+    /** the number of calls of setInputFormat */
+    protected int m_NumInitialized = 0;
+
+    @Override
+    public boolean setInputFormat(Instances instanceInfo) throws Exception {
+      m_NumInitialized++;
+      return super.setInputFormat(instanceInfo);
+    }
+  }
+
   public static Test suite() {
     return new TestSuite(MultiFilterTest.class);
   }
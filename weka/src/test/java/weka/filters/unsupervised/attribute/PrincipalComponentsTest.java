@@ -131,7 +131,26 @@ public class PrincipalComponentsTest
     ((PrincipalComponents) m_Filter).setMaximumAttributeNames(2);
     performTest();
   }
-  
+
+  /**
+   * Runs filter with the randomized decomposition of the top components.
+   */
+  public void testRandomized() {
+    m_Filter = getFilter();
+    ((PrincipalComponents) m_Filter).setMaximumAttributes(2);
+    ((PrincipalComponents) m_Filter).setRandomized(true);
+    performTest();
+  }
+
+  /**
+   * Runs filter with several execution slots.
+   */
+  public void testNumExecutionSlots() {
+    m_Filter = getFilter();
+    ((PrincipalComponents) m_Filter).setNumExecutionSlots(2);
+    performTest();
+  }
+
   /**
    * Returns a configures test suite.
    * 